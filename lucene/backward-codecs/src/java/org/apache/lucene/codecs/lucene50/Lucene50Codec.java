@@ -26,6 +26,7 @@ import org.apache.lucene.codecs.FieldInfosFormat;
 import org.apache.lucene.codecs.FilterCodec;
 import org.apache.lucene.codecs.LiveDocsFormat;
 import org.apache.lucene.codecs.NormsFormat;
+import org.apache.lucene.codecs.PointsFormat;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.SegmentInfoFormat;
 import org.apache.lucene.codecs.StoredFieldsFormat;
@@ -161,4 +162,9 @@ public class Lucene50Codec extends Codec {
   public NormsFormat normsFormat() {
     return normsFormat;
   }
+
+  @Override
+  public final PointsFormat pointsFormat() {
+    return PointsFormat.EMPTY;
+  }
 }
@@ -0,0 +1,60 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Adds a document like {@link AddDocTask}, with a sorted doc values field
+ * that holds one of a given number of random groups, to group hits with
+ * {@link GroupingSearchTask}.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>grouping.field</b>=&lt;name of the group field| Default: group&gt;
+ *  <li><b>grouping.groups</b>=&lt;number of distinct groups| Default: 1000&gt;
+ * </ul>
+ */
+public class AddGroupedDocTask extends AddDocTask {
+
+  private Random random;
+  private int round = -1;
+
+  public AddGroupedDocTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  public void setup() throws Exception {
+    super.setup();
+    final Config config = getRunData().getConfig();
+    final String field = config.get("grouping.field", "group");
+    final int groups = config.get("grouping.groups", 1000);
+    if (round != config.getRoundNumber()) {
+      // same seed in every round, so that rounds index the same groups
+      random = new Random(17);
+      round = config.getRoundNumber();
+    }
+    doc.add(new SortedDocValuesField(field, new BytesRef("group" + random.nextInt(groups))));
+  }
+}
@@ -0,0 +1,61 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+import org.apache.lucene.document.NumericDocValuesField;
+
+/**
+ * Adds a document like {@link AddDocTask}, with a numeric doc values field
+ * that only a fraction of the documents have, e.g. to compare how doc values
+ * formats store sparse fields (see {@link ReadDocValuesTask}).
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>docvalues.field</b>=&lt;name of the doc values field| Default: sparse&gt;
+ *  <li><b>docvalues.density</b>=&lt;probability that a document has a value| Default: 0.01&gt;
+ * </ul>
+ */
+public class AddSparseDocTask extends AddDocTask {
+
+  private Random random;
+  private int round = -1;
+
+  public AddSparseDocTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  public void setup() throws Exception {
+    super.setup();
+    final Config config = getRunData().getConfig();
+    final String field = config.get("docvalues.field", "sparse");
+    final double density = config.get("docvalues.density", 0.01);
+    if (round != config.getRoundNumber()) {
+      // same seed in every round, so that rounds that compare formats index the same values
+      random = new Random(17);
+      round = config.getRoundNumber();
+    }
+    if (random.nextDouble() < density) {
+      doc.add(new NumericDocValuesField(field, random.nextLong()));
+    }
+  }
+}
@@ -28,7 +28,12 @@ import java.nio.file.Paths;
 import org.apache.lucene.benchmark.byTask.PerfRunData;
 import org.apache.lucene.benchmark.byTask.utils.Config;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat.Mode;
 import org.apache.lucene.codecs.lucene53.Lucene53Codec;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexCommit;
@@ -53,7 +58,12 @@ import org.apache.lucene.index.NoMergeScheduler;
  * org.apache.lucene.index.ConcurrentMergeScheduler),
  * concurrent.merge.scheduler.max.thread.count and
  * concurrent.merge.scheduler.max.merge.count (defaults per
- * ConcurrentMergeScheduler), default.codec </code>.
+ * ConcurrentMergeScheduler), default.codec, codec.postingsFormat,
+ * codec.fstLoadMode (records a {@link FSTLoadMode} with the Lucene50 postings format),
+ * codec.docValuesFormat, codec.storedFieldsMode (a {@link Mode} of the Lucene50
+ * stored fields format), writer.max.thread.states (default
+ * {@link IndexWriterConfig#DEFAULT_MAX_THREAD_STATES}) and writer.concurrent.analysis
+ * (default {@link IndexWriterConfig#DEFAULT_CONCURRENT_ANALYSIS}) </code>.
  * <p>
  * This task also supports a "writer.info.stream" property with the following
  * values:
@@ -136,18 +146,45 @@ public class CreateIndexTask extends PerfTask {
     }
 
     final String postingsFormat = config.get("codec.postingsFormat",null);
-    if (defaultCodec == null && postingsFormat != null) {
+    final String fstLoadMode = config.get("codec.fstLoadMode",null);
+    final String docValuesFormat = config.get("codec.docValuesFormat",null);
+    final String storedFieldsMode = config.get("codec.storedFieldsMode",null);
+    if (defaultCodec == null && (postingsFormat != null || fstLoadMode != null || docValuesFormat != null || storedFieldsMode != null)) {
+      final PostingsFormat postingsFormatChosen;
       try {
-        final PostingsFormat postingsFormatChosen = PostingsFormat.forName(postingsFormat);
-        iwConf.setCodec(new Lucene53Codec() {
-          @Override
-          public PostingsFormat getPostingsFormatForField(String field) {
-            return postingsFormatChosen;
+        if (fstLoadMode != null) {
+          if (postingsFormat != null && postingsFormat.equals("Lucene50") == false) {
+            throw new IllegalArgumentException("codec.fstLoadMode requires the Lucene50 postings format, got: " + postingsFormat);
           }
-        });
+          postingsFormatChosen = new Lucene50PostingsFormat(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE,
+                                                            BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE,
+                                                            FSTLoadMode.valueOf(fstLoadMode));
+        } else if (postingsFormat != null) {
+          postingsFormatChosen = PostingsFormat.forName(postingsFormat);
+        } else {
+          postingsFormatChosen = null;
+        }
       } catch (Exception e) {
         throw new RuntimeException("Couldn't instantiate Postings Format: " + postingsFormat, e);
       }
+      final DocValuesFormat docValuesFormatChosen;
+      try {
+        docValuesFormatChosen = docValuesFormat == null ? null : DocValuesFormat.forName(docValuesFormat);
+      } catch (Exception e) {
+        throw new RuntimeException("Couldn't instantiate DocValues Format: " + docValuesFormat, e);
+      }
+      final Mode storedFieldsModeChosen = storedFieldsMode == null ? Mode.BEST_SPEED : Mode.valueOf(storedFieldsMode);
+      iwConf.setCodec(new Lucene53Codec(storedFieldsModeChosen) {
+        @Override
+        public PostingsFormat getPostingsFormatForField(String field) {
+          return postingsFormatChosen == null ? super.getPostingsFormatForField(field) : postingsFormatChosen;
+        }
+
+        @Override
+        public DocValuesFormat getDocValuesFormatForField(String field) {
+          return docValuesFormatChosen == null ? super.getDocValuesFormatForField(field) : docValuesFormatChosen;
+        }
+      });
     }
 
     final String mergePolicy = config.get("merge.policy",
@@ -168,6 +205,8 @@ public class CreateIndexTask extends PerfTask {
         logMergePolicy.setMergeFactor(config.get("merge.factor",OpenIndexTask.DEFAULT_MERGE_PFACTOR));
       }
     }
+    iwConf.setMaxThreadStates(config.get("writer.max.thread.states", IndexWriterConfig.DEFAULT_MAX_THREAD_STATES));
+    iwConf.setConcurrentAnalysis(config.get("writer.concurrent.analysis", IndexWriterConfig.DEFAULT_CONCURRENT_ANALYSIS));
     final double ramBuffer = config.get("ram.flush.mb",OpenIndexTask.DEFAULT_RAM_FLUSH_MB);
     final int maxBuffered = config.get("max.buffered",OpenIndexTask.DEFAULT_MAX_BUFFERED);
     if (maxBuffered == IndexWriterConfig.DISABLE_AUTO_FLUSH) {
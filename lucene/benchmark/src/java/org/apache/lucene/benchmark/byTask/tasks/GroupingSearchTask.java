@@ -0,0 +1,191 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collection;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.benchmark.byTask.feeds.QueryMaker;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.grouping.SearchGroup;
+import org.apache.lucene.search.grouping.TopGroups;
+import org.apache.lucene.search.grouping.term.TermFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermGlobalOrdinalsFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermGlobalOrdinalsSecondPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermSecondPassGroupingCollector;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Groups the hits of the next query of the {@link QueryMaker} by the terms of
+ * a sorted doc values field, e.g. indexed by {@link AddGroupedDocTask}, to
+ * compare grouping collectors. Groups and the documents within groups are
+ * sorted by relevance. The param selects the collectors:
+ * <ul>
+ *  <li><code>terms</code> (default): two passes with
+ *    {@link TermFirstPassGroupingCollector} and
+ *    {@link TermSecondPassGroupingCollector}
+ *  <li><code>ordinals</code>: two passes with
+ *    {@link TermGlobalOrdinalsFirstPassGroupingCollector} and
+ *    {@link TermGlobalOrdinalsSecondPassGroupingCollector}
+ *  <li><code>onepass</code>: a single pass with
+ *    {@link TermGlobalOrdinalsFirstPassGroupingCollector}, when only the top
+ *    document of each group is requested, and else like <code>ordinals</code>
+ * </ul>
+ * The global ordinals of the group field are loaded once per reader, like
+ * other users of global ordinals would do, so they are not part of the
+ * measured time past the first search on a reader. Uses the searcher opened
+ * by {@link OpenReaderTask}.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>grouping.field</b>=&lt;name of the group field| Default: group&gt;
+ *  <li><b>grouping.topN</b>=&lt;number of top groups| Default: 10&gt;
+ *  <li><b>grouping.docsPerGroup</b>=&lt;number of top documents per group| Default: 1&gt;
+ * </ul>
+ */
+public class GroupingSearchTask extends ReadTask {
+
+  private String mode = "terms";
+
+  // global ordinals of the last searched reader
+  private Object globalValuesKey;
+  private SortedDocValues globalValues;
+
+  // prevents the JIT from optimizing away searches
+  private long checksum;
+
+  public GroupingSearchTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  public int doLogic() throws Exception {
+    final Config config = getRunData().getConfig();
+    final String field = config.get("grouping.field", "group");
+    final int topN = config.get("grouping.topN", 10);
+    final int docsPerGroup = config.get("grouping.docsPerGroup", 1);
+
+    final IndexSearcher searcher = getRunData().getIndexSearcher();
+    if (searcher == null) {
+      throw new IllegalStateException("no searcher: did you forget to call OpenReader?");
+    }
+    // getIndexSearcher() passed +1 ref to us
+    final IndexReader reader = searcher.getIndexReader();
+    try {
+      final Query query = getQueryMaker().makeQuery();
+      final Sort sort = Sort.RELEVANCE;
+      final TopGroups<BytesRef> topGroups;
+      if (mode.equals("terms")) {
+        final TermFirstPassGroupingCollector firstPass = new TermFirstPassGroupingCollector(field, sort, topN);
+        searcher.search(query, firstPass);
+        final Collection<SearchGroup<BytesRef>> groups = firstPass.getTopGroups(0, true);
+        if (groups == null) {
+          return 1;
+        }
+        final TermSecondPassGroupingCollector secondPass = new TermSecondPassGroupingCollector(field, groups, sort, sort,
+            docsPerGroup, false, false, true);
+        searcher.search(query, secondPass);
+        topGroups = secondPass.getTopGroups(0);
+      } else {
+        if (reader.getCoreCacheKey() != globalValuesKey) {
+          globalValues = TermGlobalOrdinalsFirstPassGroupingCollector.getGlobalValues(reader, field);
+          globalValuesKey = reader.getCoreCacheKey();
+        }
+        final TermGlobalOrdinalsFirstPassGroupingCollector firstPass =
+            new TermGlobalOrdinalsFirstPassGroupingCollector(field, globalValues, sort, topN);
+        searcher.search(query, firstPass);
+        if (mode.equals("onepass") && docsPerGroup == 1) {
+          topGroups = firstPass.getTopGroupsWithTopDoc(0);
+        } else {
+          final Collection<SearchGroup<Long>> groups = firstPass.getTopGroups(0, true);
+          if (groups == null) {
+            return 1;
+          }
+          final TermGlobalOrdinalsSecondPassGroupingCollector secondPass = new TermGlobalOrdinalsSecondPassGroupingCollector(
+              field, globalValues, groups, sort, sort, docsPerGroup, false, false, true);
+          searcher.search(query, secondPass);
+          topGroups = secondPass.getTermTopGroups(0);
+        }
+      }
+      if (topGroups != null) {
+        checksum += topGroups.totalGroupedHitCount + topGroups.groups.length;
+      }
+    } finally {
+      reader.decRef();
+    }
+    return 1;
+  }
+
+  /**
+   * Set the params (collectors)
+   * @param params <code>terms</code>, <code>ordinals</code> or <code>onepass</code>
+   */
+  @Override
+  public void setParams(String params) {
+    super.setParams(params);
+    if (params.equals("terms") || params.equals("ordinals") || params.equals("onepass")) {
+      mode = params;
+    } else {
+      throw new IllegalArgumentException("params must be terms, ordinals or onepass, got: " + params);
+    }
+  }
+
+  @Override
+  public boolean supportsParams() {
+    return true;
+  }
+
+  @Override
+  public QueryMaker getQueryMaker() {
+    return getRunData().getQueryMaker(this);
+  }
+
+  @Override
+  public boolean withRetrieve() {
+    return false;
+  }
+
+  @Override
+  public boolean withSearch() {
+    return true;
+  }
+
+  @Override
+  public boolean withTraverse() {
+    return false;
+  }
+
+  @Override
+  public boolean withWarm() {
+    return false;
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (checksum == 42) {
+      // never true in practice, but the JIT cannot know
+      System.out.println("checksum=" + checksum);
+    }
+    super.tearDown();
+  }
+}
@@ -0,0 +1,107 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.util.NamedThreadFactory;
+
+/**
+ * Create a new {@link LRUQueryCache} and make it the default query cache of
+ * all {@link IndexSearcher}s that are created by future tasks, such as
+ * {@link OpenReaderTask}. Queries are always cached, which is useful to
+ * measure the overhead and contention of the cache itself.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>query.cache.size</b>=&lt;maximum number of cached queries| Default: 1000&gt;
+ *  <li><b>query.cache.ram.mb</b>=&lt;maximum memory usage of the cache| Default: 64&gt;
+ *  <li><b>query.cache.stripes</b>=&lt;number of stripes of the cache| Default: 1&gt;
+ *  <li><b>query.cache.async.threads</b>=&lt;number of threads that compute
+ *      cache entries asynchronously, 0 to compute them synchronously| Default: 0&gt;
+ * </ul>
+ * A value of 0 for <b>query.cache.size</b> disables query caching.
+ */
+public class NewQueryCacheTask extends PerfTask {
+
+  private static final String EXECUTOR_KEY = "QueryCacheExecutor";
+
+  public NewQueryCacheTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  public int doLogic() throws Exception {
+    final PerfRunData runData = getRunData();
+    final Config config = runData.getConfig();
+    final int maxSize = config.get("query.cache.size", 1000);
+    final long maxRamBytesUsed = (long) (config.get("query.cache.ram.mb", 64.0) * 1024 * 1024);
+    final int numStripes = config.get("query.cache.stripes", 1);
+    final int asyncThreads = config.get("query.cache.async.threads", 0);
+
+    // shut down the executor of the previous cache, if any
+    final Closeable previous = (Closeable) runData.getPerfObject(EXECUTOR_KEY);
+    if (previous != null) {
+      previous.close();
+      runData.setPerfObject(EXECUTOR_KEY, null);
+    }
+
+    if (maxSize == 0) {
+      IndexSearcher.setDefaultQueryCache(null);
+      return 1;
+    }
+
+    ExecutorService executor = null;
+    if (asyncThreads > 0) {
+      final ThreadFactory namedFactory = new NamedThreadFactory("QueryCache");
+      // daemon threads so that the executor does not prevent the JVM from exiting
+      final ExecutorService ex = Executors.newFixedThreadPool(asyncThreads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread t = namedFactory.newThread(r);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      runData.setPerfObject(EXECUTOR_KEY, new Closeable() {
+        @Override
+        public void close() {
+          ex.shutdown();
+          try {
+            ex.awaitTermination(1, TimeUnit.MINUTES);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+      executor = ex;
+    }
+    IndexSearcher.setDefaultQueryCache(new LRUQueryCache(maxSize, maxRamBytesUsed, numStripes, executor));
+    IndexSearcher.setDefaultQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    return 1;
+  }
+}
@@ -23,7 +23,8 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.Directory;
 
 /**
- * Opens a reader and prints basic statistics.
+ * Opens a reader and prints basic statistics: the number of documents,
+ * deleted documents and segments.
  */
 public class PrintReaderTask extends PerfTask {
   private String userData = null;
@@ -51,7 +52,7 @@ public class PrintReaderTask extends PerfTask {
       r = DirectoryReader.open(dir);
     else
       r = DirectoryReader.open(OpenReaderTask.findIndexCommit(dir, userData));
-    System.out.println("--> numDocs:"+r.numDocs()+" dels:"+r.numDeletedDocs());
+    System.out.println("--> numDocs:"+r.numDocs()+" dels:"+r.numDeletedDocs()+" segments:"+r.leaves().size());
     r.close();
     return 1;
   }
@@ -0,0 +1,142 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+
+/**
+ * Reads the values of a numeric doc values field, and whether documents have
+ * one, for every document in docID order (param <code>sequential</code>, the
+ * default) or for as many random documents (param <code>random</code>), e.g.
+ * to compare doc values formats on fields indexed by {@link AddSparseDocTask}
+ * (see the <code>codec.docValuesFormat</code> property of {@link CreateIndexTask}).
+ * Uses the reader opened by {@link OpenReaderTask}, or opens a new one if
+ * there is none. The number of records is the number of documents read, and
+ * the log message reports the size of the index.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>docvalues.field</b>=&lt;name of the doc values field| Default: sparse&gt;
+ * </ul>
+ */
+public class ReadDocValuesTask extends PerfTask {
+
+  private boolean random;
+  private long indexBytes;
+
+  // prevents the JIT from optimizing away reads
+  private long checksum;
+
+  public ReadDocValuesTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  protected String getLogMessage(int recsCount) {
+    return String.format(Locale.ROOT, "%d runs; index is %.1f MB", recsCount, indexBytes/1024./1024.);
+  }
+
+  @Override
+  public int doLogic() throws Exception {
+    final String field = getRunData().getConfig().get("docvalues.field", "sparse");
+
+    IndexReader reader = getRunData().getIndexReader();
+    final boolean closeReader;
+    if (reader == null) {
+      reader = DirectoryReader.open(getRunData().getDirectory());
+      closeReader = true;
+    } else {
+      // getIndexReader() passed +1 ref to us
+      closeReader = false;
+    }
+
+    int reads = 0;
+    try {
+      final Directory dir = getRunData().getDirectory();
+      indexBytes = 0;
+      for (String file : dir.listAll()) {
+        indexBytes += dir.fileLength(file);
+      }
+
+      final Random r = new Random(17);
+      for (LeafReaderContext context : reader.leaves()) {
+        final LeafReader leaf = context.reader();
+        final NumericDocValues values = leaf.getNumericDocValues(field);
+        final Bits docsWithField = leaf.getDocsWithField(field);
+        if (values == null) {
+          continue;
+        }
+        final int maxDoc = leaf.maxDoc();
+        for (int i = 0; i < maxDoc; i++) {
+          final int doc = random ? r.nextInt(maxDoc) : i;
+          if (docsWithField.get(doc)) {
+            checksum += values.get(doc);
+          }
+          reads++;
+        }
+      }
+    } finally {
+      if (closeReader) {
+        reader.close();
+      } else {
+        reader.decRef();
+      }
+    }
+    return reads;
+  }
+
+  /**
+   * Set the params (access pattern)
+   * @param params <code>sequential</code> or <code>random</code>
+   */
+  @Override
+  public void setParams(String params) {
+    super.setParams(params);
+    if (params.equals("random")) {
+      random = true;
+    } else if (params.equals("sequential")) {
+      random = false;
+    } else {
+      throw new IllegalArgumentException("params must be sequential or random, got: " + params);
+    }
+  }
+
+  @Override
+  public boolean supportsParams() {
+    return true;
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (checksum == 42) {
+      // never true in practice, but the JIT cannot know
+      System.out.println("checksum=" + checksum);
+    }
+    super.tearDown();
+  }
+}
@@ -0,0 +1,108 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * Reads all postings of all fields of the index, in order to measure how fast
+ * postings can be decoded. Uses the reader opened by {@link OpenReaderTask},
+ * or opens a new one if there is none. The number of records is the number of
+ * decoded postings, so the reported rec/s is a decode throughput.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>postings.freqs</b>=&lt;whether to decode frequencies too| Default: true&gt;
+ * </ul>
+ */
+public class ReadPostingsTask extends PerfTask {
+
+  // prevents the JIT from optimizing away decoding
+  private long checksum;
+
+  public ReadPostingsTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  protected String getLogMessage(int recsCount) {
+    return "read " + recsCount + " postings";
+  }
+
+  @Override
+  public int doLogic() throws Exception {
+    final boolean freqs = getRunData().getConfig().get("postings.freqs", true);
+    final int flags = freqs ? PostingsEnum.FREQS : PostingsEnum.NONE;
+
+    IndexReader reader = getRunData().getIndexReader();
+    final boolean closeReader;
+    if (reader == null) {
+      reader = DirectoryReader.open(getRunData().getDirectory());
+      closeReader = true;
+    } else {
+      // getIndexReader() passed +1 ref to us
+      closeReader = false;
+    }
+
+    long count = 0;
+    try {
+      PostingsEnum postings = null;
+      for (LeafReaderContext context : reader.leaves()) {
+        final LeafReader leaf = context.reader();
+        for (String field : leaf.fields()) {
+          final Terms terms = leaf.terms(field);
+          if (terms == null) {
+            continue;
+          }
+          final TermsEnum termsEnum = terms.iterator();
+          while (termsEnum.next() != null) {
+            postings = termsEnum.postings(null, postings, flags);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+              checksum += freqs ? doc + postings.freq() : doc;
+              count++;
+            }
+          }
+        }
+      }
+    } finally {
+      if (closeReader) {
+        reader.close();
+      } else {
+        reader.decRef();
+      }
+    }
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (checksum == 42) {
+      // never true in practice, but the JIT cannot know
+      System.out.println("checksum=" + checksum);
+    }
+    super.tearDown();
+  }
+}
@@ -0,0 +1,107 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.StoredDocument;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Loads the stored fields of random documents, one at a time, e.g. to compare
+ * stored fields compression modes (see the <code>codec.storedFieldsMode</code>
+ * property of {@link CreateIndexTask}). Uses the reader opened by
+ * {@link OpenReaderTask}, or opens a new one if there is none. The number of
+ * records is the number of loaded documents, and the log message reports the
+ * size of the index.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>retrieve.count</b>=&lt;number of documents to load| Default: 10000&gt;
+ * </ul>
+ */
+public class RetrieveDocsTask extends PerfTask {
+
+  private long indexBytes;
+
+  // prevents the JIT from optimizing away retrievals
+  private long checksum;
+
+  public RetrieveDocsTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  protected String getLogMessage(int recsCount) {
+    return String.format(Locale.ROOT, "%d runs; index is %.1f MB", recsCount, indexBytes/1024./1024.);
+  }
+
+  @Override
+  public int doLogic() throws Exception {
+    final int count = getRunData().getConfig().get("retrieve.count", 10000);
+
+    IndexReader reader = getRunData().getIndexReader();
+    final boolean closeReader;
+    if (reader == null) {
+      reader = DirectoryReader.open(getRunData().getDirectory());
+      closeReader = true;
+    } else {
+      // getIndexReader() passed +1 ref to us
+      closeReader = false;
+    }
+
+    int retrieved = 0;
+    try {
+      final Directory dir = getRunData().getDirectory();
+      indexBytes = 0;
+      for (String file : dir.listAll()) {
+        indexBytes += dir.fileLength(file);
+      }
+
+      final int maxDoc = reader.maxDoc();
+      if (maxDoc > 0) {
+        final Random random = new Random(17);
+        for (int i = 0; i < count; i++) {
+          final StoredDocument doc = reader.document(random.nextInt(maxDoc));
+          checksum += doc.getFields().size();
+          retrieved++;
+        }
+      }
+    } finally {
+      if (closeReader) {
+        reader.close();
+      } else {
+        reader.decRef();
+      }
+    }
+    return retrieved;
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (checksum == 42) {
+      // never true in practice, but the JIT cannot know
+      System.out.println("checksum=" + checksum);
+    }
+    super.tearDown();
+  }
+}
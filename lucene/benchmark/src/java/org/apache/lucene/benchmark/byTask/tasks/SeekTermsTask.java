@@ -0,0 +1,163 @@
+package org.apache.lucene.benchmark.byTask.tasks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.PerfRunData;
+import org.apache.lucene.benchmark.byTask.feeds.DocMaker;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+/**
+ * Looks up a random sample of the terms of a field in every segment, half of
+ * them with a suffix that makes them miss, in order to measure terms
+ * dictionary lookup latency, e.g. with the terms index on or off the heap
+ * (see the <code>codec.fstLoadMode</code> property of {@link CreateIndexTask}).
+ * Uses the reader opened by {@link OpenReaderTask}, or opens a new one if
+ * there is none. The number of records is the number of lookups, and the log
+ * message reports the heap used by the segment readers.
+ * <p>
+ * Config properties:
+ * <ul>
+ *  <li><b>seek.field</b>=&lt;field to look up terms of| Default: docid&gt;
+ *  <li><b>seek.count</b>=&lt;number of sampled terms| Default: 10000&gt;
+ * </ul>
+ */
+public class SeekTermsTask extends PerfTask {
+
+  private IndexReader sampledReader;
+  private List<BytesRef> sample;
+  private long heapBytes;
+
+  // prevents the JIT from optimizing away lookups
+  private long checksum;
+
+  public SeekTermsTask(PerfRunData runData) {
+    super(runData);
+  }
+
+  @Override
+  protected String getLogMessage(int recsCount) {
+    return String.format(Locale.ROOT, "seeked %d terms; segment readers use %.1f MB heap", recsCount, heapBytes/1024./1024.);
+  }
+
+  @Override
+  public int doLogic() throws Exception {
+    final String field = getRunData().getConfig().get("seek.field", DocMaker.ID_FIELD);
+    final int count = getRunData().getConfig().get("seek.count", 10000);
+
+    IndexReader reader = getRunData().getIndexReader();
+    final boolean closeReader;
+    if (reader == null) {
+      reader = DirectoryReader.open(getRunData().getDirectory());
+      closeReader = true;
+    } else {
+      // getIndexReader() passed +1 ref to us
+      closeReader = false;
+    }
+
+    int lookups = 0;
+    try {
+      if (reader != sampledReader) {
+        sample = sample(reader, field, count);
+        sampledReader = reader;
+        heapBytes = 0;
+        for (LeafReaderContext context : reader.leaves()) {
+          if (context.reader() instanceof Accountable) {
+            heapBytes += ((Accountable) context.reader()).ramBytesUsed();
+          }
+        }
+      }
+
+      for (LeafReaderContext context : reader.leaves()) {
+        final Terms terms = context.reader().terms(field);
+        if (terms == null) {
+          continue;
+        }
+        final TermsEnum termsEnum = terms.iterator();
+        for (BytesRef term : sample) {
+          if (termsEnum.seekExact(term)) {
+            checksum += termsEnum.docFreq();
+          }
+          lookups++;
+        }
+      }
+    } finally {
+      if (closeReader) {
+        reader.close();
+        sampledReader = null;
+      } else {
+        reader.decRef();
+      }
+    }
+    return lookups;
+  }
+
+  /** Picks {@code count} terms of the field at random, and turns every other one into a miss. */
+  private static List<BytesRef> sample(IndexReader reader, String field, int count) throws Exception {
+    final List<BytesRef> terms = new ArrayList<>();
+    final Terms allTerms = MultiFields.getTerms(reader, field);
+    if (allTerms == null) {
+      throw new IllegalArgumentException("field \"" + field + "\" has no terms");
+    }
+    final Random random = new Random(17);
+    final TermsEnum termsEnum = allTerms.iterator();
+    int seen = 0;
+    for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+      // reservoir sampling:
+      if (terms.size() < count) {
+        terms.add(BytesRef.deepCopyOf(term));
+      } else {
+        final int idx = random.nextInt(seen + 1);
+        if (idx < count) {
+          terms.set(idx, BytesRef.deepCopyOf(term));
+        }
+      }
+      seen++;
+    }
+    Collections.shuffle(terms, random);
+    final BytesRefBuilder missing = new BytesRefBuilder();
+    for (int i = 1; i < terms.size(); i += 2) {
+      missing.copyBytes(terms.get(i));
+      missing.append((byte) 0);
+      terms.set(i, missing.toBytesRef());
+    }
+    return terms;
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (checksum == 42) {
+      // never true in practice, but the JIT cannot know
+      System.out.println("checksum=" + checksum);
+    }
+    super.tearDown();
+  }
+}
@@ -0,0 +1,383 @@
+package org.apache.lucene.codecs.simd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.packed.PackedInts;
+
+import static org.apache.lucene.codecs.simd.SIMDPostingsFormat.BLOCK_SIZE;
+
+/**
+ * Encode all values of a block with a fixed bit width, which is determined by
+ * the max value in this block, using a layout that can be decoded with
+ * vectorized instructions.
+ * <p>
+ * Values that require {@code b} bits are first collapsed into lanes of 8, 16
+ * or 32 bits: with 8 bits lanes, the i-th int stores values i, i+32, i+64 and
+ * i+96. Then the collapsed ints are packed into {@code 4*b} ints: the
+ * first {@code 4*b} collapsed ints are stored in the upper bits of each lane,
+ * the next {@code 4*b} ones just below them, and so on. The remaining bits of
+ * each lane, if any, store the collapsed ints that are left in big-endian
+ * order. As a consequence, decoding mostly consists of loops that apply the
+ * same shift and mask to all ints of the block.
+ * <p>
+ * Instances hold scratch buffers and must not be shared across threads.
+ */
+final class ForUtil {
+
+  /**
+   * Special number of bits per value used whenever all values to encode are equal.
+   */
+  private static final int ALL_VALUES_EQUAL = 0;
+
+  /**
+   * Upper limit of the number of bytes that might be required to stored
+   * <code>BLOCK_SIZE</code> encoded values.
+   */
+  static final int MAX_ENCODED_SIZE = BLOCK_SIZE * 4;
+
+  private static final int[] MASKS8 = new int[9];
+  private static final int[] MASKS16 = new int[17];
+  private static final int[] MASKS32 = new int[33];
+  static {
+    for (int i = 0; i < MASKS32.length; ++i) {
+      final int mask = i == 32 ? -1 : (1 << i) - 1;
+      if (i < MASKS8.length) {
+        MASKS8[i] = mask * 0x01010101;
+      }
+      if (i < MASKS16.length) {
+        MASKS16[i] = mask * 0x00010001;
+      }
+      MASKS32[i] = mask;
+    }
+  }
+
+  /** Return the number of bits of the lanes that store values that require
+   *  {@code bitsPerValue} bits. */
+  private static int laneBits(int bitsPerValue) {
+    if (bitsPerValue <= 8) {
+      return 8;
+    } else if (bitsPerValue <= 16) {
+      return 16;
+    } else {
+      return 32;
+    }
+  }
+
+  /** Return masks of the given number of bits, repeated in every lane. */
+  private static int[] masks(int laneBits) {
+    switch (laneBits) {
+      case 8:
+        return MASKS8;
+      case 16:
+        return MASKS16;
+      default:
+        return MASKS32;
+    }
+  }
+
+  private final int[] values = new int[BLOCK_SIZE];
+  private final int[] tmp = new int[BLOCK_SIZE];
+  private final byte[] encoded = new byte[MAX_ENCODED_SIZE];
+
+  /** Sole constructor. */
+  ForUtil() {}
+
+  /**
+   * Write a block of data.
+   *
+   * @param data     the data to write
+   * @param out      the destination output
+   * @throws IOException If there is a low-level I/O error
+   */
+  void writeBlock(int[] data, IndexOutput out) throws IOException {
+    if (isAllEqual(data)) {
+      out.writeByte((byte) ALL_VALUES_EQUAL);
+      out.writeVInt(data[0]);
+      return;
+    }
+
+    final int bitsPerValue = bitsRequired(data);
+    assert bitsPerValue > 0 && bitsPerValue <= 32 : bitsPerValue;
+    out.writeByte((byte) bitsPerValue);
+
+    final int laneBits = laneBits(bitsPerValue);
+    final int[] masks = masks(laneBits);
+    final int[] values = this.values;
+    System.arraycopy(data, 0, values, 0, BLOCK_SIZE);
+    final int numValues = collapse(values, laneBits);
+
+    final int numInts = bitsPerValue * BLOCK_SIZE / 32;
+    final int[] tmp = this.tmp;
+    int idx = 0;
+    int shift = laneBits - bitsPerValue;
+    for (int i = 0; i < numInts; ++i) {
+      tmp[i] = values[idx++] << shift;
+    }
+    for (shift = shift - bitsPerValue; shift >= 0; shift -= bitsPerValue) {
+      for (int i = 0; i < numInts; ++i) {
+        tmp[i] |= values[idx++] << shift;
+      }
+    }
+
+    // pack the remaining values into the lower bits of each lane
+    final int remainingBitsPerInt = shift + bitsPerValue;
+    final int maskRemainingBitsPerInt = masks[remainingBitsPerInt];
+    int tmpIdx = 0;
+    int remainingBitsPerValue = bitsPerValue;
+    while (idx < numValues) {
+      if (remainingBitsPerValue >= remainingBitsPerInt) {
+        remainingBitsPerValue -= remainingBitsPerInt;
+        tmp[tmpIdx++] |= (values[idx] >>> remainingBitsPerValue) & maskRemainingBitsPerInt;
+        if (remainingBitsPerValue == 0) {
+          idx++;
+          remainingBitsPerValue = bitsPerValue;
+        }
+      } else {
+        final int mask1 = masks[remainingBitsPerValue];
+        final int mask2 = masks[remainingBitsPerInt - remainingBitsPerValue];
+        tmp[tmpIdx] |= (values[idx++] & mask1) << (remainingBitsPerInt - remainingBitsPerValue);
+        remainingBitsPerValue = bitsPerValue - remainingBitsPerInt + remainingBitsPerValue;
+        tmp[tmpIdx++] |= (values[idx] >>> remainingBitsPerValue) & mask2;
+      }
+    }
+
+    for (int i = 0; i < numInts; ++i) {
+      out.writeInt(tmp[i]);
+    }
+  }
+
+  /**
+   * Read the next block of data.
+   *
+   * @param in        the input to use to read data
+   * @param decoded   where to write decoded data
+   * @throws IOException If there is a low-level I/O error
+   */
+  void readBlock(IndexInput in, int[] decoded) throws IOException {
+    final int bitsPerValue = in.readByte();
+    assert bitsPerValue >= 0 && bitsPerValue <= 32 : bitsPerValue;
+
+    if (bitsPerValue == ALL_VALUES_EQUAL) {
+      final int value = in.readVInt();
+      Arrays.fill(decoded, 0, BLOCK_SIZE, value);
+      return;
+    }
+
+    decode(in, bitsPerValue, decoded);
+  }
+
+  /**
+   * Read the next block of deltas and turn them into absolute values.
+   *
+   * @param in        the input to use to read data
+   * @param base      the value that the first delta is relative to
+   * @param decoded   where to write decoded data
+   * @throws IOException If there is a low-level I/O error
+   */
+  void readBlockAndPrefixSum(IndexInput in, int base, int[] decoded) throws IOException {
+    final int bitsPerValue = in.readByte();
+    assert bitsPerValue >= 0 && bitsPerValue <= 32 : bitsPerValue;
+
+    if (bitsPerValue == ALL_VALUES_EQUAL) {
+      final int delta = in.readVInt();
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        decoded[i] = base + (i + 1) * delta;
+      }
+      return;
+    }
+
+    decode(in, bitsPerValue, decoded);
+    prefixSum(decoded, base);
+  }
+
+  /**
+   * Skip the next block of data.
+   *
+   * @param in      the input where to read data
+   * @throws IOException If there is a low-level I/O error
+   */
+  void skipBlock(IndexInput in) throws IOException {
+    final int bitsPerValue = in.readByte();
+    if (bitsPerValue == ALL_VALUES_EQUAL) {
+      in.readVInt();
+      return;
+    }
+    assert bitsPerValue > 0 && bitsPerValue <= 32 : bitsPerValue;
+    in.seek(in.getFilePointer() + encodedSize(bitsPerValue));
+  }
+
+  private void decode(IndexInput in, int bitsPerValue, int[] decoded) throws IOException {
+    final int numInts = bitsPerValue * BLOCK_SIZE / 32;
+    final int[] tmp = this.tmp;
+    final byte[] encoded = this.encoded;
+    in.readBytes(encoded, 0, encodedSize(bitsPerValue));
+    for (int i = 0, j = 0; i < numInts; ++i, j += 4) {
+      tmp[i] = ((encoded[j] & 0xFF) << 24) | ((encoded[j+1] & 0xFF) << 16) | ((encoded[j+2] & 0xFF) << 8) | (encoded[j+3] & 0xFF);
+    }
+
+    final int laneBits = laneBits(bitsPerValue);
+    final int[] masks = masks(laneBits);
+    final int mask = masks[bitsPerValue];
+    int idx = 0;
+    int shift = laneBits - bitsPerValue;
+    for (; shift >= 0; shift -= bitsPerValue) {
+      shiftInts(tmp, numInts, decoded, idx, shift, mask);
+      idx += numInts;
+    }
+
+    // decode the values that were packed into the lower bits of each lane
+    final int remainingBitsPerInt = shift + bitsPerValue;
+    final int maskRemainingBitsPerInt = masks[remainingBitsPerInt];
+    final int numValues = BLOCK_SIZE * laneBits / 32;
+    int tmpIdx = 0;
+    int remainingBits = remainingBitsPerInt;
+    for (; idx < numValues; ++idx) {
+      int b = bitsPerValue - remainingBits;
+      int l = (tmp[tmpIdx++] & masks[remainingBits]) << b;
+      while (b >= remainingBitsPerInt) {
+        b -= remainingBitsPerInt;
+        l |= (tmp[tmpIdx++] & maskRemainingBitsPerInt) << b;
+      }
+      if (b > 0) {
+        l |= (tmp[tmpIdx] >>> (remainingBitsPerInt - b)) & masks[b];
+        remainingBits = remainingBitsPerInt - b;
+      } else {
+        remainingBits = remainingBitsPerInt;
+      }
+      decoded[idx] = l;
+    }
+
+    expand(decoded, laneBits);
+  }
+
+  private static void shiftInts(int[] a, int count, int[] b, int bi, int shift, int mask) {
+    for (int i = 0; i < count; ++i) {
+      b[bi + i] = (a[i] >>> shift) & mask;
+    }
+  }
+
+  /** Collapse values into lanes of {@code laneBits} bits and return the
+   *  number of ints that hold them. */
+  private static int collapse(int[] a, int laneBits) {
+    switch (laneBits) {
+      case 8:
+        for (int i = 0; i < 32; ++i) {
+          a[i] = (a[i] << 24) | (a[32+i] << 16) | (a[64+i] << 8) | a[96+i];
+        }
+        return 32;
+      case 16:
+        for (int i = 0; i < 64; ++i) {
+          a[i] = (a[i] << 16) | a[64+i];
+        }
+        return 64;
+      default:
+        return BLOCK_SIZE;
+    }
+  }
+
+  /** Reverse operation of {@link #collapse}. */
+  private static void expand(int[] a, int laneBits) {
+    switch (laneBits) {
+      case 8:
+        for (int i = 0; i < 32; ++i) {
+          final int l = a[i];
+          a[i] = l >>> 24;
+          a[32+i] = (l >>> 16) & 0xFF;
+          a[64+i] = (l >>> 8) & 0xFF;
+          a[96+i] = l & 0xFF;
+        }
+        break;
+      case 16:
+        for (int i = 0; i < 64; ++i) {
+          final int l = a[i];
+          a[i] = l >>> 16;
+          a[64+i] = l & 0xFFFF;
+        }
+        break;
+    }
+  }
+
+  /**
+   * Replace the deltas of a full block with absolute values. Each quarter of
+   * the block is summed up independently, which shortens dependency chains,
+   * and then the sums of the previous quarters are added with loops that can
+   * be vectorized.
+   */
+  static void prefixSum(int[] a, int base) {
+    final int quarter = BLOCK_SIZE / 4;
+    a[0] += base;
+    for (int i = 1; i < quarter; ++i) {
+      a[i] += a[i-1];
+      a[quarter+i] += a[quarter+i-1];
+      a[2*quarter+i] += a[2*quarter+i-1];
+      a[3*quarter+i] += a[3*quarter+i-1];
+    }
+    for (int q = 1; q < 4; ++q) {
+      final int start = q * quarter;
+      final int sum = a[start - 1];
+      for (int i = start; i < start + quarter; ++i) {
+        a[i] += sum;
+      }
+    }
+  }
+
+  /**
+   * Replace the first {@code count} deltas of {@code a} with absolute values.
+   */
+  static void prefixSum(int[] a, int count, int base) {
+    int sum = base;
+    for (int i = 0; i < count; ++i) {
+      sum += a[i];
+      a[i] = sum;
+    }
+  }
+
+  /** Number of bytes of a block whose values require {@code bitsPerValue} bits. */
+  private static int encodedSize(int bitsPerValue) {
+    return bitsPerValue * BLOCK_SIZE / 8;
+  }
+
+  private static boolean isAllEqual(final int[] data) {
+    final int v = data[0];
+    for (int i = 1; i < BLOCK_SIZE; ++i) {
+      if (data[i] != v) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compute the number of bits required to serialize any of the ints in
+   * <code>data</code>.
+   */
+  private static int bitsRequired(final int[] data) {
+    long or = 0;
+    for (int i = 0; i < BLOCK_SIZE; ++i) {
+      assert data[i] >= 0;
+      or |= data[i];
+    }
+    return PackedInts.bitsRequired(or);
+  }
+
+}
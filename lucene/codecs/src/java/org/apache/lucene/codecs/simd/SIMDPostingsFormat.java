@@ -0,0 +1,200 @@
+package org.apache.lucene.codecs.simd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.codecs.PostingsWriterBase;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Postings format whose blocks are laid out so that they can be decoded with
+ * vectorized instructions.
+ * <p>
+ * The files and the structure of the postings lists are the same as
+ * {@link Lucene50PostingsFormat}'s: doc deltas, freqs, position deltas,
+ * payload lengths and offsets are written in packed blocks of
+ * {@value #BLOCK_SIZE} values, followed by a vInt-encoded last block, and
+ * skip data is recorded every {@value #BLOCK_SIZE} documents. The
+ * differences are:
+ * <ul>
+ *   <li>Packed blocks are not encoded with
+ *   {@link org.apache.lucene.util.packed.PackedInts} but with a vertical
+ *   layout: values are first grouped into 8, 16 or 32 bits lanes of ints
+ *   depending on the number of bits per value, and the i-th int of the block
+ *   stores the bits of values whose index is congruent to i modulo the
+ *   number of ints of the block. Decoding a block is a sequence of loops that
+ *   apply the same shift and mask to consecutive ints, which the JIT compiles
+ *   to SIMD instructions.
+ *   <li>Doc deltas are turned into doc IDs a whole block at a time, through a
+ *   prefix sum whose dependency chains are 4 times shorter than when adding
+ *   deltas one document at a time.
+ * </ul>
+ * Compression is the same as with {@link Lucene50PostingsFormat}: a block
+ * that requires {@code b} bits per value takes {@code 16*b} bytes.
+ * <p>
+ * This format can be used for some fields only through
+ * {@link org.apache.lucene.codecs.perfield.PerFieldPostingsFormat}, under the
+ * name {@code "SIMD"}.
+ *
+ * @lucene.experimental
+ */
+public final class SIMDPostingsFormat extends PostingsFormat {
+
+  /**
+   * Filename extension for document number, frequencies, and skip data.
+   */
+  public static final String DOC_EXTENSION = "doc";
+
+  /**
+   * Filename extension for positions.
+   */
+  public static final String POS_EXTENSION = "pos";
+
+  /**
+   * Filename extension for payloads and offsets.
+   */
+  public static final String PAY_EXTENSION = "pay";
+
+  /**
+   * Expert: The maximum number of skip levels. Smaller values result in
+   * slightly smaller indexes, but slower skipping in big posting lists.
+   */
+  static final int MAX_SKIP_LEVELS = 10;
+
+  final static String TERMS_CODEC = "SIMDPostingsWriterTerms";
+  final static String DOC_CODEC = "SIMDPostingsWriterDoc";
+  final static String POS_CODEC = "SIMDPostingsWriterPos";
+  final static String PAY_CODEC = "SIMDPostingsWriterPay";
+
+  // Increment version to change it
+  final static int VERSION_START = 0;
+  final static int VERSION_CURRENT = VERSION_START;
+
+  private final int minTermBlockSize;
+  private final int maxTermBlockSize;
+
+  /**
+   * Fixed packed block size, number of integers encoded in
+   * a single packed block.
+   */
+  // NOTE: must be a multiple of 32 because of the 8-bits lanes
+  public final static int BLOCK_SIZE = 128;
+
+  /** Creates {@code SIMDPostingsFormat} with default
+   *  settings. */
+  public SIMDPostingsFormat() {
+    this(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
+  }
+
+  /** Creates {@code SIMDPostingsFormat} with custom
+   *  values for {@code minBlockSize} and {@code
+   *  maxBlockSize} passed to block terms dictionary.
+   *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
+  public SIMDPostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    super("SIMD");
+    BlockTreeTermsWriter.validateSettings(minTermBlockSize, maxTermBlockSize);
+    this.minTermBlockSize = minTermBlockSize;
+    this.maxTermBlockSize = maxTermBlockSize;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(blocksize=" + BLOCK_SIZE + ")";
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    PostingsWriterBase postingsWriter = new SIMDPostingsWriter(state);
+
+    boolean success = false;
+    try {
+      FieldsConsumer ret = new BlockTreeTermsWriter(state,
+                                                    postingsWriter,
+                                                    minTermBlockSize,
+                                                    maxTermBlockSize);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsWriter);
+      }
+    }
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    PostingsReaderBase postingsReader = new SIMDPostingsReader(state);
+    boolean success = false;
+    try {
+      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsReader);
+      }
+    }
+  }
+
+  final static class IntBlockTermState extends BlockTermState {
+    long docStartFP = 0;
+    long posStartFP = 0;
+    long payStartFP = 0;
+    long skipOffset = -1;
+    long lastPosBlockOffset = -1;
+    // docid when there is a single pulsed posting, otherwise -1
+    // freq is always implicitly totalTermFreq in this case.
+    int singletonDocID = -1;
+
+    @Override
+    public IntBlockTermState clone() {
+      IntBlockTermState other = new IntBlockTermState();
+      other.copyFrom(this);
+      return other;
+    }
+
+    @Override
+    public void copyFrom(TermState _other) {
+      super.copyFrom(_other);
+      IntBlockTermState other = (IntBlockTermState) _other;
+      docStartFP = other.docStartFP;
+      posStartFP = other.posStartFP;
+      payStartFP = other.payStartFP;
+      lastPosBlockOffset = other.lastPosBlockOffset;
+      skipOffset = other.skipOffset;
+      singletonDocID = other.singletonDocID;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + " docStartFP=" + docStartFP + " posStartFP=" + posStartFP + " payStartFP=" + payStartFP + " lastPosBlockOffset=" + lastPosBlockOffset + " singletonDocID=" + singletonDocID;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.SegmentInfoFormat;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.NormsFormat;
+import org.apache.lucene.codecs.PointsFormat;
 import org.apache.lucene.codecs.StoredFieldsFormat;
 import org.apache.lucene.codecs.TermVectorsFormat;
 
@@ -44,6 +45,7 @@ public final class SimpleTextCodec extends Codec {
   private final LiveDocsFormat liveDocs = new SimpleTextLiveDocsFormat();
   private final DocValuesFormat dvFormat = new SimpleTextDocValuesFormat();
   private final CompoundFormat compoundFormat = new SimpleTextCompoundFormat();
+  private final PointsFormat pointsFormat = new SimpleTextPointsFormat();
   
   public SimpleTextCodec() {
     super("SimpleText");
@@ -93,4 +95,9 @@ public final class SimpleTextCodec extends Codec {
   public CompoundFormat compoundFormat() {
     return compoundFormat;
   }
+
+  @Override
+  public PointsFormat pointsFormat() {
+    return pointsFormat;
+  }
 }
@@ -0,0 +1,234 @@
+package org.apache.lucene.codecs.simpletext;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.BYTES_PER_DIM;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.DOC;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.DOC_COUNT;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.END;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.FIELD;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.MAX_VALUE;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.MIN_VALUE;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.NUM_DIMS;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.POINT_COUNT;
+import static org.apache.lucene.codecs.simpletext.SimpleTextPointsWriter.VALUE;
+
+/** Reads the points written by {@link SimpleTextPointsWriter} fully into heap, and
+ *  intersects by visiting every point. */
+class SimpleTextPointsReader extends PointsReader {
+
+  private final Map<String,OneField> fields = new HashMap<>();
+  private final SegmentReadState readState;
+  private final BytesRefBuilder scratch = new BytesRefBuilder();
+
+  private static class OneField {
+    int numDims;
+    int bytesPerDim;
+    byte[] minPackedValue;
+    byte[] maxPackedValue;
+    int pointCount;
+    int docCount;
+    int[] docIDs;
+    byte[] packedValues;
+  }
+
+  public SimpleTextPointsReader(SegmentReadState readState) throws IOException {
+    this.readState = readState;
+    String fileName = IndexFileNames.segmentFileName(readState.segmentInfo.name, readState.segmentSuffix, SimpleTextPointsFormat.POINT_EXTENSION);
+    // The whole file is loaded and its checksum verified up front:
+    try (ChecksumIndexInput in = readState.directory.openChecksumInput(fileName, readState.context)) {
+      while (true) {
+        readLine(in);
+        if (scratch.get().equals(END)) {
+          break;
+        }
+        String fieldName = stripPrefix(FIELD, in);
+        FieldInfo fieldInfo = readState.fieldInfos.fieldInfo(fieldName);
+        if (fieldInfo == null || fieldInfo.getPointDimensionCount() == 0) {
+          throw new CorruptIndexException("field \"" + fieldName + "\" was not indexed with points", in);
+        }
+        OneField field = new OneField();
+        readLine(in);
+        field.numDims = parseInt(NUM_DIMS, in);
+        readLine(in);
+        field.bytesPerDim = parseInt(BYTES_PER_DIM, in);
+        if (field.numDims != fieldInfo.getPointDimensionCount() || field.bytesPerDim != fieldInfo.getPointNumBytes()) {
+          throw new CorruptIndexException("field \"" + fieldName + "\" dimensions do not match its FieldInfo", in);
+        }
+        int packedBytesLength = field.numDims * field.bytesPerDim;
+        readLine(in);
+        field.minPackedValue = fromHex(stripPrefix(MIN_VALUE, in), packedBytesLength, in);
+        readLine(in);
+        field.maxPackedValue = fromHex(stripPrefix(MAX_VALUE, in), packedBytesLength, in);
+        readLine(in);
+        field.pointCount = parseInt(POINT_COUNT, in);
+        readLine(in);
+        field.docCount = parseInt(DOC_COUNT, in);
+        field.docIDs = new int[field.pointCount];
+        field.packedValues = new byte[field.pointCount * packedBytesLength];
+        for(int i=0;i<field.pointCount;i++) {
+          readLine(in);
+          field.docIDs[i] = parseInt(DOC, in);
+          readLine(in);
+          byte[] value = fromHex(stripPrefix(VALUE, in), packedBytesLength, in);
+          System.arraycopy(value, 0, field.packedValues, i * packedBytesLength, packedBytesLength);
+        }
+        fields.put(fieldName, field);
+      }
+      SimpleTextUtil.checkFooter(in);
+    }
+  }
+
+  private void readLine(ChecksumIndexInput in) throws IOException {
+    SimpleTextUtil.readLine(in, scratch);
+  }
+
+  private String stripPrefix(BytesRef prefix, ChecksumIndexInput in) throws IOException {
+    if (StringHelper.startsWith(scratch.get(), prefix) == false) {
+      throw new CorruptIndexException("expected line starting with \"" + prefix.utf8ToString() + "\" but got \"" + scratch.get().utf8ToString() + "\"", in);
+    }
+    return new String(scratch.bytes(), prefix.length, scratch.length() - prefix.length, StandardCharsets.UTF_8);
+  }
+
+  private int parseInt(BytesRef prefix, ChecksumIndexInput in) throws IOException {
+    return Integer.parseInt(stripPrefix(prefix, in));
+  }
+
+  private static byte[] fromHex(String hex, int length, ChecksumIndexInput in) throws IOException {
+    if (hex.length() != 2*length) {
+      throw new CorruptIndexException("expected " + length + " hex encoded bytes but got \"" + hex + "\"", in);
+    }
+    byte[] bytes = new byte[length];
+    for(int i=0;i<length;i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2*i, 2*i+2), 16);
+    }
+    return bytes;
+  }
+
+  /** Returns the field's points, or null if this segment has no points for this (points-enabled) field. */
+  private OneField getField(String fieldName) {
+    FieldInfo fieldInfo = readState.fieldInfos.fieldInfo(fieldName);
+    if (fieldInfo == null) {
+      throw new IllegalArgumentException("field=\"" + fieldName + "\" is unrecognized");
+    }
+    if (fieldInfo.getPointDimensionCount() == 0) {
+      throw new IllegalArgumentException("field=\"" + fieldName + "\" did not index points");
+    }
+    return fields.get(fieldName);
+  }
+
+  @Override
+  public void intersect(String fieldName, IntersectVisitor visitor) throws IOException {
+    OneField field = getField(fieldName);
+    if (field == null) {
+      return;
+    }
+    Relation r = visitor.compare(field.minPackedValue.clone(), field.maxPackedValue.clone());
+    if (r == Relation.CELL_OUTSIDE_QUERY) {
+      return;
+    }
+    int packedBytesLength = field.numDims * field.bytesPerDim;
+    if (r == Relation.CELL_INSIDE_QUERY) {
+      for(int i=0;i<field.pointCount;i++) {
+        visitor.visit(field.docIDs[i]);
+      }
+    } else {
+      byte[] packedValue = new byte[packedBytesLength];
+      for(int i=0;i<field.pointCount;i++) {
+        System.arraycopy(field.packedValues, i * packedBytesLength, packedValue, 0, packedBytesLength);
+        visitor.visit(field.docIDs[i], packedValue);
+      }
+    }
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    // The checksum of the whole file was already verified when it was loaded
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes = 0;
+    for(OneField field : fields.values()) {
+      bytes += RamUsageEstimator.sizeOf(field.docIDs) + RamUsageEstimator.sizeOf(field.packedValues);
+    }
+    return bytes;
+  }
+
+  @Override
+  public void close() throws IOException {
+    fields.clear();
+  }
+
+  @Override
+  public byte[] getMinPackedValue(String fieldName) {
+    OneField field = getField(fieldName);
+    return field == null ? null : field.minPackedValue.clone();
+  }
+
+  @Override
+  public byte[] getMaxPackedValue(String fieldName) {
+    OneField field = getField(fieldName);
+    return field == null ? null : field.maxPackedValue.clone();
+  }
+
+  @Override
+  public int getNumDimensions(String fieldName) {
+    OneField field = getField(fieldName);
+    return field == null ? 0 : field.numDims;
+  }
+
+  @Override
+  public int getBytesPerDimension(String fieldName) {
+    OneField field = getField(fieldName);
+    return field == null ? 0 : field.bytesPerDim;
+  }
+
+  @Override
+  public long size(String fieldName) {
+    OneField field = getField(fieldName);
+    return field == null ? 0 : field.pointCount;
+  }
+
+  @Override
+  public int getDocCount(String fieldName) {
+    OneField field = getField(fieldName);
+    return field == null ? 0 : field.docCount;
+  }
+
+  @Override
+  public String toString() {
+    return "SimpleTextPointsReader(segment=" + readState.segmentInfo.name + " maxDoc=" + readState.segmentInfo.maxDoc() + ")";
+  }
+}
@@ -0,0 +1,192 @@
+package org.apache.lucene.codecs.simpletext;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.bkd.BKDUtil;
+
+class SimpleTextPointsWriter extends PointsWriter {
+
+  final static BytesRef END             = new BytesRef("END");
+  final static BytesRef FIELD           = new BytesRef("field ");
+  final static BytesRef NUM_DIMS        = new BytesRef("  num dims ");
+  final static BytesRef BYTES_PER_DIM   = new BytesRef("  bytes per dim ");
+  final static BytesRef MIN_VALUE       = new BytesRef("  min value ");
+  final static BytesRef MAX_VALUE       = new BytesRef("  max value ");
+  final static BytesRef POINT_COUNT     = new BytesRef("  point count ");
+  final static BytesRef DOC_COUNT       = new BytesRef("  doc count ");
+  final static BytesRef DOC             = new BytesRef("    doc ");
+  final static BytesRef VALUE           = new BytesRef("    value ");
+
+  private IndexOutput dataOut;
+  final BytesRefBuilder scratch = new BytesRefBuilder();
+  final SegmentWriteState writeState;
+
+  public SimpleTextPointsWriter(SegmentWriteState writeState) throws IOException {
+    String fileName = IndexFileNames.segmentFileName(writeState.segmentInfo.name, writeState.segmentSuffix, SimpleTextPointsFormat.POINT_EXTENSION);
+    dataOut = writeState.directory.createOutput(fileName, writeState.context);
+    this.writeState = writeState;
+  }
+
+  @Override
+  public void writeField(FieldInfo fieldInfo, PointsReader values) throws IOException {
+    final int numDims = fieldInfo.getPointDimensionCount();
+    final int bytesPerDim = fieldInfo.getPointNumBytes();
+    final int packedBytesLength = numDims * bytesPerDim;
+
+    // Buffer all points of this field; we need the min/max and counts before we write them:
+    final int[][] docIDs = new int[][] {new int[16]};
+    final byte[][] packedValues = new byte[][] {new byte[16 * packedBytesLength]};
+    final int[] pointCount = new int[1];
+    final byte[] minPackedValue = new byte[packedBytesLength];
+    final byte[] maxPackedValue = new byte[packedBytesLength];
+    final FixedBitSet docsSeen = new FixedBitSet(writeState.segmentInfo.maxDoc());
+
+    values.intersect(fieldInfo.name, new IntersectVisitor() {
+        @Override
+        public void visit(int docID) {
+          throw new IllegalStateException();
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+          int count = pointCount[0];
+          if (count == docIDs[0].length) {
+            docIDs[0] = ArrayUtil.grow(docIDs[0], count+1);
+            packedValues[0] = ArrayUtil.grow(packedValues[0], docIDs[0].length * packedBytesLength);
+          }
+          docIDs[0][count] = docID;
+          System.arraycopy(packedValue, 0, packedValues[0], count * packedBytesLength, packedBytesLength);
+          if (count == 0) {
+            System.arraycopy(packedValue, 0, minPackedValue, 0, packedBytesLength);
+            System.arraycopy(packedValue, 0, maxPackedValue, 0, packedBytesLength);
+          } else {
+            for(int dim=0;dim<numDims;dim++) {
+              int offset = dim*bytesPerDim;
+              if (BKDUtil.compare(bytesPerDim, packedValue, dim, minPackedValue, dim) < 0) {
+                System.arraycopy(packedValue, offset, minPackedValue, offset, bytesPerDim);
+              }
+              if (BKDUtil.compare(bytesPerDim, packedValue, dim, maxPackedValue, dim) > 0) {
+                System.arraycopy(packedValue, offset, maxPackedValue, offset, bytesPerDim);
+              }
+            }
+          }
+          docsSeen.set(docID);
+          pointCount[0]++;
+        }
+
+        @Override
+        public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+          return Relation.CELL_CROSSES_QUERY;
+        }
+      });
+
+    if (pointCount[0] == 0) {
+      // All docs with this field were deleted before a merge: we don't record the field at all
+      return;
+    }
+
+    write(FIELD);
+    write(fieldInfo.name);
+    newline();
+
+    write(NUM_DIMS);
+    write(Integer.toString(numDims));
+    newline();
+
+    write(BYTES_PER_DIM);
+    write(Integer.toString(bytesPerDim));
+    newline();
+
+    write(MIN_VALUE);
+    write(toHex(minPackedValue, 0, packedBytesLength));
+    newline();
+
+    write(MAX_VALUE);
+    write(toHex(maxPackedValue, 0, packedBytesLength));
+    newline();
+
+    write(POINT_COUNT);
+    write(Integer.toString(pointCount[0]));
+    newline();
+
+    write(DOC_COUNT);
+    write(Integer.toString(docsSeen.cardinality()));
+    newline();
+
+    for(int i=0;i<pointCount[0];i++) {
+      write(DOC);
+      write(Integer.toString(docIDs[0][i]));
+      newline();
+      write(VALUE);
+      write(toHex(packedValues[0], i * packedBytesLength, packedBytesLength));
+      newline();
+    }
+  }
+
+  /** Encodes the bytes as fixed-width lower-case hex digits. */
+  static String toHex(byte[] bytes, int offset, int length) {
+    StringBuilder sb = new StringBuilder(2*length);
+    for(int i=0;i<length;i++) {
+      sb.append(String.format(Locale.ROOT, "%02x", bytes[offset+i] & 0xff));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void finish() throws IOException {
+    write(END);
+    newline();
+    SimpleTextUtil.writeChecksum(dataOut, scratch);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (dataOut != null) {
+      IOUtils.close(dataOut);
+      dataOut = null;
+    }
+  }
+
+  private void write(String s) throws IOException {
+    SimpleTextUtil.write(dataOut, s, scratch);
+  }
+
+  private void write(BytesRef b) throws IOException {
+    SimpleTextUtil.write(dataOut, b);
+  }
+
+  private void newline() throws IOException {
+    SimpleTextUtil.writeNewline(dataOut);
+  }
+}
@@ -31,6 +31,8 @@ import org.apache.lucene.codecs.SegmentInfoFormat;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.store.ChecksumIndexInput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
@@ -59,6 +61,11 @@ public class SimpleTextSegmentInfoFormat extends SegmentInfoFormat {
   final static BytesRef SI_NUM_FILES        = new BytesRef("    files ");
   final static BytesRef SI_FILE             = new BytesRef("      file ");
   final static BytesRef SI_ID               = new BytesRef("    id ");
+  final static BytesRef SI_SORT             = new BytesRef("    sort ");
+  final static BytesRef SI_SORT_FIELD       = new BytesRef("      field ");
+  final static BytesRef SI_SORT_TYPE        = new BytesRef("      type ");
+  final static BytesRef SI_SORT_REVERSE     = new BytesRef("      reverse ");
+  final static BytesRef SI_SORT_MISSING     = new BytesRef("      missing ");
 
   public static final String SI_EXTENSION = "si";
   
@@ -137,15 +144,81 @@ public class SimpleTextSegmentInfoFormat extends SegmentInfoFormat {
                                                         + ", got: " + StringHelper.idToString(id), input);
       }
 
+      SimpleTextUtil.readLine(input, scratch);
+      assert StringHelper.startsWith(scratch.get(), SI_SORT);
+      final int numSortFields = Integer.parseInt(readString(SI_SORT.length, scratch));
+      final Sort indexSort;
+      if (numSortFields == 0) {
+        indexSort = null;
+      } else {
+        SortField[] sortFields = new SortField[numSortFields];
+        for (int i = 0; i < numSortFields; ++i) {
+          SimpleTextUtil.readLine(input, scratch);
+          assert StringHelper.startsWith(scratch.get(), SI_SORT_FIELD);
+          final String field = readString(SI_SORT_FIELD.length, scratch);
+
+          SimpleTextUtil.readLine(input, scratch);
+          assert StringHelper.startsWith(scratch.get(), SI_SORT_TYPE);
+          final SortField.Type type;
+          try {
+            type = SortField.Type.valueOf(readString(SI_SORT_TYPE.length, scratch));
+          } catch (IllegalArgumentException e) {
+            throw new CorruptIndexException("invalid index sort field type", input, e);
+          }
+
+          SimpleTextUtil.readLine(input, scratch);
+          assert StringHelper.startsWith(scratch.get(), SI_SORT_REVERSE);
+          final boolean reverse = Boolean.parseBoolean(readString(SI_SORT_REVERSE.length, scratch));
+
+          SimpleTextUtil.readLine(input, scratch);
+          assert StringHelper.startsWith(scratch.get(), SI_SORT_MISSING);
+          final String missing = readString(SI_SORT_MISSING.length, scratch);
+
+          sortFields[i] = new SortField(field, type, reverse);
+          if (missing.equals("null") == false) {
+            sortFields[i].setMissingValue(parseMissingValue(type, missing, input));
+          }
+        }
+        indexSort = new Sort(sortFields);
+      }
+
       SimpleTextUtil.checkFooter(input);
 
       SegmentInfo info = new SegmentInfo(directory, version, segmentName, docCount,
-                                         isCompoundFile, null, Collections.unmodifiableMap(diagnostics), id, Collections.unmodifiableMap(attributes));
+                                         isCompoundFile, null, Collections.unmodifiableMap(diagnostics), id, Collections.unmodifiableMap(attributes),
+                                         indexSort);
       info.setFiles(files);
       return info;
     }
   }
 
+  private static Object parseMissingValue(SortField.Type type, String missing, ChecksumIndexInput input) throws IOException {
+    try {
+      switch (type) {
+        case STRING:
+          if (missing.equals("first")) {
+            return SortField.STRING_FIRST;
+          } else if (missing.equals("last")) {
+            return SortField.STRING_LAST;
+          }
+          break;
+        case INT:
+          return Integer.parseInt(missing);
+        case LONG:
+          return Long.parseLong(missing);
+        case FLOAT:
+          return Float.parseFloat(missing);
+        case DOUBLE:
+          return Double.parseDouble(missing);
+        default:
+          break;
+      }
+    } catch (NumberFormatException e) {
+      throw new CorruptIndexException("invalid missing value: " + missing, input, e);
+    }
+    throw new CorruptIndexException("invalid missing value for type " + type + ": " + missing, input);
+  }
+
   private String readString(int offset, BytesRefBuilder scratch) {
     return new String(scratch.bytes(), offset, scratch.length()-offset, StandardCharsets.UTF_8);
   }
@@ -221,6 +294,40 @@ public class SimpleTextSegmentInfoFormat extends SegmentInfoFormat {
       SimpleTextUtil.write(output, SI_ID);
       SimpleTextUtil.write(output, new BytesRef(si.getId()));
       SimpleTextUtil.writeNewline(output);
+
+      Sort indexSort = si.getIndexSort();
+      SortField[] sortFields = indexSort == null ? new SortField[0] : indexSort.getSort();
+      SimpleTextUtil.write(output, SI_SORT);
+      SimpleTextUtil.write(output, Integer.toString(sortFields.length), scratch);
+      SimpleTextUtil.writeNewline(output);
+      for (SortField sortField : sortFields) {
+        SimpleTextUtil.write(output, SI_SORT_FIELD);
+        SimpleTextUtil.write(output, sortField.getField(), scratch);
+        SimpleTextUtil.writeNewline(output);
+
+        SimpleTextUtil.write(output, SI_SORT_TYPE);
+        SimpleTextUtil.write(output, sortField.getType().name(), scratch);
+        SimpleTextUtil.writeNewline(output);
+
+        SimpleTextUtil.write(output, SI_SORT_REVERSE);
+        SimpleTextUtil.write(output, Boolean.toString(sortField.getReverse()), scratch);
+        SimpleTextUtil.writeNewline(output);
+
+        final Object missingValue = sortField.missingValue;
+        final String missing;
+        if (missingValue == null) {
+          missing = "null";
+        } else if (missingValue == SortField.STRING_FIRST) {
+          missing = "first";
+        } else if (missingValue == SortField.STRING_LAST) {
+          missing = "last";
+        } else {
+          missing = missingValue.toString();
+        }
+        SimpleTextUtil.write(output, SI_SORT_MISSING);
+        SimpleTextUtil.write(output, missing, scratch);
+        SimpleTextUtil.writeNewline(output);
+      }
       
       SimpleTextUtil.writeChecksum(output, scratch);
     }
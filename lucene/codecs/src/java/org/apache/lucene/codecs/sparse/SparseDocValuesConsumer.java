@@ -0,0 +1,298 @@
+package org.apache.lucene.codecs.sparse;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BITSET_WORDS;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BLOCK_MASK;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BLOCK_SIZE;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.DENSE;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.EMPTY;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.MAX_SPARSE_BLOCK_COUNT;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.SPARSE;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.WORDS_PER_RANK;
+
+/** Writer for {@link SparseDocValuesFormat} */
+class SparseDocValuesConsumer extends DocValuesConsumer {
+
+  private final DocValuesConsumer delegate;
+  private final float maxSparseDensity;
+  private final int maxDoc;
+  private final FixedBitSet block = new FixedBitSet(BLOCK_SIZE);
+  IndexOutput data, meta;
+
+  SparseDocValuesConsumer(SegmentWriteState state, DocValuesConsumer delegate, float maxSparseDensity) throws IOException {
+    this.delegate = delegate;
+    this.maxSparseDensity = maxSparseDensity;
+    this.maxDoc = state.segmentInfo.maxDoc();
+    boolean success = false;
+    try {
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, SparseDocValuesFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeIndexHeader(data, SparseDocValuesFormat.DATA_CODEC, SparseDocValuesFormat.VERSION_CURRENT,
+                                 state.segmentInfo.getId(), state.segmentSuffix);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, SparseDocValuesFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeIndexHeader(meta, SparseDocValuesFormat.META_CODEC, SparseDocValuesFormat.VERSION_CURRENT,
+                                 state.segmentInfo.getId(), state.segmentSuffix);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void addNumericField(FieldInfo field, Iterable<Number> values) throws IOException {
+    switch (addDocIndex(field, values, null)) {
+      case DENSE:
+        delegate.addNumericField(field, values);
+        break;
+      case SPARSE:
+        delegate.addNumericField(field, without(values, null));
+        break;
+    }
+  }
+
+  @Override
+  public void addBinaryField(FieldInfo field, Iterable<BytesRef> values) throws IOException {
+    switch (addDocIndex(field, values, null)) {
+      case DENSE:
+        delegate.addBinaryField(field, values);
+        break;
+      case SPARSE:
+        delegate.addBinaryField(field, without(values, null));
+        break;
+    }
+  }
+
+  @Override
+  public void addSortedField(FieldInfo field, Iterable<BytesRef> values, Iterable<Number> docToOrd) throws IOException {
+    switch (addDocIndex(field, docToOrd, -1)) {
+      case DENSE:
+        delegate.addSortedField(field, values, docToOrd);
+        break;
+      case SPARSE:
+        delegate.addSortedField(field, values, without(docToOrd, -1));
+        break;
+    }
+  }
+
+  @Override
+  public void addSortedNumericField(FieldInfo field, Iterable<Number> docToValueCount, Iterable<Number> values) throws IOException {
+    switch (addDocIndex(field, docToValueCount, 0)) {
+      case DENSE:
+        delegate.addSortedNumericField(field, docToValueCount, values);
+        break;
+      case SPARSE:
+        delegate.addSortedNumericField(field, withoutEmptyDocs(docToValueCount), values);
+        break;
+    }
+  }
+
+  @Override
+  public void addSortedSetField(FieldInfo field, Iterable<BytesRef> values, Iterable<Number> docToOrdCount, Iterable<Number> ords) throws IOException {
+    switch (addDocIndex(field, docToOrdCount, 0)) {
+      case DENSE:
+        delegate.addSortedSetField(field, values, docToOrdCount, ords);
+        break;
+      case SPARSE:
+        delegate.addSortedSetField(field, values, withoutEmptyDocs(docToOrdCount), ords);
+        break;
+    }
+  }
+
+  private static boolean hasValue(Object value, Integer missing) {
+    if (missing == null) {
+      return value != null;
+    } else {
+      return ((Number) value).intValue() != missing.intValue();
+    }
+  }
+
+  /**
+   * Writes how the field is stored, and the docID to index structure if it
+   * is sparse. Documents have a value unless their per-document value is
+   * <code>null</code>, or equal to <code>missing</code> if not <code>null</code>.
+   */
+  private byte addDocIndex(FieldInfo field, Iterable<?> docValues, Integer missing) throws IOException {
+    int numDocsWithValue = 0;
+    for (Object value : docValues) {
+      if (hasValue(value, missing)) {
+        numDocsWithValue++;
+      }
+    }
+
+    meta.writeVInt(field.number);
+    final byte kind;
+    if (numDocsWithValue == 0) {
+      kind = EMPTY;
+    } else if (numDocsWithValue > (double) maxSparseDensity * maxDoc) {
+      kind = DENSE;
+    } else {
+      kind = SPARSE;
+    }
+    meta.writeByte(kind);
+    if (kind != SPARSE) {
+      return kind;
+    }
+
+    meta.writeLong(data.getFilePointer());
+    int doc = 0;
+    for (Object value : docValues) {
+      if (hasValue(value, missing)) {
+        block.set(doc & BLOCK_MASK);
+      }
+      doc++;
+      if ((doc & BLOCK_MASK) == 0 || doc == maxDoc) {
+        writeBlock(Math.min(BLOCK_SIZE, maxDoc - ((doc - 1) & ~BLOCK_MASK)));
+      }
+    }
+    assert doc == maxDoc;
+    return kind;
+  }
+
+  private void writeBlock(int blockDocs) throws IOException {
+    final int count = block.cardinality();
+    meta.writeVInt(count);
+    if (count == 0 || count == blockDocs) {
+      // nothing to write
+    } else if (count <= MAX_SPARSE_BLOCK_COUNT) {
+      for (int i = block.nextSetBit(0); i != DocIdSetIterator.NO_MORE_DOCS; i = i + 1 >= BLOCK_SIZE ? DocIdSetIterator.NO_MORE_DOCS : block.nextSetBit(i + 1)) {
+        data.writeShort((short) i);
+      }
+    } else {
+      final long[] words = block.getBits();
+      int rank = 0;
+      for (int i = 0; i < BITSET_WORDS; i++) {
+        if (i % WORDS_PER_RANK == 0) {
+          data.writeShort((short) rank);
+        }
+        rank += Long.bitCount(words[i]);
+      }
+      for (int i = 0; i < BITSET_WORDS; i++) {
+        data.writeLong(words[i]);
+      }
+    }
+    block.clear(0, BLOCK_SIZE);
+  }
+
+  /**
+   * Returns the value counts of the documents that have values. The delegate
+   * sizes the addresses of multi-valued fields by maxDoc, so these are padded
+   * with documents without values up to maxDoc.
+   */
+  private Iterable<Number> withoutEmptyDocs(Iterable<Number> docToValueCount) {
+    if (isSingleValued(docToValueCount)) {
+      return without(docToValueCount, 0);
+    }
+    final Iterable<Number> counts = without(docToValueCount, 0);
+    return new Iterable<Number>() {
+      @Override
+      public Iterator<Number> iterator() {
+        final Iterator<Number> in = counts.iterator();
+        return new Iterator<Number>() {
+          int upto;
+
+          @Override
+          public boolean hasNext() {
+            return upto < maxDoc;
+          }
+
+          @Override
+          public Number next() {
+            if (upto++ >= maxDoc) {
+              throw new NoSuchElementException();
+            }
+            return in.hasNext() ? in.next() : 0;
+          }
+        };
+      }
+    };
+  }
+
+  /** Returns a view of <code>values</code> that skips documents that have no value. */
+  private static <T> Iterable<T> without(final Iterable<T> values, final Integer missing) {
+    return new Iterable<T>() {
+      @Override
+      public Iterator<T> iterator() {
+        final Iterator<T> in = values.iterator();
+        return new Iterator<T>() {
+          // values may be reused by the source iterator, so do not look ahead until hasNext is called
+          T next;
+          boolean nextIsSet;
+
+          @Override
+          public boolean hasNext() {
+            while (nextIsSet == false && in.hasNext()) {
+              next = in.next();
+              nextIsSet = hasValue(next, missing);
+            }
+            return nextIsSet;
+          }
+
+          @Override
+          public T next() {
+            if (hasNext() == false) {
+              throw new NoSuchElementException();
+            }
+            nextIsSet = false;
+            return next;
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeVInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(data, meta, delegate);
+      } else {
+        IOUtils.closeWhileHandlingException(data, meta, delegate);
+      }
+      meta = data = null;
+    }
+  }
+}
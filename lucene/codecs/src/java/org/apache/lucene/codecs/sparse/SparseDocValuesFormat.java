@@ -0,0 +1,122 @@
+package org.apache.lucene.codecs.sparse;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.lucene50.Lucene50DocValuesFormat;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+
+/**
+ * Doc values format that stores sparse fields as a docID to value index
+ * plus the values of the documents that have one.
+ * <p>
+ * Values are encoded with {@link Lucene50DocValuesFormat}. A field where at
+ * most <code>maxSparseDensity</code> of the documents have a value only gives
+ * the values of these documents to the delegate, and records which documents
+ * have a value in blocks of 65536 documents. Each block is encoded
+ * depending on how many documents it holds:
+ * <ul>
+ *   <li>no document: nothing is written,</li>
+ *   <li>all documents: nothing is written, the index is the document's offset in the block,</li>
+ *   <li>more than 4096 documents: a bitset of 1024 longs, with the number of bits
+ *       set before every 8th long so that the index is computed with at most 8
+ *       {@link Long#bitCount(long) popcounts},</li>
+ *   <li>otherwise: the sorted list of document offsets as shorts, which is binary
+ *       searched, or scanned forward when documents are visited in order.</li>
+ * </ul>
+ * Denser fields are given as-is to the delegate, so they keep its random access speed.
+ * <p>
+ * Files:
+ * <ol>
+ *   <li><tt>.sdvd</tt>: per-field block data</li>
+ *   <li><tt>.sdvm</tt>: per-field encoding and per-block document counts</li>
+ *   <li>the <tt>.dvd</tt> and <tt>.dvm</tt> files of the delegate</li>
+ * </ol>
+ * @lucene.experimental
+ */
+public final class SparseDocValuesFormat extends DocValuesFormat {
+
+  /** Default value for the maximum ratio of documents with a value of sparse fields. */
+  public static final float DEFAULT_MAX_SPARSE_DENSITY = 0.1f;
+
+  private final float maxSparseDensity;
+  private final DocValuesFormat delegate = new Lucene50DocValuesFormat();
+
+  /** Creates a format with {@link #DEFAULT_MAX_SPARSE_DENSITY}. */
+  public SparseDocValuesFormat() {
+    this(DEFAULT_MAX_SPARSE_DENSITY);
+  }
+
+  /**
+   * Creates a format that stores fields sparsely when the ratio of documents that
+   * have a value is at most <code>maxSparseDensity</code>, between 0 and 1.
+   */
+  public SparseDocValuesFormat(float maxSparseDensity) {
+    super("Sparse");
+    if (maxSparseDensity < 0 || maxSparseDensity > 1 || Float.isNaN(maxSparseDensity)) {
+      throw new IllegalArgumentException("maxSparseDensity must be between 0 and 1, got: " + maxSparseDensity);
+    }
+    this.maxSparseDensity = maxSparseDensity;
+  }
+
+  @Override
+  public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new SparseDocValuesConsumer(state, delegate.fieldsConsumer(state), maxSparseDensity);
+  }
+
+  @Override
+  public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new SparseDocValuesProducer(state, delegate.fieldsProducer(state));
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(maxSparseDensity=" + maxSparseDensity + ")";
+  }
+
+  static final String DATA_CODEC = "SparseDocValuesData";
+  static final String DATA_EXTENSION = "sdvd";
+  static final String META_CODEC = "SparseDocValuesMetadata";
+  static final String META_EXTENSION = "sdvm";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Values are all given to the delegate. */
+  static final byte DENSE = 0;
+  /** Only the values of documents that have one are given to the delegate. */
+  static final byte SPARSE = 1;
+  /** No document has a value, the delegate knows nothing about the field. */
+  static final byte EMPTY = 2;
+
+  static final int BLOCK_SHIFT = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  /** Blocks with more documents than this are written as bitsets. */
+  static final int MAX_SPARSE_BLOCK_COUNT = BLOCK_SIZE >>> 4;
+  /** Number of longs between two ranks of a bitset block. */
+  static final int WORDS_PER_RANK = 8;
+  static final int BITSET_WORDS = BLOCK_SIZE >>> 6;
+  /** Bytes taken by the ranks of a bitset block, which precede its longs. */
+  static final int RANKS_BYTES = (BITSET_WORDS / WORDS_PER_RANK) * Short.BYTES;
+  static final int BITSET_BLOCK_BYTES = RANKS_BYTES + BITSET_WORDS * Long.BYTES;
+}
@@ -0,0 +1,554 @@
+package org.apache.lucene.codecs.sparse;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BITSET_BLOCK_BYTES;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BLOCK_MASK;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BLOCK_SHIFT;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.BLOCK_SIZE;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.DENSE;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.EMPTY;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.MAX_SPARSE_BLOCK_COUNT;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.RANKS_BYTES;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.SPARSE;
+import static org.apache.lucene.codecs.sparse.SparseDocValuesFormat.WORDS_PER_RANK;
+
+/** Reader for {@link SparseDocValuesFormat} */
+class SparseDocValuesProducer extends DocValuesProducer {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(SparseDocValuesProducer.class);
+
+  private final Map<Integer,FieldEntry> fields = new HashMap<>();
+  private final DocValuesProducer delegate;
+  private final IndexInput data;
+  private final int maxDoc;
+  private final long ramBytesUsed;
+
+  SparseDocValuesProducer(SegmentReadState state, DocValuesProducer delegate) throws IOException {
+    this.delegate = delegate;
+    this.maxDoc = state.segmentInfo.maxDoc();
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, SparseDocValuesFormat.META_EXTENSION);
+    long ramBytesUsed = BASE_RAM_BYTES_USED;
+
+    boolean success = false;
+    try {
+      int version = -1;
+      try (ChecksumIndexInput in = state.directory.openChecksumInput(metaName, state.context)) {
+        Throwable priorE = null;
+        try {
+          version = CodecUtil.checkIndexHeader(in, SparseDocValuesFormat.META_CODEC,
+                                               SparseDocValuesFormat.VERSION_START, SparseDocValuesFormat.VERSION_CURRENT,
+                                               state.segmentInfo.getId(), state.segmentSuffix);
+          ramBytesUsed += readFields(in, state.fieldInfos);
+        } catch (Throwable exception) {
+          priorE = exception;
+        } finally {
+          CodecUtil.checkFooter(in, priorE);
+        }
+      }
+
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, SparseDocValuesFormat.DATA_EXTENSION);
+      data = state.directory.openInput(dataName, state.context);
+      final int version2 = CodecUtil.checkIndexHeader(data, SparseDocValuesFormat.DATA_CODEC,
+                                                      SparseDocValuesFormat.VERSION_START, SparseDocValuesFormat.VERSION_CURRENT,
+                                                      state.segmentInfo.getId(), state.segmentSuffix);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch: meta=" + version + ", data=" + version2, data);
+      }
+
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer: which looks
+      // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+      // such as file truncation.
+      CodecUtil.retrieveChecksum(data);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+    this.ramBytesUsed = ramBytesUsed;
+  }
+
+  private long readFields(IndexInput meta, FieldInfos infos) throws IOException {
+    final int numBlocks = (maxDoc + BLOCK_MASK) >>> BLOCK_SHIFT;
+    long ramBytesUsed = 0;
+    for (int fieldNumber = meta.readVInt(); fieldNumber != -1; fieldNumber = meta.readVInt()) {
+      FieldInfo info = infos.fieldInfo(fieldNumber);
+      if (info == null) {
+        throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+      }
+      final byte kind = meta.readByte();
+      final FieldEntry entry;
+      if (kind == DENSE || kind == EMPTY) {
+        entry = new FieldEntry(kind, 0, null, null);
+      } else if (kind == SPARSE) {
+        final long offset = meta.readLong();
+        final int[] firstIndex = new int[numBlocks + 1];
+        final long[] blockOffsets = new long[numBlocks];
+        long blockOffset = 0;
+        for (int block = 0; block < numBlocks; block++) {
+          final int count = meta.readVInt();
+          if (count < 0 || count > blockDocs(block)) {
+            throw new CorruptIndexException("Invalid number of documents in block " + block + " of field " + info.name + ": " + count, meta);
+          }
+          firstIndex[block + 1] = firstIndex[block] + count;
+          blockOffsets[block] = blockOffset;
+          blockOffset += blockBytes(block, count);
+        }
+        entry = new FieldEntry(kind, offset, firstIndex, blockOffsets);
+        entry.length = blockOffset;
+        ramBytesUsed += RamUsageEstimator.sizeOf(firstIndex) + RamUsageEstimator.sizeOf(blockOffsets);
+      } else {
+        throw new CorruptIndexException("Invalid encoding for field " + info.name + ": " + kind, meta);
+      }
+      fields.put(fieldNumber, entry);
+    }
+    return ramBytesUsed;
+  }
+
+  private int blockDocs(int block) {
+    return Math.min(BLOCK_SIZE, maxDoc - (block << BLOCK_SHIFT));
+  }
+
+  private int blockBytes(int block, int count) {
+    if (count == 0 || count == blockDocs(block)) {
+      return 0;
+    } else if (count <= MAX_SPARSE_BLOCK_COUNT) {
+      return count * Short.BYTES;
+    } else {
+      return BITSET_BLOCK_BYTES;
+    }
+  }
+
+  /** Per-field encoding, and for sparse fields, where the blocks of the docID to index structure are. */
+  private static class FieldEntry {
+    final byte kind;
+    final long offset;
+    long length;
+    /** Index of the first document of each block, plus the number of documents with a value as a last entry. */
+    final int[] firstIndex;
+    /** Offset of each block in the slice that holds the field. */
+    final long[] blockOffsets;
+
+    FieldEntry(byte kind, long offset, int[] firstIndex, long[] blockOffsets) {
+      this.kind = kind;
+      this.offset = offset;
+      this.firstIndex = firstIndex;
+      this.blockOffsets = blockOffsets;
+    }
+  }
+
+  /**
+   * Maps docIDs to the index of their value in the delegate, or -1 if they
+   * have no value. Instances are not thread-safe: they remember where the
+   * previous lookup ended, so that documents that are visited in order scan
+   * sparse blocks forward instead of binary searching them.
+   */
+  private final class DocIndex {
+    private final FieldEntry entry;
+    private final RandomAccessInput slice;
+    private int lastBlock = -1;
+    private int lastDocInBlock;
+    /** Position of the first document of <code>lastBlock</code> that is greater than or equal to <code>lastDocInBlock</code>. */
+    private int lastPos;
+
+    DocIndex(FieldEntry entry) throws IOException {
+      this.entry = entry;
+      this.slice = data.randomAccessSlice(entry.offset, entry.length);
+    }
+
+    int index(int doc) {
+      try {
+        return doIndex(doc);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private int doIndex(int doc) throws IOException {
+      final int block = doc >>> BLOCK_SHIFT;
+      final int firstIndex = entry.firstIndex[block];
+      final int count = entry.firstIndex[block + 1] - firstIndex;
+      final int docInBlock = doc & BLOCK_MASK;
+      if (count == 0) {
+        return -1;
+      } else if (count == blockDocs(block)) {
+        return firstIndex + docInBlock;
+      } else if (count <= MAX_SPARSE_BLOCK_COUNT) {
+        final int pos = sparseSearch(entry.blockOffsets[block], block, count, docInBlock);
+        if (pos < count && docAt(entry.blockOffsets[block], pos) == docInBlock) {
+          return firstIndex + pos;
+        }
+        return -1;
+      } else {
+        final long offset = entry.blockOffsets[block];
+        final int word = docInBlock >>> 6;
+        final long bits = slice.readLong(offset + RANKS_BYTES + ((long) word << 3));
+        if ((bits & (1L << docInBlock)) == 0) {
+          return -1;
+        }
+        int rank = slice.readShort(offset + (word / WORDS_PER_RANK) * Short.BYTES) & 0xFFFF;
+        for (int w = word - word % WORDS_PER_RANK; w < word; w++) {
+          rank += Long.bitCount(slice.readLong(offset + RANKS_BYTES + ((long) w << 3)));
+        }
+        rank += Long.bitCount(bits & ((1L << docInBlock) - 1));
+        return firstIndex + rank;
+      }
+    }
+
+    private int docAt(long offset, int pos) throws IOException {
+      return slice.readShort(offset + pos * Short.BYTES) & 0xFFFF;
+    }
+
+    /** Returns the position of the first document that is greater than or equal to <code>docInBlock</code>. */
+    private int sparseSearch(long offset, int block, int count, int docInBlock) throws IOException {
+      int lo = 0;
+      int hi = count;
+      if (block == lastBlock && docInBlock >= lastDocInBlock) {
+        // forward scan for sequential access, then fall back to a binary search on the rest of the block
+        lo = lastPos;
+        for (int i = 0; i < 8 && lo < count; i++) {
+          if (docAt(offset, lo) >= docInBlock) {
+            hi = lo;
+            break;
+          }
+          lo++;
+        }
+      }
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (docAt(offset, mid) < docInBlock) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      lastBlock = block;
+      lastDocInBlock = docInBlock;
+      lastPos = lo;
+      return lo;
+    }
+  }
+
+  @Override
+  public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.number);
+    switch (entry.kind) {
+      case DENSE:
+        return delegate.getNumeric(field);
+      case EMPTY:
+        return DocValues.emptyNumeric();
+      default:
+        final DocIndex index = new DocIndex(entry);
+        final NumericDocValues values = delegate.getNumeric(field);
+        return new NumericDocValues() {
+          @Override
+          public long get(int docID) {
+            final int i = index.index(docID);
+            return i == -1 ? 0 : values.get(i);
+          }
+        };
+    }
+  }
+
+  @Override
+  public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.number);
+    switch (entry.kind) {
+      case DENSE:
+        return delegate.getBinary(field);
+      case EMPTY:
+        return DocValues.emptyBinary();
+      default:
+        final DocIndex index = new DocIndex(entry);
+        final BinaryDocValues values = delegate.getBinary(field);
+        return new BinaryDocValues() {
+          @Override
+          public BytesRef get(int docID) {
+            final int i = index.index(docID);
+            return i == -1 ? new BytesRef() : values.get(i);
+          }
+        };
+    }
+  }
+
+  @Override
+  public SortedDocValues getSorted(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.number);
+    switch (entry.kind) {
+      case DENSE:
+        return delegate.getSorted(field);
+      case EMPTY:
+        return DocValues.emptySorted();
+      default:
+        final DocIndex index = new DocIndex(entry);
+        final SortedDocValues values = delegate.getSorted(field);
+        return new SortedDocValues() {
+          @Override
+          public int getOrd(int docID) {
+            final int i = index.index(docID);
+            return i == -1 ? -1 : values.getOrd(i);
+          }
+
+          @Override
+          public BytesRef lookupOrd(int ord) {
+            return values.lookupOrd(ord);
+          }
+
+          @Override
+          public int getValueCount() {
+            return values.getValueCount();
+          }
+
+          @Override
+          public int lookupTerm(BytesRef key) {
+            return values.lookupTerm(key);
+          }
+
+          @Override
+          public TermsEnum termsEnum() {
+            return values.termsEnum();
+          }
+        };
+    }
+  }
+
+  @Override
+  public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.number);
+    switch (entry.kind) {
+      case DENSE:
+        return delegate.getSortedNumeric(field);
+      case EMPTY:
+        return DocValues.emptySortedNumeric(maxDoc);
+      default:
+        final DocIndex index = new DocIndex(entry);
+        final SortedNumericDocValues values = delegate.getSortedNumeric(field);
+        return new SortedNumericDocValues() {
+          int count;
+
+          @Override
+          public void setDocument(int doc) {
+            final int i = index.index(doc);
+            if (i == -1) {
+              count = 0;
+            } else {
+              values.setDocument(i);
+              count = values.count();
+            }
+          }
+
+          @Override
+          public long valueAt(int index) {
+            return values.valueAt(index);
+          }
+
+          @Override
+          public int count() {
+            return count;
+          }
+        };
+    }
+  }
+
+  @Override
+  public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.number);
+    switch (entry.kind) {
+      case DENSE:
+        return delegate.getSortedSet(field);
+      case EMPTY:
+        return DocValues.emptySortedSet();
+      default:
+        final DocIndex index = new DocIndex(entry);
+        final SortedSetDocValues values = delegate.getSortedSet(field);
+        if (values instanceof RandomAccessOrds) {
+          return sparseRandomAccessOrds(index, (RandomAccessOrds) values);
+        }
+        return new SortedSetDocValues() {
+          boolean hasValue;
+
+          @Override
+          public void setDocument(int docID) {
+            final int i = index.index(docID);
+            hasValue = i != -1;
+            if (hasValue) {
+              values.setDocument(i);
+            }
+          }
+
+          @Override
+          public long nextOrd() {
+            return hasValue ? values.nextOrd() : NO_MORE_ORDS;
+          }
+
+          @Override
+          public BytesRef lookupOrd(long ord) {
+            return values.lookupOrd(ord);
+          }
+
+          @Override
+          public long getValueCount() {
+            return values.getValueCount();
+          }
+
+          @Override
+          public long lookupTerm(BytesRef key) {
+            return values.lookupTerm(key);
+          }
+
+          @Override
+          public TermsEnum termsEnum() {
+            return values.termsEnum();
+          }
+        };
+    }
+  }
+
+  private static RandomAccessOrds sparseRandomAccessOrds(final DocIndex docIndex, final RandomAccessOrds values) {
+    return new RandomAccessOrds() {
+      boolean hasValue;
+
+      @Override
+      public void setDocument(int docID) {
+        final int i = docIndex.index(docID);
+        hasValue = i != -1;
+        if (hasValue) {
+          values.setDocument(i);
+        }
+      }
+
+      @Override
+      public long nextOrd() {
+        return hasValue ? values.nextOrd() : NO_MORE_ORDS;
+      }
+
+      @Override
+      public long ordAt(int index) {
+        return values.ordAt(index);
+      }
+
+      @Override
+      public int cardinality() {
+        return hasValue ? values.cardinality() : 0;
+      }
+
+      @Override
+      public BytesRef lookupOrd(long ord) {
+        return values.lookupOrd(ord);
+      }
+
+      @Override
+      public long getValueCount() {
+        return values.getValueCount();
+      }
+
+      @Override
+      public long lookupTerm(BytesRef key) {
+        return values.lookupTerm(key);
+      }
+
+      @Override
+      public TermsEnum termsEnum() {
+        return values.termsEnum();
+      }
+    };
+  }
+
+  @Override
+  public Bits getDocsWithField(FieldInfo field) throws IOException {
+    final FieldEntry entry = fields.get(field.number);
+    switch (entry.kind) {
+      case DENSE:
+        return delegate.getDocsWithField(field);
+      case EMPTY:
+        return new Bits.MatchNoBits(maxDoc);
+      default:
+        final DocIndex index = new DocIndex(entry);
+        return new Bits() {
+          @Override
+          public boolean get(int docID) {
+            return index.index(docID) != -1;
+          }
+
+          @Override
+          public int length() {
+            return maxDoc;
+          }
+        };
+    }
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(data);
+    delegate.checkIntegrity();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed + delegate.ramBytesUsed();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.singleton(Accountables.namedAccountable("delegate", delegate));
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(data, delegate);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + fields.size() + ",delegate=" + delegate + ")";
+  }
+}
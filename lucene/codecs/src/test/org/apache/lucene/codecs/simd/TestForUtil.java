@@ -0,0 +1,136 @@
+package org.apache.lucene.codecs.simd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.apache.lucene.codecs.simd.SIMDPostingsFormat.BLOCK_SIZE;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.packed.PackedInts;
+
+import com.carrotsearch.randomizedtesting.generators.RandomInts;
+
+public class TestForUtil extends LuceneTestCase {
+
+  private static int[] randomBlocks(int iterations) {
+    final int[] values = new int[iterations * BLOCK_SIZE];
+    for (int i = 0; i < iterations; ++i) {
+      final int bpv = random().nextInt(32);
+      if (bpv == 0) {
+        final int value = RandomInts.randomIntBetween(random(), 0, Integer.MAX_VALUE);
+        for (int j = 0; j < BLOCK_SIZE; ++j) {
+          values[i * BLOCK_SIZE + j] = value;
+        }
+      } else {
+        for (int j = 0; j < BLOCK_SIZE; ++j) {
+          values[i * BLOCK_SIZE + j] = RandomInts.randomIntBetween(random(),
+              0, (int) PackedInts.maxValue(bpv));
+        }
+      }
+    }
+    return values;
+  }
+
+  public void testEncodeDecode() throws IOException {
+    final int iterations = RandomInts.randomIntBetween(random(), 1, 1000);
+    final int[] values = randomBlocks(iterations);
+
+    final Directory d = newDirectory();
+    final long endPointer;
+
+    {
+      // encode
+      IndexOutput out = d.createOutput("test.bin", IOContext.DEFAULT);
+      final ForUtil forUtil = new ForUtil();
+      for (int i = 0; i < iterations; ++i) {
+        forUtil.writeBlock(Arrays.copyOfRange(values, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE), out);
+      }
+      endPointer = out.getFilePointer();
+      out.close();
+    }
+
+    {
+      // decode
+      IndexInput in = d.openInput("test.bin", IOContext.READONCE);
+      final ForUtil forUtil = new ForUtil();
+      for (int i = 0; i < iterations; ++i) {
+        if (random().nextBoolean()) {
+          forUtil.skipBlock(in);
+          continue;
+        }
+        final int[] restored = new int[BLOCK_SIZE];
+        forUtil.readBlock(in, restored);
+        assertArrayEquals(Arrays.copyOfRange(values, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE), restored);
+      }
+      assertEquals(endPointer, in.getFilePointer());
+      in.close();
+    }
+
+    d.close();
+  }
+
+  public void testPrefixSum() throws IOException {
+    final int iterations = RandomInts.randomIntBetween(random(), 1, 100);
+    final int[] deltas = new int[iterations * BLOCK_SIZE];
+    for (int i = 0; i < iterations; ++i) {
+      final int bpv = RandomInts.randomIntBetween(random(), 0, 16);
+      final int maxDelta = (int) PackedInts.maxValue(bpv);
+      if (random().nextBoolean()) {
+        Arrays.fill(deltas, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE, maxDelta);
+      } else {
+        for (int j = 0; j < BLOCK_SIZE; ++j) {
+          deltas[i * BLOCK_SIZE + j] = RandomInts.randomIntBetween(random(), 0, maxDelta);
+        }
+      }
+    }
+
+    final Directory d = newDirectory();
+
+    IndexOutput out = d.createOutput("test.bin", IOContext.DEFAULT);
+    final ForUtil forUtil = new ForUtil();
+    for (int i = 0; i < iterations; ++i) {
+      forUtil.writeBlock(Arrays.copyOfRange(deltas, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE), out);
+    }
+    out.close();
+
+    IndexInput in = d.openInput("test.bin", IOContext.READONCE);
+    int base = 0;
+    final int[] restored = new int[BLOCK_SIZE];
+    final int[] expected = new int[BLOCK_SIZE];
+    for (int i = 0; i < iterations; ++i) {
+      int sum = base;
+      for (int j = 0; j < BLOCK_SIZE; ++j) {
+        sum += deltas[i * BLOCK_SIZE + j];
+        expected[j] = sum;
+      }
+      forUtil.readBlockAndPrefixSum(in, base, restored);
+      assertArrayEquals(expected, restored);
+      base = sum;
+    }
+    in.close();
+
+    d.close();
+  }
+
+}
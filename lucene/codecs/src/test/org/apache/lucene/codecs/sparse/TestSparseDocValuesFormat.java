@@ -0,0 +1,169 @@
+package org.apache.lucene.codecs.sparse;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.BaseDocValuesFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests SparseDocValuesFormat
+ */
+public class TestSparseDocValuesFormat extends BaseDocValuesFormatTestCase {
+  // store all fields sparse, so that the base tests exercise the docID to index structure
+  private final Codec codec = TestUtil.alwaysDocValuesFormat(new SparseDocValuesFormat(1f));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  public void testIllegalDensity() {
+    try {
+      new SparseDocValuesFormat(1.5f);
+      fail("did not hit exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    try {
+      new SparseDocValuesFormat(Float.NaN);
+      fail("did not hit exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  /** Fields with different densities, over several blocks, so that every kind of block is written. */
+  public void testBlockKinds() throws IOException {
+    final int maxDoc = SparseDocValuesFormat.BLOCK_SIZE * 2 + random().nextInt(1000);
+    final float[] densities = new float[] { 0f, 0.005f, 0.5f, 0.99f, 1f };
+    final FixedBitSet[] docsWithValue = new FixedBitSet[densities.length];
+    for (int i = 0; i < densities.length; i++) {
+      docsWithValue[i] = new FixedBitSet(maxDoc);
+    }
+
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(null);
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new SparseDocValuesFormat(random().nextBoolean() ? 1f : random().nextFloat())));
+    iwc.setRAMBufferSizeMB(64);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int doc = 0; doc < maxDoc; doc++) {
+      Document document = new Document();
+      for (int i = 0; i < densities.length; i++) {
+        // the second block holds all documents, or none
+        final boolean hasValue = doc >= SparseDocValuesFormat.BLOCK_SIZE && doc < 2 * SparseDocValuesFormat.BLOCK_SIZE
+            ? densities[i] >= 0.5f
+            : random().nextFloat() < densities[i];
+        if (hasValue) {
+          docsWithValue[i].set(doc);
+          document.add(new NumericDocValuesField("numeric" + i, doc));
+          document.add(new SortedDocValuesField("sorted" + i, new BytesRef(Integer.toString(doc % 100))));
+        }
+      }
+      w.addDocument(document);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    LeafReader leaf = getOnlySegmentReader(reader);
+    for (int i = 0; i < densities.length; i++) {
+      NumericDocValues numeric = leaf.getNumericDocValues("numeric" + i);
+      SortedDocValues sorted = leaf.getSortedDocValues("sorted" + i);
+      Bits docsWithField = leaf.getDocsWithField("numeric" + i);
+      if (docsWithValue[i].cardinality() == 0) {
+        assertNull(numeric);
+        continue;
+      }
+      // sequential access
+      for (int doc = 0; doc < maxDoc; doc++) {
+        assertEquals(docsWithValue[i].get(doc), docsWithField.get(doc));
+        if (docsWithValue[i].get(doc)) {
+          assertEquals(doc, numeric.get(doc));
+          assertEquals(Integer.toString(doc % 100), sorted.get(doc).utf8ToString());
+        } else {
+          assertEquals(0, numeric.get(doc));
+          assertEquals(-1, sorted.getOrd(doc));
+        }
+      }
+      // random access
+      for (int iter = 0; iter < 1000; iter++) {
+        final int doc = random().nextInt(maxDoc);
+        assertEquals(docsWithValue[i].get(doc), docsWithField.get(doc));
+        assertEquals(docsWithValue[i].get(doc) ? doc : 0, numeric.get(doc));
+      }
+    }
+    reader.close();
+    dir.close();
+  }
+
+  /** Sorted set fields keep the random access to ordinals of the delegate. */
+  public void testRandomAccessOrds() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(null);
+    iwc.setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int maxDoc = atLeast(100);
+    for (int doc = 0; doc < maxDoc; doc++) {
+      Document document = new Document();
+      if (doc % 3 == 0) {
+        document.add(new SortedSetDocValuesField("field", new BytesRef("a")));
+        document.add(new SortedSetDocValuesField("field", new BytesRef("b" + (doc % 2))));
+      }
+      w.addDocument(document);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    LeafReader leaf = getOnlySegmentReader(reader);
+    SortedSetDocValues values = leaf.getSortedSetDocValues("field");
+    assertTrue(values instanceof RandomAccessOrds);
+    RandomAccessOrds ords = (RandomAccessOrds) values;
+    for (int doc = 0; doc < maxDoc; doc++) {
+      ords.setDocument(doc);
+      if (doc % 3 == 0) {
+        assertEquals(2, ords.cardinality());
+        assertEquals("a", ords.lookupOrd(ords.ordAt(0)).utf8ToString());
+        assertEquals("b" + (doc % 2), ords.lookupOrd(ords.ordAt(1)).utf8ToString());
+      } else {
+        assertEquals(0, ords.cardinality());
+      }
+    }
+    reader.close();
+    dir.close();
+  }
+}
@@ -107,6 +107,9 @@ public abstract class Codec implements NamedSPILoader.NamedSPI {
   
   /** Encodes/decodes compound files */
   public abstract CompoundFormat compoundFormat();
+
+  /** Encodes/decodes points index */
+  public abstract PointsFormat pointsFormat();
   
   /** looks up a codec by name */
   public static Codec forName(String name) {
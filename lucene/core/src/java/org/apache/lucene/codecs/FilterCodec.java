@@ -103,4 +103,9 @@ public abstract class FilterCodec extends Codec {
   public CompoundFormat compoundFormat() {
     return delegate.compoundFormat();
   }
+
+  @Override
+  public PointsFormat pointsFormat() {
+    return delegate.pointsFormat();
+  }
 }
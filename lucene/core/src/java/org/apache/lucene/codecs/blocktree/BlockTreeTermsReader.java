@@ -36,6 +36,7 @@ import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.PrefixQuery;  // javadocs
 import org.apache.lucene.search.TermRangeQuery;  // javadocs
+import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
@@ -73,6 +74,10 @@ import org.apache.lucene.util.fst.Outputs;
  *  but with added logic to break up too-large blocks of all
  *  terms sharing a given prefix into smaller ones.</p>
  *
+ *  <p>The terms index of each field is either loaded onto the
+ *  heap, or read directly from the terms index file, see
+ *  {@link FSTLoadMode}.</p>
+ *
  *  <p>Use {@link org.apache.lucene.index.CheckIndex} with the <code>-verbose</code>
  *  option to see summary statistics on the blocks in the
  *  dictionary.
@@ -84,6 +89,31 @@ import org.apache.lucene.util.fst.Outputs;
 
 public final class BlockTreeTermsReader extends FieldsProducer {
 
+  /** Decides whether the terms index (an FST) of a field is
+   *  loaded onto the heap, or read from the terms index file
+   *  without a copy on the heap.
+   *
+   * @lucene.experimental */
+  public enum FSTLoadMode {
+    /** Always load the terms index onto the heap. */
+    ON_HEAP,
+    /** Always read the terms index from the file.  This saves
+     *  heap and makes opening the segment faster, but lookups
+     *  are slower, especially if the file is not memory-mapped. */
+    OFF_HEAP,
+    /** Use the mode that the field was written with (see
+     *  {@link #FST_LOAD_MODE_KEY}), else read the terms index from
+     *  the file for segments that are opened with a {@link IOContext}
+     *  for merging or reading once, and load it onto the heap
+     *  otherwise. */
+    AUTO
+  }
+
+  /** {@link org.apache.lucene.index.FieldInfo} attribute that records the
+   *  {@link FSTLoadMode} a field was written with, if it is not
+   *  {@link FSTLoadMode#AUTO}. */
+  public static final String FST_LOAD_MODE_KEY = BlockTreeTermsReader.class.getSimpleName() + ".fstLoadMode";
+
   static final Outputs<BytesRef> FST_OUTPUTS = ByteSequenceOutputs.getSingleton();
   
   static final BytesRef NO_OUTPUT = FST_OUTPUTS.getNoOutput();
@@ -117,6 +147,9 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   // Open input to the main terms dict file (_X.tib)
   final IndexInput termsIn;
 
+  // Open input to the terms index file (_X.tip), if any field reads its terms index off-heap
+  private final IndexInput indexIn;
+
   //private static final boolean DEBUG = BlockTreeTermsWriter.DEBUG;
 
   // Reads the terms dict entries, to gather state to
@@ -137,8 +170,13 @@ public final class BlockTreeTermsReader extends FieldsProducer {
 
   final boolean anyAutoPrefixTerms;
 
-  /** Sole constructor. */
+  /** Creates a reader that uses {@link FSTLoadMode#AUTO}. */
   public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state) throws IOException {
+    this(postingsReader, state, FSTLoadMode.AUTO);
+  }
+
+  /** Creates a reader that loads the terms indices as {@code fstLoadMode} says. */
+  public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state, FSTLoadMode fstLoadMode) throws IOException {
     boolean success = false;
     IndexInput indexIn = null;
     
@@ -187,6 +225,7 @@ public final class BlockTreeTermsReader extends FieldsProducer {
       seekDir(termsIn, dirOffset);
       seekDir(indexIn, indexDirOffset);
 
+      boolean anyOffHeap = false;
       final int numFields = termsIn.readVInt();
       if (numFields < 0) {
         throw new CorruptIndexException("invalid numFields: " + numFields, termsIn);
@@ -228,15 +267,23 @@ public final class BlockTreeTermsReader extends FieldsProducer {
           throw new CorruptIndexException("invalid sumTotalTermFreq: " + sumTotalTermFreq + " sumDocFreq: " + sumDocFreq, termsIn);
         }
         final long indexStartFP = indexIn.readVLong();
+        final boolean isFSTOffHeap = isFSTOffHeap(fieldInfo, fstLoadMode, state.context);
+        anyOffHeap |= isFSTOffHeap;
         FieldReader previous = fields.put(fieldInfo.name,       
                                           new FieldReader(this, fieldInfo, numTerms, rootCode, sumTotalTermFreq, sumDocFreq, docCount,
-                                                          indexStartFP, longsSize, indexIn, minTerm, maxTerm));
+                                                          indexStartFP, longsSize, indexIn, isFSTOffHeap, minTerm, maxTerm));
         if (previous != null) {
           throw new CorruptIndexException("duplicate field: " + fieldInfo.name, termsIn);
         }
       }
-      
-      indexIn.close();
+
+      if (anyOffHeap) {
+        // off-heap terms indices keep reading from it:
+        this.indexIn = indexIn;
+      } else {
+        indexIn.close();
+        this.indexIn = null;
+      }
       success = true;
     } finally {
       if (!success) {
@@ -246,6 +293,30 @@ public final class BlockTreeTermsReader extends FieldsProducer {
     }
   }
 
+  private static boolean isFSTOffHeap(FieldInfo fieldInfo, FSTLoadMode fstLoadMode, IOContext context) throws IOException {
+    if (fstLoadMode == FSTLoadMode.AUTO) {
+      final String fieldMode = fieldInfo.getAttribute(FST_LOAD_MODE_KEY);
+      if (fieldMode != null) {
+        try {
+          fstLoadMode = FSTLoadMode.valueOf(fieldMode);
+        } catch (IllegalArgumentException iae) {
+          throw new CorruptIndexException("invalid " + FST_LOAD_MODE_KEY + " for field: " + fieldInfo.name + ": " + fieldMode, "field infos", iae);
+        }
+      }
+    }
+    switch (fstLoadMode) {
+      case ON_HEAP:
+        return false;
+      case OFF_HEAP:
+        return true;
+      case AUTO:
+        // these readers are too short-lived to pay for loading the terms index:
+        return context.context == IOContext.Context.MERGE || context.readOnce;
+      default:
+        throw new AssertionError();
+    }
+  }
+
   private static BytesRef readBytesRef(IndexInput in) throws IOException {
     BytesRef bytes = new BytesRef();
     bytes.length = in.readVInt();
@@ -270,7 +341,7 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   @Override
   public void close() throws IOException {
     try {
-      IOUtils.close(termsIn, postingsReader);
+      IOUtils.close(indexIn, termsIn, postingsReader);
     } finally { 
       // Clear so refs to terms index is GCable even if
       // app hangs onto us:
@@ -20,12 +20,14 @@ package org.apache.lucene.codecs.blocktree;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.PostingsWriterBase;
 import org.apache.lucene.codecs.blocktree.AutoPrefixTermsWriter.PrefixTerm;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.Fields;
@@ -272,6 +274,8 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
   /** Reused in getAutoPrefixTermsEnum: */
   private PostingsEnum prefixDocsEnum;
 
+  private final FSTLoadMode fstLoadMode;
+
   /** Create a new writer, using default values for auto-prefix terms. */
   public BlockTreeTermsWriter(SegmentWriteState state,
                               PostingsWriterBase postingsWriter,
@@ -298,6 +302,24 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
                               int minItemsInAutoPrefix,
                               int maxItemsInAutoPrefix)
     throws IOException
+  {
+    this(state, postingsWriter, minItemsInBlock, maxItemsInBlock, minItemsInAutoPrefix, maxItemsInAutoPrefix, FSTLoadMode.AUTO);
+  }
+
+  /** Create a new writer that records {@code fstLoadMode} for each
+   *  field it writes, unless it is {@link FSTLoadMode#AUTO}, so that
+   *  {@link BlockTreeTermsReader} loads the terms index of these
+   *  fields accordingly.
+   *
+   * @see #BlockTreeTermsWriter(SegmentWriteState, PostingsWriterBase, int, int, int, int) */
+  public BlockTreeTermsWriter(SegmentWriteState state,
+                              PostingsWriterBase postingsWriter,
+                              int minItemsInBlock,
+                              int maxItemsInBlock,
+                              int minItemsInAutoPrefix,
+                              int maxItemsInAutoPrefix,
+                              FSTLoadMode fstLoadMode)
+    throws IOException
   {
     validateSettings(minItemsInBlock,
                      maxItemsInBlock);
@@ -319,6 +341,7 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
 
     this.minItemsInAutoPrefix = minItemsInAutoPrefix;
     this.maxItemsInAutoPrefix = maxItemsInAutoPrefix;
+    this.fstLoadMode = Objects.requireNonNull(fstLoadMode);
 
     this.maxDoc = state.segmentInfo.maxDoc();
     this.fieldInfos = state.fieldInfos;
@@ -414,6 +437,9 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
         continue;
       }
       FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+      if (fstLoadMode != FSTLoadMode.AUTO) {
+        fieldInfo.putAttribute(BlockTreeTermsReader.FST_LOAD_MODE_KEY, fstLoadMode.name());
+      }
 
       // First pass to find all prefix terms we should compile into the index:
       List<PrefixTerm> prefixTerms;
@@ -569,7 +569,14 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
   SerializedDocument document(int docID) throws IOException {
     if (state.contains(docID) == false) {
-      fieldsStream.seek(indexReader.getStartPointer(docID));
+      final long startPointer = indexReader.getStartPointer(docID);
+      if (merging == false && startPointer >= 0 && startPointer < maxPointer) {
+        // the chunk is usually smaller than chunkSize once compressed, so this
+        // lets directories that do not read ahead load it at once, instead of
+        // one page at a time:
+        fieldsStream.prefetch(startPointer, Math.min(chunkSize, maxPointer - startPointer));
+      }
+      fieldsStream.seek(startPointer);
       state.reset(docID);
     }
     assert state.contains(docID);
@@ -113,6 +113,39 @@ public abstract class CompressionMode {
 
   };
 
+  /**
+   * This compression mode is similar to {@link #HIGH_COMPRESSION} but it
+   * compresses the data in small blocks that share a preset dictionary, the
+   * first bytes of the data, instead of as a whole. Reading a single document
+   * only needs to decompress the dictionary and the blocks that hold the
+   * document, so data can be compressed in bigger chunks to get a compression
+   * ratio that is close to {@link #HIGH_COMPRESSION} on small and redundant
+   * documents, while keeping document retrieval fast.
+   */
+  public static final CompressionMode HIGH_COMPRESSION_WITH_DICTIONARY = new CompressionMode() {
+
+    @Override
+    public Compressor newCompressor() {
+      return new DeflateWithPresetDictCompressor(6, PRESET_DICT_LENGTH, PRESET_DICT_BLOCK_LENGTH);
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+      return new DeflateWithPresetDictDecompressor();
+    }
+
+    @Override
+    public String toString() {
+      return "HIGH_COMPRESSION_WITH_DICTIONARY";
+    }
+
+  };
+
+  /** Maximum length of the dictionary of {@link #HIGH_COMPRESSION_WITH_DICTIONARY}. */
+  static final int PRESET_DICT_LENGTH = 4 * 1024;
+  /** Length of the blocks that {@link #HIGH_COMPRESSION_WITH_DICTIONARY} compresses against its dictionary. */
+  static final int PRESET_DICT_BLOCK_LENGTH = 8 * 1024;
+
   /** Sole constructor. */
   protected CompressionMode() {}
 
@@ -236,6 +269,157 @@ public abstract class CompressionMode {
 
   }
 
+  /**
+   * Compresses the first bytes of the data on their own, and then every block
+   * of the rest of the data with these bytes as a preset dictionary:
+   * <pre>
+   * DictLength (vint), BlockLength (vint), Dict, Block<sup>NumBlocks</sup>
+   * Dict, Block --&gt; CompressedLength (vint), CompressedBytes
+   * </pre>
+   */
+  private static final class DeflateWithPresetDictCompressor extends Compressor {
+
+    final Deflater compressor;
+    final int maxDictLength;
+    final int blockLength;
+    byte[] compressed;
+
+    DeflateWithPresetDictCompressor(int level, int maxDictLength, int blockLength) {
+      compressor = new Deflater(level, true);
+      this.maxDictLength = maxDictLength;
+      this.blockLength = blockLength;
+      compressed = new byte[64];
+    }
+
+    private void compress(byte[] bytes, int off, int len, int dictOff, int dictLength, DataOutput out) throws IOException {
+      compressor.reset();
+      if (dictLength > 0) {
+        compressor.setDictionary(bytes, dictOff, dictLength);
+      }
+      compressor.setInput(bytes, off, len);
+      compressor.finish();
+
+      int totalCount = 0;
+      for (;;) {
+        final int count = compressor.deflate(compressed, totalCount, compressed.length - totalCount);
+        totalCount += count;
+        assert totalCount <= compressed.length;
+        if (compressor.finished()) {
+          break;
+        } else {
+          compressed = ArrayUtil.grow(compressed);
+        }
+      }
+
+      out.writeVInt(totalCount);
+      out.writeBytes(compressed, totalCount);
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
+      final int dictLength = Math.min(maxDictLength, len);
+      out.writeVInt(dictLength);
+      out.writeVInt(blockLength);
+      compress(bytes, off, dictLength, off, 0, out);
+      for (int start = off + dictLength, end = off + len; start < end; start += blockLength) {
+        compress(bytes, start, Math.min(blockLength, end - start), off, dictLength, out);
+      }
+    }
+
+  }
+
+  private static final class DeflateWithPresetDictDecompressor extends Decompressor {
+
+    final Inflater decompressor;
+    byte[] compressed;
+
+    DeflateWithPresetDictDecompressor() {
+      decompressor = new Inflater(true);
+      compressed = new byte[0];
+    }
+
+    /** Decompresses <code>length</code> bytes to <code>bytes.bytes</code>, starting at <code>bytes.length</code>. */
+    private void decompress(DataInput in, int length, int dictLength, BytesRef bytes) throws IOException {
+      final int compressedLength = in.readVInt();
+      // pad with extra "dummy byte": see javadocs for using Inflater(true)
+      final int paddedLength = compressedLength + 1;
+      compressed = ArrayUtil.grow(compressed, paddedLength);
+      in.readBytes(compressed, 0, compressedLength);
+      compressed[compressedLength] = 0; // explicitly set dummy byte to 0
+
+      decompressor.reset();
+      if (dictLength > 0) {
+        decompressor.setDictionary(bytes.bytes, 0, dictLength);
+      }
+      decompressor.setInput(compressed, 0, paddedLength);
+      final int decompressedLength;
+      try {
+        decompressedLength = decompressor.inflate(bytes.bytes, bytes.length, length);
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      }
+      if (!decompressor.finished()) {
+        throw new CorruptIndexException("Invalid decoder state: needsInput=" + decompressor.needsInput() 
+                                                            + ", needsDict=" + decompressor.needsDictionary(), in);
+      }
+      if (decompressedLength != length) {
+        throw new CorruptIndexException("Lengths mismatch: " + decompressedLength + " != " + length, in);
+      }
+      bytes.length += length;
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      if (length == 0) {
+        bytes.length = 0;
+        return;
+      }
+      final int dictLength = in.readVInt();
+      final int blockLength = in.readVInt();
+      if (dictLength > originalLength || blockLength <= 0) {
+        throw new CorruptIndexException("Invalid dictionary length: " + dictLength + " or block length: " + blockLength, in);
+      }
+      bytes.offset = bytes.length = 0;
+      bytes.bytes = ArrayUtil.grow(bytes.bytes, dictLength);
+      decompress(in, dictLength, 0, bytes);
+
+      // skip the blocks before offset
+      int start = dictLength;
+      while (start + blockLength <= offset) {
+        in.skipBytes(in.readVInt());
+        start += blockLength;
+      }
+      final int skipped = start - dictLength;
+
+      // decompress the blocks that hold [offset, offset + length) after the dictionary
+      final int end = offset + length;
+      if (start < end) {
+        bytes.bytes = ArrayUtil.grow(bytes.bytes, dictLength + Math.min(originalLength, end + blockLength) - start);
+      }
+      while (start < end) {
+        final int blockLen = Math.min(blockLength, originalLength - start);
+        decompress(in, blockLen, dictLength, bytes);
+        start += blockLen;
+      }
+
+      // skip the remaining blocks, so that the input is positioned after the compressed data
+      while (start < originalLength) {
+        in.skipBytes(in.readVInt());
+        start += blockLength;
+      }
+
+      bytes.offset = offset - skipped;
+      bytes.length = length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      return new DeflateWithPresetDictDecompressor();
+    }
+
+  }
+
   private static class DeflateCompressor extends Compressor {
 
     final Deflater compressor;
@@ -410,6 +410,13 @@ class Lucene50DocValuesProducer extends DocValuesProducer implements Closeable {
           public long get(long index) {
             return live.get((int)index) ? constant : 0;
           }
+
+          @Override
+          public void get(int[] docIDs, long[] values, int count) {
+            for (int i = 0; i < count; ++i) {
+              values[i] = live.get(docIDs[i]) ? constant : 0;
+            }
+          }
         };
       }
       case DELTA_COMPRESSED: {
@@ -421,6 +428,14 @@ class Lucene50DocValuesProducer extends DocValuesProducer implements Closeable {
           public long get(long id) {
             return delta + values.get(id);
           }
+
+          @Override
+          public void get(int[] docIDs, long[] buffer, int count) {
+            values.get(docIDs, buffer, count);
+            for (int i = 0; i < count; ++i) {
+              buffer[i] += delta;
+            }
+          }
         };
       }
       case GCD_COMPRESSED: {
@@ -433,6 +448,14 @@ class Lucene50DocValuesProducer extends DocValuesProducer implements Closeable {
           public long get(long id) {
             return min + mult * quotientReader.get(id);
           }
+
+          @Override
+          public void get(int[] docIDs, long[] values, int count) {
+            quotientReader.get(docIDs, values, count);
+            for (int i = 0; i < count; ++i) {
+              values[i] = min + mult * values[i];
+            }
+          }
         };
       }
       case TABLE_COMPRESSED: {
@@ -444,6 +467,14 @@ class Lucene50DocValuesProducer extends DocValuesProducer implements Closeable {
           public long get(long id) {
             return table[(int) ords.get(id)];
           }
+
+          @Override
+          public void get(int[] docIDs, long[] values, int count) {
+            ords.get(docIDs, values, count);
+            for (int i = 0; i < count; ++i) {
+              values[i] = table[(int) values[i]];
+            }
+          }
         };
       }
       default:
@@ -42,7 +42,7 @@ import org.apache.lucene.store.IndexOutput;
  * Lucene 5.0 Field Infos format.
  * <p>Field names are stored in the field info file, with suffix <tt>.fnm</tt>.
  * <p>FieldInfos (.fnm) --&gt; Header,FieldsCount, &lt;FieldName,FieldNumber,
- * FieldBits,DocValuesBits,DocValuesGen,Attributes&gt; <sup>FieldsCount</sup>,Footer
+ * FieldBits,DocValuesBits,DocValuesGen,Attributes,PointDimensionCount,PointNumBytes&gt; <sup>FieldsCount</sup>,Footer
  * <p>Data types:
  * <ul>
  *   <li>Header --&gt; {@link CodecUtil#checkIndexHeader IndexHeader}</li>
@@ -52,6 +52,7 @@ import org.apache.lucene.store.IndexOutput;
  *   <li>FieldNumber --&gt; {@link DataOutput#writeInt VInt}</li>
  *   <li>Attributes --&gt; {@link DataOutput#writeMapOfStrings Map&lt;String,String&gt;}</li>
  *   <li>DocValuesGen --&gt; {@link DataOutput#writeLong(long) Int64}</li>
+ *   <li>PointDimensionCount, PointNumBytes --&gt; {@link DataOutput#writeVInt VInt}</li>
  *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  * </ul>
  * Field Descriptions:
@@ -95,6 +96,9 @@ import org.apache.lucene.store.IndexOutput;
  *       there are no DocValues updates to that field. Anything above zero means there 
  *       are updates stored by {@link DocValuesFormat}.</li>
  *   <li>Attributes: a key-value map of codec-private attributes.</li>
+ *   <li>PointDimensionCount, PointNumBytes: these are non-zero only if the field is
+ *       indexed as points, e.g. using {@link org.apache.lucene.document.LongPoint}.
+ *       PointNumBytes is only written when PointDimensionCount is non-zero.</li>
  * </ul>
  *
  * @lucene.experimental
@@ -150,9 +154,18 @@ public final class Lucene50FieldInfosFormat extends FieldInfosFormat {
             attributes = lastAttributes;
           }
           lastAttributes = attributes;
+          int pointDimensionCount = 0;
+          int pointNumBytes = 0;
+          if (format >= FORMAT_POINTS) {
+            pointDimensionCount = input.readVInt();
+            if (pointDimensionCount != 0) {
+              pointNumBytes = input.readVInt();
+            }
+          }
           try {
             infos[i] = new FieldInfo(name, fieldNumber, storeTermVector, omitNorms, storePayloads, 
-                                     indexOptions, docValuesType, dvGen, attributes);
+                                     indexOptions, docValuesType, dvGen, attributes,
+                                     pointDimensionCount, pointNumBytes);
             infos[i].checkConsistency();
           } catch (IllegalStateException e) {
             throw new CorruptIndexException("invalid fieldinfo for field: " + name + ", fieldNumber=" + fieldNumber, input, e);
@@ -278,6 +291,11 @@ public final class Lucene50FieldInfosFormat extends FieldInfosFormat {
         output.writeByte(docValuesByte(fi.getDocValuesType()));
         output.writeLong(fi.getDocValuesGen());
         output.writeMapOfStrings(fi.attributes());
+        int pointDimensionCount = fi.getPointDimensionCount();
+        output.writeVInt(pointDimensionCount);
+        if (pointDimensionCount != 0) {
+          output.writeVInt(fi.getPointNumBytes());
+        }
       }
       CodecUtil.writeFooter(output);
     }
@@ -290,7 +308,8 @@ public final class Lucene50FieldInfosFormat extends FieldInfosFormat {
   static final String CODEC_NAME = "Lucene50FieldInfos";
   static final int FORMAT_START = 0;
   static final int FORMAT_SAFE_MAPS = 1;
-  static final int FORMAT_CURRENT = FORMAT_SAFE_MAPS;
+  static final int FORMAT_POINTS = 2;
+  static final int FORMAT_CURRENT = FORMAT_POINTS;
   
   // Field flags
   static final byte STORE_TERMVECTOR = 0x1;
@@ -29,6 +29,7 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.PostingsWriterBase;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.IndexOptions;
@@ -124,9 +125,10 @@ import org.apache.lucene.util.packed.PackedInts;
  * <ul>
  *   <li>PostingsHeader --&gt; Header, PackedBlockSize</li>
  *   <li>TermMetadata --&gt; (DocFPDelta|SingletonDocID), PosFPDelta?, PosVIntBlockFPDelta?, PayFPDelta?, 
- *                            SkipFPDelta?</li>
+ *                            Dense?, SkipFPDelta?</li>
  *   <li>Header, --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
  *   <li>PackedBlockSize, SingletonDocID --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>Dense --&gt; {@link DataOutput#writeByte Byte}</li>
  *   <li>DocFPDelta, PosFPDelta, PayFPDelta, PosVIntBlockFPDelta, SkipFPDelta --&gt; {@link DataOutput#writeVLong VLong}</li>
  *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  * </ul>
@@ -159,6 +161,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *        file. In particular, it is the length of the TermFreq data.
  *        SkipDelta is only stored if DocFreq is not smaller than SkipMinimum
  *        (i.e. 128 in Lucene50PostingsFormat).</li>
+ *    <li>Dense is 1 if the documents of this term are stored as DenseDocs, 0 otherwise. It is
+ *        only stored for fields that index {@link IndexOptions#DOCS} only, if DocFreq is not
+ *        smaller than the minimum of 1024 and a quarter of the documents of the segment (and
+ *        greater than 1).</li>
  *    <li>SingletonDocID is an optimization when a term only appears in one document. In this case, instead
  *        of writing a file pointer to the .doc file (DocFPDelta), and then a VIntBlock at that location, the 
  *        single document ID is written to the term dictionary.</li>
@@ -187,8 +193,9 @@ import org.apache.lucene.util.packed.PackedInts;
  * each packed or VInt block, when the length of document list is larger than packed block size.</p>
  *
  * <ul>
- *   <li>docFile(.doc) --&gt; Header, &lt;TermFreqs, SkipData?&gt;<sup>TermCount</sup>, Footer</li>
+ *   <li>docFile(.doc) --&gt; Header, &lt;TermFreqs, SkipData? | DenseDocs&gt;<sup>TermCount</sup>, Footer</li>
  *   <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *   <li>DenseDocs --&gt; FirstWord, NumWords, Word<sup>NumWords</sup></li>
  *   <li>TermFreqs --&gt; &lt;PackedBlock&gt; <sup>PackedDocBlockNum</sup>,  
  *                        VIntBlock? </li>
  *   <li>PackedBlock --&gt; PackedDocDeltaBlock, PackedFreqBlock?
@@ -196,17 +203,25 @@ import org.apache.lucene.util.packed.PackedInts;
  *   <li>SkipData --&gt; &lt;&lt;SkipLevelLength, SkipLevel&gt;
  *       <sup>NumSkipLevels-1</sup>, SkipLevel&gt;, SkipDatum?</li>
  *   <li>SkipLevel --&gt; &lt;SkipDatum&gt; <sup>TrimmedDocFreq/(PackedBlockSize^(Level + 1))</sup></li>
- *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
+ *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, MaxFreq?, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
  *                        PayFPSkip?&gt;?, SkipChildLevelPointer?</li>
  *   <li>PackedDocDeltaBlock, PackedFreqBlock --&gt; {@link PackedInts PackedInts}</li>
- *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip 
- *       --&gt; 
+ *   <li>DocDelta, Freq, DocSkip, DocFPSkip, MaxFreq, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip,
+ *       FirstWord, NumWords --&gt; 
  *   {@link DataOutput#writeVInt VInt}</li>
+ *   <li>Word --&gt; {@link DataOutput#writeLong Int64}</li>
  *   <li>SkipChildLevelPointer --&gt; {@link DataOutput#writeVLong VLong}</li>
  *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  * </ul>
  * <p>Notes:
  * <ul>
+ *   <li>Terms of fields that index {@link IndexOptions#DOCS} only that have a Dense flag,
+ *       and that match at least one in four documents between their first and last documents
+ *       (or more precisely, at least one in four documents up to each of their documents after
+ *       the first 1024 ones) are stored as DenseDocs rather than TermFreqs: a bitset of the documents that contain the term, of
+ *       which only the words between the words of the first and last documents are written,
+ *       FirstWord being the index of the first written word. Such terms have no skip data
+ *       since any document can be reached by seeking to its word directly.</li>
  *   <li>PackedDocDeltaBlock is theoretically generated from two steps: 
  *     <ol>
  *       <li>Calculate the difference between each document number and previous one, 
@@ -252,6 +267,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *       PackedBlockSize+1<sup>th</sup>, 2*PackedBlockSize+1<sup>th</sup> ... , in DocFile. 
  *       The file offsets are relative to the start of current term's TermFreqs. 
  *       On disk it is also stored as the difference from previous SkipDatum in the sequence.</li>
+ *   <li>MaxFreq is the maximum term frequency of the documents that this SkipDatum skips over, that
+ *       is, the documents after the previous SkipDatum of the same level, up to and including DocSkip.
+ *       It allows scorers to compute an upper bound of the scores of a block without decoding it.
+ *       It is only stored when frequencies are indexed.</li>
  *   <li>Since positions and payloads are also block encoded, the skip should skip to related block first,
  *       then fetch the values according to in-block offset. PosFPSkip and PayFPSkip record the file 
  *       offsets of related block in .pos and .pay, respectively. While PosBlockOffset indicates
@@ -385,10 +404,34 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
 
   // Increment version to change it
   final static int VERSION_START = 0;
-  final static int VERSION_CURRENT = VERSION_START;
+  // skip data records the maximum term frequency of each skipped block
+  final static int VERSION_IMPACTS = 1;
+  // dense DOCS-only terms are stored as bitsets
+  final static int VERSION_DENSE_DOCS = 2;
+  final static int VERSION_CURRENT = VERSION_DENSE_DOCS;
+
+  /**
+   * DOCS-only terms that match at least one in {@code DENSE_DOCS_RATIO}
+   * documents between their first and last documents are stored as bitsets.
+   */
+  static final int DENSE_DOCS_RATIO = 4;
+
+  /**
+   * Maximum number of docs of a DOCS-only term that the writer buffers
+   * before it decides whether the term is stored as a bitset.
+   */
+  static final int MAX_DENSE_DOC_FREQ = 8 * Lucene50PostingsFormat.BLOCK_SIZE;
+
+  /** Returns the minimum docFreq of DOCS-only terms that may be stored as
+   *  bitsets in a segment that has {@code maxDoc} documents. */
+  static int denseDocFreq(int maxDoc) {
+    // never use bitsets for singletons, which are inlined in the terms dictionary
+    return Math.max(2, Math.min(maxDoc / DENSE_DOCS_RATIO, MAX_DENSE_DOC_FREQ));
+  }
 
   private final int minTermBlockSize;
   private final int maxTermBlockSize;
+  private final FSTLoadMode fstLoadMode;
 
   /**
    * Fixed packed block size, number of integers encoded in 
@@ -408,10 +451,22 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
    *  maxBlockSize} passed to block terms dictionary.
    *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
   public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    this(minTermBlockSize, maxTermBlockSize, FSTLoadMode.AUTO);
+  }
+
+  /** Creates {@code Lucene50PostingsFormat} with custom
+   *  values for {@code minBlockSize} and {@code
+   *  maxBlockSize}, that records {@code fstLoadMode} for the
+   *  fields it writes.  Use it through a per-field postings
+   *  format to load the terms index of some fields, e.g. of
+   *  primary key fields, off-heap.
+   *  @see BlockTreeTermsReader.FSTLoadMode */
+  public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize, FSTLoadMode fstLoadMode) {
     super("Lucene50");
     BlockTreeTermsWriter.validateSettings(minTermBlockSize, maxTermBlockSize);
     this.minTermBlockSize = minTermBlockSize;
     this.maxTermBlockSize = maxTermBlockSize;
+    this.fstLoadMode = fstLoadMode;
   }
 
   @Override
@@ -428,7 +483,10 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
       FieldsConsumer ret = new BlockTreeTermsWriter(state, 
                                                     postingsWriter,
                                                     minTermBlockSize, 
-                                                    maxTermBlockSize);
+                                                    maxTermBlockSize,
+                                                    0,
+                                                    0,
+                                                    fstLoadMode);
       success = true;
       return ret;
     } finally {
@@ -462,6 +520,8 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
     // docid when there is a single pulsed posting, otherwise -1
     // freq is always implicitly totalTermFreq in this case.
     int singletonDocID = -1;
+    // true if the docs of this DOCS-only term are stored as a bitset
+    boolean dense;
 
     @Override
     public IntBlockTermState clone() {
@@ -480,11 +540,12 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
       lastPosBlockOffset = other.lastPosBlockOffset;
       skipOffset = other.skipOffset;
       singletonDocID = other.singletonDocID;
+      dense = other.dense;
     }
 
     @Override
     public String toString() {
-      return super.toString() + " docStartFP=" + docStartFP + " posStartFP=" + posStartFP + " payStartFP=" + payStartFP + " lastPosBlockOffset=" + lastPosBlockOffset + " singletonDocID=" + singletonDocID;
+      return super.toString() + " docStartFP=" + docStartFP + " posStartFP=" + posStartFP + " payStartFP=" + payStartFP + " lastPosBlockOffset=" + lastPosBlockOffset + " singletonDocID=" + singletonDocID + " dense=" + dense;
     }
   }
 }
@@ -25,6 +25,7 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.IntBlockTermState;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.PostingsEnum;
@@ -46,6 +47,8 @@ import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.PAY_CODEC
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.POS_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.TERMS_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_CURRENT;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_DENSE_DOCS;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_IMPACTS;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_START;
 
 /**
@@ -64,6 +67,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
   final ForUtil forUtil;
   private int version;
+  private final int denseDocFreq;
 
   /** Sole constructor. */
   public Lucene50PostingsReader(SegmentReadState state) throws IOException {
@@ -83,6 +87,11 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       version = CodecUtil.checkIndexHeader(docIn, DOC_CODEC, VERSION_START, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
       forUtil = new ForUtil(docIn);
       CodecUtil.retrieveChecksum(docIn);
+      if (version >= VERSION_DENSE_DOCS) {
+        denseDocFreq = Lucene50PostingsFormat.denseDocFreq(state.segmentInfo.maxDoc());
+      } else {
+        denseDocFreq = Integer.MAX_VALUE;
+      }
 
       if (state.fieldInfos.hasProx()) {
         String proxName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, Lucene50PostingsFormat.POS_EXTENSION);
@@ -184,7 +193,12 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         termState.lastPosBlockOffset = -1;
       }
     }
-    if (termState.docFreq > BLOCK_SIZE) {
+    if (termState.docFreq >= denseDocFreq && fieldInfo.getIndexOptions() == IndexOptions.DOCS) {
+      termState.dense = in.readByte() != 0;
+    } else {
+      termState.dense = false;
+    }
+    if (termState.docFreq > BLOCK_SIZE && termState.dense == false) {
       termState.skipOffset = in.readVLong();
     } else {
       termState.skipOffset = -1;
@@ -198,7 +212,18 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     boolean indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
     boolean indexHasPayloads = fieldInfo.hasPayloads();
 
-    if (indexHasPositions == false || PostingsEnum.featureRequested(flags, PostingsEnum.POSITIONS) == false) {
+    if (((IntBlockTermState) termState).dense) {
+      DenseDocsEnum docsEnum;
+      if (reuse instanceof DenseDocsEnum) {
+        docsEnum = (DenseDocsEnum) reuse;
+        if (!docsEnum.canReuse(docIn)) {
+          docsEnum = new DenseDocsEnum();
+        }
+      } else {
+        docsEnum = new DenseDocsEnum();
+      }
+      return docsEnum.reset(liveDocs, (IntBlockTermState) termState);
+    } else if (indexHasPositions == false || PostingsEnum.featureRequested(flags, PostingsEnum.POSITIONS) == false) {
       BlockDocsEnum docsEnum;
       if (reuse instanceof BlockDocsEnum) {
         docsEnum = (BlockDocsEnum) reuse;
@@ -235,7 +260,136 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     }
   }
 
-  final class BlockDocsEnum extends PostingsEnum {
+  /**
+   * Iterates over the docs of dense DOCS-only terms, which are stored as the
+   * words of a bitset: words are read as they are needed and advancing to a
+   * target seeks straight to the word that contains it.
+   */
+  final class DenseDocsEnum extends ImpactsEnum {
+
+    final IndexInput startDocIn;
+    IndexInput docIn;
+
+    private int docFreq;
+    private long wordsStartFP;  // file pointer of the first word
+    private int firstWord;      // index of the first word
+    private int endWord;        // index of the last word, exclusive
+    private int wordIndex;      // index of the current word
+    private long word;          // bits of the current word that have not been consumed yet
+    private int doc;
+
+    private Bits liveDocs;
+
+    DenseDocsEnum() {
+      this.startDocIn = Lucene50PostingsReader.this.docIn;
+    }
+
+    boolean canReuse(IndexInput docIn) {
+      return docIn == startDocIn;
+    }
+
+    PostingsEnum reset(Bits liveDocs, IntBlockTermState termState) throws IOException {
+      this.liveDocs = liveDocs;
+      docFreq = termState.docFreq;
+      if (docIn == null) {
+        // lazy init
+        docIn = startDocIn.clone();
+      }
+      docIn.seek(termState.docStartFP);
+      firstWord = docIn.readVInt();
+      endWord = firstWord + docIn.readVInt();
+      wordsStartFP = docIn.getFilePointer();
+      wordIndex = firstWord - 1;
+      word = 0L;
+      doc = -1;
+      return this;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      while (true) {
+        while (word == 0L) {
+          if (++wordIndex >= endWord) {
+            return doc = NO_MORE_DOCS;
+          }
+          word = docIn.readLong();
+        }
+        final int candidate = (wordIndex << 6) | Long.numberOfTrailingZeros(word);
+        word &= word - 1; // clear the lowest set bit
+        if (liveDocs == null || liveDocs.get(candidate)) {
+          return doc = candidate;
+        }
+      }
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      int targetWord = target >> 6;
+      if (targetWord >= endWord) {
+        return doc = NO_MORE_DOCS;
+      }
+      if (targetWord < firstWord) {
+        return nextDoc();
+      }
+      if (targetWord > wordIndex) {
+        if (targetWord > wordIndex + 1) {
+          docIn.seek(wordsStartFP + (((long) (targetWord - firstWord)) << 3));
+        }
+        wordIndex = targetWord;
+        word = docIn.readLong();
+      }
+      // ignore the docs of the word that are before the target
+      word &= -1L << target;
+      return nextDoc();
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return NO_MORE_DOCS;
+    }
+
+    @Override
+    public int getMaxFreq(int upTo) {
+      return 1;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int freq() throws IOException {
+      return 1;
+    }
+
+    @Override
+    public int nextPosition() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public int startOffset() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public int endOffset() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public BytesRef getPayload() throws IOException {
+      return null;
+    }
+
+    @Override
+    public long cost() {
+      return docFreq;
+    }
+  }
+
+  final class BlockDocsEnum extends ImpactsEnum {
     private final byte[] encoded;
     
     private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
@@ -273,6 +427,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     // target docID is not larger than this
     private int nextSkipDoc;
 
+    // last target passed to advanceShallow
+    private int shallowTarget;
+
     private Bits liveDocs;
     
     private boolean needsFreq; // true if the caller actually needs frequencies
@@ -321,6 +478,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      shallowTarget = -1;
       return this;
     }
     
@@ -329,6 +487,63 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       return freq;
     }
 
+    private void initSkipper() throws IOException {
+      if (skipper == null) {
+        // Lazy init: first time this enum has ever been used for skipping
+        skipper = new Lucene50SkipReader(docIn.clone(),
+                                         MAX_SKIP_LEVELS,
+                                         version >= VERSION_IMPACTS && indexHasFreq,
+                                         indexHasPos,
+                                         indexHasOffsets,
+                                         indexHasPayloads);
+      }
+
+      if (!skipped) {
+        assert skipOffset != -1;
+        // This is the first time this enum has skipped
+        // since reset() was called; load the skip data:
+        skipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
+        skipped = true;
+      }
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      shallowTarget = target;
+      if (docFreq > BLOCK_SIZE && indexHasFreq && version >= VERSION_IMPACTS) {
+        initSkipper();
+        // skip docs are > 0, so this makes sure the first skip entry gets loaded
+        skipper.skipTo(Math.max(1, target));
+        final int skipDoc = skipper.getSkipDoc(0);
+        if (skipDoc >= target && skipDoc != Integer.MAX_VALUE) {
+          return skipDoc;
+        }
+      }
+      // we are either in the last (vInt) block or there is no skip data
+      return NO_MORE_DOCS;
+    }
+
+    @Override
+    public int getMaxFreq(int upTo) {
+      if (indexHasFreq == false) {
+        return 1;
+      }
+      if (skipped) {
+        // levels cover increasing ranges of docs, use the first one that contains upTo
+        for (int level = 0; level < MAX_SKIP_LEVELS; ++level) {
+          final int skipDoc = skipper.getSkipDoc(level);
+          if (skipDoc < shallowTarget || skipDoc == Integer.MAX_VALUE) {
+            // this level is exhausted or does not exist
+            break;
+          }
+          if (upTo <= skipDoc) {
+            return skipper.getMaxFreq(level);
+          }
+        }
+      }
+      return Integer.MAX_VALUE;
+    }
+
     @Override
     public int nextPosition() throws IOException {
       return -1;
@@ -410,22 +625,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       // we don't need to skip if target is buffered already
       if (docFreq > BLOCK_SIZE && target > nextSkipDoc) {
 
-        if (skipper == null) {
-          // Lazy init: first time this enum has ever been used for skipping
-          skipper = new Lucene50SkipReader(docIn.clone(),
-                                           MAX_SKIP_LEVELS,
-                                           indexHasPos,
-                                           indexHasOffsets,
-                                           indexHasPayloads);
-        }
-
-        if (!skipped) {
-          assert skipOffset != -1;
-          // This is the first time this enum has skipped
-          // since reset() was called; load the skip data:
-          skipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
-          skipped = true;
-        }
+        initSkipper();
 
         // always plus one to fix the result, since skip position in Lucene50SkipReader 
         // is a little different from MultiLevelSkipListReader
@@ -691,6 +891,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                            MAX_SKIP_LEVELS,
+                                           version >= VERSION_IMPACTS,
                                            true,
                                            indexHasOffsets,
                                            indexHasPayloads);
@@ -1119,6 +1320,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                         MAX_SKIP_LEVELS,
+                                        version >= VERSION_IMPACTS,
                                         true,
                                         indexHasOffsets,
                                         indexHasPayloads);
@@ -20,6 +20,7 @@ package org.apache.lucene.codecs.lucene50;
 import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_DATA_SIZE;
 import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_SIZE;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.BLOCK_SIZE;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.DENSE_DOCS_RATIO;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.DOC_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.MAX_SKIP_LEVELS;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.PAY_CODEC;
@@ -28,6 +29,7 @@ import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.TERMS_COD
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_CURRENT;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
@@ -38,6 +40,7 @@ import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.ArrayUtil;
@@ -82,6 +85,7 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
   private int payloadByteUpto;
 
   private int lastBlockDocID;
+  private int lastBlockMaxFreq;
   private long lastBlockPosFP;
   private long lastBlockPayFP;
   private int lastBlockPosBufferUpto;
@@ -94,6 +98,19 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
 
   final byte[] encoded;
 
+  // the first denseDocFreq docs of DOCS-only terms are buffered as vInt doc
+  // deltas, then the term is either moved to a bitset if it is dense, or
+  // written as regular blocks
+  private final int denseDocFreq;
+  private byte[] pendingDocs = new byte[64];
+  private int pendingDocsUpto;
+  // words of the bitset of a dense term, starting at the word of its first doc
+  private long[] denseBits = new long[0];
+  private boolean dense;
+  // true if the docs of the current DOCS-only term are written as regular blocks
+  private boolean sparse;
+  private int firstDocID;
+
   private final ForUtil forUtil;
   private final Lucene50SkipWriter skipWriter;
   
@@ -167,6 +184,7 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
                                         payOut);
 
     encoded = new byte[MAX_ENCODED_SIZE];
+    denseDocFreq = Lucene50PostingsFormat.denseDocFreq(state.segmentInfo.maxDoc());
   }
 
   @Override
@@ -183,7 +201,7 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
   @Override
   public int setField(FieldInfo fieldInfo) {
     super.setField(fieldInfo);
-    skipWriter.setField(writePositions, writeOffsets, writePayloads);
+    skipWriter.setField(writeFreqs, writePositions, writeOffsets, writePayloads);
     lastState = emptyState;
     if (writePositions) {
       if (writePayloads || writeOffsets) {
@@ -212,11 +230,118 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
 
   @Override
   public void startDoc(int docID, int termDocFreq) throws IOException {
+    if (writeFreqs) {
+      writeDoc(docID, termDocFreq);
+    } else {
+      bufferDoc(docID);
+    }
+  }
+
+  /** Start a doc of a DOCS-only term. */
+  private void bufferDoc(int docID) throws IOException {
+    if (docID < 0 || (docCount > 0 && docID <= lastDocID)) {
+      throw new CorruptIndexException("docs out of order (" + docID + " <= " + lastDocID + " )", docOut);
+    }
+    if (docCount == denseDocFreq && dense == false && sparse == false) {
+      // the buffer is full: decide how this term is written
+      if (isDense(docCount, lastDocID)) {
+        movePendingDocsToBits();
+      } else {
+        writePendingDocs();
+      }
+    }
+    if (dense && isDense(docCount + 1, docID) == false) {
+      // the term is not dense anymore
+      writeDenseBitsAsBlocks();
+    }
+    if (sparse) {
+      writeDoc(docID, 1);
+      return;
+    }
+    if (docCount == 0) {
+      firstDocID = docID;
+    }
+    docCount++;
+    if (dense) {
+      setDenseBit(docID);
+    } else {
+      int delta = docID - lastDocID;
+      pendingDocs = ArrayUtil.grow(pendingDocs, pendingDocsUpto + 5);
+      while ((delta & ~0x7F) != 0) {
+        pendingDocs[pendingDocsUpto++] = (byte) ((delta & 0x7F) | 0x80);
+        delta >>>= 7;
+      }
+      pendingDocs[pendingDocsUpto++] = (byte) delta;
+    }
+    lastDocID = docID;
+  }
+
+  /** Whether a term that has {@code docCount} docs up to {@code lastDocID}
+   *  is dense enough to be stored as a bitset. */
+  private boolean isDense(int docCount, int lastDocID) {
+    return (long) docCount * DENSE_DOCS_RATIO >= (long) lastDocID - firstDocID + 1;
+  }
+
+  private void setDenseBit(int docID) {
+    final int word = (docID >>> 6) - (firstDocID >>> 6);
+    if (word >= denseBits.length) {
+      denseBits = ArrayUtil.grow(denseBits, word + 1);
+    }
+    denseBits[word] |= 1L << docID;
+  }
+
+  /** Move the buffered docs of the current term to its bitset. */
+  private void movePendingDocsToBits() {
+    final ByteArrayDataInput in = new ByteArrayDataInput(pendingDocs, 0, pendingDocsUpto);
+    int doc = 0;
+    while (in.eof() == false) {
+      doc += in.readVInt();
+      setDenseBit(doc);
+    }
+    pendingDocsUpto = 0;
+    dense = true;
+  }
+
+  /** Write the buffered docs of the current term as regular blocks. */
+  private void writePendingDocs() throws IOException {
+    final ByteArrayDataInput in = new ByteArrayDataInput(pendingDocs, 0, pendingDocsUpto);
+    lastDocID = 0;
+    docCount = 0;
+    int doc = 0;
+    while (in.eof() == false) {
+      doc += in.readVInt();
+      writeDoc(doc, 1);
+      finishWriteDoc();
+    }
+    pendingDocsUpto = 0;
+    sparse = true;
+  }
+
+  /** Write the docs of the bitset of the current term as regular blocks. */
+  private void writeDenseBitsAsBlocks() throws IOException {
+    final int numWords = (lastDocID >>> 6) - (firstDocID >>> 6) + 1;
+    final int firstWordDoc = firstDocID & ~0x3F;
+    lastDocID = 0;
+    docCount = 0;
+    for (int i = 0; i < numWords; ++i) {
+      long bits = denseBits[i];
+      while (bits != 0) {
+        writeDoc(firstWordDoc + (i << 6) + Long.numberOfTrailingZeros(bits), 1);
+        finishWriteDoc();
+        bits &= bits - 1;
+      }
+    }
+    Arrays.fill(denseBits, 0, numWords, 0L);
+    dense = false;
+    sparse = true;
+  }
+
+  private void writeDoc(int docID, int termDocFreq) throws IOException {
     // Have collected a block of docs, and get a new doc. 
     // Should write skip data as well as postings list for
     // current block.
     if (lastBlockDocID != -1 && docBufferUpto == 0) {
-      skipWriter.bufferSkip(lastBlockDocID, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
+      skipWriter.bufferSkip(lastBlockDocID, lastBlockMaxFreq, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
     }
 
     final int docDelta = docID - lastDocID;
@@ -301,11 +426,26 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
 
   @Override
   public void finishDoc() throws IOException {
+    if (writeFreqs || sparse) {
+      finishWriteDoc();
+    }
+  }
+
+  private void finishWriteDoc() {
     // Since we don't know df for current term, we had to buffer
     // those skip data for each block, and when a new doc comes, 
     // write them to skip file.
     if (docBufferUpto == BLOCK_SIZE) {
       lastBlockDocID = lastDocID;
+      if (writeFreqs) {
+        int maxFreq = 0;
+        for (int i = 0; i < BLOCK_SIZE; ++i) {
+          maxFreq = Math.max(maxFreq, freqBuffer[i]);
+        }
+        lastBlockMaxFreq = maxFreq;
+      } else {
+        lastBlockMaxFreq = 1;
+      }
       if (posOut != null) {
         if (payOut != null) {
           lastBlockPayFP = payOut.getFilePointer();
@@ -327,6 +467,22 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     // TODO: wasteful we are counting this (counting # docs
     // for this term) in two places?
     assert state.docFreq == docCount: state.docFreq + " vs " + docCount;
+
+    if (writeFreqs == false) {
+      if (dense == false && sparse == false) {
+        // all docs of the term are buffered
+        if (docCount == denseDocFreq && isDense(docCount, lastDocID)) {
+          movePendingDocsToBits();
+        } else {
+          writePendingDocs();
+        }
+      }
+      sparse = false;
+      if (dense) {
+        writeDenseDocs(state);
+        return;
+      }
+    }
     
     // docFreq == 1, don't write the single docid/freq to a separate file along with a pointer to it.
     final int singletonDocID;
@@ -427,12 +583,36 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     state.singletonDocID = singletonDocID;
     state.skipOffset = skipOffset;
     state.lastPosBlockOffset = lastPosBlockOffset;
+    state.dense = false;
     docBufferUpto = 0;
     posBufferUpto = 0;
     lastDocID = 0;
     docCount = 0;
   }
   
+  /** Write the docs of a dense DOCS-only term as the words of a bitset
+   *  between the first and the last doc. */
+  private void writeDenseDocs(IntBlockTermState state) throws IOException {
+    final int firstWord = firstDocID >>> 6;
+    final int numWords = (lastDocID >>> 6) - firstWord + 1;
+    docOut.writeVInt(firstWord);
+    docOut.writeVInt(numWords);
+    for (int i = 0; i < numWords; ++i) {
+      docOut.writeLong(denseBits[i]);
+    }
+    Arrays.fill(denseBits, 0, numWords, 0L);
+    state.docStartFP = docStartFP;
+    state.posStartFP = posStartFP;
+    state.payStartFP = payStartFP;
+    state.singletonDocID = -1;
+    state.skipOffset = -1;
+    state.lastPosBlockOffset = -1;
+    state.dense = true;
+    dense = false;
+    lastDocID = 0;
+    docCount = 0;
+  }
+  
   @Override
   public void encodeTerm(long[] longs, DataOutput out, FieldInfo fieldInfo, BlockTermState _state, boolean absolute) throws IOException {
     IntBlockTermState state = (IntBlockTermState)_state;
@@ -454,6 +634,9 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
         out.writeVLong(state.lastPosBlockOffset);
       }
     }
+    if (writeFreqs == false && state.docFreq >= denseDocFreq) {
+      out.writeByte(state.dense ? (byte) 1 : (byte) 0);
+    }
     if (state.skipOffset != -1) {
       out.writeVLong(state.skipOffset);
     }
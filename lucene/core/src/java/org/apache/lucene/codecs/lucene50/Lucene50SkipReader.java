@@ -58,6 +58,7 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long payPointer[];
   private int posBufferUpto[];
   private int payloadByteUpto[];
+  private int maxFreq[];
 
   private long lastPosPointer;
   private long lastPayPointer;
@@ -65,9 +66,14 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long lastDocPointer;
   private int lastPosBufferUpto;
 
-  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
+  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasMaxFreqs, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
     super(skipStream, maxSkipLevels, BLOCK_SIZE, 8);
     docPointer = new long[maxSkipLevels];
+    if (hasMaxFreqs) {
+      maxFreq = new int[maxSkipLevels];
+    } else {
+      maxFreq = null;
+    }
     if (hasPos) {
       posPointer = new long[maxSkipLevels];
       posBufferUpto = new int[maxSkipLevels];
@@ -142,6 +148,20 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
     return skipDoc[0];
   }
 
+  /** Returns the doc ID of the current skip entry on the given level, which
+   *  is the last doc ID that this entry skips over, or
+   *  {@link Integer#MAX_VALUE} if this level is exhausted. */
+  public int getSkipDoc(int level) {
+    return skipDoc[level];
+  }
+
+  /** Returns the maximum freq of the docs that the current skip entry on the
+   *  given level skips over, or {@link Integer#MAX_VALUE} if max freqs were
+   *  not recorded in the skip data. */
+  public int getMaxFreq(int level) {
+    return maxFreq == null ? Integer.MAX_VALUE : maxFreq[level];
+  }
+
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -180,6 +200,10 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
     int delta = skipStream.readVInt();
     docPointer[level] += skipStream.readVLong();
 
+    if (maxFreq != null) {
+      maxFreq[level] = skipStream.readVInt();
+    }
+
     if (posPointer != null) {
       posPointer[level] += skipStream.readVLong();
       posBufferUpto[level] = skipStream.readVInt();
@@ -41,6 +41,7 @@ import org.apache.lucene.codecs.MultiLevelSkipListWriter;
  * 2. its related file points(position, payload), 
  * 3. related numbers or uptos(position, payload).
  * 4. start offset.
+ * 5. the maximum freq of the docs it skips over (when freqs are indexed).
  *
  */
 final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
@@ -49,6 +50,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   private long[] lastSkipPosPointer;
   private long[] lastSkipPayPointer;
   private int[] lastPayloadByteUpto;
+  private int[] maxFreqs;
 
   private final IndexOutput docOut;
   private final IndexOutput posOut;
@@ -60,6 +62,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   private long curPayPointer;
   private int curPosBufferUpto;
   private int curPayloadByteUpto;
+  private boolean fieldHasFreqs;
   private boolean fieldHasPositions;
   private boolean fieldHasOffsets;
   private boolean fieldHasPayloads;
@@ -72,6 +75,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     
     lastSkipDoc = new int[maxSkipLevels];
     lastSkipDocPointer = new long[maxSkipLevels];
+    maxFreqs = new int[maxSkipLevels];
     if (posOut != null) {
       lastSkipPosPointer = new long[maxSkipLevels];
       if (payOut != null) {
@@ -81,7 +85,8 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     }
   }
 
-  public void setField(boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+  public void setField(boolean fieldHasFreqs, boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+    this.fieldHasFreqs = fieldHasFreqs;
     this.fieldHasPositions = fieldHasPositions;
     this.fieldHasOffsets = fieldHasOffsets;
     this.fieldHasPayloads = fieldHasPayloads;
@@ -113,6 +118,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
       super.resetSkip();
       Arrays.fill(lastSkipDoc, 0);
       Arrays.fill(lastSkipDocPointer, lastDocFP);
+      Arrays.fill(maxFreqs, 0);
       if (fieldHasPositions) {
         Arrays.fill(lastSkipPosPointer, lastPosFP);
         if (fieldHasPayloads) {
@@ -127,10 +133,16 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   }
 
   /**
-   * Sets the values for the current skip data. 
+   * Sets the values for the current skip data. {@code maxFreq} is the
+   * maximum freq of the block of documents that ends with {@code doc}.
    */
-  public void bufferSkip(int doc, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
+  public void bufferSkip(int doc, int maxFreq, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
     initSkip();
+    // a skip entry on a given level skips over all blocks since the previous
+    // entry of the same level, so accumulate the max freq on every level
+    for (int level = 0; level < maxFreqs.length; level++) {
+      maxFreqs[level] = Math.max(maxFreqs[level], maxFreq);
+    }
     this.curDoc = doc;
     this.curDocPointer = docOut.getFilePointer();
     this.curPosPointer = posFP;
@@ -150,6 +162,11 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     skipBuffer.writeVLong(curDocPointer - lastSkipDocPointer[level]);
     lastSkipDocPointer[level] = curDocPointer;
 
+    if (fieldHasFreqs) {
+      skipBuffer.writeVInt(maxFreqs[level]);
+    }
+    maxFreqs[level] = 0;
+
     if (fieldHasPositions) {
 
       skipBuffer.writeVLong(curPosPointer - lastSkipPosPointer[level]);
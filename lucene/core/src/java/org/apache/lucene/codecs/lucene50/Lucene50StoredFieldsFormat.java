@@ -50,7 +50,12 @@ import org.apache.lucene.util.packed.PackedInts;
  * compression, you can choose ({@link Mode#BEST_COMPRESSION BEST_COMPRESSION}), which uses 
  * the <a href="http://en.wikipedia.org/wiki/DEFLATE">DEFLATE</a> algorithm with 60KB blocks 
  * for a better ratio at the expense of slower performance. 
- * These two options can be configured like this:
+ * {@link Mode#BEST_COMPRESSION_WITH_DICTIONARY BEST_COMPRESSION_WITH_DICTIONARY}
+ * uses DEFLATE too, in 128KB blocks that are compressed as 8KB sub-blocks
+ * sharing the first 4KB of the block as a preset dictionary: retrieving a
+ * document only decompresses the dictionary and the sub-blocks of this
+ * document, which suits indices of small documents that look alike.
+ * These options can be configured like this:
  * <pre class="prettyprint">
  *   // the default: for high performance
  *   indexWriterConfig.setCodec(new Lucene53Codec(Mode.BEST_SPEED));
@@ -145,7 +150,12 @@ public final class Lucene50StoredFieldsFormat extends StoredFieldsFormat {
     /** Trade compression ratio for retrieval speed. */
     BEST_SPEED,
     /** Trade retrieval speed for compression ratio. */
-    BEST_COMPRESSION
+    BEST_COMPRESSION,
+    /**
+     * Compression ratio close to {@link #BEST_COMPRESSION} on small and
+     * redundant documents, with faster retrieval of single documents.
+     */
+    BEST_COMPRESSION_WITH_DICTIONARY
   }
   
   /** Attribute key for compression mode. */
@@ -189,6 +199,8 @@ public final class Lucene50StoredFieldsFormat extends StoredFieldsFormat {
         return new CompressingStoredFieldsFormat("Lucene50StoredFieldsFast", CompressionMode.FAST, 1 << 14, 128, 1024);
       case BEST_COMPRESSION: 
         return new CompressingStoredFieldsFormat("Lucene50StoredFieldsHigh", CompressionMode.HIGH_COMPRESSION, 61440, 512, 1024);
+      case BEST_COMPRESSION_WITH_DICTIONARY:
+        return new CompressingStoredFieldsFormat("Lucene50StoredFieldsHighDict", CompressionMode.HIGH_COMPRESSION_WITH_DICTIONARY, 1 << 17, 1024, 1024);
       default: throw new AssertionError();
     }
   }
@@ -0,0 +1,108 @@
+package org.apache.lucene.codecs.lucene53;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.PointsFormat;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.DataOutput;
+
+/**
+ * Lucene 5.3 point format, which encodes dimensional values in a block KD-tree structure
+ * for fast shape intersection filtering. See <a href="https://www.cs.duke.edu/~pankaj/publications/papers/bkd-sstd.pdf">this paper</a> for details.
+ *
+ * <p>This data structure is written as a series of blocks on disk, with an in-memory perfectly balanced
+ * binary tree of split values referencing those blocks at the leaves.
+ *
+ * <p>The number of dimensions, as well as the number of bytes per dimension, are stored in
+ * the field infos.
+ *
+ * <p>Files:
+ * <ol>
+ *   <li><tt>.dim</tt>: Points data</li>
+ *   <li><tt>.dii</tt>: Points index</li>
+ * </ol>
+ * <ol>
+ *   <li><a name="dim"></a>
+ *   <p>The points data or .dim file.</p>
+ *   <p>For each field with points, this stores the leaf blocks, followed by the in-memory index of that field's tree.
+ *      Each leaf block holds the docIDs of its points, then the prefix shared by the values of each dimension
+ *      within the block, then the remaining suffix bytes of each value.</p>
+ *   <p>Points data (.dim) --&gt; Header,&lt;Tree&gt;<sup>NumFields</sup>,Footer</p>
+ *   <ul>
+ *     <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *     <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ *   </ul>
+ *   <li><a name="dii"></a>
+ *   <p>The points index or .dii file.</p>
+ *   <p>For each field with points, this stores the offset of its tree's index in the points data (.dim)</p>
+ *   <p>Points index (.dii) --&gt; Header,Count,&lt;FieldNumber,IndexFP&gt;<sup>Count</sup>,Footer</p>
+ *   <ul>
+ *     <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *     <li>Count,FieldNumber --&gt; {@link DataOutput#writeVInt vInt}</li>
+ *     <li>IndexFP --&gt; {@link DataOutput#writeVLong vLong}</li>
+ *     <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ *   </ul>
+ * </ol>
+ *
+ * <p>Segments written by codecs that predate points have no points files; they are never opened
+ * unless the segment's field infos report a field with points.
+ *
+ * @lucene.experimental
+ */
+
+public final class Lucene53PointsFormat extends PointsFormat {
+
+  static final String DATA_CODEC_NAME = "Lucene53PointsFormatData";
+  static final String META_CODEC_NAME = "Lucene53PointsFormatMeta";
+
+  /**
+   * Filename extension for the leaf blocks
+   */
+  public static final String DATA_EXTENSION = "dim";
+
+  /**
+   * Filename extension for the index per field
+   */
+  public static final String INDEX_EXTENSION = "dii";
+
+  static final int DATA_VERSION_START = 0;
+  static final int DATA_VERSION_CURRENT = DATA_VERSION_START;
+
+  static final int INDEX_VERSION_START = 0;
+  static final int INDEX_VERSION_CURRENT = INDEX_VERSION_START;
+
+  /** Sole constructor */
+  public Lucene53PointsFormat() {
+  }
+
+  @Override
+  public PointsWriter fieldsWriter(SegmentWriteState state) throws IOException {
+    return new Lucene53PointsWriter(state);
+  }
+
+  @Override
+  public PointsReader fieldsReader(SegmentReadState state) throws IOException {
+    return new Lucene53PointsReader(state);
+  }
+}
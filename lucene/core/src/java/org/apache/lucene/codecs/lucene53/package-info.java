@@ -192,6 +192,11 @@
  * {@link org.apache.lucene.codecs.lucene50.Lucene50LiveDocsFormat Live documents}. 
  * An optional file indicating which documents are live.
  * </li>
+ * <li>
+ * {@link org.apache.lucene.codecs.lucene53.Lucene53PointsFormat Point values}.
+ * Optional pair of files, recording dimensionally indexed fields, to enable fast
+ * numeric range filtering (1D) and geo shape intersection (2D, 3D).
+ * </li>
  * </ul>
  * <p>Details on each of these are provided in their linked pages.</p>
  * </div>
@@ -315,6 +320,11 @@
  * <td>.liv</td>
  * <td>Info about what files are live</td>
  * </tr>
+ * <tr>
+ * <td>{@link org.apache.lucene.codecs.lucene53.Lucene53PointsFormat Point values}</td>
+ * <td>.dii, .dim</td>
+ * <td>Holds indexed points, if any</td>
+ * </tr>
  * </table>
  * </div>
  * <a name="Lock_File"></a>
@@ -386,6 +396,8 @@
  * <li>In version 4.9, DocValues has a new multi-valued numeric type (SortedNumeric)
  * that is suitable for faceting/sorting/analytics.
  * </li>
+ * <li>In version 6.0, Point values were added, as a block KD-tree per field, for fast
+ * range and shape filtering of numeric and multi-dimensional values.</li>
  * </ul>
  * <a name="Limitations"></a>
  * <h2>Limitations</h2>
@@ -19,10 +19,14 @@ package org.apache.lucene.codecs.perfield;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.ServiceLoader;
 import java.util.TreeMap;
 
@@ -33,6 +37,7 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.MergeState;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
@@ -131,6 +136,49 @@ public abstract class PerFieldDocValuesFormat extends DocValuesFormat {
       getInstance(field).addSortedSetField(field, values, docToOrdCount, ords);
     }
 
+    @Override
+    public void merge(final MergeState mergeState) throws IOException {
+      if (mergeState.executor == null) {
+        super.merge(mergeState);
+        return;
+      }
+
+      for(DocValuesProducer docValuesProducer : mergeState.docValuesProducers) {
+        if (docValuesProducer != null) {
+          docValuesProducer.checkIntegrity();
+        }
+      }
+
+      // Each format writes its own files, so fields of different formats
+      // can be merged concurrently:
+      Map<DocValuesConsumer,List<FieldInfo>> consumerToFields = new LinkedHashMap<>();
+      for (FieldInfo mergeFieldInfo : mergeState.mergeFieldInfos) {
+        if (mergeFieldInfo.getDocValuesType() != DocValuesType.NONE) {
+          DocValuesConsumer consumer = getInstance(mergeFieldInfo);
+          List<FieldInfo> fields = consumerToFields.get(consumer);
+          if (fields == null) {
+            fields = new ArrayList<>();
+            consumerToFields.put(consumer, fields);
+          }
+          fields.add(mergeFieldInfo);
+        }
+      }
+
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (final Map.Entry<DocValuesConsumer,List<FieldInfo>> ent : consumerToFields.entrySet()) {
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+              for (FieldInfo mergeFieldInfo : ent.getValue()) {
+                ent.getKey().mergeField(mergeFieldInfo, mergeState);
+              }
+              return null;
+            }
+          });
+      }
+      mergeState.runConcurrently(tasks);
+    }
+
     private DocValuesConsumer getInstance(FieldInfo field) throws IOException {
       DocValuesFormat format = null;
       if (field.getDocValuesGen() != -1) {
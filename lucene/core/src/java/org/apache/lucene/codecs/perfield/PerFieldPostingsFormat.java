@@ -31,6 +31,7 @@ import java.util.ServiceLoader; // javadocs
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.FieldsProducer;
@@ -39,6 +40,7 @@ import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.FilterLeafReader.FilterFields;
 import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.MergeState;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
 import org.apache.lucene.index.Terms;
@@ -109,11 +111,23 @@ public abstract class PerFieldPostingsFormat extends PostingsFormat {
   private class FieldsWriter extends FieldsConsumer {
     final SegmentWriteState writeState;
     final List<Closeable> toClose = new ArrayList<Closeable>();
+    // Set while merging, so formats may be written concurrently
+    private MergeState mergeState;
 
     public FieldsWriter(SegmentWriteState writeState) {
       this.writeState = writeState;
     }
 
+    @Override
+    public void merge(MergeState mergeState) throws IOException {
+      this.mergeState = mergeState;
+      try {
+        super.merge(mergeState);
+      } finally {
+        this.mergeState = null;
+      }
+    }
+
     @Override
     public void write(Fields fields) throws IOException {
 
@@ -181,21 +195,36 @@ public abstract class PerFieldPostingsFormat extends PostingsFormat {
       // Second pass: write postings
       boolean success = false;
       try {
+        List<Callable<Void>> tasks = new ArrayList<>();
         for(Map.Entry<PostingsFormat,FieldsGroup> ent : formatToGroups.entrySet()) {
           PostingsFormat format = ent.getKey();
           final FieldsGroup group = ent.getValue();
 
           // Exposes only the fields from this group:
-          Fields maskedFields = new FilterFields(fields) {
+          final Fields maskedFields = new FilterFields(fields) {
               @Override
               public Iterator<String> iterator() {
                 return group.fields.iterator();
               }
             };
 
-          FieldsConsumer consumer = format.fieldsConsumer(group.state);
+          final FieldsConsumer consumer = format.fieldsConsumer(group.state);
           toClose.add(consumer);
-          consumer.write(maskedFields);
+          if (mergeState == null) {
+            consumer.write(maskedFields);
+          } else {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                  consumer.write(maskedFields);
+                  return null;
+                }
+              });
+          }
+        }
+        if (mergeState != null) {
+          // Each format writes its own files, so a merge writes them concurrently:
+          mergeState.runConcurrently(tasks);
         }
         success = true;
       } finally {
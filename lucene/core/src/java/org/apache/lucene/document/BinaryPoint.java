@@ -0,0 +1,223 @@
+package org.apache.lucene.document;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+import org.apache.lucene.search.PointInSetQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * An indexed binary field for fast range filters.  If you also
+ * need to store the value, you should add a separate {@link StoredField} instance.
+ * <p>
+ * Finding all documents within an N-dimensional shape or range at search time is
+ * efficient.  Multiple values for the same field in one document
+ * is allowed.
+ * <p>
+ * Values of all dimensions must have the same length, and are compared as unsigned bytes.
+ * <p>
+ * This field defines static factory methods for creating common queries:
+ * <ul>
+ *   <li>{@link #newExactQuery newExactQuery()} for matching an exact 1D point.
+ *   <li>{@link #newRangeQuery newRangeQuery()} for matching a 1D range, or points/ranges in n-dimensional space.
+ *   <li>{@link #newSetQuery newSetQuery()} for matching a set of 1D values.
+ * </ul>
+ * @see org.apache.lucene.index.PointValues
+ */
+public final class BinaryPoint extends Field {
+
+  private static FieldType getType(byte[][] point) {
+    if (point == null) {
+      throw new IllegalArgumentException("point cannot be null");
+    }
+    if (point.length == 0) {
+      throw new IllegalArgumentException("point cannot be 0 dimensions");
+    }
+    int bytesPerDim = -1;
+    for(int i=0;i<point.length;i++) {
+      byte[] oneDim = point[i];
+      if (oneDim == null) {
+        throw new IllegalArgumentException("point cannot have null values");
+      }
+      if (oneDim.length == 0) {
+        throw new IllegalArgumentException("point cannot have 0-length values");
+      }
+      if (bytesPerDim == -1) {
+        bytesPerDim = oneDim.length;
+      } else if (bytesPerDim != oneDim.length) {
+        throw new IllegalArgumentException("all dimensions must have same bytes length; got " + bytesPerDim + " and " + oneDim.length);
+      }
+    }
+    return getType(point.length, bytesPerDim);
+  }
+
+  private static FieldType getType(int numDims, int bytesPerDim) {
+    FieldType type = new FieldType();
+    type.setDimensions(numDims, bytesPerDim);
+    type.freeze();
+    return type;
+  }
+
+  private static BytesRef pack(byte[]... point) {
+    if (point == null) {
+      throw new IllegalArgumentException("point cannot be null");
+    }
+    if (point.length == 0) {
+      throw new IllegalArgumentException("point cannot be 0 dimensions");
+    }
+    int bytesPerDim = -1;
+    for(byte[] dim : point) {
+      if (dim == null) {
+        throw new IllegalArgumentException("point cannot have null values");
+      }
+      if (bytesPerDim == -1) {
+        if (dim.length == 0) {
+          throw new IllegalArgumentException("point cannot have 0-length values");
+        }
+        bytesPerDim = dim.length;
+      } else if (dim.length != bytesPerDim) {
+        throw new IllegalArgumentException("all dimensions must have same bytes length; got " + bytesPerDim + " and " + dim.length);
+      }
+    }
+    byte[] packed = new byte[bytesPerDim*point.length];
+    for(int i=0;i<point.length;i++) {
+      System.arraycopy(point[i], 0, packed, i*bytesPerDim, bytesPerDim);
+    }
+    return new BytesRef(packed);
+  }
+
+  /** General purpose API: creates a new BinaryPoint, indexing the
+   *  provided N-dimensional binary point.
+   *
+   *  @param name field name
+   *  @param point byte[][] value
+   *  @throws IllegalArgumentException if the field name or value is null.
+   */
+  public BinaryPoint(String name, byte[]... point) {
+    super(name, pack(point), getType(point));
+  }
+
+  /** Expert API */
+  public BinaryPoint(String name, byte[] packedPoint, FieldType type) {
+    super(name, packedPoint, type);
+    if (packedPoint.length != type.pointDimensionCount() * type.pointNumBytes()) {
+      throw new IllegalArgumentException("packedPoint is length=" + packedPoint.length + " but type.pointDimensionCount()=" + type.pointDimensionCount() + " and type.pointNumBytes()=" + type.pointNumBytes());
+    }
+  }
+
+  // static methods for generating queries
+
+  /**
+   * Create a query for matching an exact binary value.
+   * <p>
+   * This is for simple one-dimension points, for multidimensional points use
+   * {@link #newRangeQuery(String, byte[][], byte[][])} instead.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param value binary value
+   * @throws IllegalArgumentException if {@code field} is null or {@code value} is null
+   * @return a query matching documents with this exact value
+   */
+  public static Query newExactQuery(String field, byte[] value) {
+    return newRangeQuery(field, value, value);
+  }
+
+  /**
+   * Create a range query for binary values.
+   * <p>
+   * This is for simple one-dimension ranges, for multidimensional ranges use
+   * {@link #newRangeQuery(String, byte[][], byte[][])} instead.
+   * <p>
+   * Both bounds are inclusive.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerValue lower portion of the range (inclusive). must not be {@code null}.
+   * @param upperValue upper portion of the range (inclusive). must not be {@code null}.
+   * @throws IllegalArgumentException if {@code field} is null, if {@code lowerValue} is null,
+   *                                  or if {@code upperValue} is null
+   * @return a query matching documents within this range.
+   */
+  public static Query newRangeQuery(String field, byte[] lowerValue, byte[] upperValue) {
+    return newRangeQuery(field, new byte[][] {lowerValue}, new byte[][] {upperValue});
+  }
+
+  /**
+   * Create a range query for n-dimensional binary values.
+   * <p>
+   * Both bounds of every dimension are inclusive.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerValue lower portion of the range (inclusive). must not be {@code null}.
+   * @param upperValue upper portion of the range (inclusive). must not be {@code null}.
+   * @throws IllegalArgumentException if {@code field} is null, if {@code lowerValue} is null, if {@code upperValue} is null,
+   *                                  or if {@code lowerValue.length != upperValue.length}
+   * @return a query matching documents within this range.
+   */
+  public static Query newRangeQuery(String field, byte[][] lowerValue, byte[][] upperValue) {
+    if (lowerValue == null || upperValue == null) {
+      throw new IllegalArgumentException("lowerValue and upperValue must not be null");
+    }
+    if (lowerValue.length != upperValue.length) {
+      throw new IllegalArgumentException("lowerValue has length=" + lowerValue.length + " but upperValue has different length=" + upperValue.length);
+    }
+    BytesRef lower = pack(lowerValue);
+    BytesRef upper = pack(upperValue);
+    return new PointRangeQuery(field, Arrays.copyOfRange(lower.bytes, lower.offset, lower.offset + lower.length),
+                               Arrays.copyOfRange(upper.bytes, upper.offset, upper.offset + upper.length), lowerValue.length) {
+      @Override
+      protected String toString(int dimension, byte[] value) {
+        return new BytesRef(value).toString();
+      }
+    };
+  }
+
+  /**
+   * Create a query matching any of the specified 1D values.  This is the points equivalent of {@code TermsQuery}.
+   * All values must have the same length.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param values all values to match
+   * @return a query matching documents with any of these values.
+   */
+  public static Query newSetQuery(String field, byte[]... values) {
+    int bytesPerDim = -1;
+    for (byte[] value : values) {
+      if (value == null) {
+        throw new IllegalArgumentException("values must not contain null");
+      }
+      if (bytesPerDim == -1) {
+        bytesPerDim = value.length;
+      } else if (value.length != bytesPerDim) {
+        throw new IllegalArgumentException("all byte[] must be the same length, but saw " + bytesPerDim + " and " + value.length);
+      }
+    }
+    if (bytesPerDim == -1) {
+      // There are no values: the query matches nothing, but still needs a valid byte width
+      bytesPerDim = 1;
+    }
+    return new PointInSetQuery(field, 1, bytesPerDim, values) {
+      @Override
+      protected String toString(byte[] value) {
+        return new BytesRef(value).toString();
+      }
+    };
+  }
+}
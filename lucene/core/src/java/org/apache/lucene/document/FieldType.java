@@ -21,6 +21,7 @@ import org.apache.lucene.analysis.Analyzer; // javadocs
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexableFieldType;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.search.NumericRangeQuery; // javadocs
 import org.apache.lucene.util.NumericUtils;
 
@@ -55,6 +56,8 @@ public class FieldType implements IndexableFieldType  {
   private boolean frozen;
   private int numericPrecisionStep = NumericUtils.PRECISION_STEP_DEFAULT;
   private DocValuesType docValuesType = DocValuesType.NONE;
+  private int dimensionCount;
+  private int dimensionNumBytes;
 
   /**
    * Create a new mutable FieldType with all of the properties from <code>ref</code>
@@ -71,6 +74,8 @@ public class FieldType implements IndexableFieldType  {
     this.numericType = ref.numericType();
     this.numericPrecisionStep = ref.numericPrecisionStep();
     this.docValuesType = ref.docValuesType();
+    this.dimensionCount = ref.dimensionCount;
+    this.dimensionNumBytes = ref.dimensionNumBytes;
     // Do not copy frozen!
   }
   
@@ -342,6 +347,62 @@ public class FieldType implements IndexableFieldType  {
     return numericPrecisionStep;
   }
 
+  /**
+   * Enables points indexing.
+   * @param dimensionCount number of dimensions of each point
+   * @param dimensionNumBytes number of bytes of each dimension
+   * @throws IllegalStateException if this FieldType is frozen against
+   *         future modifications.
+   * @see #pointDimensionCount()
+   * @see #pointNumBytes()
+   */
+  public void setDimensions(int dimensionCount, int dimensionNumBytes) {
+    checkIfFrozen();
+    if (dimensionCount < 0) {
+      throw new IllegalArgumentException("dimensionCount must be >= 0; got " + dimensionCount);
+    }
+    if (dimensionCount > PointValues.MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("dimensionCount must be <= " + PointValues.MAX_DIMENSIONS + "; got " + dimensionCount);
+    }
+    if (dimensionNumBytes < 0) {
+      throw new IllegalArgumentException("dimensionNumBytes must be >= 0; got " + dimensionNumBytes);
+    }
+    if (dimensionNumBytes > PointValues.MAX_NUM_BYTES) {
+      throw new IllegalArgumentException("dimensionNumBytes must be <= " + PointValues.MAX_NUM_BYTES + "; got " + dimensionNumBytes);
+    }
+    if (dimensionCount == 0 && dimensionNumBytes != 0) {
+      throw new IllegalArgumentException("when dimensionCount is 0, dimensionNumBytes must be 0; got " + dimensionNumBytes);
+    }
+    if (dimensionNumBytes == 0 && dimensionCount != 0) {
+      throw new IllegalArgumentException("when dimensionNumBytes is 0, dimensionCount must be 0; got " + dimensionCount);
+    }
+
+    this.dimensionCount = dimensionCount;
+    this.dimensionNumBytes = dimensionNumBytes;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The default is <code>0</code> (the field does not index points).
+   * @see #setDimensions(int, int)
+   */
+  @Override
+  public int pointDimensionCount() {
+    return dimensionCount;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The default is <code>0</code> (the field does not index points).
+   * @see #setDimensions(int, int)
+   */
+  @Override
+  public int pointNumBytes() {
+    return dimensionNumBytes;
+  }
+
   /** Prints a Field for human consumption. */
   @Override
   public final String toString() {
@@ -389,6 +450,15 @@ public class FieldType implements IndexableFieldType  {
       result.append("docValuesType=");
       result.append(docValuesType);
     }
+    if (dimensionCount != 0) {
+      if (result.length() > 0) {
+        result.append(",");
+      }
+      result.append("pointDimensionCount=");
+      result.append(dimensionCount);
+      result.append(",pointNumBytes=");
+      result.append(dimensionNumBytes);
+    }
     
     return result.toString();
   }
@@ -425,6 +495,8 @@ public class FieldType implements IndexableFieldType  {
   public int hashCode() {
     final int prime = 31;
     int result = 1;
+    result = prime * result + dimensionCount;
+    result = prime * result + dimensionNumBytes;
     result = prime * result + ((docValuesType == null) ? 0 : docValuesType.hashCode());
     result = prime * result + indexOptions.hashCode();
     result = prime * result + numericPrecisionStep;
@@ -445,6 +517,8 @@ public class FieldType implements IndexableFieldType  {
     if (obj == null) return false;
     if (getClass() != obj.getClass()) return false;
     FieldType other = (FieldType) obj;
+    if (dimensionCount != other.dimensionCount) return false;
+    if (dimensionNumBytes != other.dimensionNumBytes) return false;
     if (docValuesType != other.docValuesType) return false;
     if (indexOptions != other.indexOptions) return false;
     if (numericPrecisionStep != other.numericPrecisionStep) return false;
@@ -0,0 +1,229 @@
+package org.apache.lucene.document;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.search.PointInSetQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * An indexed {@code float} field for fast range filters.  If you also
+ * need to store the value, you should add a separate {@link StoredField} instance.
+ * <p>
+ * Finding all documents within an N-dimensional shape or range at search time is
+ * efficient.  Multiple values for the same field in one document
+ * is allowed.
+ * <p>
+ * This field defines static factory methods for creating common queries:
+ * <ul>
+ *   <li>{@link #newExactQuery newExactQuery()} for matching an exact 1D point.
+ *   <li>{@link #newRangeQuery newRangeQuery()} for matching a 1D range, or points/ranges in n-dimensional space.
+ *   <li>{@link #newSetQuery newSetQuery()} for matching a set of 1D values.
+ * </ul>
+ * @see org.apache.lucene.index.PointValues
+ */
+public final class FloatPoint extends Field {
+
+  private static FieldType getType(int numDims) {
+    FieldType type = new FieldType();
+    type.setDimensions(numDims, Float.BYTES);
+    type.freeze();
+    return type;
+  }
+
+  @Override
+  public void setFloatValue(float value) {
+    setFloatValues(value);
+  }
+
+  /** Change the values of this field */
+  public void setFloatValues(float... point) {
+    if (type.pointDimensionCount() != point.length) {
+      throw new IllegalArgumentException("this field (name=" + name + ") uses " + type.pointDimensionCount() + " dimensions; cannot change to (incoming) " + point.length + " dimensions");
+    }
+    fieldsData = pack(point);
+  }
+
+  @Override
+  public void setBytesValue(BytesRef bytes) {
+    throw new IllegalArgumentException("cannot change value type from float to BytesRef");
+  }
+
+  @Override
+  public Number numericValue() {
+    if (type.pointDimensionCount() != 1) {
+      throw new IllegalStateException("this field (name=" + name + ") uses " + type.pointDimensionCount() + " dimensions; cannot convert to a single numeric value");
+    }
+    BytesRef bytes = (BytesRef) fieldsData;
+    assert bytes.length == Float.BYTES;
+    return decodeDimension(bytes.bytes, bytes.offset);
+  }
+
+  private static BytesRef pack(float... point) {
+    if (point == null) {
+      throw new IllegalArgumentException("point cannot be null");
+    }
+    if (point.length == 0) {
+      throw new IllegalArgumentException("point cannot be 0 dimensions");
+    }
+    byte[] packed = new byte[point.length * Float.BYTES];
+
+    for (int dim = 0; dim < point.length; dim++) {
+      encodeDimension(point[dim], packed, dim * Float.BYTES);
+    }
+
+    return new BytesRef(packed);
+  }
+
+  /** Creates a new FloatPoint, indexing the
+   *  provided N-dimensional float point.
+   *
+   *  @param name field name
+   *  @param point float[] value
+   *  @throws IllegalArgumentException if the field name or value is null.
+   */
+  public FloatPoint(String name, float... point) {
+    super(name, pack(point), getType(point.length));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append(type.toString());
+    result.append('<');
+    result.append(name);
+    result.append(':');
+
+    BytesRef bytes = (BytesRef) fieldsData;
+    for (int dim = 0; dim < type.pointDimensionCount(); dim++) {
+      if (dim > 0) {
+        result.append(',');
+      }
+      result.append(decodeDimension(bytes.bytes, bytes.offset + dim * Float.BYTES));
+    }
+
+    result.append('>');
+    return result.toString();
+  }
+
+  // public helper methods (e.g. for queries)
+
+  /** Encode single float dimension */
+  public static void encodeDimension(float value, byte dest[], int offset) {
+    NumericUtils.intToSortableBytes(NumericUtils.floatToSortableInt(value), dest, offset);
+  }
+
+  /** Decode single float dimension */
+  public static float decodeDimension(byte value[], int offset) {
+    return NumericUtils.sortableIntToFloat(NumericUtils.sortableBytesToInt(value, offset));
+  }
+
+  private static byte[] encode(float... values) {
+    byte[] packed = new byte[values.length * Float.BYTES];
+    for (int dim = 0; dim < values.length; dim++) {
+      encodeDimension(values[dim], packed, dim * Float.BYTES);
+    }
+    return packed;
+  }
+
+  // static methods for generating queries
+
+  /**
+   * Create a query for matching an exact float value.
+   * <p>
+   * This is for simple one-dimension points, for multidimensional points use
+   * {@link #newRangeQuery(String, float[], float[])} instead.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param value exact value
+   * @throws IllegalArgumentException if {@code field} is null.
+   * @return a query matching documents with this exact value
+   */
+  public static Query newExactQuery(String field, float value) {
+    return newRangeQuery(field, value, value);
+  }
+
+  /**
+   * Create a range query for float values.
+   * <p>
+   * This is for simple one-dimension ranges, for multidimensional ranges use
+   * {@link #newRangeQuery(String, float[], float[])} instead.
+   * <p>
+   * Both bounds are inclusive: to exclude a bound, pass {@code Math.nextUp(lowerValue)}
+   * or {@code Math.nextDown(upperValue)}; for an open-ended range, pass
+   * {@code Float.NEGATIVE_INFINITY} or {@code Float.POSITIVE_INFINITY}.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerValue lower portion of the range (inclusive).
+   * @param upperValue upper portion of the range (inclusive).
+   * @throws IllegalArgumentException if {@code field} is null.
+   * @return a query matching documents within this range.
+   */
+  public static Query newRangeQuery(String field, float lowerValue, float upperValue) {
+    return newRangeQuery(field, new float[] { lowerValue }, new float[] { upperValue });
+  }
+
+  /**
+   * Create a range query for n-dimensional float values.
+   * <p>
+   * Both bounds of every dimension are inclusive.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerValue lower portion of the range (inclusive). must not be {@code null}.
+   * @param upperValue upper portion of the range (inclusive). must not be {@code null}.
+   * @throws IllegalArgumentException if {@code field} is null, if {@code lowerValue} is null, if {@code upperValue} is null,
+   *                                  or if {@code lowerValue.length != upperValue.length}
+   * @return a query matching documents within this range.
+   */
+  public static Query newRangeQuery(String field, float[] lowerValue, float[] upperValue) {
+    if (lowerValue == null || upperValue == null) {
+      throw new IllegalArgumentException("lowerValue and upperValue must not be null");
+    }
+    if (lowerValue.length != upperValue.length) {
+      throw new IllegalArgumentException("lowerValue has length=" + lowerValue.length + " but upperValue has different length=" + upperValue.length);
+    }
+    return new PointRangeQuery(field, encode(lowerValue), encode(upperValue), lowerValue.length) {
+      @Override
+      protected String toString(int dimension, byte[] value) {
+        return Float.toString(decodeDimension(value, 0));
+      }
+    };
+  }
+
+  /**
+   * Create a query matching any of the specified 1D values.  This is the points equivalent of {@code TermsQuery}.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param values all values to match
+   * @return a query matching documents with any of these values.
+   */
+  public static Query newSetQuery(String field, float... values) {
+    byte[][] points = new byte[values.length][];
+    for (int i = 0; i < values.length; i++) {
+      points[i] = encode(values[i]);
+    }
+    return new PointInSetQuery(field, 1, Float.BYTES, points) {
+      @Override
+      protected String toString(byte[] value) {
+        return Float.toString(decodeDimension(value, 0));
+      }
+    };
+  }
+}
@@ -22,8 +22,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -34,10 +38,12 @@ import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
-import org.apache.lucene.util.PriorityQueue;
 
 /* Tracks the stream of {@link BufferedDeletes}.
  * When DocumentsWriterPerThread flushes, its buffered
@@ -64,9 +70,6 @@ class BufferedUpdatesStream implements Accountable {
   // will be correct:
   private long nextGen = 1;
 
-  // used only by assert
-  private BytesRef lastDeleteTerm;
-
   private final InfoStream infoStream;
   private final AtomicLong bytesUsed = new AtomicLong();
   private final AtomicInteger numTerms = new AtomicInteger();
@@ -131,10 +134,39 @@ class BufferedUpdatesStream implements Accountable {
     // If non-null, contains segments that are 100% deleted
     public final List<SegmentCommitInfo> allDeleted;
 
-    ApplyDeletesResult(boolean anyDeletes, long gen, List<SegmentCommitInfo> allDeleted) {
+    // True if some segments were merged away or dropped while their deletes
+    // and updates were resolved, so they were not published:
+    public final boolean anySegmentDropped;
+
+    ApplyDeletesResult(boolean anyDeletes, long gen, List<SegmentCommitInfo> allDeleted, boolean anySegmentDropped) {
       this.anyDeletes = anyDeletes;
       this.gen = gen;
       this.allDeleted = allDeleted;
+      this.anySegmentDropped = anySegmentDropped;
+    }
+  }
+
+  /** The buffered deletes and updates that apply to some segments.  They are
+   *  snapshot under the {@link IndexWriter} lock by {@link #prepare}, resolved
+   *  without that lock by {@link #resolve}, and published under the lock again
+   *  by {@link #publish}. */
+  static class PendingUpdates {
+    final long gen;
+    final long t0;
+    final int numSegments;
+    // null if no deletes or updates apply to the segments:
+    final SegmentState[] segStates;
+    final List<SegmentUpdates> segUpdates;
+    // Files of the segments that segStates read:
+    final Set<String> files;
+
+    PendingUpdates(long gen, long t0, int numSegments, SegmentState[] segStates, List<SegmentUpdates> segUpdates, Set<String> files) {
+      this.gen = gen;
+      this.t0 = t0;
+      this.numSegments = numSegments;
+      this.segStates = segStates;
+      this.segUpdates = segUpdates;
+      this.files = files;
     }
   }
 
@@ -146,160 +178,211 @@ class BufferedUpdatesStream implements Accountable {
     }
   };
   
-  /** Resolves the buffered deleted Term/Query/docIDs, into
-   *  actual deleted docIDs in the liveDocs MutableBits for
-   *  each SegmentReader. */
-  public synchronized ApplyDeletesResult applyDeletesAndUpdates(IndexWriter.ReaderPool pool, List<SegmentCommitInfo> infos) throws IOException {
+  /** Takes a snapshot of the buffered deleted Term/Query/docIDs
+   *  and updates that apply to each of the provided segments, and
+   *  opens the readers to resolve them.  This must be called
+   *  while holding the {@link IndexWriter} lock, and the returned
+   *  updates must then be passed to {@link #publish}, even if
+   *  {@link #resolve} fails.  The segments may be merged away
+   *  until then, so the caller must also keep their {@link
+   *  PendingUpdates#files files} from being deleted. */
+  public synchronized PendingUpdates prepare(IndexWriter.ReaderPool pool, List<SegmentCommitInfo> infos) throws IOException {
     final long t0 = System.currentTimeMillis();
 
     final long gen = nextGen++;
 
     if (infos.size() == 0) {
-      return new ApplyDeletesResult(false, gen, null);
+      return new PendingUpdates(gen, t0, 0, null, null, Collections.<String>emptySet());
     }
 
-    // We only init these on demand, when we find our first deletes that need to be applied:
-    SegmentState[] segStates = null;
-
-    long totDelCount = 0;
-    long totTermVisitedCount = 0;
-
-    boolean success = false;
-
-    ApplyDeletesResult result = null;
+    assert checkDeleteStats();
 
-    try {
+    if (!any()) {
       if (infoStream.isEnabled("BD")) {
-        infoStream.message("BD", String.format(Locale.ROOT, "applyDeletes: open segment readers took %d msec", System.currentTimeMillis()-t0));
+        infoStream.message("BD", "applyDeletes: no segments; skipping");
       }
+      return new PendingUpdates(gen, t0, infos.size(), null, null, Collections.<String>emptySet());
+    }
 
-      assert checkDeleteStats();
+    if (infoStream.isEnabled("BD")) {
+      infoStream.message("BD", "applyDeletes: infos=" + infos + " packetCount=" + updates.size());
+    }
 
-      if (!any()) {
-        if (infoStream.isEnabled("BD")) {
-          infoStream.message("BD", "applyDeletes: no segments; skipping");
-        }
-        return new ApplyDeletesResult(false, gen, null);
-      }
+    infos = sortByDelGen(infos);
 
-      if (infoStream.isEnabled("BD")) {
-        infoStream.message("BD", "applyDeletes: infos=" + infos + " packetCount=" + updates.size());
-      }
+    CoalescedUpdates coalescedUpdates = null;
+    List<QueryAndLimit> coalescedQueries = Collections.emptyList();
+    final List<SegmentUpdates> segUpdates = new ArrayList<>();
+    int infosIDX = infos.size()-1;
+    int delIDX = updates.size()-1;
 
-      infos = sortByDelGen(infos);
-
-      CoalescedUpdates coalescedUpdates = null;
-      int infosIDX = infos.size()-1;
-      int delIDX = updates.size()-1;
-
-      // Backwards merge sort the segment delGens with the packet delGens in the buffered stream:
-      while (infosIDX >= 0) {
-        final FrozenBufferedUpdates packet = delIDX >= 0 ? updates.get(delIDX) : null;
-        final SegmentCommitInfo info = infos.get(infosIDX);
-        final long segGen = info.getBufferedDeletesGen();
-
-        if (packet != null && segGen < packet.delGen()) {
-          if (!packet.isSegmentPrivate && packet.any()) {
-            /*
-             * Only coalesce if we are NOT on a segment private del packet: the segment private del packet
-             * must only apply to segments with the same delGen.  Yet, if a segment is already deleted
-             * from the SI since it had no more documents remaining after some del packets younger than
-             * its segPrivate packet (higher delGen) have been applied, the segPrivate packet has not been
-             * removed.
-             */
-            if (coalescedUpdates == null) {
-              coalescedUpdates = new CoalescedUpdates();
+    // Backwards merge sort the segment delGens with the packet delGens in the buffered stream, to
+    // find out which packets apply to which segment:
+    while (infosIDX >= 0) {
+      final FrozenBufferedUpdates packet = delIDX >= 0 ? updates.get(delIDX) : null;
+      final SegmentCommitInfo info = infos.get(infosIDX);
+      final long segGen = info.getBufferedDeletesGen();
+
+      if (packet != null && segGen < packet.delGen()) {
+        if (!packet.isSegmentPrivate && packet.any()) {
+          /*
+           * Only coalesce if we are NOT on a segment private del packet: the segment private del packet
+           * must only apply to segments with the same delGen.  Yet, if a segment is already deleted
+           * from the SI since it had no more documents remaining after some del packets younger than
+           * its segPrivate packet (higher delGen) have been applied, the segPrivate packet has not been
+           * removed.
+           */
+          if (coalescedUpdates == null) {
+            coalescedUpdates = new CoalescedUpdates();
+          }
+          coalescedUpdates.update(packet);
+          if (coalescedQueries.size() != coalescedUpdates.queries.size()) {
+            coalescedQueries = new ArrayList<>();
+            for (QueryAndLimit ent : coalescedUpdates.queriesIterable()) {
+              coalescedQueries.add(ent);
             }
-            coalescedUpdates.update(packet);
           }
+        }
 
-          delIDX--;
-        } else if (packet != null && segGen == packet.delGen()) {
-          assert packet.isSegmentPrivate : "Packet and Segments deletegen can only match on a segment private del packet gen=" + segGen;
+        delIDX--;
+      } else if (packet != null && segGen == packet.delGen()) {
+        assert packet.isSegmentPrivate : "Packet and Segments deletegen can only match on a segment private del packet gen=" + segGen;
 
-          if (segStates == null) {
-            segStates = openSegmentStates(pool, infos);
-          }
+        // Lock order: IW -> BD -> RP
+        assert pool.infoIsLive(info);
+        segUpdates.add(new SegmentUpdates(infosIDX, coalescedUpdates, coalescedQueries, packet));
 
-          SegmentState segState = segStates[infosIDX];
+        /*
+         * Since we are on a segment private del packet we must not
+         * update the coalescedUpdates here! We can simply advance to the 
+         * next packet and seginfo.
+         */
+        delIDX--;
+        infosIDX--;
 
+      } else {
+        if (coalescedUpdates != null) {
           // Lock order: IW -> BD -> RP
           assert pool.infoIsLive(info);
-          int delCount = 0;
-          final DocValuesFieldUpdates.Container dvUpdates = new DocValuesFieldUpdates.Container();
-          if (coalescedUpdates != null) {
-            delCount += applyQueryDeletes(coalescedUpdates.queriesIterable(), segState);
-            applyDocValuesUpdates(coalescedUpdates.numericDVUpdates, segState, dvUpdates);
-            applyDocValuesUpdates(coalescedUpdates.binaryDVUpdates, segState, dvUpdates);
-          }
-          delCount += applyQueryDeletes(packet.queriesIterable(), segState);
-          applyDocValuesUpdates(Arrays.asList(packet.numericDVUpdates), segState, dvUpdates);
-          applyDocValuesUpdates(Arrays.asList(packet.binaryDVUpdates), segState, dvUpdates);
-          if (dvUpdates.any()) {
-            segState.rld.writeFieldUpdates(info.info.dir, dvUpdates);
-          }
+          segUpdates.add(new SegmentUpdates(infosIDX, coalescedUpdates, coalescedQueries, null));
+        }
 
-          totDelCount += delCount;
+        infosIDX--;
+      }
+    }
 
-          /*
-           * Since we are on a segment private del packet we must not
-           * update the coalescedUpdates here! We can simply advance to the 
-           * next packet and seginfo.
-           */
-          delIDX--;
-          infosIDX--;
+    if (segUpdates.isEmpty()) {
+      return new PendingUpdates(gen, t0, infos.size(), null, null, Collections.<String>emptySet());
+    }
 
-        } else {
-          if (coalescedUpdates != null) {
-            if (segStates == null) {
-              segStates = openSegmentStates(pool, infos);
-            }
-            SegmentState segState = segStates[infosIDX];
-            // Lock order: IW -> BD -> RP
-            assert pool.infoIsLive(info);
-            int delCount = 0;
-            delCount += applyQueryDeletes(coalescedUpdates.queriesIterable(), segState);
-            DocValuesFieldUpdates.Container dvUpdates = new DocValuesFieldUpdates.Container();
-            applyDocValuesUpdates(coalescedUpdates.numericDVUpdates, segState, dvUpdates);
-            applyDocValuesUpdates(coalescedUpdates.binaryDVUpdates, segState, dvUpdates);
-            if (dvUpdates.any()) {
-              segState.rld.writeFieldUpdates(info.info.dir, dvUpdates);
-            }
+    final Set<String> files = new HashSet<>();
+    for (SegmentCommitInfo info : infos) {
+      files.addAll(info.files());
+    }
+
+    final SegmentState[] segStates = openSegmentStates(pool, infos);
+    for (SegmentUpdates segUpdate : segUpdates) {
+      // deletes may be published while we resolve, so we need a snapshot:
+      final SegmentState segState = segStates[segUpdate.infosIDX];
+      segState.liveDocs = segState.rld.getReadOnlyLiveDocs();
+    }
+
+    if (infoStream.isEnabled("BD")) {
+      infoStream.message("BD", String.format(Locale.ROOT, "applyDeletes: open segment readers took %d msec", System.currentTimeMillis()-t0));
+    }
 
-            totDelCount += delCount;
+    return new PendingUpdates(gen, t0, infos.size(), segStates, segUpdates, files);
+  }
+
+  /** Resolves the deletes and updates of a snapshot taken by {@link
+   *  #prepare} into docIDs, without changing the segments.  This does
+   *  not need the {@link IndexWriter} lock.  The segments are resolved
+   *  concurrently on the provided executor, if it is not null. */
+  public void resolve(PendingUpdates pending, Executor executor) throws IOException {
+    if (pending.segStates == null) {
+      return;
+    }
+
+    // Resolve each segment on its own, possibly concurrently:
+    final List<Callable<Void>> tasks = new ArrayList<>(pending.segUpdates.size());
+    for (final SegmentUpdates segUpdate : pending.segUpdates) {
+      final SegmentState segState = pending.segStates[segUpdate.infosIDX];
+      tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            resolveUpdates(segUpdate, segState);
+            return null;
           }
+        });
+    }
+    final long resolveStartNS = System.nanoTime();
+    MergeState.runConcurrently(executor, tasks);
+    if (infoStream.isEnabled("BD")) {
+      infoStream.message("BD",
+                         String.format(Locale.ROOT, "applyDeletes: resolving %d segments took %.1f msec; executor=%s",
+                                       tasks.size(), (System.nanoTime()-resolveStartNS)/1000000., executor));
+    }
+  }
 
-          infosIDX--;
+  /** Marks the resolved deleted docIDs as deleted in the live
+   *  docs of each segment, writes the resolved updates, and
+   *  releases the readers that {@link #prepare} opened.  This must
+   *  be called while holding the {@link IndexWriter} lock.  Segments
+   *  that were merged away or dropped since the snapshot are skipped,
+   *  as well as segments that had newer deletes and updates applied
+   *  in the meantime. */
+  public synchronized ApplyDeletesResult publish(IndexWriter.ReaderPool pool, PendingUpdates pending, boolean success) throws IOException {
+    if (pending.segStates == null) {
+      return new ApplyDeletesResult(false, pending.gen, null, false);
+    }
+
+    long totDelCount = 0;
+    long totTermVisitedCount = 0;
+    boolean anySegmentDropped = false;
+
+    boolean published = false;
+
+    ApplyDeletesResult result = null;
+
+    try {
+      if (success) {
+        for (SegmentState segState : pending.segStates) {
+          final SegmentCommitInfo info = segState.rld.info;
+          if (pool.isLive(info) == false) {
+            anySegmentDropped = true;
+            segState.stale = true;
+          } else if (info.getBufferedDeletesGen() > pending.gen) {
+            // another thread took a snapshot after us, and already published it
+            segState.stale = true;
+          }
         }
-      }
 
-      // Now apply all term deletes:
-      if (coalescedUpdates != null && coalescedUpdates.totalTermCount != 0) {
-        if (segStates == null) {
-          segStates = openSegmentStates(pool, infos);
+        for (SegmentUpdates segUpdate : pending.segUpdates) {
+          final SegmentState segState = pending.segStates[segUpdate.infosIDX];
+          if (segState.stale) {
+            continue;
+          }
+          totDelCount += publishDeletes(segState);
+          totTermVisitedCount += segState.termVisitedCount;
+          if (segState.dvUpdates.any()) {
+            segState.rld.writeFieldUpdates(segState.rld.info.info.dir, segState.dvUpdates);
+          }
         }
-        totTermVisitedCount += applyTermDeletes(coalescedUpdates, segStates);
       }
 
       assert checkDeleteStats();
 
-      success = true;
+      published = success;
 
     } finally {
-      if (segStates != null) {
-        result = closeSegmentStates(pool, segStates, success, gen);
-      }
-    }
-
-    if (result == null) {
-      result = new ApplyDeletesResult(false, gen, null);      
+      result = closeSegmentStates(pool, pending.segStates, published, pending.gen, anySegmentDropped);
     }
 
     if (infoStream.isEnabled("BD")) {
       infoStream.message("BD",
                          String.format(Locale.ROOT,
-                                       "applyDeletes took %d msec for %d segments, %d newly deleted docs (query deletes), %d visited terms, allDeleted=%s",
-                                       System.currentTimeMillis()-t0, infos.size(), totDelCount, totTermVisitedCount, result.allDeleted));
+                                       "applyDeletes took %d msec for %d segments, %d newly deleted docs, %d visited terms, allDeleted=%s, anySegmentDropped=%s",
+                                       System.currentTimeMillis()-pending.t0, pending.numSegments, totDelCount, totTermVisitedCount, result.allDeleted, anySegmentDropped));
     }
 
     return result;
@@ -367,10 +450,15 @@ class BufferedUpdatesStream implements Accountable {
     final SegmentReader reader;
     final int startDelCount;
 
-    TermsEnum termsEnum;
-    PostingsEnum postingsEnum;
-    BytesRef term;
-    boolean any;
+    // Resolved by resolveUpdates, possibly on another thread, and published
+    // by the thread that applies the deletes:
+    Bits liveDocs;
+    // True if the segment was merged away or got newer deletes since the
+    // snapshot, so that the resolved deletes must not be published:
+    boolean stale;
+    FixedBitSet toDelete;
+    final DocValuesFieldUpdates.Container dvUpdates = new DocValuesFieldUpdates.Container();
+    long termVisitedCount;
 
     public SegmentState(IndexWriter.ReaderPool pool, SegmentCommitInfo info) throws IOException {
       rld = pool.get(info, true);
@@ -379,24 +467,55 @@ class BufferedUpdatesStream implements Accountable {
       delGen = info.getBufferedDeletesGen();
     }
 
+    void delete(int docID) {
+      if (toDelete == null) {
+        toDelete = new FixedBitSet(reader.maxDoc());
+      }
+      toDelete.set(docID);
+    }
+
     public void finish(IndexWriter.ReaderPool pool) throws IOException {
       try {
         rld.release(reader);
       } finally {
-        pool.release(rld);
+        if (pool.isLive(rld.info)) {
+          pool.release(rld);
+        } else {
+          // The segment was merged away or dropped since the snapshot, and
+          // the pool released its own reference already:
+          rld.decRef();
+        }
       }
     }
   }
 
-  /** Does a merge sort by current term across all segments. */
-  static class SegmentQueue extends PriorityQueue<SegmentState> {
-    public SegmentQueue(int size) {
-      super(size);
-    }
-
-    @Override
-    protected boolean lessThan(SegmentState a, SegmentState b) {
-      return a.term.compareTo(b.term) < 0;
+  /** The buffered deletes and updates that apply to one segment: the
+   *  coalesced updates of all packets that are newer than the segment, and
+   *  the segment's private packet, if any. */
+  static class SegmentUpdates {
+    final int infosIDX;
+    final CoalescedUpdates coalescedUpdates;
+    final List<QueryAndLimit> queries;
+    final FrozenBufferedUpdates privatePacket;
+
+    // coalescedUpdates keeps growing while we visit older segments, so we
+    // only record how much of it applies to this segment:
+    final int termsCount;
+    final int numericDVUpdatesCount;
+    final int binaryDVUpdatesCount;
+
+    SegmentUpdates(int infosIDX, CoalescedUpdates coalescedUpdates, List<QueryAndLimit> queries, FrozenBufferedUpdates privatePacket) {
+      this.infosIDX = infosIDX;
+      this.coalescedUpdates = coalescedUpdates;
+      this.queries = queries;
+      this.privatePacket = privatePacket;
+      if (coalescedUpdates != null) {
+        termsCount = coalescedUpdates.terms.size();
+        numericDVUpdatesCount = coalescedUpdates.numericDVUpdates.size();
+        binaryDVUpdatesCount = coalescedUpdates.binaryDVUpdates.size();
+      } else {
+        termsCount = numericDVUpdatesCount = binaryDVUpdatesCount = 0;
+      }
     }
   }
 
@@ -428,14 +547,14 @@ class BufferedUpdatesStream implements Accountable {
   }
 
   /** Close segment states previously opened with openSegmentStates. */
-  private ApplyDeletesResult closeSegmentStates(IndexWriter.ReaderPool pool, SegmentState[] segStates, boolean success, long gen) throws IOException {
+  private ApplyDeletesResult closeSegmentStates(IndexWriter.ReaderPool pool, SegmentState[] segStates, boolean success, long gen, boolean anySegmentDropped) throws IOException {
     int numReaders = segStates.length;
     Throwable firstExc = null;
     List<SegmentCommitInfo> allDeleted = null;
     long totDelCount = 0;
     for (int j=0;j<numReaders;j++) {
       SegmentState segState = segStates[j];
-      if (success) {
+      if (success && segState.stale == false) {
         totDelCount += segState.rld.getPendingDeleteCount() - segState.startDelCount;
         segState.reader.getSegmentInfo().setBufferedDeletesGen(gen);
         int fullDelCount = segState.rld.info.getDelCount() + segState.rld.getPendingDeleteCount();
@@ -450,7 +569,7 @@ class BufferedUpdatesStream implements Accountable {
       try {
         segStates[j].finish(pool);
       } catch (Throwable th) {
-        if (firstExc != null) {
+        if (firstExc == null) {
           firstExc = th;
         }
       }
@@ -465,23 +584,51 @@ class BufferedUpdatesStream implements Accountable {
       infoStream.message("BD", "applyDeletes: " + totDelCount + " new deleted documents");
     }
 
-    return new ApplyDeletesResult(totDelCount > 0, gen, allDeleted);      
+    return new ApplyDeletesResult(totDelCount > 0, gen, allDeleted, anySegmentDropped);
   }
 
-  /** Merge sorts the deleted terms and all segments to resolve terms to docIDs for deletion. */
-  private synchronized long applyTermDeletes(CoalescedUpdates updates, SegmentState[] segStates) throws IOException {
-
-    long startNS = System.nanoTime();
-
-    int numReaders = segStates.length;
-
-    long delTermVisitedCount = 0;
-    long segTermVisitedCount = 0;
+  /** Resolves the deletes and updates that apply to a single segment, without
+   *  changing the segment.  This does not need the {@link IndexWriter} lock, so
+   *  several segments may be resolved concurrently, while other threads
+   *  keep using the writer. */
+  private static void resolveUpdates(SegmentUpdates updates, SegmentState segState) throws IOException {
+    // first apply segment-private deletes/updates ...
+    final FrozenBufferedUpdates packet = updates.privatePacket;
+    if (packet != null) {
+      // the limits of a segment private packet refer to doc IDs before the
+      // segment was sorted, if it was
+      applyQueryDeletes(packet.queriesIterable(), segState, packet.sortMap);
+      applyDocValuesUpdates(Arrays.asList(packet.numericDVUpdates), segState, packet.sortMap);
+      applyDocValuesUpdates(Arrays.asList(packet.binaryDVUpdates), segState, packet.sortMap);
+    }
+    // ... then coalesced deletes/updates, so that if a document is updated
+    // in both, the coalesced updates, which come from newer packets, win:
+    final CoalescedUpdates coalescedUpdates = updates.coalescedUpdates;
+    if (coalescedUpdates != null) {
+      applyQueryDeletes(updates.queries, segState, null);
+      applyDocValuesUpdatesList(coalescedUpdates.numericDVUpdates.subList(0, updates.numericDVUpdatesCount), segState);
+      applyDocValuesUpdatesList(coalescedUpdates.binaryDVUpdates.subList(0, updates.binaryDVUpdatesCount), segState);
+    }
+    if (updates.termsCount != 0) {
+      final List<PrefixCodedTerms> terms = coalescedUpdates.terms.subList(0, updates.termsCount);
+      final FieldTermIterator iter;
+      if (terms.size() == 1) {
+        iter = terms.get(0).iterator();
+      } else {
+        iter = new MergedPrefixCodedTermsIterator(terms);
+      }
+      applyTermDeletes(iter, segState);
+    }
+  }
 
-    FieldTermIterator iter = updates.termIterator();
+  /** Resolves the deleted terms to docIDs of this segment. */
+  private static void applyTermDeletes(FieldTermIterator iter, SegmentState segState) throws IOException {
+    final Fields fields = segState.reader.fields();
 
     String field = null;
-    SegmentQueue queue = null;
+    TermsEnum termsEnum = null;
+    PostingsEnum postingsEnum = null;
+    BytesRefBuilder lastDeleteTerm = new BytesRefBuilder();
 
     BytesRef term;
 
@@ -490,113 +637,78 @@ class BufferedUpdatesStream implements Accountable {
       if (iter.field() != field) {
         // field changed
         field = iter.field();
-
-        queue = new SegmentQueue(numReaders);
-
-        long segTermCount = 0;
-        for(int i=0;i<numReaders;i++) {
-          SegmentState state = segStates[i];
-          Terms terms = state.reader.fields().terms(field);
-          if (terms != null) {
-            segTermCount += terms.size();
-            state.termsEnum = terms.iterator();
-            state.term = state.termsEnum.next();
-            if (state.term != null) {
-              queue.add(state);
-            }
-          }
-        }
-
-        assert checkDeleteTerm(null);
-      }
-
-      assert checkDeleteTerm(term);
-
-      delTermVisitedCount++;
-
-      long delGen = iter.delGen();
-
-      while (queue.size() != 0) {
-
-        // Get next term merged across all segments
-        SegmentState state = queue.top();
-        segTermVisitedCount++;
-
-        int cmp = term.compareTo(state.term);
-
-        if (cmp < 0) {
-          break;
-        } else if (cmp == 0) {
-          // fall through
+        Terms terms = fields.terms(field);
+        if (terms != null) {
+          termsEnum = terms.iterator();
         } else {
-          TermsEnum.SeekStatus status = state.termsEnum.seekCeil(term);
-          if (status == TermsEnum.SeekStatus.FOUND) {
-            // fallthrough
-          } else {
-            if (status == TermsEnum.SeekStatus.NOT_FOUND) {
-              state.term = state.termsEnum.term();
-              queue.updateTop();
-            } else {
-              // No more terms in this segment
-              queue.pop();
-            }
-
-            continue;
-          }
+          termsEnum = null;
         }
+        lastDeleteTerm.clear();
+      }
 
-        assert state.delGen != delGen;
-
-        if (state.delGen < delGen) {
-
-          // we don't need term frequencies for this
-          state.postingsEnum = state.termsEnum.postings(state.rld.getLiveDocs(), state.postingsEnum, PostingsEnum.NONE);
+      assert checkDeleteTerm(term, lastDeleteTerm);
 
-          assert state.postingsEnum != null;
+      segState.termVisitedCount++;
 
-          while (true) {
-            final int docID = state.postingsEnum.nextDoc();
-            if (docID == DocIdSetIterator.NO_MORE_DOCS) {
-              break;
-            }
-            if (!state.any) {
-              state.rld.initWritableLiveDocs();
-              state.any = true;
-            }
+      if (termsEnum == null) {
+        // no terms in this field
+        continue;
+      }
 
-            // NOTE: there is no limit check on the docID
-            // when deleting by Term (unlike by Query)
-            // because on flush we apply all Term deletes to
-            // each segment.  So all Term deleting here is
-            // against prior segments:
-            state.rld.delete(docID);
-          }
-        }
+      final long delGen = iter.delGen();
+      assert segState.delGen != delGen;
 
-        state.term = state.termsEnum.next();
-        if (state.term == null) {
-          queue.pop();
-        } else {
-          queue.updateTop();
+      if (segState.delGen < delGen && termsEnum.seekExact(term)) {
+        // we don't need term frequencies for this
+        postingsEnum = termsEnum.postings(segState.liveDocs, postingsEnum, PostingsEnum.NONE);
+
+        int docID;
+        while ((docID = postingsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          // NOTE: there is no limit check on the docID
+          // when deleting by Term (unlike by Query)
+          // because on flush we apply all Term deletes to
+          // each segment.  So all Term deleting here is
+          // against prior segments:
+          segState.delete(docID);
         }
       }
     }
+  }
 
-    if (infoStream.isEnabled("BD")) {
-      infoStream.message("BD",
-                         String.format(Locale.ROOT, "applyTermDeletes took %.1f msec for %d segments and %d packets; %d del terms visited; %d seg terms visited",
-                                       (System.nanoTime()-startNS)/1000000.,
-                                       numReaders,
-                                       updates.terms.size(),
-                                       delTermVisitedCount, segTermVisitedCount));
+  /** Marks the resolved docIDs of this segment as deleted, and returns how
+   *  many documents were newly deleted. */
+  private static long publishDeletes(SegmentState segState) throws IOException {
+    final FixedBitSet toDelete = segState.toDelete;
+    if (toDelete == null) {
+      return 0;
     }
+    segState.rld.initWritableLiveDocs();
+    long delCount = 0;
+    final int maxDoc = toDelete.length();
+    for (int docID = toDelete.nextSetBit(0); docID != DocIdSetIterator.NO_MORE_DOCS;
+         docID = docID + 1 < maxDoc ? toDelete.nextSetBit(docID + 1) : DocIdSetIterator.NO_MORE_DOCS) {
+      if (segState.rld.delete(docID)) {
+        delCount++;
+      }
+    }
+    return delCount;
+  }
 
-    return delTermVisitedCount;
+  /** Applies the coalesced updates of several packets, which are listed from
+   *  the newest packet to the oldest one. */
+  private static void applyDocValuesUpdatesList(List<? extends List<? extends DocValuesUpdate>> updates,
+      SegmentState segState) throws IOException {
+    // packets were appended while walking backwards through the buffered
+    // stream, so we apply them in reverse so that newer packets win:
+    for (int idx = updates.size() - 1; idx >= 0; idx--) {
+      applyDocValuesUpdates(updates.get(idx), segState, null);
+    }
   }
 
   // DocValues updates
-  private synchronized void applyDocValuesUpdates(Iterable<? extends DocValuesUpdate> updates, 
-      SegmentState segState, DocValuesFieldUpdates.Container dvUpdatesContainer) throws IOException {
+  private static void applyDocValuesUpdates(Iterable<? extends DocValuesUpdate> updates,
+      SegmentState segState, Sorter.DocMap sortMap) throws IOException {
+    final DocValuesFieldUpdates.Container dvUpdatesContainer = segState.dvUpdates;
     Fields fields = segState.reader.fields();
 
     // TODO: we can process the updates per DV field, from last to first so that
@@ -646,7 +758,7 @@ class BufferedUpdatesStream implements Accountable {
 
       if (termsEnum.seekExact(term.bytes())) {
         // we don't need term frequencies for this
-        postingsEnum = termsEnum.postings(segState.rld.getLiveDocs(), postingsEnum, PostingsEnum.NONE);
+        postingsEnum = termsEnum.postings(segState.liveDocs, postingsEnum, PostingsEnum.NONE);
 
         DocValuesFieldUpdates dvUpdates = dvUpdatesContainer.getUpdates(update.field, update.type);
         if (dvUpdates == null) {
@@ -654,7 +766,11 @@ class BufferedUpdatesStream implements Accountable {
         }
         int doc;
         while ((doc = postingsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-          if (doc >= limit) {
+          if (sortMap != null) {
+            if (sortMap.newToOld(doc) >= limit) {
+              continue; // doc IDs are not in the order of the limit
+            }
+          } else if (doc >= limit) {
             break; // no more docs that can be updated for this term
           }
           dvUpdates.add(doc, update.value);
@@ -673,44 +789,38 @@ class BufferedUpdatesStream implements Accountable {
   }
 
   // Delete by query
-  private static long applyQueryDeletes(Iterable<QueryAndLimit> queriesIter, SegmentState segState) throws IOException {
-    long delCount = 0;
+  private static void applyQueryDeletes(Iterable<QueryAndLimit> queriesIter, SegmentState segState, Sorter.DocMap sortMap) throws IOException {
     final LeafReaderContext readerContext = segState.reader.getContext();
     for (QueryAndLimit ent : queriesIter) {
       Query query = ent.query;
       int limit = ent.limit;
-      final DocIdSet docs = new QueryWrapperFilter(query).getDocIdSet(readerContext, segState.reader.getLiveDocs());
+      final DocIdSet docs = new QueryWrapperFilter(query).getDocIdSet(readerContext, segState.liveDocs);
       if (docs != null) {
         final DocIdSetIterator it = docs.iterator();
         if (it != null) {
           while (true)  {
             int doc = it.nextDoc();
-            if (doc >= limit) {
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+              break;
+            } else if (sortMap != null) {
+              if (sortMap.newToOld(doc) >= limit) {
+                continue;
+              }
+            } else if (doc >= limit) {
               break;
             }
 
-            if (!segState.any) {
-              segState.rld.initWritableLiveDocs();
-              segState.any = true;
-            }
-            if (segState.rld.delete(doc)) {
-              delCount++;
-            }
+            segState.delete(doc);
           }
         }
       }
     }
-
-    return delCount;
   }
 
   // used only by assert
-  private boolean checkDeleteTerm(BytesRef term) {
-    if (term != null) {
-      assert lastDeleteTerm == null || term.compareTo(lastDeleteTerm) >= 0: "lastTerm=" + lastDeleteTerm + " vs term=" + term;
-    }
-    // TODO: we re-use term now in our merged iterable, but we shouldn't clone, instead copy for this assert
-    lastDeleteTerm = term == null ? null : BytesRef.deepCopyOf(term);
+  private static boolean checkDeleteTerm(BytesRef term, BytesRefBuilder lastDeleteTerm) {
+    assert lastDeleteTerm.length() == 0 || term.compareTo(lastDeleteTerm.get()) >= 0: "lastTerm=" + lastDeleteTerm.get() + " vs term=" + term;
+    lastDeleteTerm.copyBytes(term);
     return true;
   }
 
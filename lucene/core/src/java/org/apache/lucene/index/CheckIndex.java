@@ -17,24 +17,38 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
@@ -55,11 +69,14 @@ import org.apache.lucene.util.CommandLineUtil;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.SuppressForbidden;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.Version;
 import org.apache.lucene.util.automaton.Automata;
 import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.bkd.BKDUtil;
 
 /**
  * Basic tool and API to check the health of an index and
@@ -148,6 +165,13 @@ public class CheckIndex implements Closeable {
     /** Holds the userData of the last commit in the index */
     public Map<String, String> userData;
 
+    /** Keys of the segments that passed the check, or that were skipped
+     *  because they had been verified before, in index order. Pass them to
+     *  {@link CheckIndex#setVerifiedSegments} to skip these segments when
+     *  checking the index again.
+     *  @see CheckIndex#segmentKey */
+    public List<String> verifiedSegments = new ArrayList<>();
+
     /** Holds the status of each segment in the index.
      *  See {@link #segmentInfos}.
      *
@@ -187,6 +211,11 @@ public class CheckIndex implements Closeable {
        *  segment. */
       public boolean openReaderPassed;
 
+      /** True if this segment was not checked because it had
+       *  been verified before.
+       *  @see CheckIndex#setVerifiedSegments */
+      public boolean alreadyVerified;
+
       /** Map that includes certain
        *  debugging details that IndexWriter records into
        *  each segment it creates */
@@ -212,6 +241,9 @@ public class CheckIndex implements Closeable {
       
       /** Status for testing of DocValues (null if DocValues could not be tested). */
       public DocValuesStatus docValuesStatus;
+
+      /** Status for testing of points (null if points could not be tested). */
+      public PointsStatus pointsStatus;
     }
     
     /**
@@ -351,6 +383,24 @@ public class CheckIndex implements Closeable {
       /** Exception thrown during doc values test (null on success) */
       public Throwable error = null;
     }
+
+    /**
+     * Status from testing points
+     */
+    public static final class PointsStatus {
+
+      PointsStatus() {
+      }
+
+      /** Total number of values points tested. */
+      public long totalValuePoints;
+
+      /** Total number of fields with points. */
+      public int totalValueFields;
+
+      /** Exception thrown during points test (null on success) */
+      public Throwable error = null;
+    }
   }
 
   /** Create a new CheckIndex on the directory. */
@@ -420,6 +470,9 @@ public class CheckIndex implements Closeable {
   
   /** 
    * If true, only validate physical integrity for all files. 
+   * The checksum of every file of a segment is verified with
+   * {@link CodecUtil#checksumEntireFile} without opening a reader, unless some
+   * files have no codec header, in which case the codec verifies them.
    * Note that the returned nested status objects (e.g. storedFieldStatus) will be null.  */
   public void setChecksumsOnly(boolean v) {
     checksumsOnly = v;
@@ -427,6 +480,47 @@ public class CheckIndex implements Closeable {
   
   private boolean checksumsOnly;
 
+  private int threadCount = 1;
+
+  /** Set the number of threads that check segments concurrently. Messages
+   *  of each segment are still printed in index order, once the segment is
+   *  checked. Defaults to 1. */
+  public void setThreadCount(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("threadCount must be at least 1, got " + threadCount);
+    }
+    this.threadCount = threadCount;
+  }
+
+  /** See {@link #setThreadCount}. */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  private Set<String> verifiedSegments = Collections.emptySet();
+
+  /** Skip the segments whose {@link #segmentKey key} is in the given
+   *  collection, typically the {@link Status#verifiedSegments} of a previous
+   *  check. A segment gets a new key when its deletes or doc values are
+   *  updated. Segments that were verified with {@link #setChecksumsOnly
+   *  checksums only} are checked again unless this check also verifies
+   *  checksums only. */
+  public void setVerifiedSegments(Collection<String> verifiedSegments) {
+    this.verifiedSegments = new HashSet<>(verifiedSegments);
+  }
+
+  /** Suffix of the keys of segments that were verified with checksums only. */
+  private static final String CHECKSUMS_ONLY_SUFFIX = "_checksums";
+
+  /** Returns the key that identifies the content of a segment in
+   *  {@link Status#verifiedSegments}: the id of the segment and the
+   *  generations of its deletes, field infos and doc values updates. */
+  public static String segmentKey(SegmentCommitInfo info) {
+    return StringHelper.idToString(info.info.getId()) + "_" + Long.toString(info.getDelGen(), Character.MAX_RADIX)
+        + "_" + Long.toString(info.getFieldInfosGen(), Character.MAX_RADIX)
+        + "_" + Long.toString(info.getDocValuesGen(), Character.MAX_RADIX);
+  }
+
   /** Set infoStream where messages should go.  If null, no
    *  messages are printed.  If verbose is true then more
    *  details are printed. */
@@ -469,7 +563,6 @@ public class CheckIndex implements Closeable {
   public Status checkIndex(List<String> onlySegments) throws IOException {
     ensureOpen();
     long startNS = System.nanoTime();
-    NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
     SegmentInfos sis = null;
     Status result = new Status();
     result.dir = dir;
@@ -595,6 +688,8 @@ public class CheckIndex implements Closeable {
     result.newSegments.clear();
     result.maxSegmentName = -1;
 
+    // the segments to check, in index order
+    final List<SegmentCheck> checks = new ArrayList<>();
     for(int i=0;i<numSegments;i++) {
       final SegmentCommitInfo info = sis.info(i);
       int segmentName = Integer.parseInt(info.info.name.substring(1), Character.MAX_RADIX);
@@ -606,46 +701,173 @@ public class CheckIndex implements Closeable {
       }
       Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
       result.segmentInfos.add(segInfoStat);
-      msg(infoStream, "  " + (1+i) + " of " + numSegments + ": name=" + info.info.name + " maxDoc=" + info.info.maxDoc());
       segInfoStat.name = info.info.name;
       segInfoStat.maxDoc = info.info.maxDoc();
-      
-      final Version version = info.info.getVersion();
-      if (info.info.maxDoc() <= 0) {
-        throw new RuntimeException("illegal number of documents: maxDoc=" + info.info.maxDoc());
+      checks.add(new SegmentCheck(i, info, segInfoStat));
+    }
+
+    if (threadCount == 1 || checks.size() <= 1) {
+      for (SegmentCheck check : checks) {
+        checkSegment(check, numSegments, infoStream);
+        addResult(result, check);
+      }
+    } else {
+      // segments are checked concurrently, but their messages are buffered
+      // and printed in index order
+      final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, checks.size()),
+          new NamedThreadFactory("CheckIndex"));
+      try {
+        final List<Future<?>> futures = new ArrayList<>();
+        for (final SegmentCheck check : checks) {
+          final PrintStream out;
+          if (infoStream != null) {
+            check.output = new ByteArrayOutputStream();
+            out = new PrintStream(check.output, true, IOUtils.UTF_8);
+          } else {
+            out = null;
+          }
+          futures.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              checkSegment(check, numSegments, out);
+              return null;
+            }
+          }));
+        }
+        for (int i = 0; i < checks.size(); i++) {
+          final SegmentCheck check = checks.get(i);
+          try {
+            futures.get(i).get();
+          } catch (ExecutionException e) {
+            printOutput(check);
+            IOUtils.reThrow(e.getCause());
+          } catch (InterruptedException e) {
+            throw new ThreadInterruptedException(e);
+          }
+          printOutput(check);
+          addResult(result, check);
+        }
+      } finally {
+        executor.shutdownNow();
       }
+    }
+
+    if (0 == result.numBadSegments) {
+      result.clean = true;
+    } else
+      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
 
-      int toLoseDocCount = info.info.maxDoc();
+    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
+      result.clean = false;
+      result.newSegments.counter = result.maxSegmentName + 1; 
+      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
+    }
+    
+    if (result.clean) {
+      msg(infoStream, "No problems were detected with this index.\n");
+    }
 
-      SegmentReader reader = null;
+    msg(infoStream, String.format(Locale.ROOT, "Took %.3f sec total.", nsToSec(System.nanoTime()-startNS)));
 
-      try {
-        msg(infoStream, "    version=" + (version == null ? "3.0" : version));
-        msg(infoStream, "    id=" + StringHelper.idToString(info.info.getId()));
-        final Codec codec = info.info.getCodec();
-        msg(infoStream, "    codec=" + codec);
-        segInfoStat.codec = codec;
-        msg(infoStream, "    compound=" + info.info.getUseCompoundFile());
-        segInfoStat.compound = info.info.getUseCompoundFile();
-        msg(infoStream, "    numFiles=" + info.files().size());
-        segInfoStat.numFiles = info.files().size();
-        segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
-        msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
-        Map<String,String> diagnostics = info.info.getDiagnostics();
-        segInfoStat.diagnostics = diagnostics;
-        if (diagnostics.size() > 0) {
-          msg(infoStream, "    diagnostics = " + diagnostics);
-        }
-
-        if (!info.hasDeletions()) {
-          msg(infoStream, "    no deletions");
-          segInfoStat.hasDeletions = false;
-        } else {
-          msg(infoStream, "    has deletions [delGen=" + info.getDelGen() + "]");
-          segInfoStat.hasDeletions = true;
-          segInfoStat.deletionsGen = info.getDelGen();
-        }
-        
+    return result;
+  }
+  
+  /** The check of a single segment. */
+  private static final class SegmentCheck {
+    /** Index of the segment in the commit. */
+    final int index;
+    final SegmentCommitInfo info;
+    final Status.SegmentInfoStatus status;
+    /** Messages of this segment, when segments are checked concurrently. */
+    ByteArrayOutputStream output;
+    boolean failed;
+    int toLoseDocCount;
+    /** Key to record in {@link Status#verifiedSegments}, if the segment is fine. */
+    String verifiedKey;
+
+    SegmentCheck(int index, SegmentCommitInfo info, Status.SegmentInfoStatus status) {
+      this.index = index;
+      this.info = info;
+      this.status = status;
+    }
+  }
+
+  private void printOutput(SegmentCheck check) throws IOException {
+    if (check.output != null) {
+      infoStream.print(check.output.toString(IOUtils.UTF_8));
+      infoStream.flush();
+    }
+  }
+
+  private static void addResult(Status result, SegmentCheck check) {
+    if (check.failed) {
+      result.totLoseDocCount += check.toLoseDocCount;
+      result.numBadSegments++;
+    } else {
+      result.verifiedSegments.add(check.verifiedKey);
+      // Keeper
+      result.newSegments.add(check.info.clone());
+    }
+  }
+
+  /** Checks a single segment and fills its status, printing messages to
+   *  the given stream. This may be called concurrently for several
+   *  segments. */
+  private void checkSegment(SegmentCheck check, int numSegments, PrintStream infoStream) throws IOException {
+    final SegmentCommitInfo info = check.info;
+    final Status.SegmentInfoStatus segInfoStat = check.status;
+    final NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
+    msg(infoStream, "  " + (1+check.index) + " of " + numSegments + ": name=" + info.info.name + " maxDoc=" + info.info.maxDoc());
+    
+    final Version version = info.info.getVersion();
+    if (info.info.maxDoc() <= 0) {
+      throw new RuntimeException("illegal number of documents: maxDoc=" + info.info.maxDoc());
+    }
+
+    final String key = segmentKey(info);
+    final String checksumsOnlyKey = key + CHECKSUMS_ONLY_SUFFIX;
+    if (verifiedSegments.contains(key) || (checksumsOnly && verifiedSegments.contains(checksumsOnlyKey))) {
+      msg(infoStream, "    already verified, skipping");
+      msg(infoStream, "");
+      segInfoStat.alreadyVerified = true;
+      check.verifiedKey = verifiedSegments.contains(key) ? key : checksumsOnlyKey;
+      return;
+    }
+
+    int toLoseDocCount = info.info.maxDoc();
+
+    SegmentReader reader = null;
+
+    try {
+      msg(infoStream, "    version=" + (version == null ? "3.0" : version));
+      msg(infoStream, "    id=" + StringHelper.idToString(info.info.getId()));
+      final Codec codec = info.info.getCodec();
+      msg(infoStream, "    codec=" + codec);
+      segInfoStat.codec = codec;
+      msg(infoStream, "    compound=" + info.info.getUseCompoundFile());
+      segInfoStat.compound = info.info.getUseCompoundFile();
+      msg(infoStream, "    numFiles=" + info.files().size());
+      segInfoStat.numFiles = info.files().size();
+      segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
+      msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
+      Map<String,String> diagnostics = info.info.getDiagnostics();
+      segInfoStat.diagnostics = diagnostics;
+      if (diagnostics.size() > 0) {
+        msg(infoStream, "    diagnostics = " + diagnostics);
+      }
+
+      if (!info.hasDeletions()) {
+        msg(infoStream, "    no deletions");
+        segInfoStat.hasDeletions = false;
+      } else {
+        msg(infoStream, "    has deletions [delGen=" + info.getDelGen() + "]");
+        segInfoStat.hasDeletions = true;
+        segInfoStat.deletionsGen = info.getDelGen();
+      }
+      
+      if (checksumsOnly && checksumFiles(info, infoStream)) {
+        msg(infoStream, "");
+      } else {
         long startOpenReaderNS = System.nanoTime();
         if (infoStream != null)
           infoStream.print("    test: open reader.........");
@@ -705,6 +927,9 @@ public class CheckIndex implements Closeable {
           // Test Docvalues
           segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
 
+          // Test PointValues
+          segInfoStat.pointsStatus = testPoints(reader, infoStream, failFast);
+
           // Rethrow the first exception we encountered
           //  This will cause stats for failed segments to be incremented properly
           if (segInfoStat.liveDocStatus.error != null) {
@@ -721,6 +946,8 @@ public class CheckIndex implements Closeable {
             throw new RuntimeException("Term Vector test failed");
           }  else if (segInfoStat.docValuesStatus.error != null) {
             throw new RuntimeException("DocValues test failed");
+          } else if (segInfoStat.pointsStatus.error != null) {
+            throw new RuntimeException("Points test failed");
           }
         }
 
@@ -730,50 +957,51 @@ public class CheckIndex implements Closeable {
           msg(infoStream, "detailed segment RAM usage: ");
           msg(infoStream, Accountables.toString(reader));
         }
-
-      } catch (Throwable t) {
-        if (failFast) {
-          IOUtils.reThrow(t);
-        }
-        msg(infoStream, "FAILED");
-        String comment;
-        comment = "exorciseIndex() would remove reference to this segment";
-        msg(infoStream, "    WARNING: " + comment + "; full exception:");
-        if (infoStream != null)
-          t.printStackTrace(infoStream);
-        msg(infoStream, "");
-        result.totLoseDocCount += toLoseDocCount;
-        result.numBadSegments++;
-        continue;
-      } finally {
-        if (reader != null)
-          reader.close();
       }
-
-      // Keeper
-      result.newSegments.add(info.clone());
+    } catch (Throwable t) {
+      if (failFast) {
+        IOUtils.reThrow(t);
+      }
+      msg(infoStream, "FAILED");
+      String comment;
+      comment = "exorciseIndex() would remove reference to this segment";
+      msg(infoStream, "    WARNING: " + comment + "; full exception:");
+      if (infoStream != null)
+        t.printStackTrace(infoStream);
+      msg(infoStream, "");
+      check.failed = true;
+      check.toLoseDocCount = toLoseDocCount;
+      return;
+    } finally {
+      if (reader != null)
+        reader.close();
     }
 
-    if (0 == result.numBadSegments) {
-      result.clean = true;
-    } else
-      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
+    check.verifiedKey = checksumsOnly ? checksumsOnlyKey : key;
+  }
 
-    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
-      result.clean = false;
-      result.newSegments.counter = result.maxSegmentName + 1; 
-      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
-    }
-    
-    if (result.clean) {
-      msg(infoStream, "No problems were detected with this index.\n");
+  /** Verifies the checksums of all files of the segment, without opening a
+   *  reader. Returns false if some files have no codec header and footer,
+   *  like the files of SimpleText, so that they must be verified by the
+   *  codec. */
+  private boolean checksumFiles(SegmentCommitInfo info, PrintStream infoStream) throws IOException {
+    long startNS = System.nanoTime();
+    if (infoStream != null)
+      infoStream.print("    test: checksum files......");
+    for (String file : info.files()) {
+      try (IndexInput in = dir.openInput(file, IOContext.READONCE)) {
+        if (in.length() < CodecUtil.footerLength() || in.readInt() != CodecUtil.CODEC_MAGIC) {
+          msg(infoStream, "SKIPPED [" + file + " has no codec header]");
+          return false;
+        }
+        in.seek(0);
+        CodecUtil.checksumEntireFile(in);
+      }
     }
-
-    msg(infoStream, String.format(Locale.ROOT, "Took %.3f sec total.", nsToSec(System.nanoTime()-startNS)));
-
-    return result;
+    msg(infoStream, String.format(Locale.ROOT, "OK [took %.3f sec]", nsToSec(System.nanoTime()-startNS)));
+    return true;
   }
-  
+
   /**
    * Test live docs.
    * @lucene.experimental
@@ -1813,6 +2041,96 @@ public class CheckIndex implements Closeable {
     return status;
   }
   
+  /**
+   * Test the points index: every point must be within the per-field min/max
+   * and the per-field point and doc counts must match.
+   * @lucene.experimental
+   */
+  public static Status.PointsStatus testPoints(CodecReader reader, PrintStream infoStream, boolean failFast) throws IOException {
+    long startNS = System.nanoTime();
+    FieldInfos fieldInfos = reader.getFieldInfos();
+    Status.PointsStatus status = new Status.PointsStatus();
+    try {
+      if (fieldInfos.hasPointValues()) {
+        if (infoStream != null) {
+          infoStream.print("    test: points..............");
+        }
+        PointsReader values = reader.getPointsReader();
+        if (values == null) {
+          throw new RuntimeException("there are fields with points, but reader.getPointsReader() is null");
+        }
+        for (FieldInfo fieldInfo : fieldInfos) {
+          if (fieldInfo.getPointDimensionCount() > 0) {
+            byte[] globalMinPackedValue = values.getMinPackedValue(fieldInfo.name);
+            if (globalMinPackedValue == null) {
+              // This segment saw the field, but the point values of all its docs were deleted
+              // and merged away, or the field has no points at all:
+              continue;
+            }
+            status.totalValueFields++;
+
+            final byte[] globalMaxPackedValue = values.getMaxPackedValue(fieldInfo.name);
+            final int numDims = fieldInfo.getPointDimensionCount();
+            final int bytesPerDim = fieldInfo.getPointNumBytes();
+            final FixedBitSet docsSeen = new FixedBitSet(reader.maxDoc());
+            final long[] pointCount = new long[1];
+            values.intersect(fieldInfo.name,
+                             new PointValues.IntersectVisitor() {
+                               @Override
+                               public void visit(int docID) {
+                                 throw new RuntimeException("codec called IntersectVisitor.visit without a packed value for docID=" + docID);
+                               }
+
+                               @Override
+                               public void visit(int docID, byte[] packedValue) {
+                                 if (docID < 0 || docID >= reader.maxDoc()) {
+                                   throw new RuntimeException("docID=" + docID + " is out of bounds for field=\"" + fieldInfo.name + "\"; maxDoc=" + reader.maxDoc());
+                                 }
+                                 pointCount[0]++;
+                                 docsSeen.set(docID);
+                                 for(int dim=0;dim<numDims;dim++) {
+                                   if (BKDUtil.compare(bytesPerDim, packedValue, dim, globalMinPackedValue, dim) < 0) {
+                                     throw new RuntimeException("packed value " + Arrays.toString(packedValue) + " for docID=" + docID + " is out-of-bounds of the global minimum " + Arrays.toString(globalMinPackedValue) + " for field=\"" + fieldInfo.name + "\"");
+                                   }
+                                   if (BKDUtil.compare(bytesPerDim, packedValue, dim, globalMaxPackedValue, dim) > 0) {
+                                     throw new RuntimeException("packed value " + Arrays.toString(packedValue) + " for docID=" + docID + " is out-of-bounds of the global maximum " + Arrays.toString(globalMaxPackedValue) + " for field=\"" + fieldInfo.name + "\"");
+                                   }
+                                 }
+                               }
+
+                               @Override
+                               public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                                 // We always pretend the query shape is so complex that it crosses every cell, so
+                                 // that packedValue is passed for every document
+                                 return PointValues.Relation.CELL_CROSSES_QUERY;
+                               }
+                             });
+
+            if (pointCount[0] != values.size(fieldInfo.name)) {
+              throw new RuntimeException("visited " + pointCount[0] + " points for field=\"" + fieldInfo.name + "\" but size()=" + values.size(fieldInfo.name));
+            }
+            if (docsSeen.cardinality() != values.getDocCount(fieldInfo.name)) {
+              throw new RuntimeException("visited " + docsSeen.cardinality() + " docs for field=\"" + fieldInfo.name + "\" but getDocCount()=" + values.getDocCount(fieldInfo.name));
+            }
+            status.totalValuePoints += pointCount[0];
+          }
+        }
+        msg(infoStream, String.format(Locale.ROOT, "OK [%d fields, %d points] [took %.3f sec]", status.totalValueFields, status.totalValuePoints, nsToSec(System.nanoTime()-startNS)));
+      }
+    } catch (Throwable t) {
+      if (failFast) {
+        IOUtils.reThrow(t);
+      }
+      msg(infoStream, "ERROR: " + t);
+      status.error = t;
+      if (infoStream != null) {
+        t.printStackTrace(infoStream);
+      }
+    }
+
+    return status;
+  }
+
   private static void checkBinaryDocValues(String fieldName, int maxDoc, BinaryDocValues dv, Bits docsWithField) {
     for (int i = 0; i < maxDoc; i++) {
       final BytesRef term = dv.get(i);
@@ -2256,6 +2574,12 @@ public class CheckIndex implements Closeable {
     <ul>
     <li><code>-exorcise</code>: actually write a new segments_N file, removing any problematic segments. *LOSES DATA*
 
+    <li><code>-threadCount X</code>: check X segments concurrently.
+
+    <li><code>-incremental F</code>: skip the segments that file F lists as
+    verified by a previous run, then record the segments that are verified
+    now in F.
+
     <li><code>-segment X</code>: only check the specified
     segment(s).  This can be specified multiple times,
     to check more than one segment, eg <code>-segment _2
@@ -2291,6 +2615,8 @@ public class CheckIndex implements Closeable {
     boolean doCrossCheckTermVectors = false;
     boolean verbose = false;
     boolean doChecksumsOnly = false;
+    int threadCount = 1;
+    Path verifiedSegmentsFile = null;
     List<String> onlySegments = new ArrayList<>();
     String indexPath = null;
     String dirImpl = null;
@@ -2312,6 +2638,24 @@ public class CheckIndex implements Closeable {
         }
         i++;
         onlySegments.add(args[i]);
+      } else if ("-threadCount".equals(arg)) {
+        if (i == args.length - 1) {
+          System.out.println("ERROR: missing value for -threadCount option");
+          return 1;
+        }
+        i++;
+        threadCount = Integer.parseInt(args[i]);
+        if (threadCount < 1) {
+          System.out.println("ERROR: -threadCount must be at least 1, got " + threadCount);
+          return 1;
+        }
+      } else if ("-incremental".equals(arg)) {
+        if (i == args.length - 1) {
+          System.out.println("ERROR: missing file for -incremental option");
+          return 1;
+        }
+        i++;
+        verifiedSegmentsFile = Paths.get(args[i]);
       } else if ("-dir-impl".equals(arg)) {
         if (i == args.length - 1) {
           System.out.println("ERROR: missing value for -dir-impl option");
@@ -2331,7 +2675,7 @@ public class CheckIndex implements Closeable {
 
     if (indexPath == null) {
       System.out.println("\nERROR: index path not specified");
-      System.out.println("\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-crossCheckTermVectors] [-segment X] [-segment Y] [-dir-impl X]\n" +
+      System.out.println("\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-crossCheckTermVectors] [-segment X] [-segment Y] [-threadCount X] [-incremental F] [-dir-impl X]\n" +
                          "\n" +
                          "  -exorcise: actually write a new segments_N file, removing any problematic segments\n" +
                          "  -fast: just verify file checksums, omitting logical integrity checks\n" + 
@@ -2341,6 +2685,9 @@ public class CheckIndex implements Closeable {
                          "  -segment X: only check the specified segments.  This can be specified multiple\n" + 
                          "              times, to check more than one segment, eg '-segment _2 -segment _a'.\n" +
                          "              You can't use this with the -exorcise option\n" +
+                         "  -threadCount X: number of segments to check concurrently (default: 1)\n" +
+                         "  -incremental F: skip the segments that file F lists as verified by a previous\n" +
+                         "                  run, and record the segments that are verified in F\n" +
                          "  -dir-impl X: use a specific " + FSDirectory.class.getSimpleName() + " implementation. " +
                          "If no package is specified the " + FSDirectory.class.getPackage().getName() + " package will be used.\n" +
                          "\n" +
@@ -2394,12 +2741,20 @@ public class CheckIndex implements Closeable {
          CheckIndex checker = new CheckIndex(dir)) {
       checker.setCrossCheckTermVectors(doCrossCheckTermVectors);
       checker.setChecksumsOnly(doChecksumsOnly);
+      checker.setThreadCount(threadCount);
       checker.setInfoStream(System.out, verbose);
+      if (verifiedSegmentsFile != null && Files.exists(verifiedSegmentsFile)) {
+        checker.setVerifiedSegments(Files.readAllLines(verifiedSegmentsFile, StandardCharsets.UTF_8));
+      }
       
       Status result = checker.checkIndex(onlySegments);
       if (result.missingSegments) {
         return 1;
       }
+
+      if (verifiedSegmentsFile != null) {
+        Files.write(verifiedSegmentsFile, result.verifiedSegments, StandardCharsets.UTF_8);
+      }
       
       if (!result.clean) {
         if (!doExorcise) {
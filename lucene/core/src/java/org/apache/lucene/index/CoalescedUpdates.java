@@ -32,8 +32,9 @@ import org.apache.lucene.util.BytesRef;
 class CoalescedUpdates {
   final Map<Query,Integer> queries = new HashMap<>();
   final List<PrefixCodedTerms> terms = new ArrayList<>();
-  final List<NumericDocValuesUpdate> numericDVUpdates = new ArrayList<>();
-  final List<BinaryDocValuesUpdate> binaryDVUpdates = new ArrayList<>();
+  // one list of updates per packet, from the newest packet to the oldest one:
+  final List<List<NumericDocValuesUpdate>> numericDVUpdates = new ArrayList<>();
+  final List<List<BinaryDocValuesUpdate>> binaryDVUpdates = new ArrayList<>();
   long totalTermCount;
   
   @Override
@@ -54,17 +55,21 @@ class CoalescedUpdates {
       queries.put(query, BufferedUpdates.MAX_INT);
     }
     
+    List<NumericDocValuesUpdate> numericPacket = new ArrayList<>();
     for (NumericDocValuesUpdate nu : in.numericDVUpdates) {
       NumericDocValuesUpdate clone = new NumericDocValuesUpdate(nu.term, nu.field, (Long) nu.value);
       clone.docIDUpto = Integer.MAX_VALUE;
-      numericDVUpdates.add(clone);
+      numericPacket.add(clone);
     }
+    numericDVUpdates.add(numericPacket);
     
+    List<BinaryDocValuesUpdate> binaryPacket = new ArrayList<>();
     for (BinaryDocValuesUpdate bu : in.binaryDVUpdates) {
       BinaryDocValuesUpdate clone = new BinaryDocValuesUpdate(bu.term, bu.field, (BytesRef) bu.value);
       clone.docIDUpto = Integer.MAX_VALUE;
-      binaryDVUpdates.add(clone);
+      binaryPacket.add(clone);
     }
+    binaryDVUpdates.add(binaryPacket);
   }
 
   public FieldTermIterator termIterator() {
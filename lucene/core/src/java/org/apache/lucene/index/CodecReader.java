@@ -28,6 +28,7 @@ import java.util.Map;
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.util.Accountable;
@@ -74,6 +75,18 @@ public abstract class CodecReader extends LeafReader implements Accountable {
    * @lucene.internal
    */
   public abstract FieldsProducer getPostingsReader();
+
+  /**
+   * Expert: retrieve underlying PointsReader
+   * @lucene.internal
+   */
+  public abstract PointsReader getPointsReader();
+
+  @Override
+  public final PointValues getPointValues() {
+    ensureOpen();
+    return getPointsReader();
+  }
   
   @Override
   public final void document(int docID, StoredFieldVisitor visitor) throws IOException {
@@ -314,6 +327,11 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     if (getTermVectorsReader() != null) {
       ramBytesUsed += getTermVectorsReader().ramBytesUsed();
     }
+
+    // points
+    if (getPointsReader() != null) {
+      ramBytesUsed += getPointsReader().ramBytesUsed();
+    }
     
     return ramBytesUsed;
   }
@@ -345,6 +363,11 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     if (getTermVectorsReader() != null) {
       resources.add(Accountables.namedAccountable("term vectors", getTermVectorsReader()));
     }
+
+    // points
+    if (getPointsReader() != null) {
+      resources.add(Accountables.namedAccountable("points", getPointsReader()));
+    }
     
     return Collections.unmodifiableList(resources);
   }
@@ -375,5 +398,10 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     if (getTermVectorsReader() != null) {
       getTermVectorsReader().checkIntegrity();
     }
+
+    // points
+    if (getPointsReader() != null) {
+      getPointsReader().checkIntegrity();
+    }
   }
 }
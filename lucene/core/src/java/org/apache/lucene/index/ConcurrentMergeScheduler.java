@@ -116,6 +116,18 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
 
   private double forceMergeMBPerSec = Double.POSITIVE_INFINITY;
 
+  /** Signal that holds back merges, or null */
+  private MergePressure mergePressure;
+
+  /** Last sampled value of {@link #mergePressure} */
+  private double pressure;
+
+  /** How many times a merge's IO rate was lowered because of the merge pressure */
+  private long pressureThrottledMergeCount;
+
+  /** How many times a merge was paused because of the merge pressure */
+  private long pressurePausedMergeCount;
+
   /** Sole constructor, with all settings set to default
    *  values. */
   public ConcurrentMergeScheduler() {
@@ -229,6 +241,57 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     }
   }
 
+  /** Sets the signal that holds back merges while indexing or searching
+   *  needs the resources, or null to not use one (the default).  Under
+   *  pressure, fewer big merges run at once, down to a single one, and if
+   *  auto IO throttling is enabled, their IO rate is lowered from the auto
+   *  IO throttle rate down to a floor of {@code 5 MB/sec}.  Small merges and
+   *  forced merges are not held back.
+   *
+   * @lucene.experimental */
+  public synchronized void setMergePressure(MergePressure mergePressure) {
+    if (this.mergePressure != null) {
+      this.mergePressure.removeScheduler(this);
+    }
+    this.mergePressure = mergePressure;
+    pressure = 0.0;
+    if (mergePressure != null) {
+      mergePressure.addScheduler(this);
+    }
+    updateMergeThreads();
+  }
+
+  /** Returns the signal set by {@link #setMergePressure}, or null.
+   *
+   * @lucene.experimental */
+  public synchronized MergePressure getMergePressure() {
+    return mergePressure;
+  }
+
+  /** Returns the most recently sampled merge pressure, or {@code 0.0} if
+   *  no {@link MergePressure} is set.
+   *
+   * @lucene.experimental */
+  public synchronized double getCurrentPressure() {
+    return pressure;
+  }
+
+  /** Returns how many times the IO rate of a merge was lowered because of
+   *  the merge pressure.
+   *
+   * @lucene.experimental */
+  public synchronized long getPressureThrottledMergeCount() {
+    return pressureThrottledMergeCount;
+  }
+
+  /** Returns how many times a merge was paused because the merge pressure
+   *  lowered the number of merge threads.
+   *
+   * @lucene.experimental */
+  public synchronized long getPressurePausedMergeCount() {
+    return pressurePausedMergeCount;
+  }
+
   /** Returns {@code maxThreadCount}.
    *
    * @see #setMaxMergesAndThreads(int, int) */
@@ -301,6 +364,9 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     if (verbose()) {
       message = new StringBuilder();
       message.append(String.format(Locale.ROOT, "updateMergeThreads ioThrottle=%s targetMBPerSec=%.1f MB/sec", doAutoIOThrottle, targetMBPerSec));
+      if (mergePressure != null) {
+        message.append(String.format(Locale.ROOT, " pressure=%.2f maxThreadCount=%d", pressure, getPressureMaxThreadCount()));
+      }
     } else {
       message = null;
     }
@@ -310,12 +376,14 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
 
       OneMerge merge = mergeThread.merge;
 
-      // pause the thread if maxThreadCount is smaller than the number of merge threads.
-      final boolean doPause = threadIdx < bigMergeCount - maxThreadCount;
+      // pause the thread if maxThreadCount, lowered by the merge pressure, is smaller than the number of merge threads.
+      final boolean doPause = threadIdx < bigMergeCount - getPressureMaxThreadCount();
 
       double newMBPerSec;
+      boolean byPressure = false;
       if (doPause) {
         newMBPerSec = 0.0;
+        byPressure = threadIdx >= bigMergeCount - maxThreadCount;
       } else if (merge.maxNumSegments != -1) {
         newMBPerSec = forceMergeMBPerSec;
       } else if (doAutoIOThrottle == false) {
@@ -324,10 +392,19 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         // Don't rate limit small merges:
         newMBPerSec = Double.POSITIVE_INFINITY;
       } else {
-        newMBPerSec = targetMBPerSec;
+        newMBPerSec = getPressureMBPerSec(targetMBPerSec);
+        byPressure = newMBPerSec < targetMBPerSec;
       }
 
       double curMBPerSec = merge.rateLimiter.getMBPerSec();
+
+      if (byPressure && newMBPerSec != curMBPerSec) {
+        if (doPause) {
+          pressurePausedMergeCount++;
+        } else {
+          pressureThrottledMergeCount++;
+        }
+      }
       
       if (verbose()) {
         long mergeStartNS = merge.mergeStartNS;
@@ -403,6 +480,11 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
 
   @Override
   public void close() {
+    synchronized (this) {
+      if (mergePressure != null) {
+        mergePressure.removeScheduler(this);
+      }
+    }
     sync();
   }
 
@@ -464,6 +546,9 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     if (trigger == MergeTrigger.CLOSING) {
       // Disable throttling on close:
       targetMBPerSec = MAX_MERGE_MB_PER_SEC;
+      updatePressure(writer);
+      updateMergeThreads();
+    } else if (updatePressure(writer)) {
       updateMergeThreads();
     }
 
@@ -696,6 +781,9 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     sb.append("maxThreadCount=").append(maxThreadCount).append(", ");    
     sb.append("maxMergeCount=").append(maxMergeCount).append(", ");    
     sb.append("ioThrottle=").append(doAutoIOThrottle);
+    if (mergePressure != null) {
+      sb.append(", mergePressure=").append(mergePressure);
+    }
     return sb.toString();
   }
 
@@ -796,12 +884,89 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     if (newMerge.maxNumSegments != -1) {
       rate = forceMergeMBPerSec;
     } else {
-      rate = targetMBPerSec;
+      rate = getPressureMBPerSec(targetMBPerSec);
     }
     newMerge.rateLimiter.setMBPerSec(rate);
     targetMBPerSecChanged();
   }
 
+  /** Samples the merge pressure, and returns true if it changed.  A
+   *  closing writer is never held back. */
+  private synchronized boolean updatePressure(IndexWriter writer) {
+    if (mergePressure == null) {
+      return false;
+    }
+
+    double newPressure;
+    if (writer.isOpen()) {
+      newPressure = Math.min(1.0, Math.max(0.0, mergePressure.getPressure(writer)));
+    } else {
+      newPressure = 0.0;
+    }
+
+    if (newPressure == pressure) {
+      return false;
+    }
+
+    if (verbose()) {
+      message(String.format(Locale.ROOT, "io throttle: merge pressure changed from %.2f to %.2f; IO rate %.1f MB/sec, maxThreadCount %d",
+                            pressure, newPressure, getPressureMBPerSec(targetMBPerSec, newPressure),
+                            getPressureMaxThreadCount(newPressure)));
+    }
+    pressure = newPressure;
+    return true;
+  }
+
+  /** Called by the writer when a segment starts or finishes flushing. */
+  void flushingBytesChanged(IndexWriter writer) {
+    final MergePressure mergePressure;
+    synchronized (this) {
+      mergePressure = this.mergePressure;
+    }
+    // outside of the lock, as the pressure calls back into this scheduler:
+    if (mergePressure != null) {
+      mergePressure.flushingBytesChanged(writer);
+    }
+  }
+
+  /** Called by the {@link MergePressure} when its pressure changed. */
+  synchronized void pressureChanged() {
+    // We can only sample the pressure through a running merge's writer; if
+    // no merges are running, the next merge samples it anyway:
+    for (MergeThread mergeThread : mergeThreads) {
+      if (mergeThread.isAlive()) {
+        if (updatePressure(mergeThread.writer)) {
+          updateMergeThreads();
+        }
+        return;
+      }
+    }
+  }
+
+  /** Returns the IO rate for throttled merges, lowered by the merge pressure. */
+  private double getPressureMBPerSec(double mbPerSec) {
+    return getPressureMBPerSec(mbPerSec, pressure);
+  }
+
+  private static double getPressureMBPerSec(double mbPerSec, double pressure) {
+    if (pressure == 0.0 || mbPerSec <= MIN_MERGE_MB_PER_SEC) {
+      return mbPerSec;
+    }
+    return Math.max(MIN_MERGE_MB_PER_SEC, mbPerSec * (1.0 - pressure));
+  }
+
+  /** Returns how many big merges may run at once, lowered by the merge pressure. */
+  private int getPressureMaxThreadCount() {
+    return getPressureMaxThreadCount(pressure);
+  }
+
+  private int getPressureMaxThreadCount(double pressure) {
+    if (pressure == 0.0 || maxThreadCount <= 1) {
+      return maxThreadCount;
+    }
+    return maxThreadCount - (int) Math.round(pressure * (maxThreadCount - 1));
+  }
+
   /** Subclass can override to tweak targetMBPerSec. */
   protected void targetMBPerSecChanged() {
   }
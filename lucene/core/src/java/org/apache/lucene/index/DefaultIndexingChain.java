@@ -27,6 +27,8 @@ import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.NormsConsumer;
 import org.apache.lucene.codecs.NormsFormat;
+import org.apache.lucene.codecs.PointsFormat;
+import org.apache.lucene.codecs.PointsWriter;
 import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.search.similarities.Similarity;
@@ -91,6 +93,7 @@ final class DefaultIndexingChain extends DocConsumer {
     int maxDoc = state.segmentInfo.maxDoc();
     writeNorms(state);
     writeDocValues(state);
+    writePoints(state);
     
     // it's possible all docs hit non-aborting exceptions...
     initStoredFieldsWriter();
@@ -118,6 +121,50 @@ final class DefaultIndexingChain extends DocConsumer {
     docWriter.codec.fieldInfosFormat().write(state.directory, state.segmentInfo, "", state.fieldInfos, IOContext.DEFAULT);
   }
 
+  /** Writes all buffered points. */
+  private void writePoints(SegmentWriteState state) throws IOException {
+    PointsWriter pointsWriter = null;
+    boolean success = false;
+    try {
+      for (int i=0;i<fieldHash.length;i++) {
+        PerField perField = fieldHash[i];
+        while (perField != null) {
+          if (perField.pointValuesWriter != null) {
+            if (perField.fieldInfo.getPointDimensionCount() == 0) {
+              // BUG
+              throw new AssertionError("segment=" + state.segmentInfo + ": field=\"" + perField.fieldInfo.name + "\" has no points but wrote them");
+            }
+            if (pointsWriter == null) {
+              // lazy init
+              PointsFormat fmt = state.segmentInfo.getCodec().pointsFormat();
+              if (fmt == null) {
+                throw new IllegalStateException("field=\"" + perField.fieldInfo.name + "\" was indexed as points but codec does not support points");
+              }
+              pointsWriter = fmt.fieldsWriter(state);
+            }
+
+            perField.pointValuesWriter.flush(state, pointsWriter);
+            perField.pointValuesWriter = null;
+          } else if (perField.fieldInfo.getPointDimensionCount() != 0) {
+            // BUG
+            throw new AssertionError("segment=" + state.segmentInfo + ": field=\"" + perField.fieldInfo.name + "\" has points but did not write them");
+          }
+          perField = perField.next;
+        }
+      }
+      if (pointsWriter != null) {
+        pointsWriter.finish();
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(pointsWriter);
+      } else {
+        IOUtils.closeWhileHandlingException(pointsWriter);
+      }
+    }
+  }
+
   /** Writes all buffered doc values (called from {@link #flush}). */
   private void writeDocValues(SegmentWriteState state) throws IOException {
     int maxDoc = state.segmentInfo.maxDoc();
@@ -355,6 +402,9 @@ final class DefaultIndexingChain extends DocConsumer {
         if (dvType != DocValuesType.NONE) {
           indexDocValue(fp, dvType, field);
         }
+        if (fieldType.pointDimensionCount() != 0) {
+          indexPoint(fp, field);
+        }
       }
     } finally {
       if (abort == false) {
@@ -387,6 +437,26 @@ final class DefaultIndexingChain extends DocConsumer {
     }
   }
 
+  /** Called from processDocument to index one field's point */
+  private void indexPoint(PerField fp, StorableField field) throws IOException {
+    int pointDimensionCount = field.fieldType().pointDimensionCount();
+
+    int dimensionNumBytes = field.fieldType().pointNumBytes();
+
+    // Record dimensions for this field; this setter will throw IllegalArgExc if
+    // the dimensions were already set to something different:
+    if (fp.fieldInfo.getPointDimensionCount() == 0) {
+      fieldInfos.globalFieldNumbers.setDimensions(fp.fieldInfo.number, fp.fieldInfo.name, pointDimensionCount, dimensionNumBytes);
+    }
+
+    fp.fieldInfo.setPointDimensions(pointDimensionCount, dimensionNumBytes);
+
+    if (fp.pointValuesWriter == null) {
+      fp.pointValuesWriter = new PointValuesWriter(docWriter, fp.fieldInfo);
+    }
+    fp.pointValuesWriter.addPackedValue(docState.docID, field.binaryValue());
+  }
+
   /** Called from processDocument to index one field's doc
    *  value */
   private void indexDocValue(PerField fp, DocValuesType dvType, StorableField field) throws IOException {
@@ -522,6 +592,9 @@ final class DefaultIndexingChain extends DocConsumer {
     // Used by the hash table
     PerField next;
 
+    // Non-null if this field ever had points in this segment:
+    PointValuesWriter pointValuesWriter;
+
     // Lazy init'd:
     NormValuesWriter norms;
     
@@ -86,6 +86,28 @@ public abstract class DirectoryReader extends BaseCompositeReader<LeafReader> {
     return writer.getReader(applyAllDeletes);
   }
 
+  /**
+   * Expert: open a near real time IndexReader from the {@link IndexWriter},
+   * optionally writing the deletes that it applies to the directory. When
+   * {@code writeAllDeletes} is true, the files of the segment infos of the
+   * returned reader fully describe its content, which allows to copy them to
+   * another node and to open an equivalent reader there, for instance for
+   * near-real-time replication.
+   *
+   * @param writer The IndexWriter to open from
+   * @param applyAllDeletes If true, all buffered deletes will
+   * be applied (made visible) in the returned reader.
+   * @param writeAllDeletes If true, the deletes of the returned reader are
+   * written to the directory; requires {@code applyAllDeletes}.
+   *
+   * @see #open(IndexWriter,boolean)
+   *
+   * @lucene.experimental
+   */
+  public static DirectoryReader open(final IndexWriter writer, boolean applyAllDeletes, boolean writeAllDeletes) throws IOException {
+    return writer.getReader(applyAllDeletes, writeAllDeletes);
+  }
+
   /** Expert: returns an IndexReader reading the index in the given
    *  {@link IndexCommit}.
    * @param commit the commit point to open
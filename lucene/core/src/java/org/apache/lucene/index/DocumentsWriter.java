@@ -19,7 +19,10 @@ package org.apache.lucene.index;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -34,6 +37,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.CloseableThreadLocal;
 import org.apache.lucene.util.InfoStream;
 
 /**
@@ -122,6 +126,9 @@ final class DocumentsWriter implements Closeable, Accountable {
   final DocumentsWriterFlushControl flushControl;
   private final IndexWriter writer;
   private final Queue<Event> events;
+  // documents that each indexing thread reuses for concurrent analysis; not
+  // closed, as only this thread local strongly references them:
+  private final CloseableThreadLocal<List<PreAnalyzedDocument>> preAnalyzedDocs = new CloseableThreadLocal<>();
 
   
   DocumentsWriter(IndexWriter writer, LiveIndexWriterConfig config, Directory directoryOrig, Directory directory) {
@@ -395,14 +402,41 @@ final class DocumentsWriter implements Closeable, Accountable {
     if (state.isActive() && state.dwpt == null) {
       final FieldInfos.Builder infos = new FieldInfos.Builder(
           writer.globalFieldNumberMap);
-      state.dwpt = new DocumentsWriterPerThread(writer.newSegmentName(), directoryOrig,
+      // sorted segments are first flushed unsorted, and then rewritten under another name
+      final String sortedSegmentName = config.getIndexSort() == null ? null : writer.newSegmentName();
+      state.dwpt = new DocumentsWriterPerThread(writer.newSegmentName(), sortedSegmentName, directoryOrig,
                                                 directory, config, infoStream, deleteQueue, infos,
                                                 writer.pendingNumDocs, writer.enableTestPoints);
     }
   }
 
+  private List<PreAnalyzedDocument> preAnalyze(Iterable<? extends IndexDocument> docs, Analyzer analyzer) throws IOException {
+    List<PreAnalyzedDocument> reuse = preAnalyzedDocs.get();
+    if (reuse == null) {
+      reuse = new ArrayList<>();
+      preAnalyzedDocs.set(reuse);
+    }
+    return PreAnalyzedDocument.analyze(reuse, docs, analyzer);
+  }
+
   boolean updateDocuments(final Iterable<? extends IndexDocument> docs, final Analyzer analyzer,
                           final Term delTerm) throws IOException, AbortingException {
+    if (config.getConcurrentAnalysis() && analyzer != null) {
+      // analyze before we take a ThreadState, concurrently with other threads:
+      final List<PreAnalyzedDocument> analyzedDocs = preAnalyze(docs, analyzer);
+      try {
+        return doUpdateDocuments(analyzedDocs, analyzer, delTerm);
+      } finally {
+        for (PreAnalyzedDocument analyzedDoc : analyzedDocs) {
+          analyzedDoc.clear();
+        }
+      }
+    }
+    return doUpdateDocuments(docs, analyzer, delTerm);
+  }
+
+  private boolean doUpdateDocuments(final Iterable<? extends IndexDocument> docs, final Analyzer analyzer,
+                                    final Term delTerm) throws IOException, AbortingException {
     boolean hasEvents = preUpdate();
 
     final ThreadState perThread = flushControl.obtainAndLock();
@@ -440,6 +474,20 @@ final class DocumentsWriter implements Closeable, Accountable {
 
   boolean updateDocument(final IndexDocument doc, final Analyzer analyzer,
       final Term delTerm) throws IOException, AbortingException {
+    if (config.getConcurrentAnalysis() && analyzer != null) {
+      // analyze before we take a ThreadState, concurrently with other threads:
+      final PreAnalyzedDocument analyzedDoc = preAnalyze(Collections.singletonList(doc), analyzer).get(0);
+      try {
+        return doUpdateDocument(analyzedDoc, analyzer, delTerm);
+      } finally {
+        analyzedDoc.clear();
+      }
+    }
+    return doUpdateDocument(doc, analyzer, delTerm);
+  }
+
+  private boolean doUpdateDocument(final IndexDocument doc, final Analyzer analyzer,
+      final Term delTerm) throws IOException, AbortingException {
 
     boolean hasEvents = preUpdate();
 
@@ -478,6 +526,9 @@ final class DocumentsWriter implements Closeable, Accountable {
 
   private boolean doFlush(DocumentsWriterPerThread flushingDWPT) throws IOException, AbortingException {
     boolean hasEvents = false;
+    if (flushingDWPT != null) {
+      flushingBytesChanged();
+    }
     while (flushingDWPT != null) {
       hasEvents = true;
       boolean success = false;
@@ -553,6 +604,7 @@ final class DocumentsWriter implements Closeable, Accountable {
       flushingDWPT = flushControl.nextPendingFlush();
     }
     if (hasEvents) {
+      flushingBytesChanged();
       putEvent(MergePendingEvent.INSTANCE);
     }
     // If deletes alone are consuming > 1/2 our RAM
@@ -576,6 +628,16 @@ final class DocumentsWriter implements Closeable, Accountable {
     return hasEvents;
   }
   
+  // lets the merge pressure hold running merges back while segments are
+  // flushing, instead of waiting for the next merge to sample it
+  private void flushingBytesChanged() {
+    assert Thread.holdsLock(writer) == false;
+    final MergeScheduler mergeScheduler = config.getMergeScheduler();
+    if (mergeScheduler instanceof ConcurrentMergeScheduler) {
+      ((ConcurrentMergeScheduler) mergeScheduler).flushingBytesChanged(writer);
+    }
+  }
+
   final void subtractFlushedNumDocs(int numFlushed) {
     int oldValue = numDocsInRAM.get();
     while (!numDocsInRAM.compareAndSet(oldValue, oldValue - numFlushed)) {
@@ -231,7 +231,7 @@ final class DocumentsWriterDeleteQueue implements Accountable {
 
 //      System.out.println(Thread.currentThread().getName() + ": now freeze global buffer " + globalBufferedDeletes);
       final FrozenBufferedUpdates packet = new FrozenBufferedUpdates(
-          globalBufferedUpdates, false);
+          globalBufferedUpdates, false, null);
       globalBufferedUpdates.clear();
       return packet;
     } finally {
@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,15 +29,31 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.codecs.TermVectorsFormat;
+import org.apache.lucene.codecs.TermVectorsWriter;
+import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressingTermVectorsFormat;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.codecs.compressing.Decompressor;
 import org.apache.lucene.index.DocumentsWriterDeleteQueue.DeleteSlice;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MergeInfo;
 import org.apache.lucene.store.TrackingDirectoryWrapper;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.ByteBlockPool.Allocator;
 import org.apache.lucene.util.ByteBlockPool.DirectTrackingAllocator;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.IntBlockPool;
 import org.apache.lucene.util.MutableBits;
@@ -100,10 +117,11 @@ class DocumentsWriterPerThread {
     final int delCount;
 
     private FlushedSegment(SegmentCommitInfo segmentInfo, FieldInfos fieldInfos,
-                           BufferedUpdates segmentUpdates, MutableBits liveDocs, int delCount) {
+                           BufferedUpdates segmentUpdates, MutableBits liveDocs, int delCount,
+                           Sorter.DocMap sortMap) {
       this.segmentInfo = segmentInfo;
       this.fieldInfos = fieldInfos;
-      this.segmentUpdates = segmentUpdates != null && segmentUpdates.any() ? new FrozenBufferedUpdates(segmentUpdates, true) : null;
+      this.segmentUpdates = segmentUpdates != null && segmentUpdates.any() ? new FrozenBufferedUpdates(segmentUpdates, true, sortMap) : null;
       this.liveDocs = liveDocs;
       this.delCount = delCount;
     }
@@ -144,6 +162,7 @@ class DocumentsWriterPerThread {
   // Updates for our still-in-RAM (to be flushed next) segment
   final BufferedUpdates pendingUpdates;
   private final SegmentInfo segmentInfo;     // Current segment we are working on
+  private final String sortedSegmentName;    // Name of the segment that documents are sorted into, if the index is sorted
   boolean aborted = false;   // True if we aborted
 
   private final FieldInfos.Builder fieldInfos;
@@ -158,14 +177,18 @@ class DocumentsWriterPerThread {
   private final LiveIndexWriterConfig indexWriterConfig;
   private final boolean enableTestPoints;
   
-  public DocumentsWriterPerThread(String segmentName, Directory directoryOrig, Directory directory, LiveIndexWriterConfig indexWriterConfig, InfoStream infoStream, DocumentsWriterDeleteQueue deleteQueue,
+  public DocumentsWriterPerThread(String segmentName, String sortedSegmentName, Directory directoryOrig, Directory directory, LiveIndexWriterConfig indexWriterConfig, InfoStream infoStream, DocumentsWriterDeleteQueue deleteQueue,
                                   FieldInfos.Builder fieldInfos, AtomicLong pendingNumDocs, boolean enableTestPoints) throws IOException {
     this.directoryOrig = directoryOrig;
     this.directory = new TrackingDirectoryWrapper(directory);
     this.fieldInfos = fieldInfos;
     this.indexWriterConfig = indexWriterConfig;
     this.infoStream = infoStream;
-    this.codec = indexWriterConfig.getCodec();
+    if (sortedSegmentName == null) {
+      this.codec = indexWriterConfig.getCodec();
+    } else {
+      this.codec = new UnsortedSegmentCodec(indexWriterConfig.getCodec());
+    }
     this.docState = new DocState(this, infoStream);
     this.docState.similarity = indexWriterConfig.getSimilarity();
     this.pendingNumDocs = pendingNumDocs;
@@ -178,7 +201,9 @@ class DocumentsWriterPerThread {
     pendingUpdates.clear();
     deleteSlice = deleteQueue.newSlice();
    
-    segmentInfo = new SegmentInfo(directoryOrig, Version.LATEST, segmentName, -1, false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>());
+    segmentInfo = new SegmentInfo(directoryOrig, Version.LATEST, segmentName, -1, false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), indexWriterConfig.getIndexSort());
+    assert (segmentInfo.getIndexSort() == null) == (sortedSegmentName == null);
+    this.sortedSegmentName = sortedSegmentName;
     assert numDocsInRAM == 0;
     if (INFO_VERBOSE && infoStream.isEnabled("DWPT")) {
       infoStream.message("DWPT", Thread.currentThread().getName() + " init seg=" + segmentName + " delQueue=" + deleteQueue);  
@@ -422,7 +447,41 @@ class DocumentsWriterPerThread {
       pendingUpdates.terms.clear();
       segmentInfo.setFiles(new HashSet<>(directory.getCreatedFiles()));
 
-      final SegmentCommitInfo segmentInfoPerCommit = new SegmentCommitInfo(segmentInfo, 0, -1L, -1L, -1L);
+      SegmentInfo flushedInfo = segmentInfo;
+      Sorter.DocMap sortMap = null;
+      if (segmentInfo.getIndexSort() != null) {
+        final long t0 = System.nanoTime();
+        final Sorter sorter = new Sorter(segmentInfo.getIndexSort());
+        try (SegmentReader reader = new SegmentReader(new SegmentCommitInfo(segmentInfo, 0, -1L, -1L, -1L), flushState.context)) {
+          sortMap = sorter.sort(reader);
+          if (sortMap == null) {
+            flushedInfo = copyUnsortedFormats(reader);
+          } else {
+            flushedInfo = writeSortedSegment(reader, sortMap);
+          }
+        }
+        if (infoStream.isEnabled("DWPT")) {
+          infoStream.message("DWPT", (sortMap == null ? "segment " + segmentInfo.name + " is already sorted" :
+                             "sorted segment " + segmentInfo.name + " into " + flushedInfo.name) + " by " + sorter
+                             + " in " + nf.format((System.nanoTime() - t0) / 1000000.) + " msec");
+        }
+        if (sortMap == null) {
+          // stored fields and term vectors have been copied
+          for (String file : segmentInfo.files()) {
+            if (UnsortedSegmentCodec.isUnsortedFormatFile(file)) {
+              filesToDelete.add(file);
+            }
+          }
+        } else {
+          // the unsorted segment is not needed anymore
+          filesToDelete.addAll(segmentInfo.files());
+          if (flushState.liveDocs != null) {
+            flushState.liveDocs = sortLiveDocs(flushState.liveDocs, sortMap);
+          }
+        }
+      }
+
+      final SegmentCommitInfo segmentInfoPerCommit = new SegmentCommitInfo(flushedInfo, 0, -1L, -1L, -1L);
       if (infoStream.isEnabled("DWPT")) {
         infoStream.message("DWPT", "new segment has " + (flushState.liveDocs == null ? 0 : flushState.delCountOnFlush) + " deleted docs");
         infoStream.message("DWPT", "new segment has " +
@@ -445,7 +504,7 @@ class DocumentsWriterPerThread {
 
       if (infoStream.isEnabled("DWPT")) {
         final double newSegmentSize = segmentInfoPerCommit.sizeInBytes()/1024./1024.;
-        infoStream.message("DWPT", "flushed: segment=" + segmentInfo.name + 
+        infoStream.message("DWPT", "flushed: segment=" + flushedInfo.name + 
                 " ramUsed=" + nf.format(startMBUsed) + " MB" +
                 " newFlushedSize=" + nf.format(newSegmentSize) + " MB" +
                 " docs/MB=" + nf.format(flushState.segmentInfo.maxDoc() / newSegmentSize));
@@ -454,16 +513,166 @@ class DocumentsWriterPerThread {
       assert segmentInfo != null;
 
       FlushedSegment fs = new FlushedSegment(segmentInfoPerCommit, flushState.fieldInfos,
-                                             segmentDeletes, flushState.liveDocs, flushState.delCountOnFlush);
+                                             segmentDeletes, flushState.liveDocs, flushState.delCountOnFlush, sortMap);
       sealFlushedSegment(fs);
 
       return fs;
     } catch (Throwable th) {
+      if (sortedSegmentName != null) {
+        // files of the unsorted segment are removed when handling the flush
+        // failure, but not those of the sorted segment
+        for (String file : new ArrayList<>(directory.getCreatedFiles())) {
+          if (IndexFileNames.parseSegmentName(file).equals(sortedSegmentName)) {
+            IOUtils.deleteFilesIgnoringExceptions(directory, file);
+          }
+        }
+      }
       abort();
       throw AbortingException.wrap(th);
     }
   }
   
+  /** Rewrites the segment that has just been flushed, so that documents
+   *  are in the order of the index sort.
+   *  <p>
+   *  The flushed segment is written to disk and then read again, since
+   *  stored fields and term vectors are written to disk while documents are
+   *  indexed and can't be sorted in memory. This about doubles the IO of
+   *  flushes, and reordering postings is costly too: flushing 1M documents
+   *  that have a small stored text field took about 1.7x as long as without
+   *  an index sort. To make reading stored fields and term vectors in the
+   *  sorted order cheap, they are written uncompressed and one document per
+   *  chunk by {@link UnsortedSegmentCodec}. */
+  private SegmentInfo writeSortedSegment(SegmentReader reader, Sorter.DocMap sortMap) throws IOException {
+    final SegmentInfo sortedInfo = new SegmentInfo(directoryOrig, Version.LATEST, sortedSegmentName, -1, false, indexWriterConfig.getCodec(),
+                                                   Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), segmentInfo.getIndexSort());
+    final TrackingDirectoryWrapper sortedDir = new TrackingDirectoryWrapper(directory);
+    boolean success = false;
+    try {
+      final CodecReader sortedReader = SlowCodecReaderWrapper.wrap(SortingLeafReader.wrap(reader, sortMap));
+      final IOContext context = new IOContext(new MergeInfo(reader.maxDoc(), reader.getSegmentInfo().sizeInBytes(), false, -1));
+      final SegmentMerger merger = new SegmentMerger(Collections.singletonList(sortedReader), sortedInfo, infoStream,
+                                                     sortedDir, fieldInfos.globalFieldNumbers, context, null);
+      merger.merge();
+      sortedInfo.setFiles(new HashSet<>(sortedDir.getCreatedFiles()));
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.deleteFilesIgnoringExceptions(directory, sortedDir.getCreatedFiles().toArray(new String[0]));
+      }
+    }
+    return sortedInfo;
+  }
+
+  /** Returns the info of the segment that has just been flushed, already
+   *  sorted, once its stored fields and term vectors have been copied from
+   *  the formats of {@link UnsortedSegmentCodec} to those of the codec. */
+  private SegmentInfo copyUnsortedFormats(SegmentReader reader) throws IOException {
+    final Codec codec = indexWriterConfig.getCodec();
+    final SegmentInfo info = new SegmentInfo(directoryOrig, Version.LATEST, segmentInfo.name, -1, false, codec,
+                                             Collections.emptyMap(), segmentInfo.getId(), new HashMap<>(segmentInfo.getAttributes()),
+                                             segmentInfo.getIndexSort());
+    final TrackingDirectoryWrapper copyDir = new TrackingDirectoryWrapper(directory);
+    final IOContext context = new IOContext(new MergeInfo(reader.maxDoc(), 0, false, -1));
+    final MergeState mergeState = new MergeState(Collections.singletonList(reader), info, infoStream, null);
+    mergeState.mergeFieldInfos = reader.getFieldInfos();
+    try (StoredFieldsWriter fieldsWriter = codec.storedFieldsFormat().fieldsWriter(copyDir, info, context)) {
+      fieldsWriter.merge(mergeState);
+    }
+    if (reader.getFieldInfos().hasVectors()) {
+      try (TermVectorsWriter vectorsWriter = codec.termVectorsFormat().vectorsWriter(copyDir, info, context)) {
+        vectorsWriter.merge(mergeState);
+      }
+    }
+    final Set<String> files = new HashSet<>(copyDir.getCreatedFiles());
+    for (String file : segmentInfo.files()) {
+      if (UnsortedSegmentCodec.isUnsortedFormatFile(file) == false) {
+        files.add(file);
+      }
+    }
+    info.setFiles(files);
+    return info;
+  }
+
+  /** Codec of segments that are flushed before being sorted, whose stored
+   *  fields and term vectors are read in the order of the index sort. */
+  static final class UnsortedSegmentCodec extends FilterCodec {
+
+    private static final CompressionMode NO_COMPRESSION = new CompressionMode() {
+      @Override
+      public Compressor newCompressor() {
+        return new Compressor() {
+          @Override
+          public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
+            out.writeBytes(bytes, off, len);
+          }
+        };
+      }
+
+      @Override
+      public Decompressor newDecompressor() {
+        return new Decompressor() {
+          @Override
+          public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+            bytes.bytes = ArrayUtil.grow(bytes.bytes, length);
+            in.skipBytes(offset);
+            in.readBytes(bytes.bytes, 0, length);
+            bytes.offset = 0;
+            bytes.length = length;
+          }
+
+          @Override
+          public Decompressor clone() {
+            return this;
+          }
+        };
+      }
+
+      @Override
+      public String toString() {
+        return "NO_COMPRESSION";
+      }
+    };
+
+    private static final String SEGMENT_SUFFIX = "unsorted";
+
+    // one document per chunk, so that reading a document does not need to read its neighbours
+    private static final StoredFieldsFormat STORED_FIELDS_FORMAT =
+        new CompressingStoredFieldsFormat("UnsortedStoredFields", SEGMENT_SUFFIX, NO_COMPRESSION, 128 * 1024, 1, 10);
+    private static final TermVectorsFormat TERM_VECTORS_FORMAT =
+        new CompressingTermVectorsFormat("UnsortedTermVectors", SEGMENT_SUFFIX, NO_COMPRESSION, 1, 10);
+
+    /** Whether the given file has been written by the stored fields or term vectors formats of this codec. */
+    static boolean isUnsortedFormatFile(String file) {
+      return IndexFileNames.stripSegmentName(file).startsWith("_" + SEGMENT_SUFFIX + ".");
+    }
+
+    UnsortedSegmentCodec(Codec delegate) {
+      super(delegate.getName(), delegate);
+    }
+
+    @Override
+    public StoredFieldsFormat storedFieldsFormat() {
+      return STORED_FIELDS_FORMAT;
+    }
+
+    @Override
+    public TermVectorsFormat termVectorsFormat() {
+      return TERM_VECTORS_FORMAT;
+    }
+  }
+
+  /** Returns a copy of the given live docs in the order of the sorted segment. */
+  private MutableBits sortLiveDocs(MutableBits liveDocs, Sorter.DocMap sortMap) throws IOException {
+    final MutableBits sortedLiveDocs = codec.liveDocsFormat().newLiveDocs(liveDocs.length());
+    for (int i = 0; i < liveDocs.length(); ++i) {
+      if (liveDocs.get(i) == false) {
+        sortedLiveDocs.clear(sortMap.oldToNew(i));
+      }
+    }
+    return sortedLiveDocs;
+  }
+
   private final Set<String> filesToDelete = new HashSet<>();
   
   public Set<String> pendingFilesToDelete() {
@@ -17,6 +17,8 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -44,9 +46,17 @@ public final class FieldInfo {
   private IndexOptions indexOptions = IndexOptions.NONE;
   private boolean storePayloads; // whether this field stores payloads together with term positions
 
-  private final Map<String,String> attributes;
+  // copy-on-write, so that codec components that are written concurrently
+  // during a merge may put attributes on the same field:
+  private volatile Map<String,String> attributes;
 
   private long dvGen;
+
+  /** If both of these are positive it means this field indexed points
+   *  (see {@link org.apache.lucene.codecs.PointsFormat}). */
+  private int pointDimensionCount;
+  private int pointNumBytes;
+
   /**
    * Sole constructor.
    *
@@ -54,7 +64,7 @@ public final class FieldInfo {
    */
   public FieldInfo(String name, int number, boolean storeTermVector, boolean omitNorms, 
       boolean storePayloads, IndexOptions indexOptions, DocValuesType docValues,
-      long dvGen, Map<String,String> attributes) {
+      long dvGen, Map<String,String> attributes, int pointDimensionCount, int pointNumBytes) {
     this.name = Objects.requireNonNull(name);
     this.number = number;
     this.docValuesType = Objects.requireNonNull(docValues, "DocValuesType cannot be null (field: \"" + name + "\")");
@@ -69,7 +79,9 @@ public final class FieldInfo {
       this.omitNorms = false;
     }
     this.dvGen = dvGen;
-    this.attributes = Objects.requireNonNull(attributes);
+    this.attributes = Collections.unmodifiableMap(new HashMap<>(Objects.requireNonNull(attributes)));
+    this.pointDimensionCount = pointDimensionCount;
+    this.pointNumBytes = pointNumBytes;
     assert checkConsistency();
   }
 
@@ -99,6 +111,22 @@ public final class FieldInfo {
       throw new IllegalStateException("field '" + name + "' cannot have a docvalues update generation without having docvalues");
     }
 
+    if (pointDimensionCount < 0) {
+      throw new IllegalStateException("pointDimensionCount must be >= 0; got " + pointDimensionCount);
+    }
+
+    if (pointNumBytes < 0) {
+      throw new IllegalStateException("pointNumBytes must be >= 0; got " + pointNumBytes);
+    }
+
+    if (pointDimensionCount != 0 && pointNumBytes == 0) {
+      throw new IllegalStateException("pointNumBytes must be > 0 when pointDimensionCount=" + pointDimensionCount);
+    }
+
+    if (pointNumBytes != 0 && pointDimensionCount == 0) {
+      throw new IllegalStateException("pointDimensionCount must be > 0 when pointNumBytes=" + pointNumBytes);
+    }
+
     return true;
   }
 
@@ -133,6 +161,44 @@ public final class FieldInfo {
     assert checkConsistency();
   }
 
+  /** Record that this field is indexed with points, with the
+   *  specified number of dimensions and bytes per dimension. */
+  public void setPointDimensions(int count, int numBytes) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("point dimension count must be > 0; got " + count + " for field=\"" + name + "\"");
+    }
+    if (count > PointValues.MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("point dimension count must be <= PointValues.MAX_DIMENSIONS (= " + PointValues.MAX_DIMENSIONS + "); got " + count + " for field=\"" + name + "\"");
+    }
+    if (numBytes <= 0) {
+      throw new IllegalArgumentException("point numBytes must be > 0; got " + numBytes + " for field=\"" + name + "\"");
+    }
+    if (numBytes > PointValues.MAX_NUM_BYTES) {
+      throw new IllegalArgumentException("point numBytes must be <= PointValues.MAX_NUM_BYTES (= " + PointValues.MAX_NUM_BYTES + "); got " + numBytes + " for field=\"" + name + "\"");
+    }
+    if (pointDimensionCount != 0 && pointDimensionCount != count) {
+      throw new IllegalArgumentException("cannot change point dimension count from " + pointDimensionCount + " to " + count + " for field=\"" + name + "\"");
+    }
+    if (pointNumBytes != 0 && pointNumBytes != numBytes) {
+      throw new IllegalArgumentException("cannot change point numBytes from " + pointNumBytes + " to " + numBytes + " for field=\"" + name + "\"");
+    }
+
+    pointDimensionCount = count;
+    pointNumBytes = numBytes;
+
+    assert checkConsistency();
+  }
+
+  /** Return point dimension count */
+  public int getPointDimensionCount() {
+    return pointDimensionCount;
+  }
+
+  /** Return number of bytes per dimension */
+  public int getPointNumBytes() {
+    return pointNumBytes;
+  }
+
   void setDocValuesType(DocValuesType type) {
     if (type == null) {
       throw new NullPointerException("DocValuesType cannot be null (field: \"" + name + "\")");
@@ -253,12 +319,16 @@ public final class FieldInfo {
    * If a value already exists for the field, it will be replaced with 
    * the new value.
    */
-  public String putAttribute(String key, String value) {
-    return attributes.put(key, value);
+  public synchronized String putAttribute(String key, String value) {
+    final Map<String,String> newAttributes = new HashMap<>(attributes);
+    final String oldValue = newAttributes.put(key, value);
+    attributes = Collections.unmodifiableMap(newAttributes);
+    return oldValue;
   }
   
   /**
-   * Returns internal codec attributes map.
+   * Returns internal codec attributes map. The returned map is not
+   * modified by later calls to {@link #putAttribute(String, String)}.
    */
   public Map<String,String> attributes() {
     return attributes;
@@ -37,6 +37,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
   private final boolean hasVectors;
   private final boolean hasNorms;
   private final boolean hasDocValues;
+  private final boolean hasPointValues;
   
   private final SortedMap<Integer,FieldInfo> byNumber = new TreeMap<>();
   private final HashMap<String,FieldInfo> byName = new HashMap<>();
@@ -53,6 +54,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
     boolean hasFreq = false;
     boolean hasNorms = false;
     boolean hasDocValues = false;
+    boolean hasPointValues = false;
     
     for (FieldInfo info : infos) {
       if (info.number < 0) {
@@ -74,6 +76,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
       hasNorms |= info.hasNorms();
       hasDocValues |= info.getDocValuesType() != DocValuesType.NONE;
       hasPayloads |= info.hasPayloads();
+      hasPointValues |= (info.getPointDimensionCount() != 0);
     }
     
     this.hasVectors = hasVectors;
@@ -83,6 +86,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
     this.hasFreq = hasFreq;
     this.hasNorms = hasNorms;
     this.hasDocValues = hasDocValues;
+    this.hasPointValues = hasPointValues;
     this.values = Collections.unmodifiableCollection(byNumber.values());
   }
   
@@ -121,6 +125,11 @@ public class FieldInfos implements Iterable<FieldInfo> {
     return hasDocValues;
   }
   
+  /** Returns true if any fields have PointValues */
+  public boolean hasPointValues() {
+    return hasPointValues;
+  }
+  
   /** Returns the number of fields */
   public int size() {
     assert byNumber.size() == byName.size();
@@ -160,6 +169,16 @@ public class FieldInfos implements Iterable<FieldInfo> {
     return byNumber.get(fieldNumber);
   }
   
+  static final class FieldDimensions {
+    public final int dimensionCount;
+    public final int dimensionNumBytes;
+
+    public FieldDimensions(int dimensionCount, int dimensionNumBytes) {
+      this.dimensionCount = dimensionCount;
+      this.dimensionNumBytes = dimensionNumBytes;
+    }
+  }
+
   static final class FieldNumbers {
     
     private final Map<Integer,String> numberToName;
@@ -169,6 +188,11 @@ public class FieldInfos implements Iterable<FieldInfo> {
     // sessions:
     private final Map<String,DocValuesType> docValuesType;
 
+    // We use this to enforce that a given field never
+    // changes point dimension count or number of bytes,
+    // even across segments / IndexWriter sessions:
+    private final Map<String,FieldDimensions> dimensions;
+
     // TODO: we should similarly catch an attempt to turn
     // norms back on after they were already ommitted; today
     // we silently discard the norm but this is badly trappy
@@ -178,6 +202,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
       this.nameToNumber = new HashMap<>();
       this.numberToName = new HashMap<>();
       this.docValuesType = new HashMap<>();
+      this.dimensions = new HashMap<>();
     }
     
     /**
@@ -186,7 +211,7 @@ public class FieldInfos implements Iterable<FieldInfo> {
      * number assigned if possible otherwise the first unassigned field number
      * is used as the field number.
      */
-    synchronized int addOrGet(String fieldName, int preferredFieldNumber, DocValuesType dvType) {
+    synchronized int addOrGet(String fieldName, int preferredFieldNumber, DocValuesType dvType, int dimensionCount, int dimensionNumBytes) {
       if (dvType != DocValuesType.NONE) {
         DocValuesType currentDVType = docValuesType.get(fieldName);
         if (currentDVType == null) {
@@ -195,6 +220,19 @@ public class FieldInfos implements Iterable<FieldInfo> {
           throw new IllegalArgumentException("cannot change DocValues type from " + currentDVType + " to " + dvType + " for field \"" + fieldName + "\"");
         }
       }
+      if (dimensionCount != 0) {
+        FieldDimensions dims = dimensions.get(fieldName);
+        if (dims != null) {
+          if (dims.dimensionCount != dimensionCount) {
+            throw new IllegalArgumentException("cannot change point dimension count from " + dims.dimensionCount + " to " + dimensionCount + " for field=\"" + fieldName + "\"");
+          }
+          if (dims.dimensionNumBytes != dimensionNumBytes) {
+            throw new IllegalArgumentException("cannot change point numBytes from " + dims.dimensionNumBytes + " to " + dimensionNumBytes + " for field=\"" + fieldName + "\"");
+          }
+        } else {
+          dimensions.put(fieldName, new FieldDimensions(dimensionCount, dimensionNumBytes));
+        }
+      }
       Integer fieldNumber = nameToNumber.get(fieldName);
       if (fieldNumber == null) {
         final Integer preferredBoxed = Integer.valueOf(preferredFieldNumber);
@@ -229,6 +267,24 @@ public class FieldInfos implements Iterable<FieldInfo> {
       }
     }
 
+    synchronized void verifyConsistentDimensions(Integer number, String name, int dimensionCount, int dimensionNumBytes) {
+      if (name.equals(numberToName.get(number)) == false) {
+        throw new IllegalArgumentException("field number " + number + " is already mapped to field name \"" + numberToName.get(number) + "\", not \"" + name + "\"");
+      }
+      if (number.equals(nameToNumber.get(name)) == false) {
+        throw new IllegalArgumentException("field name \"" + name + "\" is already mapped to field number \"" + nameToNumber.get(name) + "\", not \"" + number + "\"");
+      }
+      FieldDimensions dim = dimensions.get(name);
+      if (dim != null) {
+        if (dim.dimensionCount != dimensionCount) {
+          throw new IllegalArgumentException("cannot change point dimension count from " + dim.dimensionCount + " to " + dimensionCount + " for field=\"" + name + "\"");
+        }
+        if (dim.dimensionNumBytes != dimensionNumBytes) {
+          throw new IllegalArgumentException("cannot change point numBytes from " + dim.dimensionNumBytes + " to " + dimensionNumBytes + " for field=\"" + name + "\"");
+        }
+      }
+    }
+
     /**
      * Returns true if the {@code fieldName} exists in the map and is of the
      * same {@code dvType}.
@@ -247,12 +303,24 @@ public class FieldInfos implements Iterable<FieldInfo> {
       numberToName.clear();
       nameToNumber.clear();
       docValuesType.clear();
+      dimensions.clear();
     }
 
     synchronized void setDocValuesType(int number, String name, DocValuesType dvType) {
       verifyConsistent(number, name, dvType);
       docValuesType.put(name, dvType);
     }
+
+    synchronized void setDimensions(int number, String name, int dimensionCount, int dimensionNumBytes) {
+      if (dimensionNumBytes > PointValues.MAX_NUM_BYTES) {
+        throw new IllegalArgumentException("dimension numBytes must be <= PointValues.MAX_NUM_BYTES (= " + PointValues.MAX_NUM_BYTES + "); got " + dimensionNumBytes + " for field=\"" + name + "\"");
+      }
+      if (dimensionCount > PointValues.MAX_DIMENSIONS) {
+        throw new IllegalArgumentException("pointDimensionCount must be <= PointValues.MAX_DIMENSIONS (= " + PointValues.MAX_DIMENSIONS + "); got " + dimensionCount + " for field=\"" + name + "\"");
+      }
+      verifyConsistentDimensions(number, name, dimensionCount, dimensionNumBytes);
+      dimensions.put(name, new FieldDimensions(dimensionCount, dimensionNumBytes));
+    }
   }
   
   static final class Builder {
@@ -286,8 +354,8 @@ public class FieldInfos implements Iterable<FieldInfo> {
         // number for this field.  If the field was seen
         // before then we'll get the same name and number,
         // else we'll allocate a new one:
-        final int fieldNumber = globalFieldNumbers.addOrGet(name, -1, DocValuesType.NONE);
-        fi = new FieldInfo(name, fieldNumber, false, false, false, IndexOptions.NONE, DocValuesType.NONE, -1, new HashMap<>());
+        final int fieldNumber = globalFieldNumbers.addOrGet(name, -1, DocValuesType.NONE, 0, 0);
+        fi = new FieldInfo(name, fieldNumber, false, false, false, IndexOptions.NONE, DocValuesType.NONE, -1, new HashMap<>(), 0, 0);
         assert !byName.containsKey(fi.name);
         globalFieldNumbers.verifyConsistent(Integer.valueOf(fi.number), fi.name, DocValuesType.NONE);
         byName.put(fi.name, fi);
@@ -298,7 +366,8 @@ public class FieldInfos implements Iterable<FieldInfo> {
    
     private FieldInfo addOrUpdateInternal(String name, int preferredFieldNumber,
         boolean storeTermVector,
-        boolean omitNorms, boolean storePayloads, IndexOptions indexOptions, DocValuesType docValues) {
+        boolean omitNorms, boolean storePayloads, IndexOptions indexOptions, DocValuesType docValues,
+        int dimensionCount, int dimensionNumBytes) {
       if (docValues == null) {
         throw new NullPointerException("DocValuesType cannot be null");
       }
@@ -309,8 +378,8 @@ public class FieldInfos implements Iterable<FieldInfo> {
         // number for this field.  If the field was seen
         // before then we'll get the same name and number,
         // else we'll allocate a new one:
-        final int fieldNumber = globalFieldNumbers.addOrGet(name, preferredFieldNumber, docValues);
-        fi = new FieldInfo(name, fieldNumber, storeTermVector, omitNorms, storePayloads, indexOptions, docValues, -1, new HashMap<>());
+        final int fieldNumber = globalFieldNumbers.addOrGet(name, preferredFieldNumber, docValues, dimensionCount, dimensionNumBytes);
+        fi = new FieldInfo(name, fieldNumber, storeTermVector, omitNorms, storePayloads, indexOptions, docValues, -1, new HashMap<>(), dimensionCount, dimensionNumBytes);
         assert !byName.containsKey(fi.name);
         globalFieldNumbers.verifyConsistent(Integer.valueOf(fi.number), fi.name, fi.getDocValuesType());
         byName.put(fi.name, fi);
@@ -329,6 +398,15 @@ public class FieldInfos implements Iterable<FieldInfo> {
 
           fi.setDocValuesType(docValues); // this will also perform the consistency check.
         }
+
+        if (dimensionCount != 0) {
+          if (fi.getPointDimensionCount() == 0) {
+            // This will throw an exc if the caller tried to
+            // change the point dimensions of the field:
+            globalFieldNumbers.setDimensions(fi.number, name, dimensionCount, dimensionNumBytes);
+          }
+          fi.setPointDimensions(dimensionCount, dimensionNumBytes); // this will also perform the consistency check.
+        }
       }
       return fi;
     }
@@ -337,7 +415,8 @@ public class FieldInfos implements Iterable<FieldInfo> {
       // IMPORTANT - reuse the field number if possible for consistent field numbers across segments
       return addOrUpdateInternal(fi.name, fi.number, fi.hasVectors(),
                  fi.omitsNorms(), fi.hasPayloads(),
-                 fi.getIndexOptions(), fi.getDocValuesType());
+                 fi.getIndexOptions(), fi.getDocValuesType(),
+                 fi.getPointDimensionCount(), fi.getPointNumBytes());
     }
     
     public FieldInfo fieldInfo(String fieldName) {
@@ -22,6 +22,7 @@ import java.util.Objects;
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.util.Bits;
@@ -65,6 +66,11 @@ public class FilterCodecReader extends CodecReader {
     return in.getDocValuesReader();
   }
 
+  @Override
+  public PointsReader getPointsReader() {
+    return in.getPointsReader();
+  }
+
   @Override
   public FieldsProducer getPostingsReader() {
     return in.getPostingsReader();
@@ -460,6 +460,12 @@ public class FilterLeafReader extends LeafReader {
     return in.getNormValues(field);
   }
 
+  @Override
+  public PointValues getPointValues() {
+    ensureOpen();
+    return in.getPointValues();
+  }
+
   @Override
   public Bits getDocsWithField(String field) throws IOException {
     ensureOpen();
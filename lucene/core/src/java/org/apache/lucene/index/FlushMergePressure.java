@@ -0,0 +1,77 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** A {@link MergePressure} that rises as flushing falls behind
+ *  indexing.
+ *
+ *  <p>The pressure is the RAM used by segments that are pending or in
+ *  the process of flushing, relative to twice the RAM buffer (the point
+ *  where indexing threads start to stall), and {@code 1.0} once indexing
+ *  threads are stalled.  If flushing by RAM usage is disabled, the per
+ *  thread hard limit is used instead of the RAM buffer.  Running merges
+ *  are adjusted as soon as a segment starts or finishes flushing and this
+ *  changes the pressure noticeably.</p>
+ *
+ *  @lucene.experimental */
+public class FlushMergePressure extends MergePressure {
+
+  /** Pressure changes smaller than this do not notify the schedulers. */
+  private static final double MIN_PRESSURE_CHANGE = 0.05;
+
+  private double notifiedPressure;
+
+  /** Sole constructor. */
+  public FlushMergePressure() {
+  }
+
+  @Override
+  void flushingBytesChanged(IndexWriter writer) {
+    final double pressure = getPressure(writer);
+    final boolean changed;
+    synchronized (this) {
+      changed = Math.abs(pressure - notifiedPressure) >= MIN_PRESSURE_CHANGE
+          || (pressure != notifiedPressure && (pressure == 0.0 || pressure == 1.0));
+      if (changed) {
+        notifiedPressure = pressure;
+      }
+    }
+    if (changed) {
+      pressureChanged();
+    }
+  }
+
+  @Override
+  public double getPressure(IndexWriter writer) {
+    if (writer.isStalled()) {
+      return 1.0;
+    }
+    LiveIndexWriterConfig config = writer.getConfig();
+    double ramBufferMB = config.getRAMBufferSizeMB();
+    if (ramBufferMB == IndexWriterConfig.DISABLE_AUTO_FLUSH) {
+      ramBufferMB = config.getRAMPerThreadHardLimitMB();
+    }
+    double flushingMB = writer.getFlushingBytes() / 1024. / 1024.;
+    return Math.min(1.0, flushingMB / (2 * ramBufferMB));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
@@ -61,10 +61,14 @@ class FrozenBufferedUpdates {
   final boolean isSegmentPrivate;  // set to true iff this frozen packet represents 
                                    // a segment private deletes. in that case is should
                                    // only have Queries 
+  final Sorter.DocMap sortMap;     // for a segment private packet, maps the doc IDs the
+                                   // limits refer to to doc IDs in the sorted segment, or null
 
 
-  public FrozenBufferedUpdates(BufferedUpdates deletes, boolean isSegmentPrivate) {
+  public FrozenBufferedUpdates(BufferedUpdates deletes, boolean isSegmentPrivate, Sorter.DocMap sortMap) {
     this.isSegmentPrivate = isSegmentPrivate;
+    assert isSegmentPrivate || sortMap == null : "only segment private packets may be sorted";
+    this.sortMap = sortMap;
     assert !isSegmentPrivate || deletes.terms.size() == 0 : "segment private package should only have del queries"; 
     Term termsArray[] = deletes.terms.keySet().toArray(new Term[deletes.terms.size()]);
     ArrayUtil.timSort(termsArray);
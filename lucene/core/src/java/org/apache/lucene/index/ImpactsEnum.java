@@ -0,0 +1,64 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Extension of {@link PostingsEnum} which also exposes per-block upper
+ * bounds of term frequencies, so that scorers can skip over blocks of
+ * documents that cannot produce competitive scores without decoding them.
+ * <p>
+ * Codecs may return instances of this class from
+ * {@link TermsEnum#postings(org.apache.lucene.util.Bits, PostingsEnum, int)}
+ * when they record this information in their skip data. Consumers must
+ * check with {@code instanceof} and fall back to term-level statistics
+ * otherwise.
+ *
+ * @lucene.experimental
+ */
+public abstract class ImpactsEnum extends PostingsEnum {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected ImpactsEnum() {}
+
+  /**
+   * Shallow-advance to {@code target}. This moves the skip data so that
+   * {@link #getMaxFreq(int)} returns information about the block of
+   * documents that contains {@code target}, without decoding postings or
+   * changing the current {@link #docID()}. Returns the last doc ID of the
+   * block that contains {@code target}, or
+   * {@link org.apache.lucene.search.DocIdSetIterator#NO_MORE_DOCS} if this
+   * information is not available.
+   * <p>
+   * {@code target} must be greater than or equal to the current
+   * {@link #docID()} and to all targets previously passed to this method,
+   * and subsequent calls to {@link #advance(int)} must not use lower
+   * targets.
+   */
+  public abstract int advanceShallow(int target) throws IOException;
+
+  /**
+   * Returns an upper bound of the term frequency of documents between the
+   * last target passed to {@link #advanceShallow(int)} (inclusive) and
+   * {@code upTo} (inclusive), or {@link Integer#MAX_VALUE} if no such bound
+   * is known.
+   */
+  public abstract int getMaxFreq(int upTo);
+}
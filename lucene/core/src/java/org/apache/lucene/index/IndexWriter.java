@@ -36,6 +36,7 @@ import java.util.Map.Entry;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -49,6 +50,8 @@ import org.apache.lucene.index.FieldInfos.FieldNumbers;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FilterDirectory;
@@ -71,6 +74,9 @@ import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.Version;
+import org.apache.lucene.util.VirtualMethod;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
 
 /**
   An <code>IndexWriter</code> creates and maintains an index.
@@ -291,6 +297,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
   private final MergeScheduler mergeScheduler;
   private LinkedList<MergePolicy.OneMerge> pendingMerges = new LinkedList<>();
   private Set<MergePolicy.OneMerge> runningMerges = new HashSet<>();
+  // Number of threads that resolve buffered deletes and updates without holding our lock:
+  private int runningApplyDeletes;
   private List<MergePolicy.OneMerge> mergeExceptions = new ArrayList<>();
   private long mergeGen;
   private boolean stopMerges;
@@ -393,7 +401,17 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
    * @throws IOException If there is a low-level I/O error
    */
   DirectoryReader getReader(boolean applyAllDeletes) throws IOException {
+    return getReader(applyAllDeletes, false);
+  }
+
+  /** Same as {@link #getReader(boolean)}, but if {@code writeAllDeletes} is
+   *  true, the deletes of the returned reader are also written to the
+   *  directory, so that the files of its segment infos fully describe it. */
+  DirectoryReader getReader(boolean applyAllDeletes, boolean writeAllDeletes) throws IOException {
     ensureOpen();
+    if (writeAllDeletes && applyAllDeletes == false) {
+      throw new IllegalArgumentException("applyAllDeletes must be true when writeAllDeletes=true");
+    }
 
     final long tStart = System.currentTimeMillis();
 
@@ -425,11 +443,15 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
             // if we flushed anything.
             flushCount.incrementAndGet();
           }
+          anyChanges |= maybeApplyDeletes(applyAllDeletes);
           // Prevent segmentInfos from changing while opening the
           // reader; in theory we could instead do similar retry logic,
           // just like we do when loading segments_N
           synchronized(this) {
-            anyChanges |= maybeApplyDeletes(applyAllDeletes);
+            if (writeAllDeletes) {
+              // Must move the deletes to disk:
+              readerPool.commit(segmentInfos);
+            }
             r = StandardDirectoryReader.open(this, segmentInfos, applyAllDeletes);
             if (infoStream.isEnabled("IW")) {
               infoStream.message("IW", "return reader version=" + r.getVersion() + " reader=" + r);
@@ -493,6 +515,12 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       return true;
     }
 
+    /** Returns true if this segment was not merged away or dropped. */
+    public synchronized boolean isLive(SegmentCommitInfo info) {
+      int idx = segmentInfos.indexOf(info);
+      return idx != -1 && segmentInfos.info(idx) == info;
+    }
+
     public synchronized void drop(SegmentCommitInfo info) throws IOException {
       final ReadersAndUpdates rld = readerMap.get(info);
       if (rld != null) {
@@ -842,6 +870,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         }
       }
 
+      validateIndexSort(segmentInfos, true);
+
       rollbackSegments = segmentInfos.createBackupSegmentInfos();
       pendingNumDocs.set(segmentInfos.totalMaxDoc());
 
@@ -886,6 +916,28 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
   
+  /** Confirms that segments that are sorted are sorted by the configured
+   *  index sort, if any. Segments that are not sorted are only accepted
+   *  if {@code allowUnsorted} is true, they will be sorted when merged. */
+  private void validateIndexSort(SegmentInfos infos, boolean allowUnsorted) {
+    final Sort indexSort = config.getIndexSort();
+    if (indexSort == null) {
+      return;
+    }
+    for (SegmentCommitInfo info : infos) {
+      final Sort segmentIndexSort = info.info.getIndexSort();
+      if (segmentIndexSort == null) {
+        if (allowUnsorted == false) {
+          throw new IllegalArgumentException("cannot add unsorted segment " + info + " to an index sorted by " + indexSort
+                                             + ", use addIndexes(CodecReader...) instead");
+        }
+      } else if (segmentIndexSort.equals(indexSort) == false) {
+        throw new IllegalArgumentException("cannot change index sort from " + segmentIndexSort + " (segment=" + info
+                                           + ") to " + indexSort);
+      }
+    }
+  }
+
   // reads latest field infos for the commit
   // this is used on IW init and addIndexes(Dir) to create/update the global field map.
   // TODO: fix tests abusing this method!
@@ -918,7 +970,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     for(SegmentCommitInfo info : segmentInfos) {
       FieldInfos fis = readFieldInfos(info);
       for(FieldInfo fi : fis) {
-        map.addOrGet(fi.name, fi.number, fi.getDocValuesType());
+        map.addOrGet(fi.name, fi.number, fi.getDocValuesType(), fi.getPointDimensionCount(), fi.getPointNumBytes());
       }
     }
 
@@ -1372,6 +1424,19 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
 
+  /** Doc values of fields that the index is sorted on can't be updated
+   *  since it would make segments unsorted. */
+  private void ensureNotSortField(String field) {
+    final Sort indexSort = config.getIndexSort();
+    if (indexSort != null) {
+      for (SortField sortField : indexSort.getSort()) {
+        if (sortField.getField().equals(field)) {
+          throw new IllegalArgumentException("cannot update docvalues field involved in the index sort, field=" + field + ", sort=" + indexSort);
+        }
+      }
+    }
+  }
+
   /**
    * Updates a document's {@link NumericDocValues} for <code>field</code> to the
    * given <code>value</code>. You can only update fields that already exist in
@@ -1393,6 +1458,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     if (!globalFieldNumberMap.contains(field, DocValuesType.NUMERIC)) {
       throw new IllegalArgumentException("can only update existing numeric-docvalues fields!");
     }
+    ensureNotSortField(field);
     try {
       if (docWriter.updateDocValues(new NumericDocValuesUpdate(term, field, value))) {
         processEvents(true, false);
@@ -1430,6 +1496,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     if (!globalFieldNumberMap.contains(field, DocValuesType.BINARY)) {
       throw new IllegalArgumentException("can only update existing binary-docvalues fields!");
     }
+    ensureNotSortField(field);
     try {
       if (docWriter.updateDocValues(new BinaryDocValuesUpdate(term, field, value))) {
         processEvents(true, false);
@@ -1467,6 +1534,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       if (!globalFieldNumberMap.contains(f.name(), dvType)) {
         throw new IllegalArgumentException("can only update existing docvalues fields! field=" + f.name() + ", type=" + dvType);
       }
+      ensureNotSortField(f.name());
       switch (dvType) {
         case NUMERIC:
           dvUpdates[i] = new NumericDocValuesUpdate(term, f.name(), (Long) f.numericValue());
@@ -1931,6 +1999,12 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       synchronized(this) {
         abortMerges();
         stopMerges = true;
+
+        // Let threads that are resolving deletes publish them, so that they
+        // release their readers and files before we drop everything:
+        while (runningApplyDeletes > 0) {
+          doWait();
+        }
       }
 
       rateLimiters.close();
@@ -2364,6 +2438,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
           infoStream.message("IW", "addIndexes: process directory " + dir);
         }
         SegmentInfos sis = SegmentInfos.readLatestCommit(dir); // read infos from dir
+        validateIndexSort(sis, false);
         totalMaxDoc += sis.totalMaxDoc();
         commits.add(sis);
       }
@@ -2387,7 +2462,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
 
             FieldInfos fis = readFieldInfos(info);
             for(FieldInfo fi : fis) {
-              globalFieldNumberMap.addOrGet(fi.name, fi.number, fi.getDocValuesType());
+              globalFieldNumberMap.addOrGet(fi.name, fi.number, fi.getDocValuesType(), fi.getPointDimensionCount(), fi.getPointNumBytes());
             }
             infos.add(copySegmentAsIs(info, newSegName, context));
           }
@@ -2496,13 +2571,23 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(directory);
 
       SegmentInfo info = new SegmentInfo(directoryOrig, Version.LATEST, mergedName, -1,
-                                         false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>());
+                                         false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), config.getIndexSort());
+
+      List<CodecReader> mergeReaders = Arrays.asList(readers);
+      if (config.getIndexSort() != null && numDocs > 0) {
+        final LeafReader view = mergeView(mergeReaders);
+        final Sorter.DocMap sortMap = new Sorter(config.getIndexSort()).sort(view);
+        if (sortMap != null) {
+          mergeReaders = Collections.singletonList(SlowCodecReaderWrapper.wrap(SortingLeafReader.wrap(view, sortMap)));
+        }
+      }
 
-      SegmentMerger merger = new SegmentMerger(Arrays.asList(readers), info, infoStream, trackingDir,
+      MergeRateLimiter rateLimiter = new MergeRateLimiter(null);
+      SegmentMerger merger = new SegmentMerger(mergeReaders, info, infoStream, trackingDir,
                                                globalFieldNumberMap, 
-                                               context);
+                                               context, getMergeExecutor(rateLimiter));
       
-      rateLimiters.set(new MergeRateLimiter(null));
+      rateLimiters.set(rateLimiter);
 
       if (!merger.shouldMerge()) {
         return;
@@ -2601,7 +2686,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     // Same SI as before but we change directory and name
     SegmentInfo newInfo = new SegmentInfo(directoryOrig, info.info.getVersion(), segName, info.info.maxDoc(),
                                           info.info.getUseCompoundFile(), info.info.getCodec(), 
-                                          info.info.getDiagnostics(), info.info.getId(), info.info.getAttributes());
+                                          info.info.getDiagnostics(), info.info.getId(), info.info.getAttributes(), info.info.getIndexSort());
     SegmentCommitInfo newInfoPerCommit = new SegmentCommitInfo(newInfo, info.getDelCount(), info.getDelGen(), 
                                                                info.getFieldInfosGen(), info.getDocValuesGen());
     
@@ -2702,9 +2787,9 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
             processEvents(false, true);
             flushSuccess = true;
 
-            synchronized(this) {
-              maybeApplyDeletes(true);
+            maybeApplyDeletes(true);
 
+            synchronized(this) {
               readerPool.commit(segmentInfos);
 
               if (changeCount.get() != lastCommitChangeCount) {
@@ -3005,8 +3090,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
           processEvents(false, true);
         }
       }
+      anyChanges |= maybeApplyDeletes(applyAllDeletes);
       synchronized(this) {
-        anyChanges |= maybeApplyDeletes(applyAllDeletes);
         doAfterFlush();
         success = true;
         return anyChanges;
@@ -3024,7 +3109,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
   
-  final synchronized boolean maybeApplyDeletes(boolean applyAllDeletes) throws IOException {
+  final boolean maybeApplyDeletes(boolean applyAllDeletes) throws IOException {
     if (applyAllDeletes) {
       if (infoStream.isEnabled("IW")) {
         infoStream.message("IW", "apply all deletes during flush");
@@ -3037,13 +3122,80 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return false;
   }
   
-  final synchronized boolean applyAllDeletesAndUpdates() throws IOException {
+  final boolean applyAllDeletesAndUpdates() throws IOException {
     flushDeletesCount.incrementAndGet();
-    final BufferedUpdatesStream.ApplyDeletesResult result;
     if (infoStream.isEnabled("IW")) {
-      infoStream.message("IW", "now apply all deletes for all segments maxDoc=" + (docWriter.getNumDocs() + segmentInfos.totalMaxDoc()));
+      synchronized (this) {
+        infoStream.message("IW", "now apply all deletes for all segments maxDoc=" + (docWriter.getNumDocs() + segmentInfos.totalMaxDoc()));
+      }
     }
-    result = bufferedUpdatesStream.applyDeletesAndUpdates(readerPool, segmentInfos.asList());
+    return applyDeletesAndUpdates(null);
+  }
+
+  /** Applies the buffered deletes and updates to all segments, or to the
+   *  segments of the given merge.  The lock of this writer is only held to
+   *  take a snapshot of the segments and of the buffered deletes and
+   *  updates, and then to publish the resolved deletes and updates: terms
+   *  and queries are resolved while other threads keep using the writer. */
+  private boolean applyDeletesAndUpdates(MergePolicy.OneMerge merge) throws IOException {
+    assert Thread.holdsLock(this) == false;
+    final BufferedUpdatesStream.PendingUpdates pending;
+    synchronized (this) {
+      // Lock order: IW -> BD
+      pending = bufferedUpdatesStream.prepare(readerPool, merge == null ? segmentInfos.asList() : merge.segments);
+      // A merge may commit while we resolve; its source segments must not
+      // be deleted until their readers are released by publish:
+      deleter.incRef(pending.files);
+      runningApplyDeletes++;
+    }
+    try {
+      resolveDeletesAndUpdates(pending);
+      testPoint("startPublishDeletes");
+
+      synchronized (this) {
+        BufferedUpdatesStream.ApplyDeletesResult result = bufferedUpdatesStream.publish(readerPool, pending, true);
+        boolean anyDeletes = processApplyDeletesResult(result, merge);
+        if (result.anySegmentDropped && merge == null) {
+          // Segments were merged away while we resolved their deletes, and
+          // the merged segments still need them.  This is rare, so we
+          // resolve the merged segments without releasing the lock:
+          final BufferedUpdatesStream.PendingUpdates remaining = bufferedUpdatesStream.prepare(readerPool, segmentInfos.asList());
+          resolveDeletesAndUpdates(remaining);
+          result = bufferedUpdatesStream.publish(readerPool, remaining, true);
+          anyDeletes |= processApplyDeletesResult(result, merge);
+        }
+        bufferedUpdatesStream.prune(segmentInfos);
+        return anyDeletes;
+      }
+    } finally {
+      synchronized (this) {
+        try {
+          deleter.decRef(pending.files);
+        } finally {
+          runningApplyDeletes--;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /** Resolves the snapshot deletes and updates, or releases the readers of
+   *  the snapshot if they cannot be resolved. */
+  private void resolveDeletesAndUpdates(BufferedUpdatesStream.PendingUpdates pending) throws IOException {
+    boolean success = false;
+    try {
+      bufferedUpdatesStream.resolve(pending, config.getApplyDeletesExecutor());
+      success = true;
+    } finally {
+      if (success == false) {
+        synchronized (this) {
+          bufferedUpdatesStream.publish(readerPool, pending, false);
+        }
+      }
+    }
+  }
+
+  private synchronized boolean processApplyDeletesResult(BufferedUpdatesStream.ApplyDeletesResult result, MergePolicy.OneMerge merge) throws IOException {
     if (result.anyDeletes) {
       checkpoint();
     }
@@ -3052,19 +3204,22 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         infoStream.message("IW", "drop 100% deleted segments: " + segString(result.allDeleted));
       }
       for (SegmentCommitInfo info : result.allDeleted) {
-        // If a merge has already registered for this
-        // segment, we leave it in the readerPool; the
-        // merge will skip merging it and will then drop
-        // it once it's done:
-        if (!mergingSegments.contains(info)) {
-          segmentInfos.remove(info);
-          pendingNumDocs.addAndGet(-info.info.maxDoc());
-          readerPool.drop(info);
+        if (merge != null && merge.segments.contains(info)) {
+          mergingSegments.remove(info);
+          merge.segments.remove(info);
+        } else if (mergingSegments.contains(info)) {
+          // If a merge has already registered for this
+          // segment, we leave it in the readerPool; the
+          // merge will skip merging it and will then drop
+          // it once it's done:
+          continue;
         }
+        segmentInfos.remove(info);
+        pendingNumDocs.addAndGet(-info.info.maxDoc());
+        readerPool.drop(info);
       }
       checkpoint();
     }
-    bufferedUpdatesStream.prune(segmentInfos);
     return result.anyDeletes;
   }
 
@@ -3110,7 +3265,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     final void init(ReaderPool readerPool, MergePolicy.OneMerge merge, MergeState mergeState, boolean initWritableLiveDocs) throws IOException {
       if (mergedDeletesAndUpdates == null) {
         mergedDeletesAndUpdates = readerPool.get(merge.info, true);
-        docMap = merge.getDocMap(mergeState);
+        docMap = getMergeDocMap(merge, mergeState);
         assert docMap.isConsistent(merge.info.info.maxDoc());
       }
       if (initWritableLiveDocs && !initializedWritableLiveDocs) {
@@ -3549,6 +3704,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
               infoStream.message("IW", "hit exception during merge");
             }
             if (merge.info != null && !segmentInfos.contains(merge.info)) {
+              // the merged segment may have been pooled to be warmed
+              readerPool.drop(merge.info);
               deleter.refresh(merge.info.info.name);
             }
           }
@@ -3667,93 +3824,79 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return true;
   }
 
-  /** Does initial setup for a merge, which is fast but holds
-   *  the synchronized lock on IndexWriter instance.  */
-  final synchronized void mergeInit(MergePolicy.OneMerge merge) throws IOException {
+  /** Does initial setup for a merge.  This is fast, except for applying
+   *  the buffered deletes and updates to the segments to merge, which only
+   *  holds the synchronized lock on IndexWriter instance to take a snapshot
+   *  of them and then to publish them. */
+  final void mergeInit(MergePolicy.OneMerge merge) throws IOException {
     boolean success = false;
     try {
       _mergeInit(merge);
       success = true;
     } finally {
       if (!success) {
-        if (infoStream.isEnabled("IW")) {
-          infoStream.message("IW", "hit exception in mergeInit");
+        synchronized (this) {
+          if (infoStream.isEnabled("IW")) {
+            infoStream.message("IW", "hit exception in mergeInit");
+          }
+          mergeFinish(merge);
         }
-        mergeFinish(merge);
       }
     }
   }
 
-  synchronized private void _mergeInit(MergePolicy.OneMerge merge) throws IOException {
-
-    testPoint("startMergeInit");
+  private void _mergeInit(MergePolicy.OneMerge merge) throws IOException {
 
-    assert merge.registerDone;
-    assert merge.maxNumSegments == -1 || merge.maxNumSegments > 0;
-
-    if (tragedy != null) {
-      throw new IllegalStateException("this writer hit an unrecoverable error; cannot merge", tragedy);
-    }
+    synchronized (this) {
+      testPoint("startMergeInit");
 
-    if (merge.info != null) {
-      // mergeInit already done
-      return;
-    }
+      assert merge.registerDone;
+      assert merge.maxNumSegments == -1 || merge.maxNumSegments > 0;
 
-    if (merge.rateLimiter.getAbort()) {
-      return;
-    }
+      if (tragedy != null) {
+        throw new IllegalStateException("this writer hit an unrecoverable error; cannot merge", tragedy);
+      }
 
-    // TODO: in the non-pool'd case this is somewhat
-    // wasteful, because we open these readers, close them,
-    // and then open them again for merging.  Maybe  we
-    // could pre-pool them somehow in that case...
+      if (merge.info != null) {
+        // mergeInit already done
+        return;
+      }
 
-    if (infoStream.isEnabled("IW")) {
-      infoStream.message("IW", "now apply deletes for " + merge.segments.size() + " merging segments");
-    }
+      if (merge.rateLimiter.getAbort()) {
+        return;
+      }
 
-    // Lock order: IW -> BD
-    final BufferedUpdatesStream.ApplyDeletesResult result = bufferedUpdatesStream.applyDeletesAndUpdates(readerPool, merge.segments);
-    
-    if (result.anyDeletes) {
-      checkpoint();
-    }
+      // TODO: in the non-pool'd case this is somewhat
+      // wasteful, because we open these readers, close them,
+      // and then open them again for merging.  Maybe  we
+      // could pre-pool them somehow in that case...
 
-    if (!keepFullyDeletedSegments && result.allDeleted != null) {
       if (infoStream.isEnabled("IW")) {
-        infoStream.message("IW", "drop 100% deleted segments: " + result.allDeleted);
+        infoStream.message("IW", "now apply deletes for " + merge.segments.size() + " merging segments");
       }
-      for(SegmentCommitInfo info : result.allDeleted) {
-        segmentInfos.remove(info);
-        pendingNumDocs.addAndGet(-info.info.maxDoc());
-        if (merge.segments.contains(info)) {
-          mergingSegments.remove(info);
-          merge.segments.remove(info);
-        }
-        readerPool.drop(info);
-      }
-      checkpoint();
     }
 
-    // Bind a new segment name here so even with
-    // ConcurrentMergePolicy we keep deterministic segment
-    // names.
-    final String mergeSegmentName = newSegmentName();
-    SegmentInfo si = new SegmentInfo(directoryOrig, Version.LATEST, mergeSegmentName, -1, false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>());
-    Map<String,String> details = new HashMap<>();
-    details.put("mergeMaxNumSegments", "" + merge.maxNumSegments);
-    details.put("mergeFactor", Integer.toString(merge.segments.size()));
-    setDiagnostics(si, SOURCE_MERGE, details);
-    merge.setMergeInfo(new SegmentCommitInfo(si, 0, -1L, -1L, -1L));
-
-//    System.out.println("[" + Thread.currentThread().getName() + "] IW._mergeInit: " + segString(merge.segments) + " into " + si);
+    // The segments of a registered merge are never merged away, so the
+    // deletes are resolved for all of them:
+    applyDeletesAndUpdates(merge);
 
-    // Lock order: IW -> BD
-    bufferedUpdatesStream.prune(segmentInfos);
+    synchronized (this) {
+      // Bind a new segment name here so even with
+      // ConcurrentMergePolicy we keep deterministic segment
+      // names.
+      final String mergeSegmentName = newSegmentName();
+      SegmentInfo si = new SegmentInfo(directoryOrig, Version.LATEST, mergeSegmentName, -1, false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), config.getIndexSort());
+      Map<String,String> details = new HashMap<>();
+      details.put("mergeMaxNumSegments", "" + merge.maxNumSegments);
+      details.put("mergeFactor", Integer.toString(merge.segments.size()));
+      setDiagnostics(si, SOURCE_MERGE, details);
+      merge.setMergeInfo(new SegmentCommitInfo(si, 0, -1L, -1L, -1L));
+
+//      System.out.println("[" + Thread.currentThread().getName() + "] IW._mergeInit: " + segString(merge.segments) + " into " + si);
 
-    if (infoStream.isEnabled("IW")) {
-      infoStream.message("IW", "merge seg=" + merge.info.info.name + " " + segString(merge.segments));
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "merge seg=" + merge.info.info.name + " " + segString(merge.segments));
+      }
     }
   }
 
@@ -3781,6 +3924,110 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     info.setDiagnostics(diagnostics);
   }
 
+  private static final VirtualMethod<MergePolicy.OneMerge> getDocMapMethod =
+      new VirtualMethod<>(MergePolicy.OneMerge.class, "getDocMap", MergeState.class);
+
+  /** Returns the readers to pass to the {@link SegmentMerger} of the given
+   *  merge. If an index sort is configured, the readers of the
+   *  {@link MergePolicy.OneMerge} are sorted with it, so the OneMerge must not
+   *  reorder documents itself. */
+  private List<CodecReader> getMergeReaders(MergePolicy.OneMerge merge) throws IOException {
+    // we pass merge.getMergeReaders() instead of merge.readers to allow the
+    // OneMerge to return a view over the actual segments to merge
+    final List<CodecReader> mergeReaders = merge.getMergeReaders();
+    final Sort indexSort = config.getIndexSort();
+    if (indexSort == null) {
+      return mergeReaders;
+    }
+    if (getDocMapMethod.isOverriddenAsOf(merge.getClass())) {
+      throw new IllegalStateException("cannot merge " + merge.segString() + " with index sort " + indexSort
+                                      + ": " + merge.getClass().getName() + " reorders documents");
+    }
+    final List<CodecReader> readers = new ArrayList<>(mergeReaders.size());
+    for (CodecReader reader : mergeReaders) {
+      if (reader.numDocs() > 0) {
+        readers.add(reader);
+      }
+    }
+    merge.indexSortReaders = readers;
+    if (readers.isEmpty()) {
+      return readers;
+    }
+    final LeafReader view = mergeView(readers);
+    merge.indexSortMap = new Sorter(indexSort).sort(view);
+    if (merge.indexSortMap == null) {
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "merge: readers already sorted by " + indexSort);
+      }
+      return readers;
+    }
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", "merge: sorting readers by " + indexSort);
+    }
+    return Collections.singletonList(SlowCodecReaderWrapper.wrap(SortingLeafReader.wrap(view, merge.indexSortMap)));
+  }
+
+  /** Returns a single {@link LeafReader} over the given readers, that can be
+   *  sorted to write a sorted segment. */
+  private static LeafReader mergeView(List<CodecReader> readers) throws IOException {
+    final LeafReader[] wrapped = new LeafReader[readers.size()];
+    for (int i = 0; i < wrapped.length; ++i) {
+      final CodecReader reader = readers.get(i);
+      if (reader instanceof SegmentReader) {
+        wrapped[i] = new MergeReaderWrapper((SegmentReader) reader);
+      } else {
+        wrapped[i] = reader;
+      }
+    }
+    if (wrapped.length == 1) {
+      return wrapped[0];
+    } else {
+      return new SlowCompositeReaderWrapper(new MultiReader(wrapped), true);
+    }
+  }
+
+  /** Returns the mapping from the doc IDs that a natural merge would have
+   *  produced to the doc IDs of the merged segment. */
+  private static MergePolicy.DocMap getMergeDocMap(MergePolicy.OneMerge merge, final MergeState mergeState) {
+    if (merge.indexSortReaders == null) {
+      // no index sort, the OneMerge decided about the order of documents
+      return merge.getDocMap(mergeState);
+    }
+    final Sorter.DocMap sortMap = merge.indexSortMap;
+    if (sortMap == null) {
+      // readers were merged in their natural order
+      return new MergePolicy.DocMap() {
+        @Override
+        public int map(int docID) {
+          return docID;
+        }
+      };
+    }
+    assert mergeState.docMaps.length == 1; // the sorted view is a single reader
+    // the sort map works on doc IDs that include deleted documents
+    final PackedLongValues.Builder deletesBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    int deleteCount = 0;
+    for (CodecReader reader : merge.indexSortReaders) {
+      final int maxDoc = reader.maxDoc();
+      final Bits liveDocs = reader.getLiveDocs();
+      for (int i = 0; i < maxDoc; ++i) {
+        if (liveDocs != null && liveDocs.get(i) == false) {
+          ++deleteCount;
+        } else {
+          deletesBuilder.add(deleteCount);
+        }
+      }
+    }
+    final PackedLongValues deletes = deletesBuilder.build();
+    return new MergePolicy.DocMap() {
+      @Override
+      public int map(int docID) {
+        final int docIDWithDeletes = docID + (int) deletes.get(docID);
+        return mergeState.docMaps[0].get(sortMap.oldToNew(docIDWithDeletes));
+      }
+    };
+  }
+
   /** Does fininishing for a merge, which is fast but holds
    *  the synchronized lock on IndexWriter instance. */
   final synchronized void mergeFinish(MergePolicy.OneMerge merge) {
@@ -3942,12 +4189,10 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
 
 //      System.out.println("[" + Thread.currentThread().getName() + "] IW.mergeMiddle: merging " + merge.getMergeReaders());
       
-      // we pass merge.getMergeReaders() instead of merge.readers to allow the
-      // OneMerge to return a view over the actual segments to merge
-      final SegmentMerger merger = new SegmentMerger(merge.getMergeReaders(),
+      final SegmentMerger merger = new SegmentMerger(getMergeReaders(merge),
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap, 
-                                                     context);
+                                                     context, getMergeExecutor(merge.rateLimiter));
 
       merge.rateLimiter.checkAbort();
 
@@ -4499,6 +4744,16 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return closed;
   }
 
+  /** Returns true if indexing threads are currently stalled, waiting for pending flushes to finish. */
+  boolean isStalled() {
+    return docWriter.flushControl.anyStalledThreads();
+  }
+
+  /** Returns the RAM used by the segments that are pending or in the process of flushing. */
+  long getFlushingBytes() {
+    return docWriter.flushControl.flushBytes();
+  }
+
   /** Expert: remove any index files that are no longer
    *  used.
    *
@@ -4614,12 +4869,19 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     
   }
   
-  synchronized void incRefDeleter(SegmentInfos segmentInfos) throws IOException {
+  /** Record that the files referenced by this {@link SegmentInfos} are still in use.
+   *
+   * @lucene.internal */
+  public synchronized void incRefDeleter(SegmentInfos segmentInfos) throws IOException {
     ensureOpen();
     deleter.incRef(segmentInfos, false);
   }
   
-  synchronized void decRefDeleter(SegmentInfos segmentInfos) throws IOException {
+  /** Record that the files referenced by this {@link SegmentInfos} are no longer in use.  Only call this if you are sure you previously
+   *  called {@link #incRefDeleter}.
+   *
+   * @lucene.internal */
+  public synchronized void decRefDeleter(SegmentInfos segmentInfos) throws IOException {
     ensureOpen();
     deleter.decRef(segmentInfos);
   }
@@ -4704,6 +4966,33 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     throw new IllegalArgumentException("number of documents in the index cannot exceed " + actualMaxDocs + " (current document count is " + pendingNumDocs.get() + "; added numDocs is " + addedNumDocs + ")");
   }
 
+  /** Returns the executor that a merge may use to merge its formats and
+   *  fields concurrently, or null if {@link IndexWriterConfig#setMergeExecutor}
+   *  was not set. Threads of the executor see the merge's rate limiter. */
+  private Executor getMergeExecutor(final MergeRateLimiter rateLimiter) {
+    final Executor executor = config.getMergeExecutor();
+    if (executor == null) {
+      return null;
+    }
+    return new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              final MergeRateLimiter previous = rateLimiters.get();
+              rateLimiters.set(rateLimiter);
+              try {
+                command.run();
+              } finally {
+                rateLimiters.set(previous);
+              }
+            }
+          });
+      }
+    };
+  }
+
   /** Wraps the incoming {@link Directory} so that we assign a per-thread
    *  {@link MergeRateLimiter} to all created {@link IndexOutput}s. */
   private Directory addMergeRateLimiters(Directory in) {
@@ -18,11 +18,15 @@ package org.apache.lucene.index;
  */
 
 import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.index.DocumentsWriterPerThread.IndexingChain;
 import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.PrintStreamInfoStream;
@@ -105,6 +109,10 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
   
   /** Default value for whether calls to {@link IndexWriter#close()} include a commit. */
   public final static boolean DEFAULT_COMMIT_ON_CLOSE = true;
+
+  /** Default value for whether documents are analyzed before the indexing
+   *  thread obtains a per-thread indexing buffer (set to <code>false</code>). */
+  public final static boolean DEFAULT_CONCURRENT_ANALYSIS = false;
   
   // indicates whether this config instance is already attached to a writer.
   // not final so that it can be cloned properly.
@@ -477,6 +485,119 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return this;
   }
 
+  /** Set of {@link SortField.Type}s that may be used to sort the index. */
+  private static final EnumSet<SortField.Type> ALLOWED_INDEX_SORT_TYPES = EnumSet.of(SortField.Type.STRING,
+                                                                                     SortField.Type.LONG,
+                                                                                     SortField.Type.INT,
+                                                                                     SortField.Type.DOUBLE,
+                                                                                     SortField.Type.FLOAT);
+
+  /**
+   * Set the {@link Sort} order to use when writing new segments. Documents
+   * of segments that are flushed are sorted according to this sort before
+   * being written, and merges write sorted segments, so that all segments
+   * that are written by this {@link IndexWriter} are sorted. The sort is
+   * recorded in the {@link SegmentInfo#getIndexSort() segment info}, which
+   * allows search-time optimizations such as early termination of sorted
+   * queries. Only sorts on the values of {@link SortField.Type#STRING},
+   * {@link SortField.Type#LONG}, {@link SortField.Type#INT},
+   * {@link SortField.Type#DOUBLE} or {@link SortField.Type#FLOAT} doc values
+   * are supported.
+   * <p>
+   * <b>NOTE</b>: the index sort can not be changed once an index has been
+   * written with it, and documents of a segment will not be in the order in
+   * which they have been added, even for
+   * {@link IndexWriter#addDocuments(Iterable) blocks of documents}.
+   * <p>
+   * <b>NOTE</b>: segments that are flushed in an order that does not match
+   * the index sort are written twice, once as they are and once sorted,
+   * which makes flushing significantly more expensive. Segments whose
+   * documents have been added in the order of the index sort are not
+   * rewritten.
+   * <p>
+   * Only takes effect when IndexWriter is first created.
+   */
+  public IndexWriterConfig setIndexSort(Sort sort) {
+    for (SortField sortField : sort.getSort()) {
+      if (sortField.getClass() != SortField.class || ALLOWED_INDEX_SORT_TYPES.contains(sortField.getType()) == false) {
+        throw new IllegalArgumentException("invalid SortField type: must be one of " + ALLOWED_INDEX_SORT_TYPES + " but got: " + sortField);
+      }
+    }
+    this.indexSort = sort;
+    return this;
+  }
+
+  /**
+   * Set the {@link Executor} that merges use to merge stored fields,
+   * postings, doc values, points, norms and term vectors concurrently, since
+   * each of them is written to its own files. Fields that use different
+   * postings or doc values formats (see
+   * {@link org.apache.lucene.codecs.perfield.PerFieldPostingsFormat} and
+   * {@link org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat}) are
+   * merged concurrently too. The merging thread takes part in the work, and
+   * runs the tasks that the executor did not start yet itself, so a
+   * saturated executor only makes merges less concurrent.
+   * <p>
+   * The default is null, which merges everything on the merging thread.
+   * <p>
+   * <b>NOTE</b>: the merge scheduler still decides how many merges run at
+   * once, and the IO of all threads of a merge is throttled by the same
+   * merge rate limit.
+   */
+  public IndexWriterConfig setMergeExecutor(Executor executor) {
+    this.mergeExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Set the {@link Executor} that resolves buffered delete terms, delete
+   * queries and doc values updates against different segments concurrently.
+   * This happens when an NRT reader is opened, on commit, before a merge
+   * starts and when too many deletes are buffered, always while the
+   * {@link IndexWriter} is locked, so resolving the segments concurrently
+   * shortens how long indexing threads wait on the writer. The thread that
+   * applies the deletes takes part in the work and runs the segments that
+   * the executor did not start yet itself.
+   * <p>
+   * The default is null, which resolves all segments on the thread that
+   * applies the deletes.
+   * <p>
+   * <b>NOTE</b>: doc values updates are still written to the directory one
+   * segment at a time, once all segments are resolved.
+   */
+  public IndexWriterConfig setApplyDeletesExecutor(Executor executor) {
+    this.applyDeletesExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Sets if documents should be analyzed before the indexing thread obtains
+   * one of the per-thread indexing buffers. Each indexing buffer is written
+   * as its own segment, so indexing with many threads flushes many small
+   * segments that must be merged later. Together with a lower
+   * {@link #setMaxThreadStates(int) maxThreadStates}, this lets several
+   * threads share fewer, larger indexing buffers: the threads analyze their
+   * documents concurrently, into a compact copy of the tokens, and only add
+   * the analyzed tokens to the indexing buffer while they hold it. This
+   * works best when analysis is the expensive part of indexing.
+   * <p>
+   * Threads do not share a term dictionary or postings buffer: each
+   * indexing buffer is still used by one thread at a time, so threads that
+   * share a buffer wait for each other while they add their tokens.
+   * Recording the tokens costs about 15% of the throughput of a single
+   * indexing thread.
+   * <p>
+   * The default is {@link #DEFAULT_CONCURRENT_ANALYSIS}.
+   * <p>
+   * <b>NOTE</b>: the tokens of a document are held on heap until the
+   * document is indexed, and an exception during analysis fails the
+   * document before it takes a document ID.
+   */
+  public IndexWriterConfig setConcurrentAnalysis(boolean concurrentAnalysis) {
+    this.concurrentAnalysis = concurrentAnalysis;
+    return this;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder(super.toString());
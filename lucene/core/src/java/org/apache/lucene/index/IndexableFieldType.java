@@ -96,4 +96,14 @@ public interface IndexableFieldType {
    * into docValues.
    */
   public DocValuesType docValuesType();  
+
+  /**
+   * If this is positive, the field is indexed as a point.
+   */
+  public int pointDimensionCount();
+
+  /**
+   * The number of bytes in each dimension's values.
+   */
+  public int pointNumBytes();
 }
@@ -279,6 +279,10 @@ public abstract class LeafReader extends IndexReader {
    *  used by a single thread. */
   public abstract NumericDocValues getNormValues(String field) throws IOException;
 
+  /** Returns the {@link PointValues} used for numeric or
+   *  spatial searches, or null if there are no point fields. */
+  public abstract PointValues getPointValues();
+
   /**
    * Get the {@link FieldInfos} describing all fields in
    * this reader.
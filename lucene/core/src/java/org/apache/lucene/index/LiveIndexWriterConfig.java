@@ -17,12 +17,15 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import java.util.concurrent.Executor;
+
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.index.DocumentsWriterPerThread.IndexingChain;
 import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.util.InfoStream;
 
@@ -94,6 +97,22 @@ public class LiveIndexWriterConfig {
   /** True if calls to {@link IndexWriter#close()} should first do a commit. */
   protected boolean commitOnClose = IndexWriterConfig.DEFAULT_COMMIT_ON_CLOSE;
 
+  /** The sort order to use to write new segments, or null if segments are
+   *  not sorted. */
+  protected Sort indexSort = null;
+
+  /** Executor that merges may use to merge formats and fields concurrently,
+   *  or null if each merge runs on a single thread. */
+  protected volatile Executor mergeExecutor = null;
+
+  /** Executor that may resolve buffered deletes and updates of different
+   *  segments concurrently, or null if they are resolved on a single thread. */
+  protected volatile Executor applyDeletesExecutor = null;
+
+  /** True if documents should be analyzed before the indexing thread
+   *  obtains a {@link DocumentsWriterPerThread}. */
+  protected volatile boolean concurrentAnalysis = IndexWriterConfig.DEFAULT_CONCURRENT_ANALYSIS;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -454,6 +473,45 @@ public class LiveIndexWriterConfig {
     return commitOnClose;
   }
 
+  /**
+   * Returns the sort order of documents in segments that are written by
+   * {@link IndexWriter}, or null if segments are not sorted.
+   */
+  public Sort getIndexSort() {
+    return indexSort;
+  }
+
+  /**
+   * Returns the {@link Executor} that merges use to merge different formats
+   * and fields concurrently, or null if each merge runs on a single thread.
+   *
+   * @see IndexWriterConfig#setMergeExecutor(Executor)
+   */
+  public Executor getMergeExecutor() {
+    return mergeExecutor;
+  }
+
+  /**
+   * Returns the {@link Executor} that resolves buffered deletes and doc
+   * values updates of different segments concurrently, or null if they are
+   * resolved on a single thread.
+   *
+   * @see IndexWriterConfig#setApplyDeletesExecutor(Executor)
+   */
+  public Executor getApplyDeletesExecutor() {
+    return applyDeletesExecutor;
+  }
+
+  /**
+   * Returns <code>true</code> if documents are analyzed before the indexing
+   * thread obtains one of the per-thread indexing buffers.
+   *
+   * @see IndexWriterConfig#setConcurrentAnalysis(boolean)
+   */
+  public boolean getConcurrentAnalysis() {
+    return concurrentAnalysis;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -476,6 +534,10 @@ public class LiveIndexWriterConfig {
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
+    sb.append("indexSort=").append(getIndexSort()).append("\n");
+    sb.append("mergeExecutor=").append(getMergeExecutor()).append("\n");
+    sb.append("applyDeletesExecutor=").append(getApplyDeletesExecutor()).append("\n");
+    sb.append("concurrentAnalysis=").append(getConcurrentAnalysis()).append("\n");
     return sb.toString();
   }
 }
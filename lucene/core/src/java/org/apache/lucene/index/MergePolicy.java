@@ -105,6 +105,8 @@ public abstract class MergePolicy {
     volatile long totalMergeBytes;
 
     List<SegmentReader> readers;        // used by IndexWriter
+    List<CodecReader> indexSortReaders; // used by IndexWriter, non-null if the merged segment is sorted by the index sort
+    Sorter.DocMap indexSortMap;         // used by IndexWriter, null if the readers were already sorted
 
     /** Segments to be merged. */
     public final List<SegmentCommitInfo> segments;
@@ -145,7 +147,11 @@ public abstract class MergePolicy {
      *  to feed SegmentMerger to initialize a merge. When a {@link OneMerge}
      *  reorders doc IDs, it must override {@link #getDocMap} too so that
      *  deletes that happened during the merge can be applied to the newly
-     *  merged segment. */
+     *  merged segment. If {@link IndexWriterConfig#setIndexSort an index sort}
+     *  is configured, the returned readers are sorted with it, and merges of
+     *  {@link OneMerge}s that override {@link #getDocMap} fail with an
+     *  {@link IllegalStateException}, since the index sort then defines the
+     *  order of documents. */
     public List<CodecReader> getMergeReaders() throws IOException {
       if (readers == null) {
         throw new IllegalStateException("IndexWriter has not initialized readers from the segment infos yet");
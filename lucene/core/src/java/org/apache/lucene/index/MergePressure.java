@@ -0,0 +1,116 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/** A signal that tells {@link ConcurrentMergeScheduler} how much
+ *  merges should currently back off, so that they compete less with
+ *  indexing or searching for IO and CPU.
+ *
+ *  <p>The pressure is a value between {@code 0.0}, meaning that merges
+ *  run as they normally would, and {@code 1.0}, meaning that merges
+ *  should use as few resources as possible.  The scheduler samples it
+ *  whenever merges start or finish, and whenever the signal reports a
+ *  change through {@link #pressureChanged}.</p>
+ *
+ *  @see ConcurrentMergeScheduler#setMergePressure
+ *  @see FlushMergePressure
+ *  @see SearchLatencyMergePressure
+ *  @lucene.experimental */
+public abstract class MergePressure {
+
+  private final List<ConcurrentMergeScheduler> schedulers = new CopyOnWriteArrayList<>();
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected MergePressure() {
+  }
+
+  /** Returns the current pressure on merges of the given
+   *  writer, between {@code 0.0} and {@code 1.0}. */
+  public abstract double getPressure(IndexWriter writer);
+
+  /** Subclasses call this when the pressure changed outside of
+   *  {@link #getPressure}, so that schedulers using this signal
+   *  can adjust their running merges right away. */
+  protected final void pressureChanged() {
+    for (ConcurrentMergeScheduler scheduler : schedulers) {
+      scheduler.pressureChanged();
+    }
+  }
+
+  /** Called by the writer when a segment starts or finishes
+   *  flushing, outside of its locks. */
+  void flushingBytesChanged(IndexWriter writer) {
+  }
+
+  void addScheduler(ConcurrentMergeScheduler scheduler) {
+    schedulers.add(scheduler);
+  }
+
+  void removeScheduler(ConcurrentMergeScheduler scheduler) {
+    schedulers.remove(scheduler);
+  }
+
+  /** Returns a {@code MergePressure} whose pressure is the highest
+   *  pressure of the given signals. */
+  public static MergePressure max(final MergePressure... signals) {
+    if (signals.length == 0) {
+      throw new IllegalArgumentException("signals must not be empty");
+    }
+    return new MergePressure() {
+      @Override
+      public double getPressure(IndexWriter writer) {
+        double pressure = 0.0;
+        for (MergePressure signal : signals) {
+          pressure = Math.max(pressure, signal.getPressure(writer));
+        }
+        return pressure;
+      }
+
+      @Override
+      void flushingBytesChanged(IndexWriter writer) {
+        for (MergePressure signal : signals) {
+          signal.flushingBytesChanged(writer);
+        }
+      }
+
+      @Override
+      void addScheduler(ConcurrentMergeScheduler scheduler) {
+        for (MergePressure signal : signals) {
+          signal.addScheduler(scheduler);
+        }
+      }
+
+      @Override
+      void removeScheduler(ConcurrentMergeScheduler scheduler) {
+        for (MergePressure signal : signals) {
+          signal.removeScheduler(scheduler);
+        }
+      }
+
+      @Override
+      public String toString() {
+        return "max" + Arrays.toString(signals);
+      }
+    };
+  }
+}
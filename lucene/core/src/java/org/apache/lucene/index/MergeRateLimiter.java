@@ -65,7 +65,7 @@ public class MergeRateLimiter extends RateLimiter {
     // NOTE: Double.POSITIVE_INFINITY casts to Long.MAX_VALUE
     minPauseCheckBytes = Math.min(1024*1024, (long) ((MIN_PAUSE_CHECK_MSEC / 1000.0) * mbPerSec * 1024 * 1024));
     assert minPauseCheckBytes >= 0;
-    notify();
+    notifyAll();
   }
 
   @Override
@@ -81,7 +81,10 @@ public class MergeRateLimiter extends RateLimiter {
   @Override
   public long pause(long bytes) throws MergePolicy.MergeAbortedException {
 
-    totalBytesWritten += bytes;
+    // All threads of a merge share its rate limiter, see IndexWriterConfig.setMergeExecutor
+    synchronized (this) {
+      totalBytesWritten += bytes;
+    }
 
     long startNS = System.nanoTime();
     long curNS = startNS;
@@ -95,7 +98,9 @@ public class MergeRateLimiter extends RateLimiter {
       if (result == PauseResult.NO) {
         // Set to curNS, not targetNS, to enforce the instant rate, not
         // the "averaaged over all history" rate:
-        lastNS = curNS;
+        synchronized (this) {
+          lastNS = curNS;
+        }
         break;
       }
       curNS = System.nanoTime();
@@ -103,11 +108,13 @@ public class MergeRateLimiter extends RateLimiter {
       startNS = curNS;
 
       // Separately track when merge was stopped vs rate limited:
-      if (result == PauseResult.STOPPED) {
-        totalStoppedNS += ns;
-      } else {
-        assert result == PauseResult.PAUSED;
-        totalPausedNS += ns;
+      synchronized (this) {
+        if (result == PauseResult.STOPPED) {
+          totalStoppedNS += ns;
+        } else {
+          assert result == PauseResult.PAUSED;
+          totalPausedNS += ns;
+        }
       }
       pausedNS += ns;
     }
@@ -182,7 +189,7 @@ public class MergeRateLimiter extends RateLimiter {
   /** Mark this merge aborted. */
   public synchronized void setAbort() {
     abort = true;
-    notify();
+    notifyAll();
   }
 
   /** Returns true if this merge was aborted. */
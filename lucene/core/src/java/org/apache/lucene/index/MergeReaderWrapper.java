@@ -22,6 +22,7 @@ import java.io.IOException;
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.util.Bits;
@@ -34,6 +35,7 @@ class MergeReaderWrapper extends LeafReader {
   final DocValuesProducer docValues;
   final StoredFieldsReader store;
   final TermVectorsReader vectors;
+  final PointsReader points;
   
   MergeReaderWrapper(SegmentReader in) throws IOException {
     this.in = in;
@@ -67,6 +69,12 @@ class MergeReaderWrapper extends LeafReader {
       vectors = vectors.getMergeInstance();
     }
     this.vectors = vectors;
+
+    PointsReader points = in.getPointsReader();
+    if (points != null) {
+      points = points.getMergeInstance();
+    }
+    this.points = points;
   }
 
   @Override
@@ -185,6 +193,12 @@ class MergeReaderWrapper extends LeafReader {
     return norms.getNorms(fi);
   }
 
+  @Override
+  public PointValues getPointValues() {
+    ensureOpen();
+    return points;
+  }
+
   @Override
   public FieldInfos getFieldInfos() {
     return in.getFieldInfos();
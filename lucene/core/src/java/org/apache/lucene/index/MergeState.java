@@ -18,15 +18,24 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.packed.PackedInts;
 import org.apache.lucene.util.packed.PackedLongValues;
 
@@ -53,6 +62,9 @@ public class MergeState {
   /** DocValues producers being merged */
   public final DocValuesProducer[] docValuesProducers;
 
+  /** Point readers to merge */
+  public final PointsReader[] pointsReaders;
+
   /** FieldInfos being merged */
   public final FieldInfos[] fieldInfos;
 
@@ -74,8 +86,13 @@ public class MergeState {
   /** InfoStream for debugging messages. */
   public final InfoStream infoStream;
 
+  /** Executor to run independent parts of this merge concurrently, or null
+   *  if the whole merge runs on the merging thread.
+   *  @see #runConcurrently */
+  public final Executor executor;
+
   /** Sole constructor. */
-  MergeState(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream) throws IOException {
+  MergeState(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Executor executor) throws IOException {
 
     int numReaders = readers.size();
     docMaps = new DocMap[numReaders];
@@ -86,6 +103,7 @@ public class MergeState {
     storedFieldsReaders = new StoredFieldsReader[numReaders];
     termVectorsReaders = new TermVectorsReader[numReaders];
     docValuesProducers = new DocValuesProducer[numReaders];
+    pointsReaders = new PointsReader[numReaders];
     fieldInfos = new FieldInfos[numReaders];
     liveDocs = new Bits[numReaders];
 
@@ -117,14 +135,94 @@ public class MergeState {
       }
       
       fieldsProducers[i] = reader.getPostingsReader().getMergeInstance();
+
+      pointsReaders[i] = reader.getPointsReader();
+      if (pointsReaders[i] != null) {
+        pointsReaders[i] = pointsReaders[i].getMergeInstance();
+      }
     }
 
     this.segmentInfo = segmentInfo;
     this.infoStream = infoStream;
+    this.executor = executor;
 
     setDocMaps(readers);
   }
 
+  /** Runs the given tasks and waits for all of them to complete. Tasks are
+   *  run concurrently on the {@link #executor} if there is one; tasks that
+   *  the executor did not start yet are run on the calling thread, so that
+   *  tasks may themselves call this method without risking a deadlock.
+   *  <p>
+   *  Tasks must not share any writer, and may only read the producers of
+   *  this merge state concurrently if they read different fields or
+   *  different formats. If a task fails, tasks that did not start yet are
+   *  skipped, and the first exception is rethrown once running tasks are
+   *  done.
+   *
+   *  @lucene.internal */
+  public void runConcurrently(List<? extends Callable<?>> tasks) throws IOException {
+    runConcurrently(executor, tasks);
+  }
+
+  static void runConcurrently(Executor executor, List<? extends Callable<?>> tasks) throws IOException {
+    final List<FutureTask<Object>> futures = new ArrayList<>(tasks.size());
+    final boolean[] failed = new boolean[1];
+    for (final Callable<?> task : tasks) {
+      futures.add(new FutureTask<>(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            synchronized (failed) {
+              if (failed[0]) {
+                return null;
+              }
+            }
+            boolean success = false;
+            try {
+              Object result = task.call();
+              success = true;
+              return result;
+            } finally {
+              if (success == false) {
+                synchronized (failed) {
+                  failed[0] = true;
+                }
+              }
+            }
+          }
+        }));
+    }
+
+    if (executor != null) {
+      // The calling thread runs the first task itself:
+      for (int i = 1; i < futures.size(); i++) {
+        try {
+          executor.execute(futures.get(i));
+        } catch (RejectedExecutionException ree) {
+          // the calling thread runs this task below
+        }
+      }
+    }
+
+    Throwable th = null;
+    for (FutureTask<Object> future : futures) {
+      // no-op if the executor already started this task:
+      future.run();
+      try {
+        future.get();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        if (th == null) {
+          th = ee.getCause();
+        } else {
+          th.addSuppressed(ee.getCause());
+        }
+      }
+    }
+    IOUtils.reThrow(th);
+  }
+
   // NOTE: removes any "all deleted" readers from mergeState.readers
   private void setDocMaps(List<CodecReader> readers) throws IOException {
     final int numReaders = maxDocs.length;
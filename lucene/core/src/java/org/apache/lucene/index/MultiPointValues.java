@@ -0,0 +1,224 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.bkd.BKDUtil;
+
+/**
+ * Merges multiple {@link PointValues} into a single one, remapping each
+ * leaf's docIDs by its docBase.
+ *
+ * <p><b>NOTE</b>: for multi readers, you'll get better
+ * performance by gathering the sub readers using
+ * {@link IndexReader#getContext()} to get the
+ * atomic leaves and then operate per-LeafReader,
+ * instead of using this class.
+ *
+ * @lucene.internal
+ */
+public class MultiPointValues extends PointValues {
+
+  private final List<PointValues> subs;
+  private final List<FieldInfos> fieldInfos;
+  private final List<Integer> docBases;
+
+  private MultiPointValues(List<PointValues> subs, List<FieldInfos> fieldInfos, List<Integer> docBases) {
+    this.subs = subs;
+    this.fieldInfos = fieldInfos;
+    this.docBases = docBases;
+  }
+
+  /** Returns true if the sub at the provided index indexed points for this field */
+  private boolean hasPoints(int sub, String fieldName) {
+    FieldInfo fieldInfo = fieldInfos.get(sub).fieldInfo(fieldName);
+    return fieldInfo != null && fieldInfo.getPointDimensionCount() != 0;
+  }
+
+  /** Returns a {@link PointValues} merging all point values from the provided reader, or null if
+   *  no leaf has points. */
+  public static PointValues get(IndexReader r) {
+    final List<LeafReaderContext> leaves = r.leaves();
+    final int size = leaves.size();
+    if (size == 0) {
+      return null;
+    } else if (size == 1) {
+      return leaves.get(0).reader().getPointValues();
+    }
+
+    List<PointValues> values = new ArrayList<>();
+    List<FieldInfos> fieldInfos = new ArrayList<>();
+    List<Integer> docBases = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      LeafReaderContext context = leaves.get(i);
+      PointValues v = context.reader().getPointValues();
+      if (v != null) {
+        values.add(v);
+        fieldInfos.add(context.reader().getFieldInfos());
+        docBases.add(context.docBase);
+      }
+    }
+
+    if (values.isEmpty()) {
+      return null;
+    }
+
+    return new MultiPointValues(values, fieldInfos, docBases);
+  }
+
+  /** Finds all documents and points matching the provided visitor */
+  @Override
+  public void intersect(String fieldName, final IntersectVisitor visitor) throws IOException {
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName) == false) {
+        continue;
+      }
+      final int docBase = docBases.get(i);
+      subs.get(i).intersect(fieldName,
+                        new IntersectVisitor() {
+                          @Override
+                          public void visit(int docID) throws IOException {
+                            visitor.visit(docBase + docID);
+                          }
+
+                          @Override
+                          public void visit(int docID, byte[] packedValue) throws IOException {
+                            visitor.visit(docBase + docID, packedValue);
+                          }
+
+                          @Override
+                          public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                            return visitor.compare(minPackedValue, maxPackedValue);
+                          }
+                        });
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder b = new StringBuilder();
+    b.append("MultiPointValues(");
+    for(int i=0;i<subs.size();i++) {
+      if (i > 0) {
+        b.append(", ");
+      }
+      b.append("docBase=");
+      b.append(docBases.get(i));
+      b.append(" sub=" + subs.get(i));
+    }
+    b.append(')');
+    return b.toString();
+  }
+
+  @Override
+  public byte[] getMinPackedValue(String fieldName) throws IOException {
+    byte[] result = null;
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName) == false) {
+        continue;
+      }
+      byte[] minPackedValue = subs.get(i).getMinPackedValue(fieldName);
+      if (result == null) {
+        if (minPackedValue != null) {
+          result = minPackedValue.clone();
+        }
+      } else if (minPackedValue != null) {
+        int numDims = subs.get(i).getNumDimensions(fieldName);
+        int bytesPerDim = subs.get(i).getBytesPerDimension(fieldName);
+        for(int dim=0;dim<numDims;dim++) {
+          if (BKDUtil.compare(bytesPerDim, minPackedValue, dim, result, dim) < 0) {
+            System.arraycopy(minPackedValue, dim*bytesPerDim, result, dim*bytesPerDim, bytesPerDim);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public byte[] getMaxPackedValue(String fieldName) throws IOException {
+    byte[] result = null;
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName) == false) {
+        continue;
+      }
+      byte[] maxPackedValue = subs.get(i).getMaxPackedValue(fieldName);
+      if (result == null) {
+        if (maxPackedValue != null) {
+          result = maxPackedValue.clone();
+        }
+      } else if (maxPackedValue != null) {
+        int numDims = subs.get(i).getNumDimensions(fieldName);
+        int bytesPerDim = subs.get(i).getBytesPerDimension(fieldName);
+        for(int dim=0;dim<numDims;dim++) {
+          if (BKDUtil.compare(bytesPerDim, maxPackedValue, dim, result, dim) > 0) {
+            System.arraycopy(maxPackedValue, dim*bytesPerDim, result, dim*bytesPerDim, bytesPerDim);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public int getNumDimensions(String fieldName) throws IOException {
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName)) {
+        return subs.get(i).getNumDimensions(fieldName);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public int getBytesPerDimension(String fieldName) throws IOException {
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName)) {
+        return subs.get(i).getBytesPerDimension(fieldName);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public long size(String fieldName) {
+    long totalSize = 0;
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName)) {
+        totalSize += subs.get(i).size(fieldName);
+      }
+    }
+    return totalSize;
+  }
+
+  @Override
+  public int getDocCount(String fieldName) {
+    int totalDocCount = 0;
+    for(int i=0;i<subs.size();i++) {
+      if (hasPoints(i, fieldName)) {
+        totalDocCount += subs.get(i).getDocCount(fieldName);
+      }
+    }
+    return totalDocCount;
+  }
+}
@@ -32,4 +32,22 @@ public abstract class NumericDocValues {
    * @return numeric value
    */
   public abstract long get(int docID);
+
+  /**
+   * Fills {@code values} with the values of the first {@code count} documents
+   * of {@code docIDs}, so that {@code values[i] == get(docIDs[i])}. Doc IDs
+   * may come in any order, but implementations are typically faster when
+   * they are increasing, as returned by a {@link org.apache.lucene.search.DocIdSetIterator}.
+   * <p>
+   * The default implementation calls {@link #get(int)} for every document,
+   * sub-classes should override it when values can be decoded in bulk.
+   * @param docIDs document IDs to lookup
+   * @param values array to store the values in
+   * @param count number of documents to lookup
+   */
+  public void get(int[] docIDs, long[] values, int count) {
+    for (int i = 0; i < count; ++i) {
+      values[i] = get(docIDs[i]);
+    }
+  }
 }
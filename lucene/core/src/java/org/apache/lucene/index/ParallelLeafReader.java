@@ -314,6 +314,72 @@ public class ParallelLeafReader extends LeafReader {
     return values;
   }
 
+  @Override
+  public PointValues getPointValues() {
+    ensureOpen();
+    return new PointValues() {
+      @Override
+      public void intersect(String fieldName, IntersectVisitor visitor) throws IOException {
+        PointValues dimValues = getPointValues(fieldName);
+        if (dimValues == null) {
+          // this field has no points, so there's nothing to visit
+          return;
+        }
+        dimValues.intersect(fieldName, visitor);
+      }
+
+      @Override
+      public byte[] getMinPackedValue(String fieldName) throws IOException {
+        PointValues dimValues = getPointValues(fieldName);
+        return dimValues == null ? null : dimValues.getMinPackedValue(fieldName);
+      }
+
+      @Override
+      public byte[] getMaxPackedValue(String fieldName) throws IOException {
+        PointValues dimValues = getPointValues(fieldName);
+        return dimValues == null ? null : dimValues.getMaxPackedValue(fieldName);
+      }
+
+      @Override
+      public int getNumDimensions(String fieldName) throws IOException {
+        PointValues dimValues = getPointValues(fieldName);
+        return dimValues == null ? 0 : dimValues.getNumDimensions(fieldName);
+      }
+
+      @Override
+      public int getBytesPerDimension(String fieldName) throws IOException {
+        PointValues dimValues = getPointValues(fieldName);
+        return dimValues == null ? 0 : dimValues.getBytesPerDimension(fieldName);
+      }
+
+      @Override
+      public long size(String fieldName) {
+        PointValues dimValues = getPointValues(fieldName);
+        return dimValues == null ? 0 : dimValues.size(fieldName);
+      }
+
+      @Override
+      public int getDocCount(String fieldName) {
+        PointValues dimValues = getPointValues(fieldName);
+        return dimValues == null ? 0 : dimValues.getDocCount(fieldName);
+      }
+    };
+  }
+
+  /** Returns the {@link PointValues} of the reader owning this field, or null if
+   *  that reader did not index points for it */
+  private PointValues getPointValues(String fieldName) {
+    LeafReader reader = fieldToReader.get(fieldName);
+    if (reader == null) {
+      return null;
+    }
+    FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(fieldName);
+    if (fieldInfo == null || fieldInfo.getPointDimensionCount() == 0) {
+      return null;
+    }
+    return reader.getPointValues();
+  }
+
   @Override
   public void checkIntegrity() throws IOException {
     ensureOpen();
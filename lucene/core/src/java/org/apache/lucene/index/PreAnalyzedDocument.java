@@ -0,0 +1,282 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeFactory;
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+/**
+ * An {@link IndexDocument} whose tokenized fields were analyzed up-front,
+ * so that the expensive part of inverting a document can run before the
+ * indexing thread obtains a {@link DocumentsWriterPerThread}. The tokens
+ * are recorded with only the attributes that the indexing chain consumes:
+ * term bytes, position increments, offsets and payloads.
+ * <p>
+ * Instances are reused per indexing thread, with their token buffers.
+ *
+ * @see IndexWriterConfig#setConcurrentAnalysis(boolean)
+ */
+final class PreAnalyzedDocument implements IndexDocument {
+
+  private IndexDocument in;
+  private final List<IndexableField> indexableFields = new ArrayList<>();
+  private final List<PreAnalyzedField> preAnalyzedFields = new ArrayList<>();
+
+  /** Analyzes all indexed and tokenized fields of the given document,
+   *  reusing the fields and token buffers of the previous document. */
+  void analyze(IndexDocument doc, Analyzer analyzer) throws IOException {
+    clear();
+    int upto = 0;
+    for (IndexableField field : doc.indexableFields()) {
+      final IndexableFieldType fieldType = field.fieldType();
+      if (fieldType.indexOptions() != IndexOptions.NONE && fieldType.tokenized()) {
+        if (upto == preAnalyzedFields.size()) {
+          preAnalyzedFields.add(new PreAnalyzedField());
+        }
+        final PreAnalyzedField preAnalyzedField = preAnalyzedFields.get(upto++);
+        // the stream is consumed and closed before the next field asks the
+        // analyzer for its (reused) components:
+        preAnalyzedField.analyze(field, analyzer);
+        indexableFields.add(preAnalyzedField);
+      } else {
+        indexableFields.add(field);
+      }
+    }
+    in = doc;
+  }
+
+  /** Releases the original document once it is indexed. */
+  void clear() {
+    in = null;
+    indexableFields.clear();
+    for (PreAnalyzedField field : preAnalyzedFields) {
+      field.in = null;
+    }
+  }
+
+  /** Analyzes the given documents into the first documents of {@code reuse},
+   *  which grows as needed, and returns these. */
+  static List<PreAnalyzedDocument> analyze(List<PreAnalyzedDocument> reuse,
+      Iterable<? extends IndexDocument> docs, Analyzer analyzer) throws IOException {
+    int upto = 0;
+    for (IndexDocument doc : docs) {
+      if (upto == reuse.size()) {
+        reuse.add(new PreAnalyzedDocument());
+      }
+      reuse.get(upto++).analyze(doc, analyzer);
+    }
+    return reuse.subList(0, upto);
+  }
+
+  @Override
+  public Iterable<? extends IndexableField> indexableFields() {
+    return indexableFields;
+  }
+
+  @Override
+  public Iterable<? extends StorableField> storableFields() {
+    return in.storableFields();
+  }
+
+  /** Delegates to the original field, but returns the recorded tokens. */
+  private static final class PreAnalyzedField implements IndexableField {
+    IndexableField in;
+    private final RecordedTokenStream tokens = new RecordedTokenStream();
+
+    void analyze(IndexableField field, Analyzer analyzer) throws IOException {
+      in = null;
+      tokens.record(field.tokenStream(analyzer, null));
+      in = field;
+    }
+
+    @Override
+    public String name() {
+      return in.name();
+    }
+
+    @Override
+    public IndexableFieldType fieldType() {
+      return in.fieldType();
+    }
+
+    @Override
+    public float boost() {
+      return in.boost();
+    }
+
+    @Override
+    public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse) {
+      return tokens;
+    }
+  }
+
+  /** Replays the recorded tokens of another {@link TokenStream}. */
+  static final class RecordedTokenStream extends TokenStream {
+
+    // per token: end of its term bytes, end of its payload bytes, position increment, start and end offset
+    private static final int INTS_PER_TOKEN = 5;
+
+    private final RecordedTermAttributeImpl termAtt = new RecordedTermAttributeImpl();
+    private final PositionIncrementAttribute posIncrAtt;
+    private final OffsetAttribute offsetAtt;
+    // a null payload is indexed the same way as no payload attribute:
+    private final PayloadAttribute payloadAtt;
+
+    private final BytesRefBuilder termBytes = new BytesRefBuilder();
+    private final BytesRefBuilder payloadBytes = new BytesRefBuilder();
+    private int[] tokens = new int[8 * INTS_PER_TOKEN];
+    private int numTokens;
+    private int finalPosIncr, finalStartOffset, finalEndOffset;
+
+    private final BytesRef payload = new BytesRef();
+    private int upto;
+
+    RecordedTokenStream() {
+      super(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY);
+      addAttributeImpl(termAtt);
+      posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+      offsetAtt = addAttribute(OffsetAttribute.class);
+      payloadAtt = addAttribute(PayloadAttribute.class);
+    }
+
+    /** Consumes and closes the given stream, and records its tokens in place of the previous ones. */
+    void record(TokenStream in) throws IOException {
+      numTokens = 0;
+      termBytes.clear();
+      payloadBytes.clear();
+      try (TokenStream stream = in) {
+        stream.reset();
+        // same attributes as FieldInvertState:
+        final TermToBytesRefAttribute inTermAtt = stream.getAttribute(TermToBytesRefAttribute.class);
+        final PositionIncrementAttribute inPosIncrAtt = stream.addAttribute(PositionIncrementAttribute.class);
+        final OffsetAttribute inOffsetAtt = stream.addAttribute(OffsetAttribute.class);
+        final PayloadAttribute inPayloadAtt = stream.getAttribute(PayloadAttribute.class);
+        if (inTermAtt == null) {
+          throw new IllegalArgumentException("the TokenStream has no TermToBytesRefAttribute: " + stream);
+        }
+        final BytesRef inTerm = inTermAtt.getBytesRef();
+        while (stream.incrementToken()) {
+          inTermAtt.fillBytesRef();
+          termBytes.append(inTerm);
+          if (inPayloadAtt != null) {
+            final BytesRef inPayload = inPayloadAtt.getPayload();
+            if (inPayload != null) {
+              payloadBytes.append(inPayload);
+            }
+          }
+          tokens = ArrayUtil.grow(tokens, (numTokens + 1) * INTS_PER_TOKEN);
+          final int base = numTokens * INTS_PER_TOKEN;
+          tokens[base] = termBytes.length();
+          tokens[base + 1] = payloadBytes.length();
+          tokens[base + 2] = inPosIncrAtt.getPositionIncrement();
+          tokens[base + 3] = inOffsetAtt.startOffset();
+          tokens[base + 4] = inOffsetAtt.endOffset();
+          numTokens++;
+        }
+        stream.end();
+        finalPosIncr = inPosIncrAtt.getPositionIncrement();
+        finalStartOffset = inOffsetAtt.startOffset();
+        finalEndOffset = inOffsetAtt.endOffset();
+      }
+      termAtt.bytes.bytes = termBytes.bytes();
+      payload.bytes = payloadBytes.bytes();
+      upto = 0;
+    }
+
+    @Override
+    public boolean incrementToken() {
+      if (upto == numTokens) {
+        return false;
+      }
+      clearAttributes();
+      final int base = upto * INTS_PER_TOKEN;
+      final BytesRef term = termAtt.bytes;
+      term.offset = upto == 0 ? 0 : tokens[base - INTS_PER_TOKEN];
+      term.length = tokens[base] - term.offset;
+      payload.offset = upto == 0 ? 0 : tokens[base - INTS_PER_TOKEN + 1];
+      payload.length = tokens[base + 1] - payload.offset;
+      if (payload.length > 0) {
+        payloadAtt.setPayload(payload);
+      }
+      posIncrAtt.setPositionIncrement(tokens[base + 2]);
+      offsetAtt.setOffset(tokens[base + 3], tokens[base + 4]);
+      upto++;
+      return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+      super.end();
+      posIncrAtt.setPositionIncrement(finalPosIncr);
+      offsetAtt.setOffset(finalStartOffset, finalEndOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+      super.reset();
+      upto = 0;
+    }
+  }
+
+  /** Exposes a slice of the recorded term bytes, without copying them. */
+  private static final class RecordedTermAttributeImpl extends AttributeImpl implements TermToBytesRefAttribute {
+    private final BytesRef bytes = new BytesRef();
+
+    @Override
+    public void fillBytesRef() {
+      // the bytes are set by RecordedTokenStream.incrementToken
+    }
+
+    @Override
+    public BytesRef getBytesRef() {
+      return bytes;
+    }
+
+    @Override
+    public void clear() {
+      bytes.length = 0;
+    }
+
+    @Override
+    public void copyTo(AttributeImpl target) {
+      final RecordedTermAttributeImpl other = (RecordedTermAttributeImpl) target;
+      other.bytes.bytes = bytes.bytes;
+      other.bytes.offset = bytes.offset;
+      other.bytes.length = bytes.length;
+    }
+
+    @Override
+    public void reflectWith(AttributeReflector reflector) {
+      reflector.reflect(TermToBytesRefAttribute.class, "bytes", BytesRef.deepCopyOf(bytes));
+    }
+  }
+}
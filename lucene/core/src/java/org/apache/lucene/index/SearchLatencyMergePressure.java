@@ -0,0 +1,95 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** A {@link MergePressure} that rises with the search latency that
+ *  the application reports, e.g. the 99th percentile of its recent
+ *  queries.
+ *
+ *  <p>There is no pressure while the reported latency is at or below
+ *  the target latency, and the pressure grows linearly up to {@code 1.0}
+ *  at the max latency.  Running merges are adjusted as soon as a
+ *  reported latency changes the pressure noticeably.</p>
+ *
+ *  @lucene.experimental */
+public class SearchLatencyMergePressure extends MergePressure {
+
+  /** Pressure changes smaller than this do not notify the schedulers. */
+  private static final double MIN_PRESSURE_CHANGE = 0.05;
+
+  private final double targetMillis;
+  private final double maxMillis;
+  private volatile double latencyMillis;
+  private double notifiedPressure;
+
+  /** Creates a new instance.
+   *
+   * @param targetMillis the latency up to which merges are not held back
+   * @param maxMillis the latency at which merges are held back as much as possible */
+  public SearchLatencyMergePressure(double targetMillis, double maxMillis) {
+    if (targetMillis < 0) {
+      throw new IllegalArgumentException("targetMillis must be >= 0 (got: " + targetMillis + ")");
+    }
+    if (maxMillis <= targetMillis) {
+      throw new IllegalArgumentException("maxMillis must be > targetMillis (got: maxMillis=" + maxMillis + ", targetMillis=" + targetMillis + ")");
+    }
+    this.targetMillis = targetMillis;
+    this.maxMillis = maxMillis;
+  }
+
+  /** Reports the current search latency, in milliseconds. */
+  public void reportLatency(double millis) {
+    latencyMillis = millis;
+    final double pressure = getPressure();
+    final boolean changed;
+    synchronized (this) {
+      changed = Math.abs(pressure - notifiedPressure) >= MIN_PRESSURE_CHANGE
+          || (pressure != notifiedPressure && (pressure == 0.0 || pressure == 1.0));
+      if (changed) {
+        notifiedPressure = pressure;
+      }
+    }
+    if (changed) {
+      pressureChanged();
+    }
+  }
+
+  /** Returns the last reported search latency, in milliseconds. */
+  public double getLatency() {
+    return latencyMillis;
+  }
+
+  /** Returns the pressure for the last reported search latency. */
+  public double getPressure() {
+    final double millis = latencyMillis;
+    if (millis <= targetMillis) {
+      return 0.0;
+    }
+    return Math.min(1.0, (millis - targetMillis) / (maxMillis - targetMillis));
+  }
+
+  @Override
+  public double getPressure(IndexWriter writer) {
+    return getPressure();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(targetMillis=" + targetMillis + ", maxMillis=" + maxMillis + ")";
+  }
+}
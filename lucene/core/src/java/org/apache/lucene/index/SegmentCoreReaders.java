@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
@@ -50,6 +51,7 @@ final class SegmentCoreReaders {
   
   final FieldsProducer fields;
   final NormsProducer normsProducer;
+  final PointsReader pointsReader;
 
   final StoredFieldsReader fieldsReaderOrig;
   final TermVectorsReader termVectorsReaderOrig;
@@ -122,6 +124,12 @@ final class SegmentCoreReaders {
         termVectorsReaderOrig = null;
       }
 
+      if (coreFieldInfos.hasPointValues()) {
+        pointsReader = codec.pointsFormat().fieldsReader(segmentReadState);
+      } else {
+        pointsReader = null;
+      }
+
       success = true;
     } finally {
       if (!success) {
@@ -150,7 +158,7 @@ final class SegmentCoreReaders {
       Throwable th = null;
       try {
         IOUtils.close(termVectorsLocal, fieldsReaderLocal, fields, termVectorsReaderOrig, fieldsReaderOrig,
-            cfsReader, normsProducer);
+            cfsReader, normsProducer, pointsReader);
       } catch (Throwable throwable) {
         th = throwable;
       } finally {
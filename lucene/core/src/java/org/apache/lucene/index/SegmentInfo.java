@@ -27,6 +27,7 @@ import java.util.Set;
 import java.util.regex.Matcher;
 
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.TrackingDirectoryWrapper;
 import org.apache.lucene.util.StringHelper;
@@ -68,6 +69,8 @@ public final class SegmentInfo {
   
   private final Map<String,String> attributes;
 
+  private final Sort indexSort;
+
   // Tracks the Lucene version this segment was created with, since 3.1. Null
   // indicates an older than 3.0 index, and it's used to detect a too old index.
   // The format expected is "x.y" - "2.x" for pre-3.0 indexes (or null), and
@@ -92,7 +95,7 @@ public final class SegmentInfo {
    */
   public SegmentInfo(Directory dir, Version version, String name, int maxDoc,
                      boolean isCompoundFile, Codec codec, Map<String,String> diagnostics,
-                     byte[] id, Map<String,String> attributes) {
+                     byte[] id, Map<String,String> attributes, Sort indexSort) {
     assert !(dir instanceof TrackingDirectoryWrapper);
     this.dir = Objects.requireNonNull(dir);
     this.version = Objects.requireNonNull(version);
@@ -106,6 +109,7 @@ public final class SegmentInfo {
       throw new IllegalArgumentException("invalid id: " + Arrays.toString(id));
     }
     this.attributes = Objects.requireNonNull(attributes);
+    this.indexSort = indexSort;
   }
 
   /**
@@ -140,6 +144,13 @@ public final class SegmentInfo {
     return codec;
   }
 
+  /** Return the sort order of documents in this segment, or null if the
+   *  documents of this segment are not sorted.
+   *  @see IndexWriterConfig#setIndexSort */
+  public Sort getIndexSort() {
+    return indexSort;
+  }
+
   /** Returns number of documents in this segment (deletions
    *  are not taken into account). */
   public int maxDoc() {
@@ -192,6 +203,10 @@ public final class SegmentInfo {
       s.append('/').append(delCount);
     }
 
+    if (indexSort != null) {
+      s.append(":[indexSort=").append(indexSort).append(']');
+    }
+
     // TODO: we could append toString of attributes() here?
 
     return s.toString();
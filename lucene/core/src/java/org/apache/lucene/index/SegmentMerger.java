@@ -18,12 +18,16 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.NormsConsumer;
+import org.apache.lucene.codecs.PointsWriter;
 import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.codecs.TermVectorsWriter;
 import org.apache.lucene.store.Directory;
@@ -48,12 +52,13 @@ final class SegmentMerger {
   private final FieldInfos.Builder fieldInfosBuilder;
 
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
+  // executor may be null, to merge everything on the calling thread
   SegmentMerger(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Directory dir,
-                FieldInfos.FieldNumbers fieldNumbers, IOContext context) throws IOException {
+                FieldInfos.FieldNumbers fieldNumbers, IOContext context, Executor executor) throws IOException {
     if (context.context != IOContext.Context.MERGE) {
       throw new IllegalArgumentException("IOContext.context should be MERGE; got: " + context.context);
     }
-    mergeState = new MergeState(readers, segmentInfo, infoStream);
+    mergeState = new MergeState(readers, segmentInfo, infoStream, executor);
     directory = dir;
     this.codec = segmentInfo.getCodec();
     this.context = context;
@@ -76,81 +81,125 @@ final class SegmentMerger {
       throw new IllegalStateException("Merge would result in 0 document segment");
     }
     mergeFieldInfos();
-    long t0 = 0;
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    int numMerged = mergeFields();
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge stored fields [" + numMerged + " docs]");
-    }
-    assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
 
     final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
                                                                       mergeState.mergeFieldInfos, null, context);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    mergeTerms(segmentWriteState);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge postings [" + numMerged + " docs]");
-    }
 
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
+    // Each format writes its own files, so they can all be merged
+    // concurrently if the merge state has an executor:
+    final List<Callable<Void>> tasks = new ArrayList<>();
+    tasks.add(new MergeTask("stored fields") {
+        @Override
+        int doMerge() throws IOException {
+          int numMerged = mergeFields();
+          assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
+          return numMerged;
+        }
+      });
+
+    tasks.add(new MergeTask("postings") {
+        @Override
+        int doMerge() throws IOException {
+          mergeTerms(segmentWriteState);
+          return mergeState.segmentInfo.maxDoc();
+        }
+      });
+
     if (mergeState.mergeFieldInfos.hasDocValues()) {
-      mergeDocValues(segmentWriteState);
+      tasks.add(new MergeTask("doc values") {
+          @Override
+          int doMerge() throws IOException {
+            mergeDocValues(segmentWriteState);
+            return mergeState.segmentInfo.maxDoc();
+          }
+        });
     }
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge doc values [" + numMerged + " docs]");
+
+    if (mergeState.mergeFieldInfos.hasPointValues()) {
+      tasks.add(new MergeTask("points") {
+          @Override
+          int doMerge() throws IOException {
+            mergePoints(segmentWriteState);
+            return mergeState.segmentInfo.maxDoc();
+          }
+        });
     }
-    
+
     if (mergeState.mergeFieldInfos.hasNorms()) {
-      if (mergeState.infoStream.isEnabled("SM")) {
-        t0 = System.nanoTime();
-      }
-      mergeNorms(segmentWriteState);
-      if (mergeState.infoStream.isEnabled("SM")) {
-        long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge norms [" + numMerged + " docs]");
-      }
+      tasks.add(new MergeTask("norms") {
+          @Override
+          int doMerge() throws IOException {
+            mergeNorms(segmentWriteState);
+            return mergeState.segmentInfo.maxDoc();
+          }
+        });
     }
 
     if (mergeState.mergeFieldInfos.hasVectors()) {
-      if (mergeState.infoStream.isEnabled("SM")) {
-        t0 = System.nanoTime();
-      }
-      numMerged = mergeVectors();
-      if (mergeState.infoStream.isEnabled("SM")) {
-        long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge vectors [" + numMerged + " docs]");
-      }
-      assert numMerged == mergeState.segmentInfo.maxDoc();
+      tasks.add(new MergeTask("vectors") {
+          @Override
+          int doMerge() throws IOException {
+            int numMerged = mergeVectors();
+            assert numMerged == mergeState.segmentInfo.maxDoc();
+            return numMerged;
+          }
+        });
     }
-    
+
+    mergeState.runConcurrently(tasks);
+
     // write the merged infos
+    long t0 = 0;
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
     }
     codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
     if (mergeState.infoStream.isEnabled("SM")) {
       long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + numMerged + " docs]");
+      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + mergeState.segmentInfo.maxDoc() + " docs]");
     }
 
     return mergeState;
   }
 
+  /** Merges the files of one format, and reports how long that took. */
+  private abstract class MergeTask implements Callable<Void> {
+    private final String desc;
+
+    MergeTask(String desc) {
+      this.desc = desc;
+    }
+
+    /** Merges and returns the number of merged documents. */
+    abstract int doMerge() throws IOException;
+
+    @Override
+    public Void call() throws IOException {
+      long t0 = 0;
+      if (mergeState.infoStream.isEnabled("SM")) {
+        t0 = System.nanoTime();
+      }
+      int numMerged = doMerge();
+      if (mergeState.infoStream.isEnabled("SM")) {
+        long t1 = System.nanoTime();
+        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge " + desc + " [" + numMerged + " docs]");
+      }
+      return null;
+    }
+  }
+
   private void mergeDocValues(SegmentWriteState segmentWriteState) throws IOException {
     try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
     }
   }
 
+  private void mergePoints(SegmentWriteState segmentWriteState) throws IOException {
+    try (PointsWriter writer = codec.pointsFormat().fieldsWriter(segmentWriteState)) {
+      writer.merge(mergeState);
+    }
+  }
+
   private void mergeNorms(SegmentWriteState segmentWriteState) throws IOException {
     try (NormsConsumer consumer = codec.normsFormat().normsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
@@ -25,6 +25,7 @@ import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FieldInfosFormat;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.store.Directory;
@@ -222,6 +223,12 @@ public final class SegmentReader extends CodecReader {
     return docValuesProducer;
   }
 
+  @Override
+  public PointsReader getPointsReader() {
+    ensureOpen();
+    return core.pointsReader;
+  }
+
   @Override
   public FieldsProducer getPostingsReader() {
     ensureOpen();
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.TermVectorsReader;
 import org.apache.lucene.util.Bits;
@@ -75,6 +76,12 @@ public final class SlowCodecReaderWrapper {
           return readerToDocValuesProducer(reader);
         }
 
+        @Override
+        public PointsReader getPointsReader() {
+          reader.ensureOpen();
+          return pointValuesToReader(reader.getPointValues());
+        }
+
         @Override
         public FieldsProducer getPostingsReader() {
           reader.ensureOpen();
@@ -118,6 +125,62 @@ public final class SlowCodecReaderWrapper {
     }
   }
   
+  private static PointsReader pointValuesToReader(PointValues values) {
+    if (values == null) {
+      return null;
+    }
+    return new PointsReader() {
+      @Override
+      public void intersect(String fieldName, IntersectVisitor visitor) throws IOException {
+        values.intersect(fieldName, visitor);
+      }
+
+      @Override
+      public void checkIntegrity() throws IOException {
+        // We already checkIntegrity the entire reader up front
+      }
+
+      @Override
+      public void close() {
+      }
+
+      @Override
+      public long ramBytesUsed() {
+        return 0;
+      }
+
+      @Override
+      public byte[] getMinPackedValue(String fieldName) throws IOException {
+        return values.getMinPackedValue(fieldName);
+      }
+
+      @Override
+      public byte[] getMaxPackedValue(String fieldName) throws IOException {
+        return values.getMaxPackedValue(fieldName);
+      }
+
+      @Override
+      public int getNumDimensions(String fieldName) throws IOException {
+        return values.getNumDimensions(fieldName);
+      }
+
+      @Override
+      public int getBytesPerDimension(String fieldName) throws IOException {
+        return values.getBytesPerDimension(fieldName);
+      }
+
+      @Override
+      public long size(String fieldName) {
+        return values.size(fieldName);
+      }
+
+      @Override
+      public int getDocCount(String fieldName) {
+        return values.getDocCount(fieldName);
+      }
+    };
+  }
+
   private static NormsProducer readerToNormsProducer(final LeafReader reader) {
     return new NormsProducer() {
 
@@ -200,6 +200,12 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     ensureOpen();
     return MultiDocValues.getNormValues(in, field);
   }
+
+  @Override
+  public PointValues getPointValues() {
+    ensureOpen();
+    return MultiPointValues.get(in);
+  }
   
   @Override
   public Fields getTermVectors(int docID) throws IOException {
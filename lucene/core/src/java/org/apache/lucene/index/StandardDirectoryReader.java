@@ -30,7 +30,10 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.IOUtils;
 
-final class StandardDirectoryReader extends DirectoryReader {
+/** Default implementation of {@link DirectoryReader}.
+ *
+ * @lucene.internal */
+public final class StandardDirectoryReader extends DirectoryReader {
 
   private final IndexWriter writer;
   private final SegmentInfos segmentInfos;
@@ -131,8 +134,12 @@ final class StandardDirectoryReader extends DirectoryReader {
     }
   }
 
-  /** This constructor is only used for {@link #doOpenIfChanged(SegmentInfos)} */
-  private static DirectoryReader open(Directory directory, SegmentInfos infos, List<? extends LeafReader> oldReaders) throws IOException {
+  /** Open a reader on the given segment infos, reusing the segment readers
+   *  of {@code oldReaders} (which may be null) for unchanged segments. This
+   *  is used by {@link #doOpenIfChanged(SegmentInfos)} and allows to open
+   *  readers on segment infos that have not been committed, e.g. on a replica
+   *  of a near-real-time index. */
+  public static DirectoryReader open(Directory directory, SegmentInfos infos, List<? extends LeafReader> oldReaders) throws IOException {
 
     // we put the old SegmentReaders in a map, that allows us
     // to lookup a reader using its segment name
@@ -332,6 +339,11 @@ final class StandardDirectoryReader extends DirectoryReader {
     return segmentInfos.getVersion();
   }
 
+  /** Return the {@link SegmentInfos} for this reader. */
+  public SegmentInfos getSegmentInfos() {
+    return segmentInfos;
+  }
+
   @Override
   public boolean isCurrent() throws IOException {
     ensureOpen();
@@ -18,8 +18,10 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import org.apache.lucene.search.BooleanWeight;
 import org.apache.lucene.util.PriorityQueue;
@@ -153,6 +155,7 @@ final class BooleanScorer extends BulkScorer {
   final FakeScorer fakeScorer = new FakeScorer();
   final int minShouldMatch;
   final long cost;
+  final List<BulkScorer> scorers; // for query plans
 
   final class OrCollector implements LeafCollector {
     Scorer scorer;
@@ -186,6 +189,7 @@ final class BooleanScorer extends BulkScorer {
     this.head = new HeadPriorityQueue(scorers.size() - minShouldMatch + 1);
     this.tail = new TailPriorityQueue(minShouldMatch - 1);
     this.minShouldMatch = minShouldMatch;
+    this.scorers = new ArrayList<>(scorers);
     for (BulkScorer scorer : scorers) {
       if (needsScores == false) {
         // OrCollector calls score() all the time so we have to explicitly
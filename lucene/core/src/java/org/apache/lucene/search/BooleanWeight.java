@@ -259,6 +259,16 @@ final class BooleanWeight extends Weight {
 
   @Override
   public Scorer scorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
+    return scorer(context, acceptDocs, false);
+  }
+
+  @Override
+  Scorer pruningScorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
+    return scorer(context, acceptDocs, true);
+  }
+
+  // pruning is true if the collector reports minimum competitive scores
+  private Scorer scorer(LeafReaderContext context, Bits acceptDocs, boolean pruning) throws IOException {
     // initially the user provided value,
     // but if minNrShouldMatch == optional.size(),
     // we will optimize and move these to required, making this 0
@@ -269,14 +279,15 @@ final class BooleanWeight extends Weight {
     List<Scorer> requiredScoring = new ArrayList<>();
     List<Scorer> prohibited = new ArrayList<>();
     List<Scorer> optional = new ArrayList<>();
+    final Scorer[] subScorers = clauseScorers(context, acceptDocs);
+    if (subScorers == null) {
+      return null;
+    }
     Iterator<BooleanClause> cIter = query.iterator();
-    for (Weight w  : weights) {
+    for (Scorer subScorer : subScorers) {
       BooleanClause c =  cIter.next();
-      Scorer subScorer = w.scorer(context, acceptDocs);
       if (subScorer == null) {
-        if (c.isRequired()) {
-          return null;
-        }
+        assert c.isRequired() == false;
       } else if (c.isRequired()) {
         required.add(subScorer);
         if (c.isScoring()) {
@@ -323,6 +334,11 @@ final class BooleanWeight extends Weight {
     
     // pure disjunction
     if (required.isEmpty()) {
+      if (pruning && needsScores && minShouldMatch <= 1 && optional.size() > 1
+          && WANDScorer.canScore(optional)) {
+        // all clauses can bound their scores: allow the collector to skip non-competitive docs
+        return excl(new WANDScorer(this, optional, coords), prohibited);
+      }
       return excl(opt(optional, minShouldMatch, disableCoord), prohibited);
     }
     
@@ -359,6 +375,66 @@ final class BooleanWeight extends Weight {
     }
   }
 
+  /** Creates the scorers of the clauses, in two passes: scoring and optional
+   *  clauses first, which may lead the iteration, then filter and prohibited
+   *  clauses, which only need to match the documents of the lead. Filter and
+   *  prohibited clauses get the cost of the lead, so that the query cache
+   *  does not cache a dense filter only to intersect it with a sparse lead.
+   *  Returns null if a required clause does not match any document. */
+  private Scorer[] clauseScorers(LeafReaderContext context, Bits acceptDocs) throws IOException {
+    final Scorer[] scorers = new Scorer[weights.size()];
+    long requiredCost = Long.MAX_VALUE;
+    long optionalCost = 0;
+    int i = 0;
+    for (BooleanClause c : query) {
+      if (c.getOccur() == Occur.MUST || c.getOccur() == Occur.SHOULD) {
+        final Scorer scorer = weights.get(i).scorer(context, acceptDocs);
+        if (scorer == null) {
+          if (c.isRequired()) {
+            return null;
+          }
+        } else if (c.isRequired()) {
+          requiredCost = Math.min(requiredCost, scorer.cost());
+        } else {
+          optionalCost += scorer.cost();
+        }
+        scorers[i] = scorer;
+      }
+      i++;
+    }
+    // the cheapest required clause leads the conjunction, or else the disjunction
+    // of the optional clauses leads if they must match
+    final long leadCost;
+    if (requiredCost != Long.MAX_VALUE) {
+      leadCost = requiredCost;
+    } else if (optionalCost > 0 && hasRequiredClause() == false) {
+      leadCost = optionalCost;
+    } else {
+      leadCost = Long.MAX_VALUE;
+    }
+    i = 0;
+    for (BooleanClause c : query) {
+      if (c.getOccur() == Occur.FILTER || c.getOccur() == Occur.MUST_NOT) {
+        final Scorer scorer = weights.get(i).scorer(context, acceptDocs, leadCost);
+        if (scorer == null && c.isRequired()) {
+          return null;
+        }
+        scorers[i] = scorer;
+      }
+      i++;
+    }
+    return scorers;
+  }
+
+  private boolean hasRequiredClause() {
+    for (BooleanClause c : query) {
+      if (c.isRequired()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /** Create a new scorer for the given required clauses. Note that
    *  {@code requiredScoring} is a subset of {@code required} containing
    *  required clauses that should participate in scoring. */
@@ -165,6 +165,11 @@ public class CachingWrapperQuery extends Query implements Accountable {
               return acceptDocs.get(doc);
             }
 
+            @Override
+            public float matchCost() {
+              return 1; // a single bit lookup in live docs
+            }
+
           };
           return new ConstantScoreScorer(this, 0f, twoPhaseView);
         }
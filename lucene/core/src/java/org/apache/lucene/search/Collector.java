@@ -79,4 +79,21 @@ public interface Collector {
    * @return {@code true} if scores are needed.
    */
   boolean needsScores();
+
+  /**
+   * Indicates if this collector needs to see every matching document, for
+   * instance to count hits. Collectors that only keep the best scoring hits
+   * may return {@code false}, in which case they must tell the scorer which
+   * scores are still competitive through
+   * {@link Scorer#setMinCompetitiveScore(float)} and scorers are allowed to
+   * skip over documents that cannot compete.
+   * <p>
+   * The default implementation returns {@code true}.
+   *
+   * @return {@code true} if all matches must be collected.
+   * @lucene.experimental
+   */
+  default boolean needsAllHits() {
+    return true;
+  }
 }
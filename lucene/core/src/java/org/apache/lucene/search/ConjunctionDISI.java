@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.CollectionUtil;
 
 /** A conjunction of DocIdSetIterators.
@@ -141,11 +142,25 @@ public class ConjunctionDISI extends DocIdSetIterator {
   private static class TwoPhaseConjunctionDISI extends TwoPhaseIterator {
 
     private final TwoPhaseIterator[] twoPhaseIterators;
+    private final float matchCost;
 
     private TwoPhaseConjunctionDISI(List<? extends DocIdSetIterator> iterators, List<TwoPhaseIterator> twoPhaseIterators) {
       super(new ConjunctionDISI(iterators));
       assert twoPhaseIterators.size() > 0;
       this.twoPhaseIterators = twoPhaseIterators.toArray(new TwoPhaseIterator[twoPhaseIterators.size()]);
+      // Sort the array so that the cheapest two-phase iterators are verified
+      // first: a document can be rejected before the expensive ones are checked.
+      ArrayUtil.timSort(this.twoPhaseIterators, new Comparator<TwoPhaseIterator>() {
+        @Override
+        public int compare(TwoPhaseIterator o1, TwoPhaseIterator o2) {
+          return Float.compare(o1.matchCost(), o2.matchCost());
+        }
+      });
+      float matchCost = 0;
+      for (TwoPhaseIterator twoPhaseIterator : this.twoPhaseIterators) {
+        matchCost += twoPhaseIterator.matchCost();
+      }
+      this.matchCost = matchCost;
     }
 
     @Override
@@ -158,6 +173,11 @@ public class ConjunctionDISI extends DocIdSetIterator {
       return true;
     }
 
+    @Override
+    public float matchCost() {
+      return matchCost;
+    }
+
   }
 
   /**
@@ -28,6 +28,8 @@ class ConjunctionScorer extends Scorer {
   private final ConjunctionDISI disi;
   private final Scorer[] scorers;
   private final float coord;
+  // all required clauses, including the non-scoring ones, for query plans
+  final List<? extends DocIdSetIterator> required;
 
   ConjunctionScorer(Weight weight, List<? extends DocIdSetIterator> required, List<Scorer> scorers) {
     this(weight, required, scorers, 1f);
@@ -40,6 +42,7 @@ class ConjunctionScorer extends Scorer {
     this.coord = coord;
     this.disi = ConjunctionDISI.intersect(required);
     this.scorers = scorers.toArray(new Scorer[scorers.size()]);
+    this.required = required;
   }
 
   @Override
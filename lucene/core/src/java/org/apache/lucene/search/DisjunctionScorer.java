@@ -105,6 +105,22 @@ abstract class DisjunctionScorer extends Scorer {
         DisjunctionScorer.this.topScorers = topScorers;
         return true;
       }
+
+      @Override
+      public float matchCost() {
+        // sub scorers are verified on the documents of their approximation:
+        // weight their match costs by how often this happens
+        double sumMatchCost = 0;
+        long sumApproxCost = 0;
+        for (DisiWrapper<Scorer> w : subScorers) {
+          final long costWeight = Math.max(1, w.cost);
+          if (w.twoPhaseView != null) {
+            sumMatchCost += w.twoPhaseView.matchCost() * costWeight;
+          }
+          sumApproxCost += costWeight;
+        }
+        return (float) (sumMatchCost / sumApproxCost);
+      }
     };
   }
 
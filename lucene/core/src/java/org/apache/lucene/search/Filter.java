@@ -120,6 +120,12 @@ public abstract class Filter extends Query {
             public boolean matches() throws IOException {
               return bits.get(approximation.docID());
             }
+
+            @Override
+            public float matchCost() {
+              // the cost of random access to bits is unknown
+              return 10;
+            }
           };
           return new ConstantScoreScorer(this, 0f, twoPhase);
         }
@@ -139,6 +139,7 @@ public class IndexSearcher {
 
   // These are only used for multi-threaded search
   private final ExecutorService executor;
+  private final int maxDocsPerSlice;
 
   // the default Similarity
   private static final Similarity defaultSimilarity = new DefaultSimilarity();
@@ -212,6 +213,21 @@ public class IndexSearcher {
     this(r.getContext(), executor);
   }
 
+  /** Runs searches on slices of at most {@code maxDocsPerSlice} documents
+   *  in parallel, using the provided ExecutorService. Segments that have
+   *  more documents are split into several ranges of doc IDs and small
+   *  consecutive segments are grouped together, so that the latency of a
+   *  search does not depend on the size of the largest segment. A good
+   *  value is typically the number of documents of the index divided by
+   *  the number of threads of the executor.
+   *  See {@link #IndexSearcher(IndexReader, ExecutorService)} for notes
+   *  about the executor.
+   *
+   * @lucene.experimental */
+  public IndexSearcher(IndexReader r, ExecutorService executor, int maxDocsPerSlice) {
+    this(r.getContext(), executor, maxDocsPerSlice);
+  }
+
   /**
    * Creates a searcher searching the provided top-level {@link IndexReaderContext}.
    * <p>
@@ -229,9 +245,26 @@ public class IndexSearcher {
    * @lucene.experimental
    */
   public IndexSearcher(IndexReaderContext context, ExecutorService executor) {
+    this(context, executor, 0);
+  }
+
+  /**
+   * Creates a searcher searching the provided top-level {@link IndexReaderContext}
+   * on slices of at most {@code maxDocsPerSlice} documents, using the
+   * provided {@link ExecutorService}. A value of {@code 0} creates one slice
+   * per segment.
+   *
+   * @see #IndexSearcher(IndexReader, ExecutorService, int)
+   * @lucene.experimental
+   */
+  public IndexSearcher(IndexReaderContext context, ExecutorService executor, int maxDocsPerSlice) {
     assert context.isTopLevel: "IndexSearcher's ReaderContext must be topLevel for reader" + context.reader();
+    if (maxDocsPerSlice < 0) {
+      throw new IllegalArgumentException("maxDocsPerSlice must be >= 0, got " + maxDocsPerSlice);
+    }
     reader = context.reader();
     this.executor = executor;
+    this.maxDocsPerSlice = maxDocsPerSlice;
     this.readerContext = context;
     leafContexts = context.leaves();
     this.leafSlices = executor == null ? null : slices(leafContexts);
@@ -276,9 +309,14 @@ public class IndexSearcher {
   /**
    * Expert: Creates an array of leaf slices each holding a subset of the given leaves.
    * Each {@link LeafSlice} is executed in a single thread. By default there
-   * will be one {@link LeafSlice} per leaf ({@link org.apache.lucene.index.LeafReaderContext}).
+   * will be one {@link LeafSlice} per leaf ({@link org.apache.lucene.index.LeafReaderContext}),
+   * unless this searcher was created with a positive {@code maxDocsPerSlice},
+   * in which case slices are computed with {@link #slices(List, int)}.
    */
   protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+    if (maxDocsPerSlice > 0) {
+      return slices(leaves, maxDocsPerSlice);
+    }
     LeafSlice[] slices = new LeafSlice[leaves.size()];
     for (int i = 0; i < slices.length; i++) {
       slices[i] = new LeafSlice(leaves.get(i));
@@ -286,6 +324,48 @@ public class IndexSearcher {
     return slices;
   }
 
+  /**
+   * Expert: Creates slices of at most {@code maxDocsPerSlice} documents.
+   * Leaves that have more documents are split into ranges of doc IDs of
+   * equal sizes, while consecutive leaves that have fewer documents are
+   * grouped together. Slices are returned in doc ID order and each slice
+   * holds a contiguous range of doc IDs, so that ties are broken the same
+   * way as with a sequential search when merging results.
+   * @lucene.experimental
+   */
+  public static LeafSlice[] slices(List<LeafReaderContext> leaves, int maxDocsPerSlice) {
+    if (maxDocsPerSlice <= 0) {
+      throw new IllegalArgumentException("maxDocsPerSlice must be > 0, got " + maxDocsPerSlice);
+    }
+    final List<LeafSlice> slices = new ArrayList<>();
+    final List<LeafReaderContextPartition> group = new ArrayList<>();
+    int groupDocs = 0;
+    for (LeafReaderContext ctx : leaves) {
+      final int maxDoc = ctx.reader().maxDoc();
+      if (group.isEmpty() == false && (long) groupDocs + maxDoc > maxDocsPerSlice) {
+        slices.add(new LeafSlice(group.toArray(new LeafReaderContextPartition[group.size()])));
+        group.clear();
+        groupDocs = 0;
+      }
+      if (maxDoc > maxDocsPerSlice) {
+        // split large leaves into partitions of (almost) equal sizes
+        final int numPartitions = (int) ((maxDoc + (long) maxDocsPerSlice - 1) / maxDocsPerSlice);
+        for (int i = 0; i < numPartitions; ++i) {
+          final int minDocId = (int) ((long) maxDoc * i / numPartitions);
+          final int maxDocId = (int) ((long) maxDoc * (i + 1) / numPartitions);
+          slices.add(new LeafSlice(new LeafReaderContextPartition(ctx, minDocId, maxDocId)));
+        }
+      } else {
+        group.add(new LeafReaderContextPartition(ctx, 0, maxDoc));
+        groupDocs += maxDoc;
+      }
+    }
+    if (group.isEmpty() == false) {
+      slices.add(new LeafSlice(group.toArray(new LeafReaderContextPartition[group.size()])));
+    }
+    return slices.toArray(new LeafSlice[slices.size()]);
+  }
+
   
   /** Return the {@link IndexReader} this searches. */
   public IndexReader getIndexReader() {
@@ -554,12 +634,12 @@ public class IndexSearcher {
       final Weight weight = createNormalizedWeight(query, needsScores);
       final List<Future<C>> topDocsFutures = new ArrayList<>(leafSlices.length);
       for (int i = 0; i < leafSlices.length; ++i) {
-        final LeafReaderContext[] leaves = leafSlices[i].leaves;
+        final LeafReaderContextPartition[] partitions = leafSlices[i].partitions;
         final C collector = collectors.get(i);
         topDocsFutures.add(executor.submit(new Callable<C>() {
           @Override
           public C call() throws Exception {
-            search(Arrays.asList(leaves), weight, collector);
+            search(partitions, weight, collector);
             return collector;
           }
         }));
@@ -606,22 +686,72 @@ public class IndexSearcher {
     // threaded...?  the Collector could be sync'd?
     // always use single thread:
     for (LeafReaderContext ctx : leaves) { // search each subreader
-      final LeafCollector leafCollector;
+      searchLeaf(ctx, 0, DocIdSetIterator.NO_MORE_DOCS, weight, collector);
+    }
+  }
+
+  /**
+   * Lower-level search API.
+   * <p>
+   * Same as {@link #search(List, Weight, Collector)} but only collects
+   * documents within the doc ID ranges of the given partitions. If all
+   * partitions span entire leaves, this delegates to
+   * {@link #search(List, Weight, Collector)}.
+   *
+   * @param partitions
+   *          the partitions of the searchers leaves to execute the searches on
+   * @param weight
+   *          to match documents
+   * @param collector
+   *          to receive hits
+   * @throws BooleanQuery.TooManyClauses If a query would exceed
+   *         {@link BooleanQuery#getMaxClauseCount()} clauses.
+   * @lucene.experimental
+   */
+  protected void search(LeafReaderContextPartition[] partitions, Weight weight, Collector collector)
+      throws IOException {
+    boolean entireLeaves = true;
+    for (LeafReaderContextPartition partition : partitions) {
+      entireLeaves &= partition.isEntireLeaf();
+    }
+    if (entireLeaves) {
+      final List<LeafReaderContext> leaves = new ArrayList<>(partitions.length);
+      for (LeafReaderContextPartition partition : partitions) {
+        leaves.add(partition.ctx);
+      }
+      search(leaves, weight, collector);
+    } else {
+      for (LeafReaderContextPartition partition : partitions) {
+        searchLeaf(partition.ctx, partition.minDocId, partition.maxDocId, weight, collector);
+      }
+    }
+  }
+
+  private void searchLeaf(LeafReaderContext ctx, int minDocId, int maxDocId, Weight weight, Collector collector)
+      throws IOException {
+    final LeafCollector leafCollector;
+    try {
+      leafCollector = collector.getLeafCollector(ctx);
+    } catch (CollectionTerminatedException e) {
+      // there is no doc of interest in this reader context
+      // continue with the following leaf
+      return;
+    }
+    final BulkScorer scorer;
+    if (collector.needsAllHits()) {
+      scorer = weight.bulkScorer(ctx, ctx.reader().getLiveDocs());
+    } else {
+      // score doc-at-a-time so that the collector can tell the scorer
+      // which scores are still competitive
+      final Scorer s = weight.pruningScorer(ctx, ctx.reader().getLiveDocs());
+      scorer = s == null ? null : new Weight.DefaultBulkScorer(s);
+    }
+    if (scorer != null) {
       try {
-        leafCollector = collector.getLeafCollector(ctx);
+        scorer.score(leafCollector, minDocId, maxDocId);
       } catch (CollectionTerminatedException e) {
-        // there is no doc of interest in this reader context
+        // collection was terminated prematurely
         // continue with the following leaf
-        continue;
-      }
-      BulkScorer scorer = weight.bulkScorer(ctx, ctx.reader().getLiveDocs());
-      if (scorer != null) {
-        try {
-          scorer.score(leafCollector);
-        } catch (CollectionTerminatedException e) {
-          // collection was terminated prematurely
-          // continue with the following leaf
-        }
       }
     }
   }
@@ -671,6 +801,30 @@ public class IndexSearcher {
     return weight.explain(ctx, deBasedDoc);
   }
 
+  /**
+   * Returns how the given query is executed on each segment when it is run
+   * with {@link #search(Query, Collector)} and a collector like the given one:
+   * the scorers that are chosen depending on the costs of the clauses, the
+   * order in which conjunctions iterate their clauses, and which filters are
+   * served from the query cache. The collector is only asked whether it needs
+   * scores and all hits, it does not collect anything.
+   *
+   * <p>Planning creates the scorers of the query, so it may cache filters
+   * in the query cache like running the query would.
+   * @lucene.experimental
+   */
+  public QueryPlan explainPlan(Query query, Collector collector) throws IOException {
+    final Weight weight = createNormalizedWeight(query, collector.needsScores());
+    final List<QueryPlan> leafPlans = new ArrayList<>();
+    long cost = 0;
+    for (LeafReaderContext ctx : leafContexts) {
+      final QueryPlan leafPlan = QueryPlan.forLeaf(ctx, weight, collector.needsAllHits());
+      cost += leafPlan.getCost();
+      leafPlans.add(leafPlan);
+    }
+    return QueryPlan.of(query.toString(), cost, Float.NaN, leafPlans);
+  }
+
   /**
    * Creates a normalized weight for a top-level {@link Query}.
    * The query is rewritten by this method and {@link Query#createWeight} called,
@@ -720,10 +874,50 @@ public class IndexSearcher {
    * @lucene.experimental
    */
   public static class LeafSlice {
-    final LeafReaderContext[] leaves;
+    final LeafReaderContextPartition[] partitions;
     
+    /** Create a slice that holds the given leaves entirely. */
     public LeafSlice(LeafReaderContext... leaves) {
-      this.leaves = leaves;
+      this.partitions = new LeafReaderContextPartition[leaves.length];
+      for (int i = 0; i < leaves.length; ++i) {
+        partitions[i] = new LeafReaderContextPartition(leaves[i], 0, leaves[i].reader().maxDoc());
+      }
+    }
+
+    /** Create a slice that holds the given partitions of leaves. */
+    public LeafSlice(LeafReaderContextPartition... partitions) {
+      this.partitions = partitions;
+    }
+  }
+
+  /**
+   * A range of doc IDs of a leaf that is searched as a part of a
+   * {@link LeafSlice}. This allows large leaves to be searched concurrently
+   * by several threads.
+   *
+   * @lucene.experimental
+   */
+  public static class LeafReaderContextPartition {
+    /** The leaf. */
+    public final LeafReaderContext ctx;
+    /** The first doc ID of the range, inclusive. */
+    public final int minDocId;
+    /** The last doc ID of the range, exclusive. */
+    public final int maxDocId;
+
+    /** Sole constructor. */
+    public LeafReaderContextPartition(LeafReaderContext ctx, int minDocId, int maxDocId) {
+      if (minDocId < 0 || minDocId > maxDocId || maxDocId > ctx.reader().maxDoc()) {
+        throw new IllegalArgumentException("Invalid doc ID range [" + minDocId + ", " + maxDocId
+            + ") for a leaf of maxDoc=" + ctx.reader().maxDoc());
+      }
+      this.ctx = ctx;
+      this.minDocId = minDocId;
+      this.maxDocId = maxDocId;
+    }
+
+    boolean isEntireLeaf() {
+      return minDocId == 0 && maxDocId == ctx.reader().maxDoc();
     }
   }
 
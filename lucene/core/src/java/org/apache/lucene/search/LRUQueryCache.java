@@ -18,6 +18,7 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,17 +29,30 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReader.CoreClosedListener;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.RoaringDocIdSet;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /**
  * A {@link QueryCache} that evicts queries using a LRU (least-recently-used)
@@ -82,6 +96,28 @@ import org.apache.lucene.util.RoaringDocIdSet;
  * {@link #onDocIdSetCache}, {@link #onDocIdSetEviction} and {@link #onClear}.
  * It is better to not perform heavy computations in these methods though since
  * they are called synchronously and under a lock.
+ * <p>
+ * Cache lookups never block: if another thread is currently updating the
+ * cache, the query is executed without the cache instead of waiting. In order
+ * to reduce contention further on machines that have many cores, the cache
+ * can be split into several <i>stripes</i> that each have their own lock and
+ * LRU list and hold a subset of the queries, see
+ * {@link #LRUQueryCache(int, long, int, Executor)}. In that case, the
+ * maximum size and number of bytes used are enforced on each stripe
+ * separately, eviction is only least-recently-used within a stripe and the
+ * above callbacks may be called concurrently from different stripes.
+ * Finally, if an {@link Executor} is provided, cache entries are computed
+ * asynchronously so that the thread that triggers caching does not pay for
+ * the cost of building the cache entry. Tasks are {@link java.util.concurrent.Future}s
+ * that hold a reference on their reader until they complete: tasks that the
+ * executor drops without running them, such as those returned by
+ * {@link java.util.concurrent.ExecutorService#shutdownNow()}, must be
+ * cancelled to release it.
+ * <p>
+ * Building a cache entry visits all documents that match the query. When a
+ * filter clause of a {@link BooleanQuery} is intersected with a clause that
+ * matches much fewer documents, it is not cached synchronously: advancing the
+ * filter to the few documents of the other clause is cheaper.
  *
  * @see QueryCachingPolicy
  * @lucene.experimental
@@ -91,6 +127,11 @@ public class LRUQueryCache implements QueryCache, Accountable {
   // memory usage of a simple term query
   static final long QUERY_DEFAULT_RAM_BYTES_USED = 192;
 
+  // a filter is not cached when it is intersected with a lead iterator whose
+  // cost is more than this many times lower: building the cache entry would
+  // visit all matches of the filter, while the lead only advances it a few times
+  static final int SKIP_CACHE_FACTOR = 10;
+
   static final long HASHTABLE_RAM_BYTES_PER_ENTRY =
       2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF // key + value
       * 2; // hash tables need to be oversized to avoid collisions, assume 2x capacity
@@ -101,34 +142,60 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   private final int maxSize;
   private final long maxRamBytesUsed;
-  // maps queries that are contained in the cache to a singleton so that this
-  // cache does not store several copies of the same query
-  private final Map<Query, Query> uniqueQueries;
-  // The contract between this set and the per-leaf caches is that per-leaf caches
-  // are only allowed to store sub-sets of the queries that are contained in
-  // mostRecentlyUsedQueries. This is why write operations are performed under a lock
-  private final Set<Query> mostRecentlyUsedQueries;
-  private final Map<Object, LeafCache> cache;
-
-  // these variables are volatile so that we do not need to sync reads
-  // but increments need to be performed under the lock
-  private volatile long ramBytesUsed;
-  private volatile long hitCount;
-  private volatile long missCount;
-  private volatile long cacheCount;
-  private volatile long cacheSize;
+  // each query belongs to a single stripe, which has its own lock, LRU list
+  // and per-leaf caches
+  private final Stripe[] stripes;
+  // if non-null, cache entries are computed asynchronously on this executor
+  private final Executor executor;
+  // leaf/query pairs whose cache entry is being computed asynchronously
+  private final Set<PendingEntry> pendingEntries;
+
+  // these variables can be read without locking, updates are performed
+  // under the lock of a stripe but different stripes may update them
+  // concurrently
+  private final AtomicLong ramBytesUsed;
+  private final LongAdder hitCount;
+  private final LongAdder missCount;
+  private final LongAdder cacheCount;
+  private final LongAdder cacheSize;
 
   /**
    * Create a new instance that will cache at most <code>maxSize</code> queries
    * with at most <code>maxRamBytesUsed</code> bytes of memory.
    */
   public LRUQueryCache(int maxSize, long maxRamBytesUsed) {
+    this(maxSize, maxRamBytesUsed, 1, null);
+  }
+
+  /**
+   * Create a new instance that will cache at most <code>maxSize</code> queries
+   * with at most <code>maxRamBytesUsed</code> bytes of memory, split into
+   * <code>numStripes</code> stripes that can be updated concurrently. Each
+   * stripe caches at most <code>maxSize / numStripes</code> queries (rounded
+   * up) and <code>maxRamBytesUsed / numStripes</code> bytes. If
+   * <code>executor</code> is not <code>null</code>, cache entries are computed
+   * asynchronously on this executor, and searches that trigger caching run
+   * the uncached query in the meantime.
+   */
+  public LRUQueryCache(int maxSize, long maxRamBytesUsed, int numStripes, Executor executor) {
+    if (numStripes < 1) {
+      throw new IllegalArgumentException("numStripes must be at least 1, got " + numStripes);
+    }
     this.maxSize = maxSize;
     this.maxRamBytesUsed = maxRamBytesUsed;
-    uniqueQueries = new LinkedHashMap<>(16, 0.75f, true);
-    mostRecentlyUsedQueries = uniqueQueries.keySet();
-    cache = new IdentityHashMap<>();
-    ramBytesUsed = 0;
+    final int maxSizePerStripe = numStripes == 1 ? maxSize : (int) ((maxSize + (long) numStripes - 1) / numStripes);
+    final long maxRamBytesUsedPerStripe = maxRamBytesUsed / numStripes;
+    stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; ++i) {
+      stripes[i] = new Stripe(maxSizePerStripe, maxRamBytesUsedPerStripe);
+    }
+    this.executor = executor;
+    pendingEntries = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    ramBytesUsed = new AtomicLong();
+    hitCount = new LongAdder();
+    missCount = new LongAdder();
+    cacheCount = new LongAdder();
+    cacheSize = new LongAdder();
   }
 
   /**
@@ -139,17 +206,19 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onHit(Object readerCoreKey, Query query) {
-    hitCount += 1;
+    hitCount.increment();
   }
 
   /**
-   * Expert: callback when there is a cache miss on a given query.
+   * Expert: callback when there is a cache miss on a given query. This
+   * includes lookups that skipped the cache because another thread was
+   * updating the same stripe.
    * @see #onHit
    * @lucene.experimental
    */
   protected void onMiss(Object readerCoreKey, Query query) {
     assert query != null;
-    missCount += 1;
+    missCount.increment();
   }
 
   /**
@@ -160,7 +229,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onQueryCache(Query query, long ramBytesUsed) {
-    this.ramBytesUsed += ramBytesUsed;
+    this.ramBytesUsed.addAndGet(ramBytesUsed);
   }
 
   /**
@@ -169,7 +238,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onQueryEviction(Query query, long ramBytesUsed) {
-    this.ramBytesUsed -= ramBytesUsed;
+    this.ramBytesUsed.addAndGet(-ramBytesUsed);
   }
 
   /**
@@ -180,9 +249,9 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onDocIdSetCache(Object readerCoreKey, long ramBytesUsed) {
-    cacheSize += 1;
-    cacheCount += 1;
-    this.ramBytesUsed += ramBytesUsed;
+    cacheSize.increment();
+    cacheCount.increment();
+    this.ramBytesUsed.addAndGet(ramBytesUsed);
   }
 
   /**
@@ -192,8 +261,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onDocIdSetEviction(Object readerCoreKey, int numEntries, long sumRamBytesUsed) {
-    this.ramBytesUsed -= sumRamBytesUsed;
-    cacheSize -= numEntries;
+    this.ramBytesUsed.addAndGet(-sumRamBytesUsed);
+    cacheSize.add(-numEntries);
   }
 
   /**
@@ -201,166 +270,117 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onClear() {
-    ramBytesUsed = 0;
-    cacheSize = 0;
+    ramBytesUsed.set(0);
+    cacheSize.reset();
   }
 
-  /** Whether evictions are required. */
-  boolean requiresEviction() {
-    final int size = mostRecentlyUsedQueries.size();
-    if (size == 0) {
-      return false;
-    } else {
-      return size > maxSize || ramBytesUsed() > maxRamBytesUsed;
+  private Stripe stripe(Query key) {
+    if (stripes.length == 1) {
+      return stripes[0];
     }
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return stripes[(h & 0x7FFFFFFF) % stripes.length];
   }
 
-  synchronized DocIdSet get(Query key, LeafReaderContext context) {
+  DocIdSet get(Query key, LeafReaderContext context) {
     key = QueryCache.cacheKey(key);
-    final Object readerKey = context.reader().getCoreCacheKey();
-    final LeafCache leafCache = cache.get(readerKey);
-    if (leafCache == null) {
-      onMiss(readerKey, key);
-      return null;
+    final Stripe stripe = stripe(key);
+    stripe.lock.lock();
+    try {
+      return stripe.get(key, context);
+    } finally {
+      stripe.lock.unlock();
     }
-    // this get call moves the query to the most-recently-used position
-    final Query singleton = uniqueQueries.get(key);
-    if (singleton == null) {
-      onMiss(readerKey, key);
-      return null;
-    }
-    final DocIdSet cached = leafCache.get(singleton);
-    if (cached == null) {
-      onMiss(readerKey, singleton);
-    } else {
-      onHit(readerKey, singleton);
-    }
-    return cached;
   }
 
-  synchronized void putIfAbsent(Query query, LeafReaderContext context, DocIdSet set) {
-    // under a lock to make sure that mostRecentlyUsedQueries and cache remain sync'ed
+  void putIfAbsent(Query query, LeafReaderContext context, DocIdSet set) {
     // we don't want to have user-provided queries as keys in our cache since queries are mutable
     query = query.clone();
     query.setBoost(1f);
     assert query == QueryCache.cacheKey(query);
-    Query singleton = uniqueQueries.putIfAbsent(query, query);
-    if (singleton == null) {
-      onQueryCache(singleton, LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + ramBytesUsed(query));
-    } else {
-      query = singleton;
-    }
-    final Object key = context.reader().getCoreCacheKey();
-    LeafCache leafCache = cache.get(key);
-    if (leafCache == null) {
-      leafCache = new LeafCache(key);
-      final LeafCache previous = cache.put(context.reader().getCoreCacheKey(), leafCache);
-      ramBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY;
-      assert previous == null;
-      // we just created a new leaf cache, need to register a close listener
-      context.reader().addCoreClosedListener(new CoreClosedListener() {
-        @Override
-        public void onClose(Object ownerCoreCacheKey) {
-          clearCoreCacheKey(ownerCoreCacheKey);
-        }
-      });
-    }
-    leafCache.putIfAbsent(query, set);
-    evictIfNecessary();
-  }
-
-  synchronized void evictIfNecessary() {
-    // under a lock to make sure that mostRecentlyUsedQueries and cache keep sync'ed
-    if (requiresEviction()) {
-      
-      Iterator<Query> iterator = mostRecentlyUsedQueries.iterator();
-      do {
-        final Query query = iterator.next();
-        final int size = mostRecentlyUsedQueries.size();
-        iterator.remove();
-        if (size == mostRecentlyUsedQueries.size()) {
-          // size did not decrease, because the hash of the query changed since it has been
-          // put into the cache
-          throw new ConcurrentModificationException("Removal from the cache failed! This " +
-              "is probably due to a query which has been modified after having been put into " +
-              " the cache or a badly implemented clone(). Query class: [" + query.getClass() +
-              "], query: [" + query + "]");
-        }
-        onEviction(query);
-      } while (iterator.hasNext() && requiresEviction());
+    final Stripe stripe = stripe(query);
+    // under a lock to make sure that mostRecentlyUsedQueries and cache remain sync'ed
+    stripe.lock.lock();
+    try {
+      stripe.putIfAbsent(query, context, set);
+      stripe.evictIfNecessary();
+    } finally {
+      stripe.lock.unlock();
     }
   }
 
   /**
    * Remove all cache entries for the given core cache key.
    */
-  public synchronized void clearCoreCacheKey(Object coreKey) {
-    final LeafCache leafCache = cache.remove(coreKey);
-    if (leafCache != null) {
-      ramBytesUsed -= HASHTABLE_RAM_BYTES_PER_ENTRY;
-      onDocIdSetEviction(coreKey, leafCache.cache.size(), leafCache.ramBytesUsed);
+  public void clearCoreCacheKey(Object coreKey) {
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.clearCoreCacheKey(coreKey);
+      } finally {
+        stripe.lock.unlock();
+      }
     }
   }
 
   /**
    * Remove all cache entries for the given query.
    */
-  public synchronized void clearQuery(Query query) {
-    final Query singleton = uniqueQueries.remove(QueryCache.cacheKey(query));
-    if (singleton != null) {
-      onEviction(singleton);
-    }
-  }
-
-  private void onEviction(Query singleton) {
-    onQueryEviction(singleton, LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + ramBytesUsed(singleton));
-    for (LeafCache leafCache : cache.values()) {
-      leafCache.remove(singleton);
+  public void clearQuery(Query query) {
+    final Query key = QueryCache.cacheKey(query);
+    final Stripe stripe = stripe(key);
+    stripe.lock.lock();
+    try {
+      final Query singleton = stripe.uniqueQueries.remove(key);
+      if (singleton != null) {
+        stripe.onEviction(singleton);
+      }
+    } finally {
+      stripe.lock.unlock();
     }
   }
 
   /**
    * Clear the content of this cache.
    */
-  public synchronized void clear() {
-    cache.clear();
-    mostRecentlyUsedQueries.clear();
-    onClear();
-  }
-
-  // pkg-private for testing
-  synchronized void assertConsistent() {
-    if (requiresEviction()) {
-      throw new AssertionError("requires evictions: size=" + mostRecentlyUsedQueries.size()
-          + ", maxSize=" + maxSize + ", ramBytesUsed=" + ramBytesUsed() + ", maxRamBytesUsed=" + maxRamBytesUsed);
+  public void clear() {
+    // take all locks so that no entries get added while clearing
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
     }
-    for (LeafCache leafCache : cache.values()) {
-      Set<Query> keys = Collections.newSetFromMap(new IdentityHashMap<>());
-      keys.addAll(leafCache.cache.keySet());
-      keys.removeAll(mostRecentlyUsedQueries);
-      if (!keys.isEmpty()) {
-        throw new AssertionError("One leaf cache contains more keys than the top-level cache: " + keys);
+    try {
+      for (Stripe stripe : stripes) {
+        stripe.cache.clear();
+        stripe.mostRecentlyUsedQueries.clear();
+        stripe.ramBytesUsed = 0;
       }
-    }
-    long recomputedRamBytesUsed =
-          HASHTABLE_RAM_BYTES_PER_ENTRY * cache.size()
-        + LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY * uniqueQueries.size();
-    for (Query query : mostRecentlyUsedQueries) {
-      recomputedRamBytesUsed += ramBytesUsed(query);
-    }
-    for (LeafCache leafCache : cache.values()) {
-      recomputedRamBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY * leafCache.cache.size();
-      for (DocIdSet set : leafCache.cache.values()) {
-        recomputedRamBytesUsed += set.ramBytesUsed();
+      onClear();
+    } finally {
+      for (Stripe stripe : stripes) {
+        stripe.lock.unlock();
       }
     }
-    if (recomputedRamBytesUsed != ramBytesUsed) {
-      throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed + " != " + recomputedRamBytesUsed);
-    }
+  }
 
+  // pkg-private for testing
+  void assertConsistent() {
+    long recomputedRamBytesUsed = 0;
     long recomputedCacheSize = 0;
-    for (LeafCache leafCache : cache.values()) {
-      recomputedCacheSize += leafCache.cache.size();
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.assertConsistent();
+        recomputedRamBytesUsed += stripe.ramBytesUsed;
+        for (LeafCache leafCache : stripe.cache.values()) {
+          recomputedCacheSize += leafCache.cache.size();
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    if (recomputedRamBytesUsed != ramBytesUsed()) {
+      throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed() + " != " + recomputedRamBytesUsed);
     }
     if (recomputedCacheSize != getCacheSize()) {
       throw new AssertionError("cacheSize mismatch : " + getCacheSize() + " != " + recomputedCacheSize);
@@ -368,9 +388,18 @@ public class LRUQueryCache implements QueryCache, Accountable {
   }
 
   // pkg-private for testing
-  // return the list of cached queries in LRU order
-  synchronized List<Query> cachedQueries() {
-    return new ArrayList<>(mostRecentlyUsedQueries);
+  // return the list of cached queries in LRU order, stripe by stripe
+  List<Query> cachedQueries() {
+    final List<Query> cachedQueries = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        cachedQueries.addAll(stripe.mostRecentlyUsedQueries);
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return cachedQueries;
   }
 
   @Override
@@ -384,14 +413,21 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   @Override
   public long ramBytesUsed() {
-    return ramBytesUsed;
+    return ramBytesUsed.get();
   }
 
   @Override
   public Collection<Accountable> getChildResources() {
-    synchronized (this) {
-      return Accountables.namedAccountables("segment", cache);
+    final List<Accountable> resources = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        resources.addAll(Accountables.namedAccountables("segment", stripe.cache));
+      } finally {
+        stripe.lock.unlock();
+      }
     }
+    return Collections.unmodifiableList(resources);
   }
 
   /**
@@ -435,7 +471,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getMissCount()
    */
   public final long getHitCount() {
-    return hitCount;
+    return hitCount.sum();
   }
 
   /**
@@ -446,7 +482,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getHitCount()
    */
   public final long getMissCount() {
-    return missCount;
+    return missCount.sum();
   }
 
   /**
@@ -456,7 +492,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getEvictionCount()
    */
   public final long getCacheSize() {
-    return cacheSize;
+    return cacheSize.sum();
   }
 
   /**
@@ -469,7 +505,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getEvictionCount()
    */
   public final long getCacheCount() {
-    return cacheCount;
+    return cacheCount.sum();
   }
 
   /**
@@ -486,14 +522,185 @@ public class LRUQueryCache implements QueryCache, Accountable {
     return getCacheCount() - getCacheSize();
   }
 
-  // this class is not thread-safe, everything but ramBytesUsed needs to be called under a lock
+  // a subset of the cache, everything needs to be called under its lock
+  private class Stripe {
+
+    final ReentrantLock lock = new ReentrantLock();
+    final int maxSize;
+    final long maxRamBytesUsed;
+    // maps queries that are contained in the stripe to a singleton so that this
+    // cache does not store several copies of the same query
+    final Map<Query, Query> uniqueQueries;
+    // The contract between this set and the per-leaf caches is that per-leaf caches
+    // are only allowed to store sub-sets of the queries that are contained in
+    // mostRecentlyUsedQueries. This is why write operations are performed under a lock
+    final Set<Query> mostRecentlyUsedQueries;
+    final Map<Object, LeafCache> cache;
+    // sum of the memory usage of the entries of this stripe
+    volatile long ramBytesUsed;
+
+    Stripe(int maxSize, long maxRamBytesUsed) {
+      this.maxSize = maxSize;
+      this.maxRamBytesUsed = maxRamBytesUsed;
+      uniqueQueries = new LinkedHashMap<>(16, 0.75f, true);
+      mostRecentlyUsedQueries = uniqueQueries.keySet();
+      cache = new IdentityHashMap<>();
+      ramBytesUsed = 0;
+    }
+
+    /** Whether evictions are required. */
+    boolean requiresEviction() {
+      final int size = mostRecentlyUsedQueries.size();
+      if (size == 0) {
+        return false;
+      } else {
+        return size > maxSize || ramBytesUsed > maxRamBytesUsed;
+      }
+    }
+
+    DocIdSet get(Query key, LeafReaderContext context) {
+      assert lock.isHeldByCurrentThread();
+      assert key == QueryCache.cacheKey(key);
+      final Object readerKey = context.reader().getCoreCacheKey();
+      final LeafCache leafCache = cache.get(readerKey);
+      if (leafCache == null) {
+        onMiss(readerKey, key);
+        return null;
+      }
+      // this get call moves the query to the most-recently-used position
+      final Query singleton = uniqueQueries.get(key);
+      if (singleton == null) {
+        onMiss(readerKey, key);
+        return null;
+      }
+      final DocIdSet cached = leafCache.get(singleton);
+      if (cached == null) {
+        onMiss(readerKey, singleton);
+      } else {
+        onHit(readerKey, singleton);
+      }
+      return cached;
+    }
+
+    void putIfAbsent(Query query, LeafReaderContext context, DocIdSet set) {
+      assert lock.isHeldByCurrentThread();
+      final Object key = context.reader().getCoreCacheKey();
+      LeafCache leafCache = cache.get(key);
+      if (leafCache == null) {
+        // a new leaf cache needs a close listener: register it before changing
+        // anything since this fails if the reader has been closed in the meantime
+        context.reader().addCoreClosedListener(new CoreClosedListener() {
+          @Override
+          public void onClose(Object ownerCoreCacheKey) {
+            lock.lock();
+            try {
+              clearCoreCacheKey(ownerCoreCacheKey);
+            } finally {
+              lock.unlock();
+            }
+          }
+        });
+        leafCache = new LeafCache(this, key);
+        final LeafCache previous = cache.put(key, leafCache);
+        ramBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY;
+        LRUQueryCache.this.ramBytesUsed.addAndGet(HASHTABLE_RAM_BYTES_PER_ENTRY);
+        assert previous == null;
+      }
+      Query singleton = uniqueQueries.putIfAbsent(query, query);
+      if (singleton == null) {
+        final long queryRamBytesUsed = LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + LRUQueryCache.this.ramBytesUsed(query);
+        ramBytesUsed += queryRamBytesUsed;
+        onQueryCache(singleton, queryRamBytesUsed);
+      } else {
+        query = singleton;
+      }
+      leafCache.putIfAbsent(query, set);
+    }
+
+    void evictIfNecessary() {
+      assert lock.isHeldByCurrentThread();
+      if (requiresEviction()) {
+
+        Iterator<Query> iterator = mostRecentlyUsedQueries.iterator();
+        do {
+          final Query query = iterator.next();
+          final int size = mostRecentlyUsedQueries.size();
+          iterator.remove();
+          if (size == mostRecentlyUsedQueries.size()) {
+            // size did not decrease, because the hash of the query changed since it has been
+            // put into the cache
+            throw new ConcurrentModificationException("Removal from the cache failed! This " +
+                "is probably due to a query which has been modified after having been put into " +
+                " the cache or a badly implemented clone(). Query class: [" + query.getClass() +
+                "], query: [" + query + "]");
+          }
+          onEviction(query);
+        } while (iterator.hasNext() && requiresEviction());
+      }
+    }
+
+    void clearCoreCacheKey(Object coreKey) {
+      assert lock.isHeldByCurrentThread();
+      final LeafCache leafCache = cache.remove(coreKey);
+      if (leafCache != null) {
+        ramBytesUsed -= HASHTABLE_RAM_BYTES_PER_ENTRY + leafCache.ramBytesUsed;
+        LRUQueryCache.this.ramBytesUsed.addAndGet(-HASHTABLE_RAM_BYTES_PER_ENTRY);
+        onDocIdSetEviction(coreKey, leafCache.cache.size(), leafCache.ramBytesUsed);
+      }
+    }
+
+    void onEviction(Query singleton) {
+      assert lock.isHeldByCurrentThread();
+      final long queryRamBytesUsed = LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + LRUQueryCache.this.ramBytesUsed(singleton);
+      ramBytesUsed -= queryRamBytesUsed;
+      onQueryEviction(singleton, queryRamBytesUsed);
+      for (LeafCache leafCache : cache.values()) {
+        leafCache.remove(singleton);
+      }
+    }
+
+    void assertConsistent() {
+      assert lock.isHeldByCurrentThread();
+      if (requiresEviction()) {
+        throw new AssertionError("requires evictions: size=" + mostRecentlyUsedQueries.size()
+            + ", maxSize=" + maxSize + ", ramBytesUsed=" + ramBytesUsed + ", maxRamBytesUsed=" + maxRamBytesUsed);
+      }
+      for (LeafCache leafCache : cache.values()) {
+        Set<Query> keys = Collections.newSetFromMap(new IdentityHashMap<>());
+        keys.addAll(leafCache.cache.keySet());
+        keys.removeAll(mostRecentlyUsedQueries);
+        if (!keys.isEmpty()) {
+          throw new AssertionError("One leaf cache contains more keys than the top-level cache: " + keys);
+        }
+      }
+      long recomputedRamBytesUsed =
+            HASHTABLE_RAM_BYTES_PER_ENTRY * cache.size()
+          + LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY * uniqueQueries.size();
+      for (Query query : mostRecentlyUsedQueries) {
+        recomputedRamBytesUsed += LRUQueryCache.this.ramBytesUsed(query);
+      }
+      for (LeafCache leafCache : cache.values()) {
+        recomputedRamBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY * leafCache.cache.size();
+        for (DocIdSet set : leafCache.cache.values()) {
+          recomputedRamBytesUsed += set.ramBytesUsed();
+        }
+      }
+      if (recomputedRamBytesUsed != ramBytesUsed) {
+        throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed + " != " + recomputedRamBytesUsed);
+      }
+    }
+  }
+
+  // this class is not thread-safe, everything but ramBytesUsed needs to be called under the lock of its stripe
   private class LeafCache implements Accountable {
 
+    private final Stripe stripe;
     private final Object key;
     private final Map<Query, DocIdSet> cache;
     private volatile long ramBytesUsed;
 
-    LeafCache(Object key) {
+    LeafCache(Stripe stripe, Object key) {
+      this.stripe = stripe;
       this.key = key;
       cache = new IdentityHashMap<>();
       ramBytesUsed = 0;
@@ -501,11 +708,13 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
     private void onDocIdSetCache(long ramBytesUsed) {
       this.ramBytesUsed += ramBytesUsed;
+      stripe.ramBytesUsed += ramBytesUsed;
       LRUQueryCache.this.onDocIdSetCache(key, ramBytesUsed);
     }
 
     private void onDocIdSetEviction(long ramBytesUsed) {
       this.ramBytesUsed -= ramBytesUsed;
+      stripe.ramBytesUsed -= ramBytesUsed;
       LRUQueryCache.this.onDocIdSetEviction(key, 1, ramBytesUsed);
     }
 
@@ -537,7 +746,41 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   }
 
-  private class CachingWrapperWeight extends ConstantScoreWeight {
+  // identifies a cache entry that is being computed asynchronously, and
+  // tracks whether the core of its reader has been closed in the meantime
+  private static class PendingEntry implements CoreClosedListener {
+
+    private final Object readerCoreKey;
+    private final Query query;
+    private volatile boolean coreClosed;
+
+    PendingEntry(Object readerCoreKey, Query query) {
+      this.readerCoreKey = readerCoreKey;
+      this.query = query;
+    }
+
+    @Override
+    public void onClose(Object ownerCoreCacheKey) {
+      coreClosed = true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final PendingEntry that = (PendingEntry) obj;
+      return readerCoreKey == that.readerCoreKey && query.equals(that.query);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(readerCoreKey) + query.hashCode();
+    }
+  }
+
+  // package-private so that query plans can tell cached scorers
+  class CachingWrapperWeight extends ConstantScoreWeight {
 
     private final Weight in;
     private final QueryCachingPolicy policy;
@@ -556,7 +799,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
     private boolean cacheEntryHasReasonableWorstCaseSize(int maxDoc) {
       // The worst-case (dense) is a bit set which needs one bit per document
       final long worstCaseRamUsage = maxDoc / 8;
-      final long totalRamAvailable = maxRamBytesUsed;
+      // entries need to fit in a single stripe
+      final long totalRamAvailable = maxRamBytesUsed / stripes.length;
       // Imagine the worst-case that a cache entry is large than the size of
       // the cache: not only will this entry be trashed immediately but it
       // will also evict all current entries from the cache. For this reason
@@ -565,24 +809,186 @@ public class LRUQueryCache implements QueryCache, Accountable {
       return worstCaseRamUsage * 5 < totalRamAvailable;
     }
 
+    private void cacheAsynchronously(LeafReaderContext context) throws IOException {
+      final Query query = in.getQuery().clone();
+      query.setBoost(1f);
+      final PendingEntry pendingEntry = new PendingEntry(context.reader().getCoreCacheKey(), query);
+      if (pendingEntries.add(pendingEntry) == false) {
+        // another thread is already computing this entry
+        return;
+      }
+      // the task holds a reference on the reader so that it is not closed
+      // while the entry is computed
+      if (context.reader().tryIncRef() == false) {
+        pendingEntries.remove(pendingEntry);
+        return;
+      }
+      // entries of closed cores would never be evicted, so the task must know
+      // if the core is closed before it caches the entry
+      try {
+        context.reader().addCoreClosedListener(pendingEntry);
+      } catch (AlreadyClosedException e) {
+        pendingEntries.remove(pendingEntry);
+        context.reader().decRef();
+        return;
+      }
+      // exactly one of the thread that runs the task and the thread that
+      // cancels it before it starts releases the reader
+      final AtomicBoolean claimed = new AtomicBoolean();
+      final FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          if (claimed.compareAndSet(false, true) == false) {
+            // cancelled concurrently, the reader is released already
+            return null;
+          }
+          try {
+            final Scorer scorer = in.scorer(context, null);
+            final DocIdSet docIdSet = scorer == null ? DocIdSet.EMPTY : cacheImpl(scorer, context.reader());
+            final Stripe stripe = stripe(query);
+            stripe.lock.lock();
+            try {
+              // a core that is closed after this check clears the entry once
+              // it gets the lock of the stripe
+              if (pendingEntry.coreClosed == false) {
+                stripe.putIfAbsent(query, context, docIdSet);
+                stripe.evictIfNecessary();
+              }
+            } finally {
+              stripe.lock.unlock();
+            }
+          } catch (AlreadyClosedException e) {
+            // the reader has been closed in the meantime, nothing to cache
+          } catch (IOException e) {
+            // caching is best-effort, the query will be cached next time
+          } finally {
+            // if the reader was closed by its user in the meantime, this closes
+            // it and failures to release its resources are rethrown by done()
+            removePendingEntry(context, pendingEntry);
+          }
+          return null;
+        }
+      }) {
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+          // a running task releases the reader itself, so it is not interrupted
+          if (claimed.compareAndSet(false, true) == false) {
+            return false;
+          }
+          super.cancel(false);
+          try {
+            removePendingEntry(context, pendingEntry);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          return true;
+        }
+
+        @Override
+        protected void done() {
+          if (isCancelled()) {
+            return;
+          }
+          // nobody waits on this future: rethrow failures on the thread of
+          // the executor instead of swallowing them
+          try {
+            get();
+          } catch (InterruptedException e) {
+            throw new ThreadInterruptedException(e);
+          } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+              throw new UncheckedIOException((IOException) cause);
+            }
+            IOUtils.reThrowUnchecked(cause);
+          }
+        }
+      };
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // release the reader on this thread so that close failures are not lost
+        try {
+          task.cancel(false);
+        } catch (UncheckedIOException e2) {
+          throw e2.getCause();
+        }
+      }
+    }
+
+    private void removePendingEntry(LeafReaderContext context, PendingEntry pendingEntry) throws IOException {
+      pendingEntries.remove(pendingEntry);
+      try {
+        context.reader().removeCoreClosedListener(pendingEntry);
+      } catch (AlreadyClosedException e) {
+        // the listener goes away with the reader
+      }
+      context.reader().decRef();
+    }
+
+    // applies acceptDocs to a scorer that was created without them
+    private Scorer applyAcceptDocs(Scorer scorer, Bits acceptDocs) {
+      final TwoPhaseIterator inTwoPhase = scorer.asTwoPhaseIterator();
+      final DocIdSetIterator inApproximation = inTwoPhase == null ? scorer : inTwoPhase.approximation();
+      final TwoPhaseIterator twoPhaseView = new TwoPhaseIterator(inApproximation) {
+        @Override
+        public boolean matches() throws IOException {
+          final int doc = approximation.docID();
+          return acceptDocs.get(doc) && (inTwoPhase == null || inTwoPhase.matches());
+        }
+
+        @Override
+        public float matchCost() {
+          // a single bit lookup in live docs, then the wrapped scorer's check
+          return 1 + (inTwoPhase == null ? 0 : inTwoPhase.matchCost());
+        }
+      };
+      return new ConstantScoreScorer(this, 0f, twoPhaseView);
+    }
+
     @Override
     public Scorer scorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
+      return scorer(context, acceptDocs, Long.MAX_VALUE);
+    }
+
+    @Override
+    Scorer scorer(LeafReaderContext context, Bits acceptDocs, long leadCost) throws IOException {
       if (context.ord == 0) {
         policy.onUse(getQuery());
       }
-      DocIdSet docIdSet = get(in.getQuery(), context);
+      final Query key = QueryCache.cacheKey(in.getQuery());
+      final Stripe stripe = stripe(key);
+      // never block on lookups: if another thread is updating this stripe,
+      // run the query without the cache
+      if (stripe.lock.tryLock() == false) {
+        onMiss(context.reader().getCoreCacheKey(), key);
+        return in.scorer(context, acceptDocs, leadCost);
+      }
+      DocIdSet docIdSet;
+      try {
+        docIdSet = stripe.get(key, context);
+      } finally {
+        stripe.lock.unlock();
+      }
       if (docIdSet == null) {
         if (cacheEntryHasReasonableWorstCaseSize(ReaderUtil.getTopLevelContext(context).reader().maxDoc())
             && policy.shouldCache(in.getQuery(), context)) {
+          if (executor != null) {
+            cacheAsynchronously(context);
+            return in.scorer(context, acceptDocs, leadCost);
+          }
           final Scorer scorer = in.scorer(context, null);
           if (scorer == null) {
             docIdSet = DocIdSet.EMPTY;
+          } else if (scorer.cost() / SKIP_CACHE_FACTOR > leadCost) {
+            // cheaper to advance the filter to the few documents of the lead
+            return acceptDocs == null ? scorer : applyAcceptDocs(scorer, acceptDocs);
           } else {
             docIdSet = cacheImpl(scorer, context.reader());
           }
           putIfAbsent(in.getQuery(), context, docIdSet);
         } else {
-          return in.scorer(context, acceptDocs);
+          return in.scorer(context, acceptDocs, leadCost);
         }
       }
 
@@ -605,6 +1011,11 @@ public class LRUQueryCache implements QueryCache, Accountable {
             final int doc = approximation.docID();
             return acceptDocs.get(doc);
           }
+
+          @Override
+          public float matchCost() {
+            return 1; // a single bit lookup in live docs
+          }
         };
         return new ConstantScoreScorer(this, 0f, twoPhaseView);
       }
@@ -192,6 +192,7 @@ public class MultiPhraseQuery extends Query {
 
       // Reuse single TermsEnum below:
       final TermsEnum termsEnum = fieldTerms.iterator();
+      float totalMatchCost = 0;
 
       for (int pos=0; pos<postingsFreqs.length; pos++) {
         Term[] terms = termArrays.get(pos);
@@ -201,6 +202,7 @@ public class MultiPhraseQuery extends Query {
           TermState termState = termContexts.get(term).get(context.ord);
           if (termState != null) {
             termsEnum.seekExact(term.bytes(), termState);
+            totalMatchCost += PhraseQuery.termPositionsCost(termsEnum);
             postings.add(termsEnum.postings(liveDocs, null, PostingsEnum.POSITIONS));
           }
         }
@@ -225,9 +227,9 @@ public class MultiPhraseQuery extends Query {
       }
 
       if (slop == 0) {
-        return new ExactPhraseScorer(this, postingsFreqs, similarity.simScorer(stats, context), needsScores);
+        return new ExactPhraseScorer(this, postingsFreqs, similarity.simScorer(stats, context), needsScores, totalMatchCost);
       } else {
-        return new SloppyPhraseScorer(this, postingsFreqs, slop, similarity.simScorer(stats, context), needsScores);
+        return new SloppyPhraseScorer(this, postingsFreqs, slop, similarity.simScorer(stats, context), needsScores, totalMatchCost);
       }
     }
 
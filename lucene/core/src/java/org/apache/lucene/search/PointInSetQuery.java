@@ -0,0 +1,279 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.lucene.document.BinaryPoint;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ToStringUtils;
+import org.apache.lucene.util.bkd.BKDUtil;
+
+/**
+ * Abstract query class to find all documents whose single or multi-dimensional point values, previously indexed with e.g. {@link IntPoint},
+ * is contained in the specified set.
+ * <p>
+ * This is for subclasses and works on the underlying binary encoding: to
+ * create set queries for lucene's standard {@code Point} types, refer to factory
+ * methods on those classes, e.g. {@link IntPoint#newSetQuery IntPoint.newSetQuery()} for
+ * fields indexed with {@link IntPoint}.
+ * <p>
+ * The score of each hit is the query boost.
+ * @see IntPoint
+ * @see LongPoint
+ * @see FloatPoint
+ * @see DoublePoint
+ * @see BinaryPoint
+ *
+ * @lucene.experimental
+ */
+public abstract class PointInSetQuery extends Query {
+  // A sorted, de-duplicated array of packed points:
+  final byte[][] sortedPackedPoints;
+  final String field;
+  final int numDims;
+  final int bytesPerDim;
+
+  /**
+   * Expert: create a set query for point values.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param numDims number of dimensions.
+   * @param bytesPerDim number of bytes per dimension.
+   * @param packedPoints the packed points to match; must all have length {@code numDims * bytesPerDim}.
+   */
+  protected PointInSetQuery(String field, int numDims, int bytesPerDim, byte[]... packedPoints) {
+    this.field = Objects.requireNonNull(field, "field must not be null");
+    if (bytesPerDim < 1 || bytesPerDim > PointValues.MAX_NUM_BYTES) {
+      throw new IllegalArgumentException("bytesPerDim must be > 0 and <= " + PointValues.MAX_NUM_BYTES + "; got " + bytesPerDim);
+    }
+    if (numDims < 1 || numDims > PointValues.MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("numDims must be > 0 and <= " + PointValues.MAX_DIMENSIONS + "; got " + numDims);
+    }
+    this.numDims = numDims;
+    this.bytesPerDim = bytesPerDim;
+
+    final int packedBytesLength = numDims * bytesPerDim;
+    byte[][] points = new byte[packedPoints.length][];
+    for (int i = 0; i < packedPoints.length; i++) {
+      byte[] point = Objects.requireNonNull(packedPoints[i], "point must not be null");
+      if (point.length != packedBytesLength) {
+        throw new IllegalArgumentException("all points must have length numDims * bytesPerDim = " + packedBytesLength + "; got " + point.length);
+      }
+      points[i] = point.clone();
+    }
+
+    Arrays.sort(points, new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+          return BKDUtil.compare(packedBytesLength, a, 0, b, 0);
+        }
+      });
+
+    // De-dup:
+    List<byte[]> unique = new ArrayList<>();
+    for (byte[] point : points) {
+      if (unique.isEmpty() || Arrays.equals(unique.get(unique.size()-1), point) == false) {
+        unique.add(point);
+      }
+    }
+    sortedPackedPoints = unique.toArray(new byte[unique.size()][]);
+  }
+
+  @Override
+  public final Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+
+    // We don't use RandomAccessWeight here: it's no good to approximate with "match all docs".
+    // This is an inverted structure and should be used in the first pass:
+
+    return new ConstantScoreWeight(this) {
+
+      @Override
+      public Scorer scorer(LeafReaderContext context, final Bits acceptDocs) throws IOException {
+        LeafReader reader = context.reader();
+        PointValues values = reader.getPointValues();
+        if (values == null) {
+          // No docs in this segment indexed any points
+          return null;
+        }
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null || fieldInfo.getPointDimensionCount() == 0) {
+          // No docs in this segment indexed this field at all
+          return null;
+        }
+        if (fieldInfo.getPointDimensionCount() != numDims) {
+          throw new IllegalArgumentException("field=\"" + field + "\" was indexed with numDims=" + fieldInfo.getPointDimensionCount() + " but this query has numDims=" + numDims);
+        }
+        if (fieldInfo.getPointNumBytes() != bytesPerDim) {
+          throw new IllegalArgumentException("field=\"" + field + "\" was indexed with bytesPerDim=" + fieldInfo.getPointNumBytes() + " but this query has bytesPerDim=" + bytesPerDim);
+        }
+
+        final FixedBitSet result = new FixedBitSet(reader.maxDoc());
+        final int[] hitCount = new int[1];
+        values.intersect(field, new MatchPointVisitor(result, hitCount, acceptDocs));
+
+        // NOTE: hitCount[0] will be over-estimate in multi-valued case
+        return new ConstantScoreScorer(this, score(), new BitSetIterator(result, hitCount[0]));
+      }
+    };
+  }
+
+  /** Visits all points and cells, marking the docs whose point is in the set. */
+  private class MatchPointVisitor implements IntersectVisitor {
+    private final FixedBitSet result;
+    private final int[] hitCount;
+    private final Bits acceptDocs;
+    private final int packedBytesLength = numDims * bytesPerDim;
+
+    MatchPointVisitor(FixedBitSet result, int[] hitCount, Bits acceptDocs) {
+      this.result = result;
+      this.hitCount = hitCount;
+      this.acceptDocs = acceptDocs;
+    }
+
+    @Override
+    public void visit(int docID) {
+      if (acceptDocs == null || acceptDocs.get(docID)) {
+        result.set(docID);
+        hitCount[0]++;
+      }
+    }
+
+    @Override
+    public void visit(int docID, byte[] packedValue) {
+      int index = firstPointAtOrAbove(packedValue);
+      if (index < sortedPackedPoints.length && Arrays.equals(sortedPackedPoints[index], packedValue)) {
+        visit(docID);
+      }
+    }
+
+    @Override
+    public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+      // Points are sorted by their full packed value, so only the first dimension is ordered;
+      // the other dimensions are checked per candidate point:
+      for (int i = firstPointAtOrAbove(minPackedValue); i < sortedPackedPoints.length; i++) {
+        byte[] point = sortedPackedPoints[i];
+        if (BKDUtil.compare(bytesPerDim, point, 0, maxPackedValue, 0) > 0) {
+          break;
+        }
+        if (cellContains(point, minPackedValue, maxPackedValue)) {
+          if (Arrays.equals(minPackedValue, maxPackedValue)) {
+            // This cell only holds copies of this one point
+            return Relation.CELL_INSIDE_QUERY;
+          }
+          return Relation.CELL_CROSSES_QUERY;
+        }
+      }
+      return Relation.CELL_OUTSIDE_QUERY;
+    }
+
+    private boolean cellContains(byte[] point, byte[] minPackedValue, byte[] maxPackedValue) {
+      for (int dim = 0; dim < numDims; dim++) {
+        if (BKDUtil.compare(bytesPerDim, point, dim, minPackedValue, dim) < 0 ||
+            BKDUtil.compare(bytesPerDim, point, dim, maxPackedValue, dim) > 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns the index of the first point that is &gt;= the provided packed value */
+    private int firstPointAtOrAbove(byte[] packedValue) {
+      int lo = 0;
+      int hi = sortedPackedPoints.length - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int cmp = BKDUtil.compare(packedBytesLength, sortedPackedPoints[mid], 0, packedValue, 0);
+        if (cmp < 0) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return lo;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = 31 * hash + field.hashCode();
+    hash = 31 * hash + Arrays.deepHashCode(sortedPackedPoints);
+    hash = 31 * hash + numDims;
+    hash = 31 * hash + bytesPerDim;
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (super.equals(other) == false) {
+      return false;
+    }
+    final PointInSetQuery q = (PointInSetQuery) other;
+    return field.equals(q.field) &&
+      numDims == q.numDims &&
+      bytesPerDim == q.bytesPerDim &&
+      Arrays.deepEquals(sortedPackedPoints, q.sortedPackedPoints);
+  }
+
+  @Override
+  public String toString(String field) {
+    final StringBuilder sb = new StringBuilder();
+    if (this.field.equals(field) == false) {
+      sb.append(this.field);
+      sb.append(':');
+    }
+
+    sb.append("{");
+    for (int i = 0; i < sortedPackedPoints.length; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(toString(sortedPackedPoints[i]));
+    }
+    sb.append("}");
+    sb.append(ToStringUtils.boost(getBoost()));
+    return sb.toString();
+  }
+
+  /**
+   * Returns a string of a single value in a human-readable format for debugging.
+   * This is used by {@link #toString(String)}.
+   *
+   * @param value single value, never null
+   * @return human readable value for debugging
+   */
+  protected abstract String toString(byte[] value);
+}
@@ -0,0 +1,273 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.lucene.document.BinaryPoint;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ToStringUtils;
+import org.apache.lucene.util.bkd.BKDUtil;
+
+/**
+ * Abstract class for range queries against single or multidimensional points such as
+ * {@link IntPoint}.
+ * <p>
+ * This is for subclasses and works on the underlying binary encoding: to
+ * create range queries for lucene's standard {@code Point} types, refer to factory
+ * methods on those classes, e.g. {@link IntPoint#newRangeQuery IntPoint.newRangeQuery()} for
+ * fields indexed with {@link IntPoint}.
+ * <p>
+ * Both bounds of every dimension are inclusive. The score of each hit is the query boost.
+ * <p>
+ * <b>NOTE</b>: for fastest performance, this allocates FixedBitSet(maxDoc) for each segment.
+ * @see IntPoint
+ * @see LongPoint
+ * @see FloatPoint
+ * @see DoublePoint
+ * @see BinaryPoint
+ *
+ * @lucene.experimental
+ */
+public abstract class PointRangeQuery extends Query {
+  final String field;
+  final int numDims;
+  final int bytesPerDim;
+  final byte[] lowerPoint;
+  final byte[] upperPoint;
+
+  /**
+   * Expert: create a multidimensional range query for point values.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerPoint lower portion of the range (inclusive), packed.
+   * @param upperPoint upper portion of the range (inclusive), packed.
+   * @param numDims number of dimensions.
+   * @throws IllegalArgumentException if {@code field} is null, or if {@code lowerValue.length != upperValue.length}
+   */
+  protected PointRangeQuery(String field, byte[] lowerPoint, byte[] upperPoint, int numDims) {
+    this.field = Objects.requireNonNull(field, "field must not be null");
+    if (numDims <= 0) {
+      throw new IllegalArgumentException("numDims must be positive, got " + numDims);
+    }
+    if (numDims > PointValues.MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("numDims must be <= " + PointValues.MAX_DIMENSIONS + ", got " + numDims);
+    }
+    Objects.requireNonNull(lowerPoint, "lowerPoint must not be null");
+    Objects.requireNonNull(upperPoint, "upperPoint must not be null");
+    if (lowerPoint.length == 0) {
+      throw new IllegalArgumentException("lowerPoint has length of zero");
+    }
+    if (lowerPoint.length % numDims != 0) {
+      throw new IllegalArgumentException("lowerPoint is not a fixed multiple of numDims");
+    }
+    if (lowerPoint.length != upperPoint.length) {
+      throw new IllegalArgumentException("lowerPoint has length=" + lowerPoint.length + " but upperPoint has different length=" + upperPoint.length);
+    }
+    this.numDims = numDims;
+    this.bytesPerDim = lowerPoint.length / numDims;
+    this.lowerPoint = lowerPoint;
+    this.upperPoint = upperPoint;
+  }
+
+  /** Returns the field this query searches */
+  public String getField() {
+    return field;
+  }
+
+  /** Returns the number of dimensions */
+  public int getNumDims() {
+    return numDims;
+  }
+
+  /** Returns the number of bytes per dimension */
+  public int getBytesPerDim() {
+    return bytesPerDim;
+  }
+
+  /** Returns a copy of the packed lower point */
+  public byte[] getLowerPoint() {
+    return lowerPoint.clone();
+  }
+
+  /** Returns a copy of the packed upper point */
+  public byte[] getUpperPoint() {
+    return upperPoint.clone();
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+
+    // We don't use RandomAccessWeight here: it's no good to approximate with "match all docs".
+    // This is an inverted structure and should be used in the first pass:
+
+    return new ConstantScoreWeight(this) {
+
+      @Override
+      public Scorer scorer(LeafReaderContext context, final Bits acceptDocs) throws IOException {
+        LeafReader reader = context.reader();
+        PointValues values = reader.getPointValues();
+        if (values == null) {
+          // No docs in this segment indexed any points
+          return null;
+        }
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null || fieldInfo.getPointDimensionCount() == 0) {
+          // No docs in this segment indexed this field at all
+          return null;
+        }
+        if (fieldInfo.getPointDimensionCount() != numDims) {
+          throw new IllegalArgumentException("field=\"" + field + "\" was indexed with numDims=" + fieldInfo.getPointDimensionCount() + " but this query has numDims=" + numDims);
+        }
+        if (bytesPerDim != fieldInfo.getPointNumBytes()) {
+          throw new IllegalArgumentException("field=\"" + field + "\" was indexed with bytesPerDim=" + fieldInfo.getPointNumBytes() + " but this query has bytesPerDim=" + bytesPerDim);
+        }
+
+        final FixedBitSet result = new FixedBitSet(reader.maxDoc());
+        final int[] hitCount = new int[1];
+        values.intersect(field,
+                         new IntersectVisitor() {
+                           @Override
+                           public void visit(int docID) {
+                             if (acceptDocs == null || acceptDocs.get(docID)) {
+                               result.set(docID);
+                               hitCount[0]++;
+                             }
+                           }
+
+                           @Override
+                           public void visit(int docID, byte[] packedValue) {
+                             for(int dim=0;dim<numDims;dim++) {
+                               if (BKDUtil.compare(bytesPerDim, packedValue, dim, lowerPoint, dim) < 0) {
+                                 // Doc's value is too low, in this dimension
+                                 return;
+                               }
+                               if (BKDUtil.compare(bytesPerDim, packedValue, dim, upperPoint, dim) > 0) {
+                                 // Doc's value is too high, in this dimension
+                                 return;
+                               }
+                             }
+
+                             // Doc is in-bounds
+                             visit(docID);
+                           }
+
+                           @Override
+                           public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+
+                             boolean crosses = false;
+
+                             for(int dim=0;dim<numDims;dim++) {
+                               if (BKDUtil.compare(bytesPerDim, minPackedValue, dim, upperPoint, dim) > 0 ||
+                                   BKDUtil.compare(bytesPerDim, maxPackedValue, dim, lowerPoint, dim) < 0) {
+                                 return Relation.CELL_OUTSIDE_QUERY;
+                               }
+
+                               crosses |= BKDUtil.compare(bytesPerDim, minPackedValue, dim, lowerPoint, dim) < 0 ||
+                                 BKDUtil.compare(bytesPerDim, maxPackedValue, dim, upperPoint, dim) > 0;
+                             }
+
+                             if (crosses) {
+                               return Relation.CELL_CROSSES_QUERY;
+                             } else {
+                               return Relation.CELL_INSIDE_QUERY;
+                             }
+                           }
+                         });
+
+        // NOTE: hitCount[0] will be over-estimate in multi-valued case
+        return new ConstantScoreScorer(this, score(), new BitSetIterator(result, hitCount[0]));
+      }
+    };
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = 31 * hash + field.hashCode();
+    hash = 31 * hash + Arrays.hashCode(lowerPoint);
+    hash = 31 * hash + Arrays.hashCode(upperPoint);
+    hash = 31 * hash + numDims;
+    hash = 31 * hash + bytesPerDim;
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (super.equals(other) == false) {
+      return false;
+    }
+    final PointRangeQuery q = (PointRangeQuery) other;
+    return field.equals(q.field) &&
+      numDims == q.numDims &&
+      bytesPerDim == q.bytesPerDim &&
+      Arrays.equals(lowerPoint, q.lowerPoint) &&
+      Arrays.equals(upperPoint, q.upperPoint);
+  }
+
+  @Override
+  public String toString(String field) {
+    final StringBuilder sb = new StringBuilder();
+    if (this.field.equals(field) == false) {
+      sb.append(this.field);
+      sb.append(':');
+    }
+
+    // print ourselves as "range per dimension"
+    for (int i = 0; i < numDims; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+
+      int startOffset = bytesPerDim * i;
+
+      sb.append('[');
+      sb.append(toString(i, Arrays.copyOfRange(lowerPoint, startOffset, startOffset + bytesPerDim)));
+      sb.append(" TO ");
+      sb.append(toString(i, Arrays.copyOfRange(upperPoint, startOffset, startOffset + bytesPerDim)));
+      sb.append(']');
+    }
+    sb.append(ToStringUtils.boost(getBoost()));
+
+    return sb.toString();
+  }
+
+  /**
+   * Returns a string of a single value in a human-readable format for debugging.
+   * This is used by {@link #toString(String)}.
+   *
+   * @param dimension dimension of the particular value
+   * @param value single value, never null
+   * @return human readable value for debugging
+   */
+  protected abstract String toString(int dimension, byte[] value);
+}
@@ -0,0 +1,224 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.CollectionUtil;
+
+/**
+ * Expert: Describes how a query is executed: the scorers that were chosen
+ * for each segment, the order in which conjunctions iterate their clauses,
+ * and whether filters are served from the query cache, with the estimated
+ * {@link DocIdSetIterator#cost() cost} of each node and, for nodes that
+ * verify their matches in two phases, their
+ * {@link TwoPhaseIterator#matchCost() match cost}.
+ *
+ * @see IndexSearcher#explainPlan(Query, Collector)
+ * @lucene.experimental
+ */
+public final class QueryPlan {
+
+  /**
+   * Create a new plan node.
+   * @param description what this node does
+   * @param cost        the estimated number of documents that this node iterates
+   * @param matchCost   the estimated cost of verifying a document, or
+   *                    {@link Float#NaN} if the node does not verify its matches
+   * @param details     the plans of the sub nodes
+   */
+  public static QueryPlan of(String description, long cost, float matchCost, Collection<QueryPlan> details) {
+    return new QueryPlan(description, cost, matchCost, details);
+  }
+
+  private final String description;
+  private final long cost;
+  private final float matchCost;
+  private final List<QueryPlan> details;
+
+  private QueryPlan(String description, long cost, float matchCost, Collection<QueryPlan> details) {
+    this.description = Objects.requireNonNull(description);
+    this.cost = cost;
+    this.matchCost = matchCost;
+    this.details = Collections.unmodifiableList(new ArrayList<>(details));
+  }
+
+  /** A description of this node. */
+  public String getDescription() {
+    return description;
+  }
+
+  /** The estimated number of documents that this node iterates. */
+  public long getCost() {
+    return cost;
+  }
+
+  /** The estimated cost of verifying that a document matches, or
+   *  {@link Float#NaN} if this node does not verify its matches in two phases. */
+  public float getMatchCost() {
+    return matchCost;
+  }
+
+  /** The sub nodes of this plan, in the order in which they are iterated
+   *  for conjunctions. */
+  public QueryPlan[] getDetails() {
+    return details.toArray(new QueryPlan[0]);
+  }
+
+  /** Render a plan as text. */
+  @Override
+  public String toString() {
+    return toString(0);
+  }
+
+  private String toString(int depth) {
+    StringBuilder buffer = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      buffer.append("  ");
+    }
+    buffer.append(description);
+    buffer.append(" [cost=").append(cost);
+    if (Float.isNaN(matchCost) == false) {
+      buffer.append(", matchCost=").append(matchCost);
+    }
+    buffer.append("]\n");
+    for (QueryPlan detail : details) {
+      buffer.append(detail.toString(depth + 1));
+    }
+    return buffer.toString();
+  }
+
+  /** Describes how the given weight is executed on a segment, in the same way
+   *  as {@link IndexSearcher} does. */
+  static QueryPlan forLeaf(LeafReaderContext context, Weight weight, boolean needsAllHits) throws IOException {
+    final String description = "segment ord=" + context.ord + " maxDoc=" + context.reader().maxDoc();
+    final BulkScorer bulkScorer;
+    if (needsAllHits) {
+      bulkScorer = weight.bulkScorer(context, context.reader().getLiveDocs());
+    } else {
+      final Scorer scorer = weight.pruningScorer(context, context.reader().getLiveDocs());
+      bulkScorer = scorer == null ? null : new Weight.DefaultBulkScorer(scorer);
+    }
+    if (bulkScorer == null) {
+      return of(description + ", no match", 0, Float.NaN, Collections.<QueryPlan>emptyList());
+    }
+    return of(description, bulkScorer.cost(), Float.NaN, Collections.singletonList(forBulkScorer(bulkScorer)));
+  }
+
+  private static QueryPlan forBulkScorer(BulkScorer bulkScorer) throws IOException {
+    if (bulkScorer instanceof BooleanScorer) {
+      final BooleanScorer booleanScorer = (BooleanScorer) bulkScorer;
+      final List<QueryPlan> details = new ArrayList<>();
+      for (BulkScorer scorer : booleanScorer.scorers) {
+        details.add(forBulkScorer(scorer));
+      }
+      return of("BooleanScorer, scores windows of " + BooleanScorer.SIZE + " docs, minShouldMatch=" + booleanScorer.minShouldMatch,
+          bulkScorer.cost(), Float.NaN, details);
+    } else if (bulkScorer instanceof Weight.DefaultBulkScorer) {
+      final Scorer scorer = ((Weight.DefaultBulkScorer) bulkScorer).scorer;
+      return of("doc-at-a-time", bulkScorer.cost(), Float.NaN, Collections.singletonList(forIterator(scorer, null)));
+    } else {
+      return of(className(bulkScorer), bulkScorer.cost(), Float.NaN, Collections.<QueryPlan>emptyList());
+    }
+  }
+
+  private static QueryPlan forIterator(DocIdSetIterator iterator, String relationship) throws IOException {
+    final StringBuilder description = new StringBuilder();
+    if (relationship != null) {
+      description.append(relationship).append(' ');
+    }
+    description.append(className(iterator));
+    final List<QueryPlan> details = new ArrayList<>();
+    if (iterator instanceof Scorer) {
+      final Scorer scorer = (Scorer) iterator;
+      final Weight weight = scorer.getWeight();
+      if (weight != null) {
+        description.append('(').append(weight.getQuery()).append(')');
+        if (weight instanceof LRUQueryCache.CachingWrapperWeight) {
+          description.append(" from the query cache");
+        }
+      }
+      if (scorer instanceof ConjunctionScorer) {
+        addConjunctionDetails((ConjunctionScorer) scorer, details);
+      } else if (scorer instanceof ReqExclScorer) {
+        details.add(forIterator(scorer.getChildren().iterator().next().child, "MUST"));
+        details.add(forIterator(((ReqExclScorer) scorer).exclScorer, "MUST_NOT"));
+      } else if (scorer instanceof FilterScorer && scorer.getChildren().isEmpty()) {
+        details.add(forIterator(((FilterScorer) scorer).in, null));
+      } else {
+        for (Scorer.ChildScorer child : scorer.getChildren()) {
+          details.add(forIterator(child.child, child.relationship));
+        }
+      }
+    }
+    final TwoPhaseIterator twoPhase = TwoPhaseIterator.asTwoPhaseIterator(iterator);
+    final float matchCost = twoPhase == null ? Float.NaN : twoPhase.matchCost();
+    return of(description.toString(), iterator.cost(), matchCost, details);
+  }
+
+  /** Lists the clauses of a conjunction in the order in which {@link ConjunctionDISI}
+   *  iterates them: by increasing cost of their approximations. */
+  private static void addConjunctionDetails(ConjunctionScorer scorer, List<QueryPlan> details) throws IOException {
+    final List<DocIdSetIterator> scoring = new ArrayList<>();
+    for (Scorer.ChildScorer child : scorer.getChildren()) {
+      scoring.add(child.child);
+    }
+    final List<DocIdSetIterator> required = new ArrayList<>(scorer.required);
+    CollectionUtil.timSort(required, new Comparator<DocIdSetIterator>() {
+      @Override
+      public int compare(DocIdSetIterator o1, DocIdSetIterator o2) {
+        return Long.compare(approximationCost(o1), approximationCost(o2));
+      }
+    });
+    for (int i = 0; i < required.size(); ++i) {
+      final DocIdSetIterator iterator = required.get(i);
+      final String relationship = (i == 0 ? "lead " : "") + (containsIdentity(scoring, iterator) ? "MUST" : "FILTER");
+      details.add(forIterator(iterator, relationship));
+    }
+  }
+
+  private static long approximationCost(DocIdSetIterator iterator) {
+    final TwoPhaseIterator twoPhase = TwoPhaseIterator.asTwoPhaseIterator(iterator);
+    return twoPhase == null ? iterator.cost() : twoPhase.approximation().cost();
+  }
+
+  private static boolean containsIdentity(List<DocIdSetIterator> iterators, DocIdSetIterator iterator) {
+    for (DocIdSetIterator it : iterators) {
+      if (it == iterator) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String className(Object o) {
+    Class<?> clazz = o.getClass();
+    while (clazz.getSimpleName().isEmpty()) {
+      // anonymous class: describe the class it extends
+      clazz = clazz.getSuperclass();
+    }
+    return clazz.getSimpleName();
+  }
+}
@@ -66,6 +66,12 @@ public abstract class RandomAccessWeight extends ConstantScoreWeight {
 
         return matchingDocs.get(doc);
       }
+
+      @Override
+      public float matchCost() {
+        // random access to doc values, typically a few lookups in packed ints
+        return 10;
+      }
     };
 
     return new ConstantScoreScorer(this, score(), twoPhase);
@@ -30,6 +30,7 @@ import java.util.Collections;
 class ReqExclScorer extends Scorer {
 
   private final Scorer reqScorer;
+  final Scorer exclScorer; // for query plans
   // approximations of the scorers, or the scorers themselves if they don't support approximations
   private final DocIdSetIterator reqApproximation;
   private final DocIdSetIterator exclApproximation;
@@ -44,6 +45,7 @@ class ReqExclScorer extends Scorer {
   public ReqExclScorer(Scorer reqScorer, Scorer exclScorer) {
     super(reqScorer.weight);
     this.reqScorer = reqScorer;
+    this.exclScorer = exclScorer;
     reqTwoPhaseIterator = reqScorer.asTwoPhaseIterator();
     if (reqTwoPhaseIterator == null) {
       reqApproximation = reqScorer;
@@ -126,6 +128,22 @@ class ReqExclScorer extends Scorer {
     return Collections.singleton(new ChildScorer(reqScorer, "MUST"));
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    // excluding docs can only lower the number of matches, not their scores
+    reqScorer.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    return reqScorer.advanceShallow(target);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    return reqScorer.getMaxScore(upTo);
+  }
+
   @Override
   public int advance(int target) throws IOException {
     return toNonExcluded(reqApproximation.advance(target));
@@ -149,6 +167,16 @@ class ReqExclScorer extends Scorer {
         return ReqExclScorer.matches(doc, exclDoc, reqTwoPhaseIterator, exclTwoPhaseIterator);
       }
 
+      @Override
+      public float matchCost() {
+        // the excluded iterator is advanced, and possibly verified, too
+        float matchCost = reqTwoPhaseIterator.matchCost() + 1;
+        if (exclTwoPhaseIterator != null) {
+          matchCost += exclTwoPhaseIterator.matchCost();
+        }
+        return matchCost;
+      }
+
     };
   }
 }
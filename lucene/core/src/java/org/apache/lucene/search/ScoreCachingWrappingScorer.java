@@ -53,6 +53,21 @@ public class ScoreCachingWrappingScorer extends FilterScorer {
     return curScore;
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    in.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    return in.advanceShallow(target);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    return in.getMaxScore(upTo);
+  }
+
   @Override
   public Collection<ChildScorer> getChildren() {
     return Collections.singleton(new ChildScorer(in, "CACHED"));
@@ -62,6 +62,46 @@ public abstract class Scorer extends DocIdSetIterator {
   /** Returns the freq of this Scorer on the current document */
   public abstract int freq() throws IOException;
 
+  /**
+   * Optional method: Tell the scorer that its iterator may safely ignore all
+   * documents whose score is less than or equal to the given {@code minScore}.
+   * This is only called by collectors that return {@code false} from
+   * {@link Collector#needsAllHits()}, and {@code minScore} never decreases
+   * across calls. The default implementation does nothing.
+   * @lucene.experimental
+   */
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+  }
+
+  /**
+   * Optional method: Advance to the block of documents that contains
+   * {@code target} in order to get scoring information about this block,
+   * without changing the current {@link #docID()}. Returns a doc ID that is
+   * greater than or equal to all documents of this block but less than the
+   * documents of the next block. {@code target} must be greater than or equal
+   * to {@link #docID()} and to all targets previously passed to this method,
+   * and subsequent calls to {@link #advance(int)} must not use lower targets.
+   * The default implementation returns {@link #NO_MORE_DOCS}.
+   * @see #getMaxScore(int)
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return NO_MORE_DOCS;
+  }
+
+  /**
+   * Optional method: Return an upper bound of the score of documents between
+   * the last target that this scorer was {@link #advanceShallow(int)
+   * shallow-advanced} to (inclusive) and {@code upTo} (inclusive). Passing
+   * {@link #NO_MORE_DOCS} returns an upper bound for all remaining
+   * documents. The default implementation returns
+   * {@link Float#POSITIVE_INFINITY}, meaning that no bound is known.
+   * @lucene.experimental
+   */
+  public float getMaxScore(int upTo) throws IOException {
+    return Float.POSITIVE_INFINITY;
+  }
+
   /** returns parent Weight
    * @lucene.experimental
    */
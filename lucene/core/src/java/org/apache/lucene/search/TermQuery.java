@@ -106,7 +106,10 @@ public class TermQuery extends Query {
       }
       PostingsEnum docs = termsEnum.postings(acceptDocs, null, needsScores ? PostingsEnum.FREQS : PostingsEnum.NONE);
       assert docs != null;
-      return new TermScorer(this, docs, similarity.simScorer(stats, context));
+      // every other document has a freq of at least 1
+      final long totalTermFreq = termsEnum.totalTermFreq();
+      final int maxFreq = totalTermFreq == -1 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, totalTermFreq - termsEnum.docFreq() + 1);
+      return new TermScorer(this, docs, similarity.simScorer(stats, context), maxFreq);
     }
 
     /**
@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.search.similarities.Similarity;
 
@@ -27,6 +28,11 @@ import org.apache.lucene.search.similarities.Similarity;
 final class TermScorer extends Scorer {
   private final PostingsEnum postingsEnum;
   private final Similarity.SimScorer docScorer;
+  // non-null if the postings expose per-block max freqs
+  private final ImpactsEnum impactsEnum;
+  // upper bound of the freq of any document for this term
+  private final int maxFreq;
+  private float minCompetitiveScore = Float.NEGATIVE_INFINITY;
 
   /**
    * Construct a <code>TermScorer</code>.
@@ -38,11 +44,15 @@ final class TermScorer extends Scorer {
    * @param docScorer
    *          The </code>Similarity.SimScorer</code> implementation
    *          to be used for score computations.
+   * @param maxFreq
+   *          An upper bound of the frequency of the term in any document.
    */
-  TermScorer(Weight weight, PostingsEnum td, Similarity.SimScorer docScorer) {
+  TermScorer(Weight weight, PostingsEnum td, Similarity.SimScorer docScorer, int maxFreq) {
     super(weight);
     this.docScorer = docScorer;
     this.postingsEnum = td;
+    this.impactsEnum = td instanceof ImpactsEnum ? (ImpactsEnum) td : null;
+    this.maxFreq = maxFreq;
   }
 
   @Override
@@ -62,6 +72,9 @@ final class TermScorer extends Scorer {
    */
   @Override
   public int nextDoc() throws IOException {
+    if (minCompetitiveScore != Float.NEGATIVE_INFINITY) {
+      return advance(postingsEnum.docID() + 1);
+    }
     return postingsEnum.nextDoc();
   }
 
@@ -82,9 +95,45 @@ final class TermScorer extends Scorer {
    */
   @Override
   public int advance(int target) throws IOException {
+    if (minCompetitiveScore != Float.NEGATIVE_INFINITY) {
+      // skip blocks that cannot produce competitive scores without decoding them
+      while (true) {
+        final int upTo = advanceShallow(target);
+        if (getMaxScore(upTo) > minCompetitiveScore) {
+          break;
+        }
+        if (upTo == NO_MORE_DOCS) {
+          // exhaust the iterator
+          return postingsEnum.advance(NO_MORE_DOCS);
+        }
+        target = upTo + 1;
+      }
+    }
     return postingsEnum.advance(target);
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    minCompetitiveScore = minScore;
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    if (impactsEnum == null) {
+      return NO_MORE_DOCS;
+    }
+    return impactsEnum.advanceShallow(target);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    int maxFreq = this.maxFreq;
+    if (impactsEnum != null) {
+      maxFreq = Math.min(maxFreq, impactsEnum.getMaxFreq(upTo));
+    }
+    return docScorer.maxScore(maxFreq);
+  }
+
   @Override
   public long cost() {
     return postingsEnum.cost();
@@ -29,6 +29,12 @@ import org.apache.lucene.index.LeafReaderContext;
  * instance of this collector you should know in advance whether documents are
  * going to be collected in doc Id order or not.
  *
+ * <p>If the total hit count is not needed, this collector can be created with
+ * {@code trackTotalHits=false}: it then tells scorers the minimum competitive
+ * score as soon as its queue is full, which allows them to skip over documents
+ * that cannot make it to the top hits. In that case
+ * {@link TopDocs#totalHits} is only a lower bound of the number of matches.
+ *
  * <p><b>NOTE</b>: The values {@link Float#NaN} and
  * {@link Float#NEGATIVE_INFINITY} are not valid scores.  This
  * collector will not properly collect hits with such
@@ -36,21 +42,32 @@ import org.apache.lucene.index.LeafReaderContext;
  */
 public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
-  abstract static class ScorerLeafCollector implements LeafCollector {
+  abstract class ScorerLeafCollector implements LeafCollector {
 
     Scorer scorer;
 
     @Override
     public void setScorer(Scorer scorer) throws IOException {
       this.scorer = scorer;
+      updateMinCompetitiveScore();
+    }
+
+    /** Tells the scorer about the score of the bottom of the queue, once
+     *  the queue is full and if hits do not need to be counted. */
+    void updateMinCompetitiveScore() throws IOException {
+      if (trackTotalHits == false && pqTop.score != Float.NEGATIVE_INFINITY) {
+        // since docs are collected in order, docs whose score is equal to the
+        // bottom of the queue cannot compete either
+        scorer.setMinCompetitiveScore(pqTop.score);
+      }
     }
 
   }
 
   private static class SimpleTopScoreDocCollector extends TopScoreDocCollector {
 
-    SimpleTopScoreDocCollector(int numHits) {
-      super(numHits);
+    SimpleTopScoreDocCollector(int numHits, boolean trackTotalHits) {
+      super(numHits, trackTotalHits);
     }
 
     @Override
@@ -77,6 +94,7 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          updateMinCompetitiveScore();
         }
 
       };
@@ -89,8 +107,8 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
     private final ScoreDoc after;
     private int collectedHits;
 
-    PagingTopScoreDocCollector(int numHits, ScoreDoc after) {
-      super(numHits);
+    PagingTopScoreDocCollector(int numHits, ScoreDoc after, boolean trackTotalHits) {
+      super(numHits, trackTotalHits);
       this.after = after;
       this.collectedHits = 0;
     }
@@ -135,6 +153,7 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          updateMinCompetitiveScore();
         }
       };
     }
@@ -165,23 +184,41 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
    * objects.
    */
   public static TopScoreDocCollector create(int numHits, ScoreDoc after) {
+    return create(numHits, after, true);
+  }
+
+  /**
+   * Creates a new {@link TopScoreDocCollector} given the number of hits to
+   * collect, the bottom of the previous page, and whether the total number of
+   * hits needs to be computed. When {@code trackTotalHits} is {@code false},
+   * scorers may skip over non-competitive documents and
+   * {@link TopDocs#totalHits} is only a lower bound of the number of matches.
+   *
+   * <p><b>NOTE</b>: The instances returned by this method
+   * pre-allocate a full array of length
+   * <code>numHits</code>, and fill the array with sentinel
+   * objects.
+   */
+  public static TopScoreDocCollector create(int numHits, ScoreDoc after, boolean trackTotalHits) {
 
     if (numHits <= 0) {
       throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
     }
 
     if (after == null) {
-      return new SimpleTopScoreDocCollector(numHits);
+      return new SimpleTopScoreDocCollector(numHits, trackTotalHits);
     } else {
-      return new PagingTopScoreDocCollector(numHits, after);
+      return new PagingTopScoreDocCollector(numHits, after, trackTotalHits);
     }
   }
 
+  final boolean trackTotalHits;
   ScoreDoc pqTop;
 
   // prevents instantiation
-  TopScoreDocCollector(int numHits) {
+  TopScoreDocCollector(int numHits, boolean trackTotalHits) {
     super(new HitQueue(numHits, true));
+    this.trackTotalHits = trackTotalHits;
     // HitQueue implements getSentinelObject to return a ScoreDoc, so we know
     // that at this point top() is already initialized.
     pqTop = pq.top();
@@ -212,4 +249,9 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
   public boolean needsScores() {
     return true;
   }
+
+  @Override
+  public boolean needsAllHits() {
+    return trackTotalHits;
+  }
 }
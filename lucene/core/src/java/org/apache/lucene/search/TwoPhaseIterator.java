@@ -93,6 +93,18 @@ public abstract class TwoPhaseIterator {
    *  {@link DocIdSetIterator#NO_MORE_DOCS} -- and at most once. */
   public abstract boolean matches() throws IOException;
 
+  /** An estimate of the expected cost to determine that a single document
+   *  {@link #matches()}. This can be called before iterating the documents of
+   *  {@link #approximation()}, and is used to verify the cheapest two-phase
+   *  iterators of a conjunction first. Returns an expected cost in number of
+   *  simple operations like processing an occurrence of a term or comparing
+   *  two numbers, not the expected number of documents that match.
+   *  <p>The default implementation returns a high cost, so that iterators
+   *  which do not know their cost are verified last. */
+  public float matchCost() {
+    return 1000f;
+  }
+
   /**
    * Returns a {@link TwoPhaseIterator} for this {@link DocIdSetIterator}
    * when available * otherwise returns null.
@@ -0,0 +1,233 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link Scorer} for pure disjunctions that implements block-max WAND: once
+ * a minimum competitive score is known through
+ * {@link #setMinCompetitiveScore(float)}, it uses the upper bounds of the
+ * scores of its sub scorers in order to skip over documents, and whole blocks
+ * of documents, that cannot produce competitive scores.
+ * <p>
+ * Sub scorers are kept sorted by their current doc ID. The <i>pivot</i> is
+ * the first sub scorer such that the sum of the maximum scores of the sub
+ * scorers up to it exceeds the minimum competitive score: no document before
+ * the pivot's doc ID can be competitive. Then the maximum scores of the blocks
+ * that contain the pivot's doc ID are summed up, and if they still cannot
+ * produce a competitive score, the whole range of documents that these blocks
+ * cover is skipped.
+ * <p>
+ * Scores are multiplied by the coordination factor of the number of matching
+ * sub scorers, so the sums of maximum scores are multiplied by the largest
+ * factor that the sub scorers they sum up could get.
+ * <p>
+ * All sub scorers must return a finite value from {@link #getMaxScore(int)}
+ * with {@link #NO_MORE_DOCS} as an argument.
+ */
+final class WANDScorer extends Scorer {
+
+  private static final class ScorerWrapper {
+    final Scorer scorer;
+    final float maxScore; // upper bound of the scores of all docs
+    int doc = -1;
+
+    ScorerWrapper(Scorer scorer) throws IOException {
+      this.scorer = scorer;
+      this.maxScore = scorer.getMaxScore(NO_MORE_DOCS);
+    }
+  }
+
+  /** Returns whether all given scorers can produce an upper bound of their scores. */
+  static boolean canScore(List<Scorer> scorers) throws IOException {
+    for (Scorer scorer : scorers) {
+      final float maxScore = scorer.getMaxScore(NO_MORE_DOCS);
+      if (Float.isInfinite(maxScore) || Float.isNaN(maxScore)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // sub scorers, sorted by doc ID
+  private final ScorerWrapper[] wrappers;
+  private final long cost;
+  // coord[i] is the factor of docs that match i sub scorers
+  private final float[] coord;
+  // maxCoord[i] is the maximum factor of docs that match at most i sub scorers
+  private final float[] maxCoord;
+  private float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  private int doc = -1;
+  // number of wrappers, at the beginning of the array, that are positioned on doc
+  private int numMatches;
+
+  WANDScorer(Weight weight, List<Scorer> scorers, float[] coord) throws IOException {
+    super(weight);
+    if (scorers.size() <= 1) {
+      throw new IllegalArgumentException("There must be at least 2 scorers");
+    }
+    wrappers = new ScorerWrapper[scorers.size()];
+    long cost = 0;
+    for (int i = 0; i < wrappers.length; ++i) {
+      wrappers[i] = new ScorerWrapper(scorers.get(i));
+      cost += wrappers[i].scorer.cost();
+    }
+    this.cost = cost;
+    this.coord = coord;
+    this.maxCoord = new float[wrappers.length + 1];
+    for (int i = 1; i <= wrappers.length; ++i) {
+      maxCoord[i] = Math.max(maxCoord[i - 1], coord[i]);
+    }
+  }
+
+  /** Returns an upper bound of the sum of scores whose exact sum is {@code sum}. */
+  private static float sumUpperBound(double sum) {
+    // scores are summed up in double precision and then cast to a float so
+    // the order of the summation only matters in case of a tie on the cast
+    return Math.nextUp((float) sum);
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    return advance(doc + 1);
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    final ScorerWrapper[] wrappers = this.wrappers;
+    numMatches = 0;
+    while (true) {
+      // move sub scorers that are behind
+      for (ScorerWrapper w : wrappers) {
+        if (w.doc < target) {
+          w.doc = w.scorer.advance(target);
+        }
+      }
+      sortByDoc();
+
+      // find the pivot: documents before it cannot be competitive
+      double maxScoreSum = 0;
+      int pivot = -1;
+      for (int i = 0; i < wrappers.length; ++i) {
+        maxScoreSum += wrappers[i].maxScore;
+        if (sumUpperBound(maxScoreSum) * maxCoord[i + 1] > minCompetitiveScore) {
+          pivot = i;
+          break;
+        }
+      }
+      if (pivot == -1) {
+        // even if all sub scorers matched, the score would not be competitive
+        return doc = NO_MORE_DOCS;
+      }
+      final int pivotDoc = wrappers[pivot].doc;
+      if (pivotDoc == NO_MORE_DOCS) {
+        return doc = NO_MORE_DOCS;
+      }
+      // all sub scorers that are on the pivot doc may contribute to its score
+      int last = pivot;
+      while (last + 1 < wrappers.length && wrappers[last + 1].doc == pivotDoc) {
+        last++;
+      }
+
+      if (minCompetitiveScore != Float.NEGATIVE_INFINITY) {
+        // only sub scorers up to last may match docs up to the doc of the next sub scorer
+        int upTo = last + 1 < wrappers.length ? wrappers[last + 1].doc - 1 : NO_MORE_DOCS;
+        for (int i = 0; i <= last; ++i) {
+          upTo = Math.min(upTo, wrappers[i].scorer.advanceShallow(pivotDoc));
+        }
+        double blockMaxScoreSum = 0;
+        for (int i = 0; i <= last; ++i) {
+          blockMaxScoreSum += wrappers[i].scorer.getMaxScore(upTo);
+        }
+        if (sumUpperBound(blockMaxScoreSum) * maxCoord[last + 1] <= minCompetitiveScore) {
+          // no doc between pivotDoc and upTo can be competitive
+          if (upTo == NO_MORE_DOCS) {
+            return doc = NO_MORE_DOCS;
+          }
+          target = upTo + 1;
+          continue;
+        }
+      }
+
+      if (wrappers[0].doc == pivotDoc) {
+        // all sub scorers up to the pivot are on the same doc
+        numMatches = last + 1;
+        return doc = pivotDoc;
+      }
+      target = pivotDoc;
+    }
+  }
+
+  /** Insertion sort by doc ID: only a few sub scorers move at a time so the
+   *  array is nearly sorted. */
+  private void sortByDoc() {
+    final ScorerWrapper[] wrappers = this.wrappers;
+    for (int i = 1; i < wrappers.length; ++i) {
+      final ScorerWrapper w = wrappers[i];
+      int j = i - 1;
+      while (j >= 0 && wrappers[j].doc > w.doc) {
+        wrappers[j + 1] = wrappers[j];
+        j--;
+      }
+      wrappers[j + 1] = w;
+    }
+  }
+
+  @Override
+  public float score() throws IOException {
+    double score = 0;
+    for (int i = 0; i < numMatches; ++i) {
+      score += wrappers[i].scorer.score();
+    }
+    return (float) score * coord[numMatches];
+  }
+
+  @Override
+  public int freq() throws IOException {
+    return numMatches;
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    assert minScore >= minCompetitiveScore;
+    this.minCompetitiveScore = minScore;
+  }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
+
+  @Override
+  public Collection<ChildScorer> getChildren() {
+    List<ChildScorer> children = new ArrayList<>();
+    for (ScorerWrapper w : wrappers) {
+      children.add(new ChildScorer(w.scorer, "SHOULD"));
+    }
+    return children;
+  }
+}
@@ -114,6 +114,29 @@ public abstract class Weight {
    */
   public abstract Scorer scorer(LeafReaderContext context, Bits acceptDocs) throws IOException;
 
+  /**
+   * Same as {@link #scorer(LeafReaderContext, Bits)}, for a {@link Scorer}
+   * that will only be advanced to the documents of another iterator of cost
+   * {@code leadCost}, such as a filter clause of a conjunction. Weights that
+   * have a choice of how to match documents, like the weights of the query
+   * cache, can pick the cheapest one for this lead.
+   */
+  Scorer scorer(LeafReaderContext context, Bits acceptDocs, long leadCost) throws IOException {
+    return scorer(context, acceptDocs);
+  }
+
+  /**
+   * Same as {@link #scorer(LeafReaderContext, Bits)}, for a top-level
+   * {@link Scorer} whose collector does not need all hits, and reports the
+   * minimum competitive score through {@link Scorer#setMinCompetitiveScore}.
+   * Weights that can skip non-competitive documents at some extra cost per
+   * document, like the weights of disjunctions, only do so for this scorer.
+   * @see Collector#needsAllHits()
+   */
+  Scorer pruningScorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
+    return scorer(context, acceptDocs);
+  }
+
   /**
    * Optional method, to return a {@link BulkScorer} to
    * score the query and send hits to a {@link Collector}.
@@ -148,7 +171,7 @@ public abstract class Weight {
   /** Just wraps a Scorer and performs top scoring using it.
    *  @lucene.internal */
   protected static class DefaultBulkScorer extends BulkScorer {
-    private final Scorer scorer;
+    final Scorer scorer;
 
     /** Sole constructor. */
     public DefaultBulkScorer(Scorer scorer) {
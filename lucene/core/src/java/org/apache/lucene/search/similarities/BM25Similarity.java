@@ -205,10 +205,12 @@ public class BM25Similarity extends Similarity {
 
     // compute freq-independent part of bm25 equation across all norm values
     float cache[] = new float[256];
+    float minCache = Float.POSITIVE_INFINITY;
     for (int i = 0; i < cache.length; i++) {
       cache[i] = k1 * ((1 - b) + b * decodeNormValue((byte)i) / avgdl);
+      minCache = Math.min(minCache, cache[i]);
     }
-    return new BM25Stats(collectionStats.field(), idf, queryBoost, avgdl, cache);
+    return new BM25Stats(collectionStats.field(), idf, queryBoost, avgdl, cache, minCache);
   }
 
   @Override
@@ -222,12 +224,14 @@ public class BM25Similarity extends Similarity {
     private final float weightValue; // boost * idf * (k1 + 1)
     private final NumericDocValues norms;
     private final float[] cache;
+    private final float minNorm; // the norm that yields the highest scores
     
     BM25DocScorer(BM25Stats stats, NumericDocValues norms) throws IOException {
       this.stats = stats;
       this.weightValue = stats.weight * (k1 + 1);
       this.cache = stats.cache;
       this.norms = norms;
+      this.minNorm = norms == null ? k1 : stats.minCache;
     }
     
     @Override
@@ -236,6 +240,19 @@ public class BM25Similarity extends Similarity {
       float norm = norms == null ? k1 : cache[(byte)norms.get(doc) & 0xFF];
       return weightValue * freq / (freq + norm);
     }
+
+    @Override
+    public float maxScore(float maxFreq) {
+      if (weightValue < 0 || minNorm < 0) {
+        // scores do not increase with freq
+        return Float.POSITIVE_INFINITY;
+      }
+      // the score increases with freq and decreases with the norm, and the
+      // norms of the actual documents are unknown so assume the shortest one.
+      // we scale the bound up a bit to account for rounding errors in score()
+      final double maxScore = weightValue * (double) maxFreq / (maxFreq + (double) minNorm);
+      return (float) (maxScore * (1 + 1e-6));
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
@@ -269,13 +286,16 @@ public class BM25Similarity extends Similarity {
     private final String field;
     /** precomputed norm[256] with k1 * ((1 - b) + b * dl / avgdl) */
     private final float cache[];
+    /** minimum value of the cache */
+    private final float minCache;
 
-    BM25Stats(String field, Explanation idf, float queryBoost, float avgdl, float cache[]) {
+    BM25Stats(String field, Explanation idf, float queryBoost, float avgdl, float cache[], float minCache) {
       this.field = field;
       this.idf = idf;
       this.queryBoost = queryBoost;
       this.avgdl = avgdl;
       this.cache = cache;
+      this.minCache = minCache;
     }
 
     @Override
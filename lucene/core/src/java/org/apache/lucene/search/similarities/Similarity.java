@@ -198,6 +198,20 @@ public abstract class Similarity {
      */
     public abstract float score(int doc, float freq);
 
+    /**
+     * Returns an upper bound of the score that {@link #score(int, float)}
+     * may return for any document whose frequency is less than or equal to
+     * {@code maxFreq}, or {@link Float#POSITIVE_INFINITY} if no such bound
+     * is known. This is used to skip over documents that cannot be
+     * competitive.
+     * <p>
+     * The default implementation returns {@link Float#POSITIVE_INFINITY}.
+     * @lucene.experimental
+     */
+    public float maxScore(float maxFreq) {
+      return Float.POSITIVE_INFINITY;
+    }
+
     /** Computes the amount of a sloppy phrase match, based on an edit distance. */
     public abstract float computeSlopFactor(int distance);
     
@@ -38,6 +38,7 @@ import org.apache.lucene.util.WeakIdentityMap;
  */
 abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessInput {
   protected final BufferCleaner cleaner;  
+  protected final BufferPrefetcher prefetcher;
   protected final long length;
   protected final long chunkSizeMask;
   protected final int chunkSizePower;
@@ -49,16 +50,16 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
   protected boolean isClone = false;
   protected final WeakIdentityMap<ByteBufferIndexInput,Boolean> clones;
   
-  public static ByteBufferIndexInput newInstance(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, BufferCleaner cleaner, boolean trackClones) {
+  public static ByteBufferIndexInput newInstance(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, BufferCleaner cleaner, BufferPrefetcher prefetcher, boolean trackClones) {
     final WeakIdentityMap<ByteBufferIndexInput,Boolean> clones = trackClones ? WeakIdentityMap.<ByteBufferIndexInput,Boolean>newConcurrentHashMap() : null;
     if (buffers.length == 1) {
-      return new SingleBufferImpl(resourceDescription, buffers[0], length, chunkSizePower, cleaner, clones);
+      return new SingleBufferImpl(resourceDescription, buffers[0], length, chunkSizePower, cleaner, prefetcher, clones);
     } else {
-      return new MultiBufferImpl(resourceDescription, buffers, 0, length, chunkSizePower, cleaner, clones);
+      return new MultiBufferImpl(resourceDescription, buffers, 0, length, chunkSizePower, cleaner, prefetcher, clones);
     }
   }
   
-  ByteBufferIndexInput(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, BufferCleaner cleaner, WeakIdentityMap<ByteBufferIndexInput,Boolean> clones) {
+  ByteBufferIndexInput(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, BufferCleaner cleaner, BufferPrefetcher prefetcher, WeakIdentityMap<ByteBufferIndexInput,Boolean> clones) {
     super(resourceDescription);
     this.buffers = buffers;
     this.length = length;
@@ -66,6 +67,7 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
     this.chunkSizeMask = (1L << chunkSizePower) - 1L;
     this.clones = clones;
     this.cleaner = cleaner;
+    this.prefetcher = prefetcher;
     assert chunkSizePower >= 0 && chunkSizePower <= 30;   
     assert (length >>> chunkSizePower) < Integer.MAX_VALUE;
   }
@@ -274,6 +276,37 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
     return buildSlice(sliceDescription, offset, length);
   }
 
+  /**
+   * Hands the buffer ranges that hold the given bytes of this index input to the {@link BufferPrefetcher}.
+   */
+  @Override
+  public final void prefetch(long offset, long length) throws IOException {
+    if (offset < 0 || length < 0 || offset+length > this.length) {
+      throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length + ": "  + this);
+    }
+    if (buffers == null) {
+      throw new AlreadyClosedException("Already closed: " + this);
+    }
+    if (prefetcher != null && length > 0) {
+      doPrefetch(offset, length);
+    }
+  }
+
+  /** Prefetches the given range of the buffers (may apply extra offset in subclasses). **/
+  protected void doPrefetch(long offset, long length) throws IOException {
+    final long end = offset + length;
+    final int startIndex = (int) (offset >>> chunkSizePower);
+    final int endIndex = (int) ((end - 1) >>> chunkSizePower);
+    for (int i = startIndex; i <= endIndex; i++) {
+      // work on a duplicate so that the position of this input does not change:
+      final ByteBuffer b = buffers[i].duplicate();
+      final long bufferStart = (long) i << chunkSizePower;
+      b.limit((int) (Math.min(end, bufferStart + b.capacity()) - bufferStart));
+      b.position((int) (Math.max(offset, bufferStart) - bufferStart));
+      prefetcher.prefetch(b);
+    }
+  }
+
   /** Builds the actual sliced IndexInput (may apply extra offset in subclasses). **/
   protected ByteBufferIndexInput buildSlice(String sliceDescription, long offset, long length) {
     if (buffers == null) {
@@ -299,9 +332,9 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
   protected ByteBufferIndexInput newCloneInstance(String newResourceDescription, ByteBuffer[] newBuffers, int offset, long length) {
     if (newBuffers.length == 1) {
       newBuffers[0].position(offset);
-      return new SingleBufferImpl(newResourceDescription, newBuffers[0].slice(), length, chunkSizePower, this.cleaner, this.clones);
+      return new SingleBufferImpl(newResourceDescription, newBuffers[0].slice(), length, chunkSizePower, this.cleaner, this.prefetcher, this.clones);
     } else {
-      return new MultiBufferImpl(newResourceDescription, newBuffers, offset, length, chunkSizePower, cleaner, clones);
+      return new MultiBufferImpl(newResourceDescription, newBuffers, offset, length, chunkSizePower, cleaner, prefetcher, clones);
     }
   }
   
@@ -385,13 +418,23 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
   static interface BufferCleaner {
     void freeBuffer(ByteBufferIndexInput parent, ByteBuffer b) throws IOException;
   }
+
+  /**
+   * Pass in an implementation of this interface to support {@link #prefetch}.
+   * The bytes between the buffer's position and limit will be read soon.
+   * MMapDirectory implements this to advise the operating system to load mapped pages.
+   */
+  @FunctionalInterface
+  static interface BufferPrefetcher {
+    void prefetch(ByteBuffer b) throws IOException;
+  }
   
   /** Optimization of ByteBufferIndexInput for when there is only one buffer */
   static final class SingleBufferImpl extends ByteBufferIndexInput {
 
     SingleBufferImpl(String resourceDescription, ByteBuffer buffer, long length, int chunkSizePower,
-        BufferCleaner cleaner, WeakIdentityMap<ByteBufferIndexInput,Boolean> clones) {
-      super(resourceDescription, new ByteBuffer[] { buffer }, length, chunkSizePower, cleaner, clones);
+        BufferCleaner cleaner, BufferPrefetcher prefetcher, WeakIdentityMap<ByteBufferIndexInput,Boolean> clones) {
+      super(resourceDescription, new ByteBuffer[] { buffer }, length, chunkSizePower, cleaner, prefetcher, clones);
       this.curBufIndex = 0;
       this.curBuf = buffer;
       buffer.position(0);
@@ -489,8 +532,8 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
     private final int offset;
     
     MultiBufferImpl(String resourceDescription, ByteBuffer[] buffers, int offset, long length, int chunkSizePower,
-        BufferCleaner cleaner, WeakIdentityMap<ByteBufferIndexInput,Boolean> clones) {
-      super(resourceDescription, buffers, length, chunkSizePower, cleaner, clones);
+        BufferCleaner cleaner, BufferPrefetcher prefetcher, WeakIdentityMap<ByteBufferIndexInput,Boolean> clones) {
+      super(resourceDescription, buffers, length, chunkSizePower, cleaner, prefetcher, clones);
       this.offset = offset;
       try {
         seek(0L);
@@ -530,6 +573,11 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
       return super.readLong(pos + offset);
     }
 
+    @Override
+    protected void doPrefetch(long ofs, long length) throws IOException {
+      super.doPrefetch(this.offset + ofs, length);
+    }
+
     @Override
     protected ByteBufferIndexInput buildSlice(String sliceDescription, long ofs, long length) {
       return super.buildSlice(sliceDescription, this.offset + ofs, length);
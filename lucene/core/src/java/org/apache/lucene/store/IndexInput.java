@@ -89,6 +89,20 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
    */
   public abstract IndexInput slice(String sliceDescription, long offset, long length) throws IOException;
 
+  /**
+   * Optional method: gives a hint that the bytes between {@code offset} and
+   * {@code offset+length} of this input will be read soon, so that
+   * implementations can start loading them in the background before they are
+   * decoded. This does not change the file pointer, and the bytes may as well
+   * never be read.
+   * <p>
+   * The default implementation does nothing.
+   *
+   * @lucene.experimental
+   */
+  public void prefetch(long offset, long length) throws IOException {
+  }
+
   /** Subclasses call this to get the String for resourceDescription of a slice of this {@code IndexInput}. */
   protected String getFullSliceDescription(String sliceDescription) {
     if (sliceDescription == null) {
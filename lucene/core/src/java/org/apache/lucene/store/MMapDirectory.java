@@ -34,6 +34,7 @@ import java.util.concurrent.Future;
 import java.lang.reflect.Method;
 
 import org.apache.lucene.store.ByteBufferIndexInput.BufferCleaner;
+import org.apache.lucene.store.ByteBufferIndexInput.BufferPrefetcher;
 import org.apache.lucene.util.Constants;
 
 /** File-based {@link Directory} implementation that uses
@@ -73,6 +74,16 @@ import org.apache.lucene.util.Constants;
  * {@link #UNMAP_SUPPORTED} is <code>true</code>, the workaround
  * will be automatically enabled (with no guarantees; if you discover
  * any problems, you can disable it).
+ *
+ * <p>Every file is given {@link ReadAdvice access pattern advice} when
+ * it is opened, see {@link #getReadAdvice}. In files with
+ * {@link ReadAdvice#RANDOM} advice, {@link IndexInput#prefetch} asks the
+ * operating system to load the prefetched pages in the background. The
+ * advice is handed to {@link #advise}, which only supports
+ * {@link ReadAdvice#WILL_NEED} (if {@link #PREFETCH_SUPPORTED} is
+ * <code>true</code>), since Java has no API for the others. The
+ * {@code NativeMMapDirectory} from the Lucene {@code misc} module
+ * supports all of them through native code.
  * <p>
  * <b>NOTE:</b> Accessing this class either directly or
  * indirectly from a thread while it's interrupted can close the
@@ -89,6 +100,28 @@ public class MMapDirectory extends FSDirectory {
   private boolean useUnmapHack = UNMAP_SUPPORTED;
   private boolean preload;
 
+  /**
+   * Access pattern advice for mapped memory.
+   * @see #getReadAdvice
+   * @see #advise
+   * @lucene.experimental
+   */
+  public enum ReadAdvice {
+    /** No special advice: the operating system reads ahead as usual. */
+    NORMAL,
+    /** Pages will be read in order, so the operating system may read ahead
+     *  aggressively and free pages soon after they were read. */
+    SEQUENTIAL,
+    /** Pages will be read in random order, so reading ahead is wasted.
+     *  Only files with this advice honor {@link IndexInput#prefetch}: the
+     *  operating system already reads ahead around the pages that are
+     *  accessed in other files. */
+    RANDOM,
+    /** Pages will be read soon, so the operating system should start
+     *  loading them in the background. */
+    WILL_NEED
+  }
+
   /** 
    * Default max chunk size.
    * @see #MMapDirectory(Path, LockFactory, int)
@@ -218,6 +251,47 @@ public class MMapDirectory extends FSDirectory {
     return preload;
   }
   
+  /**
+   * Returns the access pattern advice for the given file, which is opened
+   * with the given context. The default advises {@link ReadAdvice#SEQUENTIAL}
+   * reads for merges and for files that are read once, and
+   * {@link ReadAdvice#NORMAL} reads otherwise. Subclasses may override this
+   * to give advice per file type, for instance {@link ReadAdvice#RANDOM}
+   * for stored fields, which are usually fetched for a few documents only.
+   * <p>
+   * Note that the files of compound segments are opened as a single
+   * compound file.
+   *
+   * @lucene.experimental
+   */
+  protected ReadAdvice getReadAdvice(String name, IOContext context) {
+    if (context.context == IOContext.Context.MERGE || context.readOnce) {
+      return ReadAdvice.SEQUENTIAL;
+    }
+    return ReadAdvice.NORMAL;
+  }
+
+  /**
+   * Gives the operating system access pattern advice for the mapped memory
+   * between the buffer's position and limit. This is called for each mapped
+   * chunk of a file when it is opened, unless {@link #getReadAdvice} returned
+   * {@link ReadAdvice#NORMAL}, and with {@link ReadAdvice#WILL_NEED} on
+   * {@link IndexInput#prefetch} of files with {@link ReadAdvice#RANDOM}
+   * advice. The advice is best-effort: implementations
+   * must not read the buffer, and should ignore advice that they cannot give.
+   * <p>
+   * The default implementation only supports {@link ReadAdvice#WILL_NEED},
+   * if {@link #PREFETCH_SUPPORTED} is <code>true</code>, and returns without
+   * waiting for the pages to be loaded.
+   *
+   * @lucene.experimental
+   */
+  protected void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+    if (advice == ReadAdvice.WILL_NEED && PREFETCHER != null) {
+      PREFETCHER.prefetch(buffer);
+    }
+  }
+
   /**
    * Returns the current mmap chunk size.
    * @see #MMapDirectory(Path, LockFactory, int)
@@ -234,9 +308,20 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + path.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
-      return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, useUnmap ? CLEANER : null, useUnmap);
+      final ByteBuffer[] buffers = map(resourceDescription, c, 0, c.size());
+      final ReadAdvice advice = getReadAdvice(name, context);
+      if (advice != ReadAdvice.NORMAL) {
+        for (ByteBuffer buffer : buffers) {
+          if (buffer.hasRemaining()) {
+            advise(buffer.duplicate(), advice);
+          }
+        }
+      }
+      final BufferPrefetcher prefetcher = advice == ReadAdvice.RANDOM
+          ? (ByteBuffer buffer) -> advise(buffer, ReadAdvice.WILL_NEED)
+          : null;
+      return ByteBufferIndexInput.newInstance(resourceDescription, buffers,
+          c.size(), chunkSizePower, useUnmap ? CLEANER : null, prefetcher, useUnmap);
     }
   }
 
@@ -274,6 +359,61 @@ public class MMapDirectory extends FSDirectory {
     return buffers;
   }
   
+  /**
+   * <code>true</code>, if this platform supports {@link ReadAdvice#WILL_NEED}
+   * advice, and hence {@link IndexInput#prefetch}, without native code.
+   */
+  public static final boolean PREFETCH_SUPPORTED;
+  private static final Prefetcher PREFETCHER;
+  static {
+    PREFETCHER = AccessController.doPrivileged((PrivilegedAction<Prefetcher>) MMapDirectory::newPrefetcher);
+    PREFETCH_SUPPORTED = PREFETCHER != null;
+  }
+
+  private static Prefetcher newPrefetcher() {
+    try {
+      return new Prefetcher();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Advises the operating system to load mapped pages in the background,
+   * with the same madvise call that {@link MappedByteBuffer#load} makes
+   * before it touches each page, using undocumented internal functionality.
+   */
+  private static final class Prefetcher {
+    private final Method load0, address;
+    private final long pageSize;
+
+    Prefetcher() throws Exception {
+      load0 = MappedByteBuffer.class.getDeclaredMethod("load0", long.class, long.class);
+      load0.setAccessible(true);
+      address = Class.forName("sun.nio.ch.DirectBuffer").getMethod("address");
+      final Method pageSizeMethod = Class.forName("java.nio.Bits").getDeclaredMethod("pageSize");
+      pageSizeMethod.setAccessible(true);
+      pageSize = ((Number) pageSizeMethod.invoke(null)).longValue();
+      if (Long.bitCount(pageSize) != 1) {
+        throw new IllegalStateException("page size is not a power of 2: " + pageSize);
+      }
+    }
+
+    void prefetch(ByteBuffer buffer) {
+      if (buffer instanceof MappedByteBuffer == false || buffer.hasRemaining() == false) {
+        return;
+      }
+      try {
+        final long start = (Long) address.invoke(buffer) + buffer.position();
+        // madvise needs a page-aligned address:
+        final long alignedStart = start & ~(pageSize - 1);
+        load0.invoke(buffer, alignedStart, start + buffer.remaining() - alignedStart);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // it's only advice
+      }
+    }
+  }
+
   private IOException convertMapFailedIOException(IOException ioe, String resourceDescription, int bufSize) {
     final String originalMessage;
     final Throwable originalCause;
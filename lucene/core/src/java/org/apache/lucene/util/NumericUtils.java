@@ -581,5 +581,71 @@ public final class NumericUtils {
   public static long getMaxLong(Terms terms) throws IOException {
     return NumericUtils.prefixCodedToLong(longTerms(terms).getMax());
   }
-  
+
+  /**
+   * Encodes an integer {@code value} such that unsigned byte order comparison
+   * is consistent with {@link Integer#compare(int, int)}: the sign bit is
+   * flipped and the value is written big-endian into 4 bytes of {@code result}
+   * starting at {@code offset}.
+   * @see #sortableBytesToInt(byte[], int)
+   */
+  public static void intToSortableBytes(int value, byte[] result, int offset) {
+    // Flip the sign bit, so negative ints sort before positive ints correctly:
+    value ^= 0x80000000;
+    result[offset] =   (byte) (value >> 24);
+    result[offset+1] = (byte) (value >> 16);
+    result[offset+2] = (byte) (value >>  8);
+    result[offset+3] = (byte) value;
+  }
+
+  /**
+   * Decodes an integer value previously written with {@link #intToSortableBytes}
+   * @see #intToSortableBytes(int, byte[], int)
+   */
+  public static int sortableBytesToInt(byte[] encoded, int offset) {
+    int x = ((encoded[offset] & 0xFF) << 24)   |
+            ((encoded[offset+1] & 0xFF) << 16) |
+            ((encoded[offset+2] & 0xFF) <<  8) |
+             (encoded[offset+3] & 0xFF);
+    // Re-flip the sign bit to restore the original value:
+    return x ^ 0x80000000;
+  }
+
+  /**
+   * Encodes a long {@code value} such that unsigned byte order comparison
+   * is consistent with {@link Long#compare(long, long)}: the sign bit is
+   * flipped and the value is written big-endian into 8 bytes of {@code result}
+   * starting at {@code offset}.
+   * @see #sortableBytesToLong(byte[], int)
+   */
+  public static void longToSortableBytes(long value, byte[] result, int offset) {
+    // Flip the sign bit so negative longs sort before positive longs:
+    value ^= 0x8000000000000000L;
+    result[offset] =   (byte) (value >> 56);
+    result[offset+1] = (byte) (value >> 48);
+    result[offset+2] = (byte) (value >> 40);
+    result[offset+3] = (byte) (value >> 32);
+    result[offset+4] = (byte) (value >> 24);
+    result[offset+5] = (byte) (value >> 16);
+    result[offset+6] = (byte) (value >> 8);
+    result[offset+7] = (byte) value;
+  }
+
+  /**
+   * Decodes a long value previously written with {@link #longToSortableBytes}
+   * @see #longToSortableBytes(long, byte[], int)
+   */
+  public static long sortableBytesToLong(byte[] encoded, int offset) {
+    long v = ((encoded[offset] & 0xFFL) << 56)   |
+             ((encoded[offset+1] & 0xFFL) << 48) |
+             ((encoded[offset+2] & 0xFFL) << 40) |
+             ((encoded[offset+3] & 0xFFL) << 32) |
+             ((encoded[offset+4] & 0xFFL) << 24) |
+             ((encoded[offset+5] & 0xFFL) << 16) |
+             ((encoded[offset+6] & 0xFFL) << 8)  |
+              (encoded[offset+7] & 0xFFL);
+    // Flip the sign bit back
+    v ^= 0x8000000000000000L;
+    return v;
+  }
 }
@@ -31,9 +31,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * On-disk sorting of byte arrays. Each byte array (entry) is a composed of the following
@@ -42,12 +49,19 @@ import java.util.Locale;
  *   <li>(two bytes) length of the following byte array,
  *   <li>exactly the above count of bytes for the sequence to be sorted.
  * </ul>
+ * If all entries have the same length, they can be written without the length instead, see
+ * {@link #OfflineSorter(Comparator, BufferSize, Path, int, int, Executor, int)}. Subclasses may
+ * plug in other encodings of the entries with {@link #getReader} and {@link #getWriter}.
+ * <p>
+ * The input is read in partitions of about the RAM buffer size, which are sorted in memory and
+ * written to temporary files, optionally by an {@link Executor} while the next partitions are read.
+ * The partitions are then merged with a tournament tree.
  * 
  * @see #sort(Path, Path)
  * @lucene.experimental
  * @lucene.internal
  */
-public final class OfflineSorter {
+public class OfflineSorter {
   /** Convenience constant for megabytes */
   public final static long MB = 1024 * 1024;
   /** Convenience constant for gigabytes */
@@ -69,6 +83,11 @@ public final class OfflineSorter {
    */
   public final static int MAX_TEMPFILES = 128;
 
+  /**
+   * Value length of entries that are written with their length, which may vary.
+   */
+  public final static int VARIABLE_LENGTH = -1;
+
   /** 
    * A bit more descriptive unit for constructors.
    * 
@@ -142,7 +161,7 @@ public final class OfflineSorter {
     public int lines;
     /** time spent merging sorted partitions (in milliseconds) */
     public long mergeTime;
-    /** time spent sorting data (in milliseconds) */
+    /** time spent sorting data (in milliseconds), summed over all threads that sorted partitions */
     public long sortTime;
     /** total time spent (in milliseconds) */
     public long totalTime;
@@ -166,9 +185,10 @@ public final class OfflineSorter {
 
   private final BufferSize ramBufferSize;
   private final Path tempDirectory;
-  
-  private final Counter bufferBytesUsed = Counter.newCounter();
-  private final BytesRefArray buffer = new BytesRefArray(bufferBytesUsed);
+  private final int valueLength;
+  private final Executor exec;
+  private final Semaphore partitionsInRAM;
+
   private SortInfo sortInfo;
   private int maxTempFiles;
   private final Comparator<BytesRef> comparator;
@@ -197,9 +217,25 @@ public final class OfflineSorter {
   }
 
   /**
-   * All-details constructor.
+   * Constructor for entries of variable length, which sorts on the calling thread.
    */
   public OfflineSorter(Comparator<BytesRef> comparator, BufferSize ramBufferSize, Path tempDirectory, int maxTempfiles) {
+    this(comparator, ramBufferSize, tempDirectory, maxTempfiles, VARIABLE_LENGTH, null, 1);
+  }
+
+  /**
+   * All-details constructor.
+   *
+   * @param valueLength the length of all entries, which are then written without their
+   *        length, or {@link #VARIABLE_LENGTH}
+   * @param exec sorts and writes partitions while the calling thread reads the next ones,
+   *        or null to sort on the calling thread. The calling thread sorts the partitions
+   *        that the executor rejects.
+   * @param maxPartitionsInRAM the maximum number of partitions, each of up to
+   *        {@code ramBufferSize}, that are held in RAM at once
+   */
+  public OfflineSorter(Comparator<BytesRef> comparator, BufferSize ramBufferSize, Path tempDirectory, int maxTempfiles,
+                       int valueLength, Executor exec, int maxPartitionsInRAM) {
     if (ramBufferSize.bytes < ABSOLUTE_MIN_SORT_BUFFER_SIZE) {
       throw new IllegalArgumentException(MIN_BUFFER_SIZE_MSG + ": " + ramBufferSize.bytes);
     }
@@ -208,10 +244,25 @@ public final class OfflineSorter {
       throw new IllegalArgumentException("maxTempFiles must be >= 2");
     }
 
+    checkValueLength(valueLength);
+
+    if (maxPartitionsInRAM < 1) {
+      throw new IllegalArgumentException("maxPartitionsInRAM must be >= 1; got " + maxPartitionsInRAM);
+    }
+
     this.ramBufferSize = ramBufferSize;
     this.tempDirectory = tempDirectory;
     this.maxTempFiles = maxTempfiles;
     this.comparator = comparator;
+    this.valueLength = valueLength;
+    this.exec = exec;
+    this.partitionsInRAM = new Semaphore(maxPartitionsInRAM);
+  }
+
+  private static void checkValueLength(int valueLength) {
+    if (valueLength != VARIABLE_LENGTH && (valueLength <= 0 || valueLength > Short.MAX_VALUE)) {
+      throw new IllegalArgumentException("valueLength must be " + VARIABLE_LENGTH + " or 1 .. " + Short.MAX_VALUE + "; got " + valueLength);
+    }
   }
 
   /** 
@@ -224,33 +275,36 @@ public final class OfflineSorter {
 
     Files.deleteIfExists(output);
 
-    ArrayList<Path> merges = new ArrayList<>();
+    // Sorted partitions, which may still be sorted and written by the executor, and intermediate merges.
+    List<FutureTask<Partition>> partitions = new ArrayList<>();
+    List<Path> merges = null;
     boolean success3 = false;
     try {
-      ByteSequencesReader is = new ByteSequencesReader(input);
+      ByteSequencesReader is = getReader(input);
       boolean success = false;
       try {
-        int lines = 0;
-        while ((lines = readPartition(is)) > 0) {
-          merges.add(sortPartition(lines));
+        Partition part;
+        while ((part = readPartition(is, partitions)) != null) {
+          partitions.add(sortPartition(part));
           sortInfo.tempMergeFiles++;
-          sortInfo.lines += lines;
+          sortInfo.lines += part.count;
 
           // Handle intermediate merges.
-          if (merges.size() == maxTempFiles) {
+          if (partitions.size() == maxTempFiles) {
+            List<Path> intermediateMerges = getFiles(partitions);
             Path intermediate = Files.createTempFile(tempDirectory, "sort", "intermediate");
             boolean success2 = false;
             try {
-              mergePartitions(merges, intermediate);
+              mergePartitions(intermediateMerges, intermediate);
               success2 = true;
             } finally {
               if (success2) {
-                IOUtils.deleteFilesIfExist(merges);
+                IOUtils.deleteFilesIfExist(intermediateMerges);
               } else {
-                IOUtils.deleteFilesIgnoringExceptions(merges);
+                IOUtils.deleteFilesIgnoringExceptions(intermediateMerges);
               }
-              merges.clear();
-              merges.add(intermediate);
+              partitions.clear();
+              partitions.add(merged(intermediate));
             }
             sortInfo.tempMergeFiles++;
           }
@@ -263,6 +317,7 @@ public final class OfflineSorter {
           IOUtils.closeWhileHandlingException(is);
       }
 
+      merges = getFiles(partitions);
       // One partition, try to rename or copy if unsuccessful.
       if (merges.size() == 1) {     
         Path single = merges.get(0);
@@ -274,7 +329,7 @@ public final class OfflineSorter {
           Files.copy(single, output);
         }
       } else { 
-        // otherwise merge the partitions with a priority queue.
+        // otherwise merge the partitions with a tournament tree.
         mergePartitions(merges, output);
       }
       success3 = true;
@@ -282,7 +337,7 @@ public final class OfflineSorter {
       if (success3) {
         IOUtils.deleteFilesIfExist(merges);
       } else {
-        IOUtils.deleteFilesIgnoringExceptions(merges);
+        deleteFilesIgnoringExceptions(partitions);
         IOUtils.deleteFilesIgnoringExceptions(output);
       }
     }
@@ -308,30 +363,134 @@ public final class OfflineSorter {
     return tempDirectory;
   }
 
-  /** Sort a single partition in-memory. */
-  protected Path sortPartition(int len) throws IOException {
-    BytesRefArray data = this.buffer;
-    Path tempFile = Files.createTempFile(tempDirectory, "sort", "partition");
+  /** Returns a {@link ByteSequencesReader} for the entries in the given file. */
+  protected ByteSequencesReader getReader(Path path) throws IOException {
+    return new ByteSequencesReader(path, valueLength);
+  }
+
+  /** Returns a {@link ByteSequencesWriter} that writes entries to the given file. */
+  protected ByteSequencesWriter getWriter(Path path) throws IOException {
+    return new ByteSequencesWriter(path, valueLength);
+  }
+
+  /** A partition of the input, which is sorted in memory and then written to a temporary file. */
+  static final class Partition {
+    BytesRefArray buffer;
+    final int count;
+    Path file;
+    long sortTime;
+
+    Partition(BytesRefArray buffer) {
+      this.buffer = buffer;
+      this.count = buffer.size();
+    }
+
+    Partition(Path file) {
+      this.count = 0;
+      this.file = file;
+    }
+  }
+
+  /** Returns a done task for an intermediate merge. */
+  private static FutureTask<Partition> merged(Path file) {
+    final FutureTask<Partition> task = new FutureTask<>(new Callable<Partition>() {
+        @Override
+        public Partition call() {
+          return new Partition(file);
+        }
+      });
+    task.run();
+    return task;
+  }
+
+  /** Sorts and writes a partition with the executor, or on the calling thread. */
+  private FutureTask<Partition> sortPartition(final Partition part) {
+    final FutureTask<Partition> task = new FutureTask<>(new Callable<Partition>() {
+        @Override
+        public Partition call() throws IOException {
+          try {
+            writePartition(part);
+            return part;
+          } finally {
+            part.buffer = null;
+            partitionsInRAM.release();
+          }
+        }
+      });
+    if (exec != null) {
+      try {
+        exec.execute(task);
+        return task;
+      } catch (RejectedExecutionException ree) {
+        // the calling thread sorts this partition below
+      }
+    }
+    task.run();
+    return task;
+  }
 
+  /** Sort a single partition in-memory, and write it to a temporary file. */
+  void writePartition(Partition part) throws IOException {
     long start = System.currentTimeMillis();
-    sortInfo.sortTime += (System.currentTimeMillis() - start);
-    
-    final ByteSequencesWriter out = new ByteSequencesWriter(tempFile);
-    BytesRef spare;
+    BytesRefIterator iter = part.buffer.iterator(comparator);
+    part.sortTime = System.currentTimeMillis() - start;
+
+    Path tempFile = Files.createTempFile(tempDirectory, "sort", "partition");
+    ByteSequencesWriter out = null;
+    boolean success = false;
     try {
-      BytesRefIterator iter = buffer.iterator(comparator);
+      out = getWriter(tempFile);
+      BytesRef spare;
       while((spare = iter.next()) != null) {
-        assert spare.length <= Short.MAX_VALUE;
         out.write(spare);
       }
-      
       out.close();
-
-      // Clean up the buffer for the next partition.
-      data.clear();
-      return tempFile;
+      success = true;
     } finally {
-      IOUtils.close(out);
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(out);
+        IOUtils.deleteFilesIgnoringExceptions(tempFile);
+      }
+    }
+    part.file = tempFile;
+  }
+
+  /** Waits until all partitions are written and returns their files, or throws the first exception of any partition. */
+  private List<Path> getFiles(List<FutureTask<Partition>> partitions) throws IOException {
+    List<Path> files = new ArrayList<>();
+    Throwable th = null;
+    for (FutureTask<Partition> task : partitions) {
+      // no-op if the executor already started this partition:
+      task.run();
+      try {
+        Partition part = task.get();
+        files.add(part.file);
+        sortInfo.sortTime += part.sortTime;
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        if (th == null) {
+          th = ee.getCause();
+        } else {
+          th.addSuppressed(ee.getCause());
+        }
+      }
+    }
+    IOUtils.reThrow(th);
+    return files;
+  }
+
+  /** Waits until all partitions are done, and deletes the files of those that were written. */
+  private static void deleteFilesIgnoringExceptions(List<FutureTask<Partition>> partitions) {
+    for (FutureTask<Partition> task : partitions) {
+      task.run();
+      try {
+        IOUtils.deleteFilesIgnoringExceptions(task.get().file);
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        // this partition deleted its file itself
+      }
     }
   }
 
@@ -339,37 +498,29 @@ public final class OfflineSorter {
   void mergePartitions(List<Path> merges, Path outputFile) throws IOException {
     long start = System.currentTimeMillis();
 
-    ByteSequencesWriter out = new ByteSequencesWriter(outputFile);
-
-    PriorityQueue<FileAndTop> queue = new PriorityQueue<FileAndTop>(merges.size()) {
-      @Override
-      protected boolean lessThan(FileAndTop a, FileAndTop b) {
-        return comparator.compare(a.current.get(), b.current.get()) < 0;
-      }
-    };
+    ByteSequencesWriter out = getWriter(outputFile);
 
     ByteSequencesReader [] streams = new ByteSequencesReader [merges.size()];
     try {
       // Open streams and read the top for each file
+      BytesRefBuilder[] tops = new BytesRefBuilder[merges.size()];
       for (int i = 0; i < merges.size(); i++) {
-        streams[i] = new ByteSequencesReader(merges.get(i));
-        byte line[] = streams[i].read();
-        if (line != null) {
-          queue.insertWithOverflow(new FileAndTop(i, line));
+        streams[i] = getReader(merges.get(i));
+        tops[i] = new BytesRefBuilder();
+        if (!streams[i].read(tops[i])) {
+          tops[i] = null;
         }
       }
-  
-      // Unix utility sort() uses ordered array of files to pick the next line from, updating
-      // it as it reads new lines. The PQ used here is a more elegant solution and has 
-      // a nicer theoretical complexity bound :) The entire sorting process is I/O bound anyway
-      // so it shouldn't make much of a difference (didn't check).
-      FileAndTop top;
-      while ((top = queue.top()) != null) {
-        out.write(top.current.bytes(), 0, top.current.length());
-        if (!streams[top.fd].read(top.current)) {
-          queue.pop();
-        } else {
-          queue.updateTop();
+
+      if (tops.length > 0) {
+        TournamentTree tree = new TournamentTree(tops);
+        int winner;
+        while (tops[winner = tree.winner()] != null) {
+          out.write(tops[winner].get());
+          if (!streams[winner].read(tops[winner])) {
+            tops[winner] = null;
+          }
+          tree.replay(winner);
         }
       }
   
@@ -386,51 +537,144 @@ public final class OfflineSorter {
     }
   }
 
-  /** Read in a single partition of data */
-  int readPartition(ByteSequencesReader reader) throws IOException {
-    long start = System.currentTimeMillis();
-    final BytesRef scratch = new BytesRef();
-    while ((scratch.bytes = reader.read()) != null) {
-      scratch.length = scratch.bytes.length; 
-      buffer.append(scratch);
-      // Account for the created objects.
-      // (buffer slots do not account to buffer size.) 
-      if (ramBufferSize.bytes < bufferBytesUsed.get()) {
-        break;
+  /**
+   * A tournament tree (loser tree) over the current entries of the partitions that are merged:
+   * each inner node holds the loser of the match between the winners of its two subtrees, and
+   * node 0 the overall winner. Replacing the entry of the winner only replays the matches on the
+   * path from its leaf to the root, with one comparison per level, while updating the top of a
+   * priority queue needs up to two comparisons per level.
+   */
+  final class TournamentTree {
+    private final BytesRefBuilder[] tops;
+    private final int[] tree;
+
+    /** Creates a tree over the given entries; null entries belong to exhausted partitions and lose all matches. */
+    TournamentTree(BytesRefBuilder[] tops) {
+      assert tops.length > 0;
+      this.tops = tops;
+      this.tree = new int[tops.length];
+      // a virtual leaf that wins all matches, until the real leaves have replaced it:
+      Arrays.fill(tree, tops.length);
+      for (int i = tops.length - 1; i >= 0; i--) {
+        replay(i);
+      }
+    }
+
+    /** Returns the partition with the least entry, or any exhausted partition once all are exhausted. */
+    int winner() {
+      return tree[0];
+    }
+
+    /** Replays the matches of the given partition after its entry changed. */
+    void replay(int leaf) {
+      int winner = leaf;
+      for (int node = (leaf + tops.length) >>> 1; node > 0; node >>>= 1) {
+        if (beats(tree[node], winner)) {
+          final int loser = winner;
+          winner = tree[node];
+          tree[node] = loser;
+        }
       }
+      tree[0] = winner;
+    }
+
+    private boolean beats(int a, int b) {
+      if (a == tops.length) {
+        return true;
+      } else if (b == tops.length) {
+        return false;
+      } else if (tops[a] == null) {
+        return false;
+      } else if (tops[b] == null) {
+        return true;
+      }
+      final int cmp = comparator.compare(tops[a].get(), tops[b].get());
+      return cmp < 0 || (cmp == 0 && a < b);
     }
-    sortInfo.readTime += (System.currentTimeMillis() - start);
-    return buffer.size();
   }
 
-  static class FileAndTop {
-    final int fd;
-    final BytesRefBuilder current;
+  /** Read in a single partition of data, once fewer than the maximum partitions are in RAM; returns null at the end of the input. */
+  Partition readPartition(ByteSequencesReader reader, List<FutureTask<Partition>> pending) throws IOException {
+    acquirePartition(pending);
+    Partition part = null;
+    try {
+      long start = System.currentTimeMillis();
+      final Counter bufferBytesUsed = Counter.newCounter();
+      final BytesRefArray buffer = new BytesRefArray(bufferBytesUsed);
+      final BytesRefBuilder scratch = new BytesRefBuilder();
+      while (reader.read(scratch)) {
+        buffer.append(scratch.get());
+        // Account for the created objects.
+        // (buffer slots do not account to buffer size.) 
+        if (ramBufferSize.bytes < bufferBytesUsed.get()) {
+          break;
+        }
+      }
+      sortInfo.readTime += (System.currentTimeMillis() - start);
+      if (buffer.size() > 0) {
+        part = new Partition(buffer);
+      }
+      return part;
+    } finally {
+      if (part == null) {
+        partitionsInRAM.release();
+      }
+    }
+  }
 
-    FileAndTop(int fd, byte[] firstLine) {
-      this.fd = fd;
-      this.current = new BytesRefBuilder();
-      this.current.copyBytes(firstLine, 0, firstLine.length);
+  /** Waits until fewer than the maximum partitions are in RAM. */
+  private void acquirePartition(List<FutureTask<Partition>> pending) {
+    if (partitionsInRAM.tryAcquire() == false) {
+      // Sort the partitions that the executor did not start yet ourselves, this frees their RAM:
+      for (FutureTask<Partition> task : pending) {
+        task.run();
+      }
+      try {
+        partitionsInRAM.acquire();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      }
     }
   }
 
   /**
-   * Utility class to emit length-prefixed byte[] entries to an output stream for sorting.
+   * Utility class to emit length-prefixed, or fixed-length, byte[] entries to an output stream for sorting.
    * Complementary to {@link ByteSequencesReader}.
    */
   public static class ByteSequencesWriter implements Closeable {
     private final DataOutput os;
+    private final int valueLength;
 
-    /** Constructs a ByteSequencesWriter to the provided Path */
+    /** Constructs a ByteSequencesWriter of length-prefixed entries to the provided Path */
     public ByteSequencesWriter(Path path) throws IOException {
+      this(path, VARIABLE_LENGTH);
+    }
+
+    /** Constructs a ByteSequencesWriter of length-prefixed entries to the provided DataOutput */
+    public ByteSequencesWriter(DataOutput os) {
+      this(os, VARIABLE_LENGTH);
+    }
+
+    /**
+     * Constructs a ByteSequencesWriter to the provided Path, of entries that all have the given
+     * length and are written without it, or of length-prefixed entries if the length is
+     * {@link #VARIABLE_LENGTH}
+     */
+    public ByteSequencesWriter(Path path, int valueLength) throws IOException {
       this(new DataOutputStream(
           new BufferedOutputStream(
-              Files.newOutputStream(path))));
+              Files.newOutputStream(path))), valueLength);
     }
 
-    /** Constructs a ByteSequencesWriter to the provided DataOutput */
-    public ByteSequencesWriter(DataOutput os) {
+    /**
+     * Constructs a ByteSequencesWriter to the provided DataOutput, of entries that all have the
+     * given length and are written without it, or of length-prefixed entries if the length is
+     * {@link #VARIABLE_LENGTH}
+     */
+    public ByteSequencesWriter(DataOutput os, int valueLength) {
+      checkValueLength(valueLength);
       this.os = os;
+      this.valueLength = valueLength;
     }
 
     /**
@@ -454,16 +698,21 @@ public final class OfflineSorter {
      * Writes a byte array.
      * <p>
      * The length is written as a <code>short</code>, followed
-     * by the bytes.
+     * by the bytes. Entries of a fixed length are written
+     * without their length.
      */
     public void write(byte [] bytes, int off, int len) throws IOException {
       assert bytes != null;
       assert off >= 0 && off + len <= bytes.length;
       assert len >= 0;
-      if (len > Short.MAX_VALUE) {
-        throw new IllegalArgumentException("len must be <= " + Short.MAX_VALUE + "; got " + len);
+      if (valueLength == VARIABLE_LENGTH) {
+        if (len > Short.MAX_VALUE) {
+          throw new IllegalArgumentException("len must be <= " + Short.MAX_VALUE + "; got " + len);
+        }
+        os.writeShort(len);
+      } else if (len != valueLength) {
+        throw new IllegalArgumentException("len must be " + valueLength + "; got " + len);
       }
-      os.writeShort(len);
       os.write(bytes, off, len);
     }
     
@@ -479,22 +728,62 @@ public final class OfflineSorter {
   }
 
   /**
-   * Utility class to read length-prefixed byte[] entries from an input.
+   * Utility class to read length-prefixed, or fixed-length, byte[] entries from an input.
    * Complementary to {@link ByteSequencesWriter}.
    */
   public static class ByteSequencesReader implements Closeable {
     private final DataInput is;
+    private final int valueLength;
+    private final byte[] firstByte = new byte[1];
 
-    /** Constructs a ByteSequencesReader from the provided Path */
+    /** Constructs a ByteSequencesReader of length-prefixed entries from the provided Path */
     public ByteSequencesReader(Path path) throws IOException {
+      this(path, VARIABLE_LENGTH);
+    }
+
+    /** Constructs a ByteSequencesReader of length-prefixed entries from the provided DataInput */
+    public ByteSequencesReader(DataInput is) {
+      this(is, VARIABLE_LENGTH);
+    }
+
+    /**
+     * Constructs a ByteSequencesReader from the provided Path, of entries that all have the given
+     * length and were written without it, or of length-prefixed entries if the length is
+     * {@link #VARIABLE_LENGTH}
+     */
+    public ByteSequencesReader(Path path, int valueLength) throws IOException {
       this(new DataInputStream(
           new BufferedInputStream(
-              Files.newInputStream(path))));
+              Files.newInputStream(path))), valueLength);
     }
 
-    /** Constructs a ByteSequencesReader from the provided DataInput */
-    public ByteSequencesReader(DataInput is) {
+    /**
+     * Constructs a ByteSequencesReader from the provided DataInput, of entries that all have the
+     * given length and were written without it, or of length-prefixed entries if the length is
+     * {@link #VARIABLE_LENGTH}
+     */
+    public ByteSequencesReader(DataInput is, int valueLength) {
+      checkValueLength(valueLength);
       this.is = is;
+      this.valueLength = valueLength;
+    }
+
+    /**
+     * Reads the length of the next entry, or returns -1 if EOF occurred when trying to read it.
+     * Entries of a fixed length have no length to read, so their first byte is read instead
+     * and written to {@code firstByte}.
+     */
+    private int readLength(byte[] firstByte) throws IOException {
+      try {
+        if (valueLength == VARIABLE_LENGTH) {
+          return is.readShort();
+        } else {
+          firstByte[0] = is.readByte();
+          return valueLength;
+        }
+      } catch (EOFException e) {
+        return -1;
+      }
     }
 
     /**
@@ -506,16 +795,19 @@ public final class OfflineSorter {
      * @throws EOFException if the file ends before the full sequence is read.
      */
     public boolean read(BytesRefBuilder ref) throws IOException {
-      short length;
-      try {
-        length = is.readShort();
-      } catch (EOFException e) {
+      final int length = readLength(firstByte);
+      if (length == -1) {
         return false;
       }
 
       ref.grow(length);
       ref.setLength(length);
-      is.readFully(ref.bytes(), 0, length);
+      if (valueLength == VARIABLE_LENGTH) {
+        is.readFully(ref.bytes(), 0, length);
+      } else {
+        ref.bytes()[0] = firstByte[0];
+        is.readFully(ref.bytes(), 1, length - 1);
+      }
       return true;
     }
 
@@ -529,16 +821,19 @@ public final class OfflineSorter {
      * @throws EOFException if the file ends before the full sequence is read.
      */
     public byte[] read() throws IOException {
-      short length;
-      try {
-        length = is.readShort();
-      } catch (EOFException e) {
+      final int length = readLength(firstByte);
+      if (length == -1) {
         return null;
       }
 
       assert length >= 0 : "Sanity: sequence length < 0: " + length;
       byte [] result = new byte [length];
-      is.readFully(result);
+      if (valueLength == VARIABLE_LENGTH) {
+        is.readFully(result);
+      } else {
+        result[0] = firstByte[0];
+        is.readFully(result, 1, length - 1);
+      }
       return result;
     }
 
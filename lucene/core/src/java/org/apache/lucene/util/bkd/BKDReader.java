@@ -0,0 +1,244 @@
+package org.apache.lucene.util.bkd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/** Handles intersection of an multi-dimensional shape in byte[] space with a block KD-tree previously written with {@link BKDWriter}.
+ *
+ * @lucene.experimental */
+
+public class BKDReader implements Accountable {
+  // Packed array of byte[] holding all split values in the full binary tree:
+  final private byte[] splitPackedValues;
+  final private long[] leafBlockFPs;
+  final private int leafNodeOffset;
+  final int numDims;
+  final int bytesPerDim;
+  final int maxPointsInLeafNode;
+  final IndexInput in;
+  final int packedBytesLength;
+  final byte[] minPackedValue;
+  final byte[] maxPackedValue;
+  final long pointCount;
+  final int docCount;
+
+  /** Caller must pre-seek the provided {@link IndexInput} to the index location that {@link BKDWriter#finish} returned */
+  public BKDReader(IndexInput in) throws IOException {
+    CodecUtil.checkHeader(in, BKDWriter.CODEC_NAME, BKDWriter.VERSION_START, BKDWriter.VERSION_CURRENT);
+    numDims = in.readVInt();
+    maxPointsInLeafNode = in.readVInt();
+    bytesPerDim = in.readVInt();
+    packedBytesLength = numDims * bytesPerDim;
+
+    // Read index:
+    int numLeaves = in.readVInt();
+    if (numLeaves <= 0 || Integer.bitCount(numLeaves) != 1) {
+      throw new CorruptIndexException("numLeaves must be a power of 2; got " + numLeaves, in);
+    }
+    leafNodeOffset = numLeaves;
+
+    minPackedValue = new byte[packedBytesLength];
+    maxPackedValue = new byte[packedBytesLength];
+    in.readBytes(minPackedValue, 0, packedBytesLength);
+    in.readBytes(maxPackedValue, 0, packedBytesLength);
+
+    pointCount = in.readVLong();
+    docCount = in.readVInt();
+
+    splitPackedValues = new byte[(1+bytesPerDim)*numLeaves];
+    in.readBytes(splitPackedValues, 0, splitPackedValues.length);
+
+    // Read the file pointers to the start of each leaf block:
+    long[] leafBlockFPs = new long[numLeaves];
+    long lastFP = 0;
+    for(int i=0;i<numLeaves;i++) {
+      long delta = in.readVLong();
+      leafBlockFPs[i] = lastFP + delta;
+      lastFP += delta;
+    }
+    this.leafBlockFPs = leafBlockFPs;
+
+    this.in = in;
+  }
+
+  /** Used to track all state for a single call to {@link #intersect}. */
+  static final class IntersectState {
+    final IndexInput in;
+    final int[] scratchDocIDs;
+    final byte[] scratchPackedValue;
+    final IntersectVisitor visitor;
+
+    public IntersectState(IndexInput in, int packedBytesLength,
+                          int maxPointsInLeafNode,
+                          IntersectVisitor visitor) {
+      this.in = in;
+      this.visitor = visitor;
+      this.scratchDocIDs = new int[maxPointsInLeafNode];
+      this.scratchPackedValue = new byte[packedBytesLength];
+    }
+  }
+
+  /** Visits all points (or just docIDs, for cells fully inside the query) that the visitor asks for. */
+  public void intersect(IntersectVisitor visitor) throws IOException {
+    IntersectState state = new IntersectState(in.clone(), packedBytesLength, maxPointsInLeafNode, visitor);
+    intersect(state, 1, minPackedValue, maxPackedValue);
+  }
+
+  /** Fast path: this is called when the query box fully encompasses all cells under this node. */
+  private void addAll(IntersectState state, int nodeID) throws IOException {
+    if (nodeID >= leafNodeOffset) {
+      visitDocIDs(state.in, leafBlockFPs[nodeID-leafNodeOffset], state.visitor);
+    } else {
+      addAll(state, 2*nodeID);
+      addAll(state, 2*nodeID+1);
+    }
+  }
+
+  /** Visits only the docIDs of the leaf block starting at {@code blockFP}. */
+  private void visitDocIDs(IndexInput in, long blockFP, IntersectVisitor visitor) throws IOException {
+    in.seek(blockFP);
+
+    // How many points are stored in this leaf cell:
+    int count = in.readVInt();
+    for(int i=0;i<count;i++) {
+      visitor.visit(in.readInt());
+    }
+  }
+
+  /** Visits all docIDs and values of the leaf block starting at {@code blockFP}. */
+  private void visitDocValues(IntersectState state, long blockFP) throws IOException {
+    IndexInput in = state.in;
+    in.seek(blockFP);
+
+    int count = in.readVInt();
+    int[] docIDs = state.scratchDocIDs;
+    for(int i=0;i<count;i++) {
+      docIDs[i] = in.readInt();
+    }
+
+    byte[] scratchPackedValue = state.scratchPackedValue;
+    int[] commonPrefixLengths = new int[numDims];
+    for(int dim=0;dim<numDims;dim++) {
+      int prefix = in.readVInt();
+      commonPrefixLengths[dim] = prefix;
+      if (count > 0) {
+        in.readBytes(scratchPackedValue, dim*bytesPerDim, prefix);
+      }
+    }
+
+    for(int i=0;i<count;i++) {
+      for(int dim=0;dim<numDims;dim++) {
+        int prefix = commonPrefixLengths[dim];
+        in.readBytes(scratchPackedValue, dim*bytesPerDim + prefix, bytesPerDim - prefix);
+      }
+      state.visitor.visit(docIDs[i], scratchPackedValue);
+    }
+  }
+
+  private void intersect(IntersectState state, int nodeID,
+                         byte[] cellMinPacked, byte[] cellMaxPacked)
+    throws IOException {
+
+    Relation r = state.visitor.compare(cellMinPacked, cellMaxPacked);
+
+    if (r == Relation.CELL_OUTSIDE_QUERY) {
+      // This cell is fully outside of the query shape: stop recursing
+      return;
+    } else if (r == Relation.CELL_INSIDE_QUERY) {
+      // This cell is fully inside of the query shape: recursively add all points in this cell without filtering
+      addAll(state, nodeID);
+      return;
+    } else {
+      // The cell crosses the shape boundary, or the cell fully contains the query, so we fall through and do full filtering
+    }
+
+    if (nodeID >= leafNodeOffset) {
+      // Leaf node; scan and filter all points in this block:
+      visitDocValues(state, leafBlockFPs[nodeID-leafNodeOffset]);
+    } else {
+
+      // Non-leaf node: recurse on the split left and right nodes
+
+      int address = nodeID * (1+bytesPerDim);
+      int splitDim = splitPackedValues[address] & 0xff;
+      assert splitDim < numDims;
+
+      // TODO: can we alloc & reuse this up front?
+      byte[] splitPackedValue = new byte[packedBytesLength];
+
+      // Recurse on left sub-tree:
+      System.arraycopy(cellMaxPacked, 0, splitPackedValue, 0, packedBytesLength);
+      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+      intersect(state,
+                2*nodeID,
+                cellMinPacked, splitPackedValue);
+
+      // Recurse on right sub-tree:
+      System.arraycopy(cellMinPacked, 0, splitPackedValue, 0, packedBytesLength);
+      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+      intersect(state,
+                2*nodeID+1,
+                splitPackedValue, cellMaxPacked);
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return splitPackedValues.length +
+      leafBlockFPs.length * RamUsageEstimator.NUM_BYTES_LONG;
+  }
+
+  /** Returns the minimum value of each dimension, packed */
+  public byte[] getMinPackedValue() {
+    return minPackedValue.clone();
+  }
+
+  /** Returns the maximum value of each dimension, packed */
+  public byte[] getMaxPackedValue() {
+    return maxPackedValue.clone();
+  }
+
+  /** Returns the number of dimensions */
+  public int getNumDimensions() {
+    return numDims;
+  }
+
+  /** Returns the number of bytes per dimension */
+  public int getBytesPerDimension() {
+    return bytesPerDim;
+  }
+
+  /** Returns the total number of indexed points */
+  public long getPointCount() {
+    return pointCount;
+  }
+
+  /** Returns the number of documents that have at least one point */
+  public int getDocCount() {
+    return docCount;
+  }
+}
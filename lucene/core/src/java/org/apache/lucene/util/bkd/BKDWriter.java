@@ -0,0 +1,869 @@
+package org.apache.lucene.util.bkd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.IntroSorter;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.OfflineSorter;
+import org.apache.lucene.util.RamUsageEstimator;
+
+// TODO
+//   - the leaf blocks could use delta/bit-packed docIDs, like postings
+//   - we could use threads while building; the higher nodes are very parallelizable
+//   - the split values could be stored compressed (shared prefix with the parent cell)
+
+/** Recursively builds a block KD-tree to assign all incoming points in N-dim space to smaller
+ *  and smaller N-dim rectangles (cells) until the number of points in a given
+ *  rectangle is &lt;= <code>maxPointsInLeafNode</code>.  The tree is
+ *  fully balanced, which means the leaf nodes will have between 50% and 100% of
+ *  the requested <code>maxPointsInLeafNode</code>.  Values that fall exactly
+ *  on a cell boundary may be in either cell.
+ *
+ *  <p>The number of dimensions can be 1 to {@link #MAX_DIMS}, and each dimension is
+ *  a fixed number of bytes, compared as unsigned (big-endian) byte[].
+ *
+ *  <p>
+ *  See <a href="https://www.cs.duke.edu/~pankaj/publications/papers/bkd-sstd.pdf">this paper</a> for details.
+ *
+ *  <p>This consumes heap during writing: it allocates a <code>LongBitSet(numPoints)</code>,
+ *  and then uses up to the specified {@code maxMBSortInHeap} heap space for writing.
+ *  Once more points than that were added, it switches to sorting offline, in temporary
+ *  files, using {@link OfflineSorter}.
+ *
+ *  <p>
+ *  <b>NOTE</b>: This can write at most Integer.MAX_VALUE * <code>maxPointsInLeafNode</code> total points.
+ *
+ * @lucene.experimental */
+
+public class BKDWriter implements Closeable {
+
+  static final String CODEC_NAME = "BKD";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** How many bytes each docs takes in the fixed-width offline format: packed value, ord (long) and docID (int) */
+  private final int bytesPerDoc;
+
+  /** Default maximum number of points in each leaf block */
+  public static final int DEFAULT_MAX_POINTS_IN_LEAF_NODE = 1024;
+
+  /** Default maximum heap to use, before spilling to (slower) disk */
+  public static final float DEFAULT_MAX_MB_SORT_IN_HEAP = 16.0f;
+
+  /** Maximum number of dimensions */
+  public static final int MAX_DIMS = 8;
+
+  /** How many dimensions we are indexing */
+  protected final int numDims;
+
+  /** How many bytes each value in each dimension takes. */
+  protected final int bytesPerDim;
+
+  /** numDims * bytesPerDim */
+  protected final int packedBytesLength;
+
+  final byte[] scratchDiff;
+  final byte[] scratchPackedValue;
+  final byte[] scratch1;
+  final byte[] scratch2;
+  private final byte[] scratchRecord;
+
+  private OfflineSorter.ByteSequencesWriter offlineWriter;
+  private HeapPointWriter heapPointWriter;
+
+  private Path tempDir;
+  private Path tempInput;
+  protected final int maxPointsInLeafNode;
+  private final int maxPointsSortInHeap;
+
+  /** Minimum per-dim values, packed */
+  protected final byte[] minPackedValue;
+
+  /** Maximum per-dim values, packed */
+  protected final byte[] maxPackedValue;
+
+  private long pointCount;
+
+  /** Documents that had at least one point */
+  private final FixedBitSet docsSeen;
+
+  /** Creates a writer using {@link #DEFAULT_MAX_POINTS_IN_LEAF_NODE} and {@link #DEFAULT_MAX_MB_SORT_IN_HEAP}. */
+  public BKDWriter(int maxDoc, int numDims, int bytesPerDim) throws IOException {
+    this(maxDoc, numDims, bytesPerDim, DEFAULT_MAX_POINTS_IN_LEAF_NODE, DEFAULT_MAX_MB_SORT_IN_HEAP);
+  }
+
+  /** Creates a writer that puts at most {@code maxPointsInLeafNode} points in each leaf block and
+   *  sorts offline once the buffered points would use more than {@code maxMBSortInHeap} MB of heap. */
+  public BKDWriter(int maxDoc, int numDims, int bytesPerDim, int maxPointsInLeafNode, double maxMBSortInHeap) throws IOException {
+    verifyParams(numDims, bytesPerDim, maxPointsInLeafNode, maxMBSortInHeap);
+    this.maxPointsInLeafNode = maxPointsInLeafNode;
+    this.numDims = numDims;
+    this.bytesPerDim = bytesPerDim;
+    packedBytesLength = numDims * bytesPerDim;
+
+    docsSeen = new FixedBitSet(maxDoc);
+
+    scratchDiff = new byte[bytesPerDim];
+    scratchPackedValue = new byte[packedBytesLength];
+    scratch1 = new byte[packedBytesLength];
+    scratch2 = new byte[packedBytesLength];
+
+    minPackedValue = new byte[packedBytesLength];
+    maxPackedValue = new byte[packedBytesLength];
+
+    // packed value, ord (long), docID (int):
+    bytesPerDoc = packedBytesLength + RamUsageEstimator.NUM_BYTES_LONG + RamUsageEstimator.NUM_BYTES_INT;
+    scratchRecord = new byte[bytesPerDoc];
+
+    // As we recurse, we hold at most numDims partitioned copies of the points in heap; compute
+    // how many points fit in the requested heap budget:
+    maxPointsSortInHeap = (int) Math.min(ArrayUtil.MAX_ARRAY_LENGTH / packedBytesLength,
+                                         Math.max(maxPointsInLeafNode,
+                                                  (long) (maxMBSortInHeap * 1024 * 1024) / (bytesPerDoc * numDims)));
+
+    // We write first maxPointsSortInHeap in heap, then cutover to offline for additional points:
+    heapPointWriter = new HeapPointWriter(16, maxPointsSortInHeap, packedBytesLength);
+  }
+
+  /** Throws {@link IllegalArgumentException} if any of the parameters is invalid. */
+  public static void verifyParams(int numDims, int bytesPerDim, int maxPointsInLeafNode, double maxMBSortInHeap) {
+    // We encode the split dim in a single byte in the splitPackedValues:
+    if (numDims < 1 || numDims > MAX_DIMS) {
+      throw new IllegalArgumentException("numDims must be 1 .. " + MAX_DIMS + " (got: " + numDims + ")");
+    }
+    if (bytesPerDim <= 0) {
+      throw new IllegalArgumentException("bytesPerDim must be > 0; got " + bytesPerDim);
+    }
+    if (maxPointsInLeafNode <= 0) {
+      throw new IllegalArgumentException("maxPointsInLeafNode must be > 0; got " + maxPointsInLeafNode);
+    }
+    if (maxPointsInLeafNode > ArrayUtil.MAX_ARRAY_LENGTH) {
+      throw new IllegalArgumentException("maxPointsInLeafNode must be <= ArrayUtil.MAX_ARRAY_LENGTH (= " + ArrayUtil.MAX_ARRAY_LENGTH + "); got " + maxPointsInLeafNode);
+    }
+    if (maxMBSortInHeap < 0.0) {
+      throw new IllegalArgumentException("maxMBSortInHeap must be >= 0.0 (got: " + maxMBSortInHeap + ")");
+    }
+  }
+
+  /** If the current segment has too many points then we switchover to temp files / offline sort. */
+  private void switchToOffline() throws IOException {
+
+    // OfflineSorter isn't thread safe, but our own private tempDir works around this:
+    tempDir = Files.createTempDirectory(OfflineSorter.defaultTempDir(), BKDWriter.class.getSimpleName());
+
+    // For each .add we just append to this input file, then in .finish we sort this input and resursively build the tree:
+    tempInput = tempDir.resolve("in");
+    offlineWriter = new OfflineSorter.ByteSequencesWriter(tempInput, bytesPerDoc);
+    for(int i=0;i<pointCount;i++) {
+      heapPointWriter.readPackedValue(i, scratchPackedValue);
+      writeOfflineRecord(scratchPackedValue, heapPointWriter.ords[i], heapPointWriter.docIDs[i]);
+    }
+
+    heapPointWriter = null;
+  }
+
+  /** Records written to the {@link OfflineSorter} input are the packed value, then the
+   *  big-endian ord and docID, so that ties on a dimension are broken by ord with a
+   *  simple unsigned byte comparison. All records have the same length, so they are
+   *  written without it. */
+  private void writeOfflineRecord(byte[] packedValue, long ord, int docID) throws IOException {
+    byte[] record = scratchRecord;
+    System.arraycopy(packedValue, 0, record, 0, packedBytesLength);
+    int upto = packedBytesLength;
+    for(int shift=56;shift>=0;shift-=8) {
+      record[upto++] = (byte) (ord >> shift);
+    }
+    for(int shift=24;shift>=0;shift-=8) {
+      record[upto++] = (byte) (docID >> shift);
+    }
+    offlineWriter.write(record, 0, record.length);
+  }
+
+  /** Adds a new point for the given document; the packed value holds all dimensions, concatenated. */
+  public void add(byte[] packedValue, int docID) throws IOException {
+    if (packedValue.length != packedBytesLength) {
+      throw new IllegalArgumentException("packedValue should be length=" + packedBytesLength + " (got: " + packedValue.length + ")");
+    }
+
+    if (pointCount >= maxPointsSortInHeap) {
+      if (offlineWriter == null) {
+        switchToOffline();
+      }
+      writeOfflineRecord(packedValue, pointCount, docID);
+    } else {
+      // Not too many points added yet, continue using heap:
+      heapPointWriter.append(packedValue, pointCount, docID);
+    }
+
+    // TODO: we could specialize for the 1D case:
+    if (pointCount == 0) {
+      System.arraycopy(packedValue, 0, minPackedValue, 0, packedBytesLength);
+      System.arraycopy(packedValue, 0, maxPackedValue, 0, packedBytesLength);
+    } else {
+      for(int dim=0;dim<numDims;dim++) {
+        if (BKDUtil.compare(bytesPerDim, packedValue, dim, minPackedValue, dim) < 0) {
+          System.arraycopy(packedValue, dim*bytesPerDim, minPackedValue, dim*bytesPerDim, bytesPerDim);
+        }
+        if (BKDUtil.compare(bytesPerDim, packedValue, dim, maxPackedValue, dim) > 0) {
+          System.arraycopy(packedValue, dim*bytesPerDim, maxPackedValue, dim*bytesPerDim, bytesPerDim);
+        }
+      }
+    }
+
+    pointCount++;
+    docsSeen.set(docID);
+  }
+
+  /** How many points have been added so far */
+  public long getPointCount() {
+    return pointCount;
+  }
+
+  /** Changes incoming {@link OfflineSorter.ByteSequencesWriter} file to to fixed-width-per-entry file, because we need to be able to slice
+   *  as we recurse in {@link #build}. */
+  private PointWriter convertToFixedWidth(Path in) throws IOException {
+    BytesRefBuilder scratch = new BytesRefBuilder();
+    scratch.grow(bytesPerDoc);
+    BytesRef bytes = scratch.get();
+
+    OfflineSorter.ByteSequencesReader reader = null;
+    PointWriter sortedPointWriter = null;
+    boolean success = false;
+    try {
+      reader = new OfflineSorter.ByteSequencesReader(in, bytesPerDoc);
+      sortedPointWriter = getPointWriter(pointCount);
+      for (long i=0;i<pointCount;i++) {
+        boolean result = reader.read(scratch);
+        assert result;
+        assert bytes.length == bytesPerDoc;
+        System.arraycopy(bytes.bytes, bytes.offset, scratchPackedValue, 0, packedBytesLength);
+        int upto = bytes.offset + packedBytesLength;
+        long ord = 0;
+        for(int j=0;j<8;j++) {
+          ord = (ord << 8) | (bytes.bytes[upto++] & 0xff);
+        }
+        int docID = 0;
+        for(int j=0;j<4;j++) {
+          docID = (docID << 8) | (bytes.bytes[upto++] & 0xff);
+        }
+        assert docID >= 0: "docID=" + docID;
+        sortedPointWriter.append(scratchPackedValue, ord, docID);
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(sortedPointWriter, reader);
+      } else {
+        IOUtils.closeWhileHandlingException(sortedPointWriter, reader);
+        try {
+          sortedPointWriter.destroy();
+        } catch (Throwable t) {
+          // Suppress to keep throwing original exc
+        }
+      }
+    }
+
+    return sortedPointWriter;
+  }
+
+  /** In-place sorts the heap points by the given dimension, tie-breaking by ord */
+  private void sortHeapPointWriter(final HeapPointWriter writer, int start, int length, final int dim) {
+
+    assert pointCount < Integer.MAX_VALUE;
+
+    new IntroSorter() {
+      private final byte[] pivotPackedValue = new byte[bytesPerDim];
+      private long pivotOrd;
+
+      @Override
+      protected void setPivot(int i) {
+        pivotOrd = writer.ords[i];
+        System.arraycopy(writer.packedValues, i*packedBytesLength + dim*bytesPerDim, pivotPackedValue, 0, bytesPerDim);
+      }
+
+      @Override
+      protected int comparePivot(int j) {
+        int cmp = BKDUtil.compare(bytesPerDim, pivotPackedValue, 0, writer.packedValues, j*numDims + dim);
+        if (cmp != 0) {
+          return cmp;
+        }
+
+        // Tie-break
+        return Long.compare(pivotOrd, writer.ords[j]);
+      }
+
+      @Override
+      protected void swap(int i, int j) {
+        int docID = writer.docIDs[i];
+        writer.docIDs[i] = writer.docIDs[j];
+        writer.docIDs[j] = docID;
+
+        long ord = writer.ords[i];
+        writer.ords[i] = writer.ords[j];
+        writer.ords[j] = ord;
+
+        writer.readPackedValue(i, scratch1);
+        writer.readPackedValue(j, scratch2);
+        writer.writePackedValue(i, scratch2);
+        writer.writePackedValue(j, scratch1);
+      }
+
+      @Override
+      protected int compare(int i, int j) {
+        int cmp = BKDUtil.compare(bytesPerDim, writer.packedValues, i*numDims + dim, writer.packedValues, j*numDims + dim);
+        if (cmp != 0) {
+          return cmp;
+        }
+
+        // Tie-break
+        return Long.compare(writer.ords[i], writer.ords[j]);
+      }
+    }.sort(start, start+length);
+  }
+
+  private PointWriter sort(final int dim) throws IOException {
+    if (heapPointWriter != null) {
+
+      // All buffered points are still in heap; just do in-place sort on a copy:
+      int count = (int) pointCount;
+      HeapPointWriter sorted = new HeapPointWriter(count, count, packedBytesLength);
+      sorted.copyFrom(heapPointWriter);
+      sorted.close();
+
+      sortHeapPointWriter(sorted, 0, count, dim);
+
+      return sorted;
+    } else {
+
+      // Offline sort:
+      assert tempDir != null;
+
+      final int offset = bytesPerDim * dim;
+
+      Comparator<BytesRef> cmp = new Comparator<BytesRef>() {
+        @Override
+        public int compare(BytesRef a, BytesRef b) {
+          // First compare the bytes on the dimension we are sorting on:
+          for(int i=0;i<bytesPerDim;i++) {
+            int cmp = (a.bytes[a.offset+offset+i]&0xff) - (b.bytes[b.offset+offset+i]&0xff);
+            if (cmp != 0) {
+              return cmp;
+            }
+          }
+
+          // Tie-break by the (unique) ord:
+          for(int i=0;i<RamUsageEstimator.NUM_BYTES_LONG;i++) {
+            int cmp = (a.bytes[a.offset+packedBytesLength+i]&0xff) - (b.bytes[b.offset+packedBytesLength+i]&0xff);
+            if (cmp != 0) {
+              return cmp;
+            }
+          }
+
+          return 0;
+        }
+      };
+
+      Path sorted = tempDir.resolve("sorted" + dim);
+      boolean success = false;
+      try {
+        OfflineSorter sorter = new OfflineSorter(cmp, OfflineSorter.BufferSize.automatic(), tempDir, OfflineSorter.MAX_TEMPFILES,
+                                                 bytesPerDoc, null, 1);
+        sorter.sort(tempInput, sorted);
+        PointWriter writer = convertToFixedWidth(sorted);
+        success = true;
+        return writer;
+      } finally {
+        if (success) {
+          IOUtils.rm(sorted);
+        } else {
+          IOUtils.deleteFilesIgnoringExceptions(sorted);
+        }
+      }
+    }
+  }
+
+  /** Writes the BKD tree to the provided {@link IndexOutput} and returns the file offset where index was written. */
+  public long finish(IndexOutput out) throws IOException {
+
+    if (offlineWriter != null) {
+      offlineWriter.close();
+    }
+
+    if (pointCount == 0) {
+      throw new IllegalStateException("must index at least one point");
+    }
+
+    LongBitSet ordBitSet = new LongBitSet(pointCount);
+
+    // Smallest power of 2 number of leaves so that no leaf exceeds maxPointsInLeafNode; because we
+    // always split exactly in half, every inner node then has at least one point:
+    long numLeavesLong = 1;
+    while (numLeavesLong * maxPointsInLeafNode < pointCount) {
+      numLeavesLong *= 2;
+    }
+
+    if (numLeavesLong * (1+bytesPerDim) > ArrayUtil.MAX_ARRAY_LENGTH) {
+      throw new IllegalStateException("too many nodes; increase maxPointsInLeafNode (currently " + maxPointsInLeafNode + ") and reindex");
+    }
+
+    int numLeaves = (int) numLeavesLong;
+
+    // Indexed by nodeID, but first (root) nodeID is 1.  We do 1+ because the lead byte at each recursion says which dim we split on.
+    byte[] splitPackedValues = new byte[numLeaves*(1+bytesPerDim)];
+
+    // +1 because leaf count is power of 2 (e.g. 8), and innerNodeCount is power of 2 minus 1 (e.g. 7)
+    long[] leafBlockFPs = new long[numLeaves];
+
+    // Sort all docs once by each dimension:
+    PathSlice[] sortedPointWriters = new PathSlice[numDims];
+
+    boolean success = false;
+    try {
+      for(int dim=0;dim<numDims;dim++) {
+        sortedPointWriters[dim] = new PathSlice(sort(dim), 0, pointCount);
+      }
+
+      if (tempInput != null) {
+        IOUtils.rm(tempInput);
+        tempInput = null;
+      }
+
+      heapPointWriter = null;
+
+      build(1, numLeaves, sortedPointWriters,
+            ordBitSet, out,
+            minPackedValue.clone(), maxPackedValue.clone(),
+            splitPackedValues,
+            leafBlockFPs);
+
+      success = true;
+    } finally {
+      if (success) {
+        for(PathSlice slice : sortedPointWriters) {
+          slice.writer.destroy();
+        }
+      } else {
+        for(PathSlice slice : sortedPointWriters) {
+          if (slice != null) {
+            try {
+              slice.writer.destroy();
+            } catch (Throwable t) {
+              // Suppress to keep throwing original exc
+            }
+          }
+        }
+        if (tempInput != null) {
+          IOUtils.deleteFilesIgnoringExceptions(tempInput);
+        }
+      }
+    }
+
+    // Write index:
+    long indexFP = out.getFilePointer();
+    writeIndex(out, leafBlockFPs, splitPackedValues);
+
+    if (tempDir != null) {
+      // If we had to go offline, we should have removed all temp files we wrote:
+      assert directoryIsEmpty(tempDir);
+      IOUtils.rm(tempDir);
+      tempDir = null;
+    }
+
+    return indexFP;
+  }
+
+  /** Subclass can change how it writes the index. */
+  protected void writeIndex(IndexOutput out, long[] leafBlockFPs, byte[] splitPackedValues) throws IOException {
+    CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+    out.writeVInt(numDims);
+    out.writeVInt(maxPointsInLeafNode);
+    out.writeVInt(bytesPerDim);
+
+    assert leafBlockFPs.length > 0;
+    out.writeVInt(leafBlockFPs.length);
+
+    out.writeBytes(minPackedValue, 0, packedBytesLength);
+    out.writeBytes(maxPackedValue, 0, packedBytesLength);
+
+    out.writeVLong(pointCount);
+    out.writeVInt(docsSeen.cardinality());
+
+    // NOTE: splitPackedValues[0] is unused, because nodeID is 1-based:
+    out.writeBytes(splitPackedValues, 0, splitPackedValues.length);
+
+    // Leaf blocks are written in order, so the file pointers are monotonic:
+    long lastFP = 0;
+    for (int i=0;i<leafBlockFPs.length;i++) {
+      long delta = leafBlockFPs[i]-lastFP;
+      out.writeVLong(delta);
+      lastFP = leafBlockFPs[i];
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (offlineWriter != null) {
+      IOUtils.closeWhileHandlingException(offlineWriter);
+      offlineWriter = null;
+    }
+    if (tempDir != null) {
+      // finish was not called, or failed: remove any temp files we left behind
+      IOUtils.rm(tempDir);
+      tempDir = null;
+    }
+  }
+
+  // Called only from assert
+  private boolean directoryIsEmpty(Path in) {
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(in)) {
+      for (Path path : dir) {
+        assert false: "dir=" + in + " still has file=" + path;
+        return false;
+      }
+    } catch (IOException ioe) {
+      // Just ignore: we are only called from assert
+    }
+    return true;
+  }
+
+  /** Sliced reference to points in an OfflineSorter.ByteSequencesWriter file. */
+  private static final class PathSlice {
+    final PointWriter writer;
+    final long start;
+    final long count;
+
+    public PathSlice(PointWriter writer, long start, long count) {
+      this.writer = writer;
+      this.start = start;
+      this.count = count;
+    }
+
+    @Override
+    public String toString() {
+      return "PathSlice(start=" + start + " count=" + count + " writer=" + writer + ")";
+    }
+  }
+
+  /** Marks bits for the ords (points) that belong in the left sub tree (the first half of
+   *  the slice sorted by {@code splitDim}), and returns the split value, which is the
+   *  value of the first point in the right sub tree. */
+  private byte[] markLeftTree(int splitDim, PathSlice source, LongBitSet ordBitSet, long leftCount) throws IOException {
+
+    assert ordBitSet.cardinality() == 0: "cardinality=" + ordBitSet.cardinality();
+
+    byte[] splitValue = new byte[bytesPerDim];
+
+    boolean success = false;
+    PointReader reader = source.writer.getReader(source.start);
+    try {
+      for (long i=0;i<leftCount;i++) {
+        boolean result = reader.next();
+        assert result;
+        long ord = reader.ord();
+        // We should never see dup ords:
+        assert ordBitSet.get(ord) == false;
+        ordBitSet.set(ord);
+      }
+
+      // The next point is the first one in the right tree:
+      boolean result = reader.next();
+      assert result;
+      System.arraycopy(reader.packedValue(), splitDim*bytesPerDim, splitValue, 0, bytesPerDim);
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(reader);
+      } else {
+        IOUtils.closeWhileHandlingException(reader);
+      }
+    }
+
+    assert leftCount == ordBitSet.cardinality(): "leftCount=" + leftCount + " cardinality=" + ordBitSet.cardinality();
+
+    return splitValue;
+  }
+
+  /** Called only in assert */
+  private boolean valueInBounds(byte[] packedValue, byte[] minPackedValue, byte[] maxPackedValue) {
+    for(int dim=0;dim<numDims;dim++) {
+      if (BKDUtil.compare(bytesPerDim, packedValue, dim, minPackedValue, dim) < 0) {
+        return false;
+      }
+      if (BKDUtil.compare(bytesPerDim, packedValue, dim, maxPackedValue, dim) > 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /** Picks the dimension with the widest span within this cell */
+  protected int split(byte[] minPackedValue, byte[] maxPackedValue) {
+    int splitDim = -1;
+    for(int dim=0;dim<numDims;dim++) {
+      BKDUtil.subtract(bytesPerDim, dim, maxPackedValue, minPackedValue, scratchDiff);
+      if (splitDim == -1 || BKDUtil.compare(bytesPerDim, scratchDiff, 0, scratch1, 0) > 0) {
+        System.arraycopy(scratchDiff, 0, scratch1, 0, bytesPerDim);
+        splitDim = dim;
+      }
+    }
+
+    return splitDim;
+  }
+
+  /** Writes one leaf block: the docIDs, then the common prefix for each dimension, then
+   *  the remaining suffix bytes of each point. */
+  private void writeLeafBlock(IndexOutput out, PathSlice source, byte[] minPackedValue, byte[] maxPackedValue) throws IOException {
+    int count = Math.toIntExact(source.count);
+    int[] docIDs = new int[count];
+    byte[] leafValues = new byte[count * packedBytesLength];
+
+    PointReader reader = source.writer.getReader(source.start);
+    boolean success = false;
+    try {
+      for (int i=0;i<count;i++) {
+        // NOTE: we discard ord at this point; we only needed it temporarily
+        // during building to uniquely identify each point to properly handle
+        // the multi-valued case (one docID having multiple values):
+        boolean result = reader.next();
+        assert result;
+        byte[] packedValue = reader.packedValue();
+        assert valueInBounds(packedValue, minPackedValue, maxPackedValue);
+        System.arraycopy(packedValue, 0, leafValues, i*packedBytesLength, packedBytesLength);
+        docIDs[i] = reader.docID();
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(reader);
+      } else {
+        IOUtils.closeWhileHandlingException(reader);
+      }
+    }
+
+    // Find the common prefix of each dimension within this leaf:
+    int[] commonPrefixLengths = new int[numDims];
+    Arrays.fill(commonPrefixLengths, bytesPerDim);
+    for (int i=1;i<count;i++) {
+      for(int dim=0;dim<numDims;dim++) {
+        int firstOffset = dim*bytesPerDim;
+        int offset = i*packedBytesLength + firstOffset;
+        for(int j=0;j<commonPrefixLengths[dim];j++) {
+          if (leafValues[firstOffset+j] != leafValues[offset+j]) {
+            commonPrefixLengths[dim] = j;
+            break;
+          }
+        }
+      }
+    }
+
+    out.writeVInt(count);
+    for (int i=0;i<count;i++) {
+      // Absolute int encode, so the "fully inside" case can stream docIDs quickly:
+      out.writeInt(docIDs[i]);
+    }
+
+    for(int dim=0;dim<numDims;dim++) {
+      out.writeVInt(commonPrefixLengths[dim]);
+      if (count > 0) {
+        out.writeBytes(leafValues, dim*bytesPerDim, commonPrefixLengths[dim]);
+      }
+    }
+
+    for (int i=0;i<count;i++) {
+      for(int dim=0;dim<numDims;dim++) {
+        int prefix = commonPrefixLengths[dim];
+        out.writeBytes(leafValues, i*packedBytesLength + dim*bytesPerDim + prefix, bytesPerDim-prefix);
+      }
+    }
+  }
+
+  /** The point writers for all dimensions are already sorted (each by its own dimension) and
+   *  hold exactly the points of this cell. */
+  private void build(int nodeID, int leafNodeOffset,
+                     PathSlice[] slices,
+                     LongBitSet ordBitSet,
+                     IndexOutput out,
+                     byte[] minPackedValue, byte[] maxPackedValue,
+                     byte[] splitPackedValues,
+                     long[] leafBlockFPs) throws IOException {
+
+    for(PathSlice slice : slices) {
+      assert slice.count == slices[0].count;
+    }
+
+    if (nodeID >= leafNodeOffset) {
+      // Leaf node: write block
+      leafBlockFPs[nodeID - leafNodeOffset] = out.getFilePointer();
+      writeLeafBlock(out, slices[0], minPackedValue, maxPackedValue);
+    } else {
+      // Inner node: partition/recurse
+
+      int splitDim = split(minPackedValue, maxPackedValue);
+
+      PathSlice source = slices[splitDim];
+      long count = source.count;
+      assert nodeID < splitPackedValues.length: "nodeID=" + nodeID + " splitValues.length=" + splitPackedValues.length;
+      assert count > 0: "nodeID=" + nodeID;
+
+      // Exactly half the points go left, using the ord to break ties, so the tree stays balanced
+      // even for the adversarial case of many identical values:
+      long leftCount = count / 2;
+      byte[] splitValue = markLeftTree(splitDim, source, ordBitSet, leftCount);
+
+      int address = nodeID * (1+bytesPerDim);
+      splitPackedValues[address] = (byte) splitDim;
+      System.arraycopy(splitValue, 0, splitPackedValues, address + 1, bytesPerDim);
+
+      // Partition all PathSlice that are not the split dim into sorted left and right sets, so we can recurse:
+
+      PathSlice[] leftSlices = new PathSlice[numDims];
+      PathSlice[] rightSlices = new PathSlice[numDims];
+
+      byte[] minSplitPackedValue = minPackedValue.clone();
+      System.arraycopy(splitValue, 0, minSplitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+
+      byte[] maxSplitPackedValue = maxPackedValue.clone();
+      System.arraycopy(splitValue, 0, maxSplitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+
+      boolean success = false;
+      try {
+        for(int dim=0;dim<numDims;dim++) {
+
+          if (dim == splitDim) {
+            // No need to partition on this dim since it's a simple slice of the incoming already sorted slice.
+            leftSlices[dim] = new PathSlice(source.writer, source.start, leftCount);
+            rightSlices[dim] = new PathSlice(source.writer, source.start + leftCount, count - leftCount);
+            continue;
+          }
+
+          PointWriter leftPointWriter = null;
+          PointWriter rightPointWriter = null;
+          PointReader reader = null;
+
+          boolean success2 = false;
+
+          long nextLeftCount = 0;
+
+          try {
+            leftPointWriter = getPointWriter(leftCount);
+            rightPointWriter = getPointWriter(count - leftCount);
+            leftSlices[dim] = new PathSlice(leftPointWriter, 0, leftCount);
+            rightSlices[dim] = new PathSlice(rightPointWriter, 0, count - leftCount);
+
+            reader = slices[dim].writer.getReader(slices[dim].start);
+
+            // Partition this source according to how the splitDim split the values:
+            for (long i=0;i<count;i++) {
+              boolean result = reader.next();
+              assert result;
+              byte[] packedValue = reader.packedValue();
+              long ord = reader.ord();
+              int docID = reader.docID();
+              if (ordBitSet.get(ord)) {
+                leftPointWriter.append(packedValue, ord, docID);
+                nextLeftCount++;
+              } else {
+                rightPointWriter.append(packedValue, ord, docID);
+              }
+            }
+            success2 = true;
+          } finally {
+            if (success2) {
+              IOUtils.close(reader, leftPointWriter, rightPointWriter);
+            } else {
+              IOUtils.closeWhileHandlingException(reader, leftPointWriter, rightPointWriter);
+            }
+          }
+
+          assert leftCount == nextLeftCount: "leftCount=" + leftCount + " nextLeftCount=" + nextLeftCount;
+        }
+
+        ordBitSet.clear(0, pointCount);
+
+        // Recurse on left tree:
+        build(2*nodeID, leafNodeOffset, leftSlices,
+              ordBitSet, out,
+              minPackedValue, maxSplitPackedValue,
+              splitPackedValues, leafBlockFPs);
+        for(int dim=0;dim<numDims;dim++) {
+          if (dim != splitDim) {
+            leftSlices[dim].writer.destroy();
+            leftSlices[dim] = null;
+          }
+        }
+
+        // Recurse on right tree:
+        build(2*nodeID+1, leafNodeOffset, rightSlices,
+              ordBitSet, out,
+              minSplitPackedValue, maxPackedValue,
+              splitPackedValues, leafBlockFPs);
+        for(int dim=0;dim<numDims;dim++) {
+          if (dim != splitDim) {
+            rightSlices[dim].writer.destroy();
+            rightSlices[dim] = null;
+          }
+        }
+        success = true;
+      } finally {
+        if (success == false) {
+          for(int dim=0;dim<numDims;dim++) {
+            if (dim != splitDim) {
+              destroyQuietly(leftSlices[dim]);
+              destroyQuietly(rightSlices[dim]);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void destroyQuietly(PathSlice slice) {
+    if (slice != null) {
+      try {
+        slice.writer.destroy();
+      } catch (Throwable t) {
+        // Suppress to keep throwing original exc
+      }
+    }
+  }
+
+  PointWriter getPointWriter(long count) throws IOException {
+    if (count <= maxPointsSortInHeap) {
+      int size = Math.toIntExact(count);
+      return new HeapPointWriter(size, size, packedBytesLength);
+    } else {
+      return new OfflinePointWriter(tempDir, packedBytesLength, count);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package org.apache.lucene.util.bkd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** Iterates over the points held by a {@link HeapPointWriter}. */
+final class HeapPointReader implements PointReader {
+  private int curRead;
+  private final HeapPointWriter writer;
+  private final int end;
+  private final byte[] scratch;
+
+  HeapPointReader(HeapPointWriter writer, int start, int end) {
+    this.writer = writer;
+    this.end = end;
+    this.scratch = new byte[writer.packedBytesLength];
+    curRead = start-1;
+  }
+
+  @Override
+  public boolean next() {
+    curRead++;
+    return curRead < end;
+  }
+
+  @Override
+  public byte[] packedValue() {
+    writer.readPackedValue(curRead, scratch);
+    return scratch;
+  }
+
+  @Override
+  public int docID() {
+    return writer.docIDs[curRead];
+  }
+
+  @Override
+  public long ord() {
+    return writer.ords[curRead];
+  }
+
+  @Override
+  public void close() {
+  }
+}
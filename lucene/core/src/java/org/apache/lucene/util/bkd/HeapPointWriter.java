@@ -0,0 +1,127 @@
+package org.apache.lucene.util.bkd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/** Holds points in heap, in simple parallel arrays; grows on demand up to {@code maxSize}. */
+final class HeapPointWriter implements PointWriter {
+  int[] docIDs;
+  long[] ords;
+  byte[] packedValues;
+  private int nextWrite;
+  final int maxSize;
+  final int packedBytesLength;
+  private boolean closed;
+
+  public HeapPointWriter(int initSize, int maxSize, int packedBytesLength) {
+    assert initSize <= maxSize;
+    docIDs = new int[initSize];
+    ords = new long[initSize];
+    packedValues = new byte[initSize * packedBytesLength];
+    this.maxSize = maxSize;
+    this.packedBytesLength = packedBytesLength;
+  }
+
+  /** Copies the packed value at the provided index into the provided byte[] */
+  public void readPackedValue(int index, byte[] bytes) {
+    assert bytes.length == packedBytesLength;
+    System.arraycopy(packedValues, index * packedBytesLength, bytes, 0, packedBytesLength);
+  }
+
+  /** Overwrites the packed value at the provided index */
+  public void writePackedValue(int index, byte[] bytes) {
+    assert bytes.length == packedBytesLength;
+    System.arraycopy(bytes, 0, packedValues, index * packedBytesLength, packedBytesLength);
+  }
+
+  /** Copies all points from the other writer, which must fit in this one */
+  public void copyFrom(HeapPointWriter other) {
+    if (docIDs.length < other.nextWrite) {
+      throw new IllegalStateException("docIDs.length=" + docIDs.length + " other.nextWrite=" + other.nextWrite);
+    }
+    System.arraycopy(other.docIDs, 0, docIDs, 0, other.nextWrite);
+    System.arraycopy(other.ords, 0, ords, 0, other.nextWrite);
+    System.arraycopy(other.packedValues, 0, packedValues, 0, other.nextWrite * packedBytesLength);
+    nextWrite = other.nextWrite;
+  }
+
+  /** Returns how many points were appended */
+  public int count() {
+    return nextWrite;
+  }
+
+  @Override
+  public void append(byte[] packedValue, long ord, int docID) {
+    assert closed == false;
+    assert packedValue.length == packedBytesLength;
+    if (docIDs.length == nextWrite) {
+      int nextSize = Math.min(maxSize, ArrayUtil.oversize(nextWrite+1, RamUsageEstimator.NUM_BYTES_INT));
+      assert nextSize > nextWrite: "nextSize=" + nextSize + " vs nextWrite=" + nextWrite;
+      docIDs = growExact(docIDs, nextSize);
+      ords = growExact(ords, nextSize);
+      packedValues = growExact(packedValues, nextSize * packedBytesLength);
+    }
+    writePackedValue(nextWrite, packedValue);
+    ords[nextWrite] = ord;
+    docIDs[nextWrite] = docID;
+    nextWrite++;
+  }
+
+  private static int[] growExact(int[] arr, int size) {
+    assert size > arr.length;
+    int[] newArr = new int[size];
+    System.arraycopy(arr, 0, newArr, 0, arr.length);
+    return newArr;
+  }
+
+  private static long[] growExact(long[] arr, int size) {
+    assert size > arr.length;
+    long[] newArr = new long[size];
+    System.arraycopy(arr, 0, newArr, 0, arr.length);
+    return newArr;
+  }
+
+  private static byte[] growExact(byte[] arr, int size) {
+    assert size > arr.length;
+    byte[] newArr = new byte[size];
+    System.arraycopy(arr, 0, newArr, 0, arr.length);
+    return newArr;
+  }
+
+  @Override
+  public PointReader getReader(long start) {
+    assert start <= nextWrite: "start=" + start + " nextWrite=" + nextWrite;
+    return new HeapPointReader(this, (int) start, nextWrite);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  @Override
+  public void destroy() {
+  }
+
+  @Override
+  public String toString() {
+    return "HeapPointWriter(count=" + nextWrite + " alloc=" + docIDs.length + ")";
+  }
+}
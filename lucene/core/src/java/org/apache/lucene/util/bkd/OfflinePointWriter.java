@@ -0,0 +1,78 @@
+package org.apache.lucene.util.bkd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.IOUtils;
+
+/** Writes points to a temp file, as fixed-width records of packed value, ord and docID. */
+final class OfflinePointWriter implements PointWriter {
+
+  final Path tempFile;
+  final OutputStreamDataOutput out;
+  final long count;
+  final int packedBytesLength;
+  private long countWritten;
+  private boolean closed;
+
+  public OfflinePointWriter(Path tempDir, int packedBytesLength, long count) throws IOException {
+    tempFile = Files.createTempFile(tempDir, "size" + count + ".", "");
+    out = new OutputStreamDataOutput(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+    this.packedBytesLength = packedBytesLength;
+    this.count = count;
+  }
+
+  @Override
+  public void append(byte[] packedValue, long ord, int docID) throws IOException {
+    assert packedValue.length == packedBytesLength;
+    out.writeBytes(packedValue, 0, packedValue.length);
+    out.writeLong(ord);
+    out.writeInt(docID);
+    countWritten++;
+  }
+
+  @Override
+  public PointReader getReader(long start) throws IOException {
+    assert closed;
+    return new OfflinePointReader(tempFile, packedBytesLength, start, count-start);
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    out.close();
+    if (count != countWritten) {
+      throw new IllegalStateException("wrote " + countWritten + " values, but expected " + count);
+    }
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    IOUtils.rm(tempFile);
+  }
+
+  @Override
+  public String toString() {
+    return "OfflinePointWriter(count=" + count + " tempFile=" + tempFile + ")";
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Block KD-tree, implementing the generic spatial data structure described in
+ * <a href="https://www.cs.duke.edu/~pankaj/publications/papers/bkd-sstd.pdf">this paper</a>.
+ * <p>
+ * {@link org.apache.lucene.util.bkd.BKDWriter} recursively partitions N-dimensional,
+ * fixed-width byte[] points into a balanced tree of leaf blocks, sorting offline with
+ * {@link org.apache.lucene.util.OfflineSorter} when the points do not fit in heap, and
+ * {@link org.apache.lucene.util.bkd.BKDReader} intersects that tree with a query shape.
+ */
+package org.apache.lucene.util.bkd;
@@ -157,8 +157,12 @@ public final class FST<T> implements Accountable {
   // produces this output
   T emptyOutput;
 
+  // bytes of an FST that is being built, or null if it was loaded
   final BytesStore bytes;
 
+  // bytes of a loaded FST, or null if it is being built
+  private final FSTStore fstStore;
+
   private long startNode = -1;
 
   public final Outputs<T> outputs;
@@ -299,6 +303,7 @@ public final class FST<T> implements Accountable {
     this.allowArrayArcs = allowArrayArcs;
     version = VERSION_CURRENT;
     bytes = new BytesStore(bytesPageBits);
+    fstStore = null;
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
     bytes.writeByte((byte) 0);
@@ -326,11 +331,14 @@ public final class FST<T> implements Accountable {
   /** Load a previously saved FST; maxBlockBits allows you to
    *  control the size of the byte[] pages used to hold the FST bytes. */
   public FST(DataInput in, Outputs<T> outputs, int maxBlockBits) throws IOException {
-    this.outputs = outputs;
+    this(in, outputs, new OnHeapFSTStore(maxBlockBits));
+  }
 
-    if (maxBlockBits < 1 || maxBlockBits > 30) {
-      throw new IllegalArgumentException("maxBlockBits should be 1 .. 30; got " + maxBlockBits);
-    }
+  /** Load a previously saved FST; the {@link FSTStore} decides
+   *  where the FST bytes are held, e.g. {@link OffHeapFSTStore}
+   *  reads them from the input without copying them to the heap. */
+  public FST(DataInput in, Outputs<T> outputs, FSTStore fstStore) throws IOException {
+    this.outputs = outputs;
 
     // NOTE: only reads most recent format; we don't have
     // back-compat promise for FSTs (they are experimental):
@@ -385,7 +393,9 @@ public final class FST<T> implements Accountable {
     arcWithOutputCount = in.readVLong();
 
     long numBytes = in.readVLong();
-    bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
+    fstStore.init(in, numBytes);
+    this.fstStore = fstStore;
+    bytes = null;
     
     NO_OUTPUT = outputs.getNoOutput();
 
@@ -434,7 +444,11 @@ public final class FST<T> implements Accountable {
   @Override
   public long ramBytesUsed() {
     long size = BASE_RAM_BYTES_USED;
-    size += bytes.ramBytesUsed();
+    if (fstStore != null) {
+      size += fstStore.ramBytesUsed();
+    } else {
+      size += bytes.ramBytesUsed();
+    }
     if (packed) {
       size += nodeRefToAddress.ramBytesUsed();
     } else if (nodeAddress != null) {
@@ -596,9 +610,14 @@ public final class FST<T> implements Accountable {
     out.writeVLong(nodeCount);
     out.writeVLong(arcCount);
     out.writeVLong(arcWithOutputCount);
-    long numBytes = bytes.getPosition();
-    out.writeVLong(numBytes);
-    bytes.writeTo(out);
+    if (fstStore != null) {
+      out.writeVLong(fstStore.size());
+      fstStore.writeTo(out);
+    } else {
+      long numBytes = bytes.getPosition();
+      out.writeVLong(numBytes);
+      bytes.writeTo(out);
+    }
   }
   
   /**
@@ -1363,7 +1382,13 @@ public final class FST<T> implements Accountable {
    *  position 0. */
   public BytesReader getBytesReader() {
     BytesReader in;
-    if (packed) {
+    if (fstStore != null) {
+      if (packed) {
+        in = fstStore.getForwardReader();
+      } else {
+        in = fstStore.getReverseReader();
+      }
+    } else if (packed) {
       in = bytes.getForwardReader();
     } else {
       in = bytes.getReverseReader();
@@ -1498,6 +1523,7 @@ public final class FST<T> implements Accountable {
     packed = true;
     this.inputType = inputType;
     bytes = new BytesStore(bytesPageBits);
+    fstStore = null;
     this.outputs = outputs;
     NO_OUTPUT = outputs.getNoOutput();
     
@@ -0,0 +1,51 @@
+package org.apache.lucene.util.fst;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.Accountable;
+
+/**
+ * Holds the bytes of an {@link FST} that was loaded with
+ * {@link FST#FST(DataInput, Outputs, FSTStore)}.
+ *
+ * @see OnHeapFSTStore
+ * @see OffHeapFSTStore
+ * @lucene.experimental
+ */
+public interface FSTStore extends Accountable {
+
+  /** Reads the {@code numBytes} bytes of the FST from the given input,
+   *  and leaves the input positioned after them. */
+  void init(DataInput in, long numBytes) throws IOException;
+
+  /** Returns the number of bytes of the FST. */
+  long size();
+
+  /** Returns a reader that reads the bytes forward, for packed FSTs. */
+  FST.BytesReader getForwardReader();
+
+  /** Returns a reader that reads the bytes in reverse. */
+  FST.BytesReader getReverseReader();
+
+  /** Writes the bytes of the FST to the given output. */
+  void writeTo(DataOutput out) throws IOException;
+}
@@ -0,0 +1,100 @@
+package org.apache.lucene.util.fst;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * An {@link FSTStore} that reads the bytes of the FST directly from
+ * the {@link IndexInput} it was loaded from, without copying them to the
+ * heap.  Lookups are cheapest when the input is memory-mapped, e.g. by
+ * {@link org.apache.lucene.store.MMapDirectory}.
+ *
+ * <p>The FST must be loaded from an {@link IndexInput}, which must
+ * stay open as long as the FST is used.
+ *
+ * @lucene.experimental
+ */
+public final class OffHeapFSTStore implements FSTStore {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OffHeapFSTStore.class);
+
+  private IndexInput in;
+  private long numBytes;
+
+  /** Sole constructor. */
+  public OffHeapFSTStore() {
+  }
+
+  @Override
+  public void init(DataInput in, long numBytes) throws IOException {
+    if (in instanceof IndexInput == false) {
+      throw new IllegalArgumentException("OffHeapFSTStore must be loaded from an IndexInput, got: " + in.getClass().getName());
+    }
+    final IndexInput indexIn = (IndexInput) in;
+    final long offset = indexIn.getFilePointer();
+    this.in = indexIn.slice("fst", offset, numBytes);
+    this.numBytes = numBytes;
+    indexIn.seek(offset + numBytes);
+  }
+
+  @Override
+  public long size() {
+    return numBytes;
+  }
+
+  @Override
+  public FST.BytesReader getForwardReader() {
+    return new ForwardIndexInputReader(in.clone());
+  }
+
+  @Override
+  public FST.BytesReader getReverseReader() {
+    return new ReverseIndexInputReader(in.clone());
+  }
+
+  @Override
+  public void writeTo(DataOutput out) throws IOException {
+    final IndexInput clone = in.clone();
+    clone.seek(0);
+    out.copyBytes(clone, numBytes);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(bytes=" + numBytes + ")";
+  }
+}
@@ -0,0 +1,89 @@
+package org.apache.lucene.util.fst;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * An {@link FSTStore} that copies the bytes of the FST into
+ * {@code byte[]} pages on the heap.
+ *
+ * @lucene.experimental
+ */
+public final class OnHeapFSTStore implements FSTStore {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OnHeapFSTStore.class);
+
+  private final int maxBlockBits;
+  private BytesStore bytes;
+
+  /** Creates a store that uses pages of at most {@code 1 << maxBlockBits} bytes. */
+  public OnHeapFSTStore(int maxBlockBits) {
+    if (maxBlockBits < 1 || maxBlockBits > 30) {
+      throw new IllegalArgumentException("maxBlockBits should be 1 .. 30; got " + maxBlockBits);
+    }
+    this.maxBlockBits = maxBlockBits;
+  }
+
+  @Override
+  public void init(DataInput in, long numBytes) throws IOException {
+    bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
+  }
+
+  @Override
+  public long size() {
+    return bytes.getPosition();
+  }
+
+  @Override
+  public FST.BytesReader getForwardReader() {
+    return bytes.getForwardReader();
+  }
+
+  @Override
+  public FST.BytesReader getReverseReader() {
+    return bytes.getReverseReader();
+  }
+
+  @Override
+  public void writeTo(DataOutput out) throws IOException {
+    bytes.writeTo(out);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + bytes.ramBytesUsed();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(bytes=" + size() + ")";
+  }
+}
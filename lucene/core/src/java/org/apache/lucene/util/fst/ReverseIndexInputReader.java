@@ -0,0 +1,72 @@
+package org.apache.lucene.util.fst;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+
+/** Reads in reverse from an {@link IndexInput}, using positional reads
+ *  if the input supports them (e.g. if it is memory-mapped). */
+final class ReverseIndexInputReader extends FST.BytesReader {
+  private final IndexInput in;
+  private final RandomAccessInput randomAccess;
+  private long pos;
+
+  public ReverseIndexInputReader(IndexInput in) {
+    this.in = in;
+    this.randomAccess = in instanceof RandomAccessInput ? (RandomAccessInput) in : null;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    if (randomAccess != null) {
+      return randomAccess.readByte(pos--);
+    }
+    in.seek(pos--);
+    return in.readByte();
+  }
+
+  @Override
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    for(int i=0;i<len;i++) {
+      b[offset+i] = readByte();
+    }
+  }
+
+  @Override
+  public void skipBytes(long count) {
+    pos -= count;
+  }
+
+  @Override
+  public long getPosition() {
+    return pos;
+  }
+
+  @Override
+  public void setPosition(long pos) {
+    this.pos = pos;
+  }
+
+  @Override
+  public boolean reversed() {
+    return true;
+  }
+}
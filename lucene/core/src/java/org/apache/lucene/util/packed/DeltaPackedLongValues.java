@@ -39,6 +39,15 @@ class DeltaPackedLongValues extends PackedLongValues {
     return mins[block] + values[block].get(element);
   }
 
+  @Override
+  void decode(int block, int element, long[] dest, int off, int len) {
+    super.decode(block, element, dest, off, len);
+    final long min = mins[block];
+    for (int i = off, end = off + len; i < end; ++i) {
+      dest[i] += min;
+    }
+  }
+
   @Override
   int decodeBlock(int block, long[] dest) {
     final int count = super.decodeBlock(block, dest);
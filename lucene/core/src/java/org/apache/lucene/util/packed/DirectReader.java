@@ -78,6 +78,26 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        // consecutive documents often share the same byte: only read it once
+        long lastOffset = -1;
+        int b = 0;
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          final long offset = index >>> 3;
+          if (offset != lastOffset) {
+            b = in.readByte(offset);
+            lastOffset = offset;
+          }
+          values[i] = (b >>> (7 - (int) (index & 7))) & 0x1;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader2 extends LongValues {
@@ -96,6 +116,26 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        // consecutive documents often share the same byte: only read it once
+        long lastOffset = -1;
+        int b = 0;
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          final long offset = index >>> 2;
+          if (offset != lastOffset) {
+            b = in.readByte(offset);
+            lastOffset = offset;
+          }
+          values[i] = (b >>> ((3 - (int) (index & 3)) << 1)) & 0x3;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader4 extends LongValues {
@@ -114,6 +154,26 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        // consecutive documents often share the same byte: only read it once
+        long lastOffset = -1;
+        int b = 0;
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          final long offset = index >>> 1;
+          if (offset != lastOffset) {
+            b = in.readByte(offset);
+            lastOffset = offset;
+          }
+          values[i] = (b >>> ((int) ((index + 1) & 1) << 2)) & 0xF;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
     
   static final class DirectPackedReader8 extends LongValues {
@@ -131,6 +191,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readByte(index) & 0xFF;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader12 extends LongValues {
@@ -150,6 +222,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = (in.readShort((index * 12) >>> 3) >>> ((int) ((index + 1) & 1) << 2)) & 0xFFF;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader16 extends LongValues {
@@ -167,6 +251,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readShort(index << 1) & 0xFFFF;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader20 extends LongValues {
@@ -188,6 +284,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = ((in.readInt((index * 20) >>> 3) >>> 8) >>> ((int) ((index + 1) & 1) << 2)) & 0xFFFFF;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader24 extends LongValues {
@@ -205,6 +313,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readInt(index * 3) >>> 8;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader28 extends LongValues {
@@ -224,6 +344,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = (in.readInt((index * 28) >>> 3) >>> ((int) ((index + 1) & 1) << 2)) & 0xFFFFFFFL;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader32 extends LongValues {
@@ -241,6 +373,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readInt(index << 2) & 0xFFFFFFFFL;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader40 extends LongValues {
@@ -258,6 +402,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readLong(index * 5) >>> 24;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader48 extends LongValues {
@@ -275,6 +431,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readLong(index * 6) >>> 16;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader56 extends LongValues {
@@ -292,6 +460,18 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readLong(index * 7) >>> 8;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   
   static final class DirectPackedReader64 extends LongValues {
@@ -309,5 +489,17 @@ public class DirectReader {
         throw new RuntimeException(e);
       }
     }    
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      try {
+        for (int i = 0; i < count; ++i) {
+          final long index = docIDs[i];
+          values[i] = in.readLong(index << 3);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
 }
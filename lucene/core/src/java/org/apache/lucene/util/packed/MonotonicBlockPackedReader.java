@@ -93,6 +93,30 @@ public class MonotonicBlockPackedReader extends LongValues implements Accountabl
     return expected(minValues[block], averages[block], idx) + subReaders[block].get(idx);
   }
 
+  @Override
+  public void get(int[] indices, long[] dest, int count) {
+    for (int i = 0; i < count; ) {
+      assert indices[i] >= 0 && indices[i] < valueCount;
+      final int block = indices[i] >>> blockShift;
+      final int idx = indices[i] & blockMask;
+      final long min = minValues[block];
+      final float average = averages[block];
+      // consecutive indices of the same block are decoded at once
+      int end = i + 1;
+      while (end < count && indices[end] == indices[end - 1] + 1 && idx + end - i <= blockMask) {
+        ++end;
+      }
+      final PackedInts.Reader reader = subReaders[block];
+      for (int k = 0; k < end - i; ) {
+        k += reader.get(idx + k, dest, i + k, end - i - k);
+      }
+      for (int k = 0; k < end - i; ++k) {
+        dest[i + k] += expected(min, average, idx + k);
+      }
+      i = end;
+    }
+  }
+
   /** Returns the number of values */
   public long size() {
     return valueCount;
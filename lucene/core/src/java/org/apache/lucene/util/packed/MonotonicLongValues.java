@@ -42,6 +42,15 @@ class MonotonicLongValues extends DeltaPackedLongValues {
     return expected(mins[block], averages[block], element) + values[block].get(element);
   }
 
+  @Override
+  void decode(int block, int element, long[] dest, int off, int len) {
+    super.decode(block, element, dest, off, len);
+    final float average = averages[block];
+    for (int i = 0; i < len; ++i) {
+      dest[off + i] += expected(0, average, element + i);
+    }
+  }
+
   @Override
   int decodeBlock(int block, long[] dest) {
     final int count = super.decodeBlock(block, dest);
@@ -98,6 +98,15 @@ public class PackedLongValues extends LongValues implements Accountable {
     return size;
   }
 
+  /** Decode {@code len} consecutive values of a block, starting at
+   *  {@code element}, into {@code dest} at offset {@code off}. */
+  void decode(int block, int element, long[] dest, int off, int len) {
+    final PackedInts.Reader vals = values[block];
+    for (int k = 0; k < len; ) {
+      k += vals.get(element + k, dest, off + k, len - k);
+    }
+  }
+
   long get(int block, int element) {
     return values[block].get(element);
   }
@@ -110,6 +119,26 @@ public class PackedLongValues extends LongValues implements Accountable {
     return get(block, element);
   }
 
+  @Override
+  public final void get(int[] indices, long[] dest, int count) {
+    for (int i = 0; i < count; ) {
+      assert indices[i] >= 0 && indices[i] < size();
+      final int block = indices[i] >>> pageShift;
+      final int element = indices[i] & pageMask;
+      // consecutive indices of the same block are decoded at once
+      int end = i + 1;
+      while (end < count && indices[end] == indices[end - 1] + 1 && element + end - i <= pageMask) {
+        ++end;
+      }
+      if (end == i + 1) {
+        dest[i] = get(block, element);
+      } else {
+        decode(block, element, dest, i, end - i);
+      }
+      i = end;
+    }
+  }
+
   @Override
   public long ramBytesUsed() {
     return ramBytesUsed;
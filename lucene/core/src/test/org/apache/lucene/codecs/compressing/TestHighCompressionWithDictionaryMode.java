@@ -0,0 +1,77 @@
+package org.apache.lucene.codecs.compressing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+public class TestHighCompressionWithDictionaryMode extends AbstractTestCompressionMode {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    mode = CompressionMode.HIGH_COMPRESSION_WITH_DICTIONARY;
+  }
+
+  /** Partial decompression must leave the input after the compressed data, like full decompression. */
+  public void testInputPositionAfterPartialDecompress() throws IOException {
+    final byte[] first = randomArray(TestUtil.nextInt(random(), 1, 64 * 1024), random().nextInt(256));
+    final byte[] second = randomArray(TestUtil.nextInt(random(), 1, 64 * 1024), random().nextInt(256));
+    final Compressor compressor = mode.newCompressor();
+    final byte[] compressed = new byte[(first.length + second.length) * 2 + 64];
+    final ByteArrayDataOutput out = new ByteArrayDataOutput(compressed);
+    compressor.compress(first, 0, first.length, out);
+    compressor.compress(second, 0, second.length, out);
+
+    final Decompressor decompressor = mode.newDecompressor();
+    final ByteArrayDataInput in = new ByteArrayDataInput(compressed, 0, out.getPosition());
+    final BytesRef bytes = new BytesRef();
+    final int offset = random().nextInt(first.length);
+    final int length = TestUtil.nextInt(random(), 1, first.length - offset);
+    decompressor.decompress(in, first.length, offset, length, bytes);
+    assertEquals(new BytesRef(first, offset, length), bytes);
+    decompressor.decompress(in, second.length, 0, second.length, bytes);
+    assertEquals(new BytesRef(second), bytes);
+    assertTrue(in.eof());
+  }
+
+  /** Blocks of similar records compress better with the dictionary than on their own. */
+  public void testDictionaryHelps() throws IOException {
+    final StringBuilder records = new StringBuilder();
+    for (int i = 0; records.length() < 64 * 1024; i++) {
+      records.append("{\"id\":").append(i).append(",\"type\":\"product\",\"category\":\"category")
+          .append(i % 7).append("\",\"price\":").append(i % 100).append("}\n");
+    }
+    final byte[] decompressed = records.toString().getBytes(StandardCharsets.UTF_8);
+    final byte[] withDict = compress(decompressed, 0, decompressed.length);
+
+    // same block layout, but every block compressed on its own
+    int withoutDict = 0;
+    for (int start = 0; start < decompressed.length; start += CompressionMode.PRESET_DICT_BLOCK_LENGTH) {
+      final int len = Math.min(CompressionMode.PRESET_DICT_BLOCK_LENGTH, decompressed.length - start);
+      withoutDict += compress(CompressionMode.HIGH_COMPRESSION.newCompressor(), decompressed, start, len).length;
+    }
+    assertTrue(withDict.length + " >= " + withoutDict, withDict.length < withoutDict);
+    assertArrayEquals(decompressed, decompress(withDict, decompressed.length));
+  }
+}
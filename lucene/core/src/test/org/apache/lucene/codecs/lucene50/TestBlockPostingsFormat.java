@@ -25,9 +25,18 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.BasePostingsFormatTestCase;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -65,6 +74,164 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
     d.close();
   }
 
+  /** Make sure that per-block max freqs recorded in skip data are upper bounds of the actual freqs. */
+  public void testMaxFreqs() throws Exception {
+    Directory d = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    IndexWriter w = new IndexWriter(d, iwc);
+    final int numDocs = atLeast(2000);
+    final int[] freqs = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      if (random().nextInt(10) != 0) {
+        // a few docs have a high freq
+        freqs[i] = random().nextInt(50) == 0 ? TestUtil.nextInt(random(), 10, 100) : TestUtil.nextInt(random(), 1, 3);
+        StringBuilder value = new StringBuilder();
+        for (int j = 0; j < freqs[i]; j++) {
+          value.append("a ");
+        }
+        doc.add(newTextField("field", value.toString(), Field.Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+
+    DirectoryReader r = DirectoryReader.open(w, true);
+    assertEquals(1, r.leaves().size());
+    TermsEnum termsEnum = r.leaves().get(0).reader().terms("field").iterator();
+    assertTrue(termsEnum.seekExact(new BytesRef("a")));
+    PostingsEnum postings = termsEnum.postings(null, null, PostingsEnum.FREQS);
+    assertTrue(postings instanceof ImpactsEnum);
+    ImpactsEnum impacts = (ImpactsEnum) postings;
+
+    int target = 0;
+    while (true) {
+      final int upTo = impacts.advanceShallow(target);
+      assertTrue(upTo >= target);
+      final int maxFreq = impacts.getMaxFreq(upTo);
+      int doc = impacts.advance(target);
+      for (; doc <= upTo && doc != DocIdSetIterator.NO_MORE_DOCS; doc = impacts.nextDoc()) {
+        assertEquals(freqs[doc], impacts.freq());
+        assertTrue(impacts.freq() <= maxFreq);
+      }
+      if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+        break;
+      }
+      target = doc + TestUtil.nextInt(random(), 1, 300);
+    }
+    r.close();
+    w.close();
+    d.close();
+  }
+
+  /** Make sure that dense DOCS-only terms are stored as bitsets and iterate the same docs as other terms. */
+  public void testDenseDocs() throws Exception {
+    Directory d = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    IndexWriter w = new IndexWriter(d, iwc);
+    // more than 4 * MAX_DENSE_DOC_FREQ docs so that the writer decides on the density of large terms
+    // before it has all their docs
+    final int numDocs = atLeast(5000);
+    // densities of the first and second halves of the docs
+    final double[][] densities = new double[][] {
+      { 1, 1 }, { 0.9, 0.9 }, { 0.5, 0.5 }, { 0.3, 0.3 }, { 0.25, 0.25 }, { 0.1, 0.1 }, { 0.01, 0.01 },
+      { 0.9, 0.01 }, { 0.01, 0.9 }, { 0.5, 0 }
+    };
+    final FixedBitSet[] expected = new FixedBitSet[densities.length];
+    for (int i = 0; i < densities.length; ++i) {
+      expected[i] = new FixedBitSet(numDocs);
+    }
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      for (int j = 0; j < densities.length; ++j) {
+        // also make the first and last words of the bitsets sparse
+        final boolean edge = i < 100 || i >= numDocs - 100;
+        final double density = densities[j][i < numDocs / 2 ? 0 : 1];
+        if (random().nextDouble() < (edge ? density / 10 : density)) {
+          doc.add(newStringField("field", Integer.toString(j), Field.Store.NO));
+          expected[j].set(i);
+        }
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    final int numDeletes = random().nextInt(100);
+    for (int i = 0; i < numDeletes; ++i) {
+      w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(numDocs))));
+    }
+
+    DirectoryReader r = DirectoryReader.open(w, true);
+    assertEquals(1, r.leaves().size());
+    final LeafReader leaf = r.leaves().get(0).reader();
+    final Bits liveDocs = leaf.getLiveDocs();
+    TermsEnum termsEnum = leaf.terms("field").iterator();
+    PostingsEnum reuse = null;
+    for (int j = 0; j < densities.length; ++j) {
+      final int docFreq = expected[j].cardinality();
+      if (docFreq == 0) {
+        continue;
+      }
+      assertTrue(termsEnum.seekExact(new BytesRef(Integer.toString(j))));
+      assertEquals(docFreq, termsEnum.docFreq());
+      final boolean dense = isDense(expected[j], Lucene50PostingsFormat.denseDocFreq(numDocs));
+      reuse = termsEnum.postings(liveDocs, reuse, PostingsEnum.NONE);
+      assertEquals(dense, reuse instanceof Lucene50PostingsReader.DenseDocsEnum);
+      assertEquals(docFreq, reuse.cost());
+
+      // nextDoc
+      int expectedDoc = -1;
+      while (true) {
+        expectedDoc = expectedDoc + 1 >= numDocs ? DocIdSetIterator.NO_MORE_DOCS : expected[j].nextSetBit(expectedDoc + 1);
+        while (expectedDoc != DocIdSetIterator.NO_MORE_DOCS && liveDocs != null && liveDocs.get(expectedDoc) == false) {
+          expectedDoc = expectedDoc + 1 >= numDocs ? DocIdSetIterator.NO_MORE_DOCS : expected[j].nextSetBit(expectedDoc + 1);
+        }
+        assertEquals(expectedDoc, reuse.nextDoc());
+        if (expectedDoc == DocIdSetIterator.NO_MORE_DOCS) {
+          break;
+        }
+        assertEquals(1, reuse.freq());
+      }
+
+      // advance, by small and large steps
+      reuse = termsEnum.postings(liveDocs, reuse, PostingsEnum.NONE);
+      int target = random().nextInt(200);
+      while (true) {
+        expectedDoc = target >= numDocs ? DocIdSetIterator.NO_MORE_DOCS : expected[j].nextSetBit(target);
+        while (expectedDoc != DocIdSetIterator.NO_MORE_DOCS && liveDocs != null && liveDocs.get(expectedDoc) == false) {
+          expectedDoc = expectedDoc + 1 >= numDocs ? DocIdSetIterator.NO_MORE_DOCS : expected[j].nextSetBit(expectedDoc + 1);
+        }
+        assertEquals(expectedDoc, reuse.advance(target));
+        if (expectedDoc == DocIdSetIterator.NO_MORE_DOCS) {
+          break;
+        }
+        target = expectedDoc + (random().nextBoolean() ? TestUtil.nextInt(random(), 1, 10) : TestUtil.nextInt(random(), 1, 500));
+      }
+    }
+    r.close();
+    w.close();
+    d.close();
+  }
+
+  /** Whether the given docs are at least one in DENSE_DOCS_RATIO up to each doc after the first denseDocFreq ones. */
+  private static boolean isDense(FixedBitSet docs, int denseDocFreq) {
+    if (docs.cardinality() < denseDocFreq) {
+      return false;
+    }
+    final int firstDoc = docs.nextSetBit(0);
+    int docCount = 0;
+    for (int doc = firstDoc; doc != DocIdSetIterator.NO_MORE_DOCS;
+        doc = doc + 1 >= docs.length() ? DocIdSetIterator.NO_MORE_DOCS : docs.nextSetBit(doc + 1)) {
+      docCount++;
+      if (docCount >= denseDocFreq && (long) docCount * Lucene50PostingsFormat.DENSE_DOCS_RATIO < doc - firstDoc + 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void shouldFail(int minItemsInBlock, int maxItemsInBlock) {
     try {
       new Lucene50PostingsFormat(minItemsInBlock, maxItemsInBlock);
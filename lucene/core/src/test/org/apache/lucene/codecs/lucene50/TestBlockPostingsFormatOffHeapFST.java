@@ -0,0 +1,97 @@
+package org.apache.lucene.codecs.lucene50;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.codecs.blocktree.FieldReader;
+import org.apache.lucene.codecs.lucene53.Lucene53Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests BlockPostingsFormat with terms indices that are read off-heap
+ */
+public class TestBlockPostingsFormatOffHeapFST extends BasePostingsFormatTestCase {
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new Lucene50PostingsFormat(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE,
+                                                                                        BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE,
+                                                                                        FSTLoadMode.OFF_HEAP));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  /** The load mode is recorded per field, and only the id field reads its terms index off-heap. */
+  public void testPerFieldLoadMode() throws Exception {
+    final PostingsFormat offHeap = new Lucene50PostingsFormat(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE,
+                                                              BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE,
+                                                              FSTLoadMode.OFF_HEAP);
+    final PostingsFormat onHeap = new Lucene50PostingsFormat();
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(new Lucene53Codec() {
+        @Override
+        public PostingsFormat getPostingsFormatForField(String field) {
+          return field.equals("id") ? offHeap : onHeap;
+        }
+      });
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", "id" + i, Field.Store.NO));
+      doc.add(newStringField("id2", "id" + i, Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    LeafReader leaf = getOnlySegmentReader(r);
+    assertEquals(FSTLoadMode.OFF_HEAP.name(), leaf.getFieldInfos().fieldInfo("id").getAttribute(BlockTreeTermsReader.FST_LOAD_MODE_KEY));
+    assertNull(leaf.getFieldInfos().fieldInfo("id2").getAttribute(BlockTreeTermsReader.FST_LOAD_MODE_KEY));
+    FieldReader id = (FieldReader) leaf.terms("id");
+    FieldReader id2 = (FieldReader) leaf.terms("id2");
+    // same terms, but only id2 holds its terms index on the heap:
+    assertTrue(id.ramBytesUsed() < id2.ramBytesUsed());
+
+    TermsEnum termsEnum = id.iterator();
+    for (int i = 0; i < numDocs; i++) {
+      assertTrue(termsEnum.seekExact(new BytesRef("id" + i)));
+      assertEquals(1, termsEnum.docFreq());
+    }
+    assertFalse(termsEnum.seekExact(new BytesRef("id" + numDocs)));
+    assertEquals(TermsEnum.SeekStatus.NOT_FOUND, termsEnum.seekCeil(new BytesRef("id0a")));
+    r.close();
+    dir.close();
+  }
+}
@@ -0,0 +1,71 @@
+package org.apache.lucene.codecs.lucene53;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.PointsFormat;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.index.BasePointsFormatTestCase;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests Lucene53PointsFormat
+ */
+public class TestLucene53PointsFormat extends BasePointsFormatTestCase {
+  private final Codec codec;
+
+  public TestLucene53PointsFormat() {
+    if (random().nextBoolean()) {
+      // randomize the tree shape, and sometimes force the writer to sort offline:
+      final int maxPointsInLeafNode = TestUtil.nextInt(random(), 16, 2048);
+      final double maxMBSortInHeap = 0.1 + 3*random().nextDouble();
+      if (VERBOSE) {
+        System.out.println("TEST: using Lucene53PointsFormat with maxPointsInLeafNode=" + maxPointsInLeafNode + " and maxMBSortInHeap=" + maxMBSortInHeap);
+      }
+      codec = new FilterCodec("Lucene53", new Lucene53Codec()) {
+        @Override
+        public PointsFormat pointsFormat() {
+          return new PointsFormat() {
+            @Override
+            public PointsWriter fieldsWriter(SegmentWriteState writeState) throws IOException {
+              return new Lucene53PointsWriter(writeState, maxPointsInLeafNode, maxMBSortInHeap);
+            }
+
+            @Override
+            public PointsReader fieldsReader(SegmentReadState readState) throws IOException {
+              return new Lucene53PointsReader(readState);
+            }
+          };
+        }
+      };
+    } else {
+      codec = new Lucene53Codec();
+    }
+  }
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+}
@@ -20,14 +20,20 @@ package org.apache.lucene.index;
 import java.io.IOException;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
 
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LineFileDocs;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CannedTokenStream;
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -171,6 +177,149 @@ public class TestCheckIndex extends LuceneTestCase {
     analyzer.close();
   }
   
+  private static MockDirectoryWrapper newIndexWithSegments(int numSegments) throws IOException {
+    MockDirectoryWrapper dir = newMockDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    // one segment per commit
+    iwc.setMaxBufferedDocs(100).setRAMBufferSizeMB(16).setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter iw = new IndexWriter(dir, iwc);
+    for (int i = 0; i < numSegments; i++) {
+      for (int j = 0; j < 10; j++) {
+        Document doc = new Document();
+        doc.add(newStringField("id", i + "_" + j, Field.Store.YES));
+        doc.add(newTextField("body", "segment " + i + " doc " + j, Field.Store.NO));
+        iw.addDocument(doc);
+      }
+      iw.commit();
+    }
+    iw.close();
+    return dir;
+  }
+
+  public void testThreadCount() throws IOException {
+    Directory dir = newIndexWithSegments(5);
+    CheckIndex checker = new CheckIndex(dir);
+    CheckIndex.Status serialStatus = checker.checkIndex();
+    assertTrue(serialStatus.clean);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+    checker.setInfoStream(new PrintStream(bos, false, IOUtils.UTF_8));
+    checker.setThreadCount(TestUtil.nextInt(random(), 2, 4));
+    CheckIndex.Status status = checker.checkIndex();
+    assertTrue(status.clean);
+    assertEquals(5, status.segmentInfos.size());
+    assertEquals(serialStatus.verifiedSegments, status.verifiedSegments);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(serialStatus.segmentInfos.get(i).name, status.segmentInfos.get(i).name);
+      assertTrue(status.segmentInfos.get(i).openReaderPassed);
+      assertEquals(10, status.segmentInfos.get(i).storedFieldStatus.docCount);
+    }
+    // messages are printed in index order
+    String output = bos.toString(IOUtils.UTF_8);
+    int previous = -1;
+    for (int i = 1; i <= 5; i++) {
+      int index = output.indexOf("  " + i + " of 5: name=");
+      assertTrue(output, index > previous);
+      previous = index;
+    }
+    checker.close();
+    dir.close();
+  }
+
+  public void testChecksumsOnlyDetectsCorruption() throws IOException {
+    MockDirectoryWrapper dir = newIndexWithSegments(2);
+    CheckIndex checker = new CheckIndex(dir);
+    checker.setChecksumsOnly(true);
+    CheckIndex.Status status = checker.checkIndex();
+    assertTrue(status.clean);
+    assertNull(status.segmentInfos.get(0).storedFieldStatus);
+    checker.close();
+
+    // flip a byte of the largest file of the first segment, except its segment info
+    SegmentInfos infos = SegmentInfos.readLatestCommit(dir);
+    String corruptFile = null;
+    for (String file : infos.info(0).files()) {
+      if (file.endsWith(".si") == false && (corruptFile == null || dir.fileLength(file) > dir.fileLength(corruptFile))) {
+        corruptFile = file;
+      }
+    }
+    byte[] bytes = new byte[(int) dir.fileLength(corruptFile)];
+    try (IndexInput in = dir.openInput(corruptFile, IOContext.DEFAULT)) {
+      in.readBytes(bytes, 0, bytes.length);
+    }
+    bytes[bytes.length / 2] ^= 1;
+    dir.setEnableVirusScanner(false);
+    dir.setPreventDoubleWrite(false);
+    dir.deleteFile(corruptFile);
+    try (IndexOutput out = dir.createOutput(corruptFile, IOContext.DEFAULT)) {
+      out.writeBytes(bytes, bytes.length);
+    }
+    dir.setCheckIndexOnClose(false);
+
+    checker = new CheckIndex(dir);
+    checker.setChecksumsOnly(true);
+    status = checker.checkIndex();
+    assertFalse(status.clean);
+    assertEquals(1, status.numBadSegments);
+    assertEquals(1, status.verifiedSegments.size());
+    checker.close();
+    dir.close();
+  }
+
+  public void testIncremental() throws IOException {
+    Directory dir = newIndexWithSegments(3);
+    CheckIndex checker = new CheckIndex(dir);
+    CheckIndex.Status status = checker.checkIndex();
+    assertTrue(status.clean);
+    assertEquals(3, status.verifiedSegments.size());
+    List<String> verified = status.verifiedSegments;
+
+    // nothing changed: all segments are skipped
+    checker.setVerifiedSegments(verified);
+    status = checker.checkIndex();
+    assertTrue(status.clean);
+    assertEquals(verified, status.verifiedSegments);
+    for (CheckIndex.Status.SegmentInfoStatus segment : status.segmentInfos) {
+      assertTrue(segment.alreadyVerified);
+      assertFalse(segment.openReaderPassed);
+    }
+    checker.close();
+
+    // deletes give the segment a new key
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter iw = new IndexWriter(dir, iwc);
+    iw.deleteDocuments(new Term("id", "1_3"));
+    iw.close();
+    checker = new CheckIndex(dir);
+    checker.setVerifiedSegments(verified);
+    status = checker.checkIndex();
+    assertTrue(status.clean);
+    assertTrue(status.segmentInfos.get(0).alreadyVerified);
+    assertFalse(status.segmentInfos.get(1).alreadyVerified);
+    assertTrue(status.segmentInfos.get(1).openReaderPassed);
+    assertTrue(status.segmentInfos.get(2).alreadyVerified);
+    assertEquals(verified.get(0), status.verifiedSegments.get(0));
+    assertFalse(verified.get(1).equals(status.verifiedSegments.get(1)));
+    verified = status.verifiedSegments;
+
+    // segments verified with checksums only are checked again by a full check
+    checker.setVerifiedSegments(Collections.<String>emptyList());
+    checker.setChecksumsOnly(true);
+    status = checker.checkIndex();
+    assertTrue(status.clean);
+    checker.setChecksumsOnly(false);
+    checker.setVerifiedSegments(status.verifiedSegments);
+    status = checker.checkIndex();
+    assertTrue(status.clean);
+    for (CheckIndex.Status.SegmentInfoStatus segment : status.segmentInfos) {
+      assertFalse(segment.alreadyVerified);
+    }
+    assertEquals(verified, status.verifiedSegments);
+    checker.close();
+    dir.close();
+  }
+
   public void testObtainsLock() throws IOException {
     Directory dir = newDirectory();
     IndexWriter iw = new IndexWriter(dir, newIndexWriterConfig(null));
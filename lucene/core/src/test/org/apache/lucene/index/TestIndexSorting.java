@@ -0,0 +1,537 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexSorting extends LuceneTestCase {
+
+  private static Sort randomSort() {
+    final SortField sortField;
+    switch (random().nextInt(3)) {
+      case 0:
+        sortField = new SortField("sort", SortField.Type.LONG, random().nextBoolean());
+        if (random().nextBoolean()) {
+          sortField.setMissingValue(random().nextLong());
+        }
+        break;
+      case 1:
+        sortField = new SortField("sort_s", SortField.Type.STRING, random().nextBoolean());
+        if (random().nextBoolean()) {
+          sortField.setMissingValue(random().nextBoolean() ? SortField.STRING_FIRST : SortField.STRING_LAST);
+        }
+        break;
+      default:
+        // multi-level sort
+        return new Sort(new SortField("sort_s", SortField.Type.STRING, random().nextBoolean()),
+                        new SortField("sort", SortField.Type.LONG, random().nextBoolean()));
+    }
+    return new Sort(sortField);
+  }
+
+  private static final FieldType TV_TYPE = new FieldType(StringField.TYPE_NOT_STORED);
+  static {
+    TV_TYPE.setStoreTermVectors(true);
+    TV_TYPE.freeze();
+  }
+
+  /** Create a new document, that has no sort value if {@code sortValue} is null. */
+  private static Document newDoc(int id, Long sortValue, long value) {
+    Document doc = new Document();
+    doc.add(new StringField("id", Integer.toString(id), Store.YES));
+    doc.add(new Field("tv", Integer.toString(id), TV_TYPE));
+    if (sortValue != null) {
+      doc.add(new NumericDocValuesField("sort", sortValue));
+      doc.add(new SortedDocValuesField("sort_s", new BytesRef(Long.toString(sortValue % 100))));
+    }
+    doc.add(new NumericDocValuesField("ndv", value));
+    doc.add(new BinaryDocValuesField("bdv", new BytesRef(Long.toString(value))));
+    return doc;
+  }
+
+  /** Check that every segment is sorted and that the index matches the expected id to value mapping. */
+  private static void assertSortedIndex(IndexReader reader, Sort sort, Map<Integer,Long> expected) throws IOException {
+    int numDocs = 0;
+    for (LeafReaderContext ctx : reader.leaves()) {
+      final LeafReader leaf = ctx.reader();
+      if (leaf instanceof SegmentReader) {
+        assertEquals(sort, ((SegmentReader) leaf).getSegmentInfo().info.getIndexSort());
+      }
+      assertNull(new Sorter(sort).sort(leaf));
+      final Bits liveDocs = leaf.getLiveDocs();
+      final NumericDocValues ndv = leaf.getNumericDocValues("ndv");
+      final BinaryDocValues bdv = leaf.getBinaryDocValues("bdv");
+      for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+        if (liveDocs != null && liveDocs.get(doc) == false) {
+          continue;
+        }
+        final int id = Integer.parseInt(leaf.document(doc).get("id"));
+        final Long value = expected.get(id);
+        assertNotNull("doc with id=" + id + " should have been deleted", value);
+        final TermsEnum tv = leaf.getTermVector(doc, "tv").iterator();
+        assertEquals(new BytesRef(Integer.toString(id)), tv.next());
+        assertNull(tv.next());
+        assertEquals(value.longValue(), ndv.get(doc));
+        assertEquals(new BytesRef(Long.toString(value)), bdv.get(doc));
+        numDocs++;
+      }
+    }
+    assertEquals(expected.size(), numDocs);
+  }
+
+  public void testRandom() throws Exception {
+    Directory dir = newDirectory();
+    final Sort sort = randomSort();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(sort);
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    // ids are reused so that deletes and updates which are buffered in the
+    // same segment as the documents they apply to must be mapped correctly
+    final int maxID = TestUtil.nextInt(random(), 10, 500);
+    final Map<Integer,Long> expected = new HashMap<>();
+    final int iters = atLeast(1000);
+    for (int i = 0; i < iters; ++i) {
+      final int id = random().nextInt(maxID);
+      final Term idTerm = new Term("id", Integer.toString(id));
+      final long value = random().nextInt(1000);
+      switch (random().nextInt(10)) {
+        case 0:
+          w.deleteDocuments(new TermQuery(idTerm));
+          expected.remove(id);
+          break;
+        case 1:
+          w.deleteDocuments(idTerm);
+          expected.remove(id);
+          break;
+        case 2:
+          if (expected.containsKey(id)) {
+            w.updateNumericDocValue(idTerm, "ndv", value);
+            w.updateBinaryDocValue(idTerm, "bdv", new BytesRef(Long.toString(value)));
+            expected.put(id, value);
+          }
+          break;
+        default:
+          // some docs miss the sort value
+          final Long sortValue = random().nextInt(10) == 0 ? null : random().nextLong();
+          w.updateDocument(idTerm, newDoc(id, sortValue, value));
+          expected.put(id, value);
+          break;
+      }
+      if (rarely()) {
+        w.commit();
+      }
+    }
+
+    DirectoryReader reader = w.getReader();
+    assertSortedIndex(reader, sort, expected);
+    reader.close();
+
+    w.forceMerge(1);
+    reader = w.getReader();
+    assertSortedIndex(reader, sort, expected);
+    reader.close();
+
+    w.close();
+    dir.close();
+  }
+
+  public void testFlushAlreadySorted() throws Exception {
+    Directory dir = newDirectory();
+    final Sort sort = new Sort(new SortField("sort", SortField.Type.LONG));
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(sort);
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final Map<Integer,Long> expected = new HashMap<>();
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      // documents are added in the order of the index sort
+      w.addDocument(newDoc(i, (long) i, i));
+      expected.put(i, (long) i);
+      if (random().nextInt(20) == 0) {
+        w.commit();
+      }
+    }
+    w.commit();
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    assertSortedIndex(reader, sort, expected);
+    reader.close();
+    w.close();
+
+    // already sorted segments are not rewritten, but their stored fields and
+    // term vectors are copied from the temporary formats that flushes use
+    for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(dir)) {
+      for (String file : info.files()) {
+        assertFalse(file, DocumentsWriterPerThread.UnsortedSegmentCodec.isUnsortedFormatFile(file));
+      }
+    }
+    for (String file : dir.listAll()) {
+      assertFalse(file, DocumentsWriterPerThread.UnsortedSegmentCodec.isUnsortedFormatFile(file));
+    }
+    dir.close();
+  }
+
+  public void testMergeSortedSegmentsWithDeletes() throws Exception {
+    // segments are merged both in sorted order (alreadySorted) and in an
+    // order that needs the merged segment to be sorted
+    for (boolean alreadySorted : new boolean[] { false, true }) {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setIndexSort(new Sort(new SortField("sort", SortField.Type.LONG)));
+      iwc.setMergePolicy(newLogMergePolicy(100));
+      iwc.setMergeScheduler(new SerialMergeScheduler());
+      iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+      iwc.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+      IndexWriter w = new IndexWriter(dir, iwc);
+      final int numSegments = 4;
+      final int docsPerSegment = 50;
+      for (int seg = 0; seg < numSegments; ++seg) {
+        for (int i = 0; i < docsPerSegment; ++i) {
+          final int id = seg * docsPerSegment + i;
+          // descending within segments, which flushes sorted segments
+          final long sortValue = alreadySorted ? id : (docsPerSegment - i) * numSegments + seg;
+          w.addDocument(newDoc(id, sortValue, id));
+        }
+        w.commit();
+      }
+      assertEquals(numSegments, w.getSegmentCount());
+
+      // deletes in all segments, some committed before the merge
+      for (int id = 0; id < numSegments * docsPerSegment; id += 3) {
+        w.deleteDocuments(new Term("id", Integer.toString(id)));
+      }
+      w.commit();
+      for (int id = 1; id < numSegments * docsPerSegment; id += 7) {
+        w.deleteDocuments(new Term("id", Integer.toString(id)));
+      }
+      w.forceMerge(1);
+
+      DirectoryReader reader = DirectoryReader.open(w, true);
+      assertEquals(1, reader.leaves().size());
+      final LeafReader leaf = reader.leaves().get(0).reader();
+      assertNull(new Sorter(iwc.getIndexSort()).sort(leaf));
+      final Bits liveDocs = leaf.getLiveDocs();
+      final NumericDocValues sort = leaf.getNumericDocValues("sort");
+      final NumericDocValues ndv = leaf.getNumericDocValues("ndv");
+      final Set<Integer> ids = new HashSet<>();
+      long previousSortValue = Long.MIN_VALUE;
+      for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+        if (liveDocs != null && liveDocs.get(doc) == false) {
+          continue;
+        }
+        final int id = Integer.parseInt(leaf.document(doc).get("id"));
+        assertTrue("duplicate id=" + id, ids.add(id));
+        assertEquals(id, ndv.get(doc));
+        assertTrue(sort.get(doc) >= previousSortValue);
+        previousSortValue = sort.get(doc);
+      }
+      final Set<Integer> expectedIDs = new HashSet<>();
+      for (int id = 0; id < numSegments * docsPerSegment; ++id) {
+        if (id % 3 != 0 && id % 7 != 1) {
+          expectedIDs.add(id);
+        }
+      }
+      assertEquals(expectedIDs, ids);
+      reader.close();
+      w.close();
+      dir.close();
+    }
+  }
+
+  public void testSegmentPrivateDeletes() throws Exception {
+    Directory dir = newDirectory();
+    final Sort sort = new Sort(new SortField("sort", SortField.Type.LONG));
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwc.setRAMBufferSizeMB(16);
+    iwc.setIndexSort(sort);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    // doc 0 of the buffered segment ends up last once sorted, yet only the
+    // first copy of the document must be deleted and updated
+    w.addDocument(newDoc(0, 3L, 0));
+    w.addDocument(newDoc(1, 2L, 1));
+    w.deleteDocuments(new TermQuery(new Term("id", "0")));
+    w.updateNumericDocValue(new Term("id", "1"), "ndv", 42);
+    w.updateBinaryDocValue(new Term("id", "1"), "bdv", new BytesRef("42"));
+    w.addDocument(newDoc(0, 1L, 5));
+    w.addDocument(newDoc(1, 0L, 7));
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    assertEquals(1, reader.leaves().size());
+    final LeafReader leaf = reader.leaves().get(0).reader();
+    assertEquals(3, leaf.numDocs());
+    final NumericDocValues ndv = leaf.getNumericDocValues("ndv");
+    final NumericDocValues sortValues = leaf.getNumericDocValues("sort");
+    for (int doc = 1; doc < leaf.maxDoc(); ++doc) {
+      assertTrue(sortValues.get(doc - 1) <= sortValues.get(doc));
+    }
+    final Map<Long,Long> ndvBySortValue = new HashMap<>();
+    for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+      if (leaf.getLiveDocs().get(doc)) {
+        ndvBySortValue.put(sortValues.get(doc), ndv.get(doc));
+      }
+    }
+    final Map<Long,Long> expectedNdv = new HashMap<>();
+    expectedNdv.put(2L, 42L);
+    expectedNdv.put(1L, 5L);
+    expectedNdv.put(0L, 7L);
+    assertEquals(expectedNdv, ndvBySortValue);
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testMergeUnsortedSegments() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final Map<Integer,Long> expected = new HashMap<>();
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      w.addDocument(newDoc(i, random().nextLong(), i));
+      expected.put(i, (long) i);
+      // at least two segments, since forceMerge(1) does not rewrite a single segment
+      if (i == numDocs / 2 || random().nextInt(20) == 0) {
+        w.commit();
+      }
+    }
+    w.close();
+
+    // segments that were written without an index sort are sorted when merged
+    final Sort sort = new Sort(new SortField("sort", SortField.Type.LONG));
+    iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(sort);
+    w = new IndexWriter(dir, iwc);
+    w.forceMerge(1);
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    assertSortedIndex(reader, sort, expected);
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testAddIndexes() throws Exception {
+    Directory unsortedDir = newDirectory();
+    IndexWriter w = new IndexWriter(unsortedDir, newIndexWriterConfig(new MockAnalyzer(random())));
+    final Map<Integer,Long> expected = new HashMap<>();
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      w.addDocument(newDoc(i, random().nextLong(), i));
+      expected.put(i, (long) i);
+    }
+    w.close();
+
+    final Sort sort = new Sort(new SortField("sort", SortField.Type.LONG, true));
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(sort);
+    w = new IndexWriter(dir, iwc);
+    try {
+      w.addIndexes(unsortedDir);
+      fail("unsorted segments can't be added");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    DirectoryReader unsortedReader = DirectoryReader.open(unsortedDir);
+    final CodecReader[] leaves = new CodecReader[unsortedReader.leaves().size()];
+    for (int i = 0; i < leaves.length; ++i) {
+      leaves[i] = (CodecReader) unsortedReader.leaves().get(i).reader();
+    }
+    w.addIndexes(leaves);
+    unsortedReader.close();
+
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    assertSortedIndex(reader, sort, expected);
+    reader.close();
+    w.close();
+
+    // sorted segments can be added to an index with the same sort
+    Directory dir2 = newDirectory();
+    iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(sort);
+    w = new IndexWriter(dir2, iwc);
+    w.addIndexes(dir);
+    reader = DirectoryReader.open(w, true);
+    assertSortedIndex(reader, sort, expected);
+    reader.close();
+    w.close();
+
+    dir2.close();
+    dir.close();
+    unsortedDir.close();
+  }
+
+  /** A merge policy that merges segments with OneMerges that wrap their readers, and optionally reorder documents. */
+  private static class WrappingMergePolicy extends LogDocMergePolicy {
+    final boolean reorder;
+    final AtomicInteger wrappedReaders = new AtomicInteger();
+
+    WrappingMergePolicy(boolean reorder) {
+      this.reorder = reorder;
+    }
+
+    @Override
+    public MergeSpecification findForcedMerges(SegmentInfos infos, int maxSegmentCount,
+        Map<SegmentCommitInfo,Boolean> segmentsToMerge, IndexWriter writer) throws IOException {
+      final MergeSpecification spec = super.findForcedMerges(infos, maxSegmentCount, segmentsToMerge, writer);
+      if (spec == null) {
+        return null;
+      }
+      final MergeSpecification wrapped = new MergeSpecification();
+      for (OneMerge merge : spec.merges) {
+        if (reorder) {
+          wrapped.add(new OneMerge(merge.segments) {
+            @Override
+            public DocMap getDocMap(MergeState mergeState) {
+              return super.getDocMap(mergeState);
+            }
+          });
+        } else {
+          wrapped.add(new OneMerge(merge.segments) {
+            @Override
+            public List<CodecReader> getMergeReaders() throws IOException {
+              final List<CodecReader> readers = new ArrayList<>();
+              for (CodecReader reader : super.getMergeReaders()) {
+                readers.add(new FilterCodecReader(reader) {});
+                wrappedReaders.incrementAndGet();
+              }
+              return readers;
+            }
+          });
+        }
+      }
+      return wrapped;
+    }
+  }
+
+  public void testMergeReadersOfOneMerge() throws Exception {
+    for (boolean reorder : new boolean[] { false, true }) {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      final Sort sort = new Sort(new SortField("sort", SortField.Type.LONG));
+      iwc.setIndexSort(sort);
+      final WrappingMergePolicy mp = new WrappingMergePolicy(reorder);
+      iwc.setMergePolicy(mp);
+      iwc.setMergeScheduler(new SerialMergeScheduler());
+      IndexWriter w = new IndexWriter(dir, iwc);
+      final Map<Integer,Long> expected = new HashMap<>();
+      for (int i = 0; i < 20; ++i) {
+        w.addDocument(newDoc(i, (long) -i, i));
+        expected.put(i, (long) i);
+        if (i % 5 == 4) {
+          w.commit();
+        }
+      }
+      if (reorder) {
+        // the index sort defines the order of documents
+        try {
+          w.forceMerge(1);
+          fail("OneMerges that reorder documents can't merge sorted segments");
+        } catch (IllegalStateException e) {
+          assertTrue(e.getMessage(), e.getMessage().contains("reorders documents"));
+        }
+      } else {
+        // the readers of the OneMerge are merged and sorted
+        w.forceMerge(1);
+        assertTrue(mp.wrappedReaders.get() > 0);
+        DirectoryReader reader = DirectoryReader.open(w, true);
+        assertEquals(1, reader.leaves().size());
+        assertSortedIndex(reader, sort, expected);
+        reader.close();
+      }
+      w.close();
+      dir.close();
+    }
+  }
+
+  public void testCannotChangeIndexSort() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(new Sort(new SortField("sort", SortField.Type.LONG)));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    w.addDocument(newDoc(0, 0L, 0));
+    w.close();
+
+    iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(new Sort(new SortField("sort", SortField.Type.LONG, true)));
+    try {
+      new IndexWriter(dir, iwc);
+      fail("index sort can't be changed");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("cannot change index sort"));
+    }
+    dir.close();
+  }
+
+  public void testCannotUpdateSortField() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(new Sort(new SortField("sort", SortField.Type.LONG)));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    Document doc = new Document();
+    doc.add(new StringField("id", "0", Store.NO));
+    doc.add(new NumericDocValuesField("sort", 3));
+    w.addDocument(doc);
+    try {
+      w.updateNumericDocValue(new Term("id", "0"), "sort", 5);
+      fail("sort fields can't be updated");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testInvalidSortField() {
+    final IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    for (SortField sortField : new SortField[] { SortField.FIELD_SCORE, SortField.FIELD_DOC }) {
+      try {
+        iwc.setIndexSort(new Sort(sortField));
+        fail("index can't be sorted by " + sortField);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    assertNull(iwc.getIndexSort());
+  }
+}
@@ -0,0 +1,292 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+public class TestIndexWriterApplyDeletesExecutor extends LuceneTestCase {
+
+  /** Counts the tasks that were handed to the wrapped executor. */
+  private static class CountingExecutor implements Executor {
+    final Executor in;
+    final AtomicInteger count = new AtomicInteger();
+
+    CountingExecutor(Executor in) {
+      this.in = in;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      count.incrementAndGet();
+      in.execute(command);
+    }
+  }
+
+  private static IndexWriterConfig newConfig(long seed) {
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(new Random(seed)));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(new Random(seed), 10, 50));
+    iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    return iwc;
+  }
+
+  /** Adds documents, and deletes and updates some of them, in many segments. */
+  private static void indexAndDelete(IndexWriter w, long seed, int numDocs) throws IOException {
+    Random random = new Random(seed);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", "" + i, Field.Store.YES));
+      doc.add(new StringField("group", "" + random.nextInt(20), Field.Store.NO));
+      doc.add(new TextField("body", "a b " + random.nextInt(100), Field.Store.NO));
+      doc.add(new NumericDocValuesField("numeric", random.nextLong()));
+      doc.add(new BinaryDocValuesField("binary", new BytesRef("" + random.nextInt(50))));
+      w.addDocument(doc);
+      switch (random.nextInt(8)) {
+        case 0:
+          w.deleteDocuments(new Term("id", "" + random.nextInt(i + 1)));
+          break;
+        case 1:
+          w.deleteDocuments(new TermQuery(new Term("body", "" + random.nextInt(100))));
+          break;
+        case 2:
+          w.updateNumericDocValue(new Term("group", "" + random.nextInt(20)), "numeric", random.nextLong());
+          break;
+        case 3:
+          w.updateBinaryDocValue(new Term("group", "" + random.nextInt(20)), "binary", new BytesRef("" + random.nextInt(50)));
+          break;
+        default:
+          break;
+      }
+      if (i % 100 == 99) {
+        // resolves the buffered deletes and updates against all segments:
+        DirectoryReader.open(w, true).close();
+      }
+    }
+  }
+
+  /** Applying deletes and updates with an executor must give the same index as applying them on a single thread. */
+  public void testSameAsSequential() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+                                                        new NamedThreadFactory("TestIndexWriterApplyDeletesExecutor"));
+    Directory dir1 = newDirectory();
+    Directory dir2 = newDirectory();
+    try {
+      long seed = random().nextLong();
+      int numDocs = atLeast(500);
+
+      IndexWriter w1 = new IndexWriter(dir1, newConfig(seed));
+      indexAndDelete(w1, seed, numDocs);
+      w1.close();
+
+      CountingExecutor executor = new CountingExecutor(pool);
+      IndexWriter w2 = new IndexWriter(dir2, newConfig(seed).setApplyDeletesExecutor(executor));
+      indexAndDelete(w2, seed, numDocs);
+      w2.close();
+      // segments were resolved on the executor:
+      assertTrue(executor.count.get() > 0);
+
+      DirectoryReader r1 = DirectoryReader.open(dir1);
+      DirectoryReader r2 = DirectoryReader.open(dir2);
+      assertTrue(r2.leaves().size() > 1);
+      assertReaderEquals("apply deletes executor", r1, r2);
+      IOUtils.close(r1, r2);
+    } finally {
+      IOUtils.close(dir1, dir2);
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  /** The thread that applies the deletes resolves the segments that the executor does not accept. */
+  public void testRejectingExecutor() throws Exception {
+    Directory dir = newDirectory();
+    final AtomicInteger rejected = new AtomicInteger();
+    long seed = random().nextLong();
+    IndexWriterConfig iwc = newConfig(seed);
+    iwc.setApplyDeletesExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          rejected.incrementAndGet();
+          throw new RejectedExecutionException();
+        }
+      });
+    IndexWriter w = new IndexWriter(dir, iwc);
+    indexAndDelete(w, seed, atLeast(300));
+    w.deleteDocuments(new Term("group", "0"));
+    w.close();
+    assertTrue(rejected.get() > 0);
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(0, newSearcher(r).count(new TermQuery(new Term("group", "0"))));
+    r.close();
+    dir.close();
+  }
+
+  /** Other threads can take the lock of the writer while deletes and updates are resolved. */
+  public void testResolveWithoutWriterLock() throws Exception {
+    Directory dir = newDirectory();
+    long seed = random().nextLong();
+    final IndexWriter[] writer = new IndexWriter[1];
+    final AtomicInteger executed = new AtomicInteger();
+    IndexWriterConfig iwc = newConfig(seed);
+    iwc.setApplyDeletesExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          executed.incrementAndGet();
+          assertFalse(Thread.holdsLock(writer[0]));
+          Thread t = new Thread() {
+              @Override
+              public void run() {
+                synchronized (writer[0]) {
+                  // would block until resolution is done if the applying thread held the lock
+                }
+              }
+            };
+          t.start();
+          try {
+            t.join();
+          } catch (InterruptedException ie) {
+            throw new ThreadInterruptedException(ie);
+          }
+          command.run();
+        }
+      });
+    writer[0] = new IndexWriter(dir, iwc);
+    indexAndDelete(writer[0], seed, atLeast(300));
+    writer[0].close();
+    assertTrue(executed.get() > 0);
+    dir.close();
+  }
+
+  /** Deletes and updates that are resolved while their segments are merged
+   *  away must still be applied to the merged segment. */
+  public void testSegmentsMergedAwayDuringResolution() throws Exception {
+    Directory dir = newDirectory();
+    final CountDownLatch mergeStarted = new CountDownLatch(1);
+    final CountDownLatch resumeMerge = new CountDownLatch(1);
+    final AtomicBoolean armed = new AtomicBoolean();
+    final Thread[] mergeThread = new Thread[1];
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(new LogDocMergePolicy());
+    iwc.setMergeScheduler(new SerialMergeScheduler());
+    iwc.setInfoStream(new InfoStream() {
+        @Override
+        public void message(String component, String message) {
+          if (message.startsWith("now merge") && Thread.currentThread() == mergeThread[0]) {
+            // pause the merge once it has registered its segments
+            mergeStarted.countDown();
+            try {
+              resumeMerge.await();
+            } catch (InterruptedException ie) {
+              throw new ThreadInterruptedException(ie);
+            }
+          }
+        }
+
+        @Override
+        public boolean isEnabled(String component) {
+          return "IW".equals(component);
+        }
+
+        @Override
+        public void close() {}
+      });
+    final IndexWriter w = RandomIndexWriter.mockIndexWriter(dir, iwc, new RandomIndexWriter.TestPoint() {
+        @Override
+        public void apply(String message) {
+          if ("startPublishDeletes".equals(message) && armed.getAndSet(false)) {
+            // let the merge commit before the resolved deletes are published
+            resumeMerge.countDown();
+            try {
+              mergeThread[0].join();
+            } catch (InterruptedException ie) {
+              throw new ThreadInterruptedException(ie);
+            }
+          }
+        }
+      });
+
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 10; j++) {
+        Document doc = new Document();
+        doc.add(new StringField("id", "" + (10 * i + j), Field.Store.NO));
+        doc.add(new NumericDocValuesField("numeric", 0));
+        w.addDocument(doc);
+      }
+      w.commit();
+    }
+
+    mergeThread[0] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            w.forceMerge(1);
+          } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+          }
+        }
+      };
+    mergeThread[0].start();
+    mergeStarted.await();
+
+    w.deleteDocuments(new Term("id", "5"));
+    w.updateNumericDocValue(new Term("id", "15"), "numeric", 42);
+    armed.set(true);
+    DirectoryReader r = DirectoryReader.open(w, true);
+    // the merge committed while the deletes were resolved:
+    assertFalse(armed.get());
+    assertEquals(1, r.leaves().size());
+    assertEquals(29, r.numDocs());
+    IndexSearcher searcher = newSearcher(r);
+    assertEquals(0, searcher.count(new TermQuery(new Term("id", "5"))));
+    TopDocs hits = searcher.search(new TermQuery(new Term("id", "15")), 1);
+    assertEquals(1, hits.totalHits);
+    assertEquals(42, MultiDocValues.getNumericValues(r, "numeric").get(hits.scoreDocs[0].doc));
+    r.close();
+    w.close();
+    dir.close();
+  }
+}
@@ -0,0 +1,197 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexWriterConcurrentAnalysis extends LuceneTestCase {
+
+  private static IndexWriterConfig newConfig(long seed) {
+    // same seed, so that both analyzers add the same payloads:
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(new Random(seed)));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(new Random(seed), 10, 100));
+    iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    return iwc;
+  }
+
+  private static Document newDoc(Random random, int id) {
+    FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+    vectorsType.setStoreTermVectors(true);
+    vectorsType.setStoreTermVectorPositions(true);
+    vectorsType.setStoreTermVectorOffsets(true);
+    vectorsType.setStoreTermVectorPayloads(true);
+    FieldType offsetsType = new FieldType(TextField.TYPE_STORED);
+    offsetsType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+
+    Document doc = new Document();
+    doc.add(new StringField("id", "" + id, Field.Store.YES));
+    doc.add(new TextField("body", TestUtil.randomAnalysisString(random, 50, true), Field.Store.NO));
+    // multi-valued, with position and offset gaps between the values:
+    for (int i = random.nextInt(3); i >= 0; i--) {
+      doc.add(new Field("offsets", TestUtil.randomSimpleString(random, 20) + " a b", offsetsType));
+    }
+    doc.add(new Field("vectors", "c d " + random.nextInt(10), vectorsType));
+    doc.add(new TextField("empty", "", Field.Store.NO));
+    return doc;
+  }
+
+  /** Analyzing documents up-front must give the same index as analyzing them in the indexing chain. */
+  public void testSameAsIndexingChain() throws Exception {
+    Directory dir1 = newDirectory();
+    Directory dir2 = newDirectory();
+    long seed = random().nextLong();
+    int numDocs = atLeast(300);
+
+    IndexWriter w1 = new IndexWriter(dir1, newConfig(seed));
+    IndexWriter w2 = new IndexWriter(dir2, newConfig(seed).setConcurrentAnalysis(true));
+    for (int i = 0; i < numDocs; i++) {
+      if (random().nextInt(10) == 0) {
+        List<Document> block = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+          block.add(newDoc(random(), i));
+        }
+        w1.addDocuments(block);
+        w2.addDocuments(block);
+      } else {
+        Document doc = newDoc(random(), i);
+        w1.addDocument(doc);
+        w2.addDocument(doc);
+      }
+    }
+    w1.close();
+    w2.close();
+
+    DirectoryReader r1 = DirectoryReader.open(dir1);
+    DirectoryReader r2 = DirectoryReader.open(dir2);
+    assertReaderEquals("concurrent analysis", r1, r2);
+    IOUtils.close(r1, r2, dir1, dir2);
+  }
+
+  /** More threads than thread states share the indexing buffers. */
+  public void testMoreThreadsThanThreadStates() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxThreadStates(TestUtil.nextInt(random(), 1, 2));
+    iwc.setConcurrentAnalysis(true);
+    final IndexWriter w = new IndexWriter(dir, iwc);
+    final int numThreads = TestUtil.nextInt(random(), 3, 6);
+    final int docsPerThread = atLeast(100);
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final long seed = random().nextLong();
+      threads[i] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              Random random = new Random(seed);
+              start.await();
+              for (int j = 0; j < docsPerThread; j++) {
+                Document doc = new Document();
+                doc.add(new TextField("body", "common " + TestUtil.randomSimpleString(random, 10), Field.Store.NO));
+                w.addDocument(doc);
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(numThreads * docsPerThread, r.numDocs());
+    assertEquals(numThreads * docsPerThread, newSearcher(r).count(new TermQuery(new Term("body", "common"))));
+    r.close();
+    dir.close();
+  }
+
+  /** An exception during analysis fails the document before it is added to a segment. */
+  public void testExceptionDuringAnalysis() throws Exception {
+    Analyzer analyzer = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+          Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+          return new TokenStreamComponents(tokenizer, new TokenFilter(tokenizer) {
+              private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+              @Override
+              public boolean incrementToken() throws IOException {
+                if (input.incrementToken()) {
+                  if (termAtt.toString().equals("crash")) {
+                    throw new IOException("now crashing");
+                  }
+                  return true;
+                }
+                return false;
+              }
+            });
+        }
+      };
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(analyzer).setConcurrentAnalysis(true));
+    Document doc = new Document();
+    doc.add(new TextField("body", "a b c", Field.Store.YES));
+    w.addDocument(doc);
+    Document crashing = new Document();
+    crashing.add(new TextField("body", "a crash c", Field.Store.YES));
+    try {
+      w.addDocument(crashing);
+      fail("did not hit exception");
+    } catch (IOException ioe) {
+      assertEquals("now crashing", ioe.getMessage());
+    }
+    // the writer is still usable and the analyzer's components were closed:
+    w.addDocument(doc);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    // the failed document did not take a document ID:
+    assertEquals(2, r.maxDoc());
+    assertEquals(2, r.numDocs());
+    r.close();
+    dir.close();
+  }
+}
@@ -76,6 +76,9 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(Codec.getDefault(), conf.getCodec());
     assertEquals(InfoStream.getDefault(), conf.getInfoStream());
     assertEquals(IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM, conf.getUseCompoundFile());
+    assertNull(conf.getMergeExecutor());
+    assertNull(conf.getApplyDeletesExecutor());
+    assertEquals(IndexWriterConfig.DEFAULT_CONCURRENT_ANALYSIS, conf.getConcurrentAnalysis());
     // Sanity check - validate that all getters are covered.
     Set<String> getters = new HashSet<>();
     getters.add("getAnalyzer");
@@ -0,0 +1,279 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.asserting.AssertingCodec;
+import org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexWriterMergeExecutor extends LuceneTestCase {
+
+  /** Counts the tasks that were handed to the wrapped executor. */
+  private static class CountingExecutor implements Executor {
+    final Executor in;
+    final AtomicInteger count = new AtomicInteger();
+
+    CountingExecutor(Executor in) {
+      this.in = in;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      count.incrementAndGet();
+      in.execute(command);
+    }
+  }
+
+  private static Codec newPerFieldCodec() {
+    final PostingsFormat postings1 = TestUtil.getDefaultPostingsFormat();
+    final PostingsFormat postings2 = PostingsFormat.forName("Asserting");
+    final DocValuesFormat docValues1 = TestUtil.getDefaultDocValuesFormat();
+    final DocValuesFormat docValues2 = DocValuesFormat.forName("Asserting");
+    return new AssertingCodec() {
+      @Override
+      public PostingsFormat getPostingsFormatForField(String field) {
+        return field.endsWith("1") ? postings1 : postings2;
+      }
+
+      @Override
+      public DocValuesFormat getDocValuesFormatForField(String field) {
+        return field.endsWith("1") ? docValues1 : docValues2;
+      }
+    };
+  }
+
+  private static void addDocs(IndexWriter w, long seed, int numDocs) throws IOException {
+    Random random = new Random(seed);
+    FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+    vectorsType.setStoreTermVectors(true);
+    vectorsType.setStoreTermVectorPositions(true);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StoredField("stored", "doc " + i));
+      doc.add(new TextField("body1", "a b c " + random.nextInt(100), Field.Store.NO));
+      doc.add(new TextField("body2", "d e " + random.nextInt(1000), Field.Store.NO));
+      doc.add(new Field("vectors", "f g " + random.nextInt(10), vectorsType));
+      doc.add(new NumericDocValuesField("numeric1", random.nextLong()));
+      doc.add(new BinaryDocValuesField("binary2", new BytesRef("" + random.nextInt(50))));
+      doc.add(new SortedDocValuesField("sorted1", new BytesRef("" + random.nextInt(50))));
+      doc.add(new SortedSetDocValuesField("sortedset2", new BytesRef("" + random.nextInt(50))));
+      doc.add(new IntPoint("point", random.nextInt()));
+      w.addDocument(doc);
+      if (random.nextInt(5) == 0) {
+        w.deleteDocuments(new Term("body1", "" + random.nextInt(100)));
+      }
+      if (i % 50 == 49) {
+        w.commit();
+      }
+    }
+  }
+
+  private static IndexWriterConfig newConfig(Codec codec, long seed) {
+    // same seed, so that both analyzers add the same payloads:
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(new Random(seed)));
+    iwc.setCodec(codec);
+    iwc.setMergeScheduler(new SerialMergeScheduler());
+    iwc.setMergePolicy(new LogDocMergePolicy());
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwc.setRAMBufferSizeMB(16);
+    return iwc;
+  }
+
+  /** Merges with an executor must write the same index as merges on a single thread. */
+  public void testSameAsSequentialMerge() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+                                                        new NamedThreadFactory("TestIndexWriterMergeExecutor"));
+    Directory dir1 = newDirectory();
+    Directory dir2 = newDirectory();
+    try {
+      Codec codec = newPerFieldCodec();
+      long seed = random().nextLong();
+      int numDocs = atLeast(300);
+
+      IndexWriter w1 = new IndexWriter(dir1, newConfig(codec, seed));
+      addDocs(w1, seed, numDocs);
+      w1.forceMerge(1);
+      w1.close();
+
+      CountingExecutor executor = new CountingExecutor(pool);
+      IndexWriter w2 = new IndexWriter(dir2, newConfig(codec, seed).setMergeExecutor(executor));
+      addDocs(w2, seed, numDocs);
+      w2.forceMerge(1);
+      w2.close();
+      // formats, and per field formats of postings and doc values, were handed to the executor:
+      assertTrue(executor.count.get() > 0);
+
+      DirectoryReader r1 = DirectoryReader.open(dir1);
+      DirectoryReader r2 = DirectoryReader.open(dir2);
+      assertEquals(1, r2.leaves().size());
+      assertReaderEquals("merge executor", r1, r2);
+      IOUtils.close(r1, r2);
+      } finally {
+      IOUtils.close(dir1, dir2);
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  /** Postings and doc values of the same fields are merged concurrently, and
+   *  both put codec attributes on the field infos of the merged segment. */
+  public void testPostingsAndDocValuesOfSameFields() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 2, 4),
+                                                        new NamedThreadFactory("TestIndexWriterMergeExecutor"));
+    Directory dir = newDirectory();
+    try {
+      IndexWriterConfig iwc = newConfig(newPerFieldCodec(), random().nextLong());
+      iwc.setMergeExecutor(pool);
+      IndexWriter w = new IndexWriter(dir, iwc);
+      int numFields = atLeast(20);
+      int numDocs = atLeast(100);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        for (int j = 0; j < numFields; j++) {
+          // fields alternate between both postings and doc values formats
+          String field = "field" + j + "_" + (j % 2 + 1);
+          doc.add(new StringField(field, "" + (i % 10), Field.Store.NO));
+          doc.add(new NumericDocValuesField(field, i));
+        }
+        w.addDocument(doc);
+        if (i % 20 == 19) {
+          w.commit();
+        }
+      }
+      w.forceMerge(1);
+      w.close();
+
+      DirectoryReader r = DirectoryReader.open(dir);
+      LeafReader leaf = getOnlySegmentReader(r);
+      for (int j = 0; j < numFields; j++) {
+        String field = "field" + j + "_" + (j % 2 + 1);
+        FieldInfo fieldInfo = leaf.getFieldInfos().fieldInfo(field);
+        assertNotNull(fieldInfo.getAttribute(PerFieldPostingsFormat.PER_FIELD_FORMAT_KEY));
+        assertNotNull(fieldInfo.getAttribute(PerFieldDocValuesFormat.PER_FIELD_FORMAT_KEY));
+        assertEquals((numDocs + 9) / 10, leaf.docFreq(new Term(field, "0")));
+        NumericDocValues values = leaf.getNumericDocValues(field);
+        for (int i = 0; i < numDocs; i++) {
+          assertEquals(i, values.get(i));
+        }
+      }
+      r.close();
+    } finally {
+      dir.close();
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  /** The merging thread runs the tasks that the executor does not accept. */
+  public void testRejectingExecutor() throws Exception {
+    Directory dir = newDirectory();
+    final AtomicInteger rejected = new AtomicInteger();
+    IndexWriterConfig iwc = newConfig(newPerFieldCodec(), random().nextLong());
+    iwc.setMergeExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          rejected.incrementAndGet();
+          throw new RejectedExecutionException();
+        }
+      });
+    IndexWriter w = new IndexWriter(dir, iwc);
+    int numDocs = atLeast(100);
+    addDocs(w, random().nextLong(), numDocs);
+    w.forceMerge(1);
+    w.close();
+    assertTrue(rejected.get() > 0);
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(1, r.leaves().size());
+    r.close();
+    dir.close();
+  }
+
+  /** An exception of one part of the merge fails the merge, once all other parts are done. */
+  public void testExceptionInMergeTask() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+                                                        new NamedThreadFactory("TestIndexWriterMergeExecutor"));
+    try {
+      final AtomicInteger running = new AtomicInteger();
+      final int failingTask = random().nextInt(5);
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        final int id = i;
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              running.incrementAndGet();
+              try {
+                if (id == failingTask) {
+                  throw new IOException("fake exception " + id);
+                }
+                Thread.sleep(random().nextInt(10));
+                return null;
+              } finally {
+                running.decrementAndGet();
+              }
+            }
+          });
+      }
+      try {
+        MergeState.runConcurrently(pool, tasks);
+        fail("did not hit exception");
+      } catch (IOException ioe) {
+        assertEquals("fake exception " + failingTask, ioe.getMessage());
+      }
+      // No task is still running once runConcurrently returns:
+      assertEquals(0, running.get());
+    } finally {
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+}
@@ -0,0 +1,232 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.MergePolicy.OneMerge;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestMergePressure extends LuceneTestCase {
+
+  public void testSearchLatencyPressure() throws Exception {
+    SearchLatencyMergePressure pressure = new SearchLatencyMergePressure(10, 30);
+    assertEquals(0.0, pressure.getPressure(), 0.0);
+    pressure.reportLatency(5);
+    assertEquals(0.0, pressure.getPressure(), 0.0);
+    pressure.reportLatency(20);
+    assertEquals(20.0, pressure.getLatency(), 0.0);
+    assertEquals(0.5, pressure.getPressure(), 0.0);
+    pressure.reportLatency(100);
+    assertEquals(1.0, pressure.getPressure(), 0.0);
+
+    try {
+      new SearchLatencyMergePressure(-1, 10);
+      fail("did not hit exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    try {
+      new SearchLatencyMergePressure(10, 10);
+      fail("did not hit exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+  }
+
+  public void testMaxPressure() throws Exception {
+    SearchLatencyMergePressure pressure1 = new SearchLatencyMergePressure(0, 10);
+    SearchLatencyMergePressure pressure2 = new SearchLatencyMergePressure(0, 100);
+    MergePressure max = MergePressure.max(pressure1, pressure2);
+    pressure1.reportLatency(5);
+    pressure2.reportLatency(80);
+    assertEquals(0.8, max.getPressure(null), 0.0);
+    pressure2.reportLatency(10);
+    assertEquals(0.5, max.getPressure(null), 0.0);
+  }
+
+  public void testFlushPressure() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    MergePressure pressure = new FlushMergePressure();
+    // nothing is flushing:
+    assertEquals(0.0, pressure.getPressure(w), 0.0);
+    w.addDocument(new Document());
+    assertEquals(0.0, pressure.getPressure(w), 0.0);
+    w.close();
+    dir.close();
+  }
+
+  public void testPressureHoldsBackRunningMerges() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(2);
+    LogDocMergePolicy mp = new LogDocMergePolicy();
+    mp.setMergeFactor(2);
+    iwc.setMergePolicy(mp);
+    final CountDownLatch mergesStarted = new CountDownLatch(2);
+    final CountDownLatch mergesFinish = new CountDownLatch(1);
+    final List<OneMerge> merges = new CopyOnWriteArrayList<>();
+    ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler() {
+        @Override
+        protected synchronized MergeThread getMergeThread(IndexWriter writer, OneMerge merge) throws IOException {
+          // Pretend this is a big merge, so that it is throttled:
+          merge.estimatedMergeBytes = 100*1024*1024;
+          return super.getMergeThread(writer, merge);
+        }
+
+        @Override
+        protected void doMerge(IndexWriter writer, OneMerge merge) throws IOException {
+          merges.add(merge);
+          mergesStarted.countDown();
+          try {
+            mergesFinish.await();
+          } catch (InterruptedException ie) {
+            throw new RuntimeException(ie);
+          }
+          super.doMerge(writer, merge);
+        }
+      };
+    cms.setMaxMergesAndThreads(4, 2);
+    SearchLatencyMergePressure pressure = new SearchLatencyMergePressure(10, 20);
+    cms.setMergePressure(pressure);
+    assertSame(pressure, cms.getMergePressure());
+    iwc.setMergeScheduler(cms);
+
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 8; i++) {
+      w.addDocument(new Document());
+    }
+    mergesStarted.await();
+    assertEquals(2, merges.size());
+    assertEquals(0.0, cms.getCurrentPressure(), 0.0);
+    double targetMBPerSec = cms.getIORateLimitMBPerSec();
+    for (OneMerge merge : merges) {
+      assertEquals(targetMBPerSec, merge.rateLimiter.getMBPerSec(), 0.0);
+    }
+
+    // some pressure: both merges still run, at a lower rate
+    pressure.reportLatency(14);
+    assertEquals(0.4, cms.getCurrentPressure(), 0.0001);
+    double expectedMBPerSec = Math.max(5.0, targetMBPerSec * 0.6);
+    for (OneMerge merge : merges) {
+      assertEquals(expectedMBPerSec, merge.rateLimiter.getMBPerSec(), 0.0001);
+    }
+    assertEquals(expectedMBPerSec < targetMBPerSec ? 2 : 0, cms.getPressureThrottledMergeCount());
+    assertEquals(0, cms.getPressurePausedMergeCount());
+
+    // full pressure: only one merge runs
+    pressure.reportLatency(100);
+    assertEquals(1.0, cms.getCurrentPressure(), 0.0);
+    int paused = 0;
+    for (OneMerge merge : merges) {
+      if (merge.rateLimiter.getMBPerSec() == 0.0) {
+        paused++;
+      } else {
+        assertEquals(Math.min(5.0, targetMBPerSec), merge.rateLimiter.getMBPerSec(), 0.0);
+      }
+    }
+    assertEquals(1, paused);
+    assertEquals(1, cms.getPressurePausedMergeCount());
+
+    // no pressure: back to normal
+    pressure.reportLatency(0);
+    assertEquals(0.0, cms.getCurrentPressure(), 0.0);
+    for (OneMerge merge : merges) {
+      assertEquals(targetMBPerSec, merge.rateLimiter.getMBPerSec(), 0.0);
+    }
+
+    mergesFinish.countDown();
+    w.close();
+    dir.close();
+  }
+
+  public void testFlushPressureHoldsBackRunningMerges() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(2);
+    iwc.setRAMBufferSizeMB(1);
+    LogDocMergePolicy mp = new LogDocMergePolicy();
+    mp.setMergeFactor(2);
+    iwc.setMergePolicy(mp);
+    final CountDownLatch mergesStarted = new CountDownLatch(2);
+    final CountDownLatch mergesFinish = new CountDownLatch(1);
+    final List<OneMerge> merges = new CopyOnWriteArrayList<>();
+    ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler() {
+        @Override
+        protected synchronized MergeThread getMergeThread(IndexWriter writer, OneMerge merge) throws IOException {
+          // Pretend this is a big merge, so that it is throttled:
+          merge.estimatedMergeBytes = 100*1024*1024;
+          return super.getMergeThread(writer, merge);
+        }
+
+        @Override
+        protected void doMerge(IndexWriter writer, OneMerge merge) throws IOException {
+          merges.add(merge);
+          mergesStarted.countDown();
+          try {
+            mergesFinish.await();
+          } catch (InterruptedException ie) {
+            throw new RuntimeException(ie);
+          }
+          super.doMerge(writer, merge);
+        }
+      };
+    cms.setMaxMergesAndThreads(4, 2);
+    cms.setMergePressure(new FlushMergePressure());
+    iwc.setMergeScheduler(cms);
+
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 8; i++) {
+      w.addDocument(new Document());
+    }
+    mergesStarted.await();
+    assertEquals(2, merges.size());
+    assertEquals(0.0, cms.getCurrentPressure(), 0.0);
+    double targetMBPerSec = cms.getIORateLimitMBPerSec();
+    assumeTrue("merges must be throttled", targetMBPerSec * 0.8 > 5.0);
+
+    // buffer enough RAM that flushing it puts some pressure on merges
+    w.getConfig().setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    Document doc = new Document();
+    doc.add(newTextField("body", "the quick brown fox jumps over the lazy dog", Field.Store.NO));
+    while (w.ramBytesUsed() < 400 * 1024) {
+      w.addDocument(doc);
+    }
+    // the merges were neither started nor finished, yet they were throttled
+    // while the segment was flushing, and they are back to normal once it is flushed
+    w.flush(true, true);
+    assertEquals(2, cms.getPressureThrottledMergeCount());
+    assertEquals(0, cms.getPressurePausedMergeCount());
+    assertEquals(0.0, cms.getCurrentPressure(), 0.0);
+    for (OneMerge merge : merges) {
+      assertEquals(targetMBPerSec, merge.rateLimiter.getMBPerSec(), 0.0);
+    }
+
+    mergesFinish.countDown();
+    w.close();
+    dir.close();
+  }
+}
@@ -1308,6 +1308,59 @@ public class TestNumericDocValuesUpdates extends LuceneTestCase {
     dir.close();
   }
   
+  @Test
+  public void testUpdatesOrderAcrossFlushes() throws Exception {
+    // updates of the same documents are buffered in several packets, and in
+    // the private packet of a flushed segment, before they are applied: the
+    // newest update must win
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    conf.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    conf.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, conf);
+    
+    Document doc = new Document();
+    doc.add(new StringField("upd", "t", Store.NO));
+    doc.add(new NumericDocValuesField("f", 1L));
+    writer.addDocument(doc);
+    writer.commit();
+    
+    writer.updateNumericDocValue(new Term("upd", "t"), "f", 2L); // update doc 0 to 2
+    writer.addDocument(doc);
+    writer.updateNumericDocValue(new Term("upd", "t"), "f", 3L); // update docs 0 and 1 to 3
+    writer.flush(false, false);
+    
+    Document other = new Document();
+    other.add(new StringField("upd", "other", Store.NO));
+    other.add(new NumericDocValuesField("f", 1L));
+    writer.updateNumericDocValue(new Term("upd", "t"), "f", 4L); // update docs 0 and 1 to 4
+    writer.addDocument(other);
+    writer.flush(false, false);
+    
+    writer.updateNumericDocValue(new Term("upd", "t"), "f", 5L); // update docs 0 and 1 to 5
+    writer.addDocument(other);
+    writer.close();
+    
+    DirectoryReader reader = DirectoryReader.open(dir);
+    int numUpdated = 0;
+    for (LeafReaderContext context : reader.leaves()) {
+      LeafReader r = context.reader();
+      NumericDocValues f = r.getNumericDocValues("f");
+      for (int i = 0; i < r.maxDoc(); i++) {
+        // only the documents that do not match the term keep their value
+        if (f.get(i) != 1L) {
+          assertEquals(5L, f.get(i));
+          numUpdated++;
+        }
+      }
+    }
+    assertEquals(2, numUpdated);
+    reader.close();
+    
+    dir.close();
+  }
+
   @Test
   public void testUpdateAllDeletedSegment() throws Exception {
     Directory dir = newDirectory();
@@ -18,7 +18,9 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.lucene.util.BitDocIdSet;
 import org.apache.lucene.util.FixedBitSet;
@@ -244,4 +246,39 @@ public class TestConjunctionDISI extends LuceneTestCase {
     }
   }
 
+  /** The two-phase iterators of a conjunction are verified by increasing match cost. */
+  public void testVerifyCheapestFirst() throws IOException {
+    final int maxDoc = TestUtil.nextInt(random(), 100, 1000);
+    final int numIterators = TestUtil.nextInt(random(), 2, 5);
+    final List<Float> verified = new ArrayList<>();
+    final Scorer[] scorers = new Scorer[numIterators];
+    float sumMatchCost = 0;
+    for (int i = 0; i < numIterators; ++i) {
+      final float matchCost = random().nextInt(100);
+      sumMatchCost += matchCost;
+      final DocIdSetIterator all = DocIdSetIterator.all(maxDoc);
+      scorers[i] = scorer(new TwoPhaseIterator(all) {
+        @Override
+        public boolean matches() throws IOException {
+          verified.add(matchCost);
+          return true;
+        }
+
+        @Override
+        public float matchCost() {
+          return matchCost;
+        }
+      });
+    }
+    final ConjunctionDISI conjunction = ConjunctionDISI.intersect(Arrays.asList(scorers));
+    final TwoPhaseIterator twoPhase = conjunction.asTwoPhaseIterator();
+    assertEquals(sumMatchCost, twoPhase.matchCost(), 0f);
+    assertEquals(0, twoPhase.approximation().nextDoc());
+    assertTrue(twoPhase.matches());
+    assertEquals(numIterators, verified.size());
+    for (int i = 1; i < verified.size(); ++i) {
+      assertTrue(verified.toString(), verified.get(i - 1) <= verified.get(i));
+    }
+  }
+
 }
@@ -31,6 +31,7 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
@@ -135,6 +136,85 @@ public class TestIndexSearcher extends LuceneTestCase {
     }
   }
 
+  public void testSlices() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      w.addDocument(new Document());
+      if (random().nextInt(50) == 0) {
+        w.commit();
+      }
+    }
+    final IndexReader reader = w.getReader();
+    w.close();
+
+    final int maxDocsPerSlice = TestUtil.nextInt(random(), 1, numDocs);
+    final IndexSearcher.LeafSlice[] slices = IndexSearcher.slices(reader.leaves(), maxDocsPerSlice);
+    int expectedDocBase = 0;
+    for (IndexSearcher.LeafSlice slice : slices) {
+      int sliceDocs = 0;
+      for (IndexSearcher.LeafReaderContextPartition partition : slice.partitions) {
+        // slices must be in doc ID order and cover all docs
+        assertEquals(expectedDocBase, partition.ctx.docBase + partition.minDocId);
+        expectedDocBase = partition.ctx.docBase + partition.maxDocId;
+        sliceDocs += partition.maxDocId - partition.minDocId;
+      }
+      assertTrue(sliceDocs <= maxDocsPerSlice);
+    }
+    assertEquals(reader.maxDoc(), expectedDocBase);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSlicedSearch() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", random().nextBoolean() ? "bar" : "baz", Store.NO));
+      if (random().nextBoolean()) {
+        doc.add(new StringField("foo", "bar", Store.NO));
+      }
+      doc.add(new SortedDocValuesField("sort", new BytesRef(Integer.toString(random().nextInt(10)))));
+      w.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    final IndexReader reader = w.getReader();
+    w.close();
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("TestIndexSearcher"));
+    try {
+      final IndexSearcher serial = new IndexSearcher(reader);
+      final IndexSearcher sliced = new IndexSearcher(reader, service, TestUtil.nextInt(random(), 1, numDocs / 4));
+      final Query[] queries = new Query[] {
+          new MatchAllDocsQuery(),
+          new TermQuery(new Term("foo", "bar")),
+          new BooleanQuery.Builder()
+            .add(new TermQuery(new Term("foo", "bar")), Occur.SHOULD)
+            .add(new TermQuery(new Term("foo", "baz")), Occur.SHOULD)
+            .build()
+      };
+      final Sort sort = new Sort(new SortField("sort", SortField.Type.STRING));
+      for (Query query : queries) {
+        final int n = TestUtil.nextInt(random(), 1, numDocs);
+        assertEquals(serial.count(query), sliced.count(query));
+        CheckHits.checkEqual(query, serial.search(query, n).scoreDocs, sliced.search(query, n).scoreDocs);
+        CheckHits.checkEqual(query, serial.search(query, n, sort).scoreDocs, sliced.search(query, n, sort).scoreDocs);
+      }
+    } finally {
+      TestUtil.shutdownExecutorService(service);
+      reader.close();
+      dir.close();
+    }
+  }
+
   public void testCount() throws IOException {
     Directory dir = newDirectory();
     RandomIndexWriter w = new RandomIndexWriter(random(), dir);
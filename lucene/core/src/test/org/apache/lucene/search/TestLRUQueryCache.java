@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,7 +29,13 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,8 +47,10 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.SerialMergeScheduler;
@@ -51,8 +60,10 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 public class TestLRUQueryCache extends LuceneTestCase {
 
@@ -78,7 +89,24 @@ public class TestLRUQueryCache extends LuceneTestCase {
   }
 
   public void testConcurrency() throws Throwable {
-    final LRUQueryCache queryCache = new LRUQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000));
+    doTestConcurrency(new LRUQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000)));
+  }
+
+  public void testConcurrencyWithStripes() throws Throwable {
+    final ExecutorService executor = random().nextBoolean()
+        ? null
+        : Executors.newFixedThreadPool(2, new NamedThreadFactory("TestLRUQueryCache"));
+    try {
+      doTestConcurrency(new LRUQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000),
+          TestUtil.nextInt(random(), 2, 8), executor));
+    } finally {
+      if (executor != null) {
+        TestUtil.shutdownExecutorService(executor);
+      }
+    }
+  }
+
+  private void doTestConcurrency(final LRUQueryCache queryCache) throws Throwable {
     Directory dir = newDirectory();
     final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
     final SearcherFactory searcherFactory = new SearcherFactory() {
@@ -167,6 +195,380 @@ public class TestLRUQueryCache extends LuceneTestCase {
     queryCache.assertConsistent();
   }
 
+  public void testAsyncCaching() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    // tasks only run when we allow them to
+    final List<Runnable> tasks = new ArrayList<>();
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 100000, 1 + random().nextInt(4), executor);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Query red = new TermQuery(new Term("color", "red"));
+    final int expectedCount = searcher.count(red);
+    // cache entries are computed by the executor
+    assertEquals(Collections.emptyList(), queryCache.cachedQueries());
+    // a single task per segment even if the query is run several times
+    assertEquals(expectedCount, searcher.count(red));
+    assertEquals(reader.leaves().size(), tasks.size());
+
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    tasks.clear();
+    assertEquals(Collections.singletonList(red), queryCache.cachedQueries());
+    assertEquals(reader.leaves().size(), queryCache.getCacheSize());
+
+    final long hitCount = queryCache.getHitCount();
+    assertEquals(expectedCount, searcher.count(red));
+    assertEquals(hitCount + reader.leaves().size(), queryCache.getHitCount());
+    assertTrue(tasks.isEmpty());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    queryCache.assertConsistent();
+    assertEquals(0, queryCache.getCacheSize());
+    dir.close();
+  }
+
+  public void testAsyncCachingOfClosedReader() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    final List<Runnable> tasks = new ArrayList<>();
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 100000, 1 + random().nextInt(4), executor);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    searcher.count(new TermQuery(new Term("color", "red")));
+    assertEquals(reader.leaves().size(), tasks.size());
+
+    // the reader is closed before the entries are computed, which must not
+    // add entries that nothing would evict: the writer may still hold some
+    // cores open, but all of them are closed once the writer is closed
+    reader.close();
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    queryCache.assertConsistent();
+    w.close();
+    assertEquals(0, queryCache.getCacheSize());
+    queryCache.assertConsistent();
+
+    dir.close();
+  }
+
+  public void testAsyncCachingRejectedTask() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 100000, 1 + random().nextInt(4), executor);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final int[] refCounts = new int[reader.leaves().size()];
+    for (LeafReaderContext context : reader.leaves()) {
+      refCounts[context.ord] = context.reader().getRefCount();
+    }
+    final Query red = new TermQuery(new Term("color", "red"));
+    final int expectedCount = searcher.count(red);
+    // rejected tasks release their reader on the searching thread
+    for (LeafReaderContext context : reader.leaves()) {
+      assertEquals(refCounts[context.ord], context.reader().getRefCount());
+    }
+    assertEquals(expectedCount, searcher.count(red));
+    assertEquals(0, queryCache.getCacheSize());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testAsyncCachingCancelledTask() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    final List<Runnable> tasks = new ArrayList<>();
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 100000, 1 + random().nextInt(4), executor);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final int[] refCounts = new int[reader.leaves().size()];
+    for (LeafReaderContext context : reader.leaves()) {
+      refCounts[context.ord] = context.reader().getRefCount();
+    }
+    final Query red = new TermQuery(new Term("color", "red"));
+    searcher.count(red);
+    assertEquals(reader.leaves().size(), tasks.size());
+    for (LeafReaderContext context : reader.leaves()) {
+      assertEquals(refCounts[context.ord] + 1, context.reader().getRefCount());
+    }
+
+    // like the tasks that ExecutorService.shutdownNow returns
+    for (Runnable task : tasks) {
+      assertTrue(((Future<?>) task).cancel(random().nextBoolean()));
+    }
+    for (LeafReaderContext context : reader.leaves()) {
+      assertEquals(refCounts[context.ord], context.reader().getRefCount());
+    }
+    // cancelled tasks do nothing if they are run anyway
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    tasks.clear();
+    assertEquals(0, queryCache.getCacheSize());
+    queryCache.assertConsistent();
+
+    // the entries are not pending anymore
+    searcher.count(red);
+    assertEquals(reader.leaves().size(), tasks.size());
+    for (Runnable task : tasks) {
+      task.run();
+      // completed tasks can't be cancelled
+      assertFalse(((Future<?>) task).cancel(false));
+    }
+    assertEquals(reader.leaves().size(), queryCache.getCacheSize());
+    for (LeafReaderContext context : reader.leaves()) {
+      assertEquals(refCounts[context.ord], context.reader().getRefCount());
+    }
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testAsyncCachingCloseFailure() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new StringField("color", "red", Store.NO));
+    w.addDocument(doc);
+    w.forceMerge(1);
+    final DirectoryReader directoryReader = w.getReader();
+    w.close();
+    final LeafReader reader = new FilterLeafReader(getOnlySegmentReader(directoryReader)) {
+      @Override
+      protected void doClose() throws IOException {
+        throw new IOException("close failure");
+      }
+    };
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    final List<Runnable> tasks = new ArrayList<>();
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 100000, 1 + random().nextInt(4), executor);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    searcher.count(new TermQuery(new Term("color", "red")));
+    assertEquals(1, tasks.size());
+
+    // the task holds the last reference, the failure to close the reader
+    // must not be swallowed
+    reader.close();
+    assertEquals(1, reader.getRefCount());
+    try {
+      if (random().nextBoolean()) {
+        tasks.get(0).run();
+      } else {
+        ((Future<?>) tasks.get(0)).cancel(false);
+      }
+      fail();
+    } catch (RuntimeException e) {
+      Throwable cause = e;
+      while (cause instanceof IOException == false) {
+        cause = cause.getCause();
+      }
+      assertEquals("close failure", cause.getMessage());
+    }
+    assertEquals(0, reader.getRefCount());
+    queryCache.assertConsistent();
+
+    directoryReader.close();
+    assertEquals(0, queryCache.getCacheSize());
+    dir.close();
+  }
+
+  public void testContendedLookupsAreMisses() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    // blocks the first thread that adds a query to the cache, while it holds
+    // the lock of the single stripe
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean blocked = new AtomicBoolean();
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 100000) {
+      @Override
+      protected void onQueryCache(Query query, long ramBytesUsed) {
+        super.onQueryCache(query, ramBytesUsed);
+        if (blocked.compareAndSet(false, true)) {
+          locked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new ThreadInterruptedException(e);
+          }
+        }
+      }
+    };
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Query red = new TermQuery(new Term("color", "red"));
+    final Query blue = new TermQuery(new Term("color", "blue"));
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          searcher.count(red);
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      }
+    };
+    thread.start();
+    locked.await();
+
+    try {
+      // the stripe is locked, so every leaf is searched without the cache
+      final long missCount = queryCache.getMissCount();
+      final int expectedCount = new IndexSearcher(reader).count(blue);
+      assertEquals(expectedCount, searcher.count(blue));
+      assertEquals(missCount + reader.leaves().size(), queryCache.getMissCount());
+    } finally {
+      release.countDown();
+      thread.join();
+    }
+    assertNull(error.get());
+    assertEquals(Collections.singletonList(red), queryCache.cachedQueries());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testStripes() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("id", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(Integer.toString(i));
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final int numStripes = TestUtil.nextInt(random(), 2, 8);
+    final int maxSize = TestUtil.nextInt(random(), numStripes, 50);
+    final LRUQueryCache queryCache = new LRUQueryCache(maxSize, 10000000, numStripes, null);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    for (int i = 0; i < numDocs; ++i) {
+      final Query query = new TermQuery(new Term("id", Integer.toString(i)));
+      assertEquals(1, searcher.count(query));
+      queryCache.assertConsistent();
+      // each stripe holds at most ceil(maxSize / numStripes) queries
+      assertTrue(queryCache.cachedQueries().size() <= numStripes * ((maxSize + numStripes - 1) / numStripes));
+    }
+
+    queryCache.clear();
+    assertEquals(Collections.emptyList(), queryCache.cachedQueries());
+    assertEquals(0, queryCache.ramBytesUsed());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
   public void testLRUEviction() throws Exception {
     Directory dir = newDirectory();
     final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
@@ -824,6 +1226,97 @@ public class TestLRUQueryCache extends LuceneTestCase {
     dir.close();
   }
 
+  public void testSkipCachingFilterOfSparseLead() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (int i = 0; i < 1000; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("filter", "dense", Store.NO));
+      doc.add(new StringField("text", i == 42 ? "rare" : "common", Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    final IndexReader reader = w.getReader();
+    // no asserting searcher, which would hide the weights of the cache
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    w.close();
+
+    final LRUQueryCache queryCache = new LRUQueryCache(1000000, 10000000);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final TermQuery filter = new TermQuery(new Term("filter", "dense"));
+    BooleanQuery.Builder sparse = new BooleanQuery.Builder();
+    sparse.add(new TermQuery(new Term("text", "rare")), Occur.MUST);
+    sparse.add(filter, Occur.FILTER);
+    assertEquals(1, searcher.search(sparse.build(), 1).totalHits);
+    // visiting the 1000 docs of the filter to intersect it with a single doc is wasteful
+    assertEquals(Collections.emptyList(), queryCache.cachedQueries());
+
+    BooleanQuery.Builder dense = new BooleanQuery.Builder();
+    dense.add(new TermQuery(new Term("text", "common")), Occur.MUST);
+    dense.add(filter, Occur.FILTER);
+    assertEquals(999, searcher.search(dense.build(), 1).totalHits);
+    assertEquals(Collections.singletonList(filter), queryCache.cachedQueries());
+
+    // once cached, the filter is used for sparse leads too
+    assertEquals(1, searcher.search(sparse.build(), 1).totalHits);
+    assertEquals(1, queryCache.getHitCount());
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSkipCachingFilterAppliesAcceptDocs() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (int i = 0; i < 100; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("filter", "dense", Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    final IndexReader reader = w.getReader();
+    // no asserting searcher, which would hide the weights of the cache
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    w.close();
+
+    final LRUQueryCache queryCache = new LRUQueryCache(1000000, 10000000);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Weight weight = searcher.createNormalizedWeight(new TermQuery(new Term("filter", "dense")), false);
+    final LeafReaderContext context = reader.leaves().get(0);
+    final Bits acceptDocs = new Bits() {
+      @Override
+      public boolean get(int index) {
+        return index % 3 != 0;
+      }
+
+      @Override
+      public int length() {
+        return context.reader().maxDoc();
+      }
+    };
+    // a lead of cost 1 is too sparse for the filter to be cached, so the
+    // filter's scorer is returned and must only match accepted docs
+    final Scorer scorer = weight.scorer(context, acceptDocs, 1);
+    final TwoPhaseIterator twoPhase = scorer.asTwoPhaseIterator();
+    final DocIdSetIterator approximation = twoPhase == null ? scorer : twoPhase.approximation();
+    int count = 0;
+    for (int doc = approximation.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = approximation.nextDoc()) {
+      if (twoPhase == null || twoPhase.matches()) {
+        assertTrue(acceptDocs.get(doc));
+        count++;
+      }
+    }
+    assertEquals(66, count);
+    assertEquals(Collections.emptyList(), queryCache.cachedQueries());
+
+    reader.close();
+    dir.close();
+  }
+
   private static Term randomTerm() {
     final String term = RandomPicks.randomFrom(random(), Arrays.asList("foo", "bar", "baz"));
     return new Term("foo", term);
@@ -0,0 +1,364 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.BinaryPoint;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FloatPoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestPointQueries extends LuceneTestCase {
+
+  public void testBasicInts() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    doc.add(new IntPoint("point", -7));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new IntPoint("point", 0));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new IntPoint("point", 3));
+    w.addDocument(doc);
+
+    IndexReader r = w.getReader();
+    IndexSearcher s = newSearcher(r, false);
+    assertEquals(2, s.count(IntPoint.newRangeQuery("point", -8, 1)));
+    assertEquals(3, s.count(IntPoint.newRangeQuery("point", -7, 3)));
+    assertEquals(1, s.count(IntPoint.newExactQuery("point", -7)));
+    assertEquals(0, s.count(IntPoint.newExactQuery("point", -6)));
+    assertEquals(2, s.count(IntPoint.newSetQuery("point", -7, 3, 17)));
+    assertEquals(0, s.count(IntPoint.newSetQuery("point")));
+    w.close();
+    r.close();
+    dir.close();
+  }
+
+  public void testBasicLongs() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    doc.add(new LongPoint("point", Long.MIN_VALUE));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new LongPoint("point", 0L));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new LongPoint("point", Long.MAX_VALUE));
+    w.addDocument(doc);
+
+    IndexReader r = w.getReader();
+    IndexSearcher s = newSearcher(r, false);
+    assertEquals(3, s.count(LongPoint.newRangeQuery("point", Long.MIN_VALUE, Long.MAX_VALUE)));
+    assertEquals(2, s.count(LongPoint.newRangeQuery("point", Long.MIN_VALUE, 0L)));
+    assertEquals(1, s.count(LongPoint.newExactQuery("point", Long.MAX_VALUE)));
+    assertEquals(2, s.count(LongPoint.newSetQuery("point", Long.MIN_VALUE, Long.MAX_VALUE)));
+    w.close();
+    r.close();
+    dir.close();
+  }
+
+  public void testBasicFloatsAndDoubles() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    doc.add(new FloatPoint("float", -1.5f));
+    doc.add(new DoublePoint("double", -1.5));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new FloatPoint("float", 0.25f));
+    doc.add(new DoublePoint("double", 0.25));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new FloatPoint("float", Float.POSITIVE_INFINITY));
+    doc.add(new DoublePoint("double", Double.POSITIVE_INFINITY));
+    w.addDocument(doc);
+
+    IndexReader r = w.getReader();
+    IndexSearcher s = newSearcher(r, false);
+    assertEquals(2, s.count(FloatPoint.newRangeQuery("float", -2f, 1f)));
+    assertEquals(3, s.count(FloatPoint.newRangeQuery("float", Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY)));
+    assertEquals(1, s.count(FloatPoint.newExactQuery("float", 0.25f)));
+    assertEquals(2, s.count(FloatPoint.newSetQuery("float", -1.5f, Float.POSITIVE_INFINITY)));
+    assertEquals(2, s.count(DoublePoint.newRangeQuery("double", -2.0, 1.0)));
+    assertEquals(3, s.count(DoublePoint.newRangeQuery("double", Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)));
+    assertEquals(1, s.count(DoublePoint.newExactQuery("double", -1.5)));
+    assertEquals(1, s.count(DoublePoint.newSetQuery("double", 0.25, 17.0)));
+    w.close();
+    r.close();
+    dir.close();
+  }
+
+  public void testBasicMultiDimensional() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    doc.add(new IntPoint("point", 1, 10));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new IntPoint("point", 5, 5));
+    w.addDocument(doc);
+
+    IndexReader r = w.getReader();
+    IndexSearcher s = newSearcher(r, false);
+    assertEquals(1, s.count(IntPoint.newRangeQuery("point", new int[] {0, 6}, new int[] {10, 20})));
+    assertEquals(2, s.count(IntPoint.newRangeQuery("point", new int[] {0, 0}, new int[] {10, 20})));
+    assertEquals(0, s.count(IntPoint.newRangeQuery("point", new int[] {2, 6}, new int[] {10, 20})));
+    w.close();
+    r.close();
+    dir.close();
+  }
+
+  public void testBasicBinary() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    doc.add(new BinaryPoint("point", new byte[] {(byte) 0x01, (byte) 0xff}));
+    w.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new BinaryPoint("point", new byte[] {(byte) 0x80, (byte) 0x00}));
+    w.addDocument(doc);
+
+    IndexReader r = w.getReader();
+    IndexSearcher s = newSearcher(r, false);
+    // Bytes compare as unsigned:
+    assertEquals(1, s.count(BinaryPoint.newRangeQuery("point", new byte[] {(byte) 0x7f, 0}, new byte[] {(byte) 0xff, 0})));
+    assertEquals(2, s.count(BinaryPoint.newRangeQuery("point", new byte[] {0, 0}, new byte[] {(byte) 0xff, (byte) 0xff})));
+    assertEquals(1, s.count(BinaryPoint.newExactQuery("point", new byte[] {(byte) 0x01, (byte) 0xff})));
+    assertEquals(2, s.count(BinaryPoint.newSetQuery("point", new byte[] {(byte) 0x80, (byte) 0x00}, new byte[] {(byte) 0x01, (byte) 0xff})));
+    w.close();
+    r.close();
+    dir.close();
+  }
+
+  public void testRandomLongs() throws Exception {
+    int numDocs = atLeast(1000);
+    boolean smallRange = random().nextBoolean();
+    long[] values = new long[numDocs];
+    boolean[] hasValue = new boolean[numDocs];
+
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    for(int id=0;id<numDocs;id++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", "" + id, Field.Store.NO));
+      doc.add(new NumericDocValuesField("id", id));
+      if (random().nextInt(10) != 7) {
+        values[id] = smallRange ? random().nextInt(100) - 50 : random().nextLong();
+        hasValue[id] = true;
+        doc.add(new LongPoint("point", values[id]));
+      }
+      w.addDocument(doc);
+    }
+
+    // Delete some docs so we also test acceptDocs:
+    boolean[] deleted = new boolean[numDocs];
+    int numDeletes = random().nextInt(numDocs/10);
+    for(int i=0;i<numDeletes;i++) {
+      int id = random().nextInt(numDocs);
+      w.deleteDocuments(new Term("id", "" + id));
+      deleted[id] = true;
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+
+    IndexReader r = w.getReader();
+    w.close();
+    IndexSearcher s = newSearcher(r, false);
+
+    int iters = atLeast(25);
+    for(int iter=0;iter<iters;iter++) {
+      long lower = smallRange ? random().nextInt(100) - 50 : random().nextLong();
+      long upper = smallRange ? random().nextInt(100) - 50 : random().nextLong();
+      if (lower > upper) {
+        long x = lower;
+        lower = upper;
+        upper = x;
+      }
+
+      Query query;
+      final boolean isSetQuery = random().nextInt(5) == 0;
+      long[] set = null;
+      if (isSetQuery) {
+        set = new long[TestUtil.nextInt(random(), 0, 10)];
+        for(int i=0;i<set.length;i++) {
+          set[i] = random().nextBoolean() ? values[random().nextInt(numDocs)] : random().nextLong();
+        }
+        query = LongPoint.newSetQuery("point", set);
+      } else {
+        query = LongPoint.newRangeQuery("point", lower, upper);
+      }
+      if (VERBOSE) {
+        System.out.println("TEST: iter=" + iter + " query=" + query);
+      }
+
+      final FixedBitSet hits = new FixedBitSet(r.maxDoc());
+      s.search(query, new SimpleCollector() {
+          private int docBase;
+
+          @Override
+          public boolean needsScores() {
+            return false;
+          }
+
+          @Override
+          protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            docBase = context.docBase;
+          }
+
+          @Override
+          public void collect(int doc) {
+            hits.set(docBase+doc);
+          }
+        });
+
+      NumericDocValues docIDToID = MultiDocValues.getNumericValues(r, "id");
+      Bits liveDocs = MultiFields.getLiveDocs(r);
+      for(int docID=0;docID<r.maxDoc();docID++) {
+        if (liveDocs != null && liveDocs.get(docID) == false) {
+          continue;
+        }
+        int id = (int) docIDToID.get(docID);
+        assertFalse(deleted[id]);
+        boolean expected = false;
+        if (hasValue[id]) {
+          if (isSetQuery) {
+            for(long v : set) {
+              if (v == values[id]) {
+                expected = true;
+                break;
+              }
+            }
+          } else {
+            expected = values[id] >= lower && values[id] <= upper;
+          }
+        }
+        assertEquals("docID=" + docID + " id=" + id + " value=" + values[id] + " query=" + query, expected, hits.get(docID));
+      }
+    }
+    r.close();
+    dir.close();
+  }
+
+  public void testWrongNumDims() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new LongPoint("point", 17L));
+    w.addDocument(doc);
+    IndexReader r = w.getReader();
+    w.close();
+
+    // Don't use newSearcher: its wrappers may hide the exception
+    IndexSearcher s = new IndexSearcher(r);
+    try {
+      s.count(LongPoint.newRangeQuery("point", new long[] {0, 0}, new long[] {20, 20}));
+      fail("did not hit exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    try {
+      s.count(IntPoint.newRangeQuery("point", 0, 20));
+      fail("did not hit exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    r.close();
+    dir.close();
+  }
+
+  public void testFieldWithoutPoints() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new StringField("point", "foo", Field.Store.NO));
+    w.addDocument(doc);
+    IndexReader r = w.getReader();
+    w.close();
+
+    IndexSearcher s = newSearcher(r, false);
+    assertEquals(0, s.count(IntPoint.newRangeQuery("point", 0, 20)));
+    assertEquals(0, s.count(IntPoint.newSetQuery("point", 17)));
+    assertEquals(0, s.count(IntPoint.newRangeQuery("missing", 0, 20)));
+    r.close();
+    dir.close();
+  }
+
+  public void testToString() throws Exception {
+    assertEquals("field:[1 TO 2]", IntPoint.newRangeQuery("field", 1, 2).toString());
+    assertEquals("[-3 TO 4]", IntPoint.newRangeQuery("field", -3, 4).toString("field"));
+    assertEquals("field:[1 TO 2],[3 TO 4]", LongPoint.newRangeQuery("field", new long[] {1, 3}, new long[] {2, 4}).toString());
+    assertEquals("field:[1.3 TO 2.5]", FloatPoint.newRangeQuery("field", 1.3F, 2.5F).toString());
+    assertEquals("field:[1.3 TO 2.5]", DoublePoint.newRangeQuery("field", 1.3, 2.5).toString());
+    assertEquals("field:{-2 1 17}", IntPoint.newSetQuery("field", 17, 1, -2, 1).toString());
+  }
+
+  public void testEqualsAndHashCode() throws Exception {
+    Query q1 = IntPoint.newRangeQuery("field", 1, 2);
+    Query q2 = IntPoint.newRangeQuery("field", 1, 2);
+    assertEquals(q1, q2);
+    assertEquals(q1.hashCode(), q2.hashCode());
+    assertFalse(q1.equals(IntPoint.newRangeQuery("field", 1, 3)));
+    assertFalse(q1.equals(IntPoint.newRangeQuery("other", 1, 2)));
+    q2.setBoost(2f);
+    assertFalse(q1.equals(q2));
+
+    Query s1 = LongPoint.newSetQuery("field", 3, 1, 2);
+    Query s2 = LongPoint.newSetQuery("field", 1, 2, 3, 3);
+    assertEquals(s1, s2);
+    assertEquals(s1.hashCode(), s2.hashCode());
+    assertFalse(s1.equals(LongPoint.newSetQuery("field", 1, 2)));
+  }
+}
@@ -0,0 +1,151 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestQueryPlan extends LuceneTestCase {
+
+  private Directory dir;
+  private IndexReader reader;
+  private IndexSearcher searcher;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (int i = 0; i < 200; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("filter", i % 2 == 0 ? "even" : "odd", Store.NO));
+      doc.add(new TextField("body", (i % 10 == 0 ? "rare " : "") + "common text", Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    reader = w.getReader();
+    w.close();
+    // not newSearcher: asserting wrappers would hide the scorers that are planned
+    searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    reader.close();
+    dir.close();
+    super.tearDown();
+  }
+
+  private static QueryPlan leafPlan(QueryPlan plan) {
+    assertEquals(1, plan.getDetails().length);
+    final QueryPlan leaf = plan.getDetails()[0];
+    assertTrue(leaf.getDescription(), leaf.getDescription().startsWith("segment ord=0 maxDoc=200"));
+    assertEquals(1, leaf.getDetails().length);
+    return leaf.getDetails()[0];
+  }
+
+  public void testConjunctionLeadsWithCheapestClause() throws Exception {
+    BooleanQuery.Builder bq = new BooleanQuery.Builder();
+    bq.add(new TermQuery(new Term("body", "common")), Occur.MUST);
+    bq.add(new TermQuery(new Term("filter", "even")), Occur.FILTER);
+    bq.add(new TermQuery(new Term("body", "rare")), Occur.MUST);
+    final QueryPlan plan = searcher.explainPlan(bq.build(), TopScoreDocCollector.create(10));
+
+    final QueryPlan bulk = leafPlan(plan);
+    assertEquals("doc-at-a-time", bulk.getDescription());
+    final QueryPlan conjunction = bulk.getDetails()[0];
+    assertTrue(plan.toString(), conjunction.getDescription().startsWith("ConjunctionScorer"));
+    final QueryPlan[] clauses = conjunction.getDetails();
+    assertEquals(3, clauses.length);
+    assertEquals("lead MUST TermScorer(body:rare)", clauses[0].getDescription());
+    assertEquals(20, clauses[0].getCost());
+    assertEquals("FILTER TermScorer(filter:even)", clauses[1].getDescription());
+    assertEquals("MUST TermScorer(body:common)", clauses[2].getDescription());
+    assertEquals(20, conjunction.getCost());
+    assertEquals(20, plan.getCost());
+  }
+
+  public void testDisjunction() throws Exception {
+    BooleanQuery.Builder bq = new BooleanQuery.Builder();
+    bq.add(new TermQuery(new Term("body", "common")), Occur.SHOULD);
+    bq.add(new TermQuery(new Term("body", "rare")), Occur.SHOULD);
+
+    // collectors that need all hits score windows of documents at once
+    TotalHitCountCollector count = new TotalHitCountCollector();
+    QueryPlan bulk = leafPlan(searcher.explainPlan(bq.build(), count));
+    assertTrue(bulk.toString(), bulk.getDescription().startsWith("BooleanScorer"));
+    assertEquals(2, bulk.getDetails().length);
+    assertEquals(220, bulk.getCost());
+
+    // and collectors that don't need all hits score a document at a time
+    bulk = leafPlan(searcher.explainPlan(bq.build(), TopScoreDocCollector.create(10, null, false)));
+    assertEquals("doc-at-a-time", bulk.getDescription());
+  }
+
+  public void testExclusion() throws Exception {
+    BooleanQuery.Builder bq = new BooleanQuery.Builder();
+    bq.add(new TermQuery(new Term("body", "rare")), Occur.MUST);
+    bq.add(new TermQuery(new Term("filter", "odd")), Occur.MUST_NOT);
+    final QueryPlan exclusion = leafPlan(searcher.explainPlan(bq.build(), TopScoreDocCollector.create(10))).getDetails()[0];
+    assertTrue(exclusion.toString(), exclusion.getDescription().startsWith("ReqExclScorer"));
+    assertEquals("MUST TermScorer(body:rare)", exclusion.getDetails()[0].getDescription());
+    assertEquals("MUST_NOT TermScorer(filter:odd)", exclusion.getDetails()[1].getDescription());
+  }
+
+  public void testPhraseMatchCost() throws Exception {
+    BooleanQuery.Builder bq = new BooleanQuery.Builder();
+    bq.add(new PhraseQuery("body", "common", "text"), Occur.MUST);
+    bq.add(new TermQuery(new Term("filter", "even")), Occur.FILTER);
+    final QueryPlan conjunction = leafPlan(searcher.explainPlan(bq.build(), TopScoreDocCollector.create(10))).getDetails()[0];
+    final QueryPlan phrase = conjunction.getDetails()[1];
+    assertEquals("MUST ExactPhraseScorer(body:\"common text\")", phrase.getDescription());
+    // a seek and a position per term
+    assertTrue(phrase.toString(), phrase.getMatchCost() > 2 * 128);
+    // the conjunction verifies the phrase
+    assertEquals(phrase.getMatchCost(), conjunction.getMatchCost(), 0f);
+  }
+
+  public void testCachedFilter() throws Exception {
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 1 << 20);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    BooleanQuery.Builder bq = new BooleanQuery.Builder();
+    bq.add(new TermQuery(new Term("body", "common")), Occur.MUST);
+    bq.add(new TermQuery(new Term("filter", "even")), Occur.FILTER);
+    searcher.search(bq.build(), 10);
+
+    final QueryPlan conjunction = leafPlan(searcher.explainPlan(bq.build(), TopScoreDocCollector.create(10))).getDetails()[0];
+    assertEquals("lead FILTER ConstantScoreScorer(filter:even) from the query cache", conjunction.getDetails()[0].getDescription());
+    assertEquals(100, conjunction.getDetails()[0].getCost());
+  }
+
+  public void testNoMatch() throws Exception {
+    final QueryPlan plan = searcher.explainPlan(new TermQuery(new Term("body", "missing")), TopScoreDocCollector.create(10));
+    assertEquals(0, plan.getCost());
+    assertEquals("segment ord=0 maxDoc=200, no match", plan.getDetails()[0].getDescription());
+  }
+}
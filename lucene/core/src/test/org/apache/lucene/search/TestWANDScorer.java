@@ -0,0 +1,226 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestWANDScorer extends LuceneTestCase {
+
+  private static final String[] TERMS = new String[] { "a", "b", "c", "d", "e", "f" };
+
+  private Directory dir;
+  private IndexReader reader;
+
+  private static void addDocs(RandomIndexWriter w, int numDocs) throws IOException {
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder value = new StringBuilder();
+      final int numTokens = TestUtil.nextInt(random(), 1, 20);
+      for (int j = 0; j < numTokens; ++j) {
+        // skew the distribution so that terms have different doc freqs
+        value.append(TERMS[Math.min(random().nextInt(TERMS.length), random().nextInt(TERMS.length))]).append(' ');
+      }
+      doc.add(newTextField("f", value.toString(), Store.NO));
+      w.addDocument(doc);
+    }
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir,
+        newIndexWriterConfig(new MockAnalyzer(random())).setSimilarity(new BM25Similarity()));
+    addDocs(w, atLeast(3000));
+    if (random().nextBoolean()) {
+      w.deleteDocuments(new TermQuery(new Term("f", "f")));
+    }
+    reader = w.getReader();
+    w.close();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    reader.close();
+    dir.close();
+    super.tearDown();
+  }
+
+  /** Check that only collecting competitive hits returns the same top hits as collecting all hits. */
+  private static void assertSameTopHits(IndexSearcher searcher, Query query, int numHits) throws IOException {
+    TopScoreDocCollector allHits = TopScoreDocCollector.create(numHits, null, true);
+    searcher.search(query, allHits);
+    TopScoreDocCollector topHits = TopScoreDocCollector.create(numHits, null, false);
+    searcher.search(query, topHits);
+    TopDocs expected = allHits.topDocs();
+    TopDocs actual = topHits.topDocs();
+    assertTrue(actual.totalHits <= expected.totalHits);
+    assertEquals(query.toString(), expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; ++i) {
+      assertEquals(query.toString(), expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(query.toString(), expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+    }
+  }
+
+  /** BM25 with the coordination factor of {@link DefaultSimilarity}. */
+  private static class CoordBM25Similarity extends BM25Similarity {
+    @Override
+    public float coord(int overlap, int maxOverlap) {
+      return overlap / (float) maxOverlap;
+    }
+  }
+
+  private static Query randomTerm() {
+    return new TermQuery(new Term("f", TERMS[random().nextInt(TERMS.length)]));
+  }
+
+  public void testTermQuery() throws IOException {
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    for (String term : TERMS) {
+      assertSameTopHits(searcher, new TermQuery(new Term("f", term)), TestUtil.nextInt(random(), 1, 20));
+    }
+  }
+
+  public void testDisjunction() throws IOException {
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      BooleanQuery.Builder query = new BooleanQuery.Builder();
+      query.setDisableCoord(true);
+      final int numClauses = TestUtil.nextInt(random(), 2, 5);
+      for (int i = 0; i < numClauses; ++i) {
+        query.add(randomTerm(), Occur.SHOULD);
+      }
+      if (random().nextInt(4) == 0) {
+        query.add(randomTerm(), Occur.MUST_NOT);
+      }
+      assertSameTopHits(searcher, query.build(), TestUtil.nextInt(random(), 1, 20));
+    }
+  }
+
+  public void testDisjunctionWithCoord() throws IOException {
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new CoordBM25Similarity());
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      BooleanQuery.Builder query = new BooleanQuery.Builder();
+      final int numClauses = TestUtil.nextInt(random(), 2, 5);
+      for (int i = 0; i < numClauses; ++i) {
+        query.add(randomTerm(), Occur.SHOULD);
+      }
+      if (random().nextInt(4) == 0) {
+        query.add(randomTerm(), Occur.MUST_NOT);
+      }
+      assertSameTopHits(searcher, query.build(), TestUtil.nextInt(random(), 1, 20));
+    }
+  }
+
+  public void testWANDScorerIsUsedWithCoord() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new CoordBM25Similarity());
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(new TermQuery(new Term("f", "a")), Occur.SHOULD);
+    builder.add(new TermQuery(new Term("f", "b")), Occur.SHOULD);
+    builder.add(new TermQuery(new Term("f", "c")), Occur.SHOULD);
+    BooleanQuery query = builder.build();
+    Weight weight = searcher.createNormalizedWeight(query, true);
+    for (LeafReaderContext context : reader.leaves()) {
+      Scorer scorer = weight.pruningScorer(context, null);
+      if (scorer != null) {
+        assertTrue(scorer instanceof WANDScorer);
+      }
+    }
+    assertSameTopHits(searcher, query, 10);
+
+    // the coordination factor is applied to the scores
+    TopDocs topDocs = searcher.search(query, 10);
+    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+      Explanation explanation = searcher.explain(query, scoreDoc.doc);
+      assertEquals(explanation.getValue(), scoreDoc.score, 0.0001f * explanation.getValue());
+    }
+  }
+
+  public void testWANDScorerIsUsed() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.setDisableCoord(true);
+    builder.add(new TermQuery(new Term("f", "a")), Occur.SHOULD);
+    builder.add(new TermQuery(new Term("f", "b")), Occur.SHOULD);
+    BooleanQuery query = builder.build();
+    Weight weight = searcher.createNormalizedWeight(query, true);
+    for (LeafReaderContext context : reader.leaves()) {
+      Scorer scorer = weight.pruningScorer(context, null);
+      if (scorer != null) {
+        assertTrue(scorer instanceof WANDScorer);
+      }
+    }
+
+    // DefaultSimilarity does not bound scores
+    searcher.setSimilarity(new DefaultSimilarity());
+    weight = searcher.createNormalizedWeight(query, true);
+    for (LeafReaderContext context : reader.leaves()) {
+      Scorer scorer = weight.pruningScorer(context, null);
+      assertFalse(scorer instanceof WANDScorer);
+    }
+  }
+
+  public void testWANDScorerIsOnlyUsedForPruning() throws IOException {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.setDisableCoord(true);
+    builder.add(new TermQuery(new Term("f", "a")), Occur.SHOULD);
+    builder.add(new TermQuery(new Term("f", "b")), Occur.SHOULD);
+    BooleanQuery query = builder.build();
+    assertTrue(searcher.explainPlan(query, TopScoreDocCollector.create(10, null, false)).toString().contains("WANDScorer"));
+
+    // collectors that need all hits never report a minimum competitive score
+    assertFalse(searcher.explainPlan(query, TopScoreDocCollector.create(10, null, true)).toString().contains("WANDScorer"));
+    assertFalse(searcher.explainPlan(query, TopFieldCollector.create(Sort.RELEVANCE, 10, true, true, true)).toString().contains("WANDScorer"));
+    Weight weight = searcher.createNormalizedWeight(query, true);
+    for (LeafReaderContext context : reader.leaves()) {
+      assertFalse(weight.scorer(context, null) instanceof WANDScorer);
+    }
+
+    // nested disjunctions do not see the minimum competitive score either
+    builder = new BooleanQuery.Builder();
+    builder.setDisableCoord(true);
+    builder.add(query, Occur.MUST);
+    builder.add(new TermQuery(new Term("f", "c")), Occur.MUST);
+    Query nested = builder.build();
+    assertFalse(searcher.explainPlan(nested, TopScoreDocCollector.create(10, null, false)).toString().contains("WANDScorer"));
+    assertSameTopHits(searcher, nested, 10);
+  }
+}
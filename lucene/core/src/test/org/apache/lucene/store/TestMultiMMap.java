@@ -17,8 +17,12 @@ package org.apache.lucene.store;
  * limitations under the License.
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -26,6 +30,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.MMapDirectory.ReadAdvice;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
 
@@ -411,4 +416,136 @@ public class TestMultiMMap extends BaseDirectoryTestCase {
       mmapDir.close();
     }    
   }
+
+  /** Records the advice that the directory gives, with a copy of the advised bytes. */
+  private static class RecordingMMapDirectory extends MMapDirectory {
+    final List<ReadAdvice> advices = new ArrayList<>();
+    final ByteArrayOutputStream advisedBytes = new ByteArrayOutputStream();
+    ReadAdvice fileAdvice; // if not null, the advice for all files
+
+    RecordingMMapDirectory(Path path, int maxChunkSize) throws IOException {
+      super(path, maxChunkSize);
+    }
+
+    @Override
+    protected ReadAdvice getReadAdvice(String name, IOContext context) {
+      return fileAdvice != null ? fileAdvice : super.getReadAdvice(name, context);
+    }
+
+    @Override
+    protected void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+      advices.add(advice);
+      while (buffer.hasRemaining()) {
+        advisedBytes.write(buffer.get());
+      }
+    }
+
+    void reset() {
+      advices.clear();
+      advisedBytes.reset();
+    }
+  }
+
+  public void testPrefetchAcrossChunks() throws Exception {
+    for (int i = 2; i < 12; i++) {
+      final int chunkSize = 1<<i;
+      RecordingMMapDirectory mmapDir = new RecordingMMapDirectory(createTempDir("testPrefetchAcrossChunks"), chunkSize);
+      IndexOutput io = mmapDir.createOutput("bytes", newIOContext(random()));
+      int size = random().nextInt(chunkSize * 4) + 3;
+      byte bytes[] = new byte[size];
+      random().nextBytes(bytes);
+      io.writeBytes(bytes, bytes.length);
+      io.close();
+      mmapDir.fileAdvice = ReadAdvice.RANDOM;
+      IndexInput ii = mmapDir.openInput("bytes", IOContext.DEFAULT);
+      int sliceOffset = random().nextInt(size);
+      IndexInput slice = ii.slice("slice", sliceOffset, size - sliceOffset);
+      for (int iter = 0; iter < 10; iter++) {
+        final boolean useSlice = random().nextBoolean();
+        final IndexInput in = useSlice ? slice : ii;
+        final int base = useSlice ? sliceOffset : 0;
+        final int offset = random().nextInt((int) in.length() + 1);
+        final int length = random().nextInt((int) in.length() - offset + 1);
+        mmapDir.reset();
+        in.prefetch(offset, length);
+        // each chunk of the range was advised to be loaded, and nothing else:
+        for (ReadAdvice advice : mmapDir.advices) {
+          assertEquals(ReadAdvice.WILL_NEED, advice);
+        }
+        assertEquals(new BytesRef(bytes, base + offset, length), new BytesRef(mmapDir.advisedBytes.toByteArray()));
+      }
+
+      try {
+        ii.prefetch(1, size);
+        fail("Did not get IllegalArgumentException");
+      } catch (IllegalArgumentException iae) {
+        // pass
+      }
+      try {
+        slice.prefetch(-1, 1);
+        fail("Did not get IllegalArgumentException");
+      } catch (IllegalArgumentException iae) {
+        // pass
+      }
+
+      ii.close();
+      try {
+        slice.prefetch(0, 0);
+        fail("Did not get AlreadyClosedException");
+      } catch (AlreadyClosedException ace) {
+        // pass
+      }
+      mmapDir.close();
+    }
+  }
+
+  public void testReadAdvice() throws Exception {
+    final int chunkSize = 1 << TestUtil.nextInt(random(), 4, 10);
+    RecordingMMapDirectory mmapDir = new RecordingMMapDirectory(createTempDir("testReadAdvice"), chunkSize);
+    IndexOutput io = mmapDir.createOutput("bytes", newIOContext(random()));
+    byte bytes[] = new byte[random().nextInt(chunkSize * 4) + 1];
+    random().nextBytes(bytes);
+    io.writeBytes(bytes, bytes.length);
+    io.close();
+
+    mmapDir.reset();
+    IndexInput in = mmapDir.openInput("bytes", IOContext.DEFAULT);
+    // the operating system reads ahead in files with normal advice, so there is nothing to prefetch:
+    in.prefetch(0, bytes.length);
+    in.close();
+    assertTrue(mmapDir.advices.isEmpty());
+
+    mmapDir.reset();
+    mmapDir.openInput("bytes", IOContext.READONCE).close();
+    assertFalse(mmapDir.advices.isEmpty());
+    for (ReadAdvice advice : mmapDir.advices) {
+      assertEquals(ReadAdvice.SEQUENTIAL, advice);
+    }
+    // the whole file was advised:
+    assertEquals(new BytesRef(bytes), new BytesRef(mmapDir.advisedBytes.toByteArray()));
+    mmapDir.close();
+  }
+
+  /** Prefetching with the default implementation must not fail, whether it is supported or not. */
+  public void testDefaultPrefetch() throws Exception {
+    MMapDirectory mmapDir = new MMapDirectory(createTempDir("testDefaultPrefetch"), 1 << TestUtil.nextInt(random(), 10, 20)) {
+      @Override
+      protected ReadAdvice getReadAdvice(String name, IOContext context) {
+        return ReadAdvice.RANDOM;
+      }
+    };
+    IndexOutput io = mmapDir.createOutput("bytes", newIOContext(random()));
+    byte bytes[] = new byte[random().nextInt(1 << 16) + 1];
+    random().nextBytes(bytes);
+    io.writeBytes(bytes, bytes.length);
+    io.close();
+    IndexInput ii = mmapDir.openInput("bytes", IOContext.DEFAULT);
+    ii.prefetch(0, bytes.length);
+    ii.prefetch(bytes.length / 2, bytes.length - bytes.length / 2);
+    byte actual[] = new byte[bytes.length];
+    ii.readBytes(actual, 0, actual.length);
+    assertEquals(new BytesRef(bytes), new BytesRef(actual));
+    ii.close();
+    mmapDir.close();
+  }
 }
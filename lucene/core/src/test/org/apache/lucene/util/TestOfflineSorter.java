@@ -18,6 +18,7 @@ package org.apache.lucene.util;
  */
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -25,11 +26,18 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.OfflineSorter;
 import org.apache.lucene.util.OfflineSorter.BufferSize;
+import org.apache.lucene.util.OfflineSorter.ByteSequencesReader;
 import org.apache.lucene.util.OfflineSorter.ByteSequencesWriter;
 import org.apache.lucene.util.OfflineSorter.SortInfo;
 
@@ -76,6 +84,117 @@ public class TestOfflineSorter extends LuceneTestCase {
     assertEquals(1, sortInfo.mergeRounds);
   }
 
+  public void testMergeManyPartitions() throws Exception {
+    // Merge any number of partitions with the tournament tree, not only powers of 2.
+    int maxTempFiles = TestUtil.nextInt(random(), 2, 20);
+    SortInfo sortInfo = checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), tempDir, maxTempFiles),
+        generateRandom((int)OfflineSorter.MB * TestUtil.nextInt(random(), 2, 12)));
+    assertTrue(sortInfo.tempMergeFiles > 1);
+  }
+
+  public void testFixedLengthRandom() throws Exception {
+    int valueLength = TestUtil.nextInt(random(), 1, 100);
+    checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), tempDir, OfflineSorter.MAX_TEMPFILES,
+                                valueLength, null, 1),
+        generateFixedLength((int)OfflineSorter.MB * 5, valueLength), valueLength);
+  }
+
+  public void testFixedLengthEmpty() throws Exception {
+    checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), tempDir, OfflineSorter.MAX_TEMPFILES,
+                                4, null, 1),
+        new byte[0][], 4);
+  }
+
+  public void testFixedLengthWrongLength() throws Exception {
+    ByteSequencesWriter w = new ByteSequencesWriter(tempDir.resolve("fixed"), 4);
+    try {
+      w.write(new byte[3]);
+      fail("did not hit exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    } finally {
+      w.close();
+    }
+  }
+
+  public void testFixedLengthTruncated() throws Exception {
+    Path file = tempDir.resolve("truncated");
+    ByteSequencesWriter w = new ByteSequencesWriter(file, 1);
+    w.write(new byte[] {1});
+    w.write(new byte[] {2});
+    w.write(new byte[] {3});
+    w.close();
+    ByteSequencesReader r = new ByteSequencesReader(file, 2);
+    BytesRefBuilder scratch = new BytesRefBuilder();
+    assertTrue(r.read(scratch));
+    assertEquals(new BytesRef(new byte[] {1, 2}), scratch.get());
+    try {
+      r.read(scratch);
+      fail("did not hit exception");
+    } catch (EOFException e) {
+      // expected
+    } finally {
+      r.close();
+    }
+  }
+
+  public void testExecutor() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+                                                        new NamedThreadFactory("TestOfflineSorter"));
+    try {
+      final AtomicInteger count = new AtomicInteger();
+      Executor exec = new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            count.incrementAndGet();
+            pool.execute(command);
+          }
+        };
+      int valueLength = random().nextBoolean() ? OfflineSorter.VARIABLE_LENGTH : TestUtil.nextInt(random(), 1, 100);
+      int maxTempFiles = TestUtil.nextInt(random(), 2, OfflineSorter.MAX_TEMPFILES);
+      OfflineSorter sorter = new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), tempDir, maxTempFiles,
+                                               valueLength, exec, TestUtil.nextInt(random(), 1, 4));
+      int howMuchData = (int)OfflineSorter.MB * TestUtil.nextInt(random(), 2, 10);
+      byte[][] data = valueLength == OfflineSorter.VARIABLE_LENGTH ? generateRandom(howMuchData) : generateFixedLength(howMuchData, valueLength);
+      SortInfo sortInfo = checkSort(sorter, data, valueLength);
+      assertTrue(sortInfo.tempMergeFiles > 1);
+      assertTrue(count.get() > 0);
+    } finally {
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  public void testRejectingExecutor() throws Exception {
+    final AtomicInteger rejected = new AtomicInteger();
+    Executor exec = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          rejected.incrementAndGet();
+          throw new RejectedExecutionException();
+        }
+      };
+    OfflineSorter sorter = new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), tempDir, OfflineSorter.MAX_TEMPFILES,
+                                             OfflineSorter.VARIABLE_LENGTH, exec, 2);
+    checkSort(sorter, generateRandom((int)OfflineSorter.MB * 3));
+    assertTrue(rejected.get() > 1);
+  }
+
+  /** The executor does not run the partitions, so the sorting thread must not wait for them. */
+  public void testIdleExecutor() throws Exception {
+    final AtomicInteger queued = new AtomicInteger();
+    Executor exec = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          queued.incrementAndGet();
+        }
+      };
+    OfflineSorter sorter = new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), tempDir, OfflineSorter.MAX_TEMPFILES,
+                                             OfflineSorter.VARIABLE_LENGTH, exec, TestUtil.nextInt(random(), 1, 3));
+    checkSort(sorter, generateRandom((int)OfflineSorter.MB * 5));
+    assertTrue(queued.get() > 1);
+  }
+
   @Nightly
   public void testLargerRandom() throws Exception {
     // Sort 100MB worth of data with 15mb buffer.
@@ -95,6 +214,15 @@ public class TestOfflineSorter extends LuceneTestCase {
     return bytes;
   }
   
+  private byte[][] generateFixedLength(int howMuchData, int valueLength) {
+    byte[][] bytes = new byte[howMuchData / valueLength][];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = new byte[valueLength];
+      random().nextBytes(bytes[i]);
+    }
+    return bytes;
+  }
+
   static final Comparator<byte[]> unsignedByteOrderComparator = new Comparator<byte[]>() {
     @Override
     public int compare(byte[] left, byte[] right) {
@@ -111,10 +239,17 @@ public class TestOfflineSorter extends LuceneTestCase {
    * Check sorting data on an instance of {@link OfflineSorter}.
    */
   private SortInfo checkSort(OfflineSorter sort, byte[][] data) throws IOException {
-    Path unsorted = writeAll("unsorted", data);
+    return checkSort(sort, data, OfflineSorter.VARIABLE_LENGTH);
+  }
+
+  /**
+   * Check sorting data of the given value length on an instance of {@link OfflineSorter}.
+   */
+  private SortInfo checkSort(OfflineSorter sort, byte[][] data, int valueLength) throws IOException {
+    Path unsorted = writeAll("unsorted", data, valueLength);
 
     Arrays.sort(data, unsignedByteOrderComparator);
-    Path golden = writeAll("golden", data);
+    Path golden = writeAll("golden", data, valueLength);
 
     Path sorted = tempDir.resolve("sorted");
     SortInfo sortInfo = sort.sort(unsorted, sorted);
@@ -145,9 +280,9 @@ public class TestOfflineSorter extends LuceneTestCase {
     IOUtils.close(is1, is2);
   }
 
-  private Path writeAll(String name, byte[][] data) throws IOException {
+  private Path writeAll(String name, byte[][] data, int valueLength) throws IOException {
     Path file = tempDir.resolve(name);
-    ByteSequencesWriter w = new OfflineSorter.ByteSequencesWriter(file);
+    ByteSequencesWriter w = new OfflineSorter.ByteSequencesWriter(file, valueLength);
     for (byte [] datum : data) {
       w.write(datum);
     }
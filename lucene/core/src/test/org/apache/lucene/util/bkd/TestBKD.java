@@ -0,0 +1,358 @@
+package org.apache.lucene.util.bkd;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBKD extends LuceneTestCase {
+
+  public void testBasicInts1D() throws Exception {
+    try (Directory dir = newDirectory()) {
+      BKDWriter w = new BKDWriter(100, 1, 4, 2, 1.0f);
+      byte[] scratch = new byte[4];
+      for(int docID=0;docID<100;docID++) {
+        NumericUtils.intToSortableBytes(docID, scratch, 0);
+        w.add(scratch, docID);
+      }
+
+      long indexFP;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        indexFP = w.finish(out);
+      }
+      w.close();
+
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader r = new BKDReader(in);
+
+        // Simple 1D range query:
+        final int queryMin = 42;
+        final int queryMax = 87;
+
+        final BitSet hits = new BitSet();
+        r.intersect(new IntersectVisitor() {
+            @Override
+            public void visit(int docID) {
+              hits.set(docID);
+              if (VERBOSE) {
+                System.out.println("visit docID=" + docID);
+              }
+            }
+
+            @Override
+            public void visit(int docID, byte[] packedValue) {
+              int x = NumericUtils.sortableBytesToInt(packedValue, 0);
+              if (VERBOSE) {
+                System.out.println("visit docID=" + docID + " x=" + x);
+              }
+              if (x >= queryMin && x <= queryMax) {
+                hits.set(docID);
+              }
+            }
+
+            @Override
+            public Relation compare(byte[] minPacked, byte[] maxPacked) {
+              int min = NumericUtils.sortableBytesToInt(minPacked, 0);
+              int max = NumericUtils.sortableBytesToInt(maxPacked, 0);
+              assert max >= min;
+              if (VERBOSE) {
+                System.out.println("compare: min=" + min + " max=" + max + " vs queryMin=" + queryMin + " queryMax=" + queryMax);
+              }
+
+              if (max < queryMin || min > queryMax) {
+                return Relation.CELL_OUTSIDE_QUERY;
+              } else if (min >= queryMin && max <= queryMax) {
+                return Relation.CELL_INSIDE_QUERY;
+              } else {
+                return Relation.CELL_CROSSES_QUERY;
+              }
+            }
+          });
+
+        for(int docID=0;docID<100;docID++) {
+          boolean expected = docID >= queryMin && docID <= queryMax;
+          boolean actual = hits.get(docID);
+          assertEquals("docID=" + docID, expected, actual);
+        }
+        assertEquals(100, r.getPointCount());
+        assertEquals(100, r.getDocCount());
+        assertEquals(0, NumericUtils.sortableBytesToInt(r.getMinPackedValue(), 0));
+        assertEquals(99, NumericUtils.sortableBytesToInt(r.getMaxPackedValue(), 0));
+      }
+    }
+  }
+
+  public void testRandomIntsNDims() throws Exception {
+    int numDocs = atLeast(1000);
+    try (Directory dir = newDirectory()) {
+      int numDims = TestUtil.nextInt(random(), 1, 5);
+      int maxPointsInLeafNode = TestUtil.nextInt(random(), 50, 100);
+      float maxMB = (float) 3.0 + (3*random().nextFloat());
+      BKDWriter w = new BKDWriter(numDocs, numDims, 4, maxPointsInLeafNode, maxMB);
+
+      if (VERBOSE) {
+        System.out.println("TEST: numDims=" + numDims + " numDocs=" + numDocs);
+      }
+      int[][] docs = new int[numDocs][];
+      byte[] scratch = new byte[4*numDims];
+      int[] minValue = new int[numDims];
+      int[] maxValue = new int[numDims];
+      for(int docID=0;docID<numDocs;docID++) {
+        int[] values = new int[numDims];
+        if (VERBOSE) {
+          System.out.println("  docID=" + docID);
+        }
+        for(int dim=0;dim<numDims;dim++) {
+          values[dim] = random().nextInt();
+          if (docID == 0 || values[dim] < minValue[dim]) {
+            minValue[dim] = values[dim];
+          }
+          if (docID == 0 || values[dim] > maxValue[dim]) {
+            maxValue[dim] = values[dim];
+          }
+          NumericUtils.intToSortableBytes(values[dim], scratch, dim * Integer.BYTES);
+          if (VERBOSE) {
+            System.out.println("    " + dim + " -> " + values[dim]);
+          }
+        }
+        docs[docID] = values;
+        w.add(scratch, docID);
+      }
+
+      long indexFP;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        indexFP = w.finish(out);
+      }
+      w.close();
+
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader r = new BKDReader(in);
+
+        byte[] minPackedValue = r.getMinPackedValue();
+        byte[] maxPackedValue = r.getMaxPackedValue();
+        for(int dim=0;dim<numDims;dim++) {
+          assertEquals(minValue[dim], NumericUtils.sortableBytesToInt(minPackedValue, dim * Integer.BYTES));
+          assertEquals(maxValue[dim], NumericUtils.sortableBytesToInt(maxPackedValue, dim * Integer.BYTES));
+        }
+
+        int iters = atLeast(100);
+        for(int iter=0;iter<iters;iter++) {
+          if (VERBOSE) {
+            System.out.println("\nTEST: iter=" + iter);
+          }
+
+          // Random N dims rect query:
+          int[] queryMin = new int[numDims];
+          int[] queryMax = new int[numDims];
+          for(int dim=0;dim<numDims;dim++) {
+            queryMin[dim] = random().nextInt();
+            queryMax[dim] = random().nextInt();
+            if (queryMin[dim] > queryMax[dim]) {
+              int x = queryMin[dim];
+              queryMin[dim] = queryMax[dim];
+              queryMax[dim] = x;
+            }
+          }
+
+          final BitSet hits = new BitSet();
+          r.intersect(new IntersectVisitor() {
+            @Override
+            public void visit(int docID) {
+              hits.set(docID);
+            }
+
+            @Override
+            public void visit(int docID, byte[] packedValue) {
+              for(int dim=0;dim<numDims;dim++) {
+                int x = NumericUtils.sortableBytesToInt(packedValue, dim * Integer.BYTES);
+                if (x < queryMin[dim] || x > queryMax[dim]) {
+                  return;
+                }
+              }
+              hits.set(docID);
+            }
+
+            @Override
+            public Relation compare(byte[] minPacked, byte[] maxPacked) {
+              boolean crosses = false;
+              for(int dim=0;dim<numDims;dim++) {
+                int min = NumericUtils.sortableBytesToInt(minPacked, dim * Integer.BYTES);
+                int max = NumericUtils.sortableBytesToInt(maxPacked, dim * Integer.BYTES);
+                assert max >= min;
+
+                if (max < queryMin[dim] || min > queryMax[dim]) {
+                  return Relation.CELL_OUTSIDE_QUERY;
+                } else if (min < queryMin[dim] || max > queryMax[dim]) {
+                  crosses = true;
+                }
+              }
+
+              if (crosses) {
+                return Relation.CELL_CROSSES_QUERY;
+              } else {
+                return Relation.CELL_INSIDE_QUERY;
+              }
+            }
+          });
+
+          for(int docID=0;docID<numDocs;docID++) {
+            int[] docValues = docs[docID];
+            boolean expected = true;
+            for(int dim=0;dim<numDims;dim++) {
+              int x = docValues[dim];
+              if (x < queryMin[dim] || x > queryMax[dim]) {
+                expected = false;
+                break;
+              }
+            }
+            boolean actual = hits.get(docID);
+            assertEquals("docID=" + docID, expected, actual);
+          }
+        }
+      }
+    }
+  }
+
+  /** Forces the writer to sort its points offline, by giving it a tiny heap budget. */
+  public void testOfflineSort() throws Exception {
+    int numDocs = atLeast(20000);
+    int numDims = TestUtil.nextInt(random(), 1, 3);
+    try (Directory dir = newDirectory()) {
+      int maxPointsInLeafNode = TestUtil.nextInt(random(), 16, 64);
+      BKDWriter w = new BKDWriter(numDocs, numDims, Long.BYTES, maxPointsInLeafNode, 0.1);
+      long[][] docs = new long[numDocs][];
+      byte[] scratch = new byte[Long.BYTES*numDims];
+      for(int docID=0;docID<numDocs;docID++) {
+        long[] values = new long[numDims];
+        for(int dim=0;dim<numDims;dim++) {
+          // Use a small range so we see many duplicate values:
+          values[dim] = random().nextInt(1000) - 500;
+          NumericUtils.longToSortableBytes(values[dim], scratch, dim * Long.BYTES);
+        }
+        docs[docID] = values;
+        w.add(scratch, docID);
+      }
+
+      long indexFP;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        indexFP = w.finish(out);
+      }
+      w.close();
+
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader r = new BKDReader(in);
+        assertEquals(numDocs, r.getPointCount());
+        assertEquals(numDocs, r.getDocCount());
+
+        final long queryMin = random().nextInt(1000) - 500;
+        final long queryMax = queryMin + random().nextInt(200);
+        final BitSet hits = new BitSet();
+        r.intersect(new IntersectVisitor() {
+            @Override
+            public void visit(int docID) {
+              hits.set(docID);
+            }
+
+            @Override
+            public void visit(int docID, byte[] packedValue) {
+              for(int dim=0;dim<numDims;dim++) {
+                long x = NumericUtils.sortableBytesToLong(packedValue, dim * Long.BYTES);
+                if (x < queryMin || x > queryMax) {
+                  return;
+                }
+              }
+              hits.set(docID);
+            }
+
+            @Override
+            public Relation compare(byte[] minPacked, byte[] maxPacked) {
+              boolean crosses = false;
+              for(int dim=0;dim<numDims;dim++) {
+                long min = NumericUtils.sortableBytesToLong(minPacked, dim * Long.BYTES);
+                long max = NumericUtils.sortableBytesToLong(maxPacked, dim * Long.BYTES);
+                if (max < queryMin || min > queryMax) {
+                  return Relation.CELL_OUTSIDE_QUERY;
+                } else if (min < queryMin || max > queryMax) {
+                  crosses = true;
+                }
+              }
+              return crosses ? Relation.CELL_CROSSES_QUERY : Relation.CELL_INSIDE_QUERY;
+            }
+          });
+
+        for(int docID=0;docID<numDocs;docID++) {
+          boolean expected = true;
+          for(int dim=0;dim<numDims;dim++) {
+            long x = docs[docID][dim];
+            if (x < queryMin || x > queryMax) {
+              expected = false;
+              break;
+            }
+          }
+          assertEquals("docID=" + docID, expected, hits.get(docID));
+        }
+      }
+    }
+  }
+
+  public void testTooManyDimensions() throws Exception {
+    try {
+      new BKDWriter(10, BKDWriter.MAX_DIMS+1, 4);
+      fail("did not hit exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+  }
+
+  public void testNoPoints() throws Exception {
+    try (Directory dir = newDirectory();
+         IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT);
+         BKDWriter w = new BKDWriter(10, 1, 4)) {
+      try {
+        w.finish(out);
+        fail("did not hit exception");
+      } catch (IllegalStateException ise) {
+        // expected
+      }
+    }
+  }
+
+  public void testWrongPackedValueLength() throws IOException {
+    try (BKDWriter w = new BKDWriter(10, 2, 4)) {
+      try {
+        w.add(new byte[4], 0);
+        fail("did not hit exception");
+      } catch (IllegalArgumentException iae) {
+        // expected
+      }
+    }
+  }
+}
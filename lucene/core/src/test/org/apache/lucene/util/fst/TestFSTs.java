@@ -1201,6 +1201,69 @@ public class TestFSTs extends LuceneTestCase {
     IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
     final FST<Long> fst2 = new FST<>(in, outputs);
     checkStopNodes(fst2, outputs);
+    in.close();
+
+    // ... and when it is read off-heap:
+    in = dir.openInput("fst", IOContext.DEFAULT);
+    final FST<Long> fst3 = new FST<>(in, outputs, new OffHeapFSTStore());
+    checkStopNodes(fst3, outputs);
+    in.close();
+    dir.close();
+  }
+
+  public void testOffHeapFST() throws Exception {
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, outputs);
+    final Set<BytesRef> termsSet = new HashSet<>();
+    final int numTerms = atLeast(1000);
+    while (termsSet.size() < numTerms) {
+      termsSet.add(new BytesRef(TestUtil.randomSimpleString(random(), 1, 20)));
+    }
+    final BytesRef[] terms = termsSet.toArray(new BytesRef[0]);
+    Arrays.sort(terms);
+    final IntsRefBuilder scratch = new IntsRefBuilder();
+    for (int i = 0; i < terms.length; i++) {
+      builder.add(Util.toIntsRef(terms[i], scratch), (long) i);
+    }
+    final FST<Long> fst = builder.finish();
+
+    Directory dir = newDirectory();
+    IndexOutput out = dir.createOutput("fst", IOContext.DEFAULT);
+    out.writeVInt(42); // some leading bytes, the FST does not start at 0
+    fst.save(out);
+    out.writeVInt(17);
+    out.close();
+
+    IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
+    assertEquals(42, in.readVInt());
+    final FST<Long> offHeap = new FST<>(in, outputs, new OffHeapFSTStore());
+    // the input is positioned after the FST:
+    assertEquals(17, in.readVInt());
+    assertTrue(offHeap.ramBytesUsed() < fst.ramBytesUsed());
+
+    for (int i = 0; i < terms.length; i++) {
+      assertEquals(Long.valueOf(i), Util.get(offHeap, terms[i]));
+    }
+    final BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(offHeap);
+    for (int i = 0; i < terms.length; i++) {
+      InputOutput<Long> io = fstEnum.next();
+      assertEquals(terms[i], io.input);
+      assertEquals(Long.valueOf(i), io.output);
+    }
+    assertNull(fstEnum.next());
+    assertNull(Util.get(offHeap, new BytesRef("not a term")));
+
+    // the off-heap FST saves the same bytes:
+    IndexOutput out2 = dir.createOutput("fst2", IOContext.DEFAULT);
+    offHeap.save(out2);
+    out2.close();
+    IndexInput in2 = dir.openInput("fst2", IOContext.DEFAULT);
+    final FST<Long> onHeap = new FST<>(in2, outputs);
+    in2.close();
+    for (int i = 0; i < terms.length; i++) {
+      assertEquals(Long.valueOf(i), Util.get(onHeap, terms[i]));
+    }
+
     in.close();
     dir.close();
   }
@@ -102,6 +102,19 @@ public class TestDirectPacked extends LuceneTestCase {
       for (int j = 0; j < original.length; j++) {
         assertEquals("bpv=" + bpv, original[j], reader.get(j));
       }
+      // bulk reads of random increasing indexes
+      int[] indexes = new int[original.length];
+      int count = 0;
+      for (int j = 0; j < original.length; j++) {
+        if (random.nextInt(3) != 0) {
+          indexes[count++] = j;
+        }
+      }
+      long[] values = new long[count];
+      reader.get(indexes, values, count);
+      for (int j = 0; j < count; j++) {
+        assertEquals("bpv=" + bpv, original[indexes[j]], values[j]);
+      }
       input.close();
     }
   }
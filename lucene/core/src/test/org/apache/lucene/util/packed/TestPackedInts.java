@@ -1044,6 +1044,7 @@ public class TestPackedInts extends LuceneTestCase {
         for (int i = 0; i < arr.length; ++i) {
           assertEquals(arr[i], values.get(i));
         }
+        assertBulkGet(values, arr);
 
         final PackedLongValues.Iterator it = values.iterator();
         for (int i = 0; i < arr.length; ++i) {
@@ -1205,6 +1206,47 @@ public class TestPackedInts extends LuceneTestCase {
     }
   }
 
+  public void testPackedLongValuesBulkGet() {
+    final int pageSize = 1 << TestUtil.nextInt(random(), 6, 10);
+    final long[] arr = new long[TestUtil.nextInt(random(), 1, 10000)];
+    long value = random().nextInt(1000);
+    for (int i = 0; i < arr.length; ++i) {
+      value += TestUtil.nextInt(random(), 0, 100);
+      arr[i] = value;
+    }
+    for (PackedLongValues.Builder buf : Arrays.asList(
+        PackedLongValues.packedBuilder(pageSize, PackedInts.COMPACT),
+        PackedLongValues.deltaPackedBuilder(pageSize, PackedInts.COMPACT),
+        PackedLongValues.monotonicBuilder(pageSize, PackedInts.COMPACT))) {
+      for (long v : arr) {
+        buf.add(v);
+      }
+      assertBulkGet(buf.build(), arr);
+    }
+  }
+
+  /** Check that bulk gets return the same values as single gets, for both
+   *  random indices and runs of consecutive indices. */
+  private static void assertBulkGet(LongValues values, long[] expected) {
+    if (expected.length == 0) {
+      return;
+    }
+    final int count = TestUtil.nextInt(random(), 1, 2000);
+    final int[] indices = new int[count];
+    for (int i = 0; i < count; ) {
+      int index = random().nextInt(expected.length);
+      final int runLength = random().nextBoolean() ? 1 : TestUtil.nextInt(random(), 2, 300);
+      for (int j = 0; j < runLength && i < count && index < expected.length; ++j) {
+        indices[i++] = index++;
+      }
+    }
+    final long[] dest = new long[count];
+    values.get(indices, dest, count);
+    for (int i = 0; i < count; ++i) {
+      assertEquals("index=" + indices[i], expected[indices[i]], dest[i]);
+    }
+  }
+
   public void testMonotonicBlockPackedReaderWriter() throws IOException {
     final int iters = atLeast(2);
     for (int iter = 0; iter < iters; ++iter) {
@@ -1241,6 +1283,7 @@ public class TestPackedInts extends LuceneTestCase {
       for (int i = 0; i < valueCount; ++i) {
         assertEquals("i=" +i, values[i], reader.get(i));
       }
+      assertBulkGet(reader, values);
       in.close();
       dir.close();
     }
@@ -18,16 +18,25 @@ package org.apache.lucene.facet;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.FilterCollector;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
@@ -39,6 +48,8 @@ import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /**     
  * Computes drill down and sideways counts for the provided
@@ -51,6 +62,12 @@ import org.apache.lucene.search.TopScoreDocCollector;
  * methods to do the search, and then get the hits and facet
  * results from the returned {@link DrillSidewaysResult}.
  *
+ * <p> For requests with many drill-down dimensions, {@link
+ * #search(DrillDownQuery, CollectorManager, ExecutorService)}
+ * computes all
+ * drill sideways hits in a single pass over the hits of the
+ * base query, which are cached, and can run concurrently.
+ *
  * <p><b>NOTE</b>: this allocates one {@link
  * FacetsCollector} for each drill-down, plus one.  If your
  * index has high number of facet labels then this will
@@ -226,6 +243,118 @@ public class DrillSideways {
     return new DrillSidewaysResult(r.facets, hitCollector.topDocs());
   }
 
+  /**
+   * Search, collecting hits with the collectors of the
+   * given {@link CollectorManager}, and computing drill down
+   * and sideways counts.  Unlike the other search methods,
+   * the hits of all drill-downs and the near-misses of all
+   * dimensions are computed in a single pass over the
+   * documents that match the base query, whatever the number
+   * of dimensions, and the base query and the drill-downs
+   * are matched without scores, so that the {@link
+   * org.apache.lucene.search.QueryCache} of the searcher
+   * caches their matching documents and successive
+   * drill-downs on the same base query do not evaluate it
+   * again.  Each segment is searched by a task of the given
+   * executor, with its own collector, or on the current
+   * thread if the executor is null.
+   *
+   * <p>Hits are not scored, so the collectors of the
+   * given manager must not need scores (eg. sort by field
+   * without doc scores).
+   */
+  public <C extends Collector, R> ConcurrentDrillSidewaysResult<R> search(DrillDownQuery query, CollectorManager<C,R> hitCollectorManager,
+                                                                          ExecutorService executor) throws IOException {
+    final Map<String,Integer> drillDownDims = query.getDims();
+    final int numDims = drillDownDims.size();
+    Query baseQuery = query.getBaseQuery();
+    Query[] drillDownQueries = query.getDrillDownQueries();
+    if (numDims == 0) {
+      // There are no drill-down dims: the base query is the drill down query
+      baseQuery = query;
+    } else if (baseQuery == null) {
+      baseQuery = new MatchAllDocsQuery();
+    }
+
+    // collectors reject hit collectors that need scores, so create them
+    // before doing any work
+    final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    final List<FusedDrillSidewaysCollector<C>> collectors = new ArrayList<>();
+    for (int i = 0; i < leaves.size(); i++) {
+      collectors.add(new FusedDrillSidewaysCollector<>(hitCollectorManager.newCollector(), numDims));
+    }
+    if (collectors.isEmpty()) {
+      // empty index
+      collectors.add(new FusedDrillSidewaysCollector<>(hitCollectorManager.newCollector(), numDims));
+    }
+
+    final Weight[] drillDownWeights = new Weight[numDims];
+    for (int dim = 0; dim < numDims; dim++) {
+      drillDownWeights[dim] = searcher.createNormalizedWeight(drillDownQueries[dim], false);
+    }
+    final FusedDrillSidewaysScorer scorer = new FusedDrillSidewaysScorer(searcher.createNormalizedWeight(baseQuery, false), drillDownWeights);
+    if (executor == null) {
+      for (int i = 0; i < leaves.size(); i++) {
+        scorer.score(leaves.get(i), collectors.get(i).getLeafCollector(leaves.get(i)));
+      }
+    } else {
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < leaves.size(); i++) {
+        final LeafReaderContext leaf = leaves.get(i);
+        final FusedDrillSidewaysCollector<C> collector = collectors.get(i);
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            scorer.score(leaf, collector.getLeafCollector(leaf));
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (InterruptedException e) {
+          throw new ThreadInterruptedException(e);
+        } catch (ExecutionException e) {
+          final Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+    }
+
+    final FacetsCollectorManager facetsCollectorManager = new FacetsCollectorManager();
+    final List<C> hitCollectors = new ArrayList<>();
+    final List<FacetsCollector> drillDownCollectors = new ArrayList<>();
+    for (FusedDrillSidewaysCollector<C> collector : collectors) {
+      hitCollectors.add(collector.hitCollector);
+      drillDownCollectors.add(collector.drillDownCollector);
+    }
+    final R hitsResult = hitCollectorManager.reduce(hitCollectors);
+    final FacetsCollector drillDownCollector = facetsCollectorManager.reduce(drillDownCollectors);
+    if (numDims == 0) {
+      return new ConcurrentDrillSidewaysResult<>(buildFacetsResult(drillDownCollector, null, null), null, hitsResult);
+    }
+
+    final FacetsCollector[] drillSidewaysCollectors = new FacetsCollector[numDims];
+    for (int dim = 0; dim < numDims; dim++) {
+      final List<FacetsCollector> dimCollectors = new ArrayList<>();
+      for (FusedDrillSidewaysCollector<C> collector : collectors) {
+        dimCollectors.add(collector.drillSidewaysCollectors[dim]);
+      }
+      drillSidewaysCollectors[dim] = facetsCollectorManager.reduce(dimCollectors);
+    }
+    return new ConcurrentDrillSidewaysResult<>(buildFacetsResult(drillDownCollector, drillSidewaysCollectors,
+                                                                 drillDownDims.keySet().toArray(new String[numDims])),
+                                               null, hitsResult);
+  }
+
   /** Override this and return true if your collector
    *  (e.g., {@code ToParentBlockJoinCollector}) expects all
    *  sub-scorers to be positioned on the document being
@@ -250,5 +379,19 @@ public class DrillSideways {
       this.hits = hits;
     }
   }
+
+  /** Result of {@link DrillSideways#search(DrillDownQuery,
+   *  CollectorManager, ExecutorService)}, including the {@link Facets} and
+   *  the reduced result of the hit collectors. */
+  public static class ConcurrentDrillSidewaysResult<R> extends DrillSidewaysResult {
+    /** Reduced result of the hit collectors. */
+    public final R collectorResult;
+
+    /** Sole constructor. */
+    public ConcurrentDrillSidewaysResult(Facets facets, TopDocs hits, R collectorResult) {
+      super(facets, hits);
+      this.collectorResult = collectorResult;
+    }
+  }
 }
 
@@ -0,0 +1,73 @@
+package org.apache.lucene.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+
+/** A {@link CollectorManager} of {@link FacetsCollector}s, so
+ *  that hits can be collected for faceting by the executor of
+ *  an {@link IndexSearcher}, eg with {@link
+ *  IndexSearcher#search(Query, CollectorManager)}.  The
+ *  reduced {@link FacetsCollector} returns the {@link
+ *  FacetsCollector.MatchingDocs} of all collectors; when the
+ *  searcher splits segments into several slices, a segment
+ *  may have several {@link FacetsCollector.MatchingDocs}. */
+public class FacetsCollectorManager implements CollectorManager<FacetsCollector, FacetsCollector> {
+
+  private final boolean keepScores;
+
+  /** Default constructor */
+  public FacetsCollectorManager() {
+    this(false);
+  }
+
+  /** Create this; if {@code keepScores} is true then the
+   *  collectors keep the score of all hits. */
+  public FacetsCollectorManager(boolean keepScores) {
+    this.keepScores = keepScores;
+  }
+
+  @Override
+  public FacetsCollector newCollector() throws IOException {
+    return new FacetsCollector(keepScores);
+  }
+
+  @Override
+  public FacetsCollector reduce(Collection<FacetsCollector> collectors) throws IOException {
+    if (collectors.size() == 1) {
+      return collectors.iterator().next();
+    }
+    final List<FacetsCollector.MatchingDocs> matchingDocs = new ArrayList<>();
+    for (FacetsCollector collector : collectors) {
+      matchingDocs.addAll(collector.getMatchingDocs());
+    }
+    return new FacetsCollector(keepScores) {
+      @Override
+      public List<MatchingDocs> getMatchingDocs() {
+        return matchingDocs;
+      }
+    };
+  }
+}
@@ -0,0 +1,107 @@
+package org.apache.lucene.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+
+/** Collects the hits, the drill down hits and the drill
+ *  sideways hits of one segment for a {@link
+ *  FusedDrillSidewaysScorer}. */
+class FusedDrillSidewaysCollector<C extends Collector> {
+
+  final C hitCollector;
+  final FacetsCollector drillDownCollector;
+  final FacetsCollector[] drillSidewaysCollectors;
+
+  FusedDrillSidewaysCollector(C hitCollector, int numDims) {
+    if (hitCollector.needsScores()) {
+      throw new IllegalArgumentException("hits are not scored: the hit collector must not need scores");
+    }
+    this.hitCollector = hitCollector;
+    drillDownCollector = new FacetsCollector();
+    drillSidewaysCollectors = new FacetsCollector[numDims];
+    for (int dim = 0; dim < numDims; dim++) {
+      drillSidewaysCollectors[dim] = new FacetsCollector();
+    }
+  }
+
+  Leaf getLeafCollector(LeafReaderContext context) throws IOException {
+    LeafCollector hitLeafCollector;
+    try {
+      hitLeafCollector = hitCollector.getLeafCollector(context);
+    } catch (CollectionTerminatedException e) {
+      // the hit collector is not interested in this segment, but it still needs counts
+      hitLeafCollector = null;
+    }
+    final LeafCollector[] sidewaysLeafCollectors = new LeafCollector[drillSidewaysCollectors.length];
+    for (int dim = 0; dim < sidewaysLeafCollectors.length; dim++) {
+      sidewaysLeafCollectors[dim] = drillSidewaysCollectors[dim].getLeafCollector(context);
+    }
+    return new Leaf(hitLeafCollector, drillDownCollector.getLeafCollector(context), sidewaysLeafCollectors);
+  }
+
+  static final class Leaf implements LeafCollector {
+    private LeafCollector hitLeafCollector;
+    private final LeafCollector drillDownLeafCollector;
+    private final LeafCollector[] sidewaysLeafCollectors;
+
+    Leaf(LeafCollector hitLeafCollector, LeafCollector drillDownLeafCollector, LeafCollector[] sidewaysLeafCollectors) {
+      this.hitLeafCollector = hitLeafCollector;
+      this.drillDownLeafCollector = drillDownLeafCollector;
+      this.sidewaysLeafCollectors = sidewaysLeafCollectors;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      if (hitLeafCollector != null) {
+        hitLeafCollector.setScorer(scorer);
+      }
+      drillDownLeafCollector.setScorer(scorer);
+      for (LeafCollector sidewaysLeafCollector : sidewaysLeafCollectors) {
+        sidewaysLeafCollector.setScorer(scorer);
+      }
+    }
+
+    /** Collects a document that matches all dimensions. */
+    @Override
+    public void collect(int doc) throws IOException {
+      if (hitLeafCollector != null) {
+        try {
+          hitLeafCollector.collect(doc);
+        } catch (CollectionTerminatedException e) {
+          hitLeafCollector = null;
+        }
+      }
+      drillDownLeafCollector.collect(doc);
+      for (LeafCollector sidewaysLeafCollector : sidewaysLeafCollectors) {
+        sidewaysLeafCollector.collect(doc);
+      }
+    }
+
+    /** Collects a document that matches all dimensions but the given one. */
+    void collectNearMiss(int doc, int dim) throws IOException {
+      sidewaysLeafCollectors[dim].collect(doc);
+    }
+  }
+}
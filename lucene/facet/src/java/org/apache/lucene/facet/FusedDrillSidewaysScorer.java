@@ -0,0 +1,174 @@
+package org.apache.lucene.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.FixedBitSet;
+
+/** Computes drill down and sideways hits in a single pass
+ *  over the documents that match the base query, for {@link
+ *  DrillSideways#search(DrillDownQuery,
+ *  org.apache.lucene.search.CollectorManager,
+ *  java.util.concurrent.ExecutorService)}.  The weights are
+ *  created without scores, so that the searcher caches the
+ *  documents that match the base query and the drill-downs,
+ *  and hits are not scored.
+ *
+ *  <p>Documents are processed in windows: the base query
+ *  marks its documents, each dimension then increments the
+ *  count of matched dimensions of the marked documents and
+ *  adds its index to their sum of matched dimensions, so
+ *  that the missing dimension of a near-miss is the
+ *  difference between the sum of all dimensions and this
+ *  sum.  Unlike {@link DrillSidewaysScorer}, the cost does
+ *  not depend on which dimensions match a document, which
+ *  suits requests with many drill-down dimensions. */
+class FusedDrillSidewaysScorer {
+
+  private static final int WINDOW_SIZE = 2048;
+
+  private final Weight baseWeight;
+  private final Weight[] drillDownWeights;
+  private final int allDimsSum;
+
+  FusedDrillSidewaysScorer(Weight baseWeight, Weight[] drillDownWeights) {
+    this.baseWeight = baseWeight;
+    this.drillDownWeights = drillDownWeights;
+    allDimsSum = drillDownWeights.length * (drillDownWeights.length - 1) / 2;
+  }
+
+  /** Collects the hits and near-misses of the given segment. */
+  void score(LeafReaderContext context, FusedDrillSidewaysCollector.Leaf collector) throws IOException {
+    final Scorer baseScorer = baseWeight.scorer(context, context.reader().getLiveDocs());
+    if (baseScorer == null) {
+      return;
+    }
+    final int numDims = drillDownWeights.length;
+    final DocIdSetIterator[] disis = new DocIdSetIterator[numDims];
+    int nullCount = 0;
+    for(int dim=0;dim<numDims;dim++) {
+      // Pass null for acceptDocs because we already
+      // passed it to baseScorer
+      disis[dim] = drillDownWeights[dim].scorer(context, null);
+      if (disis[dim] == null) {
+        nullCount++;
+      }
+    }
+    // If more than one dim has no matches, then there
+    // are no hits nor drill-sideways counts
+    if (nullCount > 1) {
+      return;
+    }
+
+    final FakeScorer scorer = new FakeScorer();
+    collector.setScorer(scorer);
+
+    // per document of the window: is it a base hit, how many dims it matches, and the sum of these dims
+    final FixedBitSet baseHits = new FixedBitSet(WINDOW_SIZE);
+    final int[] matchedDimCounts = new int[WINDOW_SIZE];
+    final int[] matchedDimSums = new int[WINDOW_SIZE];
+
+    final int maxDoc = context.reader().maxDoc();
+    int baseDoc = baseScorer.nextDoc();
+    while (baseDoc < maxDoc) {
+      // windows start on base hits, so that sparse base queries skip empty windows
+      final int windowStart = baseDoc;
+      final int windowEnd = (int) Math.min(maxDoc, (long) windowStart + WINDOW_SIZE);
+
+      for (; baseDoc < windowEnd; baseDoc = baseScorer.nextDoc()) {
+        baseHits.set(baseDoc - windowStart);
+      }
+
+      for (int dim=0;dim<numDims;dim++) {
+        final DocIdSetIterator disi = disis[dim];
+        if (disi == null) {
+          continue;
+        }
+        int doc = disi.docID();
+        if (doc < windowStart) {
+          doc = disi.advance(windowStart);
+        }
+        for (; doc < windowEnd; doc = disi.nextDoc()) {
+          final int slot = doc - windowStart;
+          if (baseHits.get(slot)) {
+            matchedDimCounts[slot]++;
+            matchedDimSums[slot] += dim;
+          }
+        }
+      }
+
+      for (int slot = baseHits.nextSetBit(0); slot != DocIdSetIterator.NO_MORE_DOCS;
+           slot = slot + 1 >= WINDOW_SIZE ? DocIdSetIterator.NO_MORE_DOCS : baseHits.nextSetBit(slot + 1)) {
+        final int missingDimCount = numDims - matchedDimCounts[slot];
+        scorer.doc = windowStart + slot;
+        if (missingDimCount == 0) {
+          collector.collect(scorer.doc);
+        } else if (missingDimCount == 1) {
+          collector.collectNearMiss(scorer.doc, allDimsSum - matchedDimSums[slot]);
+        }
+        matchedDimCounts[slot] = 0;
+        matchedDimSums[slot] = 0;
+      }
+      baseHits.clear(0, WINDOW_SIZE);
+    }
+  }
+
+  /** Hits are not scored. */
+  private static final class FakeScorer extends Scorer {
+    int doc = -1;
+
+    FakeScorer() {
+      super(null);
+    }
+
+    @Override
+    public int advance(int target) {
+      throw new UnsupportedOperationException("FakeScorer doesn't support advance(int)");
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int freq() {
+      return 1;
+    }
+
+    @Override
+    public int nextDoc() {
+      throw new UnsupportedOperationException("FakeScorer doesn't support nextDoc()");
+    }
+
+    @Override
+    public float score() {
+      throw new UnsupportedOperationException("hits are not scored");
+    }
+
+    @Override
+    public long cost() {
+      return 1;
+    }
+  }
+}
@@ -24,6 +24,8 @@ import java.util.List;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
 import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.queries.function.FunctionValues;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.queries.function.valuesource.LongFieldSource;
@@ -44,6 +46,9 @@ import org.apache.lucene.search.DocIdSetIterator;
  *  @lucene.experimental */
 public class LongRangeFacetCounts extends RangeFacetCounts {
 
+  // number of matching docs whose values are looked up at once
+  private static final int BUFFER_SIZE = 256;
+
   /** Create {@code LongRangeFacetCounts}, using {@link
    *  LongFieldSource} from the specified field. */
   public LongRangeFacetCounts(String field, FacetsCollector hits, LongRange... ranges) throws IOException {
@@ -72,9 +77,26 @@ public class LongRangeFacetCounts extends RangeFacetCounts {
 
     LongRangeCounter counter = new LongRangeCounter(ranges);
 
+    // doc values of a LongFieldSource are looked up in bulk
+    final boolean bulk = valueSource.getClass() == LongFieldSource.class;
+    final String sourceField = bulk ? ((LongFieldSource) valueSource).getField() : null;
+    final int[] docBuffer = bulk ? new int[BUFFER_SIZE] : null;
+    final long[] valueBuffer = bulk ? new long[BUFFER_SIZE] : null;
+
     int missingCount = 0;
     for (MatchingDocs hits : matchingDocs) {
-      FunctionValues fv = valueSource.getValues(Collections.emptyMap(), hits.context);
+      final FunctionValues fv;
+      final NumericDocValues values;
+      final Bits docsWithField;
+      if (bulk) {
+        fv = null;
+        values = DocValues.getNumeric(hits.context.reader(), sourceField);
+        docsWithField = DocValues.getDocsWithField(hits.context.reader(), sourceField);
+      } else {
+        fv = valueSource.getValues(Collections.emptyMap(), hits.context);
+        values = null;
+        docsWithField = null;
+      }
       
       totCount += hits.totalHits;
       final DocIdSetIterator fastMatchDocs;
@@ -90,6 +112,7 @@ public class LongRangeFacetCounts extends RangeFacetCounts {
       }
 
       DocIdSetIterator docs = hits.bits.iterator();      
+      int buffered = 0;
       for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; ) {
         if (fastMatchDocs != null) {
           int fastMatchDoc = fastMatchDocs.docID();
@@ -102,15 +125,25 @@ public class LongRangeFacetCounts extends RangeFacetCounts {
             continue;
           }
         }
-        // Skip missing docs:
-        if (fv.exists(doc)) {
+
+        if (bulk) {
+          docBuffer[buffered++] = doc;
+          if (buffered == BUFFER_SIZE) {
+            missingCount += countBuffered(counter, values, docsWithField, docBuffer, valueBuffer, buffered);
+            buffered = 0;
+          }
+        } else if (fv.exists(doc)) {
           counter.add(fv.longVal(doc));
         } else {
+          // Skip missing docs:
           missingCount++;
         }
 
         doc = docs.nextDoc();
       }
+      if (buffered > 0) {
+        missingCount += countBuffered(counter, values, docsWithField, docBuffer, valueBuffer, buffered);
+      }
     }
     
     int x = counter.fillCounts(counts);
@@ -120,4 +153,21 @@ public class LongRangeFacetCounts extends RangeFacetCounts {
     //System.out.println("totCount " + totCount + " missingCount " + counter.missingCount);
     totCount -= missingCount;
   }
+
+  /** Counts the values of the buffered docs and returns the number of docs without a value. */
+  private static int countBuffered(LongRangeCounter counter, NumericDocValues values, Bits docsWithField,
+      int[] docs, long[] valueBuffer, int count) {
+    values.get(docs, valueBuffer, count);
+    int missingCount = 0;
+    for (int i = 0; i < count; i++) {
+      final long value = valueBuffer[i];
+      // Skip missing docs:
+      if (value != 0 || docsWithField.get(docs[i])) {
+        counter.add(value);
+      } else {
+        missingCount++;
+      }
+    }
+    return missingCount;
+  }
 }
@@ -18,31 +18,66 @@ package org.apache.lucene.facet.sortedset;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState.OrdRange;
-import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.SlowCompositeReaderWrapper;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues.OrdinalMap;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
 
 /**
  * Default implementation of {@link SortedSetDocValuesFacetCounts}
+ * <p>
+ * When an {@link IndexReader} is reopened, pass the state of
+ * the previous reader to {@link
+ * #DefaultSortedSetDocValuesReaderState(IndexReader,
+ * DefaultSortedSetDocValuesReaderState)}: the mapping of the
+ * segments that both readers share is then derived from the
+ * previous state, and only the labels of the new segments
+ * are merged, instead of the labels of all segments.
  */
 public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesReaderState {
 
+  private static final LongValues ZERO = new LongValues() {
+    @Override
+    public long get(long index) {
+      return 0;
+    }
+  };
+
   private final String field;
-  private final LeafReader topReader;
   private final int valueCount;
 
   /** {@link IndexReader} passed to the constructor. */
   public final IndexReader origReader;
 
-  private final Map<String,OrdRange> prefixToOrdRange = new HashMap<>();
+  private final Map<String,OrdRange> prefixToOrdRange;
+
+  // per segment: core cache key, and segment ord -> global ord
+  private final Object[] coreKeys;
+  private final LongValues[] segmentToGlobalOrds;
+  private final int[] docStarts;
+  // global ord -> segment that has it, and its ord in this segment
+  private final LongValues firstSegments;
+  private final LongValues firstSegmentOrds;
+
+  // number of segments whose mapping was derived from the previous state
+  final int reusedSegmentCount;
 
   /** Creates this, pulling doc values from the default {@link
    *  FacetsConfig#DEFAULT_INDEX_FIELD_NAME}. */ 
@@ -53,55 +88,415 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
   /** Creates this, pulling doc values from the specified
    *  field. */
   public DefaultSortedSetDocValuesReaderState(IndexReader reader, String field) throws IOException {
+    this(reader, field, null);
+  }
+
+  /** Creates this for a reopened reader, pulling doc values
+   *  from the field of the previous state, which was created
+   *  for a previous reader of the same index.  The mapping of
+   *  the segments that both readers share is derived from the
+   *  previous state, which makes this much cheaper than
+   *  creating a new state when most segments did not change,
+   *  as with near-real-time reopens. */
+  public DefaultSortedSetDocValuesReaderState(IndexReader reader, DefaultSortedSetDocValuesReaderState previous) throws IOException {
+    this(reader, previous.field, previous);
+  }
+
+  private DefaultSortedSetDocValuesReaderState(IndexReader reader, String field, DefaultSortedSetDocValuesReaderState previous) throws IOException {
     this.field = field;
     this.origReader = reader;
 
-    // We need this to create thread-safe MultiSortedSetDV
-    // per collector:
-    topReader = SlowCompositeReaderWrapper.wrap(reader);
-    SortedSetDocValues dv = topReader.getSortedSetDocValues(field);
-    if (dv == null) {
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    coreKeys = new Object[leaves.size()];
+    docStarts = new int[leaves.size()];
+    boolean anyReal = false;
+    for (int i = 0; i < values.length; i++) {
+      final LeafReader leaf = leaves.get(i).reader();
+      values[i] = leaf.getSortedSetDocValues(field);
+      if (values[i] == null) {
+        values[i] = DocValues.emptySortedSet();
+      } else {
+        anyReal = true;
+      }
+      coreKeys[i] = leaf.getCoreCacheKey();
+      docStarts[i] = leaves.get(i).docBase;
+    }
+    if (anyReal == false) {
       throw new IllegalArgumentException("field \"" + field + "\" was not indexed with SortedSetDocValues");
     }
-    if (dv.getValueCount() > Integer.MAX_VALUE) {
-      throw new IllegalArgumentException("can only handle valueCount < Integer.MAX_VALUE; got " + dv.getValueCount());
+
+    // segments of the previous reader that this reader still has
+    final int[] previousSegments = new int[values.length];
+    int survivorCount = 0;
+    if (previous != null) {
+      final Map<Object,Integer> previousSegmentByKey = new HashMap<>();
+      for (int i = 0; i < previous.coreKeys.length; i++) {
+        previousSegmentByKey.put(previous.coreKeys[i], i);
+      }
+      for (int i = 0; i < values.length; i++) {
+        final Integer previousSegment = previousSegmentByKey.get(coreKeys[i]);
+        previousSegments[i] = previousSegment == null ? -1 : previousSegment;
+        if (previousSegment != null) {
+          survivorCount++;
+        }
+      }
     }
-    valueCount = (int) dv.getValueCount();
 
-    // TODO: we can make this more efficient if eg we can be
-    // "involved" when OrdinalMap is being created?  Ie see
-    // each term/ord it's assigning as it goes...
-    String lastDim = null;
-    int startOrd = -1;
+    if (previous != null && Arrays.equals(coreKeys, previous.coreKeys)) {
+      // same segments (eg only deletes changed): reuse everything
+      valueCount = previous.valueCount;
+      prefixToOrdRange = previous.prefixToOrdRange;
+      segmentToGlobalOrds = previous.segmentToGlobalOrds;
+      firstSegments = previous.firstSegments;
+      firstSegmentOrds = previous.firstSegmentOrds;
+      reusedSegmentCount = survivorCount;
+    } else if (survivorCount > 0) {
+      // merge the labels of the previous reader that surviving segments still have with the labels of new segments
+      final int previousValueCount = previous.valueCount;
+      // previous global ord -> 1 + a surviving segment that has it (0 if none), and its ord in this segment
+      int maxSegmentValueCount = 0;
+      for (SortedSetDocValues segmentValues : values) {
+        maxSegmentValueCount = Math.max(maxSegmentValueCount, (int) segmentValues.getValueCount());
+      }
+      final PackedInts.Mutable holderSegments = PackedInts.getMutable(previousValueCount,
+          PackedInts.bitsRequired(values.length), PackedInts.DEFAULT);
+      final PackedInts.Mutable holderOrds = PackedInts.getMutable(previousValueCount,
+          PackedInts.bitsRequired(maxSegmentValueCount), PackedInts.DEFAULT);
+      final int[] newSegments = new int[values.length - survivorCount];
+      int newSegmentCount = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (previousSegments[i] == -1) {
+          newSegments[newSegmentCount++] = i;
+          continue;
+        }
+        final LongValues previousGlobalOrds = previous.segmentToGlobalOrds[previousSegments[i]];
+        final long segmentValueCount = values[i].getValueCount();
+        for (long ord = 0; ord < segmentValueCount; ord++) {
+          final int previousGlobalOrd = (int) previousGlobalOrds.get(ord);
+          if (holderSegments.get(previousGlobalOrd) == 0) {
+            holderSegments.set(previousGlobalOrd, i + 1);
+            holderOrds.set(previousGlobalOrd, ord);
+          }
+        }
+      }
+      final SurvivingLabels survivingLabels = new SurvivingLabels(values, holderSegments, holderOrds);
+      final NewLabels newLabels = new NewLabels(reader.getCoreCacheKey(), values, newSegments);
+      // upper bound of the number of merged labels
+      final int maxValueCount = checkValueCount(previousValueCount + newLabels.valueCount);
 
-    // TODO: this approach can work for full hierarchy?;
-    // TaxoReader can't do this since ords are not in
-    // "sorted order" ... but we should generalize this to
-    // support arbitrary hierarchy:
-    for(int ord=0;ord<valueCount;ord++) {
-      final BytesRef term = dv.lookupOrd(ord);
+      // merge both sorted sequences of labels: this gives the mappings of previous global ords and of ords
+      // of new labels to new global ords, the reverse mapping and the dimensions, and only new labels need
+      // to be parsed
+      final PackedInts.Mutable previousToGlobalOrds = PackedInts.getMutable(previousValueCount,
+          PackedInts.bitsRequired(maxValueCount), PackedInts.DEFAULT);
+      final PackedLongValues.Builder newToGlobalOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.DEFAULT);
+      final PackedLongValues.Builder firstSegmentsBuilder = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+      final PackedLongValues.Builder firstSegmentOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+      final List<Map.Entry<String,OrdRange>> previousRanges = new ArrayList<>(previous.prefixToOrdRange.entrySet());
+      Collections.sort(previousRanges, new Comparator<Map.Entry<String,OrdRange>>() {
+        @Override
+        public int compare(Map.Entry<String,OrdRange> a, Map.Entry<String,OrdRange> b) {
+          return Integer.compare(a.getValue().start, b.getValue().start);
+        }
+      });
+      final DimensionRanges ranges = new DimensionRanges();
+      int previousRange = 0;
+      int globalOrd = 0;
+      BytesRef survivingLabel = survivingLabels.next();
+      BytesRef newLabel = newLabels.next();
+      while (survivingLabel != null || newLabel != null) {
+        final int cmp = survivingLabel == null ? 1 : newLabel == null ? -1 : survivingLabel.compareTo(newLabel);
+        if (cmp <= 0) {
+          final int previousOrd = survivingLabels.ord;
+          previousToGlobalOrds.set(previousOrd, globalOrd);
+          while (previousRanges.get(previousRange).getValue().end < previousOrd) {
+            previousRange++;
+          }
+          ranges.add(previousRanges.get(previousRange).getKey(), globalOrd);
+          firstSegmentsBuilder.add(survivingLabels.segment);
+          firstSegmentOrdDeltas.add(survivingLabels.segmentOrd - globalOrd);
+        } else {
+          ranges.add(newLabel, globalOrd);
+          firstSegmentsBuilder.add(newLabels.segment);
+          firstSegmentOrdDeltas.add(newLabels.segmentOrd - globalOrd);
+        }
+        if (cmp <= 0) {
+          survivingLabel = survivingLabels.next();
+        }
+        if (cmp >= 0) {
+          newToGlobalOrdDeltas.add(globalOrd - newLabels.ord);
+          newLabel = newLabels.next();
+        }
+        globalOrd++;
+      }
+      valueCount = globalOrd;
+      prefixToOrdRange = ranges.finish(valueCount);
+      firstSegments = firstSegmentsBuilder.build();
+      firstSegmentOrds = new DeltaLongValues(firstSegmentOrdDeltas.build());
+
+      // mapping of segments: previous mapping or mapping of new labels, then to new global ords
+      final LongValues previousToGlobal = new LongValues() {
+        @Override
+        public long get(long previousGlobalOrd) {
+          return previousToGlobalOrds.get((int) previousGlobalOrd);
+        }
+      };
+      final LongValues newToGlobal = new DeltaLongValues(newToGlobalOrdDeltas.build());
+      segmentToGlobalOrds = new LongValues[values.length];
+      for (int i = 0; i < values.length; i++) {
+        if (previousSegments[i] != -1) {
+          segmentToGlobalOrds[i] = toGlobalOrds(previous.segmentToGlobalOrds[previousSegments[i]], previousToGlobal, values[i].getValueCount());
+        }
+      }
+      for (int i = 0; i < newSegments.length; i++) {
+        final int segment = newSegments[i];
+        segmentToGlobalOrds[segment] = toGlobalOrds(newLabels.getOrds(i), newToGlobal, values[segment].getValueCount());
+      }
+      reusedSegmentCount = survivorCount;
+    } else {
+      if (values.length == 1) {
+        valueCount = checkValueCount(values[0].getValueCount());
+        segmentToGlobalOrds = new LongValues[] {LongValues.IDENTITY};
+        firstSegments = ZERO;
+        firstSegmentOrds = LongValues.IDENTITY;
+      } else {
+        final OrdinalMap map = OrdinalMap.build(reader.getCoreCacheKey(), values, PackedInts.DEFAULT);
+        valueCount = checkValueCount(map.getValueCount());
+        segmentToGlobalOrds = new LongValues[values.length];
+        for (int i = 0; i < values.length; i++) {
+          segmentToGlobalOrds[i] = map.getGlobalOrds(i);
+        }
+        firstSegments = new LongValues() {
+          @Override
+          public long get(long globalOrd) {
+            return map.getFirstSegmentNumber(globalOrd);
+          }
+        };
+        firstSegmentOrds = new LongValues() {
+          @Override
+          public long get(long globalOrd) {
+            return map.getFirstSegmentOrd(globalOrd);
+          }
+        };
+      }
+
+      // TODO: we can make this more efficient if eg we can be
+      // "involved" when OrdinalMap is being created?  Ie see
+      // each term/ord it's assigning as it goes...
+
+      // TODO: this approach can work for full hierarchy?;
+      // TaxoReader can't do this since ords are not in
+      // "sorted order" ... but we should generalize this to
+      // support arbitrary hierarchy:
+      final DimensionRanges ranges = new DimensionRanges();
+      for(int ord=0;ord<valueCount;ord++) {
+        ranges.add(values[(int) firstSegments.get(ord)].lookupOrd(firstSegmentOrds.get(ord)), ord);
+      }
+      prefixToOrdRange = ranges.finish(valueCount);
+      reusedSegmentCount = 0;
+    }
+  }
+
+  private static int checkValueCount(long valueCount) {
+    if (valueCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("can only handle valueCount < Integer.MAX_VALUE; got " + valueCount);
+    }
+    return (int) valueCount;
+  }
+
+  /** Computes the {@link OrdRange} of each dimension from the
+   *  dimensions of the labels, in ord order. */
+  private static final class DimensionRanges {
+    private final Map<String,OrdRange> prefixToOrdRange = new HashMap<>();
+    private String lastDim = null;
+    private int startOrd = -1;
+
+    void add(BytesRef term, int ord) {
       String[] components = FacetsConfig.stringToPath(term.utf8ToString());
       if (components.length != 2) {
         throw new IllegalArgumentException("this class can only handle 2 level hierarchy (dim/value); got: " + Arrays.toString(components) + " " + term.utf8ToString());
       }
-      if (!components[0].equals(lastDim)) {
+      add(components[0], ord);
+    }
+
+    void add(String dim, int ord) {
+      if (!dim.equals(lastDim)) {
         if (lastDim != null) {
           prefixToOrdRange.put(lastDim, new OrdRange(startOrd, ord-1));
         }
         startOrd = ord;
-        lastDim = components[0];
+        lastDim = dim;
+      }
+    }
+
+    Map<String,OrdRange> finish(int valueCount) {
+      if (lastDim != null) {
+        prefixToOrdRange.put(lastDim, new OrdRange(startOrd, valueCount-1));
+      }
+      return prefixToOrdRange;
+    }
+  }
+
+  /** Maps ords to ords plus deltas. */
+  private static final class DeltaLongValues extends LongValues {
+    private final PackedLongValues deltas;
+
+    DeltaLongValues(PackedLongValues deltas) {
+      this.deltas = deltas;
+    }
+
+    @Override
+    public long get(long ord) {
+      return ord + deltas.get(ord);
+    }
+  }
+
+  /** Returns the mapping of ords of a segment to global ords,
+   *  given the mapping of these ords to intermediate ords and
+   *  of intermediate ords to global ords. */
+  private static LongValues toGlobalOrds(LongValues segmentToOrds, LongValues ordsToGlobalOrds, long segmentValueCount) {
+    final PackedLongValues.Builder deltas = PackedLongValues.monotonicBuilder(PackedInts.DEFAULT);
+    long deltaBits = 0;
+    for (long ord = 0; ord < segmentValueCount; ord++) {
+      final long delta = ordsToGlobalOrds.get(segmentToOrds.get(ord)) - ord;
+      deltaBits |= delta;
+      deltas.add(delta);
+    }
+    return deltaBits == 0 ? LongValues.IDENTITY : new DeltaLongValues(deltas.build());
+  }
+
+  /** Iterates, in order, over the labels of the previous
+   *  reader that surviving segments still have, reading them
+   *  from these segments. */
+  private static final class SurvivingLabels {
+    private final SortedSetDocValues[] values;
+    private final PackedInts.Reader holderSegments;
+    private final PackedInts.Reader holderOrds;
+    /** Previous global ord of the current label. */
+    int ord = -1;
+    /** Segment that has the current label, and its ord in this segment. */
+    int segment;
+    long segmentOrd;
+
+    SurvivingLabels(SortedSetDocValues[] values, PackedInts.Reader holderSegments, PackedInts.Reader holderOrds) {
+      this.values = values;
+      this.holderSegments = holderSegments;
+      this.holderOrds = holderOrds;
+    }
+
+    /** Moves to the next label and returns it, or null if there are no more labels. */
+    BytesRef next() {
+      final int size = holderSegments.size();
+      do {
+        ord++;
+      } while (ord < size && holderSegments.get(ord) == 0);
+      if (ord >= size) {
+        return null;
+      }
+      segment = (int) holderSegments.get(ord) - 1;
+      segmentOrd = holderOrds.get(ord);
+      return values[segment].lookupOrd(segmentOrd);
+    }
+  }
+
+  /** Iterates, in order, over the labels of the segments
+   *  that the previous reader did not have. */
+  private static final class NewLabels {
+    private final SortedSetDocValues[] values;
+    private final int[] segments;
+    // null if there is at most one new segment
+    private final OrdinalMap map;
+    final long valueCount;
+    /** Ord of the current label among the labels of new segments. */
+    long ord = -1;
+    /** Segment that has the current label, and its ord in this segment. */
+    int segment;
+    long segmentOrd;
+
+    NewLabels(Object owner, SortedSetDocValues[] values, int[] segments) throws IOException {
+      this.values = values;
+      this.segments = segments;
+      if (segments.length == 0) {
+        map = null;
+        valueCount = 0;
+      } else if (segments.length == 1) {
+        map = null;
+        valueCount = values[segments[0]].getValueCount();
+      } else {
+        final SortedSetDocValues[] newValues = new SortedSetDocValues[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+          newValues[i] = values[segments[i]];
+        }
+        map = OrdinalMap.build(owner, newValues, PackedInts.DEFAULT);
+        valueCount = map.getValueCount();
       }
     }
 
-    if (lastDim != null) {
-      prefixToOrdRange.put(lastDim, new OrdRange(startOrd, valueCount-1));
+    /** Returns the mapping of ords of the i-th new segment to ords of new labels. */
+    LongValues getOrds(int i) {
+      return map == null ? LongValues.IDENTITY : map.getGlobalOrds(i);
+    }
+
+    /** Moves to the next label and returns it, or null if there are no more labels. */
+    BytesRef next() {
+      if (++ord >= valueCount) {
+        return null;
+      }
+      if (map == null) {
+        segment = segments[0];
+        segmentOrd = ord;
+      } else {
+        segment = segments[map.getFirstSegmentNumber(ord)];
+        segmentOrd = map.getFirstSegmentOrd(ord);
+      }
+      return values[segment].lookupOrd(segmentOrd);
     }
   }
 
   /** Return top-level doc values. */
   @Override
   public SortedSetDocValues getDocValues() throws IOException {
-    return topReader.getSortedSetDocValues(field);
+    // new doc values per call, since they are not thread-safe
+    final List<LeafReaderContext> leaves = origReader.leaves();
+    final SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = DocValues.getSortedSet(leaves.get(i).reader(), field);
+    }
+    return new SortedSetDocValues() {
+      private SortedSetDocValues current;
+      private LongValues currentGlobalOrds;
+
+      @Override
+      public void setDocument(int docID) {
+        final int segment = ReaderUtil.subIndex(docID, docStarts);
+        current = values[segment];
+        currentGlobalOrds = segmentToGlobalOrds[segment];
+        current.setDocument(docID - docStarts[segment]);
+      }
+
+      @Override
+      public long nextOrd() {
+        final long ord = current.nextOrd();
+        return ord == NO_MORE_ORDS ? ord : currentGlobalOrds.get(ord);
+      }
+
+      @Override
+      public BytesRef lookupOrd(long ord) {
+        return values[(int) firstSegments.get(ord)].lookupOrd(firstSegmentOrds.get(ord));
+      }
+
+      @Override
+      public long getValueCount() {
+        return valueCount;
+      }
+    };
+  }
+
+  @Override
+  public LongValues getGlobalOrds(int segment) {
+    final LongValues globalOrds = segmentToGlobalOrds[segment];
+    return globalOrds == LongValues.IDENTITY ? null : globalOrds;
   }
 
   /** Returns mapping from prefix to {@link OrdRange}. */
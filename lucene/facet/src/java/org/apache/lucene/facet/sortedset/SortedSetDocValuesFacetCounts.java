@@ -23,6 +23,12 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
@@ -34,13 +40,12 @@ import org.apache.lucene.facet.TopOrdAndIntQueue;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState.OrdRange;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiDocValues;
-import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /** Compute facets counts from previously
  *  indexed {@link SortedSetDocValuesFacetField},
@@ -55,6 +60,9 @@ import org.apache.lucene.util.LongValues;
  *  <p><b>NOTE</b>: this class should be instantiated and
  *  then used from a single thread, because it holds a
  *  thread-private instance of {@link SortedSetDocValues}.
+ *  Counting can however run concurrently, see {@link
+ *  #SortedSetDocValuesFacetCounts(SortedSetDocValuesReaderState,
+ *  FacetsCollector, ExecutorService)}.
  * 
  * <p><b>NOTE:</b>: tie-break is by unicode sort order
  *
@@ -70,12 +78,33 @@ public class SortedSetDocValuesFacetCounts extends Facets {
    *  hits, topCount labels per dimension. */
   public SortedSetDocValuesFacetCounts(SortedSetDocValuesReaderState state, FacetsCollector hits)
       throws IOException {
+    this(state, hits, null);
+  }
+
+  /** Sparse faceting: returns any dimension that had any
+   *  hits, topCount labels per dimension.  The hits of each
+   *  segment are counted by a separate task of the given
+   *  executor, eg the one of the {@link
+   *  org.apache.lucene.search.IndexSearcher} that collected
+   *  the hits with a {@link
+   *  org.apache.lucene.facet.FacetsCollectorManager}, into
+   *  count arrays that are merged once all tasks are done.
+   *  Tasks that run concurrently use distinct count arrays,
+   *  and arrays are reused by later tasks, so that there are
+   *  at most as many arrays as threads of the executor. If the
+   *  executor is null, counts on the current thread. */
+  public SortedSetDocValuesFacetCounts(SortedSetDocValuesReaderState state, FacetsCollector hits, ExecutorService executor)
+      throws IOException {
     this.state = state;
     this.field = state.getField();
     dv = state.getDocValues();    
-    counts = new int[state.getSize()];
     //System.out.println("field=" + field);
-    count(hits.getMatchingDocs());
+    if (executor == null) {
+      counts = new int[state.getSize()];
+      count(hits.getMatchingDocs());
+    } else {
+      counts = countConcurrently(hits.getMatchingDocs(), executor);
+    }
   }
 
   @Override
@@ -147,105 +176,154 @@ public class SortedSetDocValuesFacetCounts extends Facets {
   private final void count(List<MatchingDocs> matchingDocs) throws IOException {
     //System.out.println("ssdv count");
 
-    MultiDocValues.OrdinalMap ordinalMap;
-
-    // TODO: is this right?  really, we need a way to
-    // verify that this ordinalMap "matches" the leaves in
-    // matchingDocs...
-    if (dv instanceof MultiSortedSetDocValues && matchingDocs.size() > 1) {
-      ordinalMap = ((MultiSortedSetDocValues) dv).mapping;
-    } else {
-      ordinalMap = null;
+    for(MatchingDocs hits : matchingDocs) {
+      checkReader(hits);
+      countOneSegment(counts, hits);
     }
-    
-    IndexReader origReader = state.getOrigReader();
+  }
 
-    for(MatchingDocs hits : matchingDocs) {
+  /** Counts each segment in a task of the executor, and merges the counts of the tasks. */
+  private int[] countConcurrently(List<MatchingDocs> matchingDocs, ExecutorService executor) throws IOException {
+    // count arrays that no running task uses
+    final Queue<int[]> freeCounts = new ConcurrentLinkedQueue<>();
+    final List<Future<Void>> futures = new ArrayList<>();
+    for(final MatchingDocs hits : matchingDocs) {
+      checkReader(hits);
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          int[] taskCounts = freeCounts.poll();
+          if (taskCounts == null) {
+            taskCounts = new int[state.getSize()];
+          }
+          try {
+            countOneSegment(taskCounts, hits);
+          } finally {
+            freeCounts.add(taskCounts);
+          }
+          return null;
+        }
+      }));
+    }
 
-      LeafReader reader = hits.context.reader();
-      //System.out.println("  reader=" + reader);
-      // LUCENE-5090: make sure the provided reader context "matches"
-      // the top-level reader passed to the
-      // SortedSetDocValuesReaderState, else cryptic
-      // AIOOBE can happen:
-      if (ReaderUtil.getTopLevelContext(hits.context).reader() != origReader) {
-        throw new IllegalStateException("the SortedSetDocValuesReaderState provided to this class does not match the reader being searched; you must create a new SortedSetDocValuesReaderState every time you open a new IndexReader");
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
       }
-      
-      SortedSetDocValues segValues = reader.getSortedSetDocValues(field);
-      if (segValues == null) {
-        continue;
+    }
+
+    // all tasks are done: merge their counts
+    int[] mergedCounts = freeCounts.poll();
+    if (mergedCounts == null) {
+      return new int[state.getSize()];
+    }
+    for (int[] taskCounts = freeCounts.poll(); taskCounts != null; taskCounts = freeCounts.poll()) {
+      for (int ord = 0; ord < mergedCounts.length; ord++) {
+        mergedCounts[ord] += taskCounts[ord];
       }
+    }
+    return mergedCounts;
+  }
 
-      DocIdSetIterator docs = hits.bits.iterator();
-
-      // TODO: yet another option is to count all segs
-      // first, only in seg-ord space, and then do a
-      // merge-sort-PQ in the end to only "resolve to
-      // global" those seg ords that can compete, if we know
-      // we just want top K?  ie, this is the same algo
-      // that'd be used for merging facets across shards
-      // (distributed faceting).  but this has much higher
-      // temp ram req'ts (sum of number of ords across all
-      // segs)
-      if (ordinalMap != null) {
-        final int segOrd = hits.context.ord;
-        final LongValues ordMap = ordinalMap.getGlobalOrds(segOrd);
-
-        int numSegOrds = (int) segValues.getValueCount();
-
-        if (hits.totalHits < numSegOrds/10) {
-          //System.out.println("    remap as-we-go");
-          // Remap every ord to global ord as we iterate:
-          int doc;
-          while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-            //System.out.println("    doc=" + doc);
-            segValues.setDocument(doc);
-            int term = (int) segValues.nextOrd();
-            while (term != SortedSetDocValues.NO_MORE_ORDS) {
-              //System.out.println("      segOrd=" + segOrd + " ord=" + term + " globalOrd=" + ordinalMap.getGlobalOrd(segOrd, term));
-              counts[(int) ordMap.get(term)]++;
-              term = (int) segValues.nextOrd();
-            }
-          }
-        } else {
-          //System.out.println("    count in seg ord first");
-
-          // First count in seg-ord space:
-          final int[] segCounts = new int[numSegOrds];
-          int doc;
-          while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-            //System.out.println("    doc=" + doc);
-            segValues.setDocument(doc);
-            int term = (int) segValues.nextOrd();
-            while (term != SortedSetDocValues.NO_MORE_ORDS) {
-              //System.out.println("      ord=" + term);
-              segCounts[term]++;
-              term = (int) segValues.nextOrd();
-            }
-          }
+  private void checkReader(MatchingDocs hits) {
+    // LUCENE-5090: make sure the provided reader context "matches"
+    // the top-level reader passed to the
+    // SortedSetDocValuesReaderState, else cryptic
+    // AIOOBE can happen:
+    if (ReaderUtil.getTopLevelContext(hits.context).reader() != state.getOrigReader()) {
+      throw new IllegalStateException("the SortedSetDocValuesReaderState provided to this class does not match the reader being searched; you must create a new SortedSetDocValuesReaderState every time you open a new IndexReader");
+    }
+  }
+
+  /** Counts the hits of one segment into the given global ord counts. */
+  private void countOneSegment(int[] counts, MatchingDocs hits) throws IOException {
+    LeafReader reader = hits.context.reader();
+    //System.out.println("  reader=" + reader);
+
+    SortedSetDocValues segValues = reader.getSortedSetDocValues(field);
+    if (segValues == null) {
+      return;
+    }
 
-          // Then, migrate to global ords:
-          for(int ord=0;ord<numSegOrds;ord++) {
-            int count = segCounts[ord];
-            if (count != 0) {
-              //System.out.println("    migrate segOrd=" + segOrd + " ord=" + ord + " globalOrd=" + ordinalMap.getGlobalOrd(segOrd, ord));
-              counts[(int) ordMap.get(ord)] += count;
-            }
+    DocIdSetIterator docs = hits.bits.iterator();
+    if (docs == null) {
+      return;
+    }
+
+    // TODO: yet another option is to count all segs
+    // first, only in seg-ord space, and then do a
+    // merge-sort-PQ in the end to only "resolve to
+    // global" those seg ords that can compete, if we know
+    // we just want top K?  ie, this is the same algo
+    // that'd be used for merging facets across shards
+    // (distributed faceting).  but this has much higher
+    // temp ram req'ts (sum of number of ords across all
+    // segs)
+    final LongValues ordMap = state.getGlobalOrds(hits.context.ord);
+    if (ordMap != null) {
+      int numSegOrds = (int) segValues.getValueCount();
+
+      if (hits.totalHits < numSegOrds/10) {
+        //System.out.println("    remap as-we-go");
+        // Remap every ord to global ord as we iterate:
+        int doc;
+        while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          //System.out.println("    doc=" + doc);
+          segValues.setDocument(doc);
+          int term = (int) segValues.nextOrd();
+          while (term != SortedSetDocValues.NO_MORE_ORDS) {
+            counts[(int) ordMap.get(term)]++;
+            term = (int) segValues.nextOrd();
           }
         }
       } else {
-        // No ord mapping (e.g., single segment index):
-        // just aggregate directly into counts:
+        //System.out.println("    count in seg ord first");
+
+        // First count in seg-ord space:
+        final int[] segCounts = new int[numSegOrds];
         int doc;
         while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          //System.out.println("    doc=" + doc);
           segValues.setDocument(doc);
           int term = (int) segValues.nextOrd();
           while (term != SortedSetDocValues.NO_MORE_ORDS) {
-            counts[term]++;
+            //System.out.println("      ord=" + term);
+            segCounts[term]++;
             term = (int) segValues.nextOrd();
           }
         }
+
+        // Then, migrate to global ords:
+        for(int ord=0;ord<numSegOrds;ord++) {
+          int count = segCounts[ord];
+          if (count != 0) {
+            counts[(int) ordMap.get(ord)] += count;
+          }
+        }
+      }
+    } else {
+      // No ord mapping (e.g., single segment index):
+      // just aggregate directly into counts:
+      int doc;
+      while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        segValues.setDocument(doc);
+        int term = (int) segValues.nextOrd();
+        while (term != SortedSetDocValues.NO_MORE_ORDS) {
+          counts[term]++;
+          term = (int) segValues.nextOrd();
+        }
       }
     }
   }
@@ -21,7 +21,9 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.LongValues;
 
 /** Wraps a {@link IndexReader} and resolves ords
  *  using existing {@link SortedSetDocValues} APIs without a
@@ -78,4 +80,21 @@ public abstract class SortedSetDocValuesReaderState {
   
   /** Number of unique labels. */
   public abstract int getSize();
+
+  /** Returns the mapping from the ords of the given segment
+   *  (ie the ord of its {@link
+   *  org.apache.lucene.index.LeafReaderContext} in {@link
+   *  #getOrigReader()}) to the ords of {@link
+   *  #getDocValues()}, or null if they are the same.  The
+   *  default implementation uses the ordinal map of {@link
+   *  #getDocValues()} if it is a {@link
+   *  MultiSortedSetDocValues}. */
+  public LongValues getGlobalOrds(int segment) throws IOException {
+    SortedSetDocValues dv = getDocValues();
+    if (dv instanceof MultiSortedSetDocValues) {
+      return ((MultiSortedSetDocValues) dv).mapping.getGlobalOrds(segment);
+    } else {
+      return null;
+    }
+  }
 }
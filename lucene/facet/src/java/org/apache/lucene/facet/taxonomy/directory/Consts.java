@@ -24,6 +24,7 @@ import org.apache.lucene.util.BytesRef;
  */
 abstract class Consts {
   static final String FULL = "$full_path$";
+  static final String FIELD_PARENT_ORDINAL_NDV = "$parent_ndv$";
   static final String FIELD_PAYLOADS = "$payloads$";
   static final String PAYLOAD_PARENT = "p";
   static final BytesRef PAYLOAD_PARENT_BYTES_REF = new BytesRef(PAYLOAD_PARENT);
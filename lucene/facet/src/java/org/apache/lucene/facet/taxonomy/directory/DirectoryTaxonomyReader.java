@@ -10,11 +10,14 @@ import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.LRUHashMap;
 import org.apache.lucene.facet.taxonomy.ParallelTaxonomyArrays;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.CorruptIndexException; // javadocs
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.StoredDocument;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
@@ -312,8 +315,7 @@ public class DirectoryTaxonomyReader extends TaxonomyReader {
       }
     }
     
-    StoredDocument doc = indexReader.document(ordinal);
-    FacetLabel ret = new FacetLabel(FacetsConfig.stringToPath(doc.get(Consts.FULL)));
+    FacetLabel ret = new FacetLabel(FacetsConfig.stringToPath(readFullPath(ordinal)));
     synchronized (categoryCache) {
       categoryCache.put(catIDInteger, ret);
     }
@@ -321,6 +323,20 @@ public class DirectoryTaxonomyReader extends TaxonomyReader {
     return ret;
   }
 
+  // Reads the full path of a category from the doc values of its segment, or
+  // from its stored fields if it was indexed before paths were stored in doc
+  // values.
+  private String readFullPath(int ordinal) throws IOException {
+    LeafReaderContext leaf = indexReader.leaves().get(ReaderUtil.subIndex(ordinal, indexReader.leaves()));
+    int doc = ordinal - leaf.docBase;
+    BinaryDocValues fullPaths = leaf.reader().getBinaryDocValues(Consts.FULL);
+    if (fullPaths != null && leaf.reader().getDocsWithField(Consts.FULL).get(doc)) {
+      return fullPaths.get(doc).utf8ToString();
+    }
+    StoredDocument storedDoc = indexReader.document(ordinal);
+    return storedDoc.get(Consts.FULL);
+  }
+
   @Override
   public int getSize() {
     ensureOpen();
@@ -11,14 +11,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.document.TextField;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
@@ -100,9 +97,9 @@ public class DirectoryTaxonomyWriter implements TaxonomyWriter {
   // Records the taxonomy index epoch, updated on replaceTaxonomy as well.
   private long indexEpoch;
 
-  private SinglePositionTokenStream parentStream = new SinglePositionTokenStream(Consts.PAYLOAD_PARENT);
-  private Field parentStreamField;
   private Field fullPathField;
+  private Field fullPathDocValuesField;
+  private Field parentDocValuesField;
   private int cacheMissesUntilFill = 11;
   private boolean shouldFillCache = true;
   
@@ -190,10 +187,9 @@ public class DirectoryTaxonomyWriter implements TaxonomyWriter {
       ++indexEpoch;
     }
     
-    FieldType ft = new FieldType(TextField.TYPE_NOT_STORED);
-    ft.setOmitNorms(true);
-    parentStreamField = new Field(Consts.FIELD_PAYLOADS, parentStream, ft);
-    fullPathField = new StringField(Consts.FULL, "", Field.Store.YES);
+    fullPathField = new StringField(Consts.FULL, "", Field.Store.NO);
+    fullPathDocValuesField = new BinaryDocValuesField(Consts.FULL, new BytesRef());
+    parentDocValuesField = new NumericDocValuesField(Consts.FIELD_PARENT_ORDINAL_NDV, 0);
 
     nextID = indexWriter.maxDoc();
 
@@ -475,25 +471,25 @@ public class DirectoryTaxonomyWriter implements TaxonomyWriter {
    * this method is effectively synchronized as well.
    */
   private int addCategoryDocument(FacetLabel categoryPath, int parent) throws IOException {
-    // Before Lucene 2.9, position increments >=0 were supported, so we
-    // added 1 to parent to allow the parent -1 (the parent of the root).
-    // Unfortunately, starting with Lucene 2.9, after LUCENE-1542, this is
-    // no longer enough, since 0 is not encoded consistently either (see
-    // comment in SinglePositionTokenStream). But because we must be
-    // backward-compatible with existing indexes, we can't just fix what
-    // we write here (e.g., to write parent+2), and need to do a workaround
-    // in the reader (which knows that anyway only category 0 has a parent
-    // -1).    
-    parentStream.set(Math.max(parent + 1, 1));
+    // The parent is only stored in doc values, which the reader loads in
+    // bulk. Taxonomies written before kept it in the position of a payloads
+    // term, and their full paths in stored fields: the reader still reads
+    // them there for the categories that have no doc values.
     Document d = new Document();
-    d.add(parentStreamField);
+    parentDocValuesField.setLongValue(parent);
+    d.add(parentDocValuesField);
 
-    fullPathField.setStringValue(FacetsConfig.pathToString(categoryPath.components, categoryPath.length));
+    // The full path is indexed, to look up ordinals, but not stored: the
+    // reader reads it from doc values.
+    String fullPath = FacetsConfig.pathToString(categoryPath.components, categoryPath.length);
+    fullPathField.setStringValue(fullPath);
     d.add(fullPathField);
+    fullPathDocValuesField.setBytesValue(new BytesRef(fullPath));
+    d.add(fullPathDocValuesField);
 
     // Note that we do no pass an Analyzer here because the fields that are
-    // added to the Document are untokenized or contains their own TokenStream.
-    // Therefore the IndexWriter's Analyzer has no effect.
+    // added to the Document are untokenized. Therefore the IndexWriter's
+    // Analyzer has no effect.
     indexWriter.addDocument(d);
     int id = nextID++;
 
@@ -510,51 +506,6 @@ public class DirectoryTaxonomyWriter implements TaxonomyWriter {
     return id;
   }
 
-  private static class SinglePositionTokenStream extends TokenStream {
-    private CharTermAttribute termAtt;
-    private PositionIncrementAttribute posIncrAtt;
-    private boolean returned;
-    private int val;
-    private final String word;
-
-    public SinglePositionTokenStream(String word) {
-      termAtt = addAttribute(CharTermAttribute.class);
-      posIncrAtt = addAttribute(PositionIncrementAttribute.class);
-      this.word = word;
-      returned = true;
-    }
-
-    /**
-     * Set the value we want to keep, as the position increment.
-     * Note that when TermPositions.nextPosition() is later used to
-     * retrieve this value, val-1 will be returned, not val.
-     * <P>
-     * IMPORTANT NOTE: Before Lucene 2.9, val&gt;=0 were safe (for val==0,
-     * the retrieved position would be -1). But starting with Lucene 2.9,
-     * this unfortunately changed, and only val&gt;0 are safe. val=0 can
-     * still be used, but don't count on the value you retrieve later
-     * (it could be 0 or -1, depending on circumstances or versions).
-     * This change is described in Lucene's JIRA: LUCENE-1542. 
-     */
-    public void set(int val) {
-      this.val = val;
-      returned = false;
-    }
-
-    @Override
-    public boolean incrementToken() throws IOException {
-      if (returned) {
-        return false;
-      }
-      clearAttributes();
-      posIncrAtt.setPositionIncrement(val);
-      termAtt.setEmpty();
-      termAtt.append(word);
-      returned = true;
-      return true;
-    }
-  }
-
   private void addToCache(FacetLabel categoryPath, int id) throws IOException {
     if (cache.put(categoryPath, id)) {
       // If cache.put() returned true, it means the cache was limited in
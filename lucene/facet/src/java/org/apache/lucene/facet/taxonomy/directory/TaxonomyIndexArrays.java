@@ -3,11 +3,13 @@ package org.apache.lucene.facet.taxonomy.directory;
 import org.apache.lucene.facet.taxonomy.ParallelTaxonomyArrays;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiFields;
-import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
 
 import java.io.IOException;
 
@@ -30,12 +32,22 @@ import java.io.IOException;
 
 /**
  * A {@link ParallelTaxonomyArrays} that are initialized from the taxonomy
- * index.
+ * index. The parents are read from the doc values of the categories, which
+ * are stored per segment, or from their payloads for categories that were
+ * written before parents were stored in doc values.
+ * <p>
+ * The arrays live on the heap, since {@link ParallelTaxonomyArrays} exposes
+ * them as {@code int[]}. When a reader is reopened, the arrays of the
+ * previous reader are copied, and only the categories of new segments are
+ * read and linked to their parents.
  * 
  * @lucene.experimental
  */
 class TaxonomyIndexArrays extends ParallelTaxonomyArrays {
 
+  // number of parents that are read at once from doc values
+  private static final int BULK_SIZE = 1024;
+
   private final int[] parents;
 
   // the following two arrays are lazily initialized. note that we only keep a
@@ -125,37 +137,76 @@ class TaxonomyIndexArrays extends ParallelTaxonomyArrays {
     if (reader.maxDoc() == first) {
       return;
     }
-    
-    // it's ok to use MultiFields because we only iterate on one posting list.
-    // breaking it to loop over the leaves() only complicates code for no
-    // apparent gain.
-    PostingsEnum positions = MultiFields.getTermPositionsEnum(reader, null,
-        Consts.FIELD_PAYLOADS, Consts.PAYLOAD_PARENT_BYTES_REF,
-        PostingsEnum.PAYLOADS);
 
-    // shouldn't really happen, if it does, something's wrong
-    if (positions == null || positions.advance(first) == DocIdSetIterator.NO_MORE_DOCS) {
-      throw new CorruptIndexException("Missing parent data for category " + first, reader.toString());
+    for (LeafReaderContext leaf : reader.leaves()) {
+      final int leafMaxDoc = leaf.reader().maxDoc();
+      if (leaf.docBase + leafMaxDoc <= first) {
+        // the parents of this segment's categories are known already
+        continue;
+      }
+      final int leafFirst = Math.max(first - leaf.docBase, 0);
+      final NumericDocValues parentValues = leaf.reader().getNumericDocValues(Consts.FIELD_PARENT_ORDINAL_NDV);
+      final Bits docsWithParent = parentValues == null ? null : leaf.reader().getDocsWithField(Consts.FIELD_PARENT_ORDINAL_NDV);
+      // segments that were merged from older segments may miss some values
+      if (parentValues != null && hasAllValues(docsWithParent, leafFirst, leafMaxDoc)) {
+        initParents(parentValues, leaf.docBase, leafFirst, leafMaxDoc);
+      } else {
+        initParentsFromPayloads(leaf, leafFirst, parentValues, docsWithParent);
+      }
+    }
+  }
+
+  private static boolean hasAllValues(Bits docsWithField, int first, int maxDoc) {
+    if (docsWithField instanceof Bits.MatchAllBits) {
+      return true;
     }
-    
-    int num = reader.maxDoc();
+    for (int i = first; i < maxDoc; i++) {
+      if (docsWithField.get(i) == false) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void initParents(NumericDocValues parentValues, int docBase, int first, int maxDoc) {
+    final int[] docIDs = new int[Math.min(BULK_SIZE, maxDoc - first)];
+    final long[] values = new long[docIDs.length];
+    for (int start = first; start < maxDoc; start += docIDs.length) {
+      final int count = Math.min(docIDs.length, maxDoc - start);
+      for (int i = 0; i < count; i++) {
+        docIDs[i] = start + i;
+      }
+      parentValues.get(docIDs, values, count);
+      for (int i = 0; i < count; i++) {
+        parents[docBase + start + i] = (int) values[i];
+      }
+    }
+  }
+
+  // Read the parents of the new categories of a segment that was written, or
+  // merged from segments that were written, before parents were stored in doc
+  // values: the categories that have no parent doc values have a payloads term
+  private void initParentsFromPayloads(LeafReaderContext leaf, int first,
+      NumericDocValues parentValues, Bits docsWithParent) throws IOException {
+    PostingsEnum positions = leaf.reader().postings(new Term(Consts.FIELD_PAYLOADS, Consts.PAYLOAD_PARENT_BYTES_REF),
+        PostingsEnum.PAYLOADS);
+
+    int num = leaf.reader().maxDoc();
     for (int i = first; i < num; i++) {
-      if (positions.docID() == i) {
-        if (positions.freq() == 0) { // shouldn't happen
-          throw new CorruptIndexException("Missing parent data for category " + i, reader.toString());
-        }
-        
-        parents[i] = positions.nextPosition();
-        
-        if (positions.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
-          if (i + 1 < num) {
-            throw new CorruptIndexException("Missing parent data for category "+ (i + 1), reader.toString());
-          }
-          break;
-        }
-      } else { // this shouldn't happen
-        throw new CorruptIndexException("Missing parent data for category " + i, reader.toString());
+      if (docsWithParent != null && docsWithParent.get(i)) {
+        parents[leaf.docBase + i] = (int) parentValues.get(i);
+        continue;
+      }
+
+      if (positions != null && positions.docID() < i) {
+        positions.advance(i);
+      }
+      // shouldn't really happen, if it does, something's wrong
+      if (positions == null || positions.docID() != i || positions.freq() == 0) {
+        throw new CorruptIndexException("Missing parent data for category " + (leaf.docBase + i), leaf.reader().toString());
       }
+      
+      parents[leaf.docBase + i] = positions.nextPosition();
     }
   }
   
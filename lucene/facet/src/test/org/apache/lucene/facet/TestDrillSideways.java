@@ -20,18 +20,22 @@ package org.apache.lucene.facet;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.facet.DrillSideways.ConcurrentDrillSidewaysResult;
 import org.apache.lucene.facet.DrillSideways.DrillSidewaysResult;
 import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
@@ -48,17 +52,22 @@ import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
@@ -67,6 +76,7 @@ import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InPlaceMergeSorter;
 import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestDrillSideways extends FacetTestCase {
@@ -360,6 +370,100 @@ public class TestDrillSideways extends FacetTestCase {
     IOUtils.close(searcher.getIndexReader(), taxoReader, taxoWriter, dir, taxoDir);
   }
 
+  public void testFusedManyDimensions() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    FacetsConfig config = new FacetsConfig();
+    int numDims = TestUtil.nextInt(random(), 8, 15);
+    int numDocs = atLeast(500);
+    for(int i=0;i<numDocs;i++) {
+      Document doc = new Document();
+      doc.add(newStringField("content", random().nextBoolean() ? "a" : "b", Field.Store.NO));
+      for(int dim=0;dim<numDims;dim++) {
+        // most docs match most drill-downs, so that there are hits and near-misses
+        if (random().nextInt(10) != 0) {
+          doc.add(new SortedSetDocValuesFacetField("dim" + dim, random().nextInt(5) == 0 ? "y" : "x"));
+        }
+      }
+      writer.addDocument(config.build(doc));
+    }
+    IndexSearcher searcher = newSearcher(writer.getReader());
+    writer.close();
+    LRUQueryCache queryCache = new LRUQueryCache(1000, 1 << 20);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(searcher.getIndexReader());
+    DrillSideways ds = new DrillSideways(searcher, config, state);
+
+    DrillDownQuery ddq = new DrillDownQuery(config, new TermQuery(new Term("content", "a")));
+    for(int dim=0;dim<numDims;dim++) {
+      ddq.add("dim" + dim, "x");
+    }
+    Sort sort = Sort.INDEXORDER;
+    DrillSidewaysResult expected = ds.search(ddq, null, null, numDocs, sort, false, false);
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestDrillSideways"));
+    ConcurrentDrillSidewaysResult<TopFieldDocs> actual;
+    try {
+      actual = ds.search(ddq, newTopFieldCollectorManager(sort, numDocs), executor);
+    } finally {
+      TestUtil.shutdownExecutorService(executor);
+    }
+    assertEquals(expected.hits.totalHits, actual.collectorResult.totalHits);
+    assertEquals(expected.facets.getAllDims(10), actual.facets.getAllDims(10));
+
+    // the base query and the drill-downs are now cached
+    long hitCount = queryCache.getHitCount();
+    actual = ds.search(ddq, newTopFieldCollectorManager(sort, numDocs), null);
+    assertTrue(queryCache.getHitCount() > hitCount);
+    assertEquals(expected.hits.totalHits, actual.collectorResult.totalHits);
+    assertEquals(expected.facets.getAllDims(10), actual.facets.getAllDims(10));
+
+    // hits are not scored
+    try {
+      ds.search(ddq, newTopFieldCollectorManager(new Sort(SortField.FIELD_SCORE), 10), null);
+      fail("did not hit expected exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+
+    // exceptions of the tasks are rethrown as they are
+    executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestDrillSideways"));
+    try {
+      ds.search(ddq, new CollectorManager<Collector,Void>() {
+        @Override
+        public Collector newCollector() {
+          return new SimpleCollector() {
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) throws IOException {
+              throw new IOException("boom");
+            }
+
+            @Override
+            public void collect(int doc) {
+            }
+
+            @Override
+            public boolean needsScores() {
+              return false;
+            }
+          };
+        }
+
+        @Override
+        public Void reduce(Collection<Collector> collectors) {
+          return null;
+        }
+      }, executor);
+      fail("did not hit expected exception");
+    } catch (IOException ioe) {
+      assertEquals("boom", ioe.getMessage());
+    } finally {
+      TestUtil.shutdownExecutorService(executor);
+    }
+
+    IOUtils.close(searcher.getIndexReader(), dir);
+  }
+
   private static class Doc implements Comparable<Doc> {
     String id;
     String contentToken;
@@ -578,6 +682,8 @@ public class TestDrillSideways extends FacetTestCase {
     // NRT open
     TaxonomyReader tr = new DirectoryTaxonomyReader(tw);
 
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestDrillSideways"));
+
     int numIters = atLeast(10);
 
     for(int iter=0;iter<numIters;iter++) {
@@ -745,6 +851,17 @@ public class TestDrillSideways extends FacetTestCase {
       // Retrieve all facets:
       DrillSidewaysResult actual = ds.search(ddq, filter, null, numDocs, sort, true, true);
 
+      // The fused, concurrent search computes the same hits and counts:
+      ConcurrentDrillSidewaysResult<TopFieldDocs> fused = ds.search(filter == null ? ddq : new DrillDownQuery(config, filter, ddq),
+                                                                    newTopFieldCollectorManager(sort, numDocs),
+                                                                    random().nextBoolean() ? null : executor);
+      assertEquals(actual.hits.totalHits, fused.collectorResult.totalHits);
+      assertEquals(actual.hits.scoreDocs.length, fused.collectorResult.scoreDocs.length);
+      for(int i=0;i<actual.hits.scoreDocs.length;i++) {
+        assertEquals(actual.hits.scoreDocs[i].doc, fused.collectorResult.scoreDocs[i].doc);
+      }
+      assertEquals(actual.facets.getAllDims(10), fused.facets.getAllDims(10));
+
       TopDocs hits = s.search(baseQuery, numDocs);
       Map<String,Float> scores = new HashMap<>();
       for(ScoreDoc sd : hits.scoreDocs) {
@@ -772,9 +889,29 @@ public class TestDrillSideways extends FacetTestCase {
     }
 
     w.close();
+    TestUtil.shutdownExecutorService(executor);
     IOUtils.close(r, tr, tw, d, td);
   }
 
+  private static CollectorManager<TopFieldCollector,TopFieldDocs> newTopFieldCollectorManager(final Sort sort, final int numHits) {
+    return new CollectorManager<TopFieldCollector,TopFieldDocs>() {
+      @Override
+      public TopFieldCollector newCollector() throws IOException {
+        return TopFieldCollector.create(sort, numHits, null, true, false, false);
+      }
+
+      @Override
+      public TopFieldDocs reduce(Collection<TopFieldCollector> collectors) throws IOException {
+        TopFieldDocs[] topDocs = new TopFieldDocs[collectors.size()];
+        int i = 0;
+        for (TopFieldCollector collector : collectors) {
+          topDocs[i++] = collector.topDocs();
+        }
+        return TopDocs.merge(sort, numHits, topDocs);
+      }
+    };
+  }
+
   private static class Counters {
     int[][] counts;
 
@@ -17,11 +17,15 @@ package org.apache.lucene.facet.sortedset;
  * limitations under the License.
  */
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.facet.DrillDownQuery;
@@ -29,18 +33,27 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.FacetTestCase;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.facet.FacetsCollectorManager;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.SlowCompositeReaderWrapper;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestSortedSetDocValuesFacets extends FacetTestCase {
@@ -352,4 +365,153 @@ public class TestSortedSetDocValuesFacets extends FacetTestCase {
     w.close();
     IOUtils.close(searcher.getIndexReader(), indexDir, taxoDir);
   }
+
+  public void testReopenWithPreviousState() throws Exception {
+    String[] tokens = getRandomTokens(10);
+    Directory dir = newDirectory();
+    // segments are never merged, so reopened readers always share segments with the previous reader
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())).setMergePolicy(NoMergePolicy.INSTANCE));
+    FacetsConfig config = new FacetsConfig();
+    int numDims = TestUtil.nextInt(random(), 1, 7);
+
+    DirectoryReader r = null;
+    DefaultSortedSetDocValuesReaderState state = null;
+    int id = 0;
+    int iters = atLeast(10);
+    for(int iter=0;iter<iters;iter++) {
+      for(TestDoc testDoc : getRandomDocs(tokens, TestUtil.nextInt(random(), 1, 100), numDims)) {
+        Document doc = new Document();
+        doc.add(newStringField("id", Integer.toString(id++), Field.Store.NO));
+        for(int j=0;j<numDims;j++) {
+          if (testDoc.dims[j] != null) {
+            doc.add(new SortedSetDocValuesFacetField("dim" + j, testDoc.dims[j]));
+          }
+        }
+        w.addDocument(config.build(doc));
+      }
+      if (random().nextBoolean()) {
+        w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(id))));
+      }
+
+      DirectoryReader newReader = r == null ? DirectoryReader.open(w, true) : DirectoryReader.openIfChanged(r);
+      if (newReader == null) {
+        continue;
+      }
+      DefaultSortedSetDocValuesReaderState newState;
+      if (state == null) {
+        newState = new DefaultSortedSetDocValuesReaderState(newReader);
+      } else {
+        newState = new DefaultSortedSetDocValuesReaderState(newReader, state);
+        assertTrue(newState.reusedSegmentCount > 0);
+        r.close();
+      }
+      r = newReader;
+      state = newState;
+
+      SortedSetDocValuesReaderState expectedState = new DefaultSortedSetDocValuesReaderState(r);
+      assertEquals(expectedState.getSize(), state.getSize());
+      assertEquals(expectedState.getPrefixToOrdRange().keySet(), state.getPrefixToOrdRange().keySet());
+      for(String dim : expectedState.getPrefixToOrdRange().keySet()) {
+        assertEquals(expectedState.getOrdRange(dim).start, state.getOrdRange(dim).start);
+        assertEquals(expectedState.getOrdRange(dim).end, state.getOrdRange(dim).end);
+      }
+
+      IndexSearcher searcher = newSearcher(r, false);
+      FacetsCollector fc = new FacetsCollector();
+      searcher.search(new MatchAllDocsQuery(), fc);
+      assertEquals(new SortedSetDocValuesFacetCounts(expectedState, fc).getAllDims(10),
+                   new SortedSetDocValuesFacetCounts(state, fc).getAllDims(10));
+    }
+
+    w.close();
+    IOUtils.close(r, dir);
+  }
+
+  public void testConcurrentCounting() throws Exception {
+    String[] tokens = getRandomTokens(10);
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    FacetsConfig config = new FacetsConfig();
+    int numDims = TestUtil.nextInt(random(), 1, 7);
+    for(TestDoc testDoc : getRandomDocs(tokens, atLeast(500), numDims)) {
+      Document doc = new Document();
+      doc.add(newStringField("content", testDoc.content, Field.Store.NO));
+      for(int j=0;j<numDims;j++) {
+        if (testDoc.dims[j] != null) {
+          doc.add(new SortedSetDocValuesFacetField("dim" + j, testDoc.dims[j]));
+        }
+      }
+      w.addDocument(config.build(doc));
+      if (random().nextInt(50) == 0) {
+        w.commit();
+      }
+    }
+    IndexReader r = w.getReader();
+    w.close();
+
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestSortedSetDocValuesFacets"));
+    try {
+      IndexSearcher searcher = new IndexSearcher(r, executor);
+      SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(r);
+      int iters = atLeast(20);
+      for(int iter=0;iter<iters;iter++) {
+        TermQuery query = new TermQuery(new Term("content", tokens[random().nextInt(tokens.length)]));
+        FacetsCollector fc = new FacetsCollector();
+        searcher.search(query, fc);
+        FacetsCollector concurrentFc = searcher.search(query, new FacetsCollectorManager());
+        assertEquals(new SortedSetDocValuesFacetCounts(state, fc).getAllDims(10),
+                     new SortedSetDocValuesFacetCounts(state, concurrentFc, executor).getAllDims(10));
+      }
+    } finally {
+      TestUtil.shutdownExecutorService(executor);
+    }
+
+    IOUtils.close(r, dir);
+  }
+
+  public void testConcurrentCountingException() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    FacetsConfig config = new FacetsConfig();
+    Document doc = new Document();
+    doc.add(new SortedSetDocValuesFacetField("a", "foo"));
+    w.addDocument(config.build(doc));
+    IndexReader r = w.getReader();
+    w.close();
+
+    SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(r);
+    final List<MatchingDocs> matchingDocs = new ArrayList<>();
+    for (LeafReaderContext context : r.leaves()) {
+      matchingDocs.add(new MatchingDocs(context, new DocIdSet() {
+        @Override
+        public DocIdSetIterator iterator() throws IOException {
+          throw new IOException("boom");
+        }
+
+        @Override
+        public long ramBytesUsed() {
+          return 0;
+        }
+      }, 1, null));
+    }
+    FacetsCollector fc = new FacetsCollector() {
+      @Override
+      public List<MatchingDocs> getMatchingDocs() {
+        return matchingDocs;
+      }
+    };
+
+    // the exception of the counting task is rethrown as it is
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestSortedSetDocValuesFacets"));
+    try {
+      new SortedSetDocValuesFacetCounts(state, fc, executor);
+      fail("did not hit expected exception");
+    } catch (IOException ioe) {
+      assertEquals("boom", ioe.getMessage());
+    } finally {
+      TestUtil.shutdownExecutorService(executor);
+    }
+
+    IOUtils.close(r, dir);
+  }
 }
@@ -6,17 +6,28 @@ import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
 
+import org.apache.lucene.analysis.CannedTokenStream;
 import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.facet.FacetTestCase;
+import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader.ChildrenIterator;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.index.LogMergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
@@ -250,6 +261,118 @@ public class TestDirectoryTaxonomyReader extends FacetTestCase {
     dir.close();
   }
   
+  @Test
+  public void testParentsAndPathsFromDocValues() throws Exception {
+    // the parents and paths of the categories are read from doc values, and
+    // only the new categories are read on openIfChanged()
+    Directory dir = newDirectory();
+    
+    DirectoryTaxonomyWriter writer = new DirectoryTaxonomyWriter(dir) {
+      @Override
+      protected IndexWriterConfig createIndexWriterConfig(OpenMode openMode) {
+        IndexWriterConfig conf = super.createIndexWriterConfig(openMode);
+        LogMergePolicy lmp = (LogMergePolicy) conf.getMergePolicy();
+        lmp.setMergeFactor(2);
+        return conf;
+      }
+    };
+    DirectoryTaxonomyReader reader = new DirectoryTaxonomyReader(writer);
+    
+    int numRounds = atLeast(10);
+    for (int i = 0; i < numRounds; i++) {
+      int numCats = random().nextInt(20) + 1;
+      for (int j = 0; j < numCats; j++) {
+        writer.addCategory(new FacetLabel(Integer.toString(random().nextInt(5)), Integer.toString(i), Integer.toString(j)));
+      }
+      DirectoryTaxonomyReader newtr = TaxonomyReader.openIfChanged(reader);
+      assertNotNull(newtr);
+      reader.close();
+      reader = newtr;
+      
+      int size = reader.getSize();
+      DirectoryTaxonomyReader fresh = new DirectoryTaxonomyReader(writer);
+      assertEquals(size, fresh.getSize());
+      int[] parents = reader.getParallelTaxonomyArrays().parents();
+      assertTrue(Arrays.equals(fresh.getParallelTaxonomyArrays().parents(), parents));
+      assertTrue(Arrays.equals(fresh.getParallelTaxonomyArrays().children(), reader.getParallelTaxonomyArrays().children()));
+      assertTrue(Arrays.equals(fresh.getParallelTaxonomyArrays().siblings(), reader.getParallelTaxonomyArrays().siblings()));
+      assertEquals(TaxonomyReader.INVALID_ORDINAL, parents[TaxonomyReader.ROOT_ORDINAL]);
+      for (int ord = 1; ord < size; ord++) {
+        FacetLabel path = fresh.getPath(ord);
+        assertEquals(path, reader.getPath(ord));
+        assertEquals(ord, reader.getOrdinal(path));
+        assertEquals(reader.getOrdinal(path.subpath(path.length - 1)), parents[ord]);
+      }
+      fresh.close();
+    }
+    
+    reader.close();
+    writer.close();
+    dir.close();
+  }
+  
+  @Test
+  public void testCategoriesWithoutDocValues() throws Exception {
+    // taxonomies that were written before parents and paths were stored in
+    // doc values keep them in payloads and stored fields, also once their
+    // segments are merged with new ones
+    Directory dir = newDirectory();
+    FacetLabel[] oldLabels = new FacetLabel[] {
+        new FacetLabel(), new FacetLabel("a"), new FacetLabel("a", "b"), new FacetLabel("c") };
+    int[] oldParents = new int[] { TaxonomyReader.INVALID_ORDINAL, 0, 1, 0 };
+    IndexWriter iw = new IndexWriter(dir, newIndexWriterConfig(null).setMergePolicy(NoMergePolicy.INSTANCE));
+    FieldType ft = new FieldType(TextField.TYPE_NOT_STORED);
+    ft.setOmitNorms(true);
+    for (int i = 0; i < oldLabels.length; i++) {
+      // the parent was the position of the payloads term, plus one
+      Token token = new Token(Consts.PAYLOAD_PARENT, 0, 0);
+      token.setPositionIncrement(Math.max(oldParents[i] + 1, 1));
+      Document doc = new Document();
+      doc.add(new Field(Consts.FIELD_PAYLOADS, new CannedTokenStream(token), ft));
+      doc.add(new StringField(Consts.FULL, FacetsConfig.pathToString(oldLabels[i].components, oldLabels[i].length), Field.Store.YES));
+      iw.addDocument(doc);
+    }
+    iw.close();
+    
+    DirectoryTaxonomyWriter writer = new DirectoryTaxonomyWriter(dir);
+    assertEquals(4, writer.addCategory(new FacetLabel("a", "d")));
+    assertEquals(6, writer.addCategory(new FacetLabel("e", "f")));
+    writer.close();
+    
+    FacetLabel[] labels = new FacetLabel[] {
+        new FacetLabel(), new FacetLabel("a"), new FacetLabel("a", "b"), new FacetLabel("c"),
+        new FacetLabel("a", "d"), new FacetLabel("e"), new FacetLabel("e", "f") };
+    int[] parents = new int[] { TaxonomyReader.INVALID_ORDINAL, 0, 1, 0, 1, 0, 5 };
+    
+    // new categories have neither payloads nor stored paths
+    DirectoryReader indexReader = DirectoryReader.open(dir);
+    assertEquals(oldLabels.length, indexReader.docFreq(new Term(Consts.FIELD_PAYLOADS, Consts.PAYLOAD_PARENT_BYTES_REF)));
+    for (int ord = oldLabels.length; ord < labels.length; ord++) {
+      assertNull(indexReader.document(ord).get(Consts.FULL));
+    }
+    indexReader.close();
+    assertCategories(dir, labels, parents);
+    
+    // a segment merged from old and new segments, in order
+    iw = new IndexWriter(dir, newIndexWriterConfig(null).setMergePolicy(new LogByteSizeMergePolicy()));
+    iw.forceMerge(1);
+    iw.close();
+    assertCategories(dir, labels, parents);
+    
+    dir.close();
+  }
+  
+  private static void assertCategories(Directory dir, FacetLabel[] labels, int[] parents) throws IOException {
+    DirectoryTaxonomyReader reader = new DirectoryTaxonomyReader(dir);
+    assertEquals(labels.length, reader.getSize());
+    assertTrue(Arrays.equals(parents, reader.getParallelTaxonomyArrays().parents()));
+    for (int ord = 0; ord < labels.length; ord++) {
+      assertEquals(labels[ord], reader.getPath(ord));
+      assertEquals(ord, reader.getOrdinal(labels[ord]));
+    }
+    reader.close();
+  }
+  
   @Test
   public void testOpenIfChangedMergedSegment() throws Exception {
     // test openIfChanged() when all index segments were merged - used to be
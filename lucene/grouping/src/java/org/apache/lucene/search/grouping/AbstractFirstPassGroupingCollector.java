@@ -41,7 +41,11 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
   private final int[] reversed;
   private final int topNGroups;
   private final HashMap<GROUP_VALUE_TYPE, CollectedSearchGroup<GROUP_VALUE_TYPE>> groupMap;
+  // all collected groups, at most topNGroups: groups that fall out of the top N are reused
+  private final List<CollectedSearchGroup<GROUP_VALUE_TYPE>> groups;
   private final int compIDXEnd;
+  // group value of the doc passed to the last getCollectedGroup call
+  private GROUP_VALUE_TYPE docGroupValue;
 
   // Set once we reach topNGroups unique groups:
   /** @lucene.internal */
@@ -87,6 +91,7 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
 
     spareSlot = topNGroups;
     groupMap = new HashMap<>(topNGroups);
+    groups = new ArrayList<>(topNGroups);
   }
 
   /**
@@ -100,13 +105,13 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
    */
   public Collection<SearchGroup<GROUP_VALUE_TYPE>> getTopGroups(int groupOffset, boolean fillFields) {
 
-    //System.out.println("FP.getTopGroups groupOffset=" + groupOffset + " fillFields=" + fillFields + " groupMap.size()=" + groupMap.size());
+    //System.out.println("FP.getTopGroups groupOffset=" + groupOffset + " fillFields=" + fillFields + " groups.size()=" + groups.size());
 
     if (groupOffset < 0) {
       throw new IllegalArgumentException("groupOffset must be >= 0 (got " + groupOffset + ")");
     }
 
-    if (groupMap.size() <= groupOffset) {
+    if (groups.size() <= groupOffset) {
       return null;
     }
 
@@ -177,9 +182,7 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
     // TODO: should we add option to mean "ignore docs that
     // don't have the group field" (instead of stuffing them
     // under null group)?
-    final GROUP_VALUE_TYPE groupValue = getDocGroupValue(doc);
-
-    final CollectedSearchGroup<GROUP_VALUE_TYPE> group = groupMap.get(groupValue);
+    final CollectedSearchGroup<GROUP_VALUE_TYPE> group = getCollectedGroup(doc);
 
     if (group == null) {
 
@@ -187,7 +190,7 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
       // it before but it fell out of the top N and is now
       // coming back
 
-      if (groupMap.size() < topNGroups) {
+      if (groups.size() < topNGroups) {
 
         // Still in startup transient: we have not
         // seen enough unique groups to start pruning them;
@@ -195,15 +198,16 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
 
         // Add a new CollectedSearchGroup:
         CollectedSearchGroup<GROUP_VALUE_TYPE> sg = new CollectedSearchGroup<>();
-        sg.groupValue = copyDocGroupValue(groupValue, null);
-        sg.comparatorSlot = groupMap.size();
+        sg.groupValue = copyCollectedGroupValue(doc, null);
+        sg.comparatorSlot = groups.size();
         sg.topDoc = docBase + doc;
         for (LeafFieldComparator fc : leafComparators) {
           fc.copy(sg.comparatorSlot, doc);
         }
-        groupMap.put(sg.groupValue, sg);
+        groups.add(sg);
+        groupAdded(sg);
 
-        if (groupMap.size() == topNGroups) {
+        if (groups.size() == topNGroups) {
           // End of startup transient: we now have max
           // number of groups; from here on we will drop
           // bottom group when we insert new one:
@@ -218,17 +222,17 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
       final CollectedSearchGroup<GROUP_VALUE_TYPE> bottomGroup = orderedGroups.pollLast();
       assert orderedGroups.size() == topNGroups -1;
 
-      groupMap.remove(bottomGroup.groupValue);
+      groupRemoved(bottomGroup);
 
       // reuse the removed CollectedSearchGroup
-      bottomGroup.groupValue = copyDocGroupValue(groupValue, bottomGroup.groupValue);
+      bottomGroup.groupValue = copyCollectedGroupValue(doc, bottomGroup.groupValue);
       bottomGroup.topDoc = docBase + doc;
 
       for (LeafFieldComparator fc : leafComparators) {
         fc.copy(bottomGroup.comparatorSlot, doc);
       }
 
-      groupMap.put(bottomGroup.groupValue, bottomGroup);
+      groupAdded(bottomGroup);
       orderedGroups.add(bottomGroup);
       assert orderedGroups.size() == topNGroups;
 
@@ -312,7 +316,7 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
     };
 
     orderedGroups = new TreeSet<>(comparator);
-    orderedGroups.addAll(groupMap.values());
+    orderedGroups.addAll(groups);
     assert orderedGroups.size() > 0;
 
     for (LeafFieldComparator fc : leafComparators) {
@@ -328,6 +332,57 @@ abstract public class AbstractFirstPassGroupingCollector<GROUP_VALUE_TYPE> exten
     }
   }
 
+  /**
+   * Returns the collected group of the specified doc, or null if the group of
+   * this doc is not one of the collected groups. By default, the
+   * {@link #getDocGroupValue group value} of the doc is looked up in a hash
+   * map. Subclasses that can find the group of a doc without computing its
+   * group value may override this method along with
+   * {@link #copyCollectedGroupValue}, {@link #groupAdded} and
+   * {@link #groupRemoved}.
+   *
+   * @param doc The specified doc
+   * @return the collected group of the specified doc, or null
+   */
+  protected CollectedSearchGroup<GROUP_VALUE_TYPE> getCollectedGroup(int doc) throws IOException {
+    docGroupValue = getDocGroupValue(doc);
+    return groupMap.get(docGroupValue);
+  }
+
+  /**
+   * Returns a copy of the group value of the doc that was last passed to
+   * {@link #getCollectedGroup}, for a new group of this doc. By default,
+   * this copies the group value that {@link #getCollectedGroup} computed with
+   * {@link #copyDocGroupValue}.
+   *
+   * @param doc The specified doc
+   * @param reuse Optionally a reuse instance to prevent a new instance creation
+   * @return a copy of the group value of the specified doc
+   */
+  protected GROUP_VALUE_TYPE copyCollectedGroupValue(int doc, GROUP_VALUE_TYPE reuse) {
+    return copyDocGroupValue(docGroupValue, reuse);
+  }
+
+  /**
+   * Called when a group becomes one of the collected groups, after its
+   * group value was set.
+   *
+   * @param group The collected group
+   */
+  protected void groupAdded(CollectedSearchGroup<GROUP_VALUE_TYPE> group) {
+    groupMap.put(group.groupValue, group);
+  }
+
+  /**
+   * Called when a group falls out of the collected groups, before its
+   * {@link CollectedSearchGroup} is reused for another group.
+   *
+   * @param group The removed group
+   */
+  protected void groupRemoved(CollectedSearchGroup<GROUP_VALUE_TYPE> group) {
+    groupMap.remove(group.groupValue);
+  }
+
   /**
    * Returns the group value for the specified doc.
    *
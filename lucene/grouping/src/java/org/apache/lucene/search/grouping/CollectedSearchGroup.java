@@ -24,6 +24,7 @@ import org.apache.lucene.search.FieldComparator; // javadocs
  * tracking the top doc and {@link FieldComparator} slot.
  * @lucene.internal */
 public class CollectedSearchGroup<T> extends SearchGroup<T> {
-  int topDoc;
+  /** The top-level doc ID of the top document of this group. */
+  public int topDoc;
   int comparatorSlot;
 }
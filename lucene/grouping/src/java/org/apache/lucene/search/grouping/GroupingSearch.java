@@ -17,6 +17,7 @@ package org.apache.lucene.search.grouping;
  * limitations under the License.
  */
 
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.search.CachingCollector;
 import org.apache.lucene.search.Collector;
@@ -33,6 +34,8 @@ import org.apache.lucene.search.grouping.function.FunctionSecondPassGroupingColl
 import org.apache.lucene.search.grouping.term.TermAllGroupHeadsCollector;
 import org.apache.lucene.search.grouping.term.TermAllGroupsCollector;
 import org.apache.lucene.search.grouping.term.TermFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermGlobalOrdinalsFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermGlobalOrdinalsSecondPassGroupingCollector;
 import org.apache.lucene.search.grouping.term.TermSecondPassGroupingCollector;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
@@ -72,6 +75,7 @@ public class GroupingSearch {
   private boolean allGroups;
   private boolean allGroupHeads;
   private int initialSize = 128;
+  private boolean useGlobalOrdinals;
 
   private Collection<?> matchingGroups;
   private Bits matchingGroupHeads;
@@ -141,6 +145,12 @@ public class GroupingSearch {
     final AbstractFirstPassGroupingCollector firstPassCollector;
     final AbstractAllGroupsCollector allGroupsCollector;
     final AbstractAllGroupHeadsCollector allGroupHeadsCollector;
+    final SortedDocValues globalValues;
+    if (groupFunction == null && useGlobalOrdinals) {
+      globalValues = TermGlobalOrdinalsFirstPassGroupingCollector.getGlobalValues(searcher.getIndexReader(), groupField);
+    } else {
+      globalValues = null;
+    }
     if (groupFunction != null) {
       firstPassCollector = new FunctionFirstPassGroupingCollector(groupFunction, valueSourceContext, groupSort, topN);
       if (allGroups) {
@@ -154,7 +164,11 @@ public class GroupingSearch {
         allGroupHeadsCollector = null;
       }
     } else {
-      firstPassCollector = new TermFirstPassGroupingCollector(groupField, groupSort, topN);
+      if (globalValues != null) {
+        firstPassCollector = new TermGlobalOrdinalsFirstPassGroupingCollector(groupField, globalValues, groupSort, topN);
+      } else {
+        firstPassCollector = new TermFirstPassGroupingCollector(groupField, groupSort, topN);
+      }
       if (allGroups) {
         allGroupsCollector = new TermAllGroupsCollector(groupField, initialSize);
       } else {
@@ -205,6 +219,16 @@ public class GroupingSearch {
       matchingGroupHeads = new Bits.MatchNoBits(searcher.getIndexReader().maxDoc());
     }
 
+    if (globalValues != null && groupDocsOffset == 0 && groupDocsLimit == 1 && groupSort.equals(sortWithinGroup)
+        && includeScores == false && includeMaxScore == false && fillSortFields) {
+      // the top doc of each group is known from the first pass
+      TopGroups topGroups = ((TermGlobalOrdinalsFirstPassGroupingCollector) firstPassCollector).getTopGroupsWithTopDoc(groupOffset);
+      if (topGroups == null) {
+        return new TopGroups(new SortField[0], new SortField[0], 0, 0, new GroupDocs[0], Float.NaN);
+      }
+      return allGroups ? new TopGroups(topGroups, matchingGroups.size()) : topGroups;
+    }
+
     Collection<SearchGroup> topSearchGroups = firstPassCollector.getTopGroups(groupOffset, fillSortFields);
     if (topSearchGroups == null) {
       return new TopGroups(new SortField[0], new SortField[0], 0, 0, new GroupDocs[0], Float.NaN);
@@ -214,6 +238,8 @@ public class GroupingSearch {
     AbstractSecondPassGroupingCollector secondPassCollector;
     if (groupFunction != null) {
       secondPassCollector = new FunctionSecondPassGroupingCollector((Collection) topSearchGroups, groupSort, sortWithinGroup, topNInsideGroup, includeScores, includeMaxScore, fillSortFields, groupFunction, valueSourceContext);
+    } else if (globalValues != null) {
+      secondPassCollector = new TermGlobalOrdinalsSecondPassGroupingCollector(groupField, globalValues, (Collection) topSearchGroups, groupSort, sortWithinGroup, topNInsideGroup, includeScores, includeMaxScore, fillSortFields);
     } else {
       secondPassCollector = new TermSecondPassGroupingCollector(groupField, (Collection) topSearchGroups, groupSort, sortWithinGroup, topNInsideGroup, includeScores, includeMaxScore, fillSortFields);
     }
@@ -224,10 +250,16 @@ public class GroupingSearch {
       searcher.search(query, secondPassCollector);
     }
 
+    TopGroups topGroups;
+    if (globalValues != null) {
+      topGroups = ((TermGlobalOrdinalsSecondPassGroupingCollector) secondPassCollector).getTermTopGroups(groupDocsOffset);
+    } else {
+      topGroups = secondPassCollector.getTopGroups(groupDocsOffset);
+    }
     if (allGroups) {
-      return new TopGroups(secondPassCollector.getTopGroups(groupDocsOffset), matchingGroups.size());
+      return new TopGroups(topGroups, matchingGroups.size());
     } else {
-      return secondPassCollector.getTopGroups(groupDocsOffset);
+      return topGroups;
     }
   }
 
@@ -426,4 +458,22 @@ public class GroupingSearch {
     this.initialSize = initialSize;
     return this;
   }
+
+  /**
+   * Whether to identify groups by the global ordinals of the values of the group field, instead of by their terms,
+   * when grouping by field. This avoids looking up terms while collecting, at the cost of loading the global ordinals
+   * of the searched reader. When the documents of each group are sorted like the groups, only the top document of
+   * each group is returned, without offset, and neither scores nor max scores are included but sort fields are
+   * filled, the grouped result is computed in a single pass.
+   * <p>
+   * Defaults to <code>false</code>.
+   *
+   * @param useGlobalOrdinals Whether to identify groups by global ordinals
+   * @return <code>this</code>
+   * @see TermGlobalOrdinalsFirstPassGroupingCollector
+   */
+  public GroupingSearch setUseGlobalOrdinals(boolean useGlobalOrdinals) {
+    this.useGlobalOrdinals = useGlobalOrdinals;
+    return this;
+  }
 }
@@ -0,0 +1,304 @@
+package org.apache.lucene.search.grouping.term;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.grouping.AbstractFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.CollectedSearchGroup;
+import org.apache.lucene.search.grouping.GroupDocs;
+import org.apache.lucene.search.grouping.SearchGroup;
+import org.apache.lucene.search.grouping.TopGroups;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+
+/**
+ * Concrete implementation of {@link org.apache.lucene.search.grouping.AbstractFirstPassGroupingCollector} that groups based on
+ * field values and more specifically uses {@link org.apache.lucene.index.SortedDocValues}
+ * to collect groups, like {@link TermFirstPassGroupingCollector}, but identifies groups by their global ordinal (see
+ * {@link org.apache.lucene.index.MultiDocValues.OrdinalMap}) instead of their term. Documents are assigned to groups
+ * and groups are compared without looking up any term, and terms are only looked up for the top groups by
+ * {@link #getTermTopGroups(int, boolean)}. The top groups can be passed to a
+ * {@link TermGlobalOrdinalsSecondPassGroupingCollector}.
+ * <p>
+ * This collector also counts the hits of every group, so that when only the top document of each group is needed,
+ * sorted like the groups, {@link #getTopGroupsWithTopDoc(int)} returns the grouped result without a second pass.
+ * <p>
+ * The global ordinals must be those of the top-level reader that is searched, see
+ * {@link #getGlobalValues(IndexReader, String)}.
+ *
+ * @lucene.experimental
+ */
+public class TermGlobalOrdinalsFirstPassGroupingCollector extends AbstractFirstPassGroupingCollector<Long> {
+
+  // hits per group are counted in blocks of ords, which are allocated when a group of the block gets its first hit
+  private static final int BLOCK_SHIFT = 12;
+  private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+  private final String groupField;
+  private final SortedDocValues globalValues;
+  private final MultiDocValues.OrdinalMap ordinalMap;
+  private final Sort groupSort;
+  private final int[][] groupCounts;
+  private int nullGroupCount;
+  // the collected groups, indexed by global ord like the hit counts
+  private final CollectedSearchGroup<Long>[][] collectedGroups;
+  private CollectedSearchGroup<Long> nullGroup;
+  private int totalHitCount;
+
+  private SortedDocValues index;
+  private LongValues segmentToGlobalOrds;
+  // global ord of the doc that is being collected, -1 for the null group
+  private int docGlobalOrd;
+
+  /**
+   * Returns the values of the given field of a top-level reader, which give access to the global ordinals of its
+   * terms, to pass to the global ordinals grouping collectors. The values are only valid for this reader.
+   */
+  public static SortedDocValues getGlobalValues(IndexReader reader, String groupField) throws IOException {
+    final SortedDocValues values = MultiDocValues.getSortedValues(reader, groupField);
+    return values == null ? DocValues.emptySorted() : values;
+  }
+
+  /**
+   * Create the first pass collector.
+   *
+   *  @param groupField The field used to group
+   *    documents. This field must be single-valued and
+   *    indexed (DocValues is used to access its value
+   *    per-document).
+   *  @param globalValues The values of the group field
+   *    of the top-level reader that is searched, see
+   *    {@link #getGlobalValues(IndexReader, String)}.
+   *  @param groupSort The {@link Sort} used to sort the
+   *    groups.  The top sorted document within each group
+   *    according to groupSort, determines how that group
+   *    sorts against other groups.  This must be non-null,
+   *    ie, if you want to groupSort by relevance use
+   *    Sort.RELEVANCE.
+   *  @param topNGroups How many top groups to keep.
+   *  @throws IOException When I/O related errors occur
+   */
+  public TermGlobalOrdinalsFirstPassGroupingCollector(String groupField, SortedDocValues globalValues, Sort groupSort,
+                                                      int topNGroups) throws IOException {
+    super(groupSort, topNGroups);
+    this.groupField = groupField;
+    this.globalValues = globalValues;
+    this.ordinalMap = getOrdinalMap(globalValues);
+    this.groupSort = groupSort;
+    this.groupCounts = new int[(globalValues.getValueCount() + BLOCK_MASK) >>> BLOCK_SHIFT][];
+    @SuppressWarnings({"unchecked","rawtypes"})
+    final CollectedSearchGroup<Long>[][] collectedGroups = new CollectedSearchGroup[groupCounts.length][];
+    this.collectedGroups = collectedGroups;
+  }
+
+  /** Returns the ordinal map of the given top-level values, or null if segment ords are global ords. */
+  static MultiDocValues.OrdinalMap getOrdinalMap(SortedDocValues globalValues) {
+    if (globalValues instanceof MultiDocValues.MultiSortedDocValues) {
+      return ((MultiDocValues.MultiSortedDocValues) globalValues).mapping;
+    } else {
+      return null;
+    }
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    final int segmentOrd = index.getOrd(doc);
+    if (segmentOrd == -1) {
+      docGlobalOrd = -1;
+      nullGroupCount++;
+    } else {
+      docGlobalOrd = segmentToGlobalOrds == null ? segmentOrd : (int) segmentToGlobalOrds.get(segmentOrd);
+      int[] counts = groupCounts[docGlobalOrd >>> BLOCK_SHIFT];
+      if (counts == null) {
+        counts = groupCounts[docGlobalOrd >>> BLOCK_SHIFT] = new int[1 << BLOCK_SHIFT];
+      }
+      counts[docGlobalOrd & BLOCK_MASK]++;
+    }
+    totalHitCount++;
+    super.collect(doc);
+  }
+
+  @Override
+  protected CollectedSearchGroup<Long> getCollectedGroup(int doc) {
+    // docGlobalOrd is computed by collect
+    if (docGlobalOrd == -1) {
+      return nullGroup;
+    }
+    final CollectedSearchGroup<Long>[] groups = collectedGroups[docGlobalOrd >>> BLOCK_SHIFT];
+    return groups == null ? null : groups[docGlobalOrd & BLOCK_MASK];
+  }
+
+  @Override
+  protected Long copyCollectedGroupValue(int doc, Long reuse) {
+    // only called when a group enters the top groups, so the ord is boxed once per group rather than once per hit
+    return getDocGroupValue(doc);
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked","rawtypes"})
+  protected void groupAdded(CollectedSearchGroup<Long> group) {
+    if (group.groupValue == null) {
+      nullGroup = group;
+    } else {
+      final int ord = group.groupValue.intValue();
+      CollectedSearchGroup<Long>[] groups = collectedGroups[ord >>> BLOCK_SHIFT];
+      if (groups == null) {
+        groups = collectedGroups[ord >>> BLOCK_SHIFT] = new CollectedSearchGroup[1 << BLOCK_SHIFT];
+      }
+      groups[ord & BLOCK_MASK] = group;
+    }
+  }
+
+  @Override
+  protected void groupRemoved(CollectedSearchGroup<Long> group) {
+    if (group.groupValue == null) {
+      nullGroup = null;
+    } else {
+      final int ord = group.groupValue.intValue();
+      collectedGroups[ord >>> BLOCK_SHIFT][ord & BLOCK_MASK] = null;
+    }
+  }
+
+  @Override
+  protected Long getDocGroupValue(int doc) {
+    // computed by collect
+    return docGlobalOrd == -1 ? null : Long.valueOf(docGlobalOrd);
+  }
+
+  @Override
+  protected Long copyDocGroupValue(Long groupValue, Long reuse) {
+    return groupValue;
+  }
+
+  @Override
+  protected void doSetNextReader(LeafReaderContext readerContext) throws IOException {
+    super.doSetNextReader(readerContext);
+    index = DocValues.getSorted(readerContext.reader(), groupField);
+    segmentToGlobalOrds = ordinalMap == null ? null : ordinalMap.getGlobalOrds(readerContext.ord);
+  }
+
+  @Override
+  public boolean needsScores() {
+    return groupSort.needsScores();
+  }
+
+  /** Returns the number of collected hits. */
+  public int getTotalHitCount() {
+    return totalHitCount;
+  }
+
+  /** Returns the number of collected hits of the given group, <code>null</code> being the group of docs without value. */
+  public int getGroupHitCount(Long groupValue) {
+    if (groupValue == null) {
+      return nullGroupCount;
+    }
+    final int ord = groupValue.intValue();
+    final int[] counts = groupCounts[ord >>> BLOCK_SHIFT];
+    return counts == null ? 0 : counts[ord & BLOCK_MASK];
+  }
+
+  /**
+   * Like {@link #getTopGroups(int, boolean)}, but returns the terms of the groups.
+   */
+  public Collection<SearchGroup<BytesRef>> getTermTopGroups(int groupOffset, boolean fillFields) {
+    return toTermSearchGroups(getTopGroups(groupOffset, fillFields), globalValues);
+  }
+
+  /**
+   * Returns the top groups, starting from groupOffset, with their top document only. The result is the same as
+   * the one of a {@link TermSecondPassGroupingCollector} that is given the top groups of a
+   * {@link TermFirstPassGroupingCollector}, the groupSort as withinGroupSort, maxDocsPerGroup=1, getScores=false,
+   * getMaxScores=false and fillSortFields=true, but this collector computes it without a second pass over the hits:
+   * a group's top document is the one that sorts this group, and it is always collected since a group that falls
+   * out of the top groups can only come back with a better document.
+   *
+   * @param groupOffset The offset in the collected groups
+   * @return the grouped result, or null if the number of unique groups collected is &lt;= groupOffset
+   */
+  public TopGroups<BytesRef> getTopGroupsWithTopDoc(int groupOffset) {
+    final Collection<SearchGroup<Long>> topGroups = getTopGroups(groupOffset, true);
+    if (topGroups == null) {
+      return null;
+    }
+
+    @SuppressWarnings({"unchecked","rawtypes"})
+    final GroupDocs<BytesRef>[] groupDocs = (GroupDocs<BytesRef>[]) new GroupDocs[topGroups.size()];
+    int totalGroupedHitCount = 0;
+    // getTopGroups returns the groups in the order of orderedGroups
+    final Iterator<CollectedSearchGroup<Long>> collectedGroups = orderedGroups.iterator();
+    for (int i = 0; i < groupOffset; i++) {
+      collectedGroups.next();
+    }
+    int groupIDX = 0;
+    for (SearchGroup<Long> group : topGroups) {
+      final CollectedSearchGroup<Long> collectedGroup = collectedGroups.next();
+      assert collectedGroup.groupValue == group.groupValue;
+      final int groupHitCount = getGroupHitCount(group.groupValue);
+      totalGroupedHitCount += groupHitCount;
+      final ScoreDoc[] scoreDocs = new ScoreDoc[] {new FieldDoc(collectedGroup.topDoc, Float.NaN, group.sortValues)};
+      groupDocs[groupIDX++] = new GroupDocs<>(Float.NaN, Float.NaN, groupHitCount, scoreDocs,
+                                              lookupGroupValue(group.groupValue, globalValues), group.sortValues);
+    }
+    return new TopGroups<>(groupSort.getSort(), groupSort.getSort(), totalHitCount, totalGroupedHitCount, groupDocs,
+                           Float.NaN);
+  }
+
+  static BytesRef lookupGroupValue(Long groupValue, SortedDocValues globalValues) {
+    return groupValue == null ? null : BytesRef.deepCopyOf(globalValues.lookupOrd(groupValue.intValue()));
+  }
+
+  static Collection<SearchGroup<BytesRef>> toTermSearchGroups(Collection<SearchGroup<Long>> groups,
+                                                             SortedDocValues globalValues) {
+    if (groups == null) {
+      return null;
+    }
+    final Collection<SearchGroup<BytesRef>> result = new ArrayList<>(groups.size());
+    for (SearchGroup<Long> group : groups) {
+      final SearchGroup<BytesRef> termGroup = new SearchGroup<>();
+      termGroup.groupValue = lookupGroupValue(group.groupValue, globalValues);
+      termGroup.sortValues = group.sortValues;
+      result.add(termGroup);
+    }
+    return result;
+  }
+
+  /** Returns the given grouped result with the terms of the groups. */
+  static TopGroups<BytesRef> toTermTopGroups(TopGroups<Long> topGroups, SortedDocValues globalValues) {
+    @SuppressWarnings({"unchecked","rawtypes"})
+    final GroupDocs<BytesRef>[] groupDocs = (GroupDocs<BytesRef>[]) new GroupDocs[topGroups.groups.length];
+    for (int i = 0; i < groupDocs.length; i++) {
+      final GroupDocs<Long> group = topGroups.groups[i];
+      groupDocs[i] = new GroupDocs<>(group.score, group.maxScore, group.totalHits, group.scoreDocs,
+                                     lookupGroupValue(group.groupValue, globalValues), group.groupSortValues);
+    }
+    return new TopGroups<>(topGroups.groupSort, topGroups.withinGroupSort, topGroups.totalHitCount,
+                           topGroups.totalGroupedHitCount, groupDocs, topGroups.maxScore);
+  }
+}
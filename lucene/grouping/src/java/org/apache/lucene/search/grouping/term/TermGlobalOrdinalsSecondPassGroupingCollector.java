@@ -0,0 +1,113 @@
+package org.apache.lucene.search.grouping.term;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.grouping.AbstractSecondPassGroupingCollector;
+import org.apache.lucene.search.grouping.SearchGroup;
+import org.apache.lucene.search.grouping.TopGroups;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.SentinelIntSet;
+
+/**
+ * Concrete implementation of {@link org.apache.lucene.search.grouping.AbstractSecondPassGroupingCollector} that groups
+ * based on the global ordinals of the values of a {@link org.apache.lucene.index.SortedDocValues} field, and collects
+ * the documents of the top groups of a {@link TermGlobalOrdinalsFirstPassGroupingCollector}. Unlike
+ * {@link TermSecondPassGroupingCollector}, it does not look up the terms of the groups in every segment.
+ *
+ * @lucene.experimental
+ */
+public class TermGlobalOrdinalsSecondPassGroupingCollector extends AbstractSecondPassGroupingCollector<Long> {
+
+  private final SentinelIntSet ordSet;
+  private final String groupField;
+  private final SortedDocValues globalValues;
+  private final MultiDocValues.OrdinalMap ordinalMap;
+  private SortedDocValues index;
+  private LongValues segmentToGlobalOrds;
+
+  /**
+   * Create the second pass collector.
+   *
+   * @param globalValues The values of the group field of the top-level reader that is searched, which must be the
+   *                     ones given to the first pass collector.
+   * @see AbstractSecondPassGroupingCollector#AbstractSecondPassGroupingCollector
+   */
+  @SuppressWarnings({"unchecked","rawtypes"})
+  public TermGlobalOrdinalsSecondPassGroupingCollector(String groupField, SortedDocValues globalValues,
+                                                       Collection<SearchGroup<Long>> groups, Sort groupSort,
+                                                       Sort withinGroupSort, int maxDocsPerGroup, boolean getScores,
+                                                       boolean getMaxScores, boolean fillSortFields) throws IOException {
+    super(groups, groupSort, withinGroupSort, maxDocsPerGroup, getScores, getMaxScores, fillSortFields);
+    this.groupField = groupField;
+    this.globalValues = globalValues;
+    this.ordinalMap = TermGlobalOrdinalsFirstPassGroupingCollector.getOrdinalMap(globalValues);
+    ordSet = new SentinelIntSet(groupMap.size(), -2);
+    groupDocs = (SearchGroupDocs<Long>[]) new SearchGroupDocs[ordSet.keys.length];
+    // global ords are the same in every segment: unlike TermSecondPassGroupingCollector, build ordSet only once
+    for (SearchGroupDocs<Long> group : groupMap.values()) {
+      final int ord = group.groupValue == null ? -1 : group.groupValue.intValue();
+      groupDocs[ordSet.put(ord)] = group;
+    }
+  }
+
+  @Override
+  protected void doSetNextReader(LeafReaderContext readerContext) throws IOException {
+    super.doSetNextReader(readerContext);
+    index = DocValues.getSorted(readerContext.reader(), groupField);
+    segmentToGlobalOrds = ordinalMap == null ? null : ordinalMap.getGlobalOrds(readerContext.ord);
+  }
+
+  @Override
+  protected SearchGroupDocs<Long> retrieveGroup(int doc) throws IOException {
+    int ord = index.getOrd(doc);
+    if (ord != -1 && segmentToGlobalOrds != null) {
+      ord = (int) segmentToGlobalOrds.get(ord);
+    }
+    int slot = ordSet.find(ord);
+    if (slot >= 0) {
+      return groupDocs[slot];
+    }
+    return null;
+  }
+
+  /**
+   * Like {@link #getTopGroups(int)}, but returns the terms of the groups.
+   */
+  public TopGroups<BytesRef> getTermTopGroups(int withinGroupOffset) {
+    return TermGlobalOrdinalsFirstPassGroupingCollector.toTermTopGroups(getTopGroups(withinGroupOffset), globalValues);
+  }
+
+  @Override
+  public boolean needsScores() {
+    for (SearchGroupDocs<Long> group : groupMap.values()) {
+      if (group.collector.needsScores()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
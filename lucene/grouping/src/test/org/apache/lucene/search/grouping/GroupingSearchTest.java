@@ -209,6 +209,7 @@ public class GroupingSearchTest extends LuceneTestCase {
       groupingSearch = new GroupingSearch(vs, new HashMap<>());
     } else {
       groupingSearch = new GroupingSearch(groupField);
+      groupingSearch.setUseGlobalOrdinals(random().nextBoolean());
     }
 
     groupingSearch.setGroupSort(groupSort);
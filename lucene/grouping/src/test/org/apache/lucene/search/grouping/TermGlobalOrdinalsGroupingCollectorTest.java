@@ -0,0 +1,227 @@
+package org.apache.lucene.search.grouping;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.grouping.term.TermFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermGlobalOrdinalsFirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermGlobalOrdinalsSecondPassGroupingCollector;
+import org.apache.lucene.search.grouping.term.TermSecondPassGroupingCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+public class TermGlobalOrdinalsGroupingCollectorTest extends AbstractGroupingTestCase {
+
+  private static final String GROUP_FIELD = "group";
+
+  public void testSameResultAsTermCollectors() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    List<String> groups = new ArrayList<>();
+    int numGroups = TestUtil.nextInt(random(), 1, 50);
+    for (int i = 0; i < numGroups; i++) {
+      groups.add(generateRandomNonEmptyString());
+    }
+    String[] contents = new String[] {"a", "b", "c", "a b", "a c", "a b c"};
+    int numDocs = atLeast(300);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      // some docs fall into the null group
+      if (random().nextInt(10) != 0) {
+        // groups don't all exist in all segments
+        int maxGroup = 1 + (numGroups - 1) * (i + 1) / numDocs;
+        doc.add(new SortedDocValuesField(GROUP_FIELD, new BytesRef(groups.get(random().nextInt(maxGroup)))));
+      }
+      doc.add(new NumericDocValuesField("sort", random().nextInt(100)));
+      doc.add(new TextField("content", contents[random().nextInt(contents.length)], Field.Store.NO));
+      w.addDocument(doc);
+      if (random().nextInt(50) == 0) {
+        w.commit();
+      }
+    }
+    DirectoryReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    SortedDocValues globalValues = TermGlobalOrdinalsFirstPassGroupingCollector.getGlobalValues(searcher.getIndexReader(), GROUP_FIELD);
+
+    Sort[] sorts = new Sort[] {
+        Sort.RELEVANCE,
+        new Sort(new SortField("sort", SortField.Type.INT)),
+        new Sort(new SortField("sort", SortField.Type.INT, true), SortField.FIELD_SCORE)
+    };
+    int iters = atLeast(20);
+    for (int iter = 0; iter < iters; iter++) {
+      Query query = random().nextBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("content", "a"));
+      Sort groupSort = sorts[random().nextInt(sorts.length)];
+      Sort withinGroupSort = sorts[random().nextInt(sorts.length)];
+      int topNGroups = TestUtil.nextInt(random(), 1, 20);
+      int groupOffset = random().nextInt(3);
+      int maxDocsPerGroup = TestUtil.nextInt(random(), 1, 5);
+      int withinGroupOffset = random().nextInt(2);
+
+      TermFirstPassGroupingCollector termFirstPass = new TermFirstPassGroupingCollector(GROUP_FIELD, groupSort, topNGroups);
+      searcher.search(query, termFirstPass);
+      Collection<SearchGroup<BytesRef>> expectedGroups = termFirstPass.getTopGroups(groupOffset, true);
+
+      TermGlobalOrdinalsFirstPassGroupingCollector firstPass =
+          new TermGlobalOrdinalsFirstPassGroupingCollector(GROUP_FIELD, globalValues, groupSort, topNGroups);
+      searcher.search(query, firstPass);
+      assertSearchGroups(expectedGroups, firstPass.getTermTopGroups(groupOffset, true));
+      if (expectedGroups == null) {
+        assertNull(firstPass.getTopGroupsWithTopDoc(groupOffset));
+        continue;
+      }
+
+      TermSecondPassGroupingCollector termSecondPass = new TermSecondPassGroupingCollector(GROUP_FIELD, expectedGroups,
+          groupSort, withinGroupSort, maxDocsPerGroup, true, true, true);
+      searcher.search(query, termSecondPass);
+      TermGlobalOrdinalsSecondPassGroupingCollector secondPass = new TermGlobalOrdinalsSecondPassGroupingCollector(GROUP_FIELD,
+          globalValues, firstPass.getTopGroups(groupOffset, true), groupSort, withinGroupSort, maxDocsPerGroup, true, true, true);
+      searcher.search(query, secondPass);
+      assertTopGroups(termSecondPass.getTopGroups(withinGroupOffset), secondPass.getTermTopGroups(withinGroupOffset));
+
+      // the single pass result is the one of the top doc of each group, sorted like the groups
+      termSecondPass = new TermSecondPassGroupingCollector(GROUP_FIELD, expectedGroups, groupSort, groupSort, 1, false, false, true);
+      searcher.search(query, termSecondPass);
+      assertTopGroups(termSecondPass.getTopGroups(0), firstPass.getTopGroupsWithTopDoc(groupOffset));
+      assertEquals(termSecondPass.getTopGroups(0).totalHitCount, firstPass.getTotalHitCount());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testGroupingSearchSinglePass() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new SortedDocValuesField(GROUP_FIELD, new BytesRef("group" + (i % 7))));
+      doc.add(new NumericDocValuesField("sort", i));
+      w.addDocument(doc);
+    }
+    DirectoryReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    Sort sort = new Sort(new SortField("sort", SortField.Type.INT, true));
+    GroupingSearch groupingSearch = new GroupingSearch(GROUP_FIELD);
+    groupingSearch.setGroupSort(sort);
+    groupingSearch.setSortWithinGroup(sort);
+    groupingSearch.setIncludeScores(false);
+    groupingSearch.setIncludeMaxScore(false);
+    groupingSearch.setFillSortFields(true);
+    groupingSearch.setAllGroups(true);
+    TopGroups<BytesRef> expected = groupingSearch.search(searcher, new MatchAllDocsQuery(), 1, 3);
+    groupingSearch.setUseGlobalOrdinals(true);
+    TopGroups<BytesRef> actual = groupingSearch.search(searcher, new MatchAllDocsQuery(), 1, 3);
+    assertTopGroups(expected, actual);
+    assertEquals(Integer.valueOf(7), actual.totalGroupCount);
+    assertEquals(3, actual.groups.length);
+    // the last doc of each group sorts it
+    assertEquals(new BytesRef("group" + ((numDocs - 2) % 7)), actual.groups[0].groupValue);
+    assertEquals(numDocs - 2, ((FieldDoc) actual.groups[0].scoreDocs[0]).fields[0]);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testNeedsScores() throws Exception {
+    SortedDocValues globalValues = DocValues.emptySorted();
+    Sort byField = new Sort(new SortField("sort", SortField.Type.INT));
+    assertTrue(new TermGlobalOrdinalsFirstPassGroupingCollector(GROUP_FIELD, globalValues, Sort.RELEVANCE, 10).needsScores());
+    assertFalse(new TermGlobalOrdinalsFirstPassGroupingCollector(GROUP_FIELD, globalValues, byField, 10).needsScores());
+
+    SearchGroup<Long> group = new SearchGroup<>();
+    group.sortValues = new Object[] {1};
+    Collection<SearchGroup<Long>> groups = Collections.singletonList(group);
+    assertFalse(new TermGlobalOrdinalsSecondPassGroupingCollector(GROUP_FIELD, globalValues, groups, byField, byField,
+        1, false, false, true).needsScores());
+    assertTrue(new TermGlobalOrdinalsSecondPassGroupingCollector(GROUP_FIELD, globalValues, groups, byField, byField,
+        1, true, false, true).needsScores());
+    assertTrue(new TermGlobalOrdinalsSecondPassGroupingCollector(GROUP_FIELD, globalValues, groups, byField, Sort.RELEVANCE,
+        1, false, false, true).needsScores());
+  }
+
+  private void assertSearchGroups(Collection<SearchGroup<BytesRef>> expected, Collection<SearchGroup<BytesRef>> actual) {
+    if (expected == null) {
+      assertNull(actual);
+      return;
+    }
+    assertEquals(expected.size(), actual.size());
+    Iterator<SearchGroup<BytesRef>> it = actual.iterator();
+    for (SearchGroup<BytesRef> expectedGroup : expected) {
+      SearchGroup<BytesRef> actualGroup = it.next();
+      assertEquals(expectedGroup.groupValue, actualGroup.groupValue);
+      assertTrue(Arrays.equals(expectedGroup.sortValues, actualGroup.sortValues));
+    }
+  }
+
+  private void assertTopGroups(TopGroups<BytesRef> expected, TopGroups<BytesRef> actual) {
+    assertTrue(Arrays.equals(expected.groupSort, actual.groupSort));
+    assertTrue(Arrays.equals(expected.withinGroupSort, actual.withinGroupSort));
+    assertEquals(expected.totalHitCount, actual.totalHitCount);
+    assertEquals(expected.totalGroupedHitCount, actual.totalGroupedHitCount);
+    assertEquals(expected.totalGroupCount, actual.totalGroupCount);
+    assertEquals(expected.maxScore, actual.maxScore, 0f);
+    assertEquals(expected.groups.length, actual.groups.length);
+    for (int i = 0; i < expected.groups.length; i++) {
+      GroupDocs<BytesRef> expectedGroup = expected.groups[i];
+      GroupDocs<BytesRef> actualGroup = actual.groups[i];
+      assertEquals(expectedGroup.groupValue, actualGroup.groupValue);
+      assertEquals(expectedGroup.totalHits, actualGroup.totalHits);
+      assertEquals(expectedGroup.score, actualGroup.score, 0f);
+      assertEquals(expectedGroup.maxScore, actualGroup.maxScore, 0f);
+      assertTrue(Arrays.equals(expectedGroup.groupSortValues, actualGroup.groupSortValues));
+      assertEquals(expectedGroup.scoreDocs.length, actualGroup.scoreDocs.length);
+      for (int j = 0; j < expectedGroup.scoreDocs.length; j++) {
+        assertEquals(expectedGroup.scoreDocs[j].doc, actualGroup.scoreDocs[j].doc);
+        assertEquals(expectedGroup.scoreDocs[j].score, actualGroup.scoreDocs[j].score, 0f);
+        if (expectedGroup.scoreDocs[j] instanceof FieldDoc) {
+          assertTrue(Arrays.equals(((FieldDoc) expectedGroup.scoreDocs[j]).fields, ((FieldDoc) actualGroup.scoreDocs[j]).fields));
+        }
+      }
+    }
+  }
+}
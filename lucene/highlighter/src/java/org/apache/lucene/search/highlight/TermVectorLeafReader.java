@@ -29,6 +29,7 @@ import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -79,7 +80,7 @@ public class TermVectorLeafReader extends LeafReader {
     }
     FieldInfo fieldInfo = new FieldInfo(field, 0,
         true, true, terms.hasPayloads(),
-        indexOptions, DocValuesType.NONE, -1, Collections.emptyMap());
+        indexOptions, DocValuesType.NONE, -1, Collections.emptyMap(), 0, 0);
     fieldInfos = new FieldInfos(new FieldInfo[]{fieldInfo});
   }
 
@@ -137,6 +138,11 @@ public class TermVectorLeafReader extends LeafReader {
     return null;//Is this needed?  See MemoryIndex for a way to do it.
   }
 
+  @Override
+  public PointValues getPointValues() {
+    return null;
+  }
+
   @Override
   public FieldInfos getFieldInfos() {
     return fieldInfos;
@@ -44,6 +44,7 @@ import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.OrdTermState;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -444,7 +445,7 @@ public class MemoryIndex {
         fieldInfo = new FieldInfo(fieldName, fields.size(), true, false, this.storePayloads,
             this.storeOffsets
                 ? IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS : IndexOptions.DOCS_AND_FREQS_AND_POSITIONS,
-            DocValuesType.NONE, -1, Collections.emptyMap());
+            DocValuesType.NONE, -1, Collections.emptyMap(), 0, 0);
         sliceArray = new SliceByteStartArray(BytesRefHash.DEFAULT_CAPACITY);
         terms = new BytesRefHash(byteBlockPool, BytesRefHash.DEFAULT_CAPACITY, sliceArray);
       }
@@ -1149,6 +1150,11 @@ public class MemoryIndex {
       return info.getNormDocValues();
     }
 
+    @Override
+    public PointValues getPointValues() {
+      return null;
+    }
+
   }
 
   /**
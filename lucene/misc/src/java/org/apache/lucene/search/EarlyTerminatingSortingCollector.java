@@ -22,6 +22,9 @@ import java.util.Arrays;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.SortingMergePolicy;
 import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.CollectionTerminatedException;
@@ -39,8 +42,9 @@ import org.apache.lucene.search.TotalHitCountCollector;
  *
  * <p>
  * <b>NOTE:</b> the {@code Collector} detects sorted segments according to
- * {@link SortingMergePolicy}, so it's best used in conjunction with it. Also,
- * it collects up to a specified {@code numDocsToCollect} from each segment,
+ * their {@link IndexWriterConfig#setIndexSort index sort}, or according to a
+ * {@link SortingMergePolicy}, so it's best used in conjunction with either of
+ * them. Also, it collects up to a specified {@code numDocsToCollect} from each segment,
  * and therefore is mostly suitable for use in conjunction with collectors such as
  * {@link TopDocsCollector}, and not e.g. {@link TotalHitCountCollector}.
  * <p>
@@ -50,7 +54,8 @@ import org.apache.lucene.search.TotalHitCountCollector;
  * hit count} will be underestimated since not all matching documents will have
  * been collected.
  * <p>
- * <b>NOTE</b>: This {@code Collector} uses {@link Sort#toString()} to detect
+ * <b>NOTE</b>: When used with a {@link SortingMergePolicy}, this
+ * {@code Collector} uses {@link Sort#toString()} to detect
  * whether a segment was sorted with the same {@code Sort}. This has
  * two implications:
  * <ul>
@@ -71,8 +76,15 @@ public class EarlyTerminatingSortingCollector extends FilterCollector {
    *  provided {@link Sort} and if segments are merged with the provided
    *  {@link SortingMergePolicy}. */
   public static boolean canEarlyTerminate(Sort sort, SortingMergePolicy mergePolicy) {
+    return canEarlyTerminate(sort, mergePolicy.getSort());
+  }
+
+  /** Returns whether collection can be early-terminated if it sorts with the
+   *  provided {@link Sort} and if segments are sorted with the provided
+   *  {@link IndexWriterConfig#setIndexSort index sort}. */
+  public static boolean canEarlyTerminate(Sort sort, Sort indexSort) {
     final SortField[] fields1 = sort.getSort();
-    final SortField[] fields2 = mergePolicy.getSort().getSort();
+    final SortField[] fields2 = indexSort.getSort();
     // early termination is possible if fields1 is a prefix of fields2
     if (fields1.length > fields2.length) {
       return false;
@@ -86,6 +98,30 @@ public class EarlyTerminatingSortingCollector extends FilterCollector {
   protected final int numDocsToCollect;
   private final SortingMergePolicy mergePolicy;
 
+  /**
+   * Create a new {@link EarlyTerminatingSortingCollector} instance that
+   * early-terminates collection on segments whose
+   * {@link IndexWriterConfig#setIndexSort index sort} allows for it.
+   *
+   * @param in
+   *          the collector to wrap
+   * @param sort
+   *          the sort you are sorting the search results on
+   * @param numDocsToCollect
+   *          the number of documents to collect on each segment. When wrapping
+   *          a {@link TopDocsCollector}, this number should be the number of
+   *          hits.
+   */
+  public EarlyTerminatingSortingCollector(Collector in, Sort sort, int numDocsToCollect) {
+    super(in);
+    if (numDocsToCollect <= 0) {
+      throw new IllegalArgumentException("numDocsToCollect must always be > 0, got " + numDocsToCollect);
+    }
+    this.sort = sort;
+    this.numDocsToCollect = numDocsToCollect;
+    this.mergePolicy = null;
+  }
+
   /**
    * Create a new {@link EarlyTerminatingSortingCollector} instance.
    *
@@ -113,9 +149,20 @@ public class EarlyTerminatingSortingCollector extends FilterCollector {
     this.mergePolicy = mergePolicy;
   }
 
+  private boolean isSorted(LeafReader reader) {
+    if (mergePolicy != null) {
+      return mergePolicy.isSorted(reader);
+    }
+    if (reader instanceof SegmentReader) {
+      final Sort indexSort = ((SegmentReader) reader).getSegmentInfo().info.getIndexSort();
+      return indexSort != null && canEarlyTerminate(sort, indexSort);
+    }
+    return false;
+  }
+
   @Override
   public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
-    if (mergePolicy.isSorted(context.reader())) {
+    if (isSorted(context.reader())) {
       // segment is sorted, can early-terminate
       return new FilterLeafCollector(super.getLeafCollector(context)) {
         private int numCollected;
@@ -0,0 +1,107 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * A {@link MMapDirectory} that gives the operating system all kinds of
+ * {@link MMapDirectory.ReadAdvice access pattern advice} with
+ * <code>madvise</code>, while {@link MMapDirectory} can only give
+ * {@link MMapDirectory.ReadAdvice#WILL_NEED} advice. Override
+ * {@link #getReadAdvice} to choose the advice per file.
+ *
+ * <p>See <a
+ * href="{@docRoot}/overview-summary.html#NativeUnixDirectory">Overview</a>
+ * for more details.
+ *
+ * <p>To use this you must compile
+ * NativePosixUtil.cpp (exposes Linux-specific APIs through
+ * JNI) for your platform, by running <code>ant
+ * build-native-unix</code>, and then putting the resulting
+ * <code>libNativePosixUtil.so</code> (from
+ * <code>lucene/build/native</code>) onto your dynamic
+ * linker search path.
+ *
+ * @lucene.experimental
+ */
+public class NativeMMapDirectory extends MMapDirectory {
+
+  /** Create a new NativeMMapDirectory for the named location.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @throws IOException if there is a low-level I/O error
+   */
+  public NativeMMapDirectory(Path path, LockFactory lockFactory) throws IOException {
+    super(path, lockFactory);
+  }
+
+  /** Create a new NativeMMapDirectory for the named location and {@link FSLockFactory#getDefault()}.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @throws IOException if there is a low-level I/O error
+   */
+  public NativeMMapDirectory(Path path) throws IOException {
+    super(path);
+  }
+
+  /**
+   * Create a new NativeMMapDirectory for the named location, specifying the
+   * maximum chunk size used for memory mapping.
+   *  The directory is created at the named location if it does not yet exist.
+   *
+   * @param path the path of the directory
+   * @param lockFactory the lock factory to use
+   * @param maxChunkSize maximum chunk size used for memory mapping
+   * @throws IOException if there is a low-level I/O error
+   * @see MMapDirectory#MMapDirectory(Path, LockFactory, int)
+   */
+  public NativeMMapDirectory(Path path, LockFactory lockFactory, int maxChunkSize) throws IOException {
+    super(path, lockFactory, maxChunkSize);
+  }
+
+  @Override
+  protected void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+    final int osAdvice;
+    switch (advice) {
+      case NORMAL:
+        osAdvice = NativePosixUtil.NORMAL;
+        break;
+      case SEQUENTIAL:
+        osAdvice = NativePosixUtil.SEQUENTIAL;
+        break;
+      case RANDOM:
+        osAdvice = NativePosixUtil.RANDOM;
+        break;
+      case WILL_NEED:
+        osAdvice = NativePosixUtil.WILLNEED;
+        break;
+      default:
+        throw new AssertionError("unknown advice: " + advice);
+    }
+    if (buffer.hasRemaining()) {
+      // the native code advises from the address of the buffer up to its capacity:
+      NativePosixUtil.madvise(buffer.slice(), osAdvice);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package org.apache.lucene.replicator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReader.CoreClosedListener;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.StandardDirectoryReader;
+import org.apache.lucene.store.AlreadyClosedException;
+
+/**
+ * Publishes {@link NRTIndexRevision near-real-time revisions} of the index of
+ * an {@link IndexWriter} to a {@link Replicator}. The application calls
+ * {@link #publish()} whenever it wants replicas to see the latest changes,
+ * typically where it would otherwise reopen a near-real-time reader; unlike
+ * {@link IndexRevision}, this does not require to commit.
+ * <p>
+ * Optionally, merged segments are pre-copied: this publisher installs a
+ * {@link org.apache.lucene.index.LiveIndexWriterConfig#setMergedSegmentWarmer
+ * merged segment warmer} which, before a merge is committed to the index,
+ * publishes a revision that also lists the files of the merged segment. Replicas that check for updates while the merged
+ * segment is being warmed copy its files ahead of time, so that the next
+ * revision, which replaces the merged segments with the new one, only has
+ * few files to copy. Merges do not wait for replicas, which are not known to
+ * the {@link Replicator}. The writer does not delete the files of a merged
+ * segment while revisions that list them are not released, even if the merge
+ * is aborted.
+ *
+ * @lucene.experimental
+ */
+public class NRTIndexPublisher implements Closeable {
+
+  private final IndexWriter writer;
+  private final Replicator replicator;
+  private final IndexReaderWarmer previousWarmer;
+  private final IndexReaderWarmer preCopyWarmer;
+
+  // merged segments to pre-copy, by segment name
+  private final Map<String,PreCopySegment> preCopySegments = new HashMap<>();
+  private final Lock publishLock = new ReentrantLock();
+  // reader of the last published near-real-time revision, on which we hold a reference
+  private DirectoryReader lastReader;
+  private long preCopyVersion;
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param writer the writer whose index is replicated
+   * @param replicator the {@link Replicator} to publish revisions to
+   * @param preCopyMergedSegments whether to publish the files of merged
+   *        segments before merges are committed
+   */
+  public NRTIndexPublisher(IndexWriter writer, Replicator replicator, boolean preCopyMergedSegments) {
+    this.writer = writer;
+    this.replicator = replicator;
+    this.previousWarmer = writer.getConfig().getMergedSegmentWarmer();
+    if (preCopyMergedSegments) {
+      preCopyWarmer = new IndexReaderWarmer() {
+        @Override
+        public void warm(LeafReader reader) throws IOException {
+          preCopy(reader);
+          if (previousWarmer != null) {
+            previousWarmer.warm(reader);
+          }
+        }
+      };
+      writer.getConfig().setMergedSegmentWarmer(preCopyWarmer);
+    } else {
+      preCopyWarmer = null;
+    }
+  }
+
+  /**
+   * Opens a near-real-time reader on the index and publishes it as a new
+   * revision if it has changed since the last published revision. Returns
+   * {@code true} if a revision was published.
+   */
+  public boolean publish() throws IOException {
+    ensureOpen();
+    // don't synchronize on this publisher while opening the reader: it may
+    // wait for merges, which synchronize on it to pre-copy merged segments
+    publishLock.lock();
+    try {
+      final DirectoryReader reader = DirectoryReader.open(writer, true, true);
+      try {
+        return publish(reader);
+      } finally {
+        reader.decRef();
+      }
+    } finally {
+      publishLock.unlock();
+    }
+  }
+
+  private synchronized boolean publish(DirectoryReader reader) throws IOException {
+    ensureOpen();
+    if (lastReader != null && reader.getVersion() == lastReader.getVersion()) {
+      return false;
+    }
+    // merged segments that are now part of the index don't need to be
+    // pre-copied anymore, and neither do the ones of aborted merges
+    final Set<String> segments = new HashSet<>();
+    for (SegmentCommitInfo info : ((StandardDirectoryReader) reader).getSegmentInfos()) {
+      segments.add(info.info.name);
+    }
+    for (Iterator<Map.Entry<String,PreCopySegment>> it = preCopySegments.entrySet().iterator(); it.hasNext(); ) {
+      final Map.Entry<String,PreCopySegment> e = it.next();
+      if (segments.contains(e.getKey()) || e.getValue().coreClosed) {
+        it.remove();
+        writer.decRefDeleter(e.getValue().infos);
+      }
+    }
+
+    preCopyVersion = 0;
+    publishRevision(reader);
+    reader.incRef();
+    if (lastReader != null) {
+      lastReader.decRef();
+    }
+    lastReader = reader;
+    return true;
+  }
+
+  private synchronized void preCopy(LeafReader reader) throws IOException {
+    if (closed || !(reader instanceof SegmentReader)) {
+      return;
+    }
+    final SegmentCommitInfo info = ((SegmentReader) reader).getSegmentInfo();
+    final SegmentInfos infos = new SegmentInfos();
+    infos.add(info);
+    try {
+      // the files must outlive an aborted merge until replicas stop copying them
+      writer.incRefDeleter(infos);
+    } catch (AlreadyClosedException e) {
+      // the writer is closing, don't pre-copy
+      return;
+    }
+    final PreCopySegment segment = new PreCopySegment(infos);
+    preCopySegments.put(info.info.name, segment);
+    // the core of the merged segment is closed without being published if
+    // the merge is aborted
+    reader.addCoreClosedListener(segment);
+    if (lastReader != null) {
+      // publish the same segment infos as the last revision along with the new files
+      ++preCopyVersion;
+      publishRevision(lastReader);
+    }
+  }
+
+  /** Publish a revision of the given reader, which gets a new reference for
+   *  it and for the files of the merged segments to pre-copy. */
+  private void publishRevision(DirectoryReader reader) throws IOException {
+    final SegmentInfos preCopyInfos = new SegmentInfos();
+    for (PreCopySegment segment : preCopySegments.values()) {
+      preCopyInfos.addAll(segment.infos);
+    }
+    reader.incRef();
+    final NRTIndexRevision revision;
+    boolean success = false;
+    try {
+      writer.incRefDeleter(preCopyInfos);
+      try {
+        revision = new NRTIndexRevision(reader, preCopyVersion, writer, preCopyInfos);
+        success = true;
+      } finally {
+        if (success == false) {
+          writer.decRefDeleter(preCopyInfos);
+        }
+      }
+    } finally {
+      if (success == false) {
+        reader.decRef();
+      }
+    }
+    replicator.publish(revision);
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new AlreadyClosedException("this publisher is closed");
+    }
+  }
+
+  /**
+   * Restores the merged segment warmer of the writer and releases the last
+   * published reader. Published revisions are released by the
+   * {@link Replicator}.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed == false) {
+      closed = true;
+      if (preCopyWarmer != null && writer.getConfig().getMergedSegmentWarmer() == preCopyWarmer) {
+        writer.getConfig().setMergedSegmentWarmer(previousWarmer);
+      }
+      try {
+        for (PreCopySegment segment : preCopySegments.values()) {
+          writer.decRefDeleter(segment.infos);
+        }
+      } catch (AlreadyClosedException e) {
+        // the writer does not delete files anymore
+      } finally {
+        preCopySegments.clear();
+        if (lastReader != null) {
+          lastReader.decRef();
+          lastReader = null;
+        }
+      }
+    }
+  }
+
+  /** A merged segment to pre-copy, whose files this publisher holds a reference on. */
+  private static final class PreCopySegment implements CoreClosedListener {
+
+    private final SegmentInfos infos;
+    private volatile boolean coreClosed;
+
+    PreCopySegment(SegmentInfos infos) {
+      this.infos = infos;
+    }
+
+    @Override
+    public void onClose(Object ownerCoreCacheKey) {
+      coreClosed = true;
+    }
+  }
+
+}
@@ -0,0 +1,200 @@
+package org.apache.lucene.replicator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StandardDirectoryReader;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.RAMFile;
+import org.apache.lucene.store.RAMOutputStream;
+
+/**
+ * A {@link Revision} of a near-real-time view of an index: it comprises the
+ * files of the segments of a reader opened from an {@link IndexWriter}, with
+ * deletes written to the directory, followed by a file that holds its
+ * {@link SegmentInfos}, which are not committed. Replicas copy the files they
+ * do not have yet and open a reader on them with {@link NRTReplicationHandler},
+ * without indexing documents themselves and without the cost of
+ * {@link IndexWriter#commit()} on the primary.
+ * <p>
+ * A revision may also list the files of merged segments that are not part of
+ * the index yet, so that replicas copy them before the merge completes; see
+ * {@link NRTIndexPublisher}.
+ * <p>
+ * The revision holds a reference to the reader and to the files of the
+ * merged segments it lists, which prevents {@link IndexWriter} from deleting
+ * them, until it is {@link #release() released}.
+ *
+ * @lucene.experimental
+ */
+public class NRTIndexRevision implements Revision {
+
+  /** Prefix of the name of the file that holds the {@link SegmentInfos} of a revision. */
+  public static final String INFOS_FILE_PREFIX = "nrt_segments_";
+
+  private static final int RADIX = 16;
+  private static final String SOURCE = "index";
+
+  private final DirectoryReader reader;
+  private final IndexWriter writer;
+  private final SegmentInfos preCopyInfos;
+  private final long infosVersion;
+  private final long preCopyVersion;
+  private final String version;
+  private final String infosFileName;
+  private final byte[] infosBytes;
+  private final Map<String,List<RevisionFile>> sourceFiles;
+
+  /**
+   * Returns a String representation of a revision's version from the version
+   * of its {@link SegmentInfos} and the number of merged segments that were
+   * pre-copied since these segment infos were published.
+   */
+  public static String revisionVersion(long infosVersion, long preCopyVersion) {
+    return Long.toString(infosVersion, RADIX) + "_" + Long.toString(preCopyVersion, RADIX);
+  }
+
+  /**
+   * Reads the {@link SegmentInfos} of a revision from the given file of
+   * {@code infosDir}. The files of the segments are read from {@code indexDir}.
+   */
+  public static SegmentInfos readSegmentInfos(Directory infosDir, String infosFileName, Directory indexDir) throws IOException {
+    try (ChecksumIndexInput in = infosDir.openChecksumInput(infosFileName, IOContext.READONCE)) {
+      final long generation = in.readLong();
+      return SegmentInfos.readCommit(indexDir, in, generation);
+    }
+  }
+
+  /**
+   * Constructor over the given {@link IndexWriter}. Opens a near-real-time
+   * reader which applies and writes all deletes.
+   */
+  public NRTIndexRevision(IndexWriter writer) throws IOException {
+    this(DirectoryReader.open(writer, true, true), 0, writer, new SegmentInfos());
+  }
+
+  /**
+   * Create a revision over the given near-real-time reader, which must have
+   * been opened with {@link DirectoryReader#open(IndexWriter, boolean, boolean)}
+   * with {@code writeAllDeletes=true}, that also lists the files of the given
+   * merged segments to pre-copy. The references of the caller to the reader
+   * and, through {@link IndexWriter#incRefDeleter}, to the files of the merged
+   * segments are transferred to this revision.
+   */
+  NRTIndexRevision(DirectoryReader reader, long preCopyVersion, IndexWriter writer, SegmentInfos preCopyInfos) throws IOException {
+    if (!(reader instanceof StandardDirectoryReader)) {
+      throw new IllegalArgumentException("reader must be a near-real-time reader opened from an IndexWriter, got " + reader);
+    }
+    final SegmentInfos infos = ((StandardDirectoryReader) reader).getSegmentInfos();
+    this.reader = reader;
+    this.writer = writer;
+    this.preCopyInfos = preCopyInfos;
+    this.infosVersion = infos.getVersion();
+    this.preCopyVersion = preCopyVersion;
+    this.version = revisionVersion(infosVersion, preCopyVersion);
+    this.infosFileName = INFOS_FILE_PREFIX + version;
+
+    RAMOutputStream out = new RAMOutputStream(new RAMFile(), true);
+    out.writeLong(infos.getGeneration());
+    infos.write(reader.directory(), out);
+    infosBytes = new byte[(int) out.getFilePointer()];
+    out.writeTo(infosBytes, 0);
+
+    final Set<String> files = new LinkedHashSet<>(infos.files(false));
+    files.addAll(preCopyInfos.files(false));
+    final List<RevisionFile> revisionFiles = new ArrayList<>(files.size() + 1);
+    for (String file : files) {
+      RevisionFile revFile = new RevisionFile(file);
+      revFile.size = reader.directory().fileLength(file);
+      revisionFiles.add(revFile);
+    }
+    RevisionFile revFile = new RevisionFile(infosFileName);
+    revFile.size = infosBytes.length;
+    revisionFiles.add(revFile); // the segment infos must be last
+    sourceFiles = Collections.singletonMap(SOURCE, revisionFiles);
+  }
+
+  @Override
+  public int compareTo(String version) {
+    final int sep = version.indexOf('_');
+    final long otherInfosVersion = Long.parseLong(version.substring(0, sep), RADIX);
+    final long otherPreCopyVersion = Long.parseLong(version.substring(sep + 1), RADIX);
+    final int cmp = Long.compare(infosVersion, otherInfosVersion);
+    return cmp != 0 ? cmp : Long.compare(preCopyVersion, otherPreCopyVersion);
+  }
+
+  @Override
+  public int compareTo(Revision o) {
+    return compareTo(o.getVersion());
+  }
+
+  @Override
+  public String getVersion() {
+    return version;
+  }
+
+  @Override
+  public Map<String,List<RevisionFile>> getSourceFiles() {
+    return sourceFiles;
+  }
+
+  @Override
+  public InputStream open(String source, String fileName) throws IOException {
+    assert source.equals(SOURCE) : "invalid source; expected=" + SOURCE + " got=" + source;
+    if (fileName.equals(infosFileName)) {
+      return new ByteArrayInputStream(infosBytes);
+    }
+    return new IndexInputInputStream(reader.directory().openInput(fileName, IOContext.READONCE));
+  }
+
+  @Override
+  public void release() throws IOException {
+    try {
+      reader.decRef();
+    } finally {
+      if (preCopyInfos.size() > 0) {
+        try {
+          writer.decRefDeleter(preCopyInfos);
+        } catch (AlreadyClosedException e) {
+          // the writer does not delete files anymore
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "NRTIndexRevision version=" + version + " files=" + sourceFiles;
+  }
+
+}
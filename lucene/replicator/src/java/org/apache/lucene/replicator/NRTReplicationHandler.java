@@ -0,0 +1,350 @@
+package org.apache.lucene.replicator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StandardDirectoryReader;
+import org.apache.lucene.replicator.ReplicationClient.ReplicationHandler;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.InfoStream;
+
+/**
+ * A {@link ReplicationHandler} for near-real-time replication of an index
+ * published as {@link NRTIndexRevision}s. Implements {@link #revisionReady} by
+ * copying the new files to the index {@link Directory}, and then opening a
+ * reader on the segment infos of the revision, which reuses the segment
+ * readers of unchanged segments. Searchers over the latest revision are
+ * obtained from {@link #getSearcherManager()}.
+ * <p>
+ * Since segment infos are not committed, files are not fsync'd and the
+ * replicated index cannot be opened with {@link DirectoryReader#open}: a
+ * replica that restarts copies the index again. Files of the index directory
+ * are deleted once neither the current revision nor any open reader uses them,
+ * and index files that already exist when this handler is created are
+ * deleted. The index directory must hence be dedicated to this handler.
+ * <p>
+ * This handler notifies the application via a provided {@link Callable} when
+ * the searcher manager was refreshed on a new revision.
+ *
+ * @lucene.experimental
+ */
+public class NRTReplicationHandler implements ReplicationHandler, Closeable {
+
+  /**
+   * The component used to log messages to the {@link InfoStream#getDefault()
+   * default} {@link InfoStream}.
+   */
+  public static final String INFO_STREAM_COMPONENT = "NRTReplicationHandler";
+
+  private final Directory indexDir;
+  private final SearcherFactory searcherFactory;
+  private final Callable<Boolean> callback;
+  private final ReplicaSearcherManager searcherManager;
+
+  // number of references to each file of the index directory, from the
+  // current revision and from open readers
+  private final Map<String,Integer> fileRefCounts = new HashMap<>();
+  // searcher over the last revision, until the searcher manager picks it up
+  private IndexSearcher pendingSearcher;
+
+  private volatile Map<String,List<RevisionFile>> currentRevisionFiles;
+  private volatile String currentVersion;
+  private volatile InfoStream infoStream = InfoStream.getDefault();
+
+  /**
+   * Constructor with the given index directory, the factory of the searchers
+   * over the replicated index (or {@code null} to use the default one) and
+   * callback to notify when a new revision can be searched.
+   */
+  public NRTReplicationHandler(Directory indexDir, SearcherFactory searcherFactory, Callable<Boolean> callback) throws IOException {
+    this.indexDir = indexDir;
+    this.searcherFactory = searcherFactory == null ? new SearcherFactory() : searcherFactory;
+    this.callback = callback;
+    currentRevisionFiles = null;
+    currentVersion = null;
+
+    // left overs of a previous replica can't be reused, see class javadocs
+    Matcher matcher = IndexFileNames.CODEC_FILE_PATTERN.matcher("");
+    for (String file : indexDir.listAll()) {
+      if (matcher.reset(file).matches() || file.startsWith(IndexFileNames.SEGMENTS)) {
+        indexDir.deleteFile(file);
+      }
+    }
+
+    final IndexSearcher searcher = openSearcher(new SegmentInfos(), null);
+    searcherManager = new ReplicaSearcherManager(searcher);
+  }
+
+  @Override
+  public String currentVersion() {
+    return currentVersion;
+  }
+
+  @Override
+  public Map<String,List<RevisionFile>> currentRevisionFiles() {
+    return currentRevisionFiles;
+  }
+
+  /**
+   * Returns the {@link ReferenceManager} of the searchers over the replicated
+   * index. It is refreshed by this handler when a new revision is ready.
+   */
+  public ReferenceManager<IndexSearcher> getSearcherManager() {
+    return searcherManager;
+  }
+
+  /**
+   * Verifies that the last file is the file of the segment infos of the
+   * revision, and removes and returns it from the list. It must not be copied
+   * to the index directory with the other files.
+   */
+  static String getInfosFile(List<String> files) {
+    if (files.isEmpty()) {
+      throw new IllegalStateException("empty list of files not allowed");
+    }
+    String infosFile = files.remove(files.size() - 1);
+    if (!infosFile.startsWith(NRTIndexRevision.INFOS_FILE_PREFIX)) {
+      throw new IllegalStateException("last file to copy must be " + NRTIndexRevision.INFOS_FILE_PREFIX + "* but got "
+          + infosFile + "; check your Revision implementation!");
+    }
+    return infosFile;
+  }
+
+  @Override
+  public void revisionReady(String version, Map<String,List<RevisionFile>> revisionFiles,
+      Map<String,List<String>> copiedFiles, Map<String,Directory> sourceDirectory) throws IOException {
+    if (revisionFiles.size() > 1) {
+      throw new IllegalArgumentException("this handler handles only a single source; got " + revisionFiles.keySet());
+    }
+
+    Directory clientDir = sourceDirectory.values().iterator().next();
+    List<String> files = copiedFiles.values().iterator().next();
+    String infosFile = getInfosFile(files);
+
+    IndexSearcher searcher = null;
+    boolean success = false;
+    try {
+      // copy files from the client to index directory, they don't need to be
+      // fsync'd since the replica does not commit
+      IndexReplicationHandler.copyFiles(clientDir, indexDir, files);
+
+      final SegmentInfos infos = NRTIndexRevision.readSegmentInfos(clientDir, infosFile, indexDir);
+      final IndexSearcher current = searcherManager.acquire();
+      try {
+        searcher = openSearcher(infos, (DirectoryReader) current.getIndexReader());
+      } finally {
+        searcherManager.release(current);
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        synchronized (this) {
+          for (String file : files) {
+            if (fileRefCounts.containsKey(file) == false) {
+              IOUtils.deleteFilesIgnoringExceptions(indexDir, file);
+            }
+          }
+        }
+      }
+    }
+
+    final Map<String,List<RevisionFile>> previousRevisionFiles;
+    synchronized (this) {
+      // the files of the revision, which may include files that are not used
+      // by its segment infos yet, are kept for as long as it is current
+      incRef(fileNames(revisionFiles));
+      previousRevisionFiles = currentRevisionFiles;
+      currentRevisionFiles = revisionFiles;
+      currentVersion = version;
+      if (previousRevisionFiles != null) {
+        decRef(fileNames(previousRevisionFiles));
+      }
+      if (pendingSearcher != null) {
+        pendingSearcher.getIndexReader().decRef();
+      }
+      pendingSearcher = searcher;
+    }
+
+    if (infoStream.isEnabled(INFO_STREAM_COMPONENT)) {
+      infoStream.message(INFO_STREAM_COMPONENT, "revisionReady(): currentVersion=" + currentVersion
+          + " currentRevisionFiles=" + currentRevisionFiles);
+    }
+
+    searcherManager.maybeRefreshBlocking();
+
+    // successfully updated the index, notify the callback that the index is
+    // ready.
+    if (callback != null) {
+      try {
+        callback.call();
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+    }
+  }
+
+  private static List<String> fileNames(Map<String,List<RevisionFile>> revisionFiles) {
+    final List<String> fileNames = new ArrayList<>();
+    for (List<RevisionFile> files : revisionFiles.values()) {
+      for (RevisionFile file : files) {
+        if (!file.fileName.startsWith(NRTIndexRevision.INFOS_FILE_PREFIX)) {
+          fileNames.add(file.fileName);
+        }
+      }
+    }
+    return fileNames;
+  }
+
+  /** Open a searcher over the given segment infos, which holds references to their files until its reader is closed. */
+  private IndexSearcher openSearcher(SegmentInfos infos, DirectoryReader previousReader) throws IOException {
+    final List<LeafReader> oldReaders = new ArrayList<>();
+    if (previousReader != null) {
+      for (LeafReaderContext ctx : previousReader.leaves()) {
+        oldReaders.add(ctx.reader());
+      }
+    }
+    final DirectoryReader reader = StandardDirectoryReader.open(indexDir, infos, oldReaders);
+    final Collection<String> readerFiles = infos.files(false);
+    synchronized (this) {
+      incRef(readerFiles);
+    }
+    reader.addReaderClosedListener(new IndexReader.ReaderClosedListener() {
+      @Override
+      public void onClose(IndexReader reader) {
+        synchronized (NRTReplicationHandler.this) {
+          decRef(readerFiles);
+        }
+      }
+    });
+    boolean success = false;
+    try {
+      final IndexSearcher searcher = SearcherManager.getSearcher(searcherFactory, reader, previousReader);
+      success = true;
+      return searcher;
+    } finally {
+      if (!success) {
+        reader.close();
+      }
+    }
+  }
+
+  private void incRef(Collection<String> files) {
+    assert Thread.holdsLock(this);
+    for (String file : files) {
+      final Integer count = fileRefCounts.get(file);
+      fileRefCounts.put(file, count == null ? 1 : count + 1);
+    }
+  }
+
+  private void decRef(Collection<String> files) {
+    assert Thread.holdsLock(this);
+    for (String file : files) {
+      final int count = fileRefCounts.get(file);
+      if (count == 1) {
+        fileRefCounts.remove(file);
+        // suppress exceptions, the file will be deleted when the replica restarts
+        IOUtils.deleteFilesIgnoringExceptions(indexDir, file);
+        if (infoStream.isEnabled(INFO_STREAM_COMPONENT)) {
+          infoStream.message(INFO_STREAM_COMPONENT, "deleted unused file " + file);
+        }
+      } else {
+        fileRefCounts.put(file, count - 1);
+      }
+    }
+  }
+
+  /** Sets the {@link InfoStream} to use for logging messages. */
+  public void setInfoStream(InfoStream infoStream) {
+    if (infoStream == null) {
+      infoStream = InfoStream.NO_OUTPUT;
+    }
+    this.infoStream = infoStream;
+  }
+
+  /**
+   * Closes the searcher manager. Files of the index directory are deleted once
+   * all searchers that were acquired from it are released.
+   */
+  @Override
+  public void close() throws IOException {
+    final IndexSearcher pending;
+    synchronized (this) {
+      pending = pendingSearcher;
+      pendingSearcher = null;
+      if (currentRevisionFiles != null) {
+        decRef(fileNames(currentRevisionFiles));
+        currentRevisionFiles = null;
+        currentVersion = null;
+      }
+    }
+    IOUtils.close(searcherManager, pending == null ? null : pending.getIndexReader());
+  }
+
+  /** Hands out the searchers opened by this handler. */
+  private final class ReplicaSearcherManager extends ReferenceManager<IndexSearcher> {
+
+    ReplicaSearcherManager(IndexSearcher searcher) {
+      current = searcher;
+    }
+
+    @Override
+    protected void decRef(IndexSearcher reference) throws IOException {
+      reference.getIndexReader().decRef();
+    }
+
+    @Override
+    protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+      synchronized (NRTReplicationHandler.this) {
+        final IndexSearcher searcher = pendingSearcher;
+        pendingSearcher = null;
+        return searcher;
+      }
+    }
+
+    @Override
+    protected boolean tryIncRef(IndexSearcher reference) {
+      return reference.getIndexReader().tryIncRef();
+    }
+
+    @Override
+    protected int getRefCount(IndexSearcher reference) {
+      return reference.getIndexReader().getRefCount();
+    }
+  }
+
+}
@@ -37,6 +37,12 @@
  * <a href="IndexAndTaxonomyReplicationHandler.html">IndexAndTaxonomyReplicationHandler</a> on the client.
  *
  * <p>
+ * Near-real-time views of an index can be replicated without committing: the application publishes them with an
+ * <a href="NRTIndexPublisher.html">NRTIndexPublisher</a>, which can also pre-copy merged segments before merges complete,
+ * and sets <a href="NRTReplicationHandler.html">NRTReplicationHandler</a> on the client, whose searcher manager is
+ * refreshed on every new revision.
+ *
+ * <p>
  * When the replication client detects that there is a newer revision available, it copies the files of the revision and
  * then invokes the handler to complete the operation (e.g. copy the files to the index directory, fsync them, reopen an
  * index reader etc.). By default, only files that do not exist in the handler's
@@ -0,0 +1,299 @@
+package org.apache.lucene.replicator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriter.IndexReaderWarmer;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.MockDirectoryWrapper;
+import org.apache.lucene.util.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NRTReplicationClientTest extends ReplicatorTestCase {
+
+  private MockDirectoryWrapper publishDir, handlerDir;
+  private Replicator replicator;
+  // LocalReplicator does not release its current revision on close
+  private Revision lastRevision;
+  private ReplicationClient client;
+  private NRTReplicationHandler handler;
+  private IndexWriter publishWriter;
+  private NRTIndexPublisher publisher;
+  private final AtomicInteger callbackCount = new AtomicInteger();
+  // the files that the client had to copy on its last update
+  private final List<String> lastRequiredFiles = new ArrayList<>();
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    publishDir = newMockDirectory();
+    handlerDir = newMockDirectory();
+    // the replica deletes the files of closed readers, which may still be open on windows
+    handlerDir.setNoDeleteOpenFile(false);
+    // the replica does not retry to delete files until it restarts
+    handlerDir.setEnableVirusScanner(false);
+    replicator = new LocalReplicator() {
+      @Override
+      public void publish(Revision revision) throws IOException {
+        super.publish(revision);
+        lastRevision = revision;
+      }
+    };
+    handler = new NRTReplicationHandler(handlerDir, null, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        callbackCount.incrementAndGet();
+        return null;
+      }
+    });
+    client = new ReplicationClient(replicator, handler, new PerSessionDirectoryFactory(createTempDir("nrtReplicationClientTest"))) {
+      @Override
+      protected Map<String,List<RevisionFile>> requiredFiles(Map<String,List<RevisionFile>> newRevisionFiles) {
+        final Map<String,List<RevisionFile>> requiredFiles = super.requiredFiles(newRevisionFiles);
+        lastRequiredFiles.clear();
+        for (RevisionFile file : requiredFiles.values().iterator().next()) {
+          lastRequiredFiles.add(file.fileName);
+        }
+        return requiredFiles;
+      }
+    };
+
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    // merges only happen when the test asks for them
+    conf.setMergePolicy(newLogMergePolicy(1000));
+    conf.setMergeScheduler(new SerialMergeScheduler());
+    publishWriter = new IndexWriter(publishDir, conf);
+  }
+
+  @After
+  @Override
+  public void tearDown() throws Exception {
+    IOUtils.close(publisher, client, handler, replicator);
+    if (lastRevision != null) {
+      lastRevision.release();
+    }
+    IOUtils.close(publishWriter, publishDir, handlerDir);
+    super.tearDown();
+  }
+
+  private void addDocuments(int from, int to) throws IOException {
+    for (int i = from; i < to; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      publishWriter.addDocument(doc);
+    }
+  }
+
+  private int replicaCount(TermQuery query) throws IOException {
+    final IndexSearcher searcher = handler.getSearcherManager().acquire();
+    try {
+      return query == null ? searcher.count(new MatchAllDocsQuery()) : searcher.count(query);
+    } finally {
+      handler.getSearcherManager().release(searcher);
+    }
+  }
+
+  @Test
+  public void testReplicateWithoutCommit() throws Exception {
+    publisher = new NRTIndexPublisher(publishWriter, replicator, false);
+    assertNull("no version expected at start", handler.currentVersion());
+    assertEquals(0, replicaCount(null));
+
+    addDocuments(0, 20);
+    assertTrue(publisher.publish());
+    // nothing changed
+    assertFalse(publisher.publish());
+    client.updateNow();
+    assertEquals(1, callbackCount.get());
+    assertEquals(20, replicaCount(null));
+
+    // deletes are replicated too
+    publishWriter.deleteDocuments(new Term("id", "3"));
+    addDocuments(20, 30);
+    assertTrue(publisher.publish());
+    client.updateNow();
+    assertEquals(2, callbackCount.get());
+    assertEquals(29, replicaCount(null));
+    assertEquals(0, replicaCount(new TermQuery(new Term("id", "3"))));
+
+    // the primary never committed
+    assertFalse(DirectoryReader.indexExists(publishDir));
+    try (DirectoryReader primaryReader = DirectoryReader.open(publishWriter, true)) {
+      final IndexSearcher searcher = handler.getSearcherManager().acquire();
+      try {
+        assertEquals(primaryReader.getVersion(), ((DirectoryReader) searcher.getIndexReader()).getVersion());
+      } finally {
+        handler.getSearcherManager().release(searcher);
+      }
+    }
+  }
+
+  @Test
+  public void testOnlyCopyNewFiles() throws Exception {
+    publisher = new NRTIndexPublisher(publishWriter, replicator, false);
+    addDocuments(0, 10);
+    publisher.publish();
+    client.updateNow();
+    IndexSearcher searcher = handler.getSearcherManager().acquire();
+    final Set<Object> coreKeys = new HashSet<>();
+    for (int i = 0; i < searcher.getIndexReader().leaves().size(); ++i) {
+      coreKeys.add(searcher.getIndexReader().leaves().get(i).reader().getCoreCacheKey());
+    }
+    handler.getSearcherManager().release(searcher);
+    final Set<String> firstFiles = new HashSet<>(lastRequiredFiles);
+
+    addDocuments(10, 20);
+    publisher.publish();
+    client.updateNow();
+    assertEquals(20, replicaCount(null));
+    for (String file : lastRequiredFiles) {
+      assertFalse(file + " was copied twice", firstFiles.contains(file));
+    }
+    // readers of unchanged segments are reused
+    searcher = handler.getSearcherManager().acquire();
+    try {
+      int reused = 0;
+      for (int i = 0; i < searcher.getIndexReader().leaves().size(); ++i) {
+        if (coreKeys.contains(searcher.getIndexReader().leaves().get(i).reader().getCoreCacheKey())) {
+          reused++;
+        }
+      }
+      assertEquals(coreKeys.size(), reused);
+    } finally {
+      handler.getSearcherManager().release(searcher);
+    }
+  }
+
+  @Test
+  public void testPreCopyMergedSegments() throws Exception {
+    final Set<String> mergedFiles = new HashSet<>();
+    publishWriter.getConfig().setMergedSegmentWarmer(new IndexReaderWarmer() {
+      @Override
+      public void warm(LeafReader reader) throws IOException {
+        // the publisher pre-copies before calling this warmer: replicate the merged segment now
+        mergedFiles.addAll(((SegmentReader) reader).getSegmentInfo().files());
+        client.updateNow();
+        assertTrue(lastRequiredFiles.containsAll(mergedFiles));
+      }
+    });
+    publisher = new NRTIndexPublisher(publishWriter, replicator, true);
+    for (int i = 0; i < 5; ++i) {
+      addDocuments(i * 10, (i + 1) * 10);
+      // flush a new segment
+      DirectoryReader.open(publishWriter, true).close();
+    }
+    publisher.publish();
+    client.updateNow();
+    final String version = handler.currentVersion();
+
+    publishWriter.forceMerge(1);
+    assertFalse(mergedFiles.isEmpty());
+    // the pre-copy revision has the same segment infos as the previous one
+    assertEquals(version.substring(0, version.indexOf('_')) + "_1", handler.currentVersion());
+    assertEquals(50, replicaCount(null));
+
+    publisher.publish();
+    client.updateNow();
+    assertEquals(50, replicaCount(null));
+    for (String file : lastRequiredFiles) {
+      assertFalse(file + " was copied twice", mergedFiles.contains(file));
+    }
+
+    // files of the merged away segments are deleted once no reader uses them
+    final Set<String> revisionFiles = new HashSet<>();
+    for (RevisionFile file : handler.currentRevisionFiles().values().iterator().next()) {
+      revisionFiles.add(file.fileName);
+    }
+    for (String file : handlerDir.listAll()) {
+      if (file.startsWith("extra") == false) {
+        assertTrue(file + " should have been deleted, current files: " + revisionFiles + ", all files: "
+            + Arrays.toString(handlerDir.listAll()), revisionFiles.contains(file));
+      }
+    }
+  }
+
+  @Test
+  public void testPreCopiedFilesOfAbortedMerge() throws Exception {
+    // files of the aborted merge must be deleted right away once unused
+    publishDir.setEnableVirusScanner(false);
+    final Set<String> mergedFiles = new HashSet<>();
+    publishWriter.getConfig().setMergedSegmentWarmer(new IndexReaderWarmer() {
+      @Override
+      public void warm(LeafReader reader) throws IOException {
+        mergedFiles.addAll(((SegmentReader) reader).getSegmentInfo().files());
+        throw new IOException("fake merge failure");
+      }
+    });
+    publisher = new NRTIndexPublisher(publishWriter, replicator, true);
+    for (int i = 0; i < 5; ++i) {
+      addDocuments(i * 10, (i + 1) * 10);
+      // flush a new segment
+      DirectoryReader.open(publishWriter, true).close();
+    }
+    publisher.publish();
+    client.updateNow();
+
+    try {
+      publishWriter.forceMerge(1);
+      fail();
+    } catch (IOException e) {
+      assertEquals("fake merge failure", e.getMessage());
+    }
+    assertFalse(mergedFiles.isEmpty());
+    // the revision that lists the merged segment still holds its files
+    assertTrue(Arrays.asList(publishDir.listAll()).containsAll(mergedFiles));
+    client.updateNow();
+    assertTrue(lastRequiredFiles.containsAll(mergedFiles));
+
+    // the next revision does not list them anymore, and the writer deletes
+    // them once the previous revision is released
+    addDocuments(50, 60);
+    assertTrue(publisher.publish());
+    client.updateNow();
+    assertEquals(60, replicaCount(null));
+    for (String file : publishDir.listAll()) {
+      assertFalse(file + " should have been deleted", mergedFiles.contains(file));
+    }
+  }
+
+}
@@ -148,14 +148,14 @@ class BKDTreeWriter {
 
     // For each .add we just append to this input file, then in .finish we sort this input and resursively build the tree:
     tempInput = tempDir.resolve("in");
-    writer = new OfflineSorter.ByteSequencesWriter(tempInput);
+    // all records are BYTES_PER_DOC long, so they are written without their length:
+    writer = new OfflineSorter.ByteSequencesWriter(tempInput, BYTES_PER_DOC);
     for(int i=0;i<pointCount;i++) {
       scratchBytesOutput.reset(scratchBytes);
       scratchBytesOutput.writeInt(heapWriter.latEncs[i]);
       scratchBytesOutput.writeInt(heapWriter.lonEncs[i]);
       scratchBytesOutput.writeVInt(heapWriter.docIDs[i]);
       scratchBytesOutput.writeVLong(i);
-      // TODO: can/should OfflineSorter optimize the fixed-width case?
       writer.write(scratchBytes, 0, scratchBytes.length);
     }
 
@@ -198,7 +198,7 @@ class BKDTreeWriter {
     LatLonWriter sortedWriter = null;
     boolean success = false;
     try {
-      reader = new OfflineSorter.ByteSequencesReader(in);
+      reader = new OfflineSorter.ByteSequencesReader(in, BYTES_PER_DOC);
       sortedWriter = getWriter(pointCount);
       for (long i=0;i<pointCount;i++) {
         boolean result = reader.read(scratch);
@@ -335,7 +335,8 @@ class BKDTreeWriter {
       Path sorted = tempDir.resolve("sorted");
       boolean success = false;
       try {
-        OfflineSorter latSorter = new OfflineSorter(cmp, OfflineSorter.BufferSize.automatic(), tempDir, OfflineSorter.MAX_TEMPFILES);
+        OfflineSorter latSorter = new OfflineSorter(cmp, OfflineSorter.BufferSize.automatic(), tempDir, OfflineSorter.MAX_TEMPFILES,
+                                                    BYTES_PER_DOC, null, 1);
         latSorter.sort(tempInput, sorted);
         LatLonWriter writer = convertToFixedWidth(sorted);
         success = true;
@@ -20,11 +20,14 @@ package org.apache.lucene.search.suggest.analyzing;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,9 +36,12 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.AnalyzerWrapper;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene53.Lucene53Codec;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -48,6 +54,7 @@ import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReader;
@@ -58,6 +65,7 @@ import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.SortingMergePolicy;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -76,13 +84,22 @@ import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.suggest.InputIterator;
 import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.document.Completion50PostingsFormat;
+import org.apache.lucene.search.suggest.document.CompletionAnalyzer;
+import org.apache.lucene.search.suggest.document.PrefixCompletionQuery;
+import org.apache.lucene.search.suggest.document.SuggestField;
+import org.apache.lucene.search.suggest.document.SuggestIndexSearcher;
+import org.apache.lucene.search.suggest.document.TopSuggestDocs.SuggestScoreDoc;
+import org.apache.lucene.search.suggest.document.TopSuggestDocsCollector;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
 
 // TODO:
@@ -106,6 +123,18 @@ import org.apache.lucene.util.RamUsageEstimator;
  *  <p>This suggester supports contexts, including arbitrary binary
  *  terms.
  *
+ *  <p>Suggestions can be added, updated and deleted while the
+ *  suggester serves lookups, and become visible after {@link #refresh}.
+ *  Lookups do not lock: they search the last refreshed point-in-time
+ *  view of the suggestions, which {@link #build} also refreshes once
+ *  the new suggestions are indexed.
+ *
+ *  <p>Optionally, the analyzed tokens of the suggestions are also
+ *  indexed in a completion FST (see {@link SuggestField}), which answers
+ *  lookups of a single, unfinished token without a context filter.
+ *  The infix query is used whenever the FST can't give exactly the same
+ *  suggestions.
+ *
  * @lucene.experimental */    
 
 public class AnalyzingInfixSuggester extends Lookup implements Closeable {
@@ -121,6 +150,15 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
    *  StringField and a SortedSetDVField, for filtering. */
   protected final static String CONTEXTS_FIELD_NAME = "contexts";
 
+  /** Field name used for the completion FST of the analyzed
+   *  tokens, when the completion fast path is enabled. */
+  protected final static String COMPLETION_FIELD_NAME = "completion";
+
+  /** Maximum weight of a suggestion that is indexed in the
+   *  completion FST: completions are scored with floats, which
+   *  represent integers exactly up to 2^24. */
+  static final long MAX_COMPLETION_WEIGHT = 1 << 24;
+
   /** Analyzer used at search time */
   protected final Analyzer queryAnalyzer;
   /** Analyzer used at index time */
@@ -132,12 +170,14 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
   private final boolean highlight;
   
   private final boolean commitOnBuild;
+  private final boolean completionFastPath;
+  private final Analyzer completionAnalyzer;
 
   /** Used for ongoing NRT additions/updates. */
-  private IndexWriter writer;
+  private volatile IndexWriter writer;
 
   /** {@link IndexSearcher} used for lookups. */
-  protected SearcherManager searcherMgr;
+  protected volatile SearcherManager searcherMgr;
 
   /** Default minimum number of leading characters before
    *  PrefixQuery is used (4). */
@@ -203,6 +243,39 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
   public AnalyzingInfixSuggester(Directory dir, Analyzer indexAnalyzer, Analyzer queryAnalyzer, int minPrefixChars,
                                  boolean commitOnBuild, 
                                  boolean allTermsRequired, boolean highlight) throws IOException {
+    this(dir, indexAnalyzer, queryAnalyzer, minPrefixChars, commitOnBuild, allTermsRequired, highlight, false);
+  }
+
+  /** Create a new instance, loading from a previously built
+   *  AnalyzingInfixSuggester directory, if it exists.  This directory must be
+   *  private to the infix suggester (i.e., not an external
+   *  Lucene index).  Note that {@link #close}
+   *  will also close the provided directory.
+   *
+   *  @param minPrefixChars Minimum number of leading characters
+   *     before PrefixQuery is used (default 4).
+   *     Prefixes shorter than this are indexed as character
+   *     ngrams (increasing index size but making lookups
+   *     faster).
+   *
+   *  @param commitOnBuild Call commit after the index has finished building. This would persist the
+   *                       suggester index to disk and future instances of this suggester can use this pre-built dictionary.
+   *
+   *  @param allTermsRequired All terms in the suggest query must be matched.
+   *  @param highlight Highlight suggest query in suggestions.
+   *  @param completionFastPath Also index the tokens of the suggestions in a completion FST, and
+   *                            use it for lookups of a single unfinished token without context.
+   *                            Only suggestions with a weight between 0 and 2^24 are indexed
+   *                            in the FST; lookups fall back to the infix query if a segment has
+   *                            suggestions that are not in the FST, or deleted suggestions.
+   *                            The FST is used instead of {@link #getLastTokenQuery} and
+   *                            {@link #finishQuery}. This requires the default codec, see
+   *                            {@link #getIndexWriterConfig}.
+   *
+   */
+  public AnalyzingInfixSuggester(Directory dir, Analyzer indexAnalyzer, Analyzer queryAnalyzer, int minPrefixChars,
+                                 boolean commitOnBuild, boolean allTermsRequired, boolean highlight,
+                                 boolean completionFastPath) throws IOException {
                                     
     if (minPrefixChars < 0) {
       throw new IllegalArgumentException("minPrefixChars must be >= 0; got: " + minPrefixChars);
@@ -215,6 +288,8 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     this.commitOnBuild = commitOnBuild;
     this.allTermsRequired = allTermsRequired;
     this.highlight = highlight;
+    this.completionFastPath = completionFastPath;
+    this.completionAnalyzer = completionFastPath ? new CompletionAnalyzer(new KeywordAnalyzer()) : null;
 
     if (DirectoryReader.indexExists(dir)) {
       // Already built; open it:
@@ -235,6 +310,19 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     // when those segments are searched:
     iwc.setMergePolicy(new SortingMergePolicy(iwc.getMergePolicy(), SORT));
 
+    if (completionFastPath) {
+      final PostingsFormat completionPostingsFormat = new Completion50PostingsFormat();
+      iwc.setCodec(new Lucene53Codec() {
+        @Override
+        public PostingsFormat getPostingsFormatForField(String field) {
+          if (COMPLETION_FIELD_NAME.equals(field)) {
+            return completionPostingsFormat;
+          }
+          return super.getPostingsFormatForField(field);
+        }
+      });
+    }
+
     return iwc;
   }
 
@@ -244,39 +332,33 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     return FSDirectory.open(path);
   }
 
+  /** Replaces all suggestions with the ones of the given
+   *  iterator.  If the suggester is already open, the new
+   *  suggestions are indexed into a temporary index first:
+   *  lookups keep seeing the previous suggestions until the
+   *  new ones are indexed, and then see the new ones.  If
+   *  building fails, the suggester is left as it was,
+   *  including suggestions that were added, updated or
+   *  deleted but not refreshed yet. */
   @Override
-  public void build(InputIterator iter) throws IOException {
-    
-    if (searcherMgr != null) {
-      searcherMgr.close();
-      searcherMgr = null;
-    }
+  public synchronized void build(InputIterator iter) throws IOException {
 
     if (writer != null) {
-      writer.close();
-      writer = null;
+      rebuild(iter);
+      return;
     }
 
     boolean success = false;
     try {
-      // First pass: build a temporary normal Lucene index,
-      // just indexing the suggestions as they iterate:
+      if (searcherMgr != null) {
+        searcherMgr.close();
+        searcherMgr = null;
+      }
       writer = new IndexWriter(dir,
                                getIndexWriterConfig(getGramAnalyzer(), IndexWriterConfig.OpenMode.CREATE));
       //long t0 = System.nanoTime();
 
-      // TODO: use threads?
-      BytesRef text;
-      while ((text = iter.next()) != null) {
-        BytesRef payload;
-        if (iter.hasPayloads()) {
-          payload = iter.payload();
-        } else {
-          payload = null;
-        }
-
-        add(text, iter.contexts(), iter.weight(), payload);
-      }
+      addAll(writer, iter);
 
       //System.out.println("initial indexing time: " + ((System.nanoTime()-t0)/1000000) + " msec");
       if (commitOnBuild) {
@@ -292,6 +374,51 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     }
   }
 
+  // builds the new suggestions next to the live index, and only
+  // replaces the live suggestions once all of them are indexed
+  private void rebuild(InputIterator iter) throws IOException {
+    Path tempIndexPath = Files.createTempDirectory(getClass().getSimpleName() + ".index.");
+    try {
+      try (Directory tempDir = getDirectory(tempIndexPath)) {
+        IndexWriter tempWriter = new IndexWriter(tempDir,
+                                                 getIndexWriterConfig(getGramAnalyzer(), IndexWriterConfig.OpenMode.CREATE));
+        boolean success = false;
+        try {
+          addAll(tempWriter, iter);
+          tempWriter.close();
+          success = true;
+        } finally {
+          if (success == false) {
+            tempWriter.rollback();
+          }
+        }
+        writer.deleteAll();
+        writer.addIndexes(tempDir);
+      }
+    } finally {
+      IOUtils.rm(tempIndexPath);
+    }
+    if (commitOnBuild) {
+      commit();
+    }
+    searcherMgr.maybeRefreshBlocking();
+  }
+
+  private void addAll(IndexWriter writer, InputIterator iter) throws IOException {
+    // TODO: use threads?
+    BytesRef text;
+    while ((text = iter.next()) != null) {
+      BytesRef payload;
+      if (iter.hasPayloads()) {
+        payload = iter.payload();
+      } else {
+        payload = null;
+      }
+
+      writer.addDocument(buildDocument(text, iter.contexts(), iter.weight(), payload));
+    }
+  }
+
   /** Commits all pending changes made to this suggester to disk.
    *
    *  @see IndexWriter#commit */
@@ -306,6 +433,10 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     return new AnalyzerWrapper(Analyzer.PER_FIELD_REUSE_STRATEGY) {
       @Override
       protected Analyzer getWrappedAnalyzer(String fieldName) {
+        if (fieldName.equals(COMPLETION_FIELD_NAME)) {
+          // the completions are tokens that were analyzed already
+          return completionAnalyzer;
+        }
         return indexAnalyzer;
       }
 
@@ -357,6 +488,15 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
                           buildDocument(text, contexts, weight, payload));
   }
 
+  /** Deletes a previous suggestion, matching the exact same
+   *  text as before.  After adding, updating or deleting a
+   *  batch of suggestions, you must call {@link #refresh} in
+   *  the end in order to see the changes in {@link #lookup} */
+  public void delete(BytesRef text) throws IOException {
+    ensureOpen();
+    writer.deleteDocuments(new Term(EXACT_TEXT_FIELD_NAME, text.utf8ToString()));
+  }
+
   private Document buildDocument(BytesRef text, Set<BytesRef> contexts, long weight, BytesRef payload) throws IOException {
     String textString = text.utf8ToString();
     Document doc = new Document();
@@ -375,9 +515,40 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
         doc.add(new SortedSetDocValuesField(CONTEXTS_FIELD_NAME, context));
       }
     }
+    if (completionFastPath && weight >= 0 && weight <= MAX_COMPLETION_WEIGHT) {
+      addCompletions(doc, textString, (int) weight);
+    }
     return doc;
   }
 
+  /** Adds the distinct analyzed tokens of the text to the
+   *  completion FST, or nothing if one of them can't be
+   *  indexed as a completion, so that lookups of this
+   *  segment fall back to the infix query. */
+  private void addCompletions(Document doc, String text, int weight) throws IOException {
+    Set<String> tokens = new LinkedHashSet<>();
+    try (TokenStream ts = indexAnalyzer.tokenStream(TEXT_FIELD_NAME, new StringReader(text))) {
+      CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+      ts.reset();
+      while (ts.incrementToken()) {
+        tokens.add(termAtt.toString());
+      }
+      ts.end();
+    }
+    List<SuggestField> completions = new ArrayList<>();
+    for (String token : tokens) {
+      try {
+        completions.add(new SuggestField(COMPLETION_FIELD_NAME, token, weight));
+      } catch (IllegalArgumentException e) {
+        // empty token, or token with a reserved character
+        return;
+      }
+    }
+    for (SuggestField completion : completions) {
+      doc.add(completion);
+    }
+  }
+
   /** Reopens the underlying searcher; it's best to "batch
    *  up" many additions/updates, and then call refresh
    *  once in the end. */
@@ -493,7 +664,10 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
    */
   public List<LookupResult> lookup(CharSequence key, BooleanQuery contextQuery, int num, boolean allTermsRequired, boolean doHighlight) throws IOException {
 
-    if (searcherMgr == null) {
+    // read the writer and searcher manager only once, lookups don't lock
+    final IndexWriter writer = this.writer;
+    final SearcherManager searcherMgr = this.searcherMgr;
+    if (writer == null || searcherMgr == null) {
       throw new IllegalStateException("suggester was not built");
     }
 
@@ -593,9 +767,15 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     List<LookupResult> results = null;
     try {
       //System.out.println("got searcher=" + searcher);
-      searcher.search(finalQuery, c2);
-
-      TopFieldDocs hits = c.topDocs();
+      TopFieldDocs hits = null;
+      if (completionFastPath && contextQuery == null && prefixToken != null && matchedTokens.isEmpty()) {
+        // a single unfinished token: try the completion FST
+        hits = lookupCompletions(searcher.getIndexReader(), prefixToken, num);
+      }
+      if (hits == null) {
+        searcher.search(finalQuery, c2);
+        hits = c.topDocs();
+      }
 
       // Slower way if postings are not pre-sorted by weight:
       // hits = searcher.search(query, null, num, SORT);
@@ -610,6 +790,57 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
     return results;
   }
   
+  /** Returns the top suggestions that have a token starting
+   *  with the given prefix according to the completion FST,
+   *  sorted like the infix query sorts them, or null if the
+   *  FST can't tell exactly which suggestions are the top
+   *  ones. */
+  private TopFieldDocs lookupCompletions(IndexReader reader, String prefix, int num) throws IOException {
+    // deleted suggestions make the top N search of the FST inexact
+    if (reader.maxDoc() == 0 || reader.hasDeletions()) {
+      return null;
+    }
+    for (LeafReaderContext context : reader.leaves()) {
+      Terms terms = context.reader().terms(COMPLETION_FIELD_NAME);
+      if (terms == null || terms.getDocCount() != context.reader().maxDoc()) {
+        // some suggestions of this segment are not in the FST
+        return null;
+      }
+    }
+
+    // collect one more completion to detect ties with the last top one
+    TopSuggestDocsCollector collector = new TopSuggestDocsCollector(num + 1);
+    new SuggestIndexSearcher(reader).suggest(
+        new PrefixCompletionQuery(completionAnalyzer, new Term(COMPLETION_FIELD_NAME, prefix)), collector);
+    SuggestScoreDoc[] completions = collector.get().scoreLookupDocs();
+
+    Set<Integer> docs = new HashSet<>();
+    for (SuggestScoreDoc completion : completions) {
+      if (docs.add(completion.doc) == false) {
+        // several tokens of this suggestion match, so less than num
+        // distinct suggestions may have been collected
+        return null;
+      }
+    }
+    if (completions.length > num && completions[num].score == completions[num - 1].score) {
+      // the infix query breaks ties by doc ID
+      return null;
+    }
+
+    FieldDoc[] hits = new FieldDoc[Math.min(num, completions.length)];
+    for (int i = 0; i < hits.length; i++) {
+      hits[i] = new FieldDoc(completions[i].doc, Float.NaN, new Object[] {Long.valueOf((long) completions[i].score)});
+    }
+    ArrayUtil.timSort(hits, new Comparator<FieldDoc>() {
+      @Override
+      public int compare(FieldDoc a, FieldDoc b) {
+        int cmp = Long.compare((Long) b.fields[0], (Long) a.fields[0]);
+        return cmp != 0 ? cmp : Integer.compare(a.doc, b.doc);
+      }
+    });
+    return new TopFieldDocs(hits.length, hits, SORT.getSort(), Float.NaN);
+  }
+
   /**
    * Create the results based on the search hits.
    * Can be overridden by subclass to add particular behavior (e.g. weight transformation).
@@ -785,6 +1016,9 @@ public class AnalyzingInfixSuggester extends Lookup implements Closeable {
       dir.close();
       writer = null;
     }
+    if (completionAnalyzer != null) {
+      completionAnalyzer.close();
+    }
   }
 
   @Override
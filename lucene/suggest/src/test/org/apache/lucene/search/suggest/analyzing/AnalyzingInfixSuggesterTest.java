@@ -38,9 +38,13 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.suggest.Input;
 import org.apache.lucene.search.suggest.InputArrayIterator;
+import org.apache.lucene.search.suggest.InputIterator;
 import org.apache.lucene.search.suggest.Lookup.LookupResult;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
@@ -932,6 +936,224 @@ public class AnalyzingInfixSuggesterTest extends LuceneTestCase {
     }
   }
 
+  public void testDelete() throws Exception {
+    Input keys[] = new Input[] {
+      new Input("lend me your ear", 8, new BytesRef("foobar")),
+      new Input("a penny saved is a penny earned", 10, new BytesRef("foobaz")),
+    };
+
+    Analyzer a = new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false);
+    AnalyzingInfixSuggester suggester = new AnalyzingInfixSuggester(newDirectory(), a, a, 3, false);
+    suggester.build(new InputArrayIterator(keys));
+
+    suggester.delete(new BytesRef("a penny saved is a penny earned"));
+    // the deletion is only visible after refresh:
+    assertEquals(2, suggester.lookup(TestUtil.stringToCharSequence("ear", random()), 10, true, true).size());
+    suggester.refresh();
+
+    List<LookupResult> results = suggester.lookup(TestUtil.stringToCharSequence("ear", random()), 10, true, true);
+    assertEquals(1, results.size());
+    assertEquals("lend me your ear", results.get(0).key);
+    assertEquals(1, suggester.getCount());
+
+    suggester.close();
+    a.close();
+  }
+
+  public void testCompletionFastPath() throws Exception {
+    Analyzer a = new MockAnalyzer(random(), MockTokenizer.WHITESPACE, true);
+    int minPrefixChars = random().nextInt(5);
+    AnalyzingInfixSuggester infix = new AnalyzingInfixSuggester(newDirectory(), a, a, minPrefixChars, false);
+    AnalyzingInfixSuggester completion = new AnalyzingInfixSuggester(newDirectory(), a, a, minPrefixChars, false,
+        true, true, true);
+
+    List<Input> inputs = new ArrayList<>();
+    Set<String> texts = new HashSet<>();
+    int numInputs = atLeast(100);
+    for (int i = 0; i < numInputs; i++) {
+      String text = randomText();
+      if (texts.add(text)) {
+        // some ties, and some weights that are too large for the completion FST
+        long weight = random().nextInt(20) == 0 ? AnalyzingInfixSuggester.MAX_COMPLETION_WEIGHT + i : random().nextInt(1000);
+        inputs.add(new Input(text, weight, new BytesRef(Integer.toString(i))));
+      }
+    }
+    infix.build(new InputArrayIterator(inputs));
+    completion.build(new InputArrayIterator(inputs));
+    assertSameLookups(infix, completion);
+
+    // updates and deletes
+    int numUpdates = atLeast(10);
+    for (int i = 0; i < numUpdates; i++) {
+      Input input = inputs.get(random().nextInt(inputs.size()));
+      if (random().nextBoolean()) {
+        infix.delete(input.term);
+        completion.delete(input.term);
+      } else {
+        long weight = random().nextInt(1000);
+        infix.update(input.term, null, weight, input.payload);
+        completion.update(input.term, null, weight, input.payload);
+      }
+    }
+    infix.refresh();
+    completion.refresh();
+    assertSameLookups(infix, completion);
+
+    // without deletions and large weights, only the completion FST is used,
+    // which ignores getLastTokenQuery
+    Input keys[] = new Input[] {
+      new Input("lend me your ear", 8, new BytesRef("foobar")),
+      new Input("a penny saved is a penny earned", 10, new BytesRef("foobaz")),
+    };
+    Directory dir = newDirectory();
+    AnalyzingInfixSuggester noInfix = new AnalyzingInfixSuggester(dir, a, a, minPrefixChars, false, true, true, true) {
+      @Override
+      protected Query getLastTokenQuery(String token) {
+        return new TermQuery(new Term(TEXT_FIELD_NAME, "doesnotexist"));
+      }
+    };
+    noInfix.build(new InputArrayIterator(keys));
+    List<LookupResult> results = noInfix.lookup(TestUtil.stringToCharSequence("ear", random()), 10, true, true);
+    assertEquals(2, results.size());
+    assertEquals("a penny saved is a penny earned", results.get(0).key);
+    assertEquals("a penny saved is a penny <b>ear</b>ned", results.get(0).highlightKey);
+    assertEquals(10, results.get(0).value);
+    assertEquals(new BytesRef("foobaz"), results.get(0).payload);
+    assertEquals("lend me your ear", results.get(1).key);
+    // several matching tokens in a suggestion
+    results = noInfix.lookup(TestUtil.stringToCharSequence("pen", random()), 10, true, true);
+    assertEquals(1, results.size());
+    assertEquals("a <b>pen</b>ny saved is a <b>pen</b>ny earned", results.get(0).highlightKey);
+    // a finished token uses the infix query
+    assertEquals(1, noInfix.lookup(TestUtil.stringToCharSequence("ear ", random()), 10, true, true).size());
+
+    IOUtils.close(infix, completion, noInfix, a);
+  }
+
+  private void assertSameLookups(AnalyzingInfixSuggester expected, AnalyzingInfixSuggester actual) throws IOException {
+    int iters = atLeast(50);
+    for (int i = 0; i < iters; i++) {
+      String query = TestUtil.randomSimpleString(random(), 1, 4);
+      if (random().nextInt(10) == 0) {
+        query = randomText();
+      }
+      int num = TestUtil.nextInt(random(), 1, 20);
+      List<LookupResult> expectedResults = expected.lookup(query, num, true, true);
+      List<LookupResult> actualResults = actual.lookup(query, num, true, true);
+      assertEquals(query, expectedResults.size(), actualResults.size());
+      for (int j = 0; j < expectedResults.size(); j++) {
+        assertEquals(expectedResults.get(j).key, actualResults.get(j).key);
+        assertEquals(expectedResults.get(j).highlightKey, actualResults.get(j).highlightKey);
+        assertEquals(expectedResults.get(j).value, actualResults.get(j).value);
+        assertEquals(expectedResults.get(j).payload, actualResults.get(j).payload);
+      }
+    }
+  }
+
+  public void testLookupDuringBuild() throws Exception {
+    Analyzer a = new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false);
+    AnalyzingInfixSuggester suggester = new AnalyzingInfixSuggester(newDirectory(), a, a, 3, false,
+        true, true, random().nextBoolean());
+    suggester.build(new InputArrayIterator(new Input[] {new Input("a penny saved is a penny earned", 10)}));
+
+    LookupThread lookupThread = new LookupThread(suggester);
+    lookupThread.start();
+    int iters = atLeast(10);
+    for (int iter = 0; iter < iters; iter++) {
+      List<Input> inputs = new ArrayList<>();
+      int numInputs = atLeast(20);
+      for (int i = 0; i < numInputs; i++) {
+        inputs.add(new Input(randomText(), random().nextInt(100)));
+      }
+      inputs.add(new Input("a penny saved is a penny earned", 10));
+      // lookups keep seeing the suggestion that every build indexes
+      suggester.build(new InputArrayIterator(inputs));
+      assertEquals(inputs.size(), suggester.getCount());
+      assertEquals("a penny saved is a penny earned",
+          suggester.lookup(TestUtil.stringToCharSequence("saved penny", random()), 1, true, false).get(0).key);
+    }
+    lookupThread.finish();
+
+    suggester.close();
+    a.close();
+  }
+
+  public void testFailedBuildKeepsPendingChanges() throws Exception {
+    Analyzer a = new MockAnalyzer(random(), MockTokenizer.WHITESPACE, false);
+    AnalyzingInfixSuggester suggester = new AnalyzingInfixSuggester(newDirectory(), a, a, 3, false,
+        true, true, random().nextBoolean());
+    suggester.build(new InputArrayIterator(new Input[] {new Input("a penny saved is a penny earned", 10)}));
+    suggester.add(new BytesRef("lend me your ear"), null, 8, null);
+
+    final InputIterator in = new InputArrayIterator(new Input[] {
+        new Input("the quick brown fox", 5),
+        new Input("jumps over the lazy dog", 3)});
+    final InputIterator failing = new InputIterator() {
+      int upto;
+
+      @Override
+      public BytesRef next() throws IOException {
+        if (upto++ == 1) {
+          throw new IOException("fake failure");
+        }
+        return in.next();
+      }
+
+      @Override
+      public long weight() {
+        return in.weight();
+      }
+
+      @Override
+      public BytesRef payload() {
+        return in.payload();
+      }
+
+      @Override
+      public boolean hasPayloads() {
+        return in.hasPayloads();
+      }
+
+      @Override
+      public Set<BytesRef> contexts() {
+        return in.contexts();
+      }
+
+      @Override
+      public boolean hasContexts() {
+        return in.hasContexts();
+      }
+    };
+    try {
+      suggester.build(failing);
+      fail();
+    } catch (IOException e) {
+      assertEquals("fake failure", e.getMessage());
+    }
+
+    // the previous suggestions are still served
+    List<LookupResult> results = suggester.lookup(TestUtil.stringToCharSequence("penny", random()), 10, true, false);
+    assertEquals(1, results.size());
+    assertEquals("a penny saved is a penny earned", results.get(0).key);
+    assertEquals(0, suggester.lookup(TestUtil.stringToCharSequence("quick", random()), 10, true, false).size());
+
+    // and the suggestion that was added before the build is not lost
+    suggester.refresh();
+    results = suggester.lookup(TestUtil.stringToCharSequence("ear", random()), 10, true, false);
+    assertEquals(2, results.size());
+    assertEquals("a penny saved is a penny earned", results.get(0).key);
+    assertEquals("lend me your ear", results.get(1).key);
+    assertEquals(2, suggester.getCount());
+
+    // a successful build replaces everything
+    suggester.build(new InputArrayIterator(new Input[] {new Input("the quick brown fox", 5)}));
+    assertEquals(1, suggester.getCount());
+    assertEquals(0, suggester.lookup(TestUtil.stringToCharSequence("ear", random()), 10, true, false).size());
+
+    suggester.close();
+    a.close();
+  }
+
   private Set<BytesRef> asSet(String... values) {
     HashSet<BytesRef> result = new HashSet<>();
     for(String value : values) {
@@ -35,6 +35,7 @@ import org.apache.lucene.codecs.blockterms.TermsIndexWriterBase;
 import org.apache.lucene.codecs.blockterms.VariableGapTermsIndexReader;
 import org.apache.lucene.codecs.blockterms.VariableGapTermsIndexWriter;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
 import org.apache.lucene.codecs.blocktreeords.OrdsBlockTreeTermsReader;
 import org.apache.lucene.codecs.blocktreeords.OrdsBlockTreeTermsWriter;
@@ -308,13 +309,14 @@ public final class MockRandomPostingsFormat extends PostingsFormat {
       }
     } else if (t1 == 2) {
       // Use BlockTree terms dict
+      final FSTLoadMode fstLoadMode = FSTLoadMode.values()[random.nextInt(FSTLoadMode.values().length)];
       if (LuceneTestCase.VERBOSE) {
-        System.out.println("MockRandomCodec: reading BlockTree terms dict");
+        System.out.println("MockRandomCodec: reading BlockTree terms dict fstLoadMode=" + fstLoadMode);
       }
 
       boolean success = false;
       try {
-        fields = new BlockTreeTermsReader(postingsReader, state);
+        fields = new BlockTreeTermsReader(postingsReader, state, fstLoadMode);
         success = true;
       } finally {
         if (!success) {
@@ -403,7 +403,17 @@ public class AssertingLeafReader extends FilterLeafReader {
       assertThread("Numeric doc values", creationThread);
       assert docID >= 0 && docID < maxDoc;
       return in.get(docID);
-    }    
+    }
+
+    @Override
+    public void get(int[] docIDs, long[] values, int count) {
+      assertThread("Numeric doc values", creationThread);
+      assert count >= 0 && count <= docIDs.length && count <= values.length;
+      for (int i = 0; i < count; ++i) {
+        assert docIDs[i] >= 0 && docIDs[i] < maxDoc;
+      }
+      in.get(docIDs, values, count);
+    }
   }
   
   /** Wraps a BinaryDocValues but with additional asserts */
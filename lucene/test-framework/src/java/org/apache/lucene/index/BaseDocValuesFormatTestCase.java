@@ -1228,9 +1228,23 @@ public abstract class BaseDocValuesFormatTestCase extends BaseIndexFileFormatTes
     for (LeafReaderContext context : ir.leaves()) {
       LeafReader r = context.reader();
       NumericDocValues docValues = r.getNumericDocValues("dv");
+      long[] storedValues = new long[r.maxDoc()];
       for (int i = 0; i < r.maxDoc(); i++) {
-        long storedValue = Long.parseLong(r.document(i).get("stored"));
-        assertEquals(storedValue, docValues.get(i));
+        storedValues[i] = Long.parseLong(r.document(i).get("stored"));
+        assertEquals(storedValues[i], docValues.get(i));
+      }
+      // bulk lookups of random increasing doc IDs
+      int[] docIDs = new int[r.maxDoc()];
+      int count = 0;
+      for (int i = 0; i < r.maxDoc(); i++) {
+        if (random().nextBoolean()) {
+          docIDs[count++] = i;
+        }
+      }
+      long[] values = new long[count];
+      docValues.get(docIDs, values, count);
+      for (int i = 0; i < count; i++) {
+        assertEquals(storedValues[docIDs[i]], values[i]);
       }
     }
     ir.close();
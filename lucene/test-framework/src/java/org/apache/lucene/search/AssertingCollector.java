@@ -60,4 +60,9 @@ class AssertingCollector extends FilterCollector {
     };
   }
 
+  @Override
+  public boolean needsAllHits() {
+    return in.needsAllHits();
+  }
+
 }
@@ -51,6 +51,11 @@ public class AssertingIndexSearcher extends IndexSearcher {
     super(context, ex);
     this.random = new Random(random.nextLong());
   }
+
+  public  AssertingIndexSearcher(Random random, IndexReaderContext context, ExecutorService ex, int maxDocsPerSlice) {
+    super(context, ex, maxDocsPerSlice);
+    this.random = new Random(random.nextLong());
+  }
   
   /** Ensures, that the returned {@code Weight} is not normalized again, which may produce wrong scores. */
   @Override
@@ -92,6 +97,12 @@ public class AssertingIndexSearcher extends IndexSearcher {
     super.search(leaves, weight, AssertingCollector.wrap(random, collector));
   }
 
+  @Override
+  protected void search(LeafReaderContextPartition[] partitions, Weight weight, Collector collector) throws IOException {
+    assert weight instanceof AssertingWeight;
+    super.search(partitions, weight, AssertingCollector.wrap(random, collector));
+  }
+
   @Override
   public String toString() {
     return "AssertingIndexSearcher(" + super.toString() + ")";
@@ -40,6 +40,8 @@ public class AssertingScorer extends Scorer {
 
   IteratorState state = IteratorState.START;
   int doc = -1;
+  float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  int lastShallowTarget = -1;
 
   private AssertingScorer(Random random, Scorer in, boolean needsScores) {
     super(in.weight);
@@ -88,6 +90,32 @@ public class AssertingScorer extends Scorer {
     return in.freq();
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    assert !Float.isNaN(minScore);
+    assert minScore >= minCompetitiveScore : "min competitive score went backwards from " + minCompetitiveScore + " to " + minScore;
+    minCompetitiveScore = minScore;
+    in.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    assert target >= lastShallowTarget : "shallow target went backwards from " + lastShallowTarget + " to " + target;
+    assert target >= in.docID() : "target must be >= docID(), got " + target + " < " + in.docID();
+    lastShallowTarget = target;
+    final int upTo = in.advanceShallow(target);
+    assert upTo >= target : "advanceShallow(" + target + ") returned " + upTo;
+    return upTo;
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    assert upTo >= lastShallowTarget : "upTo=" + upTo + " < shallow target=" + lastShallowTarget;
+    final float maxScore = in.getMaxScore(upTo);
+    assert !Float.isNaN(maxScore) : "NaN max score for in="+in;
+    return maxScore;
+  }
+
   @Override
   public int docID() {
     assert state != IteratorState.APPROXIMATING : "calling docId() on the Scorer while the match has not been confirmed";
@@ -195,6 +223,14 @@ public class AssertingScorer extends Scorer {
         }
         return matches;
       }
+
+      @Override
+      public float matchCost() {
+        float matchCost = in.matchCost();
+        assert ! Float.isNaN(matchCost);
+        assert matchCost >= 0;
+        return matchCost;
+      }
     };
   }
 }
@@ -65,6 +65,13 @@ class AssertingWeight extends Weight {
     return AssertingScorer.wrap(new Random(random.nextLong()), inScorer, needsScores);
   }
 
+  @Override
+  Scorer pruningScorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
+    final Scorer inScorer = in.pruningScorer(context, acceptDocs);
+    assert inScorer == null || inScorer.docID() == -1;
+    return AssertingScorer.wrap(new Random(random.nextLong()), inScorer, needsScores);
+  }
+
   @Override
   public BulkScorer bulkScorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
     BulkScorer inScorer = in.bulkScorer(context, acceptDocs);
@@ -34,6 +34,7 @@ import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -254,6 +255,11 @@ public class QueryUtils {
         return null;
       }
 
+      @Override
+      public PointValues getPointValues() {
+        return null;
+      }
+
       @Override
       public FieldInfos getFieldInfos() {
         return new FieldInfos(new FieldInfo[0]);
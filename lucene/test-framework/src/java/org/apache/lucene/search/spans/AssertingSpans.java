@@ -221,6 +221,15 @@ class AssertingSpans extends Spans {
       }
       return v;
     }
+
+    @Override
+    public float matchCost() {
+      float cost = in.matchCost();
+      if (Float.isNaN(cost) || cost < 0) {
+        throw new AssertionError("matchCost()=" + cost + " should be a non negative number");
+      }
+      return cost;
+    }
   }
   
   class AssertingDISI extends DocIdSetIterator {
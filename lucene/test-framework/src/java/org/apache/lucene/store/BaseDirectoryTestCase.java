@@ -1105,6 +1105,38 @@ public abstract class BaseDirectoryTestCase extends LuceneTestCase {
     dir.close();
   }
   
+  /** Prefetching is only a hint, it must not change the file pointer or what is read. */
+  public void testPrefetch() throws Exception {
+    Directory dir = getDirectory(createTempDir("prefetch"));
+    IndexOutput output = dir.createOutput("bytes", newIOContext(random()));
+    final int num = TestUtil.nextInt(random(), 50, 5000);
+    byte bytes[] = new byte[num];
+    random().nextBytes(bytes);
+    output.writeBytes(bytes, bytes.length);
+    output.close();
+
+    IndexInput input = dir.openInput("bytes", newIOContext(random()));
+    IndexInput slice = input.slice("slice", 1, num - 1);
+    for (int i = 0; i < 10; i++) {
+      IndexInput in = random().nextBoolean() ? input : slice;
+      final long pos = TestUtil.nextLong(random(), 0, in.length());
+      in.seek(pos);
+      final long offset = TestUtil.nextLong(random(), 0, in.length());
+      in.prefetch(offset, TestUtil.nextLong(random(), 0, in.length() - offset));
+      assertEquals(pos, in.getFilePointer());
+    }
+    byte data[] = new byte[num];
+    input.seek(0);
+    input.readBytes(data, 0, num);
+    assertArrayEquals(bytes, data);
+    slice.seek(0);
+    slice.readBytes(data, 1, num - 1);
+    assertArrayEquals(bytes, data);
+
+    input.close();
+    dir.close();
+  }
+
   /** 
    * This test that writes larger than the size of the buffer output
    * will correctly increment the file pointer.
@@ -120,6 +120,12 @@ public class MockIndexInputWrapper extends IndexInput {
     delegate.seek(pos);
   }
 
+  @Override
+  public void prefetch(long offset, long length) throws IOException {
+    ensureOpen();
+    delegate.prefetch(offset, length);
+  }
+
   @Override
   public long length() {
     ensureOpen();
@@ -1850,9 +1850,15 @@ public abstract class LuceneTestCase extends Assert {
       }
       IndexSearcher ret;
       if (wrapWithAssertions) {
-        ret = random.nextBoolean()
-            ? new AssertingIndexSearcher(random, r, ex)
-            : new AssertingIndexSearcher(random, r.getContext(), ex);
+        if (ex != null && random.nextInt(3) == 0) {
+          // search slices that may span several segments or part of a segment
+          final int maxDocsPerSlice = TestUtil.nextInt(random, Math.max(1, r.maxDoc() / 16), Math.max(1, r.maxDoc()));
+          ret = new AssertingIndexSearcher(random, r.getContext(), ex, maxDocsPerSlice);
+        } else {
+          ret = random.nextBoolean()
+              ? new AssertingIndexSearcher(random, r, ex)
+              : new AssertingIndexSearcher(random, r.getContext(), ex);
+        }
       } else {
         ret = random.nextBoolean()
             ? new IndexSearcher(r, ex)
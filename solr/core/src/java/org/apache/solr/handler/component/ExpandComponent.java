@@ -741,7 +741,9 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
               fieldInfo.getIndexOptions(),
               DocValuesType.NONE,
               fieldInfo.getDocValuesGen(),
-              fieldInfo.attributes());
+              fieldInfo.attributes(),
+              fieldInfo.getPointDimensionCount(),
+              fieldInfo.getPointNumBytes());
           newInfos.add(f);
 
         } else {
@@ -52,6 +52,9 @@ import org.apache.solr.search.SolrIndexSearcher;
  */
 public class DocValuesStats {
   private DocValuesStats() {}
+
+  // number of segment ordinals that are mapped to global ordinals at once
+  private static final int BUFFER_SIZE = 256;
   
   public static StatsValues getCounts(SolrIndexSearcher searcher, StatsField statsField, DocSet docs, String[] facet) throws IOException {
 
@@ -172,6 +175,9 @@ public class DocValuesStats {
   /** accumulates per-segment single-valued stats */
   static int accumSingle(int counts[], int docBase, FieldFacetStats[] facetStats, SortedDocValues si, DocIdSetIterator disi, int subIndex, OrdinalMap map) throws IOException {
     final LongValues ordMap = map == null ? null : map.getGlobalOrds(subIndex);
+    if (map != null && facetStats.length == 0) {
+      return accumSingleBulk(counts, si, disi, ordMap);
+    }
     int missingDocCount = 0;
     int doc;
     while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
@@ -195,6 +201,36 @@ public class DocValuesStats {
     return missingDocCount;
   }
   
+  /** accumulates per-segment single-valued stats without facets, mapping ordinals to global ones in bulk */
+  private static int accumSingleBulk(int counts[], SortedDocValues si, DocIdSetIterator disi, LongValues ordMap) throws IOException {
+    final int[] ords = new int[BUFFER_SIZE];
+    final long[] globalOrds = new long[BUFFER_SIZE];
+    int missingDocCount = 0;
+    int buffered = 0;
+    int doc;
+    while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+      int term = si.getOrd(doc);
+      if (term >= 0) {
+        ords[buffered++] = term;
+        if (buffered == BUFFER_SIZE) {
+          accumGlobalOrds(counts, ords, globalOrds, buffered, ordMap);
+          buffered = 0;
+        }
+      } else {
+        missingDocCount++;
+      }
+    }
+    accumGlobalOrds(counts, ords, globalOrds, buffered, ordMap);
+    return missingDocCount;
+  }
+
+  private static void accumGlobalOrds(int counts[], int[] ords, long[] globalOrds, int count, LongValues ordMap) {
+    ordMap.get(ords, globalOrds, count);
+    for (int i = 0; i < count; i++) {
+      counts[(int) globalOrds[i]]++;
+    }
+  }
+  
   /** accumulates per-segment multi-valued stats */
   
   static int accumMulti(int counts[], int docBase, FieldFacetStats[] facetStats, SortedSetDocValues si, DocIdSetIterator disi, int subIndex, OrdinalMap map) throws IOException {
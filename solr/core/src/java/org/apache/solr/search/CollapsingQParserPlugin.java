@@ -335,7 +335,9 @@ public class CollapsingQParserPlugin extends QParserPlugin {
                                       fieldInfo.getIndexOptions(),
                                       DocValuesType.NONE,
                                       fieldInfo.getDocValuesGen(),
-                                      fieldInfo.attributes());
+                                      fieldInfo.attributes(),
+                                      fieldInfo.getPointDimensionCount(),
+                                      fieldInfo.getPointNumBytes());
           newInfos.add(f);
 
         } else {
@@ -32,6 +32,7 @@ import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -427,6 +428,11 @@ public class TestDocSet extends LuceneTestCase {
         return null;
       }
 
+      @Override
+      public PointValues getPointValues() {
+        return null;
+      }
+
       @Override
       protected void doClose() {
       }